@@ -109,17 +109,17 @@ public class ChatList extends Activity implements JoynServiceListener {
 	 * Create chat list adapter with unique contact entries
 	 */
 	private ChatListAdapter createListAdapter() {
-		Uri uri = ChatLog.Message.CONTENT_URI;
+		Uri uri = ChatLog.Conversation.CONTENT_URI;
 	    String[] PROJECTION = new String[] {
-	    		ChatLog.Message.ID,
-	    		ChatLog.Message.CHAT_ID,
-	    		ChatLog.Message.CONTACT_NUMBER,
-	    		ChatLog.Message.BODY,
-	    		ChatLog.Message.MIME_TYPE,
-	    		ChatLog.Message.TIMESTAMP
+	    		ChatLog.Conversation.ID,
+	    		ChatLog.Conversation.CHAT_ID,
+	    		ChatLog.Conversation.CONTACT_NUMBER,
+	    		ChatLog.Conversation.BODY,
+	    		ChatLog.Conversation.MIME_TYPE,
+	    		ChatLog.Conversation.TIMESTAMP
 	    };
-        String sortOrder = ChatLog.Message.TIMESTAMP + " DESC";
-        String selection = ChatLog.Message.CHAT_ID + " = " + ChatLog.Message.CONTACT_NUMBER + ") GROUP BY (" + ChatLog.Message.CONTACT_NUMBER;        
+        String sortOrder = ChatLog.Conversation.TIMESTAMP + " DESC";
+        String selection = ChatLog.Conversation.CHAT_ID + " = " + ChatLog.Conversation.CONTACT_NUMBER;
 		Cursor cursor = getContentResolver().query(uri, PROJECTION, selection, null, sortOrder);
 		if (cursor == null) {
 			Utils.showMessageAndExit(this, getString(R.string.label_load_log_failed));
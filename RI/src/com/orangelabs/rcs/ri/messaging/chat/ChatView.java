@@ -46,6 +46,7 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
+import com.gsma.services.rcs.JoynServiceException;
 import com.gsma.services.rcs.JoynServiceListener;
 import com.gsma.services.rcs.chat.ChatLog;
 import com.gsma.services.rcs.chat.ChatMessage;
@@ -118,6 +119,11 @@ public abstract class ChatView extends ListActivity implements OnClickListener,
 	 * Smileys
 	 */
     protected Smileys smileyResources;
+
+    /**
+     * Activity displayed
+     */
+    private boolean displayed = false;
 		
 	@Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -160,6 +166,34 @@ public abstract class ChatView extends ListActivity implements OnClickListener,
         // Disconnect API
         chatApi.disconnect();
         contactsApi.disconnect();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        displayed = true;
+        updateVisibleChat();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        displayed = false;
+        updateVisibleChat();
+    }
+
+    /**
+     * Notify the chat service of the chat displayed, whose file transfers
+     * are resumed first
+     */
+    protected void updateVisibleChat() {
+    	try {
+    		chatApi.setVisibleChat(displayed ? getChatId() : null);
+    	} catch(JoynServiceException e) {
+    		// API not yet connected, updated once connected
+    	}
     }
     
     /**
@@ -660,6 +694,13 @@ public abstract class ChatView extends ListActivity implements OnClickListener,
      * @param isTyping Is compoing status
      */
     protected abstract void setTypingStatus(boolean isTyping);
+
+    /**
+     * Returns the ID of the chat, the contact for a single chat
+     * 
+     * @return Chat ID or null if not yet known
+     */
+    protected abstract String getChatId();
     
     /**
      * Get a geoloc
@@ -235,6 +235,9 @@ public class GroupChatView extends ChatView {
 			
 			// Instanciate the composing manager
 			composingManager = new IsComposingManager(chatApi.getConfiguration().getIsComposingTimeout() * 1000);
+
+			// File transfers of this chat are resumed first
+			updateVisibleChat();
 	    } catch(JoynServiceNotAvailableException e) {
 	    	e.printStackTrace();
 			Utils.showMessageAndExit(GroupChatView.this, getString(R.string.label_api_disabled));
@@ -294,6 +297,7 @@ public class GroupChatView extends ChatView {
 		// Initiate the chat session in background
     	try {
     		groupChat = chatApi.initiateGroupChat(new HashSet<String>(participants), subject, chatListener);
+    		chatId = groupChat.getChatId();
     	} catch(Exception e) {
     		e.printStackTrace();
 			Utils.showMessageAndExit(GroupChatView.this, getString(R.string.label_invitation_failed));		
@@ -425,6 +429,15 @@ public class GroupChatView extends ChatView {
 			e.printStackTrace();
 		}
 	}
+
+    /**
+     * Returns the ID of the chat, the contact for a single chat
+     * 
+     * @return Chat ID or null if not yet known
+     */
+    protected String getChatId() {
+    	return chatId;
+    }
     
     /**
      * Send a displayed report
@@ -120,7 +120,7 @@ public class SingleChatView extends ChatView {
 
     @Override
 	protected void onPause() {
-        super.onStart();
+        super.onPause();
         
         activityDisplayed = false;
     }
@@ -161,6 +161,9 @@ public class SingleChatView extends ChatView {
 			
 			// Update displayed report
 			updateDisplayedReport();
+
+			// File transfers of this chat are resumed first
+			updateVisibleChat();
 	    } catch(JoynServiceNotAvailableException e) {
 	    	e.printStackTrace();
 			Utils.showMessageAndExit(SingleChatView.this, getString(R.string.label_api_disabled));
@@ -330,6 +333,15 @@ public class SingleChatView extends ChatView {
 			e.printStackTrace();
 		}
 	}    
+
+    /**
+     * Returns the ID of the chat, the contact for a single chat
+     * 
+     * @return Chat ID
+     */
+    protected String getChatId() {
+    	return contact;
+    }
     
     /**
      * Send a displayed report
@@ -26,14 +26,19 @@ import android.os.RemoteException;
 import android.os.SystemClock;
 
 import com.gsma.services.rcs.JoynServiceException;
+import com.gsma.services.rcs.MediaStatistics;
 import com.gsma.services.rcs.vsh.IVideoPlayerListener;
 import com.gsma.services.rcs.vsh.VideoCodec;
 import com.gsma.services.rcs.vsh.VideoPlayer;
+import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
 import com.orangelabs.rcs.core.ims.protocol.rtp.VideoRtpSender;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.H264Config;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.JavaPacketizer;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.encoder.NativeH264Encoder;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.encoder.NativeH264EncoderParams;
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.KeyFrameRequestListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.profiles.H264Profile1b;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.CameraOptions;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.H264VideoFormat;
@@ -42,12 +47,29 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaException;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaInput;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.VideoSample;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stats.PipelineStatistics;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpStreamListener;
 
 /**
  * Live RTP video player based on H264 QCIF format
  */
-public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback, RtpStreamListener {
+public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback, RtpStreamListener, CongestionListener,
+        KeyFrameRequestListener {
+    /**
+     * Minimum bit rate applied by the congestion control
+     */
+    private static final int MIN_BITRATE = 32000;
+
+    /**
+     * Minimum frame rate applied by the congestion control
+     */
+    private static final int MIN_FRAMERATE = 5;
+
+    /**
+     * FEC protection level in percent of the media packets
+     */
+    private static final int FEC_PROTECTION_LEVEL = 25;
+
     /**
      * Default video codec
      */
@@ -168,6 +190,26 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
      */
     private FrameBuffer frameBuffer = new FrameBuffer();
 
+    /**
+     * Encoder parameters
+     */
+    private NativeH264EncoderParams nativeH264EncoderParams;
+
+    /**
+     * Target bit rate requested by the congestion control
+     */
+    private volatile int targetBitRate = 0;
+
+    /**
+     * Target frame rate requested by the congestion control
+     */
+    private volatile int targetFrameRate = 0;
+
+    /**
+     * Key frame requested by the remote (PLI)
+     */
+    private volatile boolean keyFrameRequested = false;
+
     /**
      * Constructor
      */
@@ -215,6 +257,18 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
 	public VideoCodec getCodec() {
 		return defaultVideoCodec;
 	}
+
+	/**
+	 * Returns the statistics of the media pipeline
+	 * 
+	 * @return Statistics or null if not opened
+	 */
+	public MediaStatistics getMediaStatistics() {
+		if (rtpSender == null) {
+			return null;
+		}
+		return rtpSender.getStatistics().getMediaStatistics();
+	}
 	
     /**
 	 * Opens the player and prepares resources (e.g. encoder, camera)
@@ -235,7 +289,7 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
         // Init video encoder
         try {
             timestampInc = (int)(90000 / defaultVideoCodec.getFrameRate());
-            NativeH264EncoderParams nativeH264EncoderParams = new NativeH264EncoderParams();
+            nativeH264EncoderParams = new NativeH264EncoderParams();
 
             // Codec dimensions
             nativeH264EncoderParams.setFrameWidth(defaultVideoCodec.getVideoWidth());
@@ -265,6 +319,20 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
         try {
             releasePort();
             rtpSender = new VideoRtpSender(new H264VideoFormat(), localRtpPort);
+            CongestionController congestionController = new CongestionController(
+                    defaultVideoCodec.getBitRate(),
+                    Math.min(MIN_BITRATE, defaultVideoCodec.getBitRate()),
+                    defaultVideoCodec.getBitRate(),
+                    Math.min(MIN_FRAMERATE, defaultVideoCodec.getFrameRate()),
+                    defaultVideoCodec.getFrameRate(),
+                    H264Config.CLOCK_RATE);
+            congestionController.setListener(this);
+            rtpSender.setCongestionController(congestionController);
+            rtpSender.setKeyFrameRequestListener(this);
+            int fecPayloadType = RtpUtils.getFecPayloadType(defaultVideoCodec.getParameters());
+            if (fecPayloadType != -1) {
+                rtpSender.setFecParameters(fecPayloadType, FEC_PROTECTION_LEVEL);
+            }
             rtpInput = new MediaRtpInput();
             rtpInput.open();
             rtpSender.prepareSession(rtpInput, remoteHost, remotePort, this);
@@ -533,6 +601,76 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
         notifyPlayerEventError(VideoPlayer.Error.NETWORK_FAILURE);
     }
 
+    /**
+     * Target encoding rate changed by the congestion control
+     *
+     * @param bitRate Target bit rate
+     * @param frameRate Target frame rate
+     */
+    public void targetRateChanged(int bitRate, int frameRate) {
+        targetBitRate = bitRate;
+        targetFrameRate = frameRate;
+    }
+
+    /**
+     * Key frame requested by the remote
+     */
+    public void keyFrameRequested() {
+        keyFrameRequested = true;
+    }
+
+    /**
+     * Encode the next frame as a key frame if requested, called from the encoding thread
+     */
+    private void applyKeyFrameRequest() {
+        if (!keyFrameRequested) {
+            return;
+        }
+        keyFrameRequested = false;
+        try {
+            if (NativeH264Encoder.forceKeyFrame(nativeH264EncoderParams) != 0 || !initNAL()) {
+                notifyPlayerEventError(VideoPlayer.Error.INTERNAL_ERROR);
+                return;
+            }
+        } catch (UnsatisfiedLinkError e) {
+            notifyPlayerEventError(VideoPlayer.Error.INTERNAL_ERROR);
+            return;
+        }
+        nalInit = false;
+    }
+
+    /**
+     * Apply the target encoding rate, called from the encoding thread
+     *
+     * @return New frame rate or 0 if unchanged
+     */
+    private int applyTargetRate() {
+        int bitRate = targetBitRate;
+        int frameRate = targetFrameRate;
+        if ((bitRate == 0) || ((bitRate == nativeH264EncoderParams.getBitRate())
+                && (frameRate == (int)nativeH264EncoderParams.getFrameRate()))) {
+            return 0;
+        }
+
+        // The native encoder has no runtime rate setting: reinit it and resend the parameter sets
+        try {
+            NativeH264Encoder.DeinitEncoder();
+            nativeH264EncoderParams.setBitRate(bitRate);
+            nativeH264EncoderParams.setFrameRate(frameRate);
+            if (NativeH264Encoder.InitEncoder(nativeH264EncoderParams) != 0 || !initNAL()) {
+                notifyPlayerEventError(VideoPlayer.Error.INTERNAL_ERROR);
+                return 0;
+            }
+        } catch (UnsatisfiedLinkError e) {
+            notifyPlayerEventError(VideoPlayer.Error.INTERNAL_ERROR);
+            return 0;
+        }
+        nalInit = false;
+        keyFrameRequested = false;
+        timestampInc = 90000 / frameRate;
+        return frameRate;
+    }
+
     /**
      * Notify player event started
      */
@@ -640,6 +778,7 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
         } 
 
         // Encode frame
+        long encodeStart = System.nanoTime();
         byte[] encoded;
         if (frameBuffer.dataSrcWidth != 0 && frameBuffer.dataSrcHeight != 0) {
             encoded = NativeH264Encoder.ResizeAndEncodeFrame(data, timeStamp, mirroring, frameBuffer.dataSrcWidth, frameBuffer.dataSrcHeight);
@@ -648,6 +787,9 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
         }
         int encodeResult = NativeH264Encoder.getLastEncodeStatus();
         if ((encodeResult == 0) && (encoded.length > 0)) {
+            rtpSender.getStatistics().record(PipelineStatistics.STAGE_ENCODE,
+                    encodeStart, System.nanoTime(), encoded.length);
+
             VideoOrientation videoOrientation = null;
             if (orientationHeaderId > 0 ) {
                 videoOrientation = new VideoOrientation(
@@ -686,6 +828,15 @@ public class MyVideoPlayer extends VideoPlayer implements Camera.PreviewCallback
             while (started) {
                 long time = System.currentTimeMillis();
 
+                // Adapt the encoding rate
+                int frameRate = applyTargetRate();
+                if (frameRate > 0) {
+                    interframe = 1000 / frameRate;
+                }
+
+                // Restart the GOP on picture loss of the remote
+                applyKeyFrameRequest();
+
                 // Encode
                 frameData = frameBuffer.getData();
                 if (frameData != null) {
@@ -25,10 +25,12 @@ import android.graphics.Bitmap;
 import android.os.RemoteException;
 import android.os.SystemClock;
 
+import com.gsma.services.rcs.MediaStatistics;
 import com.gsma.services.rcs.vsh.IVideoRendererListener;
 import com.gsma.services.rcs.vsh.VideoCodec;
 import com.gsma.services.rcs.vsh.VideoRenderer;
 import com.orangelabs.rcs.core.ims.protocol.rtp.DummyPacketGenerator;
+import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
 import com.orangelabs.rcs.core.ims.protocol.rtp.VideoRtpReceiver;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.H264Config;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.JavaPacketizer;
@@ -148,6 +150,18 @@ public class MyVideoRenderer extends VideoRenderer implements RtpStreamListener
 		return defaultVideoCodec;
 	}
 
+	/**
+	 * Returns the statistics of the media pipeline
+	 * 
+	 * @return Statistics or null if not opened
+	 */
+	public MediaStatistics getMediaStatistics() {
+		if (rtpReceiver == null) {
+			return null;
+		}
+		return rtpReceiver.getStatistics().getMediaStatistics();
+	}
+
 	/**
 	 * Opens the renderer and prepares resources (e.g. decoder)
 	 * 
@@ -175,6 +189,10 @@ public class MyVideoRenderer extends VideoRenderer implements RtpStreamListener
             // Init the RTP layer
             releasePort();
             rtpReceiver = new VideoRtpReceiver(localRtpPort);
+            rtpReceiver.setFecPayloadType(RtpUtils.getFecPayloadType(defaultVideoCodec.getParameters()));
+            rtpReceiver.setRtcpFeedback(
+                    RtpUtils.isRtcpFeedbackEnabled(defaultVideoCodec.getParameters(), RtpUtils.RTCP_FB_NACK),
+                    RtpUtils.isRtcpFeedbackEnabled(defaultVideoCodec.getParameters(), RtpUtils.RTCP_FB_PLI));
             rtpDummySender = new DummyPacketGenerator();
             rtpOutput = new MediaRtpOutput();
             rtpOutput.open();
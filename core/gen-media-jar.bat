@@ -0,0 +1 @@
+"%ANT_HOME%"/bin/ant -f build-local.xml media
\ No newline at end of file
@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.gsma.services.rcs;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Media statistics of a video sharing or an IP call. Gives per processing
+ * stage of the media pipeline the number of frames or packets processed, the
+ * throughput and the latency distribution. The latencies are in microseconds.
+ * 
+ * @author Orange
+ */
+public class MediaStatistics implements Parcelable {
+	/**
+	 * Encoding of a captured frame
+	 */
+	public final static int STAGE_ENCODE = 0;
+
+	/**
+	 * From the capture to the end of the packetization
+	 */
+	public final static int STAGE_PACKETIZE = 1;
+
+	/**
+	 * From the end of the packetization to the packet sent
+	 */
+	public final static int STAGE_SEND = 2;
+
+	/**
+	 * From the capture to the packet sent
+	 */
+	public final static int STAGE_CAPTURE_TO_SEND = 3;
+
+	/**
+	 * From the packet reception to the end of the depacketization
+	 */
+	public final static int STAGE_DEPACKETIZE = 4;
+
+	/**
+	 * From the end of the depacketization to the frame rendered
+	 */
+	public final static int STAGE_RENDER = 5;
+
+	/**
+	 * From the packet reception to the frame rendered
+	 */
+	public final static int STAGE_RECEIVE_TO_RENDER = 6;
+
+	/**
+	 * Number of stages
+	 */
+	public final static int STAGES_NUMBER = 7;
+
+	/**
+	 * Upper bounds (exclusive) of the latency buckets in microseconds, the
+	 * last bucket contains the latencies above the last bound
+	 */
+	private final static long[] BUCKET_BOUNDS = {
+		100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000
+	};
+
+	/**
+	 * Number of latency buckets
+	 */
+	public final static int BUCKETS_NUMBER = 14;
+
+	/**
+	 * Duration of the measure in milliseconds
+	 */
+	private long duration;
+
+	/**
+	 * Count per stage
+	 */
+	private long[] counts = new long[STAGES_NUMBER];
+
+	/**
+	 * Bytes per stage
+	 */
+	private long[] bytes = new long[STAGES_NUMBER];
+
+	/**
+	 * Sum of the latencies per stage
+	 */
+	private long[] sums = new long[STAGES_NUMBER];
+
+	/**
+	 * Maximum latency per stage
+	 */
+	private long[] max = new long[STAGES_NUMBER];
+
+	/**
+	 * Latency buckets per stage
+	 */
+	private long[][] buckets = new long[STAGES_NUMBER][BUCKETS_NUMBER];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param duration Duration of the measure in milliseconds
+	 * @hide
+	 */
+	public MediaStatistics(long duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Set the measures of a stage
+	 * 
+	 * @param stage Stage
+	 * @param count Number of frames or packets processed
+	 * @param bytes Number of bytes processed
+	 * @param sum Sum of the latencies in microseconds
+	 * @param max Maximum latency in microseconds
+	 * @param buckets Number of latencies per bucket
+	 * @hide
+	 */
+	public void setStage(int stage, long count, long bytes, long sum, long max, long[] buckets) {
+		this.counts[stage] = count;
+		this.bytes[stage] = bytes;
+		this.sums[stage] = sum;
+		this.max[stage] = max;
+		System.arraycopy(buckets, 0, this.buckets[stage], 0, Math.min(buckets.length, BUCKETS_NUMBER));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Parcelable source
+	 * @hide
+	 */
+	public MediaStatistics(Parcel source) {
+		this.duration = source.readLong();
+		source.readLongArray(counts);
+		source.readLongArray(bytes);
+		source.readLongArray(sums);
+		source.readLongArray(max);
+		for (int i = 0; i < STAGES_NUMBER; i++) {
+			source.readLongArray(buckets[i]);
+		}
+	}
+
+	/**
+	 * Describe the kinds of special objects contained in this Parcelable's
+	 * marshalled representation
+	 * 
+	 * @return Integer
+	 * @hide
+	 */
+	public int describeContents() {
+		return 0;
+	}
+
+	/**
+	 * Write parcelable object
+	 * 
+	 * @param dest The Parcel in which the object should be written
+	 * @param flags Additional flags about how the object should be written
+	 * @hide
+	 */
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeLong(duration);
+		dest.writeLongArray(counts);
+		dest.writeLongArray(bytes);
+		dest.writeLongArray(sums);
+		dest.writeLongArray(max);
+		for (int i = 0; i < STAGES_NUMBER; i++) {
+			dest.writeLongArray(buckets[i]);
+		}
+	}
+
+	/**
+	 * Parcelable creator
+	 * 
+	 * @hide
+	 */
+	public static final Parcelable.Creator<MediaStatistics> CREATOR
+			= new Parcelable.Creator<MediaStatistics>() {
+		public MediaStatistics createFromParcel(Parcel source) {
+			return new MediaStatistics(source);
+		}
+
+		public MediaStatistics[] newArray(int size) {
+			return new MediaStatistics[size];
+		}
+	};
+
+	/**
+	 * Adds the statistics of another pipeline of the same session (e.g. the
+	 * renderer of an IP call to its player)
+	 * 
+	 * @param other Statistics
+	 * @hide
+	 */
+	public void add(MediaStatistics other) {
+		duration = Math.max(duration, other.duration);
+		for (int i = 0; i < STAGES_NUMBER; i++) {
+			counts[i] += other.counts[i];
+			bytes[i] += other.bytes[i];
+			sums[i] += other.sums[i];
+			max[i] = Math.max(max[i], other.max[i]);
+			for (int j = 0; j < buckets[i].length; j++) {
+				buckets[i][j] += other.buckets[i][j];
+			}
+		}
+	}
+
+	/**
+	 * Returns the duration of the measure
+	 * 
+	 * @return Duration in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the number of frames or packets processed by a stage
+	 * 
+	 * @param stage Stage
+	 * @return Count
+	 */
+	public long getCount(int stage) {
+		return counts[stage];
+	}
+
+	/**
+	 * Returns the number of bytes processed by a stage
+	 * 
+	 * @param stage Stage
+	 * @return Bytes
+	 */
+	public long getBytes(int stage) {
+		return bytes[stage];
+	}
+
+	/**
+	 * Returns the throughput of a stage
+	 * 
+	 * @param stage Stage
+	 * @return Throughput in bits per second
+	 */
+	public long getThroughput(int stage) {
+		if (duration <= 0) {
+			return 0;
+		}
+		return (bytes[stage] * 8 * 1000) / duration;
+	}
+
+	/**
+	 * Returns the average latency of a stage
+	 * 
+	 * @param stage Stage
+	 * @return Latency in microseconds
+	 */
+	public long getAverageLatency(int stage) {
+		if (counts[stage] == 0) {
+			return 0;
+		}
+		return sums[stage] / counts[stage];
+	}
+
+	/**
+	 * Returns the maximum latency of a stage
+	 * 
+	 * @param stage Stage
+	 * @return Latency in microseconds
+	 */
+	public long getMaxLatency(int stage) {
+		return max[stage];
+	}
+
+	/**
+	 * Returns an upper bound of the latency percentile of a stage. The
+	 * accuracy is limited by the histogram buckets.
+	 * 
+	 * @param stage Stage
+	 * @param percentile Percentile (e.g. 95)
+	 * @return Latency in microseconds
+	 */
+	public long getLatencyPercentile(int stage, int percentile) {
+		long total = 0;
+		for (int i = 0; i < buckets[stage].length; i++) {
+			total += buckets[stage][i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long threshold = (total * percentile + 99) / 100;
+		long cumulated = 0;
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			cumulated += buckets[stage][i];
+			if (cumulated >= threshold) {
+				return Math.min(BUCKET_BOUNDS[i], max[stage]);
+			}
+		}
+		return max[stage];
+	}
+
+	/**
+	 * Returns the upper bounds of the latency buckets. The last bucket
+	 * contains the latencies above the last bound.
+	 * 
+	 * @return Bounds in microseconds
+	 */
+	public static long[] getBucketBounds() {
+		return BUCKET_BOUNDS.clone();
+	}
+
+	/**
+	 * Returns the latency distribution of a stage
+	 * 
+	 * @param stage Stage
+	 * @return Number of values per bucket
+	 */
+	public long[] getBuckets(int stage) {
+		return buckets[stage].clone();
+	}
+}
@@ -18,7 +18,15 @@
 package com.gsma.services.rcs.chat;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 import android.net.Uri;
 
@@ -28,6 +36,24 @@ import android.net.Uri;
  * @author Jean-Marc AUFFRET
  */
 public class ChatLog {
+    /**
+     * Version of the compact geoloc BLOB encoding, no more written
+     */
+    private static final byte GEOLOC_BLOB_VERSION = 1;
+
+    /**
+     * Size of the field values of a serialized geoloc: accuracy, expiration,
+     * latitude and longitude
+     */
+    private static final int SERIALIZED_GEOLOC_FIELDS_SIZE = 4 + 8 + 8 + 8;
+
+    /**
+     * Java serialization of a geoloc up to its field values: stream header
+     * and class descriptor. Null if the fields are not serialized in the
+     * expected order.
+     */
+    private static final byte[] SERIALIZED_GEOLOC_HEADER = createSerializedGeolocHeader();
+
     /**
      * Group chat
      */
@@ -176,6 +202,68 @@ public class ChatLog {
          * <P>Type: TEXT</P>
          */
         public static final String FT_ID = "ft_id";
+
+        /**
+         * Query parameter restricting a page to a conversation
+         * 
+         * @hide
+         */
+        public static final String PAGE_CHAT_ID = "chat_id";
+
+        /**
+         * Query parameter giving the timestamp of the last message of the previous page
+         * 
+         * @hide
+         */
+        public static final String PAGE_TIMESTAMP = "before_timestamp";
+
+        /**
+         * Query parameter giving the row ID of the last message of the previous page
+         * 
+         * @hide
+         */
+        public static final String PAGE_ID = "before_id";
+
+        /**
+         * Query parameter giving the maximum number of messages of a page
+         * 
+         * @hide
+         */
+        public static final String PAGE_LIMIT = "limit";
+
+        /**
+         * Returns the URI of the first page of messages of a conversation.
+         * Pages are ordered from the most recent message, by descending
+         * {@link #TIMESTAMP} then {@link #ID}. Without projection, the
+         * {@link #BODY} column is not returned: it has to be part of the
+         * projection to be read.
+         * 
+         * @param chatId Chat ID of the conversation (contact in international format for a single chat)
+         * @param limit Maximum number of messages
+         * @return URI
+         */
+        public static Uri getPageUri(String chatId, int limit) {
+            return getPageUri(chatId, Long.MAX_VALUE, Long.MAX_VALUE, limit);
+        }
+
+        /**
+         * Returns the URI of the page of messages following a previous page
+         * 
+         * @param chatId Chat ID of the conversation (contact in international format for a single chat)
+         * @param timestamp Timestamp of the last message of the previous page
+         * @param id Row ID of the last message of the previous page
+         * @param limit Maximum number of messages
+         * @return URI
+         * @see #getPageUri(String, int)
+         */
+        public static Uri getPageUri(String chatId, long timestamp, long id, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PAGE_CHAT_ID, chatId)
+                    .appendQueryParameter(PAGE_TIMESTAMP, Long.toString(timestamp))
+                    .appendQueryParameter(PAGE_ID, Long.toString(id))
+                    .appendQueryParameter(PAGE_LIMIT, Integer.toString(limit))
+                    .build();
+        }
         
         /**
          * Type of the message
@@ -320,6 +408,204 @@ public class ChatLog {
             }
         }
     }
+
+    /**
+     * Summary of a conversation: its last message and its number of unread
+     * messages. The summary is maintained on each change of the messages.
+     */
+    public static class Conversation {
+        /**
+         * Content provider URI for conversation summaries
+         */
+        public static final Uri CONTENT_URI = Uri.parse("content://com.gsma.services.rcs.provider.chat/conversation");
+
+        /**
+         * The name of the column containing the unique ID for a row.
+         * <P>Type: primary key</P>
+         */
+        public static final String ID = "_id";
+
+        /**
+         * The name of the column containing the chat ID of the conversation.
+         * <P>Type: TEXT</P>
+         */
+        public static final String CHAT_ID = "chat_id";
+
+        /**
+         * The name of the column containing the message ID of the last message.
+         * <P>Type: TEXT</P>
+         */
+        public static final String MESSAGE_ID = "msg_id";
+
+        /**
+         * The name of the column containing the identity of the sender of the last message.
+         * <P>Type: TEXT</P>
+         */
+        public static final String CONTACT_NUMBER = "contact_number";
+
+        /**
+         * The name of the column containing the type of the last message.
+         * <P>Type: INTEGER</P>
+         * @see Message.Type
+         */
+        public static final String MESSAGE_TYPE = "msg_type";
+
+        /**
+         * The name of the column containing the body of the last message.
+         * <P>Type: BLOB</P>
+         */
+        public static final String BODY = "body";
+
+        /**
+         * The name of the column containing the MIME-type of the last message.
+         * <P>Type: TEXT</P>
+         */
+        public static final String MIME_TYPE = "mime_type";
+
+        /**
+         * The name of the column containing the direction of the last message.
+         * <P>Type: INTEGER</P>
+         * @see Message.Direction
+         */
+        public static final String DIRECTION = "direction";
+
+        /**
+         * The name of the column containing the status of the last message.
+         * <P>Type: INTEGER</P>
+         * @see Message.Status
+         */
+        public static final String MESSAGE_STATUS = "status";
+
+        /**
+         * The name of the column containing the time of the last message.
+         * <P>Type: LONG</P>
+         */
+        public static final String TIMESTAMP = "timestamp";
+
+        /**
+         * The name of the column containing the number of unread incoming messages.
+         * <P>Type: INTEGER</P>
+         */
+        public static final String UNREAD_COUNT = "unread_count";
+
+        /**
+         * The name of the column containing the number of messages.
+         * <P>Type: INTEGER</P>
+         */
+        public static final String MESSAGE_COUNT = "message_count";
+    }
+
+    /**
+     * Full-text search in the chat history: text messages, names of the
+     * transferred files, labels of the geolocations and group chat subjects
+     */
+    public static class Search {
+        /**
+         * Content provider URI for search results
+         */
+        public static final Uri CONTENT_URI = Uri.parse("content://com.gsma.services.rcs.provider.chat/search");
+
+        /**
+         * The name of the column containing the unique ID of the result.
+         * <P>Type: primary key</P>
+         */
+        public static final String ID = "_id";
+
+        /**
+         * The name of the column containing the source of the result.
+         * <P>Type: INTEGER</P>
+         * @see Source
+         */
+        public static final String SOURCE = "source";
+
+        /**
+         * The name of the column containing the row ID of the message or of
+         * the group chat matching the search.
+         * <P>Type: LONG</P>
+         */
+        public static final String SOURCE_ID = "source_id";
+
+        /**
+         * The name of the column containing the chat ID of the result.
+         * <P>Type: TEXT</P>
+         */
+        public static final String CHAT_ID = "chat_id";
+
+        /**
+         * The name of the column containing the time of the message or of
+         * the group chat.
+         * <P>Type: LONG</P>
+         */
+        public static final String TIMESTAMP = "timestamp";
+
+        /**
+         * The name of the column containing an extract of the matching text,
+         * the matching terms being surrounded by &lt;b&gt; and &lt;/b&gt;.
+         * <P>Type: TEXT</P>
+         */
+        public static final String SNIPPET = "snippet";
+
+        /**
+         * The name of the column containing the relevance of the result,
+         * results being ordered by descending relevance.
+         * <P>Type: DOUBLE</P>
+         */
+        public static final String RANK = "rank";
+
+        /**
+         * Query parameter giving the searched text
+         * 
+         * @hide
+         */
+        public static final String QUERY = "q";
+
+        /**
+         * Query parameter giving the number of results to skip
+         * 
+         * @hide
+         */
+        public static final String PAGE_OFFSET = "offset";
+
+        /**
+         * Query parameter giving the maximum number of results of a page
+         * 
+         * @hide
+         */
+        public static final String PAGE_LIMIT = "limit";
+
+        /**
+         * Returns the URI of a page of search results. The words of the text
+         * are all searched, the last one being also searched as a prefix.
+         * The ranking applies to the most recent matches.
+         * 
+         * @param text Searched text
+         * @param offset Number of results to skip
+         * @param limit Maximum number of results
+         * @return URI
+         */
+        public static Uri getSearchUri(String text, int offset, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY, text)
+                    .appendQueryParameter(PAGE_OFFSET, Integer.toString(offset))
+                    .appendQueryParameter(PAGE_LIMIT, Integer.toString(limit))
+                    .build();
+        }
+
+        /**
+         * Source of a search result
+         */
+        public static class Source {
+            /**
+             * Chat message or file transfer message
+             */
+            public static final int MESSAGE = 0;
+
+            /**
+             * Subject of a group chat
+             */
+            public static final int GROUP_CHAT = 1;
+        }
+    }
     
     /**
      * Get plain text message from a BLOB
@@ -329,12 +615,30 @@ public class ChatLog {
      */
     public static String getTextFromBlob(byte[] content) {
     	try {
-	    	return new String(content);
+	    	return new String(content, "UTF-8");
 		} catch(Exception e) {
 			return null;
 		}
     }
 
+    /**
+     * Get BLOB from a plain text message
+     * 
+     * @param text Text message
+     * @return BLOB content or null in case of error
+     * @hide
+     */
+    public static byte[] getBlobFromText(String text) {
+    	if (text == null) {
+    		return null;
+    	}
+    	try {
+	    	return text.getBytes("UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			return null;
+		}
+    }
+
     /**
      * Get geoloc object from a BLOB
      * 
@@ -345,12 +649,169 @@ public class ChatLog {
     public static Geoloc getGeolocFromBlob(byte[] content) {
 		try {
     		ByteArrayInputStream bis = new ByteArrayInputStream(content);
-			ObjectInputStream is = new ObjectInputStream(bis);
-			Geoloc geoloc = (Geoloc)is.readObject();
-			is.close();
-			return geoloc;
+    		if (isSerializedGeolocBlob(content)) {
+    			Geoloc geoloc = readSerializedGeoloc(content);
+    			if (geoloc != null) {
+    				return geoloc;
+    			}
+				ObjectInputStream is = new ObjectInputStream(bis);
+				geoloc = (Geoloc)is.readObject();
+				is.close();
+				return geoloc;
+    		}
+
+    		// Compact encoding written by a previous version
+    		DataInputStream is = new DataInputStream(bis);
+    		if (is.readByte() != GEOLOC_BLOB_VERSION) {
+    			return null;
+    		}
+    		double latitude = is.readDouble();
+    		double longitude = is.readDouble();
+    		long expiration = is.readLong();
+    		float accuracy = is.readFloat();
+    		String label = is.readBoolean() ? is.readUTF() : null;
+    		return new Geoloc(label, latitude, longitude, expiration, accuracy);
 		} catch(Exception e) {
 			return null;
 		}
     }
+
+    /**
+     * Get BLOB from a geoloc object. The BLOB is the Java serialization of
+     * the geoloc, so that it is readable by {@link #getGeolocFromBlob(byte[])}
+     * of any version of the API.
+     * 
+     * @param geoloc Geoloc object
+     * @return BLOB content or null in case of error
+     * @hide
+     */
+    public static byte[] getBlobFromGeoloc(Geoloc geoloc) {
+    	if (geoloc == null) {
+    		return null;
+    	}
+		try {
+			if (SERIALIZED_GEOLOC_HEADER != null) {
+				return writeSerializedGeoloc(SERIALIZED_GEOLOC_HEADER, geoloc);
+			}
+		} catch(IOException e) {
+			// Label too long for the short string format
+		}
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream os = new ObjectOutputStream(bos);
+			os.writeObject(geoloc);
+			os.close();
+			return bos.toByteArray();
+		} catch(Exception e) {
+			return null;
+		}
+    }
+
+    /**
+     * Write the Java serialization of a geoloc without going through an
+     * ObjectOutputStream: the class descriptor is constant, only the field
+     * values and the label change
+     * 
+     * @param header Stream header and class descriptor
+     * @param geoloc Geoloc object
+     * @return BLOB content
+     * @throws IOException
+     */
+    private static byte[] writeSerializedGeoloc(byte[] header, Geoloc geoloc) throws IOException {
+		String label = geoloc.getLabel();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(header.length + SERIALIZED_GEOLOC_FIELDS_SIZE + 3
+				+ ((label != null) ? label.length() : 0));
+		DataOutputStream os = new DataOutputStream(bos);
+		os.write(header);
+		os.writeFloat(geoloc.getAccuracy());
+		os.writeLong(geoloc.getExpiration());
+		os.writeDouble(geoloc.getLatitude());
+		os.writeDouble(geoloc.getLongitude());
+		if (label != null) {
+			os.writeByte(ObjectStreamConstants.TC_STRING);
+			os.writeUTF(label);
+		} else {
+			os.writeByte(ObjectStreamConstants.TC_NULL);
+		}
+		os.close();
+		return bos.toByteArray();
+    }
+
+    /**
+     * Read the Java serialization of a geoloc without going through an
+     * ObjectInputStream
+     * 
+     * @param content BLOB content
+     * @return Geoloc object or null if the BLOB is not in the layout of
+     *         {@link #writeSerializedGeoloc(byte[], Geoloc)}
+     * @throws IOException
+     */
+    private static Geoloc readSerializedGeoloc(byte[] content) throws IOException {
+    	byte[] header = SERIALIZED_GEOLOC_HEADER;
+    	if ((header == null) || (content.length <= header.length + SERIALIZED_GEOLOC_FIELDS_SIZE)) {
+    		return null;
+    	}
+    	for (int i = 0; i < header.length; i++) {
+    		if (content[i] != header[i]) {
+    			return null;
+    		}
+    	}
+		DataInputStream is = new DataInputStream(new ByteArrayInputStream(content, header.length,
+				content.length - header.length));
+		float accuracy = is.readFloat();
+		long expiration = is.readLong();
+		double latitude = is.readDouble();
+		double longitude = is.readDouble();
+		String label;
+		byte type = is.readByte();
+		if (type == ObjectStreamConstants.TC_STRING) {
+			label = is.readUTF();
+		} else
+		if (type == ObjectStreamConstants.TC_NULL) {
+			label = null;
+		} else {
+			return null;
+		}
+		return new Geoloc(label, latitude, longitude, expiration, accuracy);
+    }
+
+    /**
+     * Returns the Java serialization of a geoloc up to its field values,
+     * taken from the output of an ObjectOutputStream
+     * 
+     * @return Stream header and class descriptor or null if the fields are
+     *         not serialized in the expected order
+     */
+    private static byte[] createSerializedGeolocHeader() {
+		try {
+			Geoloc probe = new Geoloc(null, 1.0, 2.0, 3L, 4.0f);
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream os = new ObjectOutputStream(bos);
+			os.writeObject(probe);
+			os.close();
+			byte[] blob = bos.toByteArray();
+
+			// The probe ends with the field values and a null label
+			byte[] header = new byte[blob.length - SERIALIZED_GEOLOC_FIELDS_SIZE - 1];
+			System.arraycopy(blob, 0, header, 0, header.length);
+			if (Arrays.equals(blob, writeSerializedGeoloc(header, probe))) {
+				return header;
+			}
+		} catch(Exception e) {
+			// Use the ObjectOutputStream
+		}
+		return null;
+    }
+
+    /**
+     * Is a geoloc BLOB written with Java serialization
+     * 
+     * @param content BLOB content
+     * @return Boolean
+     * @hide
+     */
+    public static boolean isSerializedGeolocBlob(byte[] content) {
+    	return (content != null) && (content.length > 1)
+    			&& ((short)(((content[0] & 0xff) << 8) | (content[1] & 0xff)) == ObjectStreamConstants.STREAM_MAGIC);
+    }
 }
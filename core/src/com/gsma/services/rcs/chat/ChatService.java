@@ -409,5 +409,25 @@ public class ChatService extends JoynService {
 		} else {
 			throw new JoynServiceNotAvailableException();
 		}
+	}
+
+	/**
+	 * Sets the chat displayed to the user, whose file transfers are resumed
+	 * before the others
+	 * 
+	 * @param chatId Chat ID of a group chat, contact of a single chat or null
+	 *            if no chat is displayed
+	 * @throws JoynServiceException
+	 */
+	public void setVisibleChat(String chatId) throws JoynServiceException {
+		if (api != null) {
+			try {
+				api.setVisibleChat(chatId);
+			} catch(Exception e) {
+				throw new JoynServiceException(e.getMessage());
+			}
+		} else {
+			throw new JoynServiceNotAvailableException();
+		}
 	}    
 }
@@ -127,4 +127,66 @@ public class FileTransferLog {
      * <P>Type: LONG</P>
      */
     public static final String MESSAGE_ID = "msg_id";
+
+    /**
+     * Query parameter restricting a page to a chat
+     * 
+     * @hide
+     */
+    public static final String PAGE_CHAT_ID = "chat_id";
+
+    /**
+     * Query parameter giving the timestamp of the last transfer of the previous page
+     * 
+     * @hide
+     */
+    public static final String PAGE_TIMESTAMP = "before_timestamp";
+
+    /**
+     * Query parameter giving the row ID of the last transfer of the previous page
+     * 
+     * @hide
+     */
+    public static final String PAGE_ID = "before_id";
+
+    /**
+     * Query parameter giving the maximum number of transfers of a page
+     * 
+     * @hide
+     */
+    public static final String PAGE_LIMIT = "limit";
+
+    /**
+     * Returns the URI of the first page of file transfers. Pages are ordered
+     * from the most recent transfer, by descending {@link #TIMESTAMP} then
+     * {@link #ID}.
+     * 
+     * @param chatId Chat ID of the group chat or null for all the transfers
+     * @param limit Maximum number of transfers
+     * @return URI
+     */
+    public static Uri getPageUri(String chatId, int limit) {
+        return getPageUri(chatId, Long.MAX_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * Returns the URI of the page of file transfers following a previous page
+     * 
+     * @param chatId Chat ID of the group chat or null for all the transfers
+     * @param timestamp Timestamp of the last transfer of the previous page
+     * @param id Row ID of the last transfer of the previous page
+     * @param limit Maximum number of transfers
+     * @return URI
+     * @see #getPageUri(String, int)
+     */
+    public static Uri getPageUri(String chatId, long timestamp, long id, int limit) {
+        Uri.Builder builder = CONTENT_URI.buildUpon();
+        if (chatId != null) {
+            builder.appendQueryParameter(PAGE_CHAT_ID, chatId);
+        }
+        return builder.appendQueryParameter(PAGE_TIMESTAMP, Long.toString(timestamp))
+                .appendQueryParameter(PAGE_ID, Long.toString(id))
+                .appendQueryParameter(PAGE_LIMIT, Integer.toString(limit))
+                .build();
+    }
 }
@@ -18,6 +18,7 @@
 package com.gsma.services.rcs.ipcall;
 
 import com.gsma.services.rcs.JoynServiceException;
+import com.gsma.services.rcs.MediaStatistics;
 
 /**
  * IP call
@@ -220,6 +221,21 @@ public class IPCall {
 		}
 	}
 
+	/**
+	 * Returns the statistics of the media pipeline of the call (latency and
+	 * throughput per processing stage)
+	 * 
+	 * @return Statistics or null if not available
+	 * @throws JoynServiceException
+	 */
+	public MediaStatistics getMediaStatistics() throws JoynServiceException {
+		try {
+			return callInf.getMediaStatistics();
+		} catch(Exception e) {
+			throw new JoynServiceException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Is video activated
 	 * 
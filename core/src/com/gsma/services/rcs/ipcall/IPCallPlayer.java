@@ -20,6 +20,8 @@ package com.gsma.services.rcs.ipcall;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.gsma.services.rcs.MediaStatistics;
+
 import com.gsma.services.rcs.JoynServiceException;
 
 /**
@@ -164,4 +166,14 @@ public abstract class IPCallPlayer extends IIPCallPlayer.Stub {
 	public void removeAllEventListeners() {
 		listeners.clear();
 	}
+
+	/**
+	 * Returns the statistics of the media pipeline of the player. The default
+	 * implementation returns null, the statistics are not supported.
+	 * 
+	 * @return Statistics or null
+	 */
+	public MediaStatistics getMediaStatistics() {
+		return null;
+	}
 }
@@ -20,6 +20,8 @@ package com.gsma.services.rcs.ipcall;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.gsma.services.rcs.MediaStatistics;
+
 /**
  * IP call renderer offers an interface to manage the IP call renderer instance
  * independently of the joyn service. The IP call renderer is implemented in
@@ -153,4 +155,14 @@ public abstract class IPCallRenderer extends IIPCallRenderer.Stub {
 	public void removeAllEventListeners() {
 		listeners.clear();
 	}	
+
+	/**
+	 * Returns the statistics of the media pipeline of the renderer. The default
+	 * implementation returns null, the statistics are not supported.
+	 * 
+	 * @return Statistics or null
+	 */
+	public MediaStatistics getMediaStatistics() {
+		return null;
+	}
 }
@@ -20,6 +20,8 @@ package com.gsma.services.rcs.vsh;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.gsma.services.rcs.MediaStatistics;
+
 /**
  * Video renderer offers an interface to manage the video renderer instance
  * independently of the joyn service. The video renderer is implemented in
@@ -137,4 +139,14 @@ public abstract class VideoRenderer extends IVideoRenderer.Stub {
 	public void removeAllEventListeners() {
 		listeners.clear();
 	}	
+
+	/**
+	 * Returns the statistics of the media pipeline of the renderer. The default
+	 * implementation returns null, the statistics are not supported.
+	 * 
+	 * @return Statistics or null
+	 */
+	public MediaStatistics getMediaStatistics() {
+		return null;
+	}
 }
@@ -18,6 +18,7 @@
 package com.gsma.services.rcs.vsh;
 
 import com.gsma.services.rcs.JoynServiceException;
+import com.gsma.services.rcs.MediaStatistics;
 
 /**
  * Video sharing
@@ -239,6 +240,21 @@ public class VideoSharing {
 		}
 	}
 
+	/**
+	 * Returns the statistics of the media pipeline of the sharing (latency and
+	 * throughput per processing stage)
+	 * 
+	 * @return Statistics or null if not available
+	 * @throws JoynServiceException
+	 */
+	public MediaStatistics getMediaStatistics() throws JoynServiceException {
+		try {
+			return sharingInf.getMediaStatistics();
+		} catch(Exception e) {
+			throw new JoynServiceException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Adds a listener on video sharing events
 	 * 
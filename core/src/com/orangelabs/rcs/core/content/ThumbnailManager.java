@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.content;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.orangelabs.rcs.platform.AndroidFactory;
+import com.orangelabs.rcs.platform.image.ImageFactory;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Thumbnail manager: generates the thumbnail of an image within a maximum
+ * size in bytes and dimensions, by decoding a subsampled image instead of
+ * loading the whole file, and keeps the thumbnails in a disk cache keyed by
+ * the hash of the image content, so that an image sent several times is
+ * decoded only once
+ * 
+ * @author Orange
+ */
+public class ThumbnailManager {
+	/**
+	 * Maximum width and height of a thumbnail in pixels
+	 */
+	public static final int MAX_DIMENSION = 320;
+
+	/**
+	 * Smallest dimension tried to fit in the size budget
+	 */
+	public static final int MIN_DIMENSION = 32;
+
+	/**
+	 * JPEG qualities tried to fit in the size budget at a given dimension
+	 */
+	public static final int[] QUALITIES = { 85, 70, 55, 40 };
+
+	/**
+	 * Maximum size of the disk cache in bytes
+	 */
+	public static final long MAX_CACHE_SIZE = 2 * 1024 * 1024;
+
+	/**
+	 * Name of the cache directory
+	 */
+	private static final String CACHE_DIRECTORY = "thumbnails";
+
+	/**
+	 * Extension of the cached thumbnails
+	 */
+	private static final String CACHE_EXTENSION = ".jpg";
+
+	/**
+	 * Singleton instance
+	 */
+	private static ThumbnailManager instance = null;
+
+	/**
+	 * Cache directory
+	 */
+	private File cacheDir;
+
+	/**
+	 * Maximum width of a thumbnail
+	 */
+	private int maxWidth;
+
+	/**
+	 * Maximum height of a thumbnail
+	 */
+	private int maxHeight;
+
+	/**
+	 * Maximum size of a thumbnail in bytes
+	 */
+	private int maxSize;
+
+	/**
+	 * Maximum size of the cache in bytes
+	 */
+	private long maxCacheSize;
+
+	/**
+	 * Number of thumbnails read from the cache
+	 */
+	private int hits = 0;
+
+	/**
+	 * Number of thumbnails generated
+	 */
+	private int misses = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Returns the instance of the manager, caching the thumbnails in the
+	 * cache directory of the application
+	 * 
+	 * @return Instance
+	 */
+	public static synchronized ThumbnailManager getInstance() {
+		if (instance == null) {
+			File cacheDir = new File(AndroidFactory.getApplicationContext().getCacheDir(), CACHE_DIRECTORY);
+			instance = new ThumbnailManager(cacheDir, MAX_DIMENSION, MAX_DIMENSION,
+					RcsSettings.getInstance().getMaxFileIconSize() * 1024, MAX_CACHE_SIZE);
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param cacheDir Cache directory
+	 * @param maxWidth Maximum width of a thumbnail
+	 * @param maxHeight Maximum height of a thumbnail
+	 * @param maxSize Maximum size of a thumbnail in bytes
+	 * @param maxCacheSize Maximum size of the cache in bytes
+	 */
+	public ThumbnailManager(File cacheDir, int maxWidth, int maxHeight, int maxSize, long maxCacheSize) {
+		this.cacheDir = cacheDir;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.maxSize = maxSize;
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Returns the number of thumbnails read from the cache
+	 * 
+	 * @return Number
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of thumbnails generated
+	 * 
+	 * @return Number
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the thumbnail of an image
+	 * 
+	 * @param filename Filename of the image
+	 * @return JPEG data or null if no thumbnail can be generated
+	 * @throws IOException
+	 */
+	public byte[] getThumbnail(String filename) throws IOException {
+		File thumbnail = getThumbnailFile(filename);
+		if (thumbnail == null) {
+			return null;
+		}
+		return readFile(thumbnail);
+	}
+
+	/**
+	 * Returns the cached thumbnail of an image, generating it if needed
+	 * 
+	 * @param filename Filename of the image
+	 * @return Thumbnail file or null if no thumbnail can be generated
+	 * @throws IOException
+	 */
+	private File getThumbnailFile(String filename) throws IOException {
+		File file = new File(filename);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		File thumbnail = new File(cacheDir, getKey(file) + CACHE_EXTENSION);
+		synchronized(this) {
+			if (thumbnail.exists()) {
+				hits++;
+				thumbnail.setLastModified(System.currentTimeMillis());
+				return thumbnail;
+			}
+			misses++;
+		}
+
+		long start = System.currentTimeMillis();
+		byte[] data = createThumbnail(file);
+		if (data == null) {
+			return null;
+		}
+		if (logger.isActivated()) {
+			logger.debug("Thumbnail of " + filename + " generated in " + (System.currentTimeMillis() - start)
+					+ " ms: " + data.length + " bytes");
+		}
+		storeThumbnail(thumbnail, data);
+		return thumbnail;
+	}
+
+	/**
+	 * Returns the key of the thumbnail of a file in the cache: hash of the
+	 * content and parameters of the thumbnail
+	 * 
+	 * @param file File of the image
+	 * @return Key
+	 * @throws IOException
+	 */
+	private String getKey(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-1 not supported");
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[16 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		StringBuffer key = new StringBuffer();
+		for (byte b : digest.digest()) {
+			key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+		}
+		return key.append('-').append(maxWidth).append('x').append(maxHeight).append('-').append(maxSize)
+				.toString();
+	}
+
+	/**
+	 * Generate the thumbnail of an image: the image is kept as is if it
+	 * already fits, else its dimensions are reduced to fit in the maximum
+	 * dimensions and then the quality and dimensions are lowered until the
+	 * thumbnail fits in the maximum size
+	 * 
+	 * @param file File of the image
+	 * @return JPEG data or null if no thumbnail can be generated
+	 * @throws IOException
+	 */
+	private byte[] createThumbnail(File file) throws IOException {
+		ImageFactory factory = ImageFactory.getFactory();
+		if (factory == null) {
+			return null;
+		}
+		int[] size = factory.getImageSize(file.getPath());
+		if (size == null) {
+			return null;
+		}
+		int width = size[0];
+		int height = size[1];
+		if ((width <= maxWidth) && (height <= maxHeight) && (file.length() <= maxSize)) {
+			return readFile(file);
+		}
+
+		// Fit in the maximum dimensions, keeping the aspect ratio
+		double scale = Math.min(1.0, Math.min((double)maxWidth / width, (double)maxHeight / height));
+		int targetWidth = Math.max(1, (int)Math.round(width * scale));
+		int targetHeight = Math.max(1, (int)Math.round(height * scale));
+		while (true) {
+			int sampleSize = ImageFactory.getSampleSize(width, height, targetWidth, targetHeight);
+			for (int quality : QUALITIES) {
+				byte[] data = factory.createThumbnail(file.getPath(), sampleSize, targetWidth, targetHeight, quality);
+				if (data == null) {
+					return null;
+				}
+				if (data.length <= maxSize) {
+					return data;
+				}
+			}
+			if (Math.max(targetWidth, targetHeight) / 2 < MIN_DIMENSION) {
+				if (logger.isActivated()) {
+					logger.warn("Thumbnail of " + file.getPath() + " exceeds " + maxSize + " bytes");
+				}
+				return null;
+			}
+			targetWidth = Math.max(1, targetWidth / 2);
+			targetHeight = Math.max(1, targetHeight / 2);
+		}
+	}
+
+	/**
+	 * Store a thumbnail in the cache and evict the least recently used
+	 * thumbnails beyond the maximum size of the cache
+	 * 
+	 * @param thumbnail Thumbnail file
+	 * @param data JPEG data
+	 */
+	private synchronized void storeThumbnail(File thumbnail, byte[] data) {
+		if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+			return;
+		}
+
+		// Written to a temporary file first, so that a partial thumbnail is never read
+		File tmp = new File(cacheDir, thumbnail.getName() + ".tmp");
+		try {
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(data);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(thumbnail)) {
+				tmp.delete();
+				return;
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			if (logger.isActivated()) {
+				logger.error("Can't store the thumbnail " + thumbnail.getName(), e);
+			}
+			return;
+		}
+
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long cacheSize = 0;
+		for (File file : files) {
+			cacheSize += file.length();
+		}
+		if (cacheSize <= maxCacheSize) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long modified1 = file1.lastModified();
+				long modified2 = file2.lastModified();
+				return (modified1 < modified2) ? -1 : ((modified1 == modified2) ? 0 : 1);
+			}
+		});
+		for (int i = 0; (i < files.length) && (cacheSize > maxCacheSize); i++) {
+			if (!files[i].equals(thumbnail)) {
+				cacheSize -= files[i].length();
+				files[i].delete();
+			}
+		}
+	}
+
+	/**
+	 * Read the content of a file
+	 * 
+	 * @param file File
+	 * @return Content
+	 * @throws IOException
+	 */
+	private static byte[] readFile(File file) throws IOException {
+		byte[] data = new byte[(int)file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < data.length) {
+				int count = in.read(data, read, data.length - read);
+				if (count == -1) {
+					throw new IOException("Unexpected end of " + file.getName());
+				}
+				read += count;
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+}
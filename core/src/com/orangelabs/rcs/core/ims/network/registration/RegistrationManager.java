@@ -178,6 +178,9 @@ public class RegistrationManager extends PeriodicRefresher {
             	// Reset the registration authentication procedure
             	registrationProcedure.init();
 
+            	// Set the feature tags of the current settings
+            	featureTags = RegistrationUtils.getSupportedFeatureTags();
+
         		// Set Call-Id
             	String callId = networkInterface.getSipManager().getSipStack().generateCallId();
 
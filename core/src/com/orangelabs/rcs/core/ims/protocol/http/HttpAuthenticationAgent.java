@@ -55,6 +55,11 @@ public class HttpAuthenticationAgent {
      */
 	private boolean isDigestAuthentication;
 
+	/**
+	 * Controls if the server has asked for an authentication
+	 */
+	private boolean challenged = false;
+
 	/**
 	 * Constructor
 	 * 
@@ -147,6 +152,31 @@ public class HttpAuthenticationAgent {
 		}
     }
 
+	/**
+	 * Returns true if the server has asked for an authentication, so that the
+	 * next requests may be authenticated without waiting for a new challenge
+	 * 
+	 * @return Boolean
+	 */
+	public boolean isChallenged() {
+		return challenged && (!isDigestAuthentication || (digest.getNextnonce() != null));
+	}
+
+	/**
+	 * Read the Authentication-Info header, the next nonce given by the
+	 * server replaces the current one
+	 * 
+	 * @param header Authentication-Info header
+	 */
+	public void readAuthenticationInfoHeader(String header) {
+		if ((header != null) && isDigestAuthentication) {
+			String value = getValue(header, "nextnonce");
+			if (value != null) {
+				digest.setNextnonce(value);
+			}
+		}
+	}
+
 	/**
 	 * Read the WWW-Authenticate header
 	 * 
@@ -154,6 +184,8 @@ public class HttpAuthenticationAgent {
 	 */
 	public void readWwwAuthenticateHeader(String header) {
         if (header != null) {
+        	challenged = true;
+
         	// According to "Rich Communication Suite 5.1 Advanced Communications - Services and Client Specification - Version 2.0 - 03 May 2013",
             // the authentication should be performed using basic authentication or HTTP digest as per [RFC2617]
             isDigestAuthentication = header.startsWith(HttpDigestMd5Authentication.HTTP_DIGEST_SCHEMA);
@@ -44,6 +44,16 @@ public abstract class HttpRequest {
 	 */
 	private String cookie = null;
 
+	/**
+	 * Entity tag which must match the current entity
+	 */
+	private String ifMatch = null;
+
+	/**
+	 * Entity tag which must not match the current entity
+	 */
+	private String ifNoneMatch = null;
+
 	/**
 	 * HTTP authentication agent
 	 */
@@ -144,6 +154,44 @@ public abstract class HttpRequest {
 	public void setCookie(String cookie) {
 		this.cookie = cookie;
 	}
+
+	/**
+	 * Returns the entity tag of the If-Match precondition
+	 * 
+	 * @return Entity tag or null
+	 */
+	public String getIfMatch() {
+		return ifMatch;
+	}
+
+	/**
+	 * Set the entity tag of the If-Match precondition, the request is
+	 * applied only if the entity has not changed
+	 * 
+	 * @param etag Entity tag
+	 */
+	public void setIfMatch(String etag) {
+		this.ifMatch = etag;
+	}
+
+	/**
+	 * Returns the entity tag of the If-None-Match precondition
+	 * 
+	 * @return Entity tag or null
+	 */
+	public String getIfNoneMatch() {
+		return ifNoneMatch;
+	}
+
+	/**
+	 * Set the entity tag of the If-None-Match precondition, the entity is
+	 * returned only if it has changed
+	 * 
+	 * @param etag Entity tag
+	 */
+	public void setIfNoneMatch(String etag) {
+		this.ifNoneMatch = etag;
+	}
 	
 	/**
 	 * Returns the AUID of the request
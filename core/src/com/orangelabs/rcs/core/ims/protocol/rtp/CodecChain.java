@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stats.PipelineStatistics;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.ProcessorOutputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.orangelabs.rcs.utils.logger.Logger;
@@ -43,6 +44,31 @@ public class CodecChain {
 	 * Renderer
 	 */
 	private ProcessorOutputStream renderer;
+
+	/**
+	 * Pipeline statistics
+	 */
+	private PipelineStatistics statistics = null;
+
+	/**
+	 * Stage from the capture to the end of the chain
+	 */
+	private int processingStage;
+
+	/**
+	 * Stage from the end of the chain to the data written in the output stream
+	 */
+	private int outputStage;
+
+	/**
+	 * Stage from the capture to the data written in the output stream
+	 */
+	private int pipelineStage;
+
+	/**
+	 * Capture time of the buffer in process
+	 */
+	private long captureTime;
 	
 	/**
      * The logger
@@ -73,6 +99,21 @@ public class CodecChain {
     	}
 	}
 	
+	/**
+	 * Set the statistics which record the time spent in the chain
+	 * 
+	 * @param statistics Pipeline statistics
+	 * @param processingStage Stage from the capture to the end of the chain
+	 * @param outputStage Stage from the end of the chain to the output stream
+	 * @param pipelineStage Stage from the capture to the output stream
+	 */
+	public void setStatistics(PipelineStatistics statistics, int processingStage, int outputStage, int pipelineStage) {
+		this.processingStage = processingStage;
+		this.outputStage = outputStage;
+		this.pipelineStage = pipelineStage;
+		this.statistics = statistics;
+	}
+
 	/**
 	 * Codec chain processing
 	 * 
@@ -80,6 +121,12 @@ public class CodecChain {
 	 * @return Result
 	 */
 	public int process(Buffer input) {
+		if (statistics != null) {
+			captureTime = input.getCaptureTime();
+			if (captureTime == Buffer.TIME_UNKNOWN) {
+				captureTime = System.nanoTime();
+			}
+		}
 		int codecNo = 0;
 		return doProcess(codecNo, input);
 	}
@@ -95,19 +142,34 @@ public class CodecChain {
 		if (codecNo == codecs.length) {
 			// End of chain
 			try {
+				long processedTime = 0;
+				if (statistics != null) {
+					processedTime = System.nanoTime();
+				}
+
 				// Write data to the output stream
+				int length = 0;
                 if (input.isFragmented()) {
                     // Write data from sub-buffers to the output stream
                     final Buffer[] fragments = input.getFragments();
                     for (int i = 0; i < input.getFragmentsSize(); i++) {
                     	Buffer fragment = fragments[i];
+                    	length += fragment.getLength();
                         renderer.write(fragment);
                         fragment.setData(null);
                     }
                     input.setFragments(null);
                 } else {
+                	length = input.getLength();
                     renderer.write(input);
                 }
+
+				if (statistics != null) {
+					long writtenTime = System.nanoTime();
+					statistics.record(processingStage, captureTime, processedTime, length);
+					statistics.record(outputStage, processedTime, writtenTime, length);
+					statistics.record(pipelineStage, captureTime, writtenTime, length);
+				}
 				return Codec.BUFFER_PROCESSED_OK;
 			} catch (Exception e) {
 				return Codec.BUFFER_PROCESSED_FAILED;
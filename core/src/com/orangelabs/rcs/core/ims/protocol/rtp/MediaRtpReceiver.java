@@ -22,6 +22,7 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaOutput;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.MediaRendererStream;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stats.PipelineStatistics;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpStreamListener;
 import com.orangelabs.rcs.utils.logger.Logger;
@@ -44,6 +45,11 @@ public class MediaRtpReceiver {
      * RTP Input Stream
      */
 	protected RtpInputStream inputStream = null;
+
+	/**
+	 * Pipeline statistics
+	 */
+	protected PipelineStatistics statistics = new PipelineStatistics();
 
 	/**
 	 * The logger
@@ -115,6 +121,8 @@ public class MediaRtpReceiver {
 
 		// Start the media processor
 		if (processor != null) {
+			processor.setStatistics(statistics, PipelineStatistics.STAGE_DEPACKETIZE,
+					PipelineStatistics.STAGE_RENDER, PipelineStatistics.STAGE_RECEIVE_TO_RENDER);
 			processor.startProcessing();
 		}
 	}
@@ -131,6 +139,10 @@ public class MediaRtpReceiver {
 		if (processor != null) {
 			processor.stopProcessing();
 		}
+
+		if (logger.isActivated()) {
+			logger.debug("Pipeline statistics: " + statistics);
+		}
 	}
 
     /**
@@ -141,4 +153,13 @@ public class MediaRtpReceiver {
     public RtpInputStream getInputStream() {
         return inputStream;
     }
+
+    /**
+     * Returns the pipeline statistics
+     *
+     * @return Statistics
+     */
+    public PipelineStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -21,6 +21,7 @@ package com.orangelabs.rcs.core.ims.protocol.rtp;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaInput;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stats.PipelineStatistics;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.MediaCaptureStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpOutputStream;
@@ -56,6 +57,11 @@ public class MediaRtpSender {
      */
 	protected int localRtpPort;
 
+    /**
+     * Pipeline statistics
+     */
+	protected PipelineStatistics statistics = new PipelineStatistics();
+
     /**
      * The logger
      */
@@ -182,6 +188,8 @@ public class MediaRtpSender {
 
     	// Start the media processor
 		if (processor != null) {
+			processor.setStatistics(statistics, PipelineStatistics.STAGE_PACKETIZE,
+					PipelineStatistics.STAGE_SEND, PipelineStatistics.STAGE_CAPTURE_TO_SEND);
 			processor.startProcessing();
 		}
     }
@@ -201,5 +209,27 @@ public class MediaRtpSender {
 
         if (outputStream != null)
             outputStream.close();
+
+        if (logger.isActivated()) {
+            logger.debug("Pipeline statistics: " + statistics);
+        }
+    }
+
+    /**
+     * Returns the pipeline statistics
+     *
+     * @return Statistics
+     */
+    public PipelineStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the RTP output stream
+     *
+     * @return Output stream
+     */
+    public RtpOutputStream getOutputStream() {
+        return outputStream;
     }
 }
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stats.PipelineStatistics;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.ProcessorInputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.ProcessorOutputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
@@ -77,6 +78,19 @@ public class Processor extends Thread {
         }
 	}
 
+	/**
+	 * Set the statistics which record the time spent in the codec chain and
+	 * in the output stream. Must be called before the processing is started.
+	 *
+	 * @param statistics Pipeline statistics
+	 * @param processingStage Stage from the capture to the end of the codec chain
+	 * @param outputStage Stage from the end of the codec chain to the output stream
+	 * @param pipelineStage Stage from the capture to the output stream
+	 */
+	public void setStatistics(PipelineStatistics statistics, int processingStage, int outputStage, int pipelineStage) {
+		codecChain.setStatistics(statistics, processingStage, outputStage, pipelineStage);
+	}
+
 	/**
 	 * Start processing
 	 */
@@ -30,4 +30,143 @@ public class RtpUtils {
      * 1 and 15 arbitrarily chosen by the sender, as defined in RFC5285
      */
     public static final int RTP_DEFAULT_EXTENSION_ID = 9;
+
+    /**
+     * Default dynamic payload type of the FEC stream (ULPFEC, RFC 5109)
+     */
+    public static final int RTP_DEFAULT_FEC_PAYLOAD_TYPE = 127;
+
+    /**
+     * Codec parameter carrying the negotiated FEC payload type to the media
+     */
+    public static final String FEC_CODEC_PARAMETER = "x-ulpfec-pt";
+
+    /**
+     * Codec parameter carrying the negotiated RTCP feedback messages to the media
+     */
+    public static final String RTCP_FB_CODEC_PARAMETER = "x-rtcp-fb";
+
+    /**
+     * Generic NACK feedback, RFC4585
+     */
+    public static final String RTCP_FB_NACK = "nack";
+
+    /**
+     * Picture loss indication feedback, RFC4585
+     */
+    public static final String RTCP_FB_PLI = "pli";
+
+    /**
+     * Add the FEC payload type to codec parameters
+     *
+     * @param codecParams Codec parameters
+     * @param payloadType FEC payload type
+     * @return Codec parameters
+     */
+    public static String addFecPayloadType(String codecParams, int payloadType) {
+        return addCodecParameter(codecParams, FEC_CODEC_PARAMETER, String.valueOf(payloadType));
+    }
+
+    /**
+     * Get the FEC payload type from codec parameters
+     *
+     * @param codecParams Codec parameters
+     * @return FEC payload type or -1 if FEC is not used
+     */
+    public static int getFecPayloadType(String codecParams) {
+        String value = getCodecParameter(codecParams, FEC_CODEC_PARAMETER);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Add the negotiated RTCP feedback messages to codec parameters
+     *
+     * @param codecParams Codec parameters
+     * @param nack Generic NACK negotiated
+     * @param pli Picture loss indication negotiated
+     * @return Codec parameters
+     */
+    public static String addRtcpFeedback(String codecParams, boolean nack, boolean pli) {
+        if (!nack && !pli) {
+            return codecParams;
+        }
+        String value;
+        if (nack && pli) {
+            value = RTCP_FB_NACK + "," + RTCP_FB_PLI;
+        } else if (nack) {
+            value = RTCP_FB_NACK;
+        } else {
+            value = RTCP_FB_PLI;
+        }
+        return addCodecParameter(codecParams, RTCP_FB_CODEC_PARAMETER, value);
+    }
+
+    /**
+     * Is a RTCP feedback message negotiated in codec parameters
+     *
+     * @param codecParams Codec parameters
+     * @param feedback Feedback message (RTCP_FB_NACK or RTCP_FB_PLI)
+     * @return Boolean
+     */
+    public static boolean isRtcpFeedbackEnabled(String codecParams, String feedback) {
+        String value = getCodecParameter(codecParams, RTCP_FB_CODEC_PARAMETER);
+        if (value == null) {
+            return false;
+        }
+        String[] values = value.split(",");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].trim().equalsIgnoreCase(feedback)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a parameter to codec parameters with format 'key1=value1;...;keyN=valueN'
+     *
+     * @param codecParams Codec parameters
+     * @param key Parameter name
+     * @param value Parameter value
+     * @return Codec parameters
+     */
+    private static String addCodecParameter(String codecParams, String key, String value) {
+        StringBuilder params = new StringBuilder();
+        if (codecParams != null && codecParams.length() > 0) {
+            params.append(codecParams);
+            if (!codecParams.endsWith(";")) {
+                params.append(";");
+            }
+        }
+        params.append(key).append("=").append(value);
+        return params.toString();
+    }
+
+    /**
+     * Get a parameter from codec parameters with format 'key1=value1;...;keyN=valueN'
+     *
+     * @param codecParams Codec parameters
+     * @param key Parameter name
+     * @return Parameter value or null if not present
+     */
+    private static String getCodecParameter(String codecParams, String key) {
+        if (codecParams == null) {
+            return null;
+        }
+        String[] params = codecParams.split(";");
+        for (int i = 0; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith(key + "=")) {
+                return param.substring(key.length() + 1).trim();
+            }
+        }
+        return null;
+    }
 }
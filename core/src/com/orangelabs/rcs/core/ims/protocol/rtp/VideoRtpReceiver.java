@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.JavaDepacketizer;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaOutput;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
@@ -31,6 +32,21 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.stream.VideoRendererStream;
  * @author hlxn7157
  */
 public class VideoRtpReceiver  extends MediaRtpReceiver {
+    /**
+     * FEC payload type, -1 if FEC is not used
+     */
+    private int fecPayloadType = -1;
+
+    /**
+     * Generic NACK negotiated
+     */
+    private boolean nackEnabled = false;
+
+    /**
+     * Picture loss indication negotiated
+     */
+    private boolean pliEnabled = false;
+
     /**
      * Constructor
      *
@@ -58,6 +74,8 @@ public class VideoRtpReceiver  extends MediaRtpReceiver {
 			// Create the input stream
             inputStream = new RtpInputStream(remoteAddress, remotePort, localPort, format);
             inputStream.setExtensionHeaderId(orientationHeaderId);
+            inputStream.setFecPayloadType(fecPayloadType);
+            inputStream.setRtcpFeedback(nackEnabled, pliEnabled);
             inputStream.addRtpStreamListener(rtpStreamListener);
     		inputStream.open();
 			if (logger.isActivated()) {
@@ -73,6 +91,14 @@ public class VideoRtpReceiver  extends MediaRtpReceiver {
 
         	// Create the codec chain
         	Codec[] codecChain = MediaRegistry.generateDecodingCodecChain(format.getCodec());
+            if (pliEnabled) {
+                // Request a key frame when a frame can't be reassembled
+                for (int i = 0; i < codecChain.length; i++) {
+                    if (codecChain[i] instanceof JavaDepacketizer) {
+                        ((JavaDepacketizer)codecChain[i]).setKeyFrameRequestListener(inputStream);
+                    }
+                }
+            }
 
             // Create the media processor
     		processor = new Processor(inputStream, outputStream, codecChain);
@@ -87,4 +113,27 @@ public class VideoRtpReceiver  extends MediaRtpReceiver {
         	throw new RtpException("Can't prepare resources");
         }
     }
+
+    /**
+     * Set the negotiated FEC payload type (ULPFEC, RFC 5109). Must be called
+     * before the session is prepared.
+     *
+     * @param fecPayloadType FEC payload type
+     */
+    public void setFecPayloadType(int fecPayloadType) {
+        this.fecPayloadType = fecPayloadType;
+    }
+
+    /**
+     * Set the negotiated RTCP feedback messages (RFC 4585): generic NACK to
+     * request the lost packets, and PLI to request a key frame when a frame
+     * can't be recovered. Must be called before the session is prepared.
+     *
+     * @param nack Generic NACK negotiated
+     * @param pli Picture loss indication negotiated
+     */
+    public void setRtcpFeedback(boolean nack, boolean pli) {
+        this.nackEnabled = nack;
+        this.pliEnabled = pli;
+    }
 }
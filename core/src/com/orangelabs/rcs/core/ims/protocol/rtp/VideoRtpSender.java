@@ -19,6 +19,8 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.KeyFrameRequestListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaInput;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
@@ -32,6 +34,26 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.stream.VideoCaptureStream;
  * @author hlxn7157
  */
 public class VideoRtpSender extends MediaRtpSender {
+    /**
+     * Congestion controller
+     */
+    private CongestionController congestionController = null;
+
+    /**
+     * FEC payload type, -1 if FEC is not used
+     */
+    private int fecPayloadType = -1;
+
+    /**
+     * FEC protection level in percent
+     */
+    private int fecProtectionLevel = 0;
+
+    /**
+     * Listener of the key frame requests of the remote
+     */
+    private KeyFrameRequestListener keyFrameRequestListener = null;
+
     /**
      * Constructor
      *
@@ -63,6 +85,9 @@ public class VideoRtpSender extends MediaRtpSender {
             // Create the output stream
             outputStream = new RtpOutputStream(remoteAddress, remotePort, localRtpPort, RtpOutputStream.RTCP_SOCKET_TIMEOUT);
             outputStream.addRtpStreamListener(rtpStreamListener);
+            outputStream.setCongestionController(congestionController);
+            outputStream.setFecParameters(fecPayloadType, fecProtectionLevel);
+            outputStream.setKeyFrameRequestListener(keyFrameRequestListener);
             outputStream.open();
 			if (logger.isActivated()) {
 				logger.debug("Output stream: " + outputStream.getClass().getName());
@@ -111,6 +136,9 @@ public class VideoRtpSender extends MediaRtpSender {
             //outputStream = new RtpOutputStream(remoteAddress, remotePort, localRtpPort, RtpOutputStream.RTCP_SOCKET_TIMEOUT);
             outputStream = new RtpOutputStream(remoteAddress, remotePort, rtpStream);
             outputStream.addRtpStreamListener(rtpStreamListener);
+            outputStream.setCongestionController(congestionController);
+            outputStream.setFecParameters(fecPayloadType, fecProtectionLevel);
+            outputStream.setKeyFrameRequestListener(keyFrameRequestListener);
             outputStream.open();
 			if (logger.isActivated()) {
 				logger.debug("Output stream: " + outputStream.getClass().getName());
@@ -132,4 +160,46 @@ public class VideoRtpSender extends MediaRtpSender {
         	throw new RtpException("Can't prepare resources");
         }
     }
+
+    /**
+     * Set the congestion controller which adapts the encoding rate from the
+     * RTCP feedback. Must be called before the session is prepared.
+     *
+     * @param congestionController Congestion controller
+     */
+    public void setCongestionController(CongestionController congestionController) {
+        this.congestionController = congestionController;
+    }
+
+    /**
+     * Returns the congestion controller
+     *
+     * @return Congestion controller or null
+     */
+    public CongestionController getCongestionController() {
+        return congestionController;
+    }
+
+    /**
+     * Set the listener of the picture loss indications of the remote, which
+     * must encode the next frame as a key frame. Must be called before the
+     * session is prepared.
+     *
+     * @param keyFrameRequestListener Listener
+     */
+    public void setKeyFrameRequestListener(KeyFrameRequestListener keyFrameRequestListener) {
+        this.keyFrameRequestListener = keyFrameRequestListener;
+    }
+
+    /**
+     * Set the forward error correction parameters (ULPFEC, RFC 5109). Must be
+     * called before the session is prepared.
+     *
+     * @param payloadType Negotiated FEC payload type
+     * @param protectionLevel Number of FEC packets in percent of the media packets
+     */
+    public void setFecParameters(int payloadType, int protectionLevel) {
+        this.fecPayloadType = payloadType;
+        this.fecProtectionLevel = protectionLevel;
+    }
 }
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.VideoCodec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.KeyFrameRequestListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
@@ -63,6 +64,11 @@ public class JavaDepacketizer extends VideoCodec {
      */
     private int aggregationPositon = 1;
 
+    /**
+     * Listener notified when an incomplete frame is dropped
+     */
+    private KeyFrameRequestListener keyFrameRequestListener = null;
+
     /**
      * Constructor
      */
@@ -206,6 +212,11 @@ public class JavaDepacketizer extends VideoCodec {
             assemblersCollection.put(input);
             if (assemblersCollection.getLastActiveAssembler().complete()) {
                 assemblersCollection.getLastActiveAssembler().copyToBuffer(output);
+                if ((keyFrameRequestListener != null)
+                        && assemblersCollection.hasIncompleteOlderThan(input.getTimeStamp())) {
+                    // An older frame will never be decoded, the next frames depend on it
+                    keyFrameRequestListener.keyFrameRequested();
+                }
                 assemblersCollection.removeOldestThan(input.getTimeStamp());
                 return BUFFER_PROCESSED_OK;
             } else {
@@ -218,6 +229,16 @@ public class JavaDepacketizer extends VideoCodec {
         }
     }
 
+    /**
+     * Set the listener notified when a frame is dropped because some of its
+     * fragments are missing
+     *
+     * @param listener Listener
+     */
+    public void setKeyFrameRequestListener(KeyFrameRequestListener listener) {
+        this.keyFrameRequestListener = listener;
+    }
+
     /**
      * Used to assemble fragments with the same timestamp into a single frame.
      */
@@ -523,6 +544,21 @@ public class JavaDepacketizer extends VideoCodec {
             return assemblerNumber;
         }
 
+        /**
+         * Is there a frame older than given timeStamp still waiting for fragments
+         *
+         * @param timeStamp
+         * @return Boolean
+         */
+        public boolean hasIncompleteOlderThan(long timeStamp) {
+            for (int i = 0; i < numberOfAssemblers; i++) {
+                if ((assemblers[i].getTimeStamp() < timeStamp) && (assemblers[i].reassembledData != null)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         /**
          * Remove oldest FrameAssembler than given timeStamp (if given timeStamp
          * has been rendered, then oldest ones are no more of no use) This also
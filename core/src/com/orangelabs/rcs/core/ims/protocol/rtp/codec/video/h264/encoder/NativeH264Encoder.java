@@ -39,6 +39,19 @@ public class NativeH264Encoder {
 
     public static native int getLastEncodeStatus();
 
+    /**
+     * Force the next encoded frame to be an IDR frame. The native encoder has
+     * no key frame request: it is reinitialized, which restarts the GOP. The
+     * SPS and PPS have to be sent again.
+     *
+     * @param nativeH264EncoderParams Current encoder parameters
+     * @return Init result, 0 on success
+     */
+    public static int forceKeyFrame(NativeH264EncoderParams nativeH264EncoderParams) {
+        DeinitEncoder();
+        return InitEncoder(nativeH264EncoderParams);
+    }
+
     static {
         String libname = "H264Encoder";
         try {
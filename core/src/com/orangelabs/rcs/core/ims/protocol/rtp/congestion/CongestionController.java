@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.congestion;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Congestion controller. Computes a target bit rate and frame rate from the
+ * reception statistics received in RTCP reports (fraction lost, jitter and
+ * round trip time) and from the TMMBR requests (RFC 5104) of the remote.
+ * <br>
+ * The controller is loss based with a delay trigger: the rate is decreased
+ * proportionally to the loss above 10%, decreased by a fixed factor when the
+ * queuing delay grows, held between 2% and 10% of loss and increased
+ * multiplicatively otherwise. The time is given by the caller so that the
+ * behavior is deterministic.
+ *
+ * @author Orange
+ */
+public class CongestionController {
+    /**
+     * Fraction lost above which the rate is decreased
+     */
+    private static final double LOSS_HIGH_THRESHOLD = 0.10;
+
+    /**
+     * Fraction lost under which the rate may be increased
+     */
+    private static final double LOSS_LOW_THRESHOLD = 0.02;
+
+    /**
+     * Queuing delay above which the link is considered as overused (ms)
+     */
+    private static final long DELAY_THRESHOLD = 150;
+
+    /**
+     * Jitter above which the link is considered as overused (ms)
+     */
+    private static final long JITTER_THRESHOLD = 80;
+
+    /**
+     * Decrease factor applied on delay overuse
+     */
+    private static final double DELAY_DECREASE_FACTOR = 0.85;
+
+    /**
+     * Increase factor applied when the link is not congested
+     */
+    private static final double INCREASE_FACTOR = 1.08;
+
+    /**
+     * Minimum time between a decrease and the next increase (ms)
+     */
+    private static final long HOLD_TIME = 2000;
+
+    /**
+     * Minimum relative bit rate change notified to the listener
+     */
+    private static final double NOTIFICATION_THRESHOLD = 0.05;
+
+    /**
+     * Minimum bit rate
+     */
+    private int minBitRate;
+
+    /**
+     * Maximum bit rate
+     */
+    private int maxBitRate;
+
+    /**
+     * Maximum bit rate requested by the remote (TMMBR)
+     */
+    private int remoteMaxBitRate = Integer.MAX_VALUE;
+
+    /**
+     * Minimum frame rate
+     */
+    private int minFrameRate;
+
+    /**
+     * Maximum frame rate
+     */
+    private int maxFrameRate;
+
+    /**
+     * RTP clock rate used to convert the jitter
+     */
+    private int clockRate;
+
+    /**
+     * Current target bit rate
+     */
+    private double targetBitRate;
+
+    /**
+     * Current target frame rate
+     */
+    private int targetFrameRate;
+
+    /**
+     * Last notified bit rate
+     */
+    private int notifiedBitRate;
+
+    /**
+     * Last notified frame rate
+     */
+    private int notifiedFrameRate;
+
+    /**
+     * Minimum round trip time observed
+     */
+    private long minRtt = -1;
+
+    /**
+     * Last round trip time
+     */
+    private long lastRtt = -1;
+
+    /**
+     * Time of the last decrease
+     */
+    private long lastDecreaseTime = 0;
+
+    /**
+     * Listener
+     */
+    private CongestionListener listener = null;
+
+    /**
+     * The logger
+     */
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /**
+     * Constructor
+     *
+     * @param startBitRate Initial bit rate in bit per second
+     * @param minBitRate Minimum bit rate in bit per second
+     * @param maxBitRate Maximum bit rate in bit per second
+     * @param minFrameRate Minimum frame rate
+     * @param maxFrameRate Maximum frame rate
+     * @param clockRate RTP clock rate
+     */
+    public CongestionController(int startBitRate, int minBitRate, int maxBitRate,
+            int minFrameRate, int maxFrameRate, int clockRate) {
+        this.minBitRate = minBitRate;
+        this.maxBitRate = maxBitRate;
+        this.minFrameRate = minFrameRate;
+        this.maxFrameRate = maxFrameRate;
+        this.clockRate = clockRate;
+        this.targetBitRate = startBitRate;
+        this.targetFrameRate = computeFrameRate(startBitRate);
+        this.notifiedBitRate = startBitRate;
+        this.notifiedFrameRate = targetFrameRate;
+    }
+
+    /**
+     * Set the listener
+     *
+     * @param listener Listener
+     */
+    public void setListener(CongestionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Process a RTCP reception report
+     *
+     * @param fractionLost Fraction lost as received in the report (0 to 255)
+     * @param jitter Interarrival jitter in RTP timestamp units
+     * @param rtt Round trip time in milliseconds or -1 if unknown
+     * @param now Current time in milliseconds
+     */
+    public synchronized void processReport(int fractionLost, long jitter, long rtt, long now) {
+        double loss = (fractionLost & 0xff) / 256.0;
+        long jitterMs = (clockRate > 0) ? (jitter * 1000) / clockRate : 0;
+
+        // Queuing delay estimation from the RTT increase
+        long queuingDelay = 0;
+        if (rtt >= 0) {
+            if ((minRtt < 0) || (rtt < minRtt)) {
+                minRtt = rtt;
+            }
+            queuingDelay = rtt - minRtt;
+            lastRtt = rtt;
+        }
+
+        if (loss > LOSS_HIGH_THRESHOLD) {
+            // Loss based decrease
+            targetBitRate = targetBitRate * (1 - 0.5 * loss);
+            lastDecreaseTime = now;
+        } else if ((queuingDelay > DELAY_THRESHOLD) || (jitterMs > JITTER_THRESHOLD)) {
+            // Delay based decrease
+            targetBitRate = targetBitRate * DELAY_DECREASE_FACTOR;
+            lastDecreaseTime = now;
+        } else if ((loss < LOSS_LOW_THRESHOLD) && (now - lastDecreaseTime >= HOLD_TIME)) {
+            // Probe for more bandwidth
+            targetBitRate = targetBitRate * INCREASE_FACTOR + 1000;
+        }
+        updateTarget();
+    }
+
+    /**
+     * Process a TMMBR request from the remote
+     *
+     * @param bitRate Maximum bit rate requested in bit per second
+     */
+    public synchronized void processTmmbr(long bitRate) {
+        if (bitRate <= 0) {
+            return;
+        }
+        remoteMaxBitRate = (int)Math.min(bitRate, Integer.MAX_VALUE);
+        if (logger.isActivated()) {
+            logger.debug("TMMBR received: " + remoteMaxBitRate + " bps");
+        }
+        updateTarget();
+    }
+
+    /**
+     * Returns the target bit rate
+     *
+     * @return Bit rate in bit per second
+     */
+    public synchronized int getTargetBitRate() {
+        return (int)targetBitRate;
+    }
+
+    /**
+     * Returns the target frame rate
+     *
+     * @return Frame rate
+     */
+    public synchronized int getTargetFrameRate() {
+        return targetFrameRate;
+    }
+
+    /**
+     * Returns the last round trip time
+     *
+     * @return Round trip time in milliseconds or -1 if unknown
+     */
+    public synchronized long getRoundTripTime() {
+        return lastRtt;
+    }
+
+    /**
+     * Clamp the target, compute the frame rate and notify the listener
+     */
+    private void updateTarget() {
+        int upperBound = Math.min(maxBitRate, remoteMaxBitRate);
+        if (targetBitRate > upperBound) {
+            targetBitRate = upperBound;
+        }
+        if (targetBitRate < minBitRate) {
+            targetBitRate = minBitRate;
+        }
+        int bitRate = (int)targetBitRate;
+        targetFrameRate = computeFrameRate(bitRate);
+
+        if ((Math.abs(bitRate - notifiedBitRate) > notifiedBitRate * NOTIFICATION_THRESHOLD)
+                || (targetFrameRate != notifiedFrameRate)) {
+            notifiedBitRate = bitRate;
+            notifiedFrameRate = targetFrameRate;
+            if (logger.isActivated()) {
+                logger.debug("New target rate: " + bitRate + " bps, " + targetFrameRate + " fps");
+            }
+            if (listener != null) {
+                listener.targetRateChanged(bitRate, targetFrameRate);
+            }
+        }
+    }
+
+    /**
+     * Compute the frame rate associated to a bit rate: the frame rate is kept
+     * at its maximum down to half of the maximum bit rate, then decreased
+     * proportionally in order to preserve the picture quality
+     *
+     * @param bitRate Bit rate
+     * @return Frame rate
+     */
+    private int computeFrameRate(int bitRate) {
+        double ratio = (double)bitRate * 2 / maxBitRate;
+        if (ratio >= 1) {
+            return maxFrameRate;
+        }
+        return Math.max(minFrameRate, (int)Math.round(maxFrameRate * ratio));
+    }
+}
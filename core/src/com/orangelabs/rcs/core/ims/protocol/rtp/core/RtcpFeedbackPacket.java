@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * RTCP feedback packet (RFC 4585), transport layer (RTPFB) or payload
+ * specific (PSFB)
+ *
+ * @author Orange
+ */
+public class RtcpFeedbackPacket extends RtcpPacket {
+    /**
+     * RTPFB format: generic NACK
+     */
+    public static final int FMT_NACK = 1;
+
+    /**
+     * RTPFB format: temporary maximum media stream bit rate request (RFC 5104)
+     */
+    public static final int FMT_TMMBR = 3;
+
+    /**
+     * RTPFB format: temporary maximum media stream bit rate notification (RFC 5104)
+     */
+    public static final int FMT_TMMBN = 4;
+
+    /**
+     * PSFB format: picture loss indication
+     */
+    public static final int FMT_PLI = 1;
+
+    /**
+     * Feedback message type
+     */
+    public int fmt;
+
+    /**
+     * SSRC of packet sender
+     */
+    public int ssrc;
+
+    /**
+     * SSRC of media source
+     */
+    public int mediaSsrc;
+
+    /**
+     * Feedback control information
+     */
+    public byte[] fci;
+
+    /**
+     * Constructor
+     *
+     * @param parent Parent packet
+     * @param type Packet type (RTPFB or PSFB)
+     */
+    public RtcpFeedbackPacket(RtcpPacket parent, int type) {
+        super(parent);
+
+        super.type = type;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param type Packet type (RTPFB or PSFB)
+     * @param fmt Feedback message type
+     * @param ssrc SSRC of packet sender
+     * @param mediaSsrc SSRC of media source
+     * @param fci Feedback control information
+     */
+    public RtcpFeedbackPacket(int type, int fmt, int ssrc, int mediaSsrc, byte[] fci) {
+        this.fmt = fmt;
+        this.ssrc = ssrc;
+        this.mediaSsrc = mediaSsrc;
+        this.fci = fci;
+        super.type = type;
+
+        if ((fci.length & 3) != 0) {
+            throw new IllegalArgumentException("Bad FCI length");
+        }
+        if (fmt < 0 || fmt > 31) {
+            throw new IllegalArgumentException("Bad feedback message type");
+        }
+    }
+
+    /**
+     * Create a generic NACK packet
+     *
+     * @param ssrc SSRC of packet sender
+     * @param mediaSsrc SSRC of media source
+     * @param seqnums Sequence numbers of the lost packets, in increasing order
+     * @return RTCP feedback packet
+     */
+    public static RtcpFeedbackPacket createNack(int ssrc, int mediaSsrc, int[] seqnums) {
+        // Each FCI entry gives a packet id and a bitmask of the 16 following lost packets
+        byte[] fci = new byte[seqnums.length * 4];
+        int length = 0;
+        int i = 0;
+        while (i < seqnums.length) {
+            int pid = seqnums[i++] & 0xffff;
+            int blp = 0;
+            while (i < seqnums.length) {
+                int offset = ((seqnums[i] - pid) & 0xffff) - 1;
+                if ((offset < 0) || (offset >= 16)) {
+                    break;
+                }
+                blp |= 1 << offset;
+                i++;
+            }
+            fci[length++] = (byte)(pid >> 8);
+            fci[length++] = (byte)pid;
+            fci[length++] = (byte)(blp >> 8);
+            fci[length++] = (byte)blp;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(fci, 0, result, 0, length);
+        return new RtcpFeedbackPacket(RTCP_RTPFB, FMT_NACK, ssrc, mediaSsrc, result);
+    }
+
+    /**
+     * Create a picture loss indication packet
+     *
+     * @param ssrc SSRC of packet sender
+     * @param mediaSsrc SSRC of media source
+     * @return RTCP feedback packet
+     */
+    public static RtcpFeedbackPacket createPli(int ssrc, int mediaSsrc) {
+        return new RtcpFeedbackPacket(RTCP_PSFB, FMT_PLI, ssrc, mediaSsrc, new byte[0]);
+    }
+
+    /**
+     * Is a generic NACK
+     *
+     * @return Boolean
+     */
+    public boolean isNack() {
+        return (type == RTCP_RTPFB) && (fmt == FMT_NACK) && (fci != null) && (fci.length >= 4);
+    }
+
+    /**
+     * Returns the sequence numbers of the lost packets reported by a generic NACK
+     *
+     * @return Sequence numbers
+     */
+    public int[] getNackSeqnums() {
+        int[] seqnums = new int[(fci.length / 4) * 17];
+        int size = 0;
+        for (int i = 0; i + 3 < fci.length; i += 4) {
+            int pid = ((fci[i] & 0xff) << 8) | (fci[i + 1] & 0xff);
+            int blp = ((fci[i + 2] & 0xff) << 8) | (fci[i + 3] & 0xff);
+            seqnums[size++] = pid;
+            for (int j = 0; j < 16; j++) {
+                if ((blp & (1 << j)) != 0) {
+                    seqnums[size++] = (pid + j + 1) & 0xffff;
+                }
+            }
+        }
+        int[] result = new int[size];
+        System.arraycopy(seqnums, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Is a picture loss indication
+     *
+     * @return Boolean
+     */
+    public boolean isPli() {
+        return (type == RTCP_PSFB) && (fmt == FMT_PLI);
+    }
+
+    /**
+     * Is a TMMBR request
+     *
+     * @return Boolean
+     */
+    public boolean isTmmbr() {
+        return (type == RTCP_RTPFB) && (fmt == FMT_TMMBR) && (fci != null) && (fci.length >= 8);
+    }
+
+    /**
+     * Returns the SSRC targeted by the TMMBR request
+     *
+     * @return SSRC
+     */
+    public int getTmmbrSsrc() {
+        return ((fci[0] & 0xff) << 24) | ((fci[1] & 0xff) << 16) | ((fci[2] & 0xff) << 8) | (fci[3] & 0xff);
+    }
+
+    /**
+     * Returns the maximum bit rate requested by the TMMBR request
+     *
+     * @return Bit rate in bit per second
+     */
+    public long getTmmbrBitrate() {
+        long value = ((long)(fci[4] & 0xff) << 24) | ((fci[5] & 0xff) << 16) | ((fci[6] & 0xff) << 8) | (fci[7] & 0xff);
+        int exp = (int)((value >>> 26) & 0x3f);
+        long mantissa = (value >>> 9) & 0x1ffff;
+        return mantissa << exp;
+    }
+
+    public int calcLength() {
+        return 12 + fci.length;
+    }
+
+    public void assemble(DataOutputStream out) throws IOException {
+        out.writeByte(128 + fmt);
+        out.writeByte(type);
+        out.writeShort(2 + (fci.length >> 2));
+        out.writeInt(ssrc);
+        out.writeInt(mediaSsrc);
+        out.write(fci);
+    }
+}
@@ -22,6 +22,7 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpApplicationEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpByeEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEventListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpFeedbackEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpReceiverReportEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpSdesEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpSenderReportEvent;
@@ -447,6 +448,28 @@ public class RtcpPacketReceiver extends Thread {
 						notifyRtcpListeners(new RtcpApplicationEvent(appp));
 						break;
 
+					// RTCP feedback event
+                    case RtcpPacket.RTCP_RTPFB:
+                    case RtcpPacket.RTCP_PSFB:
+						if (inlength < 12) {
+							stats.numMalformedRtcpPkts++;
+							if (logger.isActivated()) {
+								logger.error("Bad RTCP feedback packet format");
+							}
+							return null;
+						}
+						RtcpFeedbackPacket fbp = new RtcpFeedbackPacket(compoundPacket, type);
+						subpacket = fbp;
+						fbp.fmt = firstbyte;
+						fbp.ssrc = in.readInt();
+						fbp.mediaSsrc = in.readInt();
+						fbp.fci = new byte[inlength - 12];
+						in.readFully(fbp.fci);
+
+						// Notify event listeners
+						notifyRtcpListeners(new RtcpFeedbackEvent(fbp));
+						break;
+
 					// RTCP unknown event
 					default:
 						stats.numUnknownTypes++;
@@ -265,7 +265,8 @@ public class RtcpPacketTransmitter extends Thread {
         byte V_P_RC = (byte)((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | (0x00));
         byte ss[] = RtcpPacketUtils.longToBytes(rtcpSession.SSRC, 4);
         byte PT[] = RtcpPacketUtils.longToBytes((long)RtcpPacket.RTCP_SR, 1);
-        byte NTP_TimeStamp[] = RtcpPacketUtils.longToBytes(rtcpSession.currentTime(), 8);
+        long ntpTime = rtcpSession.currentTime();
+        byte NTP_TimeStamp[] = RtcpPacketUtils.longToBytes(ntpTime, 8);
         short randomOffset = (short)Math.abs(rand.nextInt() & 0x000000FF);
         byte RTP_TimeStamp[] = RtcpPacketUtils.longToBytes((long)rtcpSession.tc
                 + randomOffset, 4);
@@ -296,6 +297,9 @@ public class RtcpPacketTransmitter extends Thread {
         rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, SenderOctetCount);
         rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, receptionReportBlocks);
 
+        // Keep the SR timestamp for the round trip time computation
+        rtcpSession.recordSenderReport(ntpTime);
+
         return rtcpSRPacket;
     }
 
@@ -357,6 +361,30 @@ public class RtcpPacketTransmitter extends Thread {
         return reportBlock;
     }
 
+    /**
+     * Send a feedback packet immediately (RFC 4585 early feedback). The
+     * feedback is sent in a compound packet starting with a receiver report.
+     *
+     * @param packet Feedback packet
+     */
+    public void sendFeedbackPacket(RtcpFeedbackPacket packet) {
+        if (closed) {
+            return;
+        }
+
+        // SDES and feedback packets
+        Vector<RtcpSdesPacket> repvec = makereports();
+        RtcpPacket[] packets = new RtcpPacket[repvec.size() + 1];
+        repvec.copyInto(packets);
+        packets[packets.length - 1] = packet;
+        RtcpCompoundPacket cp = new RtcpCompoundPacket(packets);
+        cp.assemble(cp.calcLength(), false);
+
+        // Send the RTCP packet
+        byte[] data = RtcpPacketUtils.append(assembleReceiverReportPacket(), cp.data);
+        transmit(data);
+    }
+
 	/**
 	 * Send a BYE packet
 	 */
@@ -133,6 +133,26 @@ public class RtcpSession {
     */
     public long octetCount;
 
+    /**
+     * Number of sent sender reports kept for round trip time computation
+     */
+    private static final int SR_HISTORY_SIZE = 8;
+
+    /**
+     * Middle 32 bits of the NTP timestamp of the last sent sender reports
+     */
+    private long[] srHistoryNtp = new long[SR_HISTORY_SIZE];
+
+    /**
+     * Sending time of the last sent sender reports
+     */
+    private long[] srHistoryTime = new long[SR_HISTORY_SIZE];
+
+    /**
+     * Index of the next sender report entry
+     */
+    private int srHistoryIndex = 0;
+
     /**
      * Initialize the Random Number Generator.
      */
@@ -244,6 +264,39 @@ public class RtcpSession {
         return rtpSource;
     }
 
+    /**
+     * Records a sent sender report in order to compute the round trip time
+     * when the remote reception report refers to it
+     *
+     * @param ntpTimestamp NTP timestamp of the sender report
+     */
+    public synchronized void recordSenderReport(long ntpTimestamp) {
+        srHistoryNtp[srHistoryIndex] = (ntpTimestamp & 0x0000ffffffff0000L) >>> 16;
+        srHistoryTime[srHistoryIndex] = System.currentTimeMillis();
+        srHistoryIndex = (srHistoryIndex + 1) % SR_HISTORY_SIZE;
+    }
+
+    /**
+     * Returns the round trip time computed from a reception report (RFC 3550
+     * section 6.4.1)
+     *
+     * @param report Reception report
+     * @param receiptTime Reception time of the report
+     * @return Round trip time in milliseconds or -1 if not computable
+     */
+    public synchronized long getRoundTripTime(RtcpReport report, long receiptTime) {
+        if (report.getLSR() == 0) {
+            return -1;
+        }
+        for (int i = 0; i < SR_HISTORY_SIZE; i++) {
+            if ((srHistoryTime[i] > 0) && (srHistoryNtp[i] == report.getLSR())) {
+                long rtt = receiptTime - srHistoryTime[i] - ((report.getDLSR() * 1000) >> 16);
+                return (rtt < 0) ? 0 : rtt;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Returns current time from the Date().getTime() function.
      *
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.TimeoutException;
 
+import com.orangelabs.rcs.core.ims.protocol.rtp.fec.UlpfecDecoder;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.NackGenerator;
 import com.orangelabs.rcs.platform.network.DatagramConnection;
 import com.orangelabs.rcs.platform.network.NetworkFactory;
 import com.orangelabs.rcs.utils.FifoBuffer;
@@ -82,6 +84,16 @@ public class RtpPacketReceiver extends Thread {
      * timeout
      */
     private int timeout = 0;
+
+    /**
+     * FEC decoder
+     */
+    private UlpfecDecoder fecDecoder = null;
+
+    /**
+     * NACK generator
+     */
+    private NackGenerator nackGenerator = null;
 
 	/**
 	 * The logger
@@ -195,31 +207,57 @@ public class RtpPacketReceiver extends Thread {
      */
     public RtpPacket readRtpPacket() throws TimeoutException {
 		try {
-            // Get a new packet in FIFO
-            byte[] data = (byte[]) fifo.getObject(timeout);
-            if (data == null) {
-                throw new TimeoutException();
-            }
+            // Skip the packets which are not delivered to the media
+            while (true) {
+                // Packets recovered by the FEC are read first
+                byte[] data = null;
+                boolean recovered = false;
+                if (fecDecoder != null) {
+                    data = fecDecoder.pollRecoveredPacket();
+                    recovered = (data != null);
+                }
+
+                // Get a new packet in FIFO
+                if (data == null) {
+                    data = (byte[]) fifo.getObject(timeout);
+                }
+                if (data == null) {
+                    throw new TimeoutException();
+                }
 
-			// Parse the RTP packet
-			RtpPacket pkt = parseRtpPacket(data);
-
-			if (pkt != null) {
-				// Update statistics
-				stats.numPackets++;
-                stats.numBytes += data.length;
-
-                RtpSource s = rtcpSession.getMySource();
-                s.setSsrc(pkt.ssrc);
-                s.activeSender = true;
-                s.receiveRtpPacket(pkt);
-                pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
+                // Parse the RTP packet
+                RtpPacket pkt = parseRtpPacket(data);
+                if (pkt == null) {
+                    continue;
+                }
 
-				return pkt;
-			} else {
-				return readRtpPacket();
-			}
+                if ((nackGenerator != null) && !nackGenerator.packetReceived(pkt.seqnum, pkt.receivedAt)) {
+                    // Already received, recovered or retransmitted twice
+                    continue;
+                }
+
+                RtpSource s = rtcpSession.getMySource();
+                if (!recovered) {
+                    // Update statistics, the reception report gives the losses before repair
+                    stats.numPackets++;
+                    stats.numBytes += data.length;
+
+                    s.setSsrc(pkt.ssrc);
+                    s.activeSender = true;
+                    s.receiveRtpPacket(pkt);
+
+                    if (fecDecoder != null) {
+                        fecDecoder.addPacket(data);
+                        if (fecDecoder.isFecPacket(data)) {
+                            // FEC packets are not delivered to the media
+                            continue;
+                        }
+                    }
+                }
+                pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
 
+                return pkt;
+            }
 		} catch (Exception e) {
             if (!isClosed) {
 //                if (logger.isActivated()) {
@@ -308,6 +346,44 @@ public class RtpPacketReceiver extends Thread {
 		return stats;
 	}
 
+    /**
+     * Enable the recovery of lost packets from a FEC stream (ULPFEC, RFC 5109)
+     *
+     * @param fecPayloadType FEC payload type
+     */
+    public void enableFec(int fecPayloadType) {
+        fecDecoder = new UlpfecDecoder(fecPayloadType);
+		if (logger.isActivated()) {
+            logger.debug("FEC enabled: payload " + fecPayloadType);
+		}
+    }
+
+    /**
+     * Enable the detection of the lost packets to be requested by generic NACK
+     * (RFC 4585). The duplicated packets are then dropped.
+     */
+    public void enableNack() {
+        nackGenerator = new NackGenerator();
+    }
+
+    /**
+     * Returns the NACK generator
+     *
+     * @return NACK generator or null if NACK is not enabled
+     */
+    public NackGenerator getNackGenerator() {
+        return nackGenerator;
+    }
+
+    /**
+     * Returns the FEC decoder
+     *
+     * @return FEC decoder or null if FEC is not enabled
+     */
+    public UlpfecDecoder getFecDecoder() {
+        return fecDecoder;
+    }
+
     /**
      * Returns the DatagramConnection of RTP
      *
@@ -18,6 +18,7 @@
 
 package com.orangelabs.rcs.core.ims.protocol.rtp.core;
 
+import com.orangelabs.rcs.core.ims.protocol.rtp.fec.UlpfecEncoder;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Packet;
 import com.orangelabs.rcs.platform.network.DatagramConnection;
@@ -62,6 +63,31 @@ public class RtpPacketTransmitter {
      * RTCP Session
      */
     private RtcpSession rtcpSession = null;
+
+    /**
+     * Size of the history of sent packets kept for retransmission (power of two)
+     */
+    public static final int HISTORY_SIZE = 512;
+
+    /**
+     * History of sent packets, indexed by sequence number modulo the history size
+     */
+    private byte[][] history = new byte[HISTORY_SIZE][];
+
+    /**
+     * FEC encoder
+     */
+    private UlpfecEncoder fecEncoder = null;
+
+    /**
+     * FEC payload type
+     */
+    private int fecPayloadType;
+
+    /**
+     * Timestamp of the last media packet
+     */
+    private long lastTimestamp = 0;
 
 	/**
 	 * The logger
@@ -152,6 +178,72 @@ public class RtpPacketTransmitter {
 
     	// Send the RTP packet to the remote destination
     	transmit(packet);
+
+    	// Protect the packet. The FEC packets are sent at the end of each frame,
+    	// so the packets of a frame keep consecutive sequence numbers
+    	if (fecEncoder != null) {
+    		if (fecEncoder.isGroupFull()) {
+    			sendFecPackets();
+    		}
+    		fecEncoder.addPacket(packet.data, packet.length);
+    		lastTimestamp = packet.timestamp;
+    		if (packet.marker == 1) {
+    			sendFecPackets();
+    		}
+    	}
+    }
+
+    /**
+     * Enable the forward error correction (ULPFEC, RFC 5109)
+     *
+     * @param payloadType FEC payload type
+     * @param protectionLevel Number of FEC packets in percent of the media packets
+     */
+    public void enableFec(int payloadType, int protectionLevel) {
+    	fecPayloadType = payloadType;
+    	fecEncoder = new UlpfecEncoder(protectionLevel);
+		if (logger.isActivated()) {
+            logger.debug("FEC enabled: payload " + payloadType + ", protection " + protectionLevel + "%");
+		}
+    }
+
+    /**
+     * Returns the FEC encoder
+     *
+     * @return FEC encoder or null if FEC is not enabled
+     */
+    public UlpfecEncoder getFecEncoder() {
+    	return fecEncoder;
+    }
+
+    /**
+     * Send the FEC packets protecting the current group of media packets
+     */
+    private void sendFecPackets() {
+    	byte[][] payloads = fecEncoder.generateFecPackets();
+    	for (int i = 0; i < payloads.length; i++) {
+    		Packet fec = new Packet();
+    		fec.data = payloads[i];
+    		fec.offset = 0;
+    		fec.length = payloads[i].length;
+
+    		RtpPacket rtppacket = new RtpPacket(fec);
+    		rtppacket.marker = 0;
+    		rtppacket.payloadType = fecPayloadType;
+    		rtppacket.seqnum = seqNumber++;
+    		rtppacket.timestamp = lastTimestamp;
+    		rtppacket.ssrc = rtcpSession.SSRC;
+    		rtppacket.payloadoffset = 0;
+    		rtppacket.payloadlength = fec.length;
+    		try {
+    			rtppacket.assemble(rtppacket.calcLength());
+    			transmit(rtppacket);
+    		} catch (IOException e) {
+    			if (logger.isActivated()) {
+    				logger.error("Can't send the FEC packet", e);
+    			}
+    		}
+    	}
     }
 
     /**
@@ -206,6 +298,11 @@ public class RtpPacketTransmitter {
 			System.arraycopy(data, packet.offset, data = new byte[packet.length], 0, packet.length);
 		}
 
+		// Keep the packet for a retransmission
+		synchronized (history) {
+			history[getSeqnum(data) & (HISTORY_SIZE - 1)] = data;
+		}
+
 		// Update statistics
 		stats.numBytes += packet.length;
 		stats.numPackets++;
@@ -226,6 +323,41 @@ public class RtpPacketTransmitter {
         }
     }
 
+    /**
+     * Retransmit a packet requested by a generic NACK (RFC 4585). The packet is
+     * sent again unchanged, with its original sequence number.
+     *
+     * @param seqnum Sequence number (16 bits)
+     * @return false if the packet is no more in the history
+     */
+    public boolean retransmit(int seqnum) {
+        byte[] data;
+        synchronized (history) {
+            data = history[seqnum & (HISTORY_SIZE - 1)];
+        }
+        if ((data == null) || (getSeqnum(data) != (seqnum & 0xffff))) {
+            return false;
+        }
+
+        try {
+            datagramConnection.send(remoteAddress, remotePort, data);
+            stats.numRetransmittedPackets++;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the sequence number of a RTP packet
+     *
+     * @param data RTP packet
+     * @return Sequence number
+     */
+    private static int getSeqnum(byte[] data) {
+        return ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+    }
+
     /**
      * Returns the statistics of RTP transmission
      *
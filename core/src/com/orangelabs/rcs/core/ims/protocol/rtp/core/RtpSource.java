@@ -115,6 +115,11 @@ public class RtpSource {
      */
     private long lastSenderReport;
 
+    /**
+     * Reception time of the last SR Packet
+     */
+    private long lastSenderReportReceipt;
+
 
     /**
      * Constructor requires an SSRC for it to be a valid source. The constructor initializes
@@ -151,6 +156,7 @@ public class RtpSource {
         // of 64 in the NTP timestamp received as part of the most recent RTCP
         // sender report
         lastSenderReport = (((srp.ntptimestampmsw << 32) | srp.ntptimestamplsw) & 0x0000ffffffff0000L) >>> 16;
+        lastSenderReportReceipt = System.currentTimeMillis();
     }
 
     /**
@@ -190,8 +196,12 @@ public class RtpSource {
         int expected = extendedMax - baseSeq + 1;
         report.setCumulativeNumberOfPacketsLost(expected - received);
 
-        // TODO : Calculate the delay after last sender report received
-        report.setDelaySinceLastSenderReport(0);
+        // RFC 3550: delay since last SR (DLSR) expressed in units of 1/65536 seconds
+        if (lastSenderReportReceipt > 0) {
+            report.setDelaySinceLastSenderReport(((System.currentTimeMillis() - lastSenderReportReceipt) << 16) / 1000);
+        } else {
+            report.setDelaySinceLastSenderReport(0);
+        }
         report.setExtendedHighestSequenceNumberReceived(getExtendedSequenceNumber());
 
         // Calculate the fraction lost
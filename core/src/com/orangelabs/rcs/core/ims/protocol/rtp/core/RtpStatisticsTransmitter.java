@@ -33,4 +33,9 @@ public class RtpStatisticsTransmitter {
 	 * Total number of bytes sent
 	 */
 	public int numBytes = 0;
+
+	/**
+	 * Total number of packets retransmitted
+	 */
+	public int numRetransmittedPackets = 0;
 }
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.fec;
+
+import java.util.LinkedList;
+
+/**
+ * ULPFEC decoder (RFC 5109). Keeps the last received media packets and the
+ * pending FEC packets, and rebuilds a media packet as soon as it is the only
+ * one missing among the packets protected by a FEC packet.
+ *
+ * @author Orange
+ */
+public class UlpfecDecoder {
+    /**
+     * Number of media packets kept for the recovery (power of 2)
+     */
+    private static final int MEDIA_HISTORY_SIZE = 256;
+
+    /**
+     * Maximum number of pending FEC packets
+     */
+    private static final int MAX_PENDING_FEC = 32;
+
+    /**
+     * FEC payload type
+     */
+    private int fecPayloadType;
+
+    /**
+     * Received media packets indexed by sequence number
+     */
+    private byte[][] mediaPackets = new byte[MEDIA_HISTORY_SIZE][];
+
+    /**
+     * Sequence numbers of the received media packets
+     */
+    private int[] mediaSeqnums = new int[MEDIA_HISTORY_SIZE];
+
+    /**
+     * Pending FEC packets
+     */
+    private LinkedList<FecPacket> fecPackets = new LinkedList<FecPacket>();
+
+    /**
+     * Recovered media packets not yet read
+     */
+    private LinkedList<byte[]> recoveredPackets = new LinkedList<byte[]>();
+
+    /**
+     * Number of recovered packets
+     */
+    private int recoveredNumber = 0;
+
+    /**
+     * Constructor
+     *
+     * @param fecPayloadType FEC payload type
+     */
+    public UlpfecDecoder(int fecPayloadType) {
+        this.fecPayloadType = fecPayloadType;
+        for (int i = 0; i < MEDIA_HISTORY_SIZE; i++) {
+            mediaSeqnums[i] = -1;
+        }
+    }
+
+    /**
+     * Is the RTP packet a FEC packet
+     *
+     * @param data RTP packet
+     * @return Boolean
+     */
+    public boolean isFecPacket(byte[] data) {
+        return (data[1] & 0x7f) == fecPayloadType;
+    }
+
+    /**
+     * Add a received RTP packet, media or FEC
+     *
+     * @param data RTP packet
+     */
+    public void addPacket(byte[] data) {
+        if (data.length < UlpfecEncoder.RTP_HEADER_SIZE) {
+            return;
+        }
+        if (isFecPacket(data)) {
+            FecPacket fec = FecPacket.parse(data);
+            if (fec == null) {
+                return;
+            }
+            if (fecPackets.size() >= MAX_PENDING_FEC) {
+                fecPackets.removeFirst();
+            }
+            fecPackets.add(fec);
+        } else {
+            storeMediaPacket(data);
+        }
+        recover();
+    }
+
+    /**
+     * Returns the next recovered media packet
+     *
+     * @return RTP packet or null
+     */
+    public byte[] pollRecoveredPacket() {
+        return recoveredPackets.poll();
+    }
+
+    /**
+     * Returns the number of recovered packets since the start
+     *
+     * @return Number of packets
+     */
+    public int getRecoveredNumber() {
+        return recoveredNumber;
+    }
+
+    /**
+     * Store a media packet
+     *
+     * @param data RTP packet
+     */
+    private void storeMediaPacket(byte[] data) {
+        int seqnum = getSeqnum(data);
+        int index = seqnum & (MEDIA_HISTORY_SIZE - 1);
+        mediaPackets[index] = data;
+        mediaSeqnums[index] = seqnum;
+    }
+
+    /**
+     * Returns the media packet with a given sequence number
+     *
+     * @param seqnum Sequence number
+     * @return RTP packet or null if not received
+     */
+    private byte[] getMediaPacket(int seqnum) {
+        int index = seqnum & (MEDIA_HISTORY_SIZE - 1);
+        if (mediaSeqnums[index] == seqnum) {
+            return mediaPackets[index];
+        }
+        return null;
+    }
+
+    /**
+     * Try to recover the missing media packets from the pending FEC packets
+     */
+    private void recover() {
+        boolean recovered;
+        do {
+            recovered = false;
+            for (int i = 0; i < fecPackets.size(); ) {
+                FecPacket fec = fecPackets.get(i);
+                int missing = -1;
+                int missingNumber = 0;
+                boolean expired = false;
+                for (int j = 0; j < fec.seqnums.length; j++) {
+                    if (getMediaPacket(fec.seqnums[j]) == null) {
+                        missing = fec.seqnums[j];
+                        missingNumber++;
+                        if (isTooOld(fec.seqnums[j])) {
+                            expired = true;
+                        }
+                    }
+                }
+
+                if (missingNumber == 0 || expired) {
+                    // Nothing to recover or the packets are no more in the history
+                    fecPackets.remove(i);
+                } else
+                if (missingNumber == 1) {
+                    fecPackets.remove(i);
+                    byte[] packet = rebuild(fec, missing);
+                    if (packet != null) {
+                        storeMediaPacket(packet);
+                        recoveredPackets.add(packet);
+                        recoveredNumber++;
+                        recovered = true;
+                    }
+                } else {
+                    i++;
+                }
+            }
+        } while (recovered);
+    }
+
+    /**
+     * Check if a sequence number has left the history: its slot is used by a
+     * more recent packet
+     *
+     * @param seqnum Sequence number
+     * @return Boolean
+     */
+    private boolean isTooOld(int seqnum) {
+        int stored = mediaSeqnums[seqnum & (MEDIA_HISTORY_SIZE - 1)];
+        return (stored != -1) && (((stored - seqnum) & 0xffff) < 0x8000);
+    }
+
+    /**
+     * Rebuild a missing media packet
+     *
+     * @param fec FEC packet
+     * @param seqnum Sequence number of the missing packet
+     * @return RTP packet or null
+     */
+    private byte[] rebuild(FecPacket fec, int seqnum) {
+        byte b0 = fec.data[0];
+        byte b1 = fec.data[1];
+        byte[] timestamp = new byte[4];
+        System.arraycopy(fec.data, 4, timestamp, 0, 4);
+        int length = ((fec.data[8] & 0xff) << 8) | (fec.data[9] & 0xff);
+        byte[] payload = new byte[fec.protectionLength];
+        System.arraycopy(fec.data, fec.payloadOffset, payload, 0, fec.protectionLength);
+
+        for (int j = 0; j < fec.seqnums.length; j++) {
+            if (fec.seqnums[j] == seqnum) {
+                continue;
+            }
+            byte[] packet = getMediaPacket(fec.seqnums[j]);
+            b0 ^= packet[0];
+            b1 ^= packet[1];
+            for (int k = 0; k < 4; k++) {
+                timestamp[k] ^= packet[4 + k];
+            }
+            int packetLength = packet.length - UlpfecEncoder.RTP_HEADER_SIZE;
+            length ^= packetLength;
+            int max = Math.min(packetLength, fec.protectionLength);
+            for (int k = 0; k < max; k++) {
+                payload[k] ^= packet[UlpfecEncoder.RTP_HEADER_SIZE + k];
+            }
+        }
+
+        if (length > fec.protectionLength) {
+            // The FEC packet does not protect the whole packet
+            return null;
+        }
+
+        byte[] result = new byte[UlpfecEncoder.RTP_HEADER_SIZE + length];
+        result[0] = (byte)(0x80 | (b0 & 0x3f));
+        result[1] = b1;
+        result[2] = (byte)(seqnum >> 8);
+        result[3] = (byte)seqnum;
+        System.arraycopy(timestamp, 0, result, 4, 4);
+        System.arraycopy(fec.ssrc, 0, result, 8, 4);
+        System.arraycopy(payload, 0, result, UlpfecEncoder.RTP_HEADER_SIZE, length);
+        return result;
+    }
+
+    /**
+     * Returns the sequence number of a RTP packet
+     *
+     * @param data RTP packet
+     * @return Sequence number
+     */
+    private static int getSeqnum(byte[] data) {
+        return ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+    }
+
+    /**
+     * Received FEC packet
+     */
+    private static class FecPacket {
+        /**
+         * FEC payload
+         */
+        private byte[] data;
+
+        /**
+         * SSRC of the protected stream
+         */
+        private byte[] ssrc = new byte[4];
+
+        /**
+         * Sequence numbers of the protected packets
+         */
+        private int[] seqnums;
+
+        /**
+         * Protection length
+         */
+        private int protectionLength;
+
+        /**
+         * Offset of the level 0 payload
+         */
+        private int payloadOffset;
+
+        /**
+         * Parse a FEC packet
+         *
+         * @param packet RTP packet
+         * @return FEC packet or null if malformed
+         */
+        private static FecPacket parse(byte[] packet) {
+            // RTP header, CSRC and extension are not used by the FEC packets
+            int offset = UlpfecEncoder.RTP_HEADER_SIZE;
+            if (packet.length < offset + UlpfecEncoder.FEC_HEADER_SIZE + UlpfecEncoder.LEVEL_HEADER_SIZE_SHORT) {
+                return null;
+            }
+            FecPacket fec = new FecPacket();
+            System.arraycopy(packet, 8, fec.ssrc, 0, 4);
+            fec.data = new byte[packet.length - offset];
+            System.arraycopy(packet, offset, fec.data, 0, fec.data.length);
+
+            boolean longMask = (fec.data[0] & 0x40) != 0;
+            int maskBytes = (longMask ? UlpfecEncoder.LEVEL_HEADER_SIZE_LONG : UlpfecEncoder.LEVEL_HEADER_SIZE_SHORT) - 2;
+            fec.payloadOffset = UlpfecEncoder.FEC_HEADER_SIZE + 2 + maskBytes;
+            if (fec.data.length < fec.payloadOffset) {
+                return null;
+            }
+            fec.protectionLength = ((fec.data[UlpfecEncoder.FEC_HEADER_SIZE] & 0xff) << 8)
+                    | (fec.data[UlpfecEncoder.FEC_HEADER_SIZE + 1] & 0xff);
+            if (fec.data.length < fec.payloadOffset + fec.protectionLength) {
+                return null;
+            }
+
+            // Protected sequence numbers
+            int baseSeq = getSeqnum(fec.data);
+            long mask = 0;
+            for (int k = 0; k < maskBytes; k++) {
+                mask = (mask << 8) | (fec.data[UlpfecEncoder.FEC_HEADER_SIZE + 2 + k] & 0xff);
+            }
+            int bits = maskBytes * 8;
+            fec.seqnums = new int[Long.bitCount(mask)];
+            int n = 0;
+            for (int k = 0; k < bits; k++) {
+                if ((mask & (1L << (bits - 1 - k))) != 0) {
+                    fec.seqnums[n++] = (baseSeq + k) & 0xffff;
+                }
+            }
+            return fec;
+        }
+    }
+}
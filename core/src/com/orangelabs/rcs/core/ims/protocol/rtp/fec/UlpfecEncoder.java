@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.fec;
+
+/**
+ * ULPFEC encoder (RFC 5109). Builds the FEC packets protecting a group of
+ * media RTP packets with a single protection level (level 0). The media
+ * packets of a group are spread over the FEC packets so that one packet lost
+ * in each subset may be recovered.
+ * <br>
+ * The encoder works on the RTP packets as sent on the network and returns the
+ * FEC payloads (FEC header, level 0 header and payload), the RTP header of the
+ * FEC packets is built by the transmitter.
+ *
+ * @author Orange
+ */
+public class UlpfecEncoder {
+    /**
+     * Size of the RTP fixed header
+     */
+    public static final int RTP_HEADER_SIZE = 12;
+
+    /**
+     * Size of the FEC header
+     */
+    public static final int FEC_HEADER_SIZE = 10;
+
+    /**
+     * Size of the level header with a short mask (16 packets)
+     */
+    public static final int LEVEL_HEADER_SIZE_SHORT = 4;
+
+    /**
+     * Size of the level header with a long mask (48 packets)
+     */
+    public static final int LEVEL_HEADER_SIZE_LONG = 8;
+
+    /**
+     * Maximum number of packets protected with a short mask
+     */
+    public static final int MAX_PACKETS_SHORT_MASK = 16;
+
+    /**
+     * Maximum number of media packets in a group
+     */
+    public static final int MAX_PACKETS = 48;
+
+    /**
+     * Media packets of the current group
+     */
+    private byte[][] packets = new byte[MAX_PACKETS][];
+
+    /**
+     * Length of the media packets of the current group
+     */
+    private int[] lengths = new int[MAX_PACKETS];
+
+    /**
+     * Number of media packets in the current group
+     */
+    private int count = 0;
+
+    /**
+     * Protection level in percent of the media packets
+     */
+    private int protectionLevel;
+
+    /**
+     * Constructor
+     *
+     * @param protectionLevel Number of FEC packets in percent of the media
+     *        packets (at least one FEC packet is sent per group)
+     */
+    public UlpfecEncoder(int protectionLevel) {
+        setProtectionLevel(protectionLevel);
+    }
+
+    /**
+     * Set the protection level
+     *
+     * @param protectionLevel Number of FEC packets in percent of the media packets
+     */
+    public void setProtectionLevel(int protectionLevel) {
+        this.protectionLevel = Math.max(1, Math.min(100, protectionLevel));
+    }
+
+    /**
+     * Returns the protection level
+     *
+     * @return Number of FEC packets in percent of the media packets
+     */
+    public int getProtectionLevel() {
+        return protectionLevel;
+    }
+
+    /**
+     * Add a media packet to the current group. The packets of a group must
+     * have consecutive sequence numbers.
+     *
+     * @param data RTP packet
+     * @param length Length of the RTP packet
+     */
+    public void addPacket(byte[] data, int length) {
+        if ((length < RTP_HEADER_SIZE) || isGroupFull()) {
+            return;
+        }
+        packets[count] = data;
+        lengths[count] = length;
+        count++;
+    }
+
+    /**
+     * Is the current group full
+     *
+     * @return Boolean
+     */
+    public boolean isGroupFull() {
+        return count >= MAX_PACKETS;
+    }
+
+    /**
+     * Returns the number of media packets in the current group
+     *
+     * @return Number of packets
+     */
+    public int getPacketsNumber() {
+        return count;
+    }
+
+    /**
+     * Returns the number of FEC packets generated for a group
+     *
+     * @param mediaPackets Number of media packets
+     * @return Number of FEC packets
+     */
+    public int getFecPacketsNumber(int mediaPackets) {
+        if (mediaPackets == 0) {
+            return 0;
+        }
+        int result = (mediaPackets * protectionLevel + 99) / 100;
+        return Math.max(1, Math.min(mediaPackets, result));
+    }
+
+    /**
+     * Generate the FEC payloads of the current group and start a new group.
+     * The FEC packet i protects the media packets j such as j modulo the
+     * number of FEC packets is i.
+     *
+     * @return FEC payloads (empty if there is no media packet)
+     */
+    public byte[][] generateFecPackets() {
+        int fecNumber = getFecPacketsNumber(count);
+        byte[][] result = new byte[fecNumber][];
+        if (count > 0) {
+            int baseSeq = ((packets[0][2] & 0xff) << 8) | (packets[0][3] & 0xff);
+            boolean longMask = count > MAX_PACKETS_SHORT_MASK;
+            for (int i = 0; i < fecNumber; i++) {
+                result[i] = buildFecPacket(i, fecNumber, baseSeq, longMask);
+            }
+        }
+
+        // Start a new group
+        for (int i = 0; i < count; i++) {
+            packets[i] = null;
+        }
+        count = 0;
+        return result;
+    }
+
+    /**
+     * Build a FEC payload
+     *
+     * @param index Index of the FEC packet in the group
+     * @param step Number of FEC packets in the group
+     * @param baseSeq Sequence number of the first media packet of the group
+     * @param longMask Use a 48 bits mask
+     * @return FEC payload
+     */
+    private byte[] buildFecPacket(int index, int step, int baseSeq, boolean longMask) {
+        // Protection length: the longest protected payload
+        int protectionLength = 0;
+        for (int j = index; j < count; j += step) {
+            protectionLength = Math.max(protectionLength, lengths[j] - RTP_HEADER_SIZE);
+        }
+
+        int levelHeaderSize = longMask ? LEVEL_HEADER_SIZE_LONG : LEVEL_HEADER_SIZE_SHORT;
+        int payloadOffset = FEC_HEADER_SIZE + levelHeaderSize;
+        byte[] fec = new byte[payloadOffset + protectionLength];
+
+        int lengthRecovery = 0;
+        long mask = 0;
+        for (int j = index; j < count; j += step) {
+            byte[] packet = packets[j];
+            int length = lengths[j];
+
+            // Recovery fields: P, X, CC, M, PT, timestamp and length
+            fec[0] ^= packet[0];
+            fec[1] ^= packet[1];
+            for (int k = 4; k < 8; k++) {
+                fec[k] ^= packet[k];
+            }
+            lengthRecovery ^= length - RTP_HEADER_SIZE;
+
+            // Payload
+            for (int k = RTP_HEADER_SIZE; k < length; k++) {
+                fec[payloadOffset + k - RTP_HEADER_SIZE] ^= packet[k];
+            }
+
+            // Mask, the MSB is the base sequence number
+            mask |= 1L << ((longMask ? 47 : 15) - j);
+        }
+
+        // FEC header: E = 0, L, recovery fields and SN base
+        fec[0] = (byte)((fec[0] & 0x3f) | (longMask ? 0x40 : 0x00));
+        fec[2] = (byte)(baseSeq >> 8);
+        fec[3] = (byte)baseSeq;
+        fec[8] = (byte)(lengthRecovery >> 8);
+        fec[9] = (byte)lengthRecovery;
+
+        // Level 0 header: protection length and mask
+        fec[FEC_HEADER_SIZE] = (byte)(protectionLength >> 8);
+        fec[FEC_HEADER_SIZE + 1] = (byte)protectionLength;
+        int maskBytes = levelHeaderSize - 2;
+        for (int k = 0; k < maskBytes; k++) {
+            fec[FEC_HEADER_SIZE + 2 + k] = (byte)(mask >>> (8 * (maskBytes - 1 - k)));
+        }
+        return fec;
+    }
+}
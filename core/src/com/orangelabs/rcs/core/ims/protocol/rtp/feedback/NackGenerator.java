@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.feedback;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Generic NACK generator (RFC 4585). Tracks the received sequence numbers,
+ * detects the gaps and builds the list of packets to be requested again.
+ * A missing packet is first given a reorder window, so that a packet only
+ * received out of order is not requested. A lost packet is requested up to
+ * MAX_NACK_RETRIES times, after that it is reported as unrecovered so that
+ * a key frame can be requested.
+ *
+ * @author Orange
+ */
+public class NackGenerator {
+    /**
+     * Maximum number of NACK sent for a lost packet
+     */
+    public static final int MAX_NACK_RETRIES = 3;
+
+    /**
+     * Time a missing packet may be received out of order before it is
+     * requested, in milliseconds
+     */
+    public static final long REORDER_DELAY = 20;
+
+    /**
+     * Number of newer packets a missing packet may be received after before
+     * it is requested, whatever the time elapsed
+     */
+    public static final int REORDER_PACKETS = 8;
+
+    /**
+     * Minimum interval between two NACK of a lost packet in milliseconds
+     */
+    public static final long RETRY_INTERVAL = 100;
+
+    /**
+     * Maximum number of lost packets followed, a larger gap is considered as
+     * a restart of the stream
+     */
+    public static final int MAX_MISSING_PACKETS = 64;
+
+    /**
+     * Size of the window of received sequence numbers (power of two)
+     */
+    private static final int WINDOW_SIZE = 512;
+
+    /**
+     * Received sequence numbers, indexed by sequence number modulo the window size
+     */
+    private int[] received = new int[WINDOW_SIZE];
+
+    /**
+     * Highest sequence number received
+     */
+    private int highestSeqnum = -1;
+
+    /**
+     * Lost packets not yet recovered, ordered by sequence number
+     */
+    private LinkedList<MissingPacket> missingPackets = new LinkedList<MissingPacket>();
+
+    /**
+     * Number of lost packets not recovered since the last poll
+     */
+    private int unrecoveredNumber = 0;
+
+    /**
+     * Number of duplicated packets dropped
+     */
+    private int duplicatedNumber = 0;
+
+    /**
+     * Constructor
+     */
+    public NackGenerator() {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            received[i] = -1;
+        }
+    }
+
+    /**
+     * Notify a received packet
+     *
+     * @param seqnum Sequence number (16 bits)
+     * @param now Reception time in milliseconds
+     * @return false if the packet has already been received
+     */
+    public synchronized boolean packetReceived(int seqnum, long now) {
+        seqnum &= 0xffff;
+        if (highestSeqnum == -1) {
+            highestSeqnum = seqnum;
+            markReceived(seqnum);
+            return true;
+        }
+
+        int delta = (seqnum - highestSeqnum) & 0xffff;
+        if (delta == 0) {
+            duplicatedNumber++;
+            return false;
+        }
+
+        if (delta < 0x8000) {
+            // New packet, the packets between the previous one and this one are missing
+            if (delta - 1 > MAX_MISSING_PACKETS) {
+                missingPackets.clear();
+            } else {
+                for (int i = 1; i < delta; i++) {
+                    missingPackets.add(new MissingPacket((highestSeqnum + i) & 0xffff, now));
+                }
+                while (missingPackets.size() > MAX_MISSING_PACKETS) {
+                    missingPackets.removeFirst();
+                    unrecoveredNumber++;
+                }
+            }
+            highestSeqnum = seqnum;
+            markReceived(seqnum);
+            return true;
+        }
+
+        // Late packet, reordered or retransmitted
+        if (received[seqnum & (WINDOW_SIZE - 1)] == seqnum) {
+            duplicatedNumber++;
+            return false;
+        }
+        markReceived(seqnum);
+        for (Iterator<MissingPacket> it = missingPackets.iterator(); it.hasNext();) {
+            if (it.next().seqnum == seqnum) {
+                it.remove();
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mark a sequence number as received
+     *
+     * @param seqnum Sequence number
+     */
+    private void markReceived(int seqnum) {
+        received[seqnum & (WINDOW_SIZE - 1)] = seqnum;
+    }
+
+    /**
+     * Returns the sequence numbers to be requested now
+     *
+     * @param now Current time in milliseconds
+     * @return Sequence numbers or null if nothing to request
+     */
+    public synchronized int[] getNackList(long now) {
+        if (missingPackets.isEmpty()) {
+            return null;
+        }
+
+        int[] list = new int[missingPackets.size()];
+        int size = 0;
+        for (Iterator<MissingPacket> it = missingPackets.iterator(); it.hasNext();) {
+            MissingPacket packet = it.next();
+            if ((packet.retries == 0) && (now - packet.detected < REORDER_DELAY)
+                    && (((highestSeqnum - packet.seqnum) & 0xffff) <= REORDER_PACKETS)) {
+                // May still be received out of order
+                continue;
+            }
+            if ((packet.retries > 0) && (now - packet.lastNack < RETRY_INTERVAL)) {
+                continue;
+            }
+            if (packet.retries >= MAX_NACK_RETRIES) {
+                it.remove();
+                unrecoveredNumber++;
+                continue;
+            }
+            packet.retries++;
+            packet.lastNack = now;
+            list[size++] = packet.seqnum;
+        }
+        if (size == 0) {
+            return null;
+        }
+        int[] result = new int[size];
+        System.arraycopy(list, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Returns the number of lost packets given up since the last call
+     *
+     * @return Number of packets
+     */
+    public synchronized int pollUnrecoveredNumber() {
+        int result = unrecoveredNumber;
+        unrecoveredNumber = 0;
+        return result;
+    }
+
+    /**
+     * Returns the number of lost packets not yet recovered
+     *
+     * @return Number of packets
+     */
+    public synchronized int getMissingNumber() {
+        return missingPackets.size();
+    }
+
+    /**
+     * Returns the number of duplicated packets dropped
+     *
+     * @return Number of packets
+     */
+    public synchronized int getDuplicatedNumber() {
+        return duplicatedNumber;
+    }
+
+    /**
+     * Lost packet
+     */
+    private static class MissingPacket {
+        /**
+         * Sequence number
+         */
+        private int seqnum;
+
+        /**
+         * Time the packet has been detected as missing
+         */
+        private long detected;
+
+        /**
+         * Number of NACK sent
+         */
+        private int retries = 0;
+
+        /**
+         * Time of the last NACK
+         */
+        private long lastNack = 0;
+
+        /**
+         * Constructor
+         *
+         * @param seqnum Sequence number
+         * @param detected Time the packet has been detected as missing
+         */
+        private MissingPacket(int seqnum, long detected) {
+            this.seqnum = seqnum;
+            this.detected = detected;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.gsma.services.rcs.MediaStatistics;
+
+/**
+ * Latency histogram with fixed buckets. The histogram is updated without lock
+ * so that it may be fed from the media threads and read at any time from
+ * another thread.
+ *
+ * @author Orange
+ */
+public class LatencyHistogram {
+    /**
+     * Upper bounds (exclusive) of the buckets in microseconds. The last bucket
+     * contains all the values above the last bound.
+     */
+    public static final long[] BUCKET_BOUNDS = MediaStatistics.getBucketBounds();
+
+    /**
+     * Number of buckets
+     */
+    public static final int BUCKETS_NUMBER = MediaStatistics.BUCKETS_NUMBER;
+
+    /**
+     * Buckets
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NUMBER);
+
+    /**
+     * Number of recorded values
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Number of bytes processed
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Sum of the recorded values in microseconds
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Maximum recorded value in microseconds
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param latency Latency in microseconds
+     * @param length Number of bytes processed
+     */
+    public void record(long latency, int length) {
+        if (latency < 0) {
+            latency = 0;
+        }
+        buckets.incrementAndGet(getBucketIndex(latency));
+        count.incrementAndGet();
+        bytes.addAndGet(length);
+        sum.addAndGet(latency);
+
+        long current = max.get();
+        while ((latency > current) && !max.compareAndSet(current, latency)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the index of the bucket containing a value
+     *
+     * @param latency Latency in microseconds
+     * @return Index
+     */
+    public static int getBucketIndex(long latency) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (latency < BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+
+    /**
+     * Returns the number of recorded values
+     *
+     * @return Count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of bytes processed
+     *
+     * @return Bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values
+     *
+     * @return Sum in microseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the maximum recorded value
+     *
+     * @return Maximum in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a copy of the buckets. The copy is not atomic as a whole, the
+     * total of the buckets may differ slightly from the count.
+     *
+     * @return Number of values per bucket
+     */
+    public long[] getBuckets() {
+        long[] result = new long[BUCKETS_NUMBER];
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Reset the histogram
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        bytes.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.stats;
+
+import com.gsma.services.rcs.MediaStatistics;
+
+/**
+ * Statistics of a media pipeline. Keeps a latency histogram per processing
+ * stage of a session:
+ * <ul>
+ * <li>sender side: encode, capture to packetize, packetize to send and capture
+ * to send,
+ * <li>receiver side: receive to depacketize, depacketize to render and receive
+ * to render.
+ * </ul>
+ * The histograms also count the number of buffers and bytes which went through
+ * each stage, from which the throughput is deduced.
+ *
+ * @author Orange
+ */
+public class PipelineStatistics {
+    /**
+     * Encoding of a raw frame (recorded by the player)
+     */
+    public static final int STAGE_ENCODE = MediaStatistics.STAGE_ENCODE;
+
+    /**
+     * From the capture to the end of the packetization
+     */
+    public static final int STAGE_PACKETIZE = MediaStatistics.STAGE_PACKETIZE;
+
+    /**
+     * From the end of the packetization to the packet sent on the network
+     */
+    public static final int STAGE_SEND = MediaStatistics.STAGE_SEND;
+
+    /**
+     * From the capture to the packet sent on the network
+     */
+    public static final int STAGE_CAPTURE_TO_SEND = MediaStatistics.STAGE_CAPTURE_TO_SEND;
+
+    /**
+     * From the packet reception to the end of the depacketization
+     */
+    public static final int STAGE_DEPACKETIZE = MediaStatistics.STAGE_DEPACKETIZE;
+
+    /**
+     * From the end of the depacketization to the frame rendered
+     */
+    public static final int STAGE_RENDER = MediaStatistics.STAGE_RENDER;
+
+    /**
+     * From the packet reception to the frame rendered
+     */
+    public static final int STAGE_RECEIVE_TO_RENDER = MediaStatistics.STAGE_RECEIVE_TO_RENDER;
+
+    /**
+     * Number of stages
+     */
+    public static final int STAGES_NUMBER = MediaStatistics.STAGES_NUMBER;
+
+    /**
+     * Stage names
+     */
+    private static final String[] STAGE_NAMES = {
+        "encode", "packetize", "send", "capture-to-send", "depacketize", "render", "receive-to-render"
+    };
+
+    /**
+     * Histograms per stage
+     */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES_NUMBER];
+
+    /**
+     * Start time of the statistics
+     */
+    private volatile long startTime;
+
+    /**
+     * Constructor
+     */
+    public PipelineStatistics() {
+        for (int i = 0; i < STAGES_NUMBER; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Record the duration of a stage
+     *
+     * @param stage Stage
+     * @param startTime Start of the stage (System.nanoTime)
+     * @param endTime End of the stage (System.nanoTime)
+     * @param length Number of bytes processed
+     */
+    public void record(int stage, long startTime, long endTime, int length) {
+        histograms[stage].record((endTime - startTime) / 1000, length);
+    }
+
+    /**
+     * Returns the histogram of a stage
+     *
+     * @param stage Stage
+     * @return Histogram
+     */
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    /**
+     * Returns the time when the statistics were started or reset
+     *
+     * @return Time in milliseconds
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Reset the statistics
+     */
+    public void reset() {
+        for (int i = 0; i < STAGES_NUMBER; i++) {
+            histograms[i].reset();
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns a snapshot of the statistics exposed by the API
+     *
+     * @return Media statistics
+     */
+    public MediaStatistics getMediaStatistics() {
+        MediaStatistics statistics = new MediaStatistics(System.currentTimeMillis() - startTime);
+        for (int i = 0; i < STAGES_NUMBER; i++) {
+            LatencyHistogram histogram = histograms[i];
+            statistics.setStage(i, histogram.getCount(), histogram.getBytes(), histogram.getSum(),
+                    histogram.getMax(), histogram.getBuckets());
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the name of a stage
+     *
+     * @param stage Stage
+     * @return Name
+     */
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Returns a string representation of the statistics
+     *
+     * @return String
+     */
+    public String toString() {
+        StringBuffer result = new StringBuffer();
+        for (int i = 0; i < STAGES_NUMBER; i++) {
+            LatencyHistogram histogram = histograms[i];
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(STAGE_NAMES[i]).append(": n=").append(count)
+                    .append(" avg=").append(histogram.getSum() / count)
+                    .append("us max=").append(histogram.getMax()).append("us");
+        }
+        return result.toString();
+    }
+}
@@ -136,6 +136,7 @@ public class MediaCaptureStream implements ProcessorInputStream {
     		buffer.setFlags(Buffer.FLAG_RTP_MARKER);
     	}
     	buffer.setTimeStamp(sample.getTimeStamp());
+    	buffer.setCaptureTime(System.nanoTime());
     	return buffer;
     }
 }
@@ -27,8 +27,11 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketReceiver;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketTransmitter;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpSession;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpExtensionHeader.ExtensionElement;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpFeedbackPacket;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpPacket;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpPacketReceiver;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.KeyFrameRequestListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.NackGenerator;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
@@ -39,13 +42,18 @@ import com.orangelabs.rcs.utils.logger.Logger;
  *
  * @author jexa7410
  */
-public class RtpInputStream implements ProcessorInputStream {
+public class RtpInputStream implements ProcessorInputStream, KeyFrameRequestListener {
     /**
      * RTP Socket Timeout
      * Used a 20s timeout value because the RTP packets can have a delay
      */
     private static final int RTP_SOCKET_TIMEOUT = 20000;
 
+    /**
+     * Minimum interval between two picture loss indications in milliseconds
+     */
+    private static final long PLI_MIN_INTERVAL = 500;
+
     /**
      * Remote address
      */
@@ -101,6 +109,26 @@ public class RtpInputStream implements ProcessorInputStream {
      */
     private int extensionHeaderId = RtpUtils.RTP_DEFAULT_EXTENSION_ID;
 
+    /**
+     * FEC payload type, -1 if FEC is not used
+     */
+    private int fecPayloadType = -1;
+
+    /**
+     * Generic NACK negotiated
+     */
+    private boolean nackEnabled = false;
+
+    /**
+     * Picture loss indication negotiated
+     */
+    private boolean pliEnabled = false;
+
+    /**
+     * Time of the last picture loss indication
+     */
+    private long lastPliTime = 0;
+
     /**
      * Indicates if the stream was closed
      */
@@ -152,6 +180,12 @@ public class RtpInputStream implements ProcessorInputStream {
     public void open() throws Exception {
     	// Create the RTP receiver
         rtpReceiver = new RtpPacketReceiver(localPort, rtcpSession, RTP_SOCKET_TIMEOUT);
+        if (fecPayloadType != -1) {
+            rtpReceiver.enableFec(fecPayloadType);
+        }
+        if (nackEnabled) {
+            rtpReceiver.enableNack();
+        }
         rtpReceiver.start();
 
     	// Create the RTCP receiver
@@ -214,6 +248,15 @@ public class RtpInputStream implements ProcessorInputStream {
         return rtcpReceiver;
     }
 
+    /**
+     * Returns the RTCP transmitter
+     *
+     * @return RTCP transmitter
+     */
+    public RtcpPacketTransmitter getRtcpTransmitter() {
+        return rtcpTransmitter;
+    }
+
     /**
      * Read from the input stream without blocking
      *
@@ -229,6 +272,9 @@ public class RtpInputStream implements ProcessorInputStream {
                     return null;
                 }
 
+                // Request the lost packets
+                sendNack();
+
                 // Add the buffer in queue
                 rtpPacketsBuffer.add(rtpPacket);
             } while (rtpPacketsBuffer.size() <= 5);
@@ -244,6 +290,10 @@ public class RtpInputStream implements ProcessorInputStream {
         	buffer.setRTPMarker(packet.marker!=0);
         	buffer.setTimeStamp(packet.timestamp);
 
+            // Reception time, the packet may have been held in the reordering queue
+            buffer.setCaptureTime(System.nanoTime()
+                    - (System.currentTimeMillis() - packet.receivedAt) * 1000000L);
+
             if (packet.extensionHeader != null) {
                 ExtensionElement element = packet.extensionHeader.getElementById(extensionHeaderId);
                 if (element != null) {
@@ -285,4 +335,65 @@ public class RtpInputStream implements ProcessorInputStream {
         this.extensionHeaderId = extensionHeaderId;
     }
 
+    /**
+     * Sets the negotiated RTCP feedback messages (RFC 4585). Must be called
+     * before the stream is opened.
+     *
+     * @param nack Generic NACK negotiated
+     * @param pli Picture loss indication negotiated
+     */
+    public void setRtcpFeedback(boolean nack, boolean pli) {
+        this.nackEnabled = nack;
+        this.pliEnabled = pli;
+    }
+
+    /**
+     * Send a generic NACK for the lost packets, and a picture loss indication
+     * if some packets could not be recovered
+     */
+    private void sendNack() {
+        NackGenerator nackGenerator = rtpReceiver.getNackGenerator();
+        if ((nackGenerator == null) || (rtcpTransmitter == null)) {
+            return;
+        }
+
+        int[] seqnums = nackGenerator.getNackList(System.currentTimeMillis());
+        if (seqnums != null) {
+            rtcpTransmitter.sendFeedbackPacket(RtcpFeedbackPacket.createNack(rtcpSession.SSRC,
+                    rtcpSession.getMySource().ssrc, seqnums));
+        }
+        if (nackGenerator.pollUnrecoveredNumber() > 0) {
+            keyFrameRequested();
+        }
+    }
+
+    /**
+     * A key frame is needed by the decoder: send a picture loss indication
+     */
+    public void keyFrameRequested() {
+        if (!pliEnabled || (rtcpTransmitter == null)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastPliTime < PLI_MIN_INTERVAL) {
+            return;
+        }
+        lastPliTime = now;
+        if (logger.isActivated()) {
+            logger.debug("Send picture loss indication");
+        }
+        rtcpTransmitter.sendFeedbackPacket(RtcpFeedbackPacket.createPli(rtcpSession.SSRC,
+                rtcpSession.getMySource().ssrc));
+    }
+
+    /**
+     * Sets the negotiated FEC payload type. Must be called before the stream is opened.
+     *
+     * @param fecPayloadType FEC payload type
+     */
+    public void setFecPayloadType(int fecPayloadType) {
+        this.fecPayloadType = fecPayloadType;
+    }
+
 }
@@ -18,13 +18,22 @@
 
 package com.orangelabs.rcs.core.ims.protocol.rtp.stream;
 
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpFeedbackPacket;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketReceiver;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketTransmitter;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpReceiverReportPacket;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpReport;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpSenderReportPacket;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpSession;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpPacketReceiver;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpPacketTransmitter;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEvent;
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEventListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpFeedbackEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpReceiverReportEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpSenderReportEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.KeyFrameRequestListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -96,6 +105,26 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
      */
     private RtpInputStream rtpInputStream = null;
 
+    /**
+     * Congestion controller
+     */
+    private CongestionController congestionController = null;
+
+    /**
+     * FEC payload type, -1 if FEC is not used
+     */
+    private int fecPayloadType = -1;
+
+    /**
+     * FEC protection level in percent
+     */
+    private int fecProtectionLevel = 0;
+
+    /**
+     * Listener of the picture loss indications
+     */
+    private KeyFrameRequestListener keyFrameRequestListener = null;
+
     /**
      * The logger
      */
@@ -181,6 +210,11 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
             // Create the RTCP transmitter
             rtcpTransmitter = new RtcpPacketTransmitter(remoteAddress, remotePort + 1, rtcpSession,
                     rtpInputStream.getRtpReceiver().getConnection());
+
+            // Listen to the RTCP reports received by the input stream
+            if (rtpInputStream.getRtcpReceiver() != null) {
+                rtpInputStream.getRtcpReceiver().addRtcpListener(this);
+            }
         } else {
             // Create the RTP transmitter
             rtpTransmitter = new RtpPacketTransmitter(remoteAddress, remotePort, rtcpSession);
@@ -188,6 +222,11 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
             // Create the RTCP transmitter
             rtcpTransmitter = new RtcpPacketTransmitter(remoteAddress, remotePort + 1, rtcpSession);
         }
+
+        // Protect the stream
+        if (fecPayloadType != -1) {
+            rtpTransmitter.enableFec(fecPayloadType, fecProtectionLevel);
+        }
     }
 
     /**
@@ -232,7 +271,131 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
 
     @Override
     public void receiveRtcpEvent(RtcpEvent event) {
-        // Nothing to do 
+        if (event instanceof RtcpFeedbackEvent) {
+            processFeedback((RtcpFeedbackPacket)event.getPacket());
+            return;
+        }
+
+        if (congestionController == null) {
+            return;
+        }
+
+        if (event instanceof RtcpReceiverReportEvent) {
+            RtcpReceiverReportPacket rrp = (RtcpReceiverReportPacket)event.getPacket();
+            processReports(rrp.reports);
+        } else if (event instanceof RtcpSenderReportEvent) {
+            RtcpSenderReportPacket srp = (RtcpSenderReportPacket)event.getPacket();
+            processReports(srp.reports);
+        }
+    }
+
+    /**
+     * Process a feedback message related to the transmitted stream
+     *
+     * @param fbp Feedback packet
+     */
+    private void processFeedback(RtcpFeedbackPacket fbp) {
+        if (fbp.isTmmbr()) {
+            if ((congestionController != null) && (fbp.getTmmbrSsrc() == rtcpSession.SSRC)) {
+                congestionController.processTmmbr(fbp.getTmmbrBitrate());
+            }
+            return;
+        }
+
+        if (fbp.mediaSsrc != rtcpSession.SSRC) {
+            return;
+        }
+        if (fbp.isNack()) {
+            // Retransmit the lost packets still in the history
+            int[] seqnums = fbp.getNackSeqnums();
+            for (int i = 0; i < seqnums.length; i++) {
+                if (!rtpTransmitter.retransmit(seqnums[i]) && logger.isActivated()) {
+                    logger.debug("Packet " + seqnums[i] + " no more available for retransmission");
+                }
+            }
+        } else if (fbp.isPli()) {
+            if (logger.isActivated()) {
+                logger.debug("Picture loss indication received");
+            }
+            if (keyFrameRequestListener != null) {
+                keyFrameRequestListener.keyFrameRequested();
+            }
+        }
+    }
+
+    /**
+     * Process the reception reports related to the transmitted stream
+     *
+     * @param reports Reception reports
+     */
+    private void processReports(RtcpReport[] reports) {
+        if (reports == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < reports.length; i++) {
+            RtcpReport report = reports[i];
+            if (report.ssrc == rtcpSession.SSRC) {
+                long rtt = rtcpSession.getRoundTripTime(report, now);
+                congestionController.processReport(report.getFractionLost(), report.getJitter(), rtt, now);
+            }
+        }
+    }
+
+    /**
+     * Sets the congestion controller fed by the RTCP reports
+     *
+     * @param congestionController Congestion controller
+     */
+    public void setCongestionController(CongestionController congestionController) {
+        this.congestionController = congestionController;
+    }
+
+    /**
+     * Sets the listener of the key frame requests of the remote
+     *
+     * @param keyFrameRequestListener Listener
+     */
+    public void setKeyFrameRequestListener(KeyFrameRequestListener keyFrameRequestListener) {
+        this.keyFrameRequestListener = keyFrameRequestListener;
+    }
+
+    /**
+     * Returns the RTP transmitter
+     *
+     * @return RTP transmitter
+     */
+    public RtpPacketTransmitter getRtpTransmitter() {
+        return rtpTransmitter;
+    }
+
+    /**
+     * Returns the RTCP transmitter
+     *
+     * @return RTCP transmitter
+     */
+    public RtcpPacketTransmitter getRtcpTransmitter() {
+        return rtcpTransmitter;
+    }
+
+    /**
+     * Returns the RTCP receiver
+     *
+     * @return RTCP receiver
+     */
+    public RtcpPacketReceiver getRtcpReceiver() {
+        return rtcpReceiver;
+    }
+
+    /**
+     * Sets the FEC parameters. Must be called before the stream is opened.
+     *
+     * @param payloadType FEC payload type
+     * @param protectionLevel Number of FEC packets in percent of the media packets
+     */
+    public void setFecParameters(int payloadType, int protectionLevel) {
+        this.fecPayloadType = payloadType;
+        this.fecProtectionLevel = protectionLevel;
     }
 
     @Override
@@ -62,6 +62,7 @@ public class VideoCaptureStream extends MediaCaptureStream {
         }
         buffer.setTimeStamp(sample.getTimeStamp());
         buffer.setVideoOrientation(sample.getVideoOrientation());
+        buffer.setCaptureTime(System.nanoTime());
         return buffer;
     }
 }
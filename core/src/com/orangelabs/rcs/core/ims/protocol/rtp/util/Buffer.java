@@ -113,6 +113,12 @@ public class Buffer {
      * Video orientation
      */
     private VideoOrientation videoOrientation;
+
+    /**
+     * System time (System.nanoTime) at which the data entered the media
+     * pipeline, i.e. captured or received from the network
+     */
+    private long captureTime = TIME_UNKNOWN;
 
 	/**
 	 * Get the data format
@@ -385,4 +391,21 @@ public class Buffer {
         this.videoOrientation = videoOrientation;
     }
 
+    /**
+     * Gets the capture time
+     *
+     * @return Time (System.nanoTime) or TIME_UNKNOWN
+     */
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Sets the capture time
+     *
+     * @param captureTime Time (System.nanoTime)
+     */
+    public void setCaptureTime(long captureTime) {
+        this.captureTime = captureTime;
+    }
 }
@@ -39,6 +39,9 @@ public class SdpUtils {
 	final public static String DIRECTION_RECVONLY = "recvonly";
 	final public static String DIRECTION_SENDRECV = "sendrecv";
 
+	// name of SDP RTCP feedback attribute (RFC 4585)
+	final public static String ATTRIBUTE_RTCP_FB = "rtcp-fb";
+
 	// Changed by Deutsche Telekom
 	// protocols
 	final public static String MSRPS_PROTOCOL = "TCP/TLS/MSRP";
@@ -148,6 +151,41 @@ public class SdpUtils {
         return false;
     }
 
+    /**
+     * Check if a RTCP feedback type is declared for a media (RFC 4585). The
+     * feedback is declared with a line "a=rtcp-fb:&lt;payload or *&gt; &lt;feedback&gt;"
+     *
+     * @param mediaDesc Media description
+     * @param feedback Feedback type and optional parameter (e.g. "nack", "nack pli", "ccm tmmbr")
+     * @return {@link true} if the feedback is declared, otherwise {@link false}
+     */
+    public static boolean isRtcpFeedbackSupported(MediaDescription mediaDesc, String feedback) {
+        if (mediaDesc == null || StringUtils.isEmpty(feedback)) {
+            return false;
+        }
+
+        for (int i = 0; i < mediaDesc.mediaAttributes.size(); i++) {
+            MediaAttribute attribute = mediaDesc.mediaAttributes.elementAt(i);
+            if (!ATTRIBUTE_RTCP_FB.equals(attribute.getName()) || StringUtils.isEmpty(attribute.getValue())) {
+                continue;
+            }
+
+            String value = attribute.getValue().trim();
+            int index = value.indexOf(' ');
+            if (index <= 0) {
+                continue;
+            }
+            String payload = value.substring(0, index);
+            if (!payload.equals("*") && !payload.equals(mediaDesc.payload)) {
+                continue;
+            }
+            if (feedback.equalsIgnoreCase(value.substring(index + 1).trim().replaceAll("[\\s]+", " "))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 	/**
      * Format "IN IP" attribute (4 or 6)
      *
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Tracks the phone numbers of the address book between two scans, so that
+ * only the phone rows added or modified since the previous scan are processed.
+ * A row is identified by its data ID and is considered modified when its data
+ * version has changed.
+ * 
+ * @author Orange
+ */
+public class AddressBookTracker {
+	/**
+	 * Phone row of the address book
+	 */
+	public static class PhoneRow {
+		/**
+		 * Phone number in international format
+		 */
+		public final String number;
+
+		/**
+		 * Raw contact ID
+		 */
+		public final long rawContactId;
+
+		/**
+		 * Is the raw contact stored in the SIM
+		 */
+		public final boolean sim;
+
+		private PhoneRow(String number, long rawContactId, boolean sim) {
+			this.number = number;
+			this.rawContactId = rawContactId;
+			this.sim = sim;
+		}
+	}
+
+	/**
+	 * Data version of each phone row at the end of the last scan
+	 */
+	private HashMap<Long, Long> versions = new HashMap<Long, Long>();
+
+	/**
+	 * Data version of each phone row seen by the scan in progress
+	 */
+	private HashMap<Long, Long> scanVersions = null;
+
+	/**
+	 * Rows added or modified since the last scan
+	 */
+	private ArrayList<PhoneRow> changedRows = null;
+
+	/**
+	 * Numbers owned by at least one raw contact not stored in the SIM
+	 */
+	private HashSet<String> nonSimNumbers = new HashSet<String>();
+
+	/**
+	 * Start a scan of the address book
+	 */
+	public void beginScan() {
+		scanVersions = new HashMap<Long, Long>(Math.max(16, versions.size() * 4 / 3 + 1));
+		changedRows = new ArrayList<PhoneRow>();
+		nonSimNumbers = new HashSet<String>();
+	}
+
+	/**
+	 * Add a phone row of the address book
+	 * 
+	 * @param dataId Data ID of the row
+	 * @param dataVersion Data version of the row
+	 * @param rawContactId Raw contact ID
+	 * @param number Phone number in international format
+	 * @param sim Is the raw contact stored in the SIM
+	 */
+	public void addPhone(long dataId, long dataVersion, long rawContactId, String number, boolean sim) {
+		Long id = Long.valueOf(dataId);
+		Long version = Long.valueOf(dataVersion);
+		scanVersions.put(id, version);
+		if (!sim) {
+			nonSimNumbers.add(number);
+		}
+		Long previousVersion = versions.get(id);
+		if ((previousVersion == null) || !previousVersion.equals(version)) {
+			changedRows.add(new PhoneRow(number, rawContactId, sim));
+		}
+	}
+
+	/**
+	 * End the scan of the address book. The versions seen by the scan become
+	 * the reference of the next scan.
+	 * 
+	 * @return Rows added or modified since the previous scan
+	 */
+	public List<PhoneRow> endScan() {
+		versions = scanVersions;
+		scanVersions = null;
+		List<PhoneRow> result = changedRows;
+		changedRows = null;
+		return result;
+	}
+
+	/**
+	 * Is a number owned by at least one raw contact not stored in the SIM,
+	 * according to the last scan
+	 * 
+	 * @param number Phone number in international format
+	 * @return Boolean
+	 */
+	public boolean hasNonSimContact(String number) {
+		return nonSimNumbers.contains(number);
+	}
+
+	/**
+	 * Forget the previous scan, so that the next one returns all the rows
+	 */
+	public void reset() {
+		versions = new HashMap<Long, Long>();
+	}
+}
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Capability refresh scheduler. Contacts are kept in a queue ordered by the
+ * expiry time of their capabilities and only the expired ones are refreshed.
+ * Requests are smoothed by a token bucket, and among the expired contacts the
+ * ones recently involved in a communication are refreshed first.
+ * 
+ * @author Orange
+ */
+public class CapabilityRefreshScheduler {
+	/**
+	 * Refresh request
+	 */
+	public static class Request {
+		/**
+		 * Contact
+		 */
+		public final String contact;
+
+		/**
+		 * Does the contact support capability discovery via presence
+		 */
+		public final boolean presence;
+
+		private Request(String contact, boolean presence) {
+			this.contact = contact;
+			this.presence = presence;
+		}
+	}
+
+	/**
+	 * Scheduled contact
+	 */
+	private static class Entry {
+		private String contact;
+
+		private boolean presence;
+
+		private long lastActivity = 0L;
+
+		/**
+		 * Current node of the contact in the queues, the other nodes are stale
+		 */
+		private Node node = null;
+
+		private Entry(String contact) {
+			this.contact = contact;
+		}
+	}
+
+	/**
+	 * Node of a contact in the queues. A rescheduled contact gets a new node
+	 * and the previous one is skipped when polled, so that no linear removal
+	 * from the queues is needed.
+	 */
+	private static class Node {
+		private Entry entry;
+
+		private long dueTime;
+
+		private long lastActivity;
+
+		private Node(Entry entry, long dueTime) {
+			this.entry = entry;
+			this.dueTime = dueTime;
+			this.lastActivity = entry.lastActivity;
+		}
+
+		private boolean isStale() {
+			return entry.node != this;
+		}
+	}
+
+	/**
+	 * Contacts waiting for the expiry of their capabilities, by due time
+	 */
+	private PriorityQueue<Node> waitingQueue = new PriorityQueue<Node>(64, new Comparator<Node>() {
+		public int compare(Node n1, Node n2) {
+			return (n1.dueTime < n2.dueTime) ? -1 : ((n1.dueTime == n2.dueTime) ? 0 : 1);
+		}
+	});
+
+	/**
+	 * Expired contacts waiting for a token, most recently active first
+	 */
+	private PriorityQueue<Node> readyQueue = new PriorityQueue<Node>(64, new Comparator<Node>() {
+		public int compare(Node n1, Node n2) {
+			if (n1.lastActivity != n2.lastActivity) {
+				return (n1.lastActivity > n2.lastActivity) ? -1 : 1;
+			}
+			return (n1.dueTime < n2.dueTime) ? -1 : ((n1.dueTime == n2.dueTime) ? 0 : 1);
+		}
+	});
+
+	/**
+	 * Scheduled contacts
+	 */
+	private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Capability expiry period in milliseconds
+	 */
+	private long expiryPeriod;
+
+	/**
+	 * Token rate in requests per second
+	 */
+	private double rate;
+
+	/**
+	 * Bucket size
+	 */
+	private int burst;
+
+	/**
+	 * Available tokens
+	 */
+	private double tokens;
+
+	/**
+	 * Time of the last token refill
+	 */
+	private long refillTime = -1L;
+
+	/**
+	 * Number of requests
+	 */
+	private long requestsNumber = 0L;
+
+	/**
+	 * Time of the first request
+	 */
+	private long firstRequestTime = -1L;
+
+	/**
+	 * Sum of the delays between the expiry and the refresh request, in milliseconds
+	 */
+	private long totalStaleness = 0L;
+
+	/**
+	 * Maximum delay between the expiry and the refresh request, in milliseconds
+	 */
+	private long maxStaleness = 0L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param expiryPeriod Capability expiry period in milliseconds
+	 * @param rate Maximum sustained rate in requests per second
+	 * @param burst Maximum number of requests sent at once
+	 */
+	public CapabilityRefreshScheduler(long expiryPeriod, double rate, int burst) {
+		this.expiryPeriod = expiryPeriod;
+		this.rate = rate;
+		this.burst = burst;
+		this.tokens = burst;
+	}
+
+	/**
+	 * Schedule the refresh of a contact according to the age of its
+	 * capabilities. Capabilities timestamped in the future are considered as
+	 * expired.
+	 * 
+	 * @param contact Contact
+	 * @param timestamp Capabilities timestamp or 0 if no capabilities
+	 * @param presence Does the contact support capability discovery via presence
+	 * @param now Current time
+	 */
+	public synchronized void schedule(String contact, long timestamp, boolean presence, long now) {
+		Entry entry = entries.get(contact);
+		if (entry == null) {
+			entry = new Entry(contact);
+			entries.put(contact, entry);
+		}
+		entry.presence = presence;
+		long dueTime;
+		if ((timestamp <= 0L) || (timestamp > now)) {
+			dueTime = now;
+		} else {
+			dueTime = timestamp + expiryPeriod;
+		}
+		if ((entry.node != null) && (entry.node.dueTime == dueTime)) {
+			// Unchanged
+			return;
+		}
+		entry.node = new Node(entry, dueTime);
+		waitingQueue.add(entry.node);
+	}
+
+	/**
+	 * Notify that a communication with a contact took place, so that its
+	 * capabilities are refreshed in priority once expired
+	 * 
+	 * @param contact Contact
+	 * @param now Current time
+	 */
+	public synchronized void notifyActivity(String contact, long now) {
+		Entry entry = entries.get(contact);
+		if (entry != null) {
+			entry.lastActivity = now;
+			if ((entry.node != null) && (entry.node.dueTime <= now)) {
+				// Already expired: move it ahead of the other expired contacts
+				entry.node = new Node(entry, entry.node.dueTime);
+				waitingQueue.add(entry.node);
+			}
+		}
+	}
+
+	/**
+	 * Remove a contact
+	 * 
+	 * @param contact Contact
+	 */
+	public synchronized void remove(String contact) {
+		Entry entry = entries.remove(contact);
+		if (entry != null) {
+			entry.node = null;
+		}
+	}
+
+	/**
+	 * Remove the contacts which are not in a list
+	 * 
+	 * @param contacts Contacts to be kept
+	 */
+	public synchronized void retainAll(List<String> contacts) {
+		HashMap<String, Entry> kept = new HashMap<String, Entry>(Math.max(16, contacts.size() * 4 / 3 + 1));
+		for (int i = 0; i < contacts.size(); i++) {
+			Entry entry = entries.remove(contacts.get(i));
+			if (entry != null) {
+				kept.put(entry.contact, entry);
+			}
+		}
+		for (Entry entry : entries.values()) {
+			entry.node = null;
+		}
+		entries = kept;
+	}
+
+	/**
+	 * Returns the number of scheduled contacts
+	 * 
+	 * @return Number of contacts
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the refresh requests which may be sent now. Each returned
+	 * contact is rescheduled one expiry period later, until its capabilities
+	 * are updated.
+	 * 
+	 * @param now Current time
+	 * @return Requests
+	 */
+	public synchronized List<Request> getDueRequests(long now) {
+		refill(now);
+
+		// Move the expired contacts to the ready queue
+		while (!waitingQueue.isEmpty() && (waitingQueue.peek().dueTime <= now)) {
+			Node node = waitingQueue.poll();
+			if (!node.isStale()) {
+				readyQueue.add(node);
+			}
+		}
+
+		ArrayList<Request> requests = new ArrayList<Request>();
+		while (!readyQueue.isEmpty() && (tokens >= 1.0)) {
+			Node node = readyQueue.poll();
+			if (node.isStale()) {
+				continue;
+			}
+			Entry entry = node.entry;
+			tokens -= 1.0;
+
+			long staleness = now - node.dueTime;
+			totalStaleness += staleness;
+			maxStaleness = Math.max(maxStaleness, staleness);
+			if (firstRequestTime < 0L) {
+				firstRequestTime = now;
+			}
+			requestsNumber++;
+			requests.add(new Request(entry.contact, entry.presence));
+
+			entry.node = new Node(entry, now + expiryPeriod);
+			waitingQueue.add(entry.node);
+		}
+		return requests;
+	}
+
+	/**
+	 * Returns the time at which the next request may be sent
+	 * 
+	 * @param now Current time
+	 * @return Time or -1 if no contact is scheduled
+	 */
+	public synchronized long getNextRequestTime(long now) {
+		while (!readyQueue.isEmpty() && readyQueue.peek().isStale()) {
+			readyQueue.poll();
+		}
+		if (!readyQueue.isEmpty()) {
+			refill(now);
+			if (tokens >= 1.0) {
+				return now;
+			}
+			return now + (long)Math.ceil((1.0 - tokens) * 1000 / rate);
+		}
+		while (!waitingQueue.isEmpty() && waitingQueue.peek().isStale()) {
+			waitingQueue.poll();
+		}
+		if (!waitingQueue.isEmpty()) {
+			return Math.max(now, waitingQueue.peek().dueTime);
+		}
+		return -1L;
+	}
+
+	/**
+	 * Returns the number of requests since the first one
+	 * 
+	 * @return Number of requests
+	 */
+	public synchronized long getRequestsNumber() {
+		return requestsNumber;
+	}
+
+	/**
+	 * Returns the average request rate since the first request
+	 * 
+	 * @param now Current time
+	 * @return Requests per second
+	 */
+	public synchronized double getRequestRate(long now) {
+		if (firstRequestTime < 0L) {
+			return 0.0;
+		}
+		return requestsNumber * 1000.0 / Math.max(1000L, now - firstRequestTime);
+	}
+
+	/**
+	 * Returns the average delay between the expiry of the capabilities and
+	 * the refresh request
+	 * 
+	 * @return Delay in milliseconds
+	 */
+	public synchronized long getAverageStaleness() {
+		return (requestsNumber > 0L) ? (totalStaleness / requestsNumber) : 0L;
+	}
+
+	/**
+	 * Returns the maximum delay between the expiry of the capabilities and
+	 * the refresh request
+	 * 
+	 * @return Delay in milliseconds
+	 */
+	public synchronized long getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	/**
+	 * Add tokens according to the elapsed time
+	 * 
+	 * @param now Current time
+	 */
+	private void refill(long now) {
+		if ((refillTime >= 0L) && (now > refillTime)) {
+			tokens = Math.min(burst, tokens + (now - refillTime) * rate / 1000);
+		}
+		if (now > refillTime) {
+			refillTime = now;
+		}
+	}
+}
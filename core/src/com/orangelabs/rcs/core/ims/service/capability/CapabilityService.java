@@ -19,11 +19,15 @@
 package com.orangelabs.rcs.core.ims.service.capability;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import android.database.Cursor;
 import android.os.Build;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.RawContacts;
 
 import com.orangelabs.rcs.addressbook.AddressBookEventListener;
 import com.orangelabs.rcs.core.CoreException;
@@ -74,6 +78,11 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
      */
 	private boolean isCheckInProgress = false;
 
+	/**
+	 * Phone numbers of the address book seen by the last check
+	 */
+	private AddressBookTracker addressBookTracker = new AddressBookTracker();
+
 	/**
      * The logger
      */
@@ -200,6 +209,9 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
             return null;
         }
 
+		// Refresh the capabilities of this contact in priority when they expire
+		pollingManager.notifyContactActivity(contact);
+
 		// Read capabilities from the database
 		Capabilities capabilities = ContactsManager.getInstance().getContactCapabilities(contact);
 		if (capabilities == null) {
@@ -274,65 +286,49 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 		// Reset recheck flag
 		isRecheckNeeded = false;
 
-		// Check all phone numbers and query only the new ones
-        String[] projection = {
-                Phone._ID, Phone.NUMBER, Phone.RAW_CONTACT_ID 
-                };
-        Cursor phonesCursor = AndroidFactory.getApplicationContext().getContentResolver().query(
-                Phone.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null);
-
-		// List of unique number that will have to be queried for capabilities
-		ArrayList<String> toBeTreatedNumbers = new ArrayList<String>();
-
-		// List of unique number that have already been queried
-		ArrayList<String> alreadyInEabOrInvalidNumbers = new ArrayList<String>();
-
-		// We add "My number" to the numbers that are already RCS, so we don't query it if it is present in the address book
-        alreadyInEabOrInvalidNumbers.add(ImsModule.IMS_USER_PROFILE.getUsername());
-
-		while(phonesCursor.moveToNext()) {
-			// Keep a trace of already treated row. Key is (phone number in international format)
-			String phoneNumber = PhoneUtils.formatNumberToInternational(phonesCursor.getString(1));
-			if (!alreadyInEabOrInvalidNumbers.contains(phoneNumber)) {
-				// If this number is not considered RCS valid or has already an entry with RCS, skip it
-                if (ContactsManager.getInstance().isRcsValidNumber(phoneNumber)
-						&& !ContactsManager.getInstance().isRcsAssociated(phoneNumber)
-						&& ( !ContactsManager.getInstance().isOnlySimAssociated(phoneNumber) || (Build.VERSION.SDK_INT > 10))) {
-					// This entry is valid and not already has a RCS raw contact, it can be treated
-                    // We exclude the number that comes from SIM only contacts, as those cannot be
-                    // aggregated to RCS raw contacts only if OS version if gingebread or fewer
-					toBeTreatedNumbers.add(phoneNumber);
-				} else {
-					// This entry is either not valid or already RCS, this number is already done
-					alreadyInEabOrInvalidNumbers.add(phoneNumber);
-					
-					// Remove the number from the treated list, if it is in it
-					toBeTreatedNumbers.remove(phoneNumber);
+		// Check the phone numbers added or modified since the last check and query only the new ones
+		List<AddressBookTracker.PhoneRow> changedRows = scanAddressBook();
+		if ((changedRows != null) && !changedRows.isEmpty()) {
+			if (logger.isActivated()) {
+				logger.debug(changedRows.size() + " phone numbers added or modified in the address book");
+			}
+			ContactsManager contactsManager = ContactsManager.getInstance();
+
+			// Read the EAB numbers and the RCS raw contact associations at once
+			Set<String> eabNumbers = new HashSet<String>(contactsManager.getAllContacts());
+			Set<String> associations = contactsManager.getAssociatedRcsRawContacts();
+
+			// Unique numbers that will have to be queried for capabilities
+			LinkedHashSet<String> toBeTreatedNumbers = new LinkedHashSet<String>();
+			String myNumber = ImsModule.IMS_USER_PROFILE.getUsername();
+			for (int i = 0; i < changedRows.size(); i++) {
+				AddressBookTracker.PhoneRow row = changedRows.get(i);
+				if (row.number.equals(myNumber) || !contactsManager.isRcsValidNumber(row.number)) {
+					// Do not query oneself nor numbers which are not RCS valid
+					continue;
 				}
-			} else {
-				// Remove the number from the treated list, it was already queried for another raw contact on the same number
-				toBeTreatedNumbers.remove(phoneNumber);
-
-                // If it is a RCS contact and the raw contact is not associated with a RCS raw contact,
-                // then we have to create a new association for it
-                long rawContactId = phonesCursor.getLong(2);
-                if ((!ContactsManager.getInstance().isSimAccount(rawContactId) || (Build.VERSION.SDK_INT > 10))
-                        && (ContactsManager.getInstance().getAssociatedRcsRawContact(rawContactId, phoneNumber) == -1)) {
-                    ContactInfo currentInfo = ContactsManager.getInstance().getContactInfo(phoneNumber);
-                    if (currentInfo != null && currentInfo.isRcsContact()) {
-                        ContactsManager.getInstance().createRcsContact(currentInfo, rawContactId);
-                    }
+
+				if (!eabNumbers.contains(row.number)) {
+					// We exclude the number that comes from SIM only contacts, as those cannot be
+					// aggregated to RCS raw contacts only if OS version if gingebread or fewer
+					if (addressBookTracker.hasNonSimContact(row.number) || (Build.VERSION.SDK_INT > 10)) {
+						toBeTreatedNumbers.add(row.number);
+					}
+				} else if ((!row.sim || (Build.VERSION.SDK_INT > 10))
+						&& !associations.contains(ContactsManager.getAssociationKey(row.rawContactId, row.number))) {
+					// If it is a RCS contact and the raw contact is not associated with a RCS raw contact,
+					// then we have to create a new association for it
+					ContactInfo currentInfo = contactsManager.getContactInfo(row.number);
+					if (currentInfo != null && currentInfo.isRcsContact()) {
+						contactsManager.createRcsContact(currentInfo, row.rawContactId);
+						associations.add(ContactsManager.getAssociationKey(row.rawContactId, row.number));
+					}
 				}
 			}
-		}
-		phonesCursor.close();
 
-		// Get the capabilities for the numbers that haven't got a RCS associated contact
-		requestContactCapabilities(toBeTreatedNumbers);
+			// Get the capabilities for the numbers that haven't got a RCS associated contact
+			requestContactCapabilities(new ArrayList<String>(toBeTreatedNumbers));
+		}
 
 		// End of the check procedure
 		isCheckInProgress = false;
@@ -343,6 +339,37 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 		}
 	}
 
+	/**
+     * Scan the phone numbers of the address book
+     * 
+     * @return Phone rows added or modified since the previous scan or null in case of error
+     */
+	private List<AddressBookTracker.PhoneRow> scanAddressBook() {
+        String[] projection = {
+                Phone._ID, Phone.NUMBER, Phone.RAW_CONTACT_ID, Phone.DATA_VERSION, RawContacts.ACCOUNT_TYPE
+                };
+        Cursor phonesCursor = AndroidFactory.getApplicationContext().getContentResolver().query(
+                Phone.CONTENT_URI,
+                projection,
+                null,
+                null,
+                null);
+        if (phonesCursor == null) {
+        	return null;
+        }
+        try {
+        	addressBookTracker.beginScan();
+    		while(phonesCursor.moveToNext()) {
+    			String phoneNumber = PhoneUtils.formatNumberToInternational(phonesCursor.getString(1));
+    			addressBookTracker.addPhone(phonesCursor.getLong(0), phonesCursor.getLong(3), phonesCursor.getLong(2),
+    					phoneNumber, ContactsManager.isSimAccountType(phonesCursor.getString(4)));
+    		}
+    		return addressBookTracker.endScan();
+        } finally {
+        	phonesCursor.close();
+        }
+	}
+
 	/**
      * Reset the content sharing capabities for a given contact
      * 
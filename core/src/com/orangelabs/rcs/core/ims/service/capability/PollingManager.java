@@ -25,15 +25,23 @@ import com.orangelabs.rcs.utils.PeriodicRefresher;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * Polling manager which updates capabilities periodically
+ * Polling manager which updates capabilities periodically. The contacts are
+ * reloaded from the EAB at each polling period, and their capabilities are
+ * refreshed by a {@link CapabilityRefreshScheduler} once expired, at a
+ * limited rate.
  * 
  * @author Jean-Marc AUFFRET
  */
 public class PollingManager extends PeriodicRefresher {
 	/**
-	 * Capability expiry timeout in seconds
+	 * Maximum sustained rate of refresh requests per second
 	 */
-	private static final int CAPABILITY_EXPIRY_PERIOD = RcsSettings.getInstance().getCapabilityExpiryTimeout();
+	private static final double MAX_REQUEST_RATE = 2.0;
+
+	/**
+	 * Maximum number of refresh requests sent at once
+	 */
+	private static final int MAX_REQUEST_BURST = 10;
 
 	/**
      * Capability service
@@ -44,6 +52,16 @@ public class PollingManager extends PeriodicRefresher {
 	 * Polling period (in seconds)
 	 */
 	private int pollingPeriod;
+
+	/**
+	 * Refresh scheduler
+	 */
+	private CapabilityRefreshScheduler scheduler;
+
+	/**
+	 * Thread sending the refresh requests
+	 */
+	private RefreshThread refreshThread = null;
 	
 	/**
      * The logger
@@ -58,23 +76,50 @@ public class PollingManager extends PeriodicRefresher {
 	public PollingManager(CapabilityService parent) {
 		this.imsService = parent;
 		this.pollingPeriod = RcsSettings.getInstance().getCapabilityPollingPeriod();
+		this.scheduler = new CapabilityRefreshScheduler(RcsSettings.getInstance().getCapabilityExpiryTimeout() * 1000L,
+				MAX_REQUEST_RATE, MAX_REQUEST_BURST);
 	}
 	
 	/**
 	 * Start polling
 	 */
-	public void start() {
+	public synchronized void start() {
 		if (pollingPeriod == 0) {
 			return;
 		}
+		refreshThread = new RefreshThread();
+		refreshThread.start();
 		startTimer(pollingPeriod, 1);
 	}
 	
 	/**
 	 * Stop polling
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		stopTimer();
+		if (refreshThread != null) {
+			refreshThread.terminate();
+			refreshThread = null;
+		}
+	}
+
+	/**
+	 * Returns the refresh scheduler
+	 * 
+	 * @return Scheduler
+	 */
+	public CapabilityRefreshScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Notify that a communication with a contact took place, so that its
+	 * capabilities are refreshed in priority
+	 * 
+	 * @param contact Contact
+	 */
+	public void notifyContactActivity(String contact) {
+		scheduler.notifyActivity(contact, System.currentTimeMillis());
 	}
 	
 	/**
@@ -86,55 +131,113 @@ public class PollingManager extends PeriodicRefresher {
     		logger.info("Execute new capabilities update");
     	}
     	
-    	// Update all contacts capabilities if refresh timeout has not expired
-		List<String> contactList = ContactsManager.getInstance().getAllContacts();
-		for (int i=0; i < contactList.size(); i++) {
-			String contact = contactList.get(i);
-			requestContactCapabilities(contact);
+		reloadContacts();
+
+		// Wake up the refresh thread, which may have been delayed by the device sleep
+		RefreshThread thread = refreshThread;
+		if (thread != null) {
+			thread.wakeUp();
 		}
 		
 		// Restart timer
 		startTimer(pollingPeriod, 1);		
     }
+
+	/**
+	 * Reload the contacts and the timestamp of their capabilities from the EAB
+	 */
+	private void reloadContacts() {
+		List<String> contactList = ContactsManager.getInstance().getAllContacts();
+		scheduler.retainAll(contactList);
+		long now = System.currentTimeMillis();
+		for (int i=0; i < contactList.size(); i++) {
+			String contact = contactList.get(i);
+			Capabilities capabilities = ContactsManager.getInstance().getContactCapabilities(contact);
+			if (capabilities == null) {
+				scheduler.schedule(contact, 0L, false, now);
+			} else {
+				scheduler.schedule(contact, capabilities.getTimestamp(), capabilities.isPresenceDiscoverySupported(), now);
+			}
+		}
+		if (logger.isActivated()) {
+			logger.info(scheduler.size() + " contacts scheduled, " + scheduler.getRequestsNumber()
+					+ " requests at " + scheduler.getRequestRate(now) + " req/s, staleness avg="
+					+ scheduler.getAverageStaleness() / 1000 + "s max=" + scheduler.getMaxStaleness() / 1000 + "s");
+		}
+	}
     
 	/**
 	 * Request contact capabilities 
 	 * 
-	 * @param contact Contact
+	 * @param request Refresh request
 	 */
-	private void requestContactCapabilities(String contact) {
+	private void requestContactCapabilities(CapabilityRefreshScheduler.Request request) {
     	if (logger.isActivated()) {
-    		logger.debug("Request capabilities for " + contact);
+    		logger.debug("Capabilities have expired for " + request.contact);
     	}
 
-		// Read capabilities from the database
-		Capabilities capabilities = ContactsManager.getInstance().getContactCapabilities(contact);
-		if (capabilities == null) {
-	    	if (logger.isActivated()) {
-	    		logger.debug("No capability exist for " + contact);
-	    	}
-
-            // New contact: request capabilities from the network
-    		imsService.getOptionsManager().requestCapabilities(contact);
-		} else {
-	    	if (logger.isActivated()) {
-	    		logger.debug("Capabilities exist for " + contact);
-	    	}
-			long delta = (System.currentTimeMillis()-capabilities.getTimestamp())/1000;
-			if ((delta >= CAPABILITY_EXPIRY_PERIOD) || (delta < 0)) {
-		    	if (logger.isActivated()) {
-		    		logger.debug("Capabilities have expired for " + contact);
-		    	}
-
-		    	// Capabilities are too old: request capabilities from the network
-		    	if (capabilities.isPresenceDiscoverySupported()) {
-			    	// If contact supports capability discovery via presence, use the selected discoveryManager
-		    		imsService.getAnonymousFetchManager().requestCapabilities(contact);
-		    	} else {
-		    		// The contact only supports OPTIONS requests
-		    		imsService.getOptionsManager().requestCapabilities(contact);
-		    	}
+    	if (request.presence) {
+	    	// If contact supports capability discovery via presence, use the selected discoveryManager
+    		imsService.getAnonymousFetchManager().requestCapabilities(request.contact);
+    	} else {
+    		// The contact only supports OPTIONS requests
+    		imsService.getOptionsManager().requestCapabilities(request.contact);
+    	}
+	}
+
+	/**
+	 * Thread sending the refresh requests as soon as the scheduler allows it
+	 */
+	private class RefreshThread extends Thread {
+		private boolean terminated = false;
+
+		private RefreshThread() {
+			super("CapabilityRefresh");
+			setDaemon(true);
+		}
+
+		/**
+		 * Wake up the thread to check the due requests
+		 */
+		private synchronized void wakeUp() {
+			notify();
+		}
+
+		/**
+		 * Terminate the thread
+		 */
+		private synchronized void terminate() {
+			terminated = true;
+			notify();
+		}
+
+		public void run() {
+			reloadContacts();
+			while (true) {
+				long now = System.currentTimeMillis();
+				List<CapabilityRefreshScheduler.Request> requests = scheduler.getDueRequests(now);
+				for (int i = 0; i < requests.size(); i++) {
+					requestContactCapabilities(requests.get(i));
+				}
+
+				synchronized(this) {
+					if (terminated) {
+						return;
+					}
+					long next = scheduler.getNextRequestTime(System.currentTimeMillis());
+					long delay = (next < 0L) ? 0L : (next - System.currentTimeMillis());
+					if ((next < 0L) || (delay > 0L)) {
+						try {
+							wait(Math.max(0L, delay));
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (terminated) {
+						return;
+					}
+				}
 			}
 		}
-	}	    
+	}
 }
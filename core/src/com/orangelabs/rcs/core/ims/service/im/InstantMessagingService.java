@@ -183,6 +183,15 @@ public class InstantMessagingService extends ImsService {
 		return imdnMgr;
 	}	
 
+	/**
+	 * Returns the manager of the FT HTTP sessions to resume
+	 * 
+	 * @return Resume manager or null if the service is not started
+	 */
+	public FtHttpResumeManager getResumeManager() {
+		return resumeManager;
+	}
+
 	/**
 	 * Get Store & Forward manager
 	 */
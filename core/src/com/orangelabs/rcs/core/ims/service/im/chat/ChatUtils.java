@@ -18,8 +18,6 @@
 package com.orangelabs.rcs.core.ims.service.im.chat;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -31,6 +29,7 @@ import org.xml.sax.InputSource;
 
 import android.text.TextUtils;
 
+import com.orangelabs.rcs.core.content.ThumbnailManager;
 import com.orangelabs.rcs.core.ims.network.sip.FeatureTags;
 import com.orangelabs.rcs.core.ims.network.sip.Multipart;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
@@ -935,19 +934,15 @@ public class ChatUtils {
     }
 
     /**
-     * Returns the data of the thumbnail file
+     * Returns the thumbnail of an image file, generated within the maximum
+     * size of a file icon
      * 
      * @param filename Filename
      * @return Bytes or null in case of error
      */
     public static byte[] getFileThumbnail(String filename) {
     	try {
-	    	File file = new File(filename);
-	    	byte [] data = new byte[(int)file.length()];
-	    	FileInputStream fis = new FileInputStream(file);
-	    	fis.read(data);
-	    	fis.close();
-	    	return data;
+	    	return ThumbnailManager.getInstance().getThumbnail(filename);
     	} catch(Exception e) {
     		return null;
     	}
@@ -6,7 +6,9 @@ import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -48,6 +50,19 @@ public class FileTransSSLFactory {
 		return sslcontext;
     }
     
+    /**
+     * Host name verifier accepting all the host names, the server certificates
+     * being trusted all the same
+     */
+    public static class AllHostnameVerifier implements HostnameVerifier {
+
+        @Override
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+
+    }
+
     public static class AllTrustManager implements X509TrustManager {
 
         @Override
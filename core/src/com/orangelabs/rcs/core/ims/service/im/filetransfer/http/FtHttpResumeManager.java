@@ -17,9 +17,7 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.gsma.services.rcs.ft.FileTransfer;
 import com.orangelabs.rcs.core.content.ContentManager;
@@ -27,15 +25,19 @@ import com.orangelabs.rcs.core.content.MmContent;
 import com.orangelabs.rcs.core.ims.service.im.InstantMessagingService;
 import com.orangelabs.rcs.core.ims.service.im.filetransfer.FileSharingError;
 import com.orangelabs.rcs.core.ims.service.im.filetransfer.FileSharingSessionListener;
+import com.orangelabs.rcs.provider.fthttp.FtHttpDirection;
 import com.orangelabs.rcs.provider.fthttp.FtHttpResume;
 import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDaoImpl;
 import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDownload;
 import com.orangelabs.rcs.provider.fthttp.FtHttpResumeUpload;
 import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
+import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * File Transfer HTTP resume manager
+ * File Transfer HTTP resume manager: the pending sessions are resumed by a
+ * {@link TransferScheduler}, which limits the sessions running at the same
+ * time and retries the interrupted ones
  */
 public class FtHttpResumeManager {
 	/**
@@ -49,21 +51,117 @@ public class FtHttpResumeManager {
 	private InstantMessagingService imsService;
 
 	/**
-	 * List of pending sessions to resume
+	 * Scheduler of the sessions to resume, saving the retries in the FtHttp table
 	 */
-	private LinkedList<FtHttpResume> listOfFtHttpResume;
+	private TransferScheduler scheduler = new TransferScheduler() {
+		protected void saveSchedule(TransferScheduler.Transfer transfer) {
+			dao.updateSchedule(((ResumeTransfer)transfer).ftHttpResume, transfer.getAttempts(),
+					transfer.getNextAttempt());
+		}
+	};
 
 	/**
-	 * FT HTTP session being resumed
+	 * The logger
 	 */
-	private FtHttpResume ftHttpResume;
+	private static final Logger logger = Logger.getLogger(FtHttpResumeManager.class.getSimpleName());
 
 	/**
-	 * The logger
+	 * FT HTTP session to resume
 	 */
-	private static final Logger logger = Logger.getLogger(FtHttpResumeManager.class.getSimpleName());
+	private class ResumeTransfer extends TransferScheduler.Transfer {
+		private FtHttpResume ftHttpResume;
+
+		private HttpFileTransferSession session = null;
+
+		ResumeTransfer(FtHttpResume ftHttpResume) {
+			super(ftHttpResume.getDirection(), ftHttpResume.getSize(), getVisibleChatId(ftHttpResume));
+			this.ftHttpResume = ftHttpResume;
+			setSchedule(ftHttpResume.getAttempts(), ftHttpResume.getNextAttempt());
+		}
+
+		protected void start() {
+			if (session != null) {
+				// Retry of an interrupted session
+				if (logger.isActivated()) {
+					logger.debug("Retry FT HTTP " + ftHttpResume + " attempt " + (getAttempts() + 1));
+				}
+				session.resumeFileTransfer();
+				return;
+			}
+			if (logger.isActivated()) {
+				logger.debug("Resume FT HTTP " + ftHttpResume);
+			}
+			switch (ftHttpResume.getDirection()) {
+			case INCOMING:
+				FtHttpResumeDownload downloadInfo = (FtHttpResumeDownload) ftHttpResume;
+				MmContent downloadContent = ContentManager.createMmContentFromMime(downloadInfo.getFilename(),
+	                    downloadInfo.getUrl(), downloadInfo.getMimetype(), downloadInfo.getSize());
+				// Creates the Resume Download session object
+				ResumeDownloadFileSharingSession resumeDownload = new ResumeDownloadFileSharingSession(
+	                    imsService, downloadContent, downloadInfo);
+				resumeDownload.addListener(getFileSharingSessionListener(this));
+				session = resumeDownload;
+				// Start the download HTTP FT session object
+				resumeDownload.startSession();
+				// Notify the UI and update rich messaging
+				imsService
+						.getImsModule()
+						.getCore()
+						.getListener()
+						.handleIncomingFileTransferResuming(resumeDownload, resumeDownload.isGroup, resumeDownload.getChatSessionID(),
+								resumeDownload.getContributionID());
+				break;
+			case OUTGOING:
+	            FtHttpResumeUpload uploadInfo = (FtHttpResumeUpload) ftHttpResume;
+	            // Get upload content
+	            MmContent uploadContent = ContentManager.createMmContentFromMime(uploadInfo.getFilename(),
+	                    uploadInfo.getMimetype(), uploadInfo.getSize());
+
+	            // Create Resume Upload session 
+	            ResumeUploadFileSharingSession resumeUpload = new ResumeUploadFileSharingSession(imsService, uploadContent,
+	                    uploadInfo);
+	            resumeUpload.addListener(getFileSharingSessionListener(this));
+	            session = resumeUpload;
+
+	            // Start Resume Upload session
+	            resumeUpload.startSession();
+
+	            // Notify the UI and update rich messaging
+	            imsService.getImsModule().getCore().getListener()
+	                    .handleOutgoingFileTransferResuming(resumeUpload, false);
+	            break;
+			}
+		}
 
-	private boolean terminate = false; // TODO
+		/**
+		 * Returns the delay before a retry requested by the server
+		 *
+		 * @return Delay in seconds or 0
+		 */
+		int getRetryAfter() {
+			if (session instanceof TerminatingHttpFileSharingSession) {
+				return ((TerminatingHttpFileSharingSession)session).getDownloadManager().getRetryAfter();
+			} else if (session instanceof OriginatingHttpFileSharingSession) {
+				return ((OriginatingHttpFileSharingSession)session).getUploadManager().getRetryAfter();
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the ID of the chat of a session as set by the UI when the chat
+	 * is displayed: the chat ID of a group chat, the contact of a single chat
+	 * 
+	 * @param ftHttpResume
+	 *            Session to resume
+	 * @return Chat ID
+	 */
+	private static String getVisibleChatId(FtHttpResume ftHttpResume) {
+		if (ftHttpResume.isGroup() || (ftHttpResume.getContact() == null)) {
+			return ftHttpResume.getChatId();
+		}
+		return PhoneUtils.extractNumberFromUri(ftHttpResume.getContact());
+	}
 
 	/**
 	 * Constructor
@@ -82,16 +180,19 @@ public class FtHttpResumeManager {
 		try {
 			// Retrieve all resumable sessions
 			List<FtHttpResume> listFile2resume = dao.queryAll();
-			if (listFile2resume.isEmpty() == false) {
+			for (FtHttpResume ftHttpResume : listFile2resume) {
 				// Rich Messaging - set all "in progress" File transfer to "paused".
 				// This is necessary in case of the application can't update the
 				// status before device switch off.
-				for (FtHttpResume ftHttpResume : listFile2resume) {
-					RichMessagingHistory.getInstance().updateFileTransferStatus(ftHttpResume.getSessionId(),
-							FileTransfer.State.PAUSED);
+				RichMessagingHistory.getInstance().updateFileTransferStatus(ftHttpResume.getSessionId(),
+						FileTransfer.State.PAUSED);
+			}
+			for (FtHttpResume ftHttpResume : listFile2resume) {
+				// TODO : only managed for 1-1 FToHTTP
+				if ((ftHttpResume.getDirection() == FtHttpDirection.OUTGOING) && ftHttpResume.isGroup()) {
+					continue;
 				}
-				listOfFtHttpResume = new LinkedList<FtHttpResume>(listFile2resume);
-				processNext();
+				scheduler.schedule(new ResumeTransfer(ftHttpResume));
 			}
 		} catch (Exception e) {
 			// handle exception
@@ -101,83 +202,18 @@ public class FtHttpResumeManager {
 		}
 	}
 
-	/**
-	 * resume next pending session
-	 */
-	private void processNext() {
-		if (listOfFtHttpResume.isEmpty())
-			return;
-		// Remove the oldest session from the list
-		ftHttpResume = listOfFtHttpResume.poll();
-		if (logger.isActivated()) {
-			logger.debug("Resume FT HTTP " + ftHttpResume);
-		}
-		switch (ftHttpResume.getDirection()) {
-		case INCOMING:
-			FtHttpResumeDownload downloadInfo = (FtHttpResumeDownload) ftHttpResume;
-			MmContent downloadContent = ContentManager.createMmContentFromMime(downloadInfo.getFilename(),
-                    downloadInfo.getUrl(), downloadInfo.getMimetype(), downloadInfo.getSize());
-			// Creates the Resume Download session object
-			final ResumeDownloadFileSharingSession resumeDownload = new ResumeDownloadFileSharingSession(
-                    imsService, downloadContent, downloadInfo);
-			resumeDownload.addListener(getFileSharingSessionListener());
-			// Start the download HTTP FT session object
-			new Thread() {
-				public void run() {
-					resumeDownload.startSession();
-				}
-			}.start();
-			// Notify the UI and update rich messaging
-			imsService
-					.getImsModule()
-					.getCore()
-					.getListener()
-					.handleIncomingFileTransferResuming(resumeDownload, resumeDownload.isGroup, resumeDownload.getChatSessionID(),
-							resumeDownload.getContributionID());
-			break;
-		case OUTGOING:
-		    // TODO : only managed for 1-1 FToHTTP
-            FtHttpResumeUpload uploadInfo = (FtHttpResumeUpload) ftHttpResume;
-            if (!ftHttpResume.isGroup()) {
-                // Get upload content
-                MmContent uploadContent = ContentManager.createMmContentFromMime(uploadInfo.getFilename(),
-                        uploadInfo.getMimetype(), uploadInfo.getSize());
-
-                // Create Resume Upload session 
-                final ResumeUploadFileSharingSession resumeUpload = new ResumeUploadFileSharingSession(imsService, uploadContent,
-                        uploadInfo);
-                resumeUpload.addListener(getFileSharingSessionListener());
-
-                // Start Resume Upload session
-                new Thread() {
-                    public void run() {
-                        resumeUpload.startSession();
-                    }
-                }.start();
-
-                // Notify the UI and update rich messaging
-                imsService.getImsModule().getCore().getListener()
-                        .handleOutgoingFileTransferResuming(resumeUpload, false);
-            }
-            break;
-		}
-
-	}
-
 	/**
 	 * Create an event listener to handle end of session
 	 * 
+	 * @param transfer
+	 *            Transfer of the session
 	 * @return the File sharing event listener
 	 */
-	private FileSharingSessionListener getFileSharingSessionListener() {
+	private FileSharingSessionListener getFileSharingSessionListener(final ResumeTransfer transfer) {
 		return new FileSharingSessionListener() {
-			AtomicBoolean fired = new AtomicBoolean(false);
-
 			@Override
 			public void handleSessionTerminatedByRemote() {
-				if (fired.compareAndSet(false, true)) {
-					processNext();
-				}
+				scheduler.finished(transfer, TransferScheduler.FAILED, 0);
 			}
 
 			@Override
@@ -186,9 +222,7 @@ public class FtHttpResumeManager {
 
 			@Override
 			public void handleSessionAborted(int reason) {
-				if (fired.compareAndSet(false, true)) {
-					processNext();
-				}
+				scheduler.finished(transfer, TransferScheduler.FAILED, 0);
 			}
 
 			@Override
@@ -197,16 +231,12 @@ public class FtHttpResumeManager {
 
 			@Override
 			public void handleTransferError(FileSharingError error) {
-				if (fired.compareAndSet(false, true)) {
-					processNext();
-				}
+				scheduler.finished(transfer, TransferScheduler.FAILED, 0);
 			}
 
 			@Override
 			public void handleFileTransfered(String filename) {
-				if (fired.compareAndSet(false, true)) {
-					processNext();
-				}
+				scheduler.finished(transfer, TransferScheduler.COMPLETED, 0);
 			}
 
 			@Override
@@ -215,12 +245,28 @@ public class FtHttpResumeManager {
 
 			@Override
 			public void handleFileTransferPaused() {
+				if (transfer.session.isFileTransferPaused()) {
+					// Paused by the user, resumed by the user
+					scheduler.finished(transfer, TransferScheduler.PAUSED, 0);
+				} else {
+					scheduler.finished(transfer, TransferScheduler.INTERRUPTED, transfer.getRetryAfter());
+				}
 			}
 		};
 	}
 
+	/**
+	 * Set the chat displayed to the user, whose sessions are resumed first
+	 * 
+	 * @param chatId
+	 *            Chat ID or null
+	 */
+	public void setVisibleChat(String chatId) {
+		scheduler.setVisibleChat(chatId);
+	}
+
 	public void terminate() {
-		this.terminate = true;
+		scheduler.terminate();
 	}
 
 }
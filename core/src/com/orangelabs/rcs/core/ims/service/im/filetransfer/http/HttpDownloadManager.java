@@ -5,14 +5,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Vector;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
 
 import com.orangelabs.rcs.core.content.MmContent;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
+import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDaoImpl;
+import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDownload;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CloseableUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -58,6 +65,16 @@ public class HttpDownloadManager extends HttpTransferManager {
 	 */
 	private int retryCount = 0;
 
+	/**
+	 * Byte ranges supported by the server
+	 */
+	private boolean rangesSupported = true;
+
+	/**
+	 * Download over several connections in progress
+	 */
+	private volatile RangedDownload currentDownload = null;
+
 	/**
 	 * The logger
 	 */
@@ -112,6 +129,34 @@ public class HttpDownloadManager extends HttpTransferManager {
 		return localUrl;
 	}
 
+	/**
+	 * Interrupts file transfer
+	 */
+	@Override
+	public void interrupt() {
+		super.interrupt();
+		cancelRanges();
+	}
+
+	/**
+	 * Pauses file transfer
+	 */
+	@Override
+	public void pauseTransfer() {
+		super.pauseTransfer();
+		cancelRanges();
+	}
+
+	/**
+	 * Stop the download over several connections
+	 */
+	private void cancelRanges() {
+		RangedDownload download = currentDownload;
+		if (download != null) {
+			download.cancel();
+		}
+	}
+
 	/**
 	 * Download file
 	 * 
@@ -122,6 +167,15 @@ public class HttpDownloadManager extends HttpTransferManager {
 			if (logger.isActivated()) {
 				logger.debug("Download file " + content.getUrl());
 			}
+
+			// Download large files over several connections
+			int connections = RcsSettings.getInstance().getFtHttpDownloadConnections();
+			if (rangesSupported && (connections > 1) && (content.getSize() >= 2 * RangedDownload.MIN_RANGE_SIZE)) {
+				int result = downloadRanges(RangedDownload.split(content.getSize(), connections));
+				if (result != RangedDownload.NOT_SUPPORTED) {
+					return result == RangedDownload.COMPLETED;
+				}
+			}
 			if (streamForFile == null) {
 				streamForFile = openStremForFile(file);
 				if (streamForFile == null)
@@ -162,6 +216,87 @@ public class HttpDownloadManager extends HttpTransferManager {
 		}
 	}
 
+	/**
+	 * Download byte ranges of the file concurrently
+	 * 
+	 * @param ranges
+	 *            Ranges of the file
+	 * @return Result of the ranged download
+	 */
+	private int downloadRanges(Vector<RangedDownload.Range> ranges) {
+		if (logger.isActivated()) {
+			logger.debug("Download file " + content.getUrl() + " over " + ranges.size() + " connections");
+		}
+		// The ranges are written at their position in the file
+		CloseableUtils.close(streamForFile);
+		streamForFile = null;
+
+		RangedDownload download = new RangedDownload(content.getUrl(), file, content.getSize(), ranges) {
+			protected void prepareRequest(HttpRequestBase request) {
+				request.addHeader("User-Agent", SipUtils.userAgentString());
+				HttpDownloadManager.this.prepareRequest(request);
+			}
+
+
+			protected void saveRanges(String ranges) {
+				FtHttpResumeDaoImpl dao = FtHttpResumeDaoImpl.getInstance();
+				if (dao != null) {
+					dao.updateDownloadRanges(content.getUrl(), ranges);
+				}
+			}
+		};
+		int result;
+		currentDownload = download;
+		try {
+			if (isCancelled() || isPaused()) {
+				result = RangedDownload.CANCELLED;
+			} else {
+				result = download.download(new TransferProgress(getListener(), download.getReceived(), content
+						.getSize()));
+			}
+		} finally {
+			currentDownload = null;
+		}
+
+		switch (result) {
+		case RangedDownload.NOT_SUPPORTED:
+			if (logger.isActivated()) {
+				logger.warn("Byte ranges not supported by the server, download over a single connection");
+			}
+			rangesSupported = false;
+			restartFile();
+			break;
+		case RangedDownload.CANCELLED:
+			if (isCancelled() && !isPaused()) {
+				file.delete();
+			}
+			break;
+		case RangedDownload.FAILED:
+			pauseTransfer();
+			break;
+		}
+		return result;
+	}
+
+	/**
+	 * Empty the file and forget its ranges to download it again from the beginning
+	 */
+	private void restartFile() {
+		CloseableUtils.close(streamForFile);
+		FtHttpResumeDaoImpl dao = FtHttpResumeDaoImpl.getInstance();
+		if (dao != null) {
+			dao.updateDownloadRanges(content.getUrl(), null);
+		}
+		try {
+			new FileOutputStream(file).close();
+		} catch (IOException e) {
+			if (logger.isActivated()) {
+				logger.error("Could not empty file " + file, e);
+			}
+		}
+		streamForFile = openStremForFile(file);
+	}
+
 	/**
 	 * Get the file and save it
 	 * 
@@ -173,7 +308,7 @@ public class HttpDownloadManager extends HttpTransferManager {
         HttpResponse response = null;
 		try {
 			// Execute HTTP request
-			response = getHttpClient().execute(request);
+			response = executeRequest(request);
 			int statusCode = response.getStatusLine().getStatusCode();
 			if (HTTP_TRACE_ENABLED) {
 				String trace = "<<< Receive HTTP response:";
@@ -187,6 +322,11 @@ public class HttpDownloadManager extends HttpTransferManager {
 			} else if (statusCode == 206) {
 				calclength = Long.valueOf(file.length()).intValue();
 			} else {
+				releaseResponse();
+				if (statusCode == 503) {
+					// Server busy, the transfer is resumed later
+					pauseTransfer();
+				}
 				return false;
 			}
         } catch (Exception e) {
@@ -207,6 +347,10 @@ public class HttpDownloadManager extends HttpTransferManager {
 				getListener().httpTransferProgress(calclength, content.getSize());
 				streamForFile.write(buffer, 0, num);
 			}
+			if (isCancelled() || isPaused()) {
+				// Close the connection instead of reading the rest of the file
+				request.abort();
+			}
         } catch (Exception e) {
             if (logger.isActivated()) {
                 logger.error("Download file exception. Set in paused", e);
@@ -285,7 +429,7 @@ public class HttpDownloadManager extends HttpTransferManager {
 	private ByteArrayOutputStream getThumbnail(HttpGet request) {
 		try {
 			// Execute HTTP request
-			HttpResponse response = getHttpClient().execute(request);
+			HttpResponse response = executeRequest(request);
 			int statusCode = response.getStatusLine().getStatusCode();
 			if (HTTP_TRACE_ENABLED) {
 				String trace = "<<< Receive HTTP response:";
@@ -311,11 +455,13 @@ public class HttpDownloadManager extends HttpTransferManager {
 				bOutputStream.close();
 
 				if (isCancelled()) {
+					request.abort();
 					return null;
 				} else {
 					return bOutputStream;
 				}
 			} else {
+				releaseResponse();
 				return null;
 			}
 		} catch (Exception e) {
@@ -338,6 +484,25 @@ public class HttpDownloadManager extends HttpTransferManager {
 		}
 		resetParamForResume();
 		try {
+			// Resume the ranges of a download over several connections
+			FtHttpResumeDaoImpl dao = FtHttpResumeDaoImpl.getInstance();
+			FtHttpResumeDownload resume = (dao != null) ? dao.queryDownload(content.getUrl()) : null;
+			if ((resume != null) && (resume.getRanges() != null)) {
+				Vector<RangedDownload.Range> ranges = RangedDownload.parse(resume.getRanges(), content.getSize());
+				if (ranges == null) {
+					restartFile();
+					return downloadFile();
+				}
+				if (logger.isActivated()) {
+					logger.debug("Resume Download file " + content.getUrl() + " ranges " + resume.getRanges());
+				}
+				int result = downloadRanges(ranges);
+				if (result != RangedDownload.NOT_SUPPORTED) {
+					return result == RangedDownload.COMPLETED;
+				}
+				return downloadFile();
+			}
+
 			if (logger.isActivated()) {
 				logger.debug("Resume Download file " + content.getUrl() + " from byte " + file.length());
 			}
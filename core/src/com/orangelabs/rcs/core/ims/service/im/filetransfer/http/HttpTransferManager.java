@@ -19,30 +19,17 @@
 package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.ClientContext;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnManagerPNames;
-import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 
@@ -105,7 +92,17 @@ public abstract class HttpTransferManager {
      * HTTP client
      */
     private DefaultHttpClient httpClient = null;
+
+    /**
+     * Proxy or null
+     */
+    private HttpHost proxy = null;
     
+    /**
+     * Delay before a retry requested by the server in seconds
+     */
+    private int retryAfter = 0;
+
     /**
      * Cancellation flag
      */
@@ -130,7 +127,7 @@ public abstract class HttpTransferManager {
     public HttpTransferManager(HttpTransferEventListener listener) {
         this.listener = listener;
 
-        initServerAddress(serverAddr);
+        initHttpClient();
     }
 
     /**
@@ -142,62 +139,31 @@ public abstract class HttpTransferManager {
     public HttpTransferManager(HttpTransferEventListener listener, String address) {
         this.listener = listener;
 
-        initServerAddress(address);
+        initHttpClient();
     }
 
     
     /**
-     * Initialize with server address
-     *
-     * @param address server address
+     * Initialize the HTTP client
      */
-    private void initServerAddress(String address) {
-        try {
-            // Extract protocol and port
-            URL url = new URL(address);
-            String protocol = url.getProtocol();
-            int port = url.getPort();
-            if (port == -1) {
-                // Set default port
-                if (protocol.equals("https")) {
-                    port = 443;
-                } else {
-                    port = 80;
-                }
-            }
-    
-            // Format HTTP request
-            ConnectivityManager connMgr = (ConnectivityManager) AndroidFactory.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-            SchemeRegistry schemeRegistry = new SchemeRegistry();
-            if (protocol.equals("https")) {
-                schemeRegistry.register(new Scheme("https", new com.orangelabs.rcs.provisioning.https.EasySSLSocketFactory(), port));
-            } else {
-                schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), port));
-            }
-            HttpParams params = new BasicHttpParams();
-            params.setParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, 30);
-            params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, new ConnPerRouteBean(30));
-            params.setParameter(HttpProtocolParams.USE_EXPECT_CONTINUE, false);
-            NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-            if (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
-                String proxyHost = Proxy.getDefaultHost();
-                if (proxyHost != null && proxyHost.length() > 1) {
-                    int proxyPort = Proxy.getDefaultPort();
-                    params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort));
-                }
+    private void initHttpClient() {
+        // The connections to the server are pooled by the transport
+        httpClient = HttpTransport.getInstance().getHttpClient();
+
+        // Use the proxy of the mobile network
+        ConnectivityManager connMgr = (ConnectivityManager) AndroidFactory.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
+            String proxyHost = Proxy.getDefaultHost();
+            if (proxyHost != null && proxyHost.length() > 1) {
+                proxy = new HttpHost(proxyHost, Proxy.getDefaultPort());
             }
-            HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-            ClientConnectionManager cm = new SingleClientConnManager(params, schemeRegistry);
-            httpClient = new DefaultHttpClient(cm, params);
-            
-            
-            // Create local HTTP context
-            CookieStore cookieStore = (CookieStore) new BasicCookieStore();
-            httpContext = new BasicHttpContext();
-            httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
-        } catch (MalformedURLException e) {
-            // Nothing to do
         }
+
+        // Create local HTTP context
+        CookieStore cookieStore = (CookieStore) new BasicCookieStore();
+        httpContext = new BasicHttpContext();
+        httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
     }
 
     /**
@@ -245,12 +211,21 @@ public abstract class HttpTransferManager {
      * @throws ClientProtocolException 
      */
     public HttpResponse executeRequest(HttpRequestBase request) throws ClientProtocolException, IOException {
-    	if(response != null)
-    	{
-			response.getEntity().consumeContent();
-    	}
+    	releaseResponse();
         if (httpClient != null) {
+        	prepareRequest(request);
         	response = httpClient.execute(request, httpContext);
+        	retryAfter = 0;
+        	if (response.getStatusLine().getStatusCode() == 503) {
+        		Header header = response.getFirstHeader("Retry-After");
+        		if (header != null) {
+        			try {
+        				retryAfter = Integer.parseInt(header.getValue().trim());
+        			} catch (NumberFormatException e) {
+        				// Nothing to do
+        			}
+        		}
+        	}
             if (HTTP_TRACE_ENABLED) {
                 String trace = "<<< Receive HTTP response:";
                 trace += "\n" + response.getStatusLine().toString();
@@ -266,6 +241,43 @@ public abstract class HttpTransferManager {
         }
     }
     
+    /**
+     * Release the connection of the last response to the pool, if its
+     * content has not been fully read
+     */
+    public void releaseResponse() {
+    	if (response != null) {
+    		try {
+    			if (response.getEntity() != null) {
+    				response.getEntity().consumeContent();
+    			}
+    		} catch (IOException e) {
+    			// Connection closed by the pool
+    		}
+    		response = null;
+    	}
+    }
+
+    /**
+     * Set the parameters of the transfer on a request
+     *
+     * @param request HTTP request
+     */
+    public void prepareRequest(HttpRequestBase request) {
+    	if (proxy != null) {
+    		request.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+    	}
+    }
+
+    /**
+     * Returns the delay before a retry requested by the last response
+     *
+     * @return Delay in seconds or 0
+     */
+    public int getRetryAfter() {
+    	return retryAfter;
+    }
+
     /**
      * Get HTTP client
      * 
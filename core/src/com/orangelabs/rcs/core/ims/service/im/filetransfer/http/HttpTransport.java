@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.LayeredSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * HTTP transport shared by the file transfers: the connections to the
+ * content server are kept alive in a pool, so that the consecutive
+ * requests of a transfer and the next transfers reuse them, and the TLS
+ * sessions are resumed when a new connection is opened.
+ *
+ * @author Orange
+ */
+public class HttpTransport {
+	/**
+	 * Maximum number of connections per host
+	 */
+	public static final int MAX_CONNECTIONS_PER_HOST = 6;
+
+	/**
+	 * Maximum number of connections
+	 */
+	public static final int MAX_CONNECTIONS = 20;
+
+	/**
+	 * Idle time after which a connection is closed in milliseconds
+	 */
+	public static final long IDLE_TIMEOUT = 30000;
+
+	/**
+	 * Maximum time to wait for a connection of the pool in milliseconds
+	 */
+	public static final long POOL_TIMEOUT = 30000;
+
+	/**
+	 * Connection timeout in milliseconds
+	 */
+	public static final int CONNECTION_TIMEOUT = 20000;
+
+	/**
+	 * Current instance
+	 */
+	private static HttpTransport instance = null;
+
+	/**
+	 * Connection manager
+	 */
+	private ThreadSafeClientConnManager connManager;
+
+	/**
+	 * HTTP client
+	 */
+	private DefaultHttpClient httpClient;
+
+	/**
+	 * Number of requests
+	 */
+	private AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Number of connections opened
+	 */
+	private AtomicLong connections = new AtomicLong();
+
+	/**
+	 * Number of full TLS handshakes
+	 */
+	private AtomicLong handshakes = new AtomicLong();
+
+	/**
+	 * Number of TLS handshakes resuming a session
+	 */
+	private AtomicLong resumedHandshakes = new AtomicLong();
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(HttpTransport.class.getSimpleName());
+
+	/**
+	 * Socket factory counting the connections
+	 */
+	private class TransportSocketFactory implements SocketFactory {
+		public Socket createSocket() throws IOException {
+			return new Socket();
+		}
+
+		public Socket connectSocket(Socket sock, String host, int port, InetAddress localAddress, int localPort,
+				HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+			Socket socket = (sock != null) ? sock : createSocket();
+			if ((localAddress != null) || (localPort > 0)) {
+				socket.bind(new InetSocketAddress(localAddress, Math.max(localPort, 0)));
+			}
+			socket.connect(new InetSocketAddress(host, port), HttpConnectionParams.getConnectionTimeout(params));
+			socket.setSoTimeout(HttpConnectionParams.getSoTimeout(params));
+			connections.incrementAndGet();
+			return socket;
+		}
+
+		public boolean isSecure(Socket socket) throws IllegalArgumentException {
+			return false;
+		}
+	}
+
+	/**
+	 * Socket factory counting the handshakes, the TLS layer being created
+	 * with the host and the port of the server so that its session can be
+	 * resumed
+	 */
+	private class SecureTransportSocketFactory extends TransportSocketFactory implements LayeredSocketFactory {
+		private SSLContext sslContext;
+
+		SecureTransportSocketFactory(SSLContext sslContext) {
+			this.sslContext = sslContext;
+		}
+
+		public Socket connectSocket(Socket sock, String host, int port, InetAddress localAddress, int localPort,
+				HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+			Socket socket = super.connectSocket(sock, host, port, localAddress, localPort, params);
+			return createSocket(socket, host, port, true);
+		}
+
+		public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException,
+				UnknownHostException {
+			SSLSocket sslSocket = (SSLSocket)sslContext.getSocketFactory().createSocket(socket, host, port, autoClose);
+			long start = System.currentTimeMillis();
+			sslSocket.startHandshake();
+			if (sslSocket.getSession().getCreationTime() < start) {
+				resumedHandshakes.incrementAndGet();
+			} else {
+				handshakes.incrementAndGet();
+			}
+			return sslSocket;
+		}
+
+		public boolean isSecure(Socket socket) throws IllegalArgumentException {
+			return true;
+		}
+	}
+
+	/**
+	 * Constructor
+	 */
+	public HttpTransport() {
+		SSLContext sslContext = null;
+		try {
+			sslContext = SSLContext.getInstance("TLS");
+			sslContext.init(null, new TrustManager[] { new FileTransSSLFactory.AllTrustManager() }, null);
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Failed to initiate SSL for the file transfers", e);
+			}
+		}
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", new TransportSocketFactory(), 80));
+		if (sslContext != null) {
+			schemeRegistry.register(new Scheme("https", new SecureTransportSocketFactory(sslContext), 443));
+		}
+
+		HttpParams params = new BasicHttpParams();
+		ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+		ConnManagerParams.setTimeout(params, POOL_TIMEOUT);
+		HttpConnectionParams.setConnectionTimeout(params, CONNECTION_TIMEOUT);
+		HttpProtocolParams.setUseExpectContinue(params, false);
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		connManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		httpClient = new DefaultHttpClient(connManager, params);
+		httpClient.addRequestInterceptor(new HttpRequestInterceptor() {
+			public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+				requests.incrementAndGet();
+			}
+		});
+
+		// Close the connections left idle
+		Thread evictor = new Thread("HttpTransport evictor") {
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(IDLE_TIMEOUT / 2);
+						closeIdleConnections(IDLE_TIMEOUT);
+					}
+				} catch (InterruptedException e) {
+					// Transport shut down
+				}
+			}
+		};
+		evictor.setDaemon(true);
+		evictor.start();
+	}
+
+	/**
+	 * Returns the transport shared by the file transfers
+	 *
+	 * @return Instance
+	 */
+	public static synchronized HttpTransport getInstance() {
+		if (instance == null) {
+			instance = new HttpTransport();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the HTTP client, whose responses have to be consumed or
+	 * aborted to give their connection back to the pool
+	 *
+	 * @return HTTP client
+	 */
+	public DefaultHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * Close the connections left idle
+	 *
+	 * @param idleTime Idle time in milliseconds
+	 */
+	public void closeIdleConnections(long idleTime) {
+		connManager.closeExpiredConnections();
+		connManager.closeIdleConnections(idleTime, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the number of connections in the pool, idle or used
+	 *
+	 * @return Number of connections
+	 */
+	public int getPooledConnections() {
+		return connManager.getConnectionsInPool();
+	}
+
+	/**
+	 * Returns the number of requests sent
+	 *
+	 * @return Number of requests
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Returns the number of connections opened
+	 *
+	 * @return Number of connections
+	 */
+	public long getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * Returns the number of full TLS handshakes
+	 *
+	 * @return Number of handshakes
+	 */
+	public long getHandshakes() {
+		return handshakes.get();
+	}
+
+	/**
+	 * Returns the number of TLS handshakes resuming a session
+	 *
+	 * @return Number of handshakes
+	 */
+	public long getResumedHandshakes() {
+		return resumedHandshakes.get();
+	}
+}
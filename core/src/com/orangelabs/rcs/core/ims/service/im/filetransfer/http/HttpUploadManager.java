@@ -2,12 +2,12 @@ package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -18,15 +18,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLSession;
-
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.util.EntityUtils;
 
 import com.orangelabs.rcs.core.CoreException;
@@ -115,6 +114,12 @@ public class HttpUploadManager extends HttpTransferManager {
 	 * Http Authentication Agent
 	 */
 	private HttpAuthenticationAgent auth;
+
+	/**
+	 * Body being written
+	 */
+	private volatile StreamingRequestBody currentBody = null;
+
 	/**
 	 * The logger
 	 */
@@ -138,6 +143,34 @@ public class HttpUploadManager extends HttpTransferManager {
 		tid = UUID.randomUUID().toString();
 	}
 
+	/**
+	 * Interrupts file transfer
+	 */
+	@Override
+	public void interrupt() {
+		super.interrupt();
+		cancelBody();
+	}
+
+	/**
+	 * Pauses file transfer
+	 */
+	@Override
+	public void pauseTransfer() {
+		super.pauseTransfer();
+		cancelBody();
+	}
+
+	/**
+	 * Stop writing the current body
+	 */
+	private void cancelBody() {
+		StreamingRequestBody body = currentBody;
+		if (body != null) {
+			body.cancel();
+		}
+	}
+
 	/**
 	 * Upload a file
 	 * 
@@ -168,30 +201,17 @@ public class HttpUploadManager extends HttpTransferManager {
 				authenticationFlag = false;
 				break;
 			case 503:
-				// INTERNAL ERROR - check retry-after header
-				Header[] headers = resp.getHeaders("Retry-After");
-				int retryAfter = 0;
-				if (headers.length > 0) {
-					try {
-						retryAfter = Integer.parseInt(headers[0].getValue());
-					} catch (NumberFormatException e) {
-						// Nothing to do
-					}
-				}
-				if (retryAfter > 0) {
-					try {
-						Thread.sleep(retryAfter * 1000);
-					} catch (InterruptedException e) {
-						// Nothing to do
-					}
-				}
-				// No break to do the retry
+				// Server busy, the transfer is resumed later
+				releaseResponse();
+				pauseTransfer();
+				return null;
 			default:
 				// Retry procedure
 				if (retryCount < RETRY_MAX) {
 					retryCount++;
 					return uploadFile();
 				} else {
+					releaseResponse();
 					return null;
 				}
 			}
@@ -205,6 +225,7 @@ public class HttpUploadManager extends HttpTransferManager {
 			if (logger.isActivated()) {
 				logger.error("Upload file has failed", e);
 			}
+			releaseResponse();
 			return null;
 		}
 	}
@@ -221,7 +242,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		// Check server address
 		url = new URL(getHttpServerAddr());
 		String protocol = url.getProtocol(); // TODO : exit if not HTTPS
-		String host = url.getHost();
+		String host = url.getAuthority();
 		String serviceRoot = url.getPath();
 
 		// Build POST request
@@ -247,31 +268,12 @@ public class HttpUploadManager extends HttpTransferManager {
 	 * @throws Exception
 	 */
 	private byte[] sendMultipartPost(HttpResponse resp) throws CoreException, IOException, Exception {
-		DataOutputStream outputStream = null;
 		String filepath = content.getUrl();
 
-		// Get the connection
-		HttpsURLConnection connection = null;
-		HttpsURLConnection.setDefaultHostnameVerifier(new NullHostNameVerifier());
-		connection = (HttpsURLConnection) url.openConnection();
-
-		try {
-			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSSLContext().getSocketFactory());
-		} catch (Exception e) {
-			if (logger.isActivated()) {
-				logger.error("Failed to initiate SSL for connection:", e);
-			}
-		}
-
-		connection.setDoInput(true);
-		connection.setDoOutput(true);
-		connection.setReadTimeout(5000);
-
 		// POST construction
-		connection.setRequestMethod("POST");
-		connection.setRequestProperty("Connection", "Keep-Alive");
-		connection.setRequestProperty("User-Agent", SipUtils.userAgentString());
-		connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY_TAG);
+		HttpPost post = new HttpPost(url.toURI());
+		post.addHeader("User-Agent", SipUtils.userAgentString());
+		HttpConnectionParams.setSoTimeout(post.getParams(), 5000);
 
 		// Construct the Body
 		String body = "";
@@ -290,159 +292,195 @@ public class HttpUploadManager extends HttpTransferManager {
 			auth = new HttpAuthenticationAgent(getHttpServerLogin(), getHttpServerPwd());
 			auth.readWwwAuthenticateHeader(authHeaders[0].getValue());
 
-			String authValue = auth.generateAuthorizationHeaderValue(connection.getRequestMethod(), url.getPath(), body);
+			String authValue = auth.generateAuthorizationHeaderValue(post.getMethod(), url.getPath(), body);
 			if (authValue != null) {
-				connection.setRequestProperty("Authorization", authValue);
+				post.addHeader("Authorization", authValue);
 			}
 		}
 
+		// The body is streamed instead of being buffered, so its length is
+		// computed from the parts and the file size
+		StreamingRequestBody head = new StreamingRequestBody().addString(body);
+		if (thumbnail != null) {
+			addThumbnailMultipart(head);
+		}
+		StreamingRequestBody tail = new StreamingRequestBody();
+		addFileMultipart(tail, new File(filepath));
+		StreamingEntity entity = new StreamingEntity(head, tail, new TransferProgress(getListener(), 0,
+				tail.getFileLength()));
+		entity.setContentType("multipart/form-data; boundary=" + BOUNDARY_TAG);
+		post.setEntity(entity);
+
 		// Trace
 		if (HTTP_TRACE_ENABLED) {
 			String trace = ">>> Send HTTP request:";
-			trace += "\n " + connection.getRequestMethod() + " " + url.toString();
-			Map<String, List<String>> properties = connection.getRequestProperties();
-			for (String property : properties.keySet()) {
-				trace += "\n " + property + ": " + connection.getRequestProperty((String) property);
+			trace += "\n " + post.getMethod() + " " + url.toString();
+			for (Header header : post.getAllHeaders()) {
+				trace += "\n " + header.getName() + ": " + header.getValue();
 			}
+			trace += "\n Content-Length: " + entity.getContentLength();
 			trace += "\n" + body;
 			System.out.println(trace);
 		}
 
-		// Create the DataOutputStream and start writing its body
-		outputStream = new DataOutputStream(connection.getOutputStream());
-		outputStream.writeBytes(body);
-
-		// Add thumbnail
-		if (thumbnail != null) {
-			writeThumbnailMultipart(outputStream, filepath);
-		}
-		// From this point, resuming is possible
-		((HttpUploadTransferEventListener)getListener()).uploadStarted();
 		try {
-			// Add File
-			writeFileMultipart(outputStream, filepath);
-			if (!isCancelled()) {
-				// if the upload is cancelled, we don't send the last boundary to get bad request
-				outputStream.writeBytes(twoHyphens + BOUNDARY_TAG + twoHyphens); 
-				// Check response status code
-				int responseCode = connection.getResponseCode();
-				if (logger.isActivated()) {
-					logger.debug("Second POST response " + responseCode + " "+connection.getResponseMessage());
-				}
-				byte[] result = null;
-				boolean success = false;
-				boolean retry = false;
+			// Sent over the connection of the first POST
+			HttpResponse response = executeRequest(post);
+
+			// Check response status code
+			int responseCode = response.getStatusLine().getStatusCode();
+			if (logger.isActivated()) {
+				logger.debug("Second POST response " + response.getStatusLine());
+			}
+			byte[] result = null;
+			boolean success = false;
+			switch (responseCode) {
+			case 200:
+				// 200 OK
+				success = true;
+				result = convertStreamToString(response.getEntity().getContent());
 				if (HTTP_TRACE_ENABLED) {
-					String trace = "<<< Receive HTTP response:";
-					trace += "\n " + responseCode + " " + connection.getResponseMessage();
-					System.out.println(trace);
-				}
-				switch (responseCode) {
-				case 200:
-					// 200 OK
-					success = true;
-					InputStream inputStream = connection.getInputStream();
-					result = convertStreamToString(inputStream);
-					inputStream.close();
-					if (HTTP_TRACE_ENABLED) {
-						System.out.println("\n " + new String(result));
-					}
-					break;
-				case 503:
-					// INTERNAL ERROR
-					String header = connection.getHeaderField("Retry-After");
-					int retryAfter = 0;
-					if (header != null) {
-						try {
-							retryAfter = Integer.parseInt(header);
-						} catch (NumberFormatException e) {
-							// Nothing to do
-						}
-						if (retryAfter >= 0) {
-							try {
-								Thread.sleep(retryAfter * 1000);
-								// Retry procedure
-								if (retryCount < RETRY_MAX) {
-									retryCount++;
-									retry = true;
-								}
-							} catch (InterruptedException e) {
-								// Nothing to do
-							}
-						}
-					}
-					break;
-				default:
-					break; // no success, no retry
+					System.out.println("\n " + new String(result));
 				}
+				break;
+			case 503:
+				// Server busy, the transfer is resumed later from the
+				// bytes kept by the server
+				pauseTransfer();
+				return null;
+			default:
+				break; // no success, no retry
+			}
 
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
-				connection.disconnect();
-
-				if (success) {
-					return result;
-				} else if (retry) {
-					return sendMultipartPost(resp);
-				} else {
-                    if (logger.isActivated()) {
-                        logger.warn("File Upload aborted, Received " + responseCode
-                                + " from server");
-                    }
-                    return null;
-				}
+			if (success) {
+				return result;
 			} else {
-				if (isPaused()) {
-					if (logger.isActivated()) {
-						logger.debug("File transfer paused by user");
-					}
-					// Sent data are bufferized. Must wait for response to enable sending to server.
-					int responseCode = connection.getResponseCode();
-					if (logger.isActivated()) {
-						logger.debug("Second POST response " + responseCode + " " + connection.getResponseMessage());
-					}
-				} else {
-					if (logger.isActivated()) {
-						logger.debug("File transfer cancelled by user");
-					}
+                if (logger.isActivated()) {
+                    logger.warn("File Upload aborted, Received " + responseCode
+                            + " from server");
+                }
+                return null;
+			}
+		} catch (Exception e) {
+			if (isCancelled() || isPaused()) {
+				// The body is incomplete, the server keeps the received bytes for the resume
+				if (logger.isActivated()) {
+					logger.debug(isPaused() ? "File transfer paused by user" : "File transfer cancelled by user");
 				}
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
-				connection.disconnect();
 				return null;
 			}
-		} catch (Exception e) {
 			if (logger.isActivated()) {
 				logger.warn("File Upload aborted due to " + e.getLocalizedMessage() + " now in state pause, waiting for resume...");
 			}
 			pauseTransfer();
 			return null;
+		} finally {
+			releaseResponse();
+		}
+	}
+
+	/**
+	 * Entity streaming the body of a request: the parts before the file are
+	 * written, the upload is notified as started, then the file part is
+	 * written unless the transfer is cancelled
+	 */
+	private class StreamingEntity extends AbstractHttpEntity {
+		private StreamingRequestBody head;
+
+		private StreamingRequestBody tail;
+
+		private TransferProgress progress;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param head
+		 *            Parts before the file or null
+		 * @param tail
+		 *            File part
+		 * @param progress
+		 *            Progress of the transfer
+		 */
+		StreamingEntity(StreamingRequestBody head, StreamingRequestBody tail, TransferProgress progress) {
+			this.head = head;
+			this.tail = tail;
+			this.progress = progress;
+		}
+
+		public long getContentLength() {
+			return ((head != null) ? head.getContentLength() : 0) + tail.getContentLength();
+		}
+
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		public boolean isStreaming() {
+			return false;
+		}
+
+		public InputStream getContent() {
+			throw new UnsupportedOperationException("Body written only");
+		}
+
+		public void writeTo(OutputStream outputStream) throws IOException {
+			if (head != null) {
+				head.writeTo(outputStream, null);
+
+				// From this point, resuming is possible
+				((HttpUploadTransferEventListener)getListener()).uploadStarted();
+			}
+			if (!writeBody(outputStream, tail, progress)) {
+				// The request is aborted and its connection closed
+				throw new InterruptedIOException("Transfer interrupted");
+			}
 		}
 	}
 
 	/**
-	 * Write the thumbnail multipart
+	 * Write the file part of a body, stopping if the transfer is cancelled
 	 * 
 	 * @param outputStream
-	 *            DataOutputStream to write to
-	 * @param filepath
-	 *            File path
+	 *            Output stream to write to
+	 * @param body
+	 *            Body to write
+	 * @param progress
+	 *            Progress of the transfer
+	 * @return Returns false if the transfer has been cancelled
+	 * @throws IOException
+	 */
+	private boolean writeBody(OutputStream outputStream, StreamingRequestBody body, TransferProgress progress)
+			throws IOException {
+		currentBody = body;
+		try {
+			if (isCancelled()) {
+				return false;
+			}
+			return body.writeTo(outputStream, progress);
+		} finally {
+			currentBody = null;
+		}
+	}
+
+	/**
+	 * Add the thumbnail multipart
+	 * 
+	 * @param body
+	 *            Body to add to
 	 */
-	private void writeThumbnailMultipart(DataOutputStream outputStream, String filepath) throws IOException {
+	private void addThumbnailMultipart(StreamingRequestBody body) {
 		if (thumbnail.length > 0) {
 			String[] splittedPath = content.getUrl().split("/");
 			String filename = splittedPath[splittedPath.length - 1];
 
-			outputStream.writeBytes(twoHyphens + BOUNDARY_TAG + lineEnd);
-			outputStream.writeBytes("Content-Disposition: form-data; name=\"Thumbnail\"; filename=\"thumb_" + filename + "\""
-					+ lineEnd);
-			outputStream.writeBytes("Content-Type: image/jpeg" + lineEnd);
-			outputStream.writeBytes("Content-Length: " + thumbnail.length);
-			outputStream.writeBytes(lineEnd + lineEnd);
-			outputStream.write(thumbnail);
-			outputStream.writeBytes(lineEnd);
+			String thumbnailPartHeader = twoHyphens + BOUNDARY_TAG + lineEnd;
+			thumbnailPartHeader += "Content-Disposition: form-data; name=\"Thumbnail\"; filename=\"thumb_" + filename + "\""
+					+ lineEnd;
+			thumbnailPartHeader += "Content-Type: image/jpeg" + lineEnd;
+			thumbnailPartHeader += "Content-Length: " + thumbnail.length;
+			body.addString(thumbnailPartHeader + lineEnd + lineEnd);
+			body.addBytes(thumbnail);
+			body.addString(lineEnd);
 		}
 	}
 
@@ -461,50 +499,30 @@ public class HttpUploadManager extends HttpTransferManager {
 	}
 
 	/**
-	 * Write the file multipart
+	 * Add the file multipart and the closing boundary
 	 * 
-	 * @param outputStream
-	 *            DataOutputStream to write to
-	 * @param filepath
-	 *            File path
+	 * @param body
+	 *            Body to add to
+	 * @param file
+	 *            File
 	 * @throws IOException
 	 */
-	private void writeFileMultipart(DataOutputStream outputStream, String filepath)
-			throws IOException {
+	private void addFileMultipart(StreamingRequestBody body, File file) throws IOException {
 		// Check file path
 		String[] splittedPath = content.getUrl().split("/");
 		String filename = splittedPath[splittedPath.length - 1];
 
-		// Build and write headers
+		// Build headers
 		String filePartHeader = twoHyphens + BOUNDARY_TAG + lineEnd;
 		filePartHeader += "Content-Disposition: form-data; name=\"File\"; filename=\"" + URLEncoder.encode(filename, "UTF-8")
 				+ "\"" + lineEnd;
 		filePartHeader += "Content-Type: " + content.getEncoding() + lineEnd;
-		File file = new File(filepath);
-		filePartHeader += "Content-Length: " + file.length() + lineEnd + lineEnd;
-
-		outputStream.writeBytes(filePartHeader);
-
-		// Write file content
-		FileInputStream fileInputStream = new FileInputStream(file);
-		int bytesAvailable = fileInputStream.available();
-		int bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-		byte[] buffer = new byte[bufferSize];
-		int bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		int progress = 0;
-		
-		while (bytesRead > 0 && !isCancelled()) {
-			progress += bytesRead;
-			outputStream.write(buffer, 0, bytesRead);
-			bytesAvailable = fileInputStream.available();
-			getListener().httpTransferProgress(progress, file.length());
-			bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-			buffer = new byte[bufferSize];
-			bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		}
-		if (!isCancelled())
-			outputStream.writeBytes(lineEnd);
-		fileInputStream.close();
+		long length = file.length();
+		filePartHeader += "Content-Length: " + length + lineEnd + lineEnd;
+
+		body.addString(filePartHeader);
+		body.addFile(file, 0, length);
+		body.addString(lineEnd + twoHyphens + BOUNDARY_TAG + twoHyphens);
 	}
 
 	/**
@@ -531,24 +549,6 @@ public class HttpUploadManager extends HttpTransferManager {
 		return sb.toString().getBytes();
 	}
 
-	/**
-	 * Blank host verifier
-	 */
-	private class NullHostNameVerifier implements HostnameVerifier {
-		/**
-		 * Verifies that the specified hostname is allowed within the specified SSL session.
-		 * 
-		 * @param hostname
-		 *            Hostname to check
-		 * @param session
-		 *            Current SSL session
-		 * @return Always returns true
-		 */
-		public boolean verify(String hostname, SSLSession session) {
-			return true;
-		}
-	}
-
 	/**
 	 * Resume the upload
 	 * 
@@ -620,170 +620,82 @@ public class HttpUploadManager extends HttpTransferManager {
 		if (logger.isActivated()) {
 			logger.debug("sendPutForResumingUpload. Already sent from "+resumeInfo.getStart()+" to "+resumeInfo.getEnd());
 		}
-		DataOutputStream outputStream = null;
 		String filepath = content.getUrl();
 
-		// Get the connection
-		HttpsURLConnection connection = null;
-		HttpsURLConnection.setDefaultHostnameVerifier(new NullHostNameVerifier());
-		connection = (HttpsURLConnection) new URL(resumeInfo.getUrl()).openConnection();
-
-		try {
-			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSSLContext().getSocketFactory());
-		} catch (Exception e) {
-			if (logger.isActivated()) {
-				logger.error("Failed to initiate SSL for connection:", e);
-			}
-		}
-
-		connection.setDoInput(true);
-		connection.setDoOutput(true);
-		connection.setReadTimeout(2000);
-
-		// POST construction
-		connection.setRequestMethod("PUT");
-		connection.setRequestProperty("Connection", "Keep-Alive");
-		connection.setRequestProperty("User-Agent", SipUtils.userAgentString());
-		connection.setRequestProperty("Content-Type", this.content.getEncoding());
-		connection.setRequestProperty("Content-Length", String.valueOf(content.getSize() - (resumeInfo.getEnd()+1)));
-		connection.setRequestProperty("Content-Range", (resumeInfo.getEnd()+1) + "-" + (content.getSize()-1) + "/"
+		// PUT construction
+		HttpPut put = new HttpPut(new URL(resumeInfo.getUrl()).toURI());
+		put.addHeader("User-Agent", SipUtils.userAgentString());
+		put.addHeader("Content-Range", (resumeInfo.getEnd()+1) + "-" + (content.getSize()-1) + "/"
 				+ content.getSize());
+		HttpConnectionParams.setSoTimeout(put.getParams(), 2000);
 
 		// Construct the Body
 		String body = "";
+		StreamingRequestBody remaining = new StreamingRequestBody().addFile(new File(filepath),
+				resumeInfo.getEnd() + 1, content.getSize() - (resumeInfo.getEnd() + 1));
+		StreamingEntity entity = new StreamingEntity(null, remaining, new TransferProgress(getListener(),
+				resumeInfo.getEnd() + 1, content.getSize()));
+		entity.setContentType(this.content.getEncoding());
+		put.setEntity(entity);
 
 		// Update authentication agent from response
 		if (authenticationFlag && auth != null) {
-			String authValue = auth.generateAuthorizationHeaderValue(connection.getRequestMethod(), url.getPath(), body);
+			String authValue = auth.generateAuthorizationHeaderValue(put.getMethod(), url.getPath(), body);
 			if (authValue != null) {
-				connection.setRequestProperty("Authorization", authValue);
+				put.addHeader("Authorization", authValue);
 			}
 		}
 
 		// Trace
 		if (HTTP_TRACE_ENABLED) {
 			String trace = ">>> Send HTTP request:";
-			trace += "\n " + connection.getRequestMethod() + " " + url.toString();
-			Map<String, List<String>> properties = connection.getRequestProperties();
-			for (String property : properties.keySet()) {
-				trace += "\n " + property + ": " + connection.getRequestProperty((String) property);
+			trace += "\n " + put.getMethod() + " " + resumeInfo.getUrl();
+			for (Header header : put.getAllHeaders()) {
+				trace += "\n " + header.getName() + ": " + header.getValue();
 			}
-			trace += "\n" + body;
+			trace += "\n Content-Length: " + entity.getContentLength();
 			System.out.println(trace);
 		}
 
-		// Create the DataOutputStream and start writing its body
-		outputStream = new DataOutputStream(connection.getOutputStream());
-		outputStream.writeBytes(body);
-
 		try {
 			// Add File
-			writeRemainingFileData(outputStream, filepath, resumeInfo.getEnd());
-			if (!isCancelled()) {
-				// Check response status code
-				int responseCode = connection.getResponseCode();
-				if (logger.isActivated()) {
-					logger.debug("PUT response " + responseCode+" "+connection.getResponseMessage());
-				}
-				byte[] result = null;
-				boolean success = false;
-				boolean retry = false;
-				switch (responseCode) {
-				case 200:
-					// 200 OK
-					success = true;
-					InputStream inputStream = connection.getInputStream();
-					result = convertStreamToString(inputStream);
-					inputStream.close();
-					if (HTTP_TRACE_ENABLED) {
-						System.out.println("\n" + new String(result));
-					}
-					break;
-				default:
-					break; // no success, no retry
-				}
-
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
-				connection.disconnect();
+			if (logger.isActivated()) {
+				logger.debug("Send " + remaining.getContentLength() + " remaining bytes starting from "
+						+ (resumeInfo.getEnd() + 1));
+			}
+			HttpResponse response = executeRequest(put);
 
-				if (success) {
-					return result;
-				} else if (retry) {
-					return sendPutForResumingUpload(resumeInfo);
-				} else {
-					throw new IOException("Received " + responseCode + " from server");
-				}
-			} else {
-				if (isPaused()) {
-					if (logger.isActivated()) {
-						logger.warn("File transfer paused by user");
-					}
-					// Sent data are bufferized. Must wait for response to enable sending to server.
-					int responseCode = connection.getResponseCode();
-					if (logger.isActivated()) {
-						logger.debug("PUT response " + responseCode + " " + connection.getResponseMessage());
-					}
-				} else {
-					if (logger.isActivated()) {
-						logger.warn("File transfer cancelled by user");
-					}
+			// Check response status code
+			int responseCode = response.getStatusLine().getStatusCode();
+			if (logger.isActivated()) {
+				logger.debug("PUT response " + response.getStatusLine());
+			}
+			if (responseCode != 200) {
+				throw new IOException("Received " + responseCode + " from server");
+			}
+			byte[] result = convertStreamToString(response.getEntity().getContent());
+			if (HTTP_TRACE_ENABLED) {
+				System.out.println("\n" + new String(result));
+			}
+			return result;
+		} catch (Exception e) {
+			if (isCancelled() || isPaused()) {
+				// The body is incomplete, the server keeps the received bytes for the resume
+				if (logger.isActivated()) {
+					logger.warn(isPaused() ? "File transfer paused by user" : "File transfer cancelled by user");
 				}
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
-				connection.disconnect();
 				return null;
 			}
-		} catch (Exception e) {
 			if (logger.isActivated()) {
 				logger.warn("File Upload aborted due to " + e.getLocalizedMessage() + " now in state pause, waiting for resume...");
 			}
 			pauseTransfer();
 			return null;
+		} finally {
+			releaseResponse();
 		}
 	}
 
-	/**
-	 * write remaining file data
-	 * 
-	 * @param outputStream
-	 *            the output stream
-	 * @param filepath
-	 *            the file to be uploaded
-	 * @param endingByte
-	 *            the offset in bytes
-	 * @throws IOException
-	 */
-	private void writeRemainingFileData(DataOutputStream outputStream, String filepath, int offset) throws IOException {
-		// Write file content
-		File file = new File(filepath);
-		FileInputStream fileInputStream = new FileInputStream(file);
-		// Skip bytes already received
-		int bytesRead = (int) fileInputStream.skip(offset+1);
-		int bytesAvailable = fileInputStream.available();
-		int bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-		byte[] buffer = new byte[bufferSize];
-		int progress = bytesRead;
-		bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		if (logger.isActivated()) {
-			logger.debug("Send "+bytesAvailable+" remaining bytes starting from " + progress);
-		}
-		// Send remaining bytes 
-		while (bytesRead > 0 && !isCancelled()) {
-			progress += bytesRead;
-			outputStream.write(buffer, 0, bytesRead);
-			bytesAvailable = fileInputStream.available();
-			getListener().httpTransferProgress(progress, file.length());
-			bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-			buffer = new byte[bufferSize];
-			bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-			
-		}
-		fileInputStream.close();
-	}
-
 	/**
 	 * Send a get for info on the upload
 	 * 
@@ -797,7 +709,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		// Check server address
 		url = new URL(getHttpServerAddr());
 		String protocol = url.getProtocol(); // TODO : exit if not HTTPS
-		String host = url.getHost();
+		String host = url.getAuthority();
 		String serviceRoot = url.getPath();
 
 		// Build POST request
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.orangelabs.rcs.utils.CloseableUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Download of a file as byte ranges fetched concurrently, each over its own
+ * connection of the {@link HttpTransport} pool, and written at their position in a file preallocated to the
+ * size of the content. The progress of each range can be saved, so that an
+ * interrupted download is resumed from where each range stopped.
+ *
+ * @author Orange
+ */
+public class RangedDownload {
+	/**
+	 * The download is complete
+	 */
+	public static final int COMPLETED = 0;
+
+	/**
+	 * The download has been cancelled
+	 */
+	public static final int CANCELLED = 1;
+
+	/**
+	 * The download has failed, it can be resumed
+	 */
+	public static final int FAILED = 2;
+
+	/**
+	 * The server does not support the byte ranges
+	 */
+	public static final int NOT_SUPPORTED = 3;
+
+	/**
+	 * Minimum size of a range
+	 */
+	public static final long MIN_RANGE_SIZE = 1024 * 1024;
+
+	/**
+	 * Minimum period between two saves of the ranges in milliseconds
+	 */
+	public static final long SAVE_PERIOD = 2000;
+
+	/**
+	 * Maximum number of retries of a range
+	 */
+	private static final int RETRY_MAX = 3;
+
+	/**
+	 * Size of the read buffer of each range
+	 */
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	/**
+	 * Byte range of the content
+	 */
+	public static class Range {
+		/**
+		 * Offset of the first byte
+		 */
+		public final long start;
+
+		/**
+		 * Offset of the last byte
+		 */
+		public final long end;
+
+		/**
+		 * Number of bytes received
+		 */
+		private volatile long received;
+
+		/**
+		 * Constructor
+		 *
+		 * @param start Offset of the first byte
+		 * @param end Offset of the last byte
+		 * @param received Number of bytes already received
+		 */
+		public Range(long start, long end, long received) {
+			this.start = start;
+			this.end = end;
+			this.received = received;
+		}
+
+		/**
+		 * Returns the number of bytes received
+		 *
+		 * @return Number of bytes
+		 */
+		public long getReceived() {
+			return received;
+		}
+
+		/**
+		 * Returns whether all the bytes of the range have been received
+		 *
+		 * @return Boolean
+		 */
+		public boolean isComplete() {
+			return start + received > end;
+		}
+	}
+
+	/**
+	 * Content URL
+	 */
+	private String url;
+
+	/**
+	 * File to write
+	 */
+	private File file;
+
+	/**
+	 * Size of the content
+	 */
+	private long size;
+
+	/**
+	 * Ranges of the content
+	 */
+	private Vector<Range> ranges;
+
+	/**
+	 * Channel of the file
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Progress of the download
+	 */
+	private TransferProgress progress;
+
+	/**
+	 * Time of the last save of the ranges
+	 */
+	private long saveTime = 0;
+
+	/**
+	 * The server has answered to a range with the whole content
+	 */
+	private volatile boolean notSupported = false;
+
+	/**
+	 * Cancellation flag
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(RangedDownload.class.getSimpleName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param url Content URL
+	 * @param file File to write
+	 * @param size Size of the content
+	 * @param ranges Ranges of the content
+	 */
+	public RangedDownload(String url, File file, long size, Vector<Range> ranges) {
+		this.url = url;
+		this.file = file;
+		this.size = size;
+		this.ranges = ranges;
+	}
+
+	/**
+	 * Split a content in ranges of similar sizes
+	 *
+	 * @param size Size of the content
+	 * @param connections Maximum number of ranges
+	 * @return Ranges
+	 */
+	public static Vector<Range> split(long size, int connections) {
+		int count = (int)Math.max(1, Math.min(connections, size / MIN_RANGE_SIZE));
+		Vector<Range> ranges = new Vector<Range>();
+		long start = 0;
+		for (int i = 0; i < count; i++) {
+			long end = (i == count - 1) ? size - 1 : start + size / count - 1;
+			ranges.addElement(new Range(start, end, 0));
+			start = end + 1;
+		}
+		return ranges;
+	}
+
+	/**
+	 * Returns the ranges in the format "start-end/received,..."
+	 *
+	 * @param ranges Ranges
+	 * @return String
+	 */
+	public static String format(Vector<Range> ranges) {
+		StringBuilder result = new StringBuilder();
+		for (Range range : ranges) {
+			if (result.length() > 0) {
+				result.append(',');
+			}
+			result.append(range.start).append('-').append(range.end).append('/').append(range.received);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Parse ranges saved with {@link #format(Vector)}
+	 *
+	 * @param value String
+	 * @param size Size of the content
+	 * @return Ranges or null if the string is not valid or does not cover the content
+	 */
+	public static Vector<Range> parse(String value, long size) {
+		if (value == null) {
+			return null;
+		}
+		Vector<Range> ranges = new Vector<Range>();
+		long next = 0;
+		try {
+			for (String item : value.split(",")) {
+				int dash = item.indexOf('-');
+				int slash = item.indexOf('/');
+				long start = Long.parseLong(item.substring(0, dash));
+				long end = Long.parseLong(item.substring(dash + 1, slash));
+				long received = Long.parseLong(item.substring(slash + 1));
+				if ((start != next) || (end < start) || (received < 0) || (received > end - start + 1)) {
+					return null;
+				}
+				ranges.addElement(new Range(start, end, received));
+				next = end + 1;
+			}
+		} catch (RuntimeException e) {
+			return null;
+		}
+		return (next == size) ? ranges : null;
+	}
+
+	/**
+	 * Returns the ranges
+	 *
+	 * @return Ranges
+	 */
+	public Vector<Range> getRanges() {
+		return ranges;
+	}
+
+	/**
+	 * Returns the number of bytes received
+	 *
+	 * @return Number of bytes
+	 */
+	public long getReceived() {
+		long received = 0;
+		for (Range range : ranges) {
+			received += range.received;
+		}
+		return received;
+	}
+
+	/**
+	 * Stop the download
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Called when the progress of the ranges has to be saved, the bytes
+	 * received having been written to the storage
+	 *
+	 * @param ranges Ranges in the format of {@link #format(Vector)}
+	 */
+	protected void saveRanges(String ranges) {
+	}
+
+	/**
+	 * Called to set the headers and the parameters of the request of a range
+	 *
+	 * @param request HTTP request
+	 */
+	protected void prepareRequest(HttpRequestBase request) {
+	}
+
+	/**
+	 * Download the ranges which are not complete, returns when they are all
+	 * complete or stopped
+	 *
+	 * @param progress Progress of the download
+	 * @return Result
+	 */
+	public int download(TransferProgress progress) {
+		this.progress = progress;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			if (raf.length() != size) {
+				raf.setLength(size);
+			}
+			channel = raf.getChannel();
+			save(true);
+
+			Vector<Thread> workers = new Vector<Thread>();
+			for (final Range range : ranges) {
+				if (range.isComplete()) {
+					continue;
+				}
+				Thread worker = new Thread("Range " + range.start + "-" + range.end) {
+					public void run() {
+						downloadRange(range);
+					}
+				};
+				workers.addElement(worker);
+				worker.start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			progress.flush();
+			if (notSupported) {
+				return NOT_SUPPORTED;
+			}
+			for (Range range : ranges) {
+				if (!range.isComplete()) {
+					save(true);
+					return cancelled ? CANCELLED : FAILED;
+				}
+			}
+			channel.force(false);
+			return COMPLETED;
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Ranged download has failed", e);
+			}
+			return FAILED;
+		} finally {
+			CloseableUtils.close(raf);
+		}
+	}
+
+	/**
+	 * Download a range, with a retry from the last received byte on error
+	 *
+	 * @param range Range
+	 */
+	private void downloadRange(Range range) {
+		for (int attempt = 0; attempt <= RETRY_MAX; attempt++) {
+			if (cancelled || notSupported || range.isComplete()) {
+				return;
+			}
+			try {
+				if (getRange(range)) {
+					return;
+				}
+			} catch (Exception e) {
+				if (logger.isActivated()) {
+					logger.warn("Range " + range.start + "-" + range.end + " interrupted at " + range.received
+							+ ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send a request for the remaining bytes of a range and write them
+	 *
+	 * @param range Range
+	 * @return Returns true if the range is complete or cannot be retried
+	 * @throws IOException
+	 */
+	private boolean getRange(Range range) throws IOException {
+		long offset = range.start + range.received;
+		HttpGet request = new HttpGet(url);
+		prepareRequest(request);
+		request.addHeader("Range", "bytes=" + offset + "-" + range.end);
+		HttpResponse response = HttpTransport.getInstance().getHttpClient().execute(request);
+		HttpEntity entity = response.getEntity();
+		try {
+			int statusCode = response.getStatusLine().getStatusCode();
+			Header contentRange = response.getFirstHeader("Content-Range");
+			if (HttpTransferManager.HTTP_TRACE_ENABLED) {
+				System.out.println("<<< Receive HTTP response:\n" + response.getStatusLine() + "\n " + contentRange);
+			}
+			if (statusCode == 200) {
+				// Byte ranges ignored by the server
+				notSupported = true;
+				request.abort();
+				return true;
+			}
+			if ((statusCode != 206) || (contentRange == null)
+					|| !contentRange.getValue().startsWith("bytes " + offset + "-")) {
+				if (logger.isActivated()) {
+					logger.warn("Unexpected response " + statusCode + " " + contentRange + " to range " + offset
+							+ "-" + range.end);
+				}
+				return (statusCode >= 400) && (statusCode < 500);
+			}
+
+			InputStream input = entity.getContent();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+			long position = offset;
+			int num;
+			while (!cancelled && (position <= range.end) && ((num = input.read(buffer)) != -1)) {
+				num = (int)Math.min(num, range.end - position + 1);
+				wrapper.clear();
+				wrapper.limit(num);
+				while (wrapper.hasRemaining()) {
+					position += channel.write(wrapper, position);
+				}
+				range.received += num;
+				progress.add(num);
+				save(false);
+			}
+			if (cancelled) {
+				// Close the connection instead of reading the rest of the range
+				request.abort();
+				return true;
+			}
+			if (!range.isComplete()) {
+				throw new IOException("Connection closed");
+			}
+			return true;
+		} catch (IOException e) {
+			request.abort();
+			throw e;
+		} finally {
+			if (entity != null) {
+				try {
+					// Release the connection to the pool
+					entity.consumeContent();
+				} catch (IOException e) {
+					// Connection aborted
+				}
+			}
+		}
+	}
+
+	/**
+	 * Save the ranges if the save period has elapsed
+	 *
+	 * @param force Save even if the period has not elapsed
+	 * @throws IOException
+	 */
+	private synchronized void save(boolean force) throws IOException {
+		long now = System.currentTimeMillis();
+		if (force || (now - saveTime >= SAVE_PERIOD)) {
+			saveTime = now;
+
+			// The progress is taken before the sync, the bytes it counts
+			// having been written, as the workers keep receiving meanwhile
+			String snapshot = format(ranges);
+			channel.force(false);
+			saveRanges(snapshot);
+		}
+	}
+}
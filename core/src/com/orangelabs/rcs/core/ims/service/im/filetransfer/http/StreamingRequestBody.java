@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+import com.orangelabs.rcs.utils.CloseableUtils;
+
+/**
+ * Body of a HTTP request made of in-memory parts and file regions. The
+ * length is known before the body is written, so that the request can be
+ * sent in fixed length streaming mode, and the files are read through a
+ * single buffer instead of being loaded in memory.
+ *
+ * @author Orange
+ */
+public class StreamingRequestBody {
+	/**
+	 * Size of the buffer used to read the files
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Part of the body
+	 */
+	private static class Segment {
+		private byte[] data;
+
+		private File file;
+
+		private long offset;
+
+		private long length;
+	}
+
+	/**
+	 * Parts of the body
+	 */
+	private Vector<Segment> segments = new Vector<Segment>();
+
+	/**
+	 * Length of the body in bytes
+	 */
+	private long length = 0;
+
+	/**
+	 * Length of the file regions in bytes
+	 */
+	private long fileLength = 0;
+
+	/**
+	 * Cancellation flag
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Add bytes
+	 *
+	 * @param data Bytes
+	 * @return This body
+	 */
+	public StreamingRequestBody addBytes(byte[] data) {
+		Segment segment = new Segment();
+		segment.data = data;
+		segment.length = data.length;
+		return add(segment);
+	}
+
+	/**
+	 * Add an ASCII string, like the headers of a part
+	 *
+	 * @param text String
+	 * @return This body
+	 */
+	public StreamingRequestBody addString(String text) {
+		try {
+			return addBytes(text.getBytes("ISO-8859-1"));
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add the end of a file, the length of the file being the one when it
+	 * is added to the body
+	 *
+	 * @param file File
+	 * @param offset Offset of the first byte to send
+	 * @return This body
+	 */
+	public StreamingRequestBody addFile(File file, long offset) {
+		return addFile(file, offset, Math.max(0, file.length() - offset));
+	}
+
+	/**
+	 * Add a region of a file
+	 *
+	 * @param file File
+	 * @param offset Offset of the first byte to send
+	 * @param length Number of bytes to send
+	 * @return This body
+	 */
+	public StreamingRequestBody addFile(File file, long offset, long length) {
+		Segment segment = new Segment();
+		segment.file = file;
+		segment.offset = offset;
+		segment.length = length;
+		fileLength += length;
+		return add(segment);
+	}
+
+	private StreamingRequestBody add(Segment segment) {
+		segments.addElement(segment);
+		length += segment.length;
+		return this;
+	}
+
+	/**
+	 * Returns the length of the body
+	 *
+	 * @return Length in bytes
+	 */
+	public long getContentLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the length of the file regions of the body
+	 *
+	 * @return Length in bytes
+	 */
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	/**
+	 * Stop writing the body
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns whether the body has been cancelled
+	 *
+	 * @return Boolean
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Write the body
+	 *
+	 * @param out Output stream
+	 * @param progress Progress of the file bytes or null
+	 * @return Returns false if the body has been cancelled before it has been fully written
+	 * @throws IOException
+	 */
+	public boolean writeTo(OutputStream out, TransferProgress progress) throws IOException {
+		// The stream takes arrays, so a heap buffer avoids a copy from a direct one
+		ByteBuffer buffer = null;
+		for (Segment segment : segments) {
+			if (cancelled) {
+				return false;
+			}
+			if (segment.data != null) {
+				out.write(segment.data);
+				continue;
+			}
+
+			if (buffer == null) {
+				buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			}
+			FileInputStream in = new FileInputStream(segment.file);
+			try {
+				FileChannel channel = in.getChannel();
+				long position = segment.offset;
+				long end = segment.offset + segment.length;
+				while (position < end) {
+					if (cancelled) {
+						return false;
+					}
+					buffer.clear();
+					buffer.limit((int)Math.min(buffer.capacity(), end - position));
+					int read = channel.read(buffer, position);
+					if (read < 0) {
+						throw new IOException("File " + segment.file + " truncated while sent");
+					}
+					out.write(buffer.array(), 0, read);
+					position += read;
+					if (progress != null) {
+						progress.add(read);
+					}
+				}
+			} finally {
+				CloseableUtils.close(in);
+			}
+		}
+		if (progress != null) {
+			progress.flush();
+		}
+		return true;
+	}
+}
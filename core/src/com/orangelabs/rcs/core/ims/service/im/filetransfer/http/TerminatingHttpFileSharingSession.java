@@ -377,4 +377,13 @@ public class TerminatingHttpFileSharingSession extends HttpFileTransferSession i
 		downloadManager.pauseTransfer();
 	}
 
+	/**
+	 * Returns the HTTP download manager
+	 * 
+	 * @return Download manager
+	 */
+	public HttpDownloadManager getDownloadManager() {
+		return downloadManager;
+	}
+
 }
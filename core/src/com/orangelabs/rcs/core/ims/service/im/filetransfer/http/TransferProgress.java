@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+/**
+ * Progress of a HTTP transfer: the listener is notified at most once per
+ * step of the total size or once per period, and when the transfer ends
+ *
+ * @author Orange
+ */
+public class TransferProgress {
+	/**
+	 * Minimum period between two notifications in milliseconds
+	 */
+	public static final long PROGRESS_PERIOD = 500;
+
+	/**
+	 * Number of steps of the total size
+	 */
+	public static final int PROGRESS_STEPS = 100;
+
+	/**
+	 * Minimum step in bytes
+	 */
+	public static final long MIN_PROGRESS_STEP = 64 * 1024;
+
+	/**
+	 * HTTP transfer event listener
+	 */
+	private HttpTransferEventListener listener;
+
+	/**
+	 * Total size in bytes
+	 */
+	private long total;
+
+	/**
+	 * Step in bytes
+	 */
+	private long step;
+
+	/**
+	 * Transferred size in bytes
+	 */
+	private long current;
+
+	/**
+	 * Last notified size
+	 */
+	private long notified;
+
+	/**
+	 * Time of the last notification
+	 */
+	private long notificationTime;
+
+	/**
+	 * Constructor
+	 *
+	 * @param listener HTTP transfer event listener
+	 * @param current Size already transferred in bytes
+	 * @param total Total size in bytes
+	 */
+	public TransferProgress(HttpTransferEventListener listener, long current, long total) {
+		this.listener = listener;
+		this.current = current;
+		this.notified = current;
+		this.total = total;
+		step = Math.max(total / PROGRESS_STEPS, MIN_PROGRESS_STEP);
+		notificationTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Add transferred bytes
+	 *
+	 * @param bytes Number of bytes
+	 */
+	public synchronized void add(long bytes) {
+		current += bytes;
+		if ((current - notified >= step) || (current >= total)
+				|| (System.currentTimeMillis() - notificationTime >= PROGRESS_PERIOD)) {
+			notifyProgress();
+		}
+	}
+
+	/**
+	 * Notify the transferred size if it has not been notified yet
+	 */
+	public synchronized void flush() {
+		if (current != notified) {
+			notifyProgress();
+		}
+	}
+
+	/**
+	 * Returns the transferred size
+	 *
+	 * @return Size in bytes
+	 */
+	public synchronized long getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Returns the total size
+	 *
+	 * @return Size in bytes
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	private void notifyProgress() {
+		notified = current;
+		notificationTime = System.currentTimeMillis();
+		listener.httpTransferProgress(current, total);
+	}
+}
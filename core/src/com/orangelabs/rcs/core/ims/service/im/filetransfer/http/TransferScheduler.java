@@ -0,0 +1,460 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.orangelabs.rcs.provider.fthttp.FtHttpDirection;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Scheduler of the file transfers to resume: a bounded number of transfers
+ * run at the same time, with a limit per direction, in the order of their
+ * priority (transfers of the chat displayed to the user first, then the
+ * smallest files). An interrupted transfer is retried after an exponential
+ * backoff or the delay requested by the server, the delay being waited by a
+ * timer and not by the threads of the transfers.
+ *
+ * @author Orange
+ */
+public class TransferScheduler {
+	/**
+	 * The transfer is complete
+	 */
+	public static final int COMPLETED = 0;
+
+	/**
+	 * The transfer has failed and cannot be resumed
+	 */
+	public static final int FAILED = 1;
+
+	/**
+	 * The transfer has been paused by the user
+	 */
+	public static final int PAUSED = 2;
+
+	/**
+	 * The transfer has been interrupted, it is retried later
+	 */
+	public static final int INTERRUPTED = 3;
+
+	/**
+	 * Maximum number of transfers running at the same time
+	 */
+	public static final int MAX_TRANSFERS = 4;
+
+	/**
+	 * Maximum number of uploads running at the same time
+	 */
+	public static final int MAX_UPLOADS = 2;
+
+	/**
+	 * Maximum number of downloads running at the same time
+	 */
+	public static final int MAX_DOWNLOADS = 3;
+
+	/**
+	 * Delay before the first retry in milliseconds
+	 */
+	public static final long RETRY_DELAY = 2000;
+
+	/**
+	 * Maximum delay before a retry in milliseconds
+	 */
+	public static final long RETRY_MAX_DELAY = 5 * 60 * 1000;
+
+	/**
+	 * Part of the delay added at random, so that the transfers interrupted
+	 * together are not retried together
+	 */
+	public static final double RETRY_JITTER = 0.25;
+
+	/**
+	 * Transfer handled by the scheduler
+	 */
+	public static abstract class Transfer {
+		private FtHttpDirection direction;
+
+		private long size;
+
+		private String chatId;
+
+		private int attempts = 0;
+
+		private long nextAttempt = 0;
+
+		private long sequence;
+
+		/**
+		 * Constructor
+		 *
+		 * @param direction Direction
+		 * @param size Size of the file
+		 * @param chatId Chat of the transfer or null
+		 */
+		public Transfer(FtHttpDirection direction, long size, String chatId) {
+			this.direction = direction;
+			this.size = size;
+			this.chatId = chatId;
+		}
+
+		public FtHttpDirection getDirection() {
+			return direction;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public String getChatId() {
+			return chatId;
+		}
+
+		/**
+		 * Returns the number of failed attempts
+		 *
+		 * @return Number of attempts
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * Returns the time before which the transfer is not started
+		 *
+		 * @return Time in milliseconds
+		 */
+		public long getNextAttempt() {
+			return nextAttempt;
+		}
+
+		/**
+		 * Set the retry schedule, restored from the storage
+		 *
+		 * @param attempts Number of failed attempts
+		 * @param nextAttempt Time before which the transfer is not started
+		 */
+		public void setSchedule(int attempts, long nextAttempt) {
+			this.attempts = attempts;
+			this.nextAttempt = nextAttempt;
+		}
+
+		/**
+		 * Start the transfer, {@link TransferScheduler#finished(Transfer, int, int)}
+		 * has to be called when it ends
+		 */
+		protected abstract void start();
+	}
+
+	/**
+	 * Transfers ready to start
+	 */
+	private PriorityQueue<Transfer> queue;
+
+	/**
+	 * Transfers running
+	 */
+	private Vector<Transfer> running = new Vector<Transfer>();
+
+	/**
+	 * Transfers waiting for their retry
+	 */
+	private Vector<Transfer> waiting = new Vector<Transfer>();
+
+	/**
+	 * Timer of the retries
+	 */
+	private ScheduledExecutorService timer;
+
+	/**
+	 * Chat displayed to the user or null
+	 */
+	private String visibleChatId = null;
+
+	/**
+	 * Number of transfers scheduled
+	 */
+	private long sequence = 0;
+
+	/**
+	 * Random generator of the jitter
+	 */
+	private Random random = new Random();
+
+	/**
+	 * Terminated flag
+	 */
+	private boolean terminated = false;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(TransferScheduler.class.getSimpleName());
+
+	/**
+	 * Constructor
+	 */
+	public TransferScheduler() {
+		queue = new PriorityQueue<Transfer>(11, getComparator());
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "TransferScheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns the order of the transfers: the chat displayed first, then the
+	 * smallest files, then the order in which they were scheduled
+	 *
+	 * @return Comparator
+	 */
+	private Comparator<Transfer> getComparator() {
+		final String chatId = visibleChatId;
+		return new Comparator<Transfer>() {
+			public int compare(Transfer t1, Transfer t2) {
+				boolean visible1 = (chatId != null) && chatId.equals(t1.chatId);
+				boolean visible2 = (chatId != null) && chatId.equals(t2.chatId);
+				if (visible1 != visible2) {
+					return visible1 ? -1 : 1;
+				}
+				if (t1.size != t2.size) {
+					return (t1.size < t2.size) ? -1 : 1;
+				}
+				return (t1.sequence < t2.sequence) ? -1 : ((t1.sequence == t2.sequence) ? 0 : 1);
+			}
+		};
+	}
+
+	/**
+	 * Returns the delay before a retry, doubled at each attempt
+	 *
+	 * @param attempts Number of failed attempts
+	 * @return Delay in milliseconds, without the jitter
+	 */
+	public static long getRetryDelay(int attempts) {
+		if (attempts <= 0) {
+			return 0;
+		}
+		return Math.min(RETRY_MAX_DELAY, RETRY_DELAY << Math.min(attempts - 1, 20));
+	}
+
+	/**
+	 * Add a transfer, it is started when its priority and the limits allow
+	 * it and when its next attempt is due
+	 *
+	 * @param transfer Transfer
+	 */
+	public void schedule(Transfer transfer) {
+		synchronized (this) {
+			if (terminated) {
+				return;
+			}
+			transfer.sequence = sequence++;
+			long delay = transfer.nextAttempt - System.currentTimeMillis();
+			if (delay > 0) {
+				waitRetry(transfer, delay);
+			} else {
+				queue.add(transfer);
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Called when a transfer ends
+	 *
+	 * @param transfer Transfer
+	 * @param result Result of the transfer
+	 * @param retryAfter Delay requested by the server in seconds or 0
+	 */
+	public void finished(Transfer transfer, int result, int retryAfter) {
+		synchronized (this) {
+			if (!running.remove(transfer)) {
+				// Already finished
+				return;
+			}
+			if (logger.isActivated()) {
+				logger.debug("Transfer of " + transfer.size + " bytes finished with result " + result + ", "
+						+ running.size() + " running, " + queue.size() + " queued");
+			}
+			if ((result == INTERRUPTED) && !terminated) {
+				int attempts = transfer.attempts + 1;
+				long delay = getRetryDelay(attempts);
+				delay += (long)(delay * RETRY_JITTER * random.nextDouble());
+				delay = Math.max(delay, retryAfter * 1000L);
+				transfer.setSchedule(attempts, System.currentTimeMillis() + delay);
+				saveSchedule(transfer);
+				waitRetry(transfer, delay);
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Called when the retry schedule of a transfer has to be saved
+	 *
+	 * @param transfer Transfer
+	 */
+	protected void saveSchedule(Transfer transfer) {
+	}
+
+	/**
+	 * Wait for the next attempt of a transfer on the timer
+	 *
+	 * @param transfer Transfer
+	 * @param delay Delay in milliseconds
+	 */
+	private void waitRetry(final Transfer transfer, long delay) {
+		if (logger.isActivated()) {
+			logger.debug("Transfer of " + transfer.size + " bytes retried in " + delay + " ms");
+		}
+		waiting.addElement(transfer);
+		timer.schedule(new Runnable() {
+			public void run() {
+				synchronized (TransferScheduler.this) {
+					if (!waiting.remove(transfer)) {
+						return;
+					}
+					queue.add(transfer);
+				}
+				dispatch();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start the transfers of highest priority allowed by the limits
+	 */
+	private void dispatch() {
+		Vector<Transfer> started = new Vector<Transfer>();
+		synchronized (this) {
+			Vector<Transfer> skipped = new Vector<Transfer>();
+			while (!terminated && (running.size() < MAX_TRANSFERS) && !queue.isEmpty()) {
+				Transfer transfer = queue.poll();
+				if (getRunning(transfer.direction) < getLimit(transfer.direction)) {
+					running.addElement(transfer);
+					started.addElement(transfer);
+				} else {
+					skipped.addElement(transfer);
+				}
+			}
+			queue.addAll(skipped);
+		}
+		for (Transfer transfer : started) {
+			if (logger.isActivated()) {
+				logger.debug("Start transfer of " + transfer.size + " bytes, attempt " + (transfer.attempts + 1));
+			}
+			try {
+				transfer.start();
+			} catch (Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Transfer cannot be started", e);
+				}
+				finished(transfer, FAILED, 0);
+			}
+		}
+	}
+
+	/**
+	 * Returns the limit of the transfers in a direction
+	 *
+	 * @param direction Direction
+	 * @return Maximum number of transfers
+	 */
+	private static int getLimit(FtHttpDirection direction) {
+		return (direction == FtHttpDirection.OUTGOING) ? MAX_UPLOADS : MAX_DOWNLOADS;
+	}
+
+	/**
+	 * Returns the number of transfers running in a direction
+	 *
+	 * @param direction Direction
+	 * @return Number of transfers
+	 */
+	public synchronized int getRunning(FtHttpDirection direction) {
+		int count = 0;
+		for (Transfer transfer : running) {
+			if (transfer.direction == direction) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of transfers running
+	 *
+	 * @return Number of transfers
+	 */
+	public synchronized int getRunning() {
+		return running.size();
+	}
+
+	/**
+	 * Returns the number of transfers ready to start
+	 *
+	 * @return Number of transfers
+	 */
+	public synchronized int getQueued() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of transfers waiting for their retry
+	 *
+	 * @return Number of transfers
+	 */
+	public synchronized int getWaiting() {
+		return waiting.size();
+	}
+
+	/**
+	 * Set the chat displayed to the user, whose transfers are started first
+	 *
+	 * @param chatId Chat ID or null
+	 */
+	public synchronized void setVisibleChat(String chatId) {
+		visibleChatId = chatId;
+		PriorityQueue<Transfer> reordered = new PriorityQueue<Transfer>(11, getComparator());
+		reordered.addAll(queue);
+		queue = reordered;
+	}
+
+	/**
+	 * Stop starting transfers, the running ones are not interrupted
+	 */
+	public void terminate() {
+		synchronized (this) {
+			terminated = true;
+			queue.clear();
+			waiting.clear();
+		}
+		timer.shutdownNow();
+	}
+}
@@ -296,6 +296,9 @@ public class PresenceService extends ImsService implements AddressBookEventListe
     	// Stop subscriptions
     	watcherInfoSubscriber.terminate();
     	presenceSubscriber.terminate();
+
+    	// Close the connection to the XDM server
+    	xdm.close();
 	}
 
 	/**
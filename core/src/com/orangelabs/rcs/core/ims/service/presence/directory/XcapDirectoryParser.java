@@ -56,6 +56,7 @@ public class XcapDirectoryParser extends DefaultHandler {
      */
     public XcapDirectoryParser(InputSource inputSource) throws Exception {
     	SAXParserFactory factory = SAXParserFactory.newInstance();
+    	factory.setNamespaceAware(true);
         SAXParser parser = factory.newSAXParser();
         parser.parse(inputSource, this);
 	}
@@ -0,0 +1,571 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.presence.xdm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Vector;
+
+import com.orangelabs.rcs.core.CoreException;
+import com.orangelabs.rcs.core.TerminalInfo;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpAuthenticationAgent;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
+import com.orangelabs.rcs.platform.network.NetworkFactory;
+import com.orangelabs.rcs.platform.network.SocketConnection;
+import com.orangelabs.rcs.utils.HttpUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Persistent connection to the XDM server: the requests are sent over the
+ * same connection as long as the server keeps it alive, several requests
+ * may be pipelined, and once the server has challenged the client the
+ * requests are authenticated in advance with the same nonce and an
+ * incremented nonce count
+ * 
+ * @author Orange
+ */
+public class XcapConnection {
+	/**
+	 * Idle time in milliseconds after which the connection is not reused, as
+	 * the server has probably closed it
+	 */
+	public static final int IDLE_TIMEOUT = 30000;
+
+	/**
+	 * Timeout of a response in milliseconds
+	 */
+	public static final int RESPONSE_TIMEOUT = 30000;
+
+	/**
+	 * Host of the server
+	 */
+	private String host;
+
+	/**
+	 * Port of the server
+	 */
+	private int port;
+
+	/**
+	 * Service root
+	 */
+	private String serviceRoot = "";
+
+	/**
+	 * Login
+	 */
+	private String login;
+
+	/**
+	 * Authentication agent, keeping the last challenge of the server
+	 */
+	private HttpAuthenticationAgent authenticationAgent;
+
+	/**
+	 * Cookie set by the server
+	 */
+	private String cookie = null;
+
+	/**
+	 * Socket connection
+	 */
+	private SocketConnection connection = null;
+
+	/**
+	 * Input stream of the connection
+	 */
+	private InputStream inputStream = null;
+
+	/**
+	 * Output stream of the connection
+	 */
+	private OutputStream outputStream = null;
+
+	/**
+	 * Time of the last exchange
+	 */
+	private long lastActivity = 0;
+
+	/**
+	 * Number of connections opened
+	 */
+	private int connections = 0;
+
+	/**
+	 * Number of requests sent
+	 */
+	private int requests = 0;
+
+	/**
+	 * Number of round trips, pipelined requests being sent in one round trip
+	 */
+	private int roundTrips = 0;
+
+	/**
+	 * Number of challenges received
+	 */
+	private int challenges = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 * 
+	 * @param serverAddr Server address (ie. http://host:port/root)
+	 * @param login Login
+	 * @param password Password
+	 */
+	public XcapConnection(String serverAddr, String login, String password) {
+		// Extract host & port
+		String[] parts = serverAddr.substring(7).split(":|/");
+		this.host = parts[0];
+		this.port = Integer.parseInt(parts[1]);
+		if (parts.length > 2) {
+			this.serviceRoot = "/" + parts[2];
+		}
+		this.login = login;
+		this.authenticationAgent = new HttpAuthenticationAgent(login, password);
+	}
+
+	/**
+	 * Returns the number of connections opened
+	 * 
+	 * @return Number
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * Returns the number of requests sent
+	 * 
+	 * @return Number
+	 */
+	public int getRequests() {
+		return requests;
+	}
+
+	/**
+	 * Returns the number of round trips
+	 * 
+	 * @return Number
+	 */
+	public int getRoundTrips() {
+		return roundTrips;
+	}
+
+	/**
+	 * Returns the number of challenges received
+	 * 
+	 * @return Number
+	 */
+	public int getChallenges() {
+		return challenges;
+	}
+
+	/**
+	 * Send a request
+	 * 
+	 * @param request HTTP request
+	 * @return HTTP response
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	public HttpResponse sendRequest(HttpRequest request) throws IOException, CoreException {
+		return sendRequests(new HttpRequest[] { request })[0];
+	}
+
+	/**
+	 * Send requests pipelined: the requests are all written before reading
+	 * their responses. The requests rejected by a challenge are sent again
+	 * with the new challenge.
+	 * 
+	 * @param requests HTTP requests, which must be idempotent
+	 * @return HTTP responses in the order of the requests
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	public synchronized HttpResponse[] sendRequests(HttpRequest[] requests) throws IOException, CoreException {
+		HttpResponse[] responses = exchange(requests);
+
+		Vector<Integer> rejected = new Vector<Integer>();
+		for (int i = 0; i < responses.length; i++) {
+			if (responses[i].getResponseCode() == 401) {
+				rejected.addElement(i);
+			}
+		}
+		if (rejected.isEmpty()) {
+			return responses;
+		}
+
+		// 401 response received, the first one carries the challenge
+		challenges++;
+		if (logger.isActivated()) {
+			logger.debug("401 Unauthorized response received");
+		}
+		authenticationAgent.readWwwAuthenticateHeader(responses[rejected.firstElement()].getHeader("www-authenticate"));
+		HttpRequest[] retried = new HttpRequest[rejected.size()];
+		for (int i = 0; i < retried.length; i++) {
+			retried[i] = requests[rejected.get(i)];
+		}
+		HttpResponse[] retriedResponses = exchange(retried);
+		for (int i = 0; i < retried.length; i++) {
+			responses[rejected.get(i)] = retriedResponses[i];
+		}
+		return responses;
+	}
+
+	/**
+	 * Close the connection
+	 */
+	public synchronized void close() {
+		if (connection == null) {
+			return;
+		}
+		try {
+			inputStream.close();
+			outputStream.close();
+			connection.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+		connection = null;
+		inputStream = null;
+		outputStream = null;
+	}
+
+	/**
+	 * Write the requests and read their responses. The requests without
+	 * response are sent again over a new connection if the server closes a
+	 * reused connection.
+	 * 
+	 * @param requests HTTP requests
+	 * @return HTTP responses
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private HttpResponse[] exchange(HttpRequest[] requests) throws IOException, CoreException {
+		HttpResponse[] responses = new HttpResponse[requests.length];
+		int next = 0;
+		boolean retried = false;
+		while (next < requests.length) {
+			boolean reused = open();
+			try {
+				for (int i = next; i < requests.length; i++) {
+					writeRequest(requests[i]);
+				}
+				outputStream.flush();
+				roundTrips++;
+
+				while (next < requests.length) {
+					HttpResponse response = readResponse();
+					responses[next++] = response;
+					if (!isKeptAlive(response)) {
+						// Following requests sent again over a new connection
+						close();
+						break;
+					}
+				}
+			} catch (IOException e) {
+				close();
+				if (!reused || retried) {
+					throw e;
+				}
+
+				// The server has closed the connection meanwhile
+				if (logger.isActivated()) {
+					logger.debug("Connection closed by the server, open a new one");
+				}
+				retried = true;
+			}
+		}
+		lastActivity = System.currentTimeMillis();
+		return responses;
+	}
+
+	/**
+	 * Open the connection if needed
+	 * 
+	 * @return Returns true if the current connection is reused
+	 * @throws IOException
+	 */
+	private boolean open() throws IOException {
+		if ((connection != null) && (System.currentTimeMillis() - lastActivity > IDLE_TIMEOUT)) {
+			close();
+		}
+		if (connection != null) {
+			return true;
+		}
+
+		connection = NetworkFactory.getFactory().createSocketClientConnection();
+		try {
+			connection.open(host, port);
+			connection.setSoTimeout(RESPONSE_TIMEOUT);
+			inputStream = new BufferedInputStream(connection.getInputStream());
+			outputStream = new BufferedOutputStream(connection.getOutputStream());
+		} catch (IOException e) {
+			connection = null;
+			throw e;
+		}
+		connections++;
+		if (logger.isActivated()) {
+			logger.debug("Connection opened with " + host + ":" + port);
+		}
+		return false;
+	}
+
+	/**
+	 * Write a request
+	 * 
+	 * @param request HTTP request
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private void writeRequest(HttpRequest request) throws IOException, CoreException {
+		String requestUri = serviceRoot + request.getUrl();
+		StringBuffer httpRequest = new StringBuffer();
+		httpRequest.append(request.getMethod() + " " + requestUri + " HTTP/1.1" + HttpUtils.CRLF);
+		httpRequest.append("Host: " + host + ":" + port + HttpUtils.CRLF);
+		httpRequest.append("User-Agent: " + TerminalInfo.getProductName() + " " + TerminalInfo.getProductVersion()
+				+ HttpUtils.CRLF);
+
+		// Set the Authorization header, the credentials are not sent before
+		// the server asks for them
+		if (authenticationAgent.isChallenged()) {
+			httpRequest.append(authenticationAgent.generateAuthorizationHeader(request.getMethod(), requestUri,
+					request.getContent()) + HttpUtils.CRLF);
+		}
+
+		// Set the cookie header
+		String requestCookie = (request.getCookie() != null) ? request.getCookie() : cookie;
+		if (requestCookie != null) {
+			httpRequest.append("Cookie: " + requestCookie + HttpUtils.CRLF);
+		}
+
+		httpRequest.append("X-3GPP-Intended-Identity: \"" + login + "\"" + HttpUtils.CRLF);
+
+		// Set the preconditions
+		if (request.getIfMatch() != null) {
+			httpRequest.append("If-Match: " + quote(request.getIfMatch()) + HttpUtils.CRLF);
+		}
+		if (request.getIfNoneMatch() != null) {
+			httpRequest.append("If-None-Match: " + quote(request.getIfNoneMatch()) + HttpUtils.CRLF);
+		}
+
+		byte[] content = null;
+		if (request.getContent() != null) {
+			content = request.getContent().getBytes("UTF-8");
+			httpRequest.append("Content-Type: " + request.getContentType() + HttpUtils.CRLF);
+			httpRequest.append("Content-Length: " + content.length + HttpUtils.CRLF + HttpUtils.CRLF);
+		} else {
+			httpRequest.append("Content-Length: 0" + HttpUtils.CRLF + HttpUtils.CRLF);
+		}
+
+		outputStream.write(httpRequest.toString().getBytes());
+		if (content != null) {
+			outputStream.write(content);
+		}
+		requests++;
+
+		if (logger.isActivated()) {
+			if (request.getContent() != null) {
+				logger.debug("Send HTTP request:\n" + httpRequest + request.getContent());
+			} else {
+				logger.debug("Send HTTP request:\n" + httpRequest);
+			}
+		}
+	}
+
+	/**
+	 * Read a response
+	 * 
+	 * @return HTTP response
+	 * @throws IOException
+	 */
+	private HttpResponse readResponse() throws IOException {
+		// Interim responses are skipped
+		HttpResponse response;
+		do {
+			response = readHeaders();
+		} while (response.getResponseCode() / 100 == 1);
+
+		String line;
+		int code = response.getResponseCode();
+		String encoding = response.getHeader("transfer-encoding");
+		String length = response.getHeader("content-length");
+		if ((code == 204) || (code == 304)) {
+			// No content
+		} else
+		if ((encoding != null) && encoding.toLowerCase().contains("chunked")) {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			while (true) {
+				line = readLine();
+				if (line == null) {
+					throw new IOException("Connection closed");
+				}
+				int size = Integer.parseInt(line.split(";")[0].trim(), 16);
+				if (size == 0) {
+					break;
+				}
+				readContent(content, size);
+				readLine();
+			}
+			while ((line = readLine()) != null && (line.length() > 0)) {
+				// Trailers are ignored
+			}
+			response.setContent(content.toByteArray());
+		} else
+		if (length != null) {
+			int size = Integer.parseInt(length);
+			if (size > 0) {
+				ByteArrayOutputStream content = new ByteArrayOutputStream(size);
+				readContent(content, size);
+				response.setContent(content.toByteArray());
+			}
+		} else {
+			// Content delimited by the end of the connection
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			readContent(content, Integer.MAX_VALUE);
+			response.setContent(content.toByteArray());
+		}
+
+		// Keep the cookie and the next nonce given by the server
+		String setCookie = response.getHeader("set-cookie");
+		if (setCookie != null) {
+			cookie = setCookie;
+		}
+		authenticationAgent.readAuthenticationInfoHeader(response.getHeader("authentication-info"));
+
+		if (logger.isActivated()) {
+			logger.debug("Receive HTTP response:\n" + response.getStatusLine()
+					+ ((response.getContent() != null) ? HttpUtils.CRLF + new String(response.getContent()) : ""));
+		}
+		return response;
+	}
+
+	/**
+	 * Read the status line and the headers of a response
+	 * 
+	 * @return HTTP response
+	 * @throws IOException
+	 */
+	private HttpResponse readHeaders() throws IOException {
+		HttpResponse response = new HttpResponse();
+		String line;
+		do {
+			line = readLine();
+			if (line == null) {
+				throw new IOException("Connection closed");
+			}
+		} while (line.length() == 0);
+		response.setStatusLine(line);
+		while ((line = readLine()) != null && (line.length() > 0)) {
+			int index = line.indexOf(":");
+			if (index != -1) {
+				String name = line.substring(0, index).trim().toLowerCase();
+				String value = line.substring(index + 1).trim();
+				response.addHeader(name, value);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Returns true if the connection may be reused after a response
+	 * 
+	 * @param response HTTP response
+	 * @return Boolean
+	 */
+	private boolean isKeptAlive(HttpResponse response) {
+		String value = response.getHeader("connection");
+		if (response.getStatusLine().startsWith("HTTP/1.0")) {
+			return (value != null) && value.equalsIgnoreCase("keep-alive");
+		}
+		if ((value != null) && value.equalsIgnoreCase("close")) {
+			return false;
+		}
+		return (response.getHeader("content-length") != null) || (response.getHeader("transfer-encoding") != null)
+				|| (response.getResponseCode() == 204) || (response.getResponseCode() == 304);
+	}
+
+	/**
+	 * Read a line of the response
+	 * 
+	 * @return Line without CRLF or null at the end of the stream
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		StringBuffer line = new StringBuffer();
+		int c;
+		while ((c = inputStream.read()) != '\n') {
+			if (c == -1) {
+				return (line.length() > 0) ? line.toString() : null;
+			}
+			if (c != '\r') {
+				line.append((char)c);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Read content of the response
+	 * 
+	 * @param content Output of the content
+	 * @param size Size to read, or Integer.MAX_VALUE to read up to the end
+	 *        of the stream
+	 * @throws IOException
+	 */
+	private void readContent(ByteArrayOutputStream content, int size) throws IOException {
+		byte[] buffer = new byte[4096];
+		int remaining = size;
+		while (remaining > 0) {
+			int read = inputStream.read(buffer, 0, Math.min(buffer.length, remaining));
+			if (read == -1) {
+				if (size == Integer.MAX_VALUE) {
+					return;
+				}
+				throw new IOException("Connection closed");
+			}
+			content.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+	/**
+	 * Quote an entity tag if needed
+	 * 
+	 * @param etag Entity tag
+	 * @return Quoted entity tag
+	 */
+	private static String quote(String etag) {
+		if (etag.startsWith("\"") || etag.startsWith("W/")) {
+			return etag;
+		}
+		return "\"" + etag + "\"";
+	}
+}
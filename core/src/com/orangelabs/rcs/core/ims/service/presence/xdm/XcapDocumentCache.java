@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.presence.xdm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Cache of the XCAP documents: the last version of a document read from
+ * the XDM server is kept with its entity tag, in memory and on disk, so
+ * that it may be revalidated instead of downloaded again
+ * 
+ * @author Orange
+ */
+public class XcapDocumentCache {
+	/**
+	 * Cached document
+	 */
+	private static class CachedDocument {
+		private String etag;
+
+		private byte[] content;
+
+		private CachedDocument(String etag, byte[] content) {
+			this.etag = etag;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Extension of the cached documents
+	 */
+	private static final String EXTENSION = ".xcap";
+
+	/**
+	 * Directory of the cache, or null if the documents are kept only in
+	 * memory
+	 */
+	private File dir;
+
+	/**
+	 * Documents indexed by path
+	 */
+	private Hashtable<String, CachedDocument> documents = new Hashtable<String, CachedDocument>();
+
+	/**
+	 * Documents indexed by path which have been read from the disk or are
+	 * known to be missing from the disk
+	 */
+	private Hashtable<String, Boolean> loaded = new Hashtable<String, Boolean>();
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dir Directory of the cache, or null to keep the documents only
+	 *        in memory
+	 */
+	public XcapDocumentCache(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Returns the entity tag of a cached document
+	 * 
+	 * @param path Path of the document
+	 * @return Entity tag or null if the document is not cached
+	 */
+	public synchronized String getEtag(String path) {
+		CachedDocument document = load(path);
+		return (document != null) ? document.etag : null;
+	}
+
+	/**
+	 * Returns the content of a cached document
+	 * 
+	 * @param path Path of the document
+	 * @return Content or null if the document is not cached
+	 */
+	public synchronized byte[] getContent(String path) {
+		CachedDocument document = load(path);
+		return (document != null) ? document.content : null;
+	}
+
+	/**
+	 * Cache a document
+	 * 
+	 * @param path Path of the document
+	 * @param etag Entity tag of the document
+	 * @param content Content of the document
+	 */
+	public synchronized void put(String path, String etag, byte[] content) {
+		documents.put(path, new CachedDocument(etag, content));
+		loaded.put(path, Boolean.TRUE);
+		if (dir == null) {
+			return;
+		}
+
+		// Written to a temporary file first, so that a partial document is never read
+		File file = getFile(path);
+		File tmp = new File(dir, file.getName() + ".tmp");
+		try {
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw new IOException("Can't create " + dir);
+			}
+			DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+			try {
+				out.writeUTF(path);
+				out.writeUTF(etag);
+				out.writeInt(content.length);
+				out.write(content);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Can't rename " + tmp);
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			if (logger.isActivated()) {
+				logger.error("Can't cache the document " + path, e);
+			}
+		}
+	}
+
+	/**
+	 * Remove a document from the cache
+	 * 
+	 * @param path Path of the document
+	 */
+	public synchronized void remove(String path) {
+		documents.remove(path);
+		loaded.put(path, Boolean.TRUE);
+		if (dir != null) {
+			getFile(path).delete();
+		}
+	}
+
+	/**
+	 * Remove all the documents from the cache
+	 */
+	public synchronized void clear() {
+		documents.clear();
+		loaded.clear();
+		File[] files = (dir != null) ? dir.listFiles() : null;
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(EXTENSION)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a cached document, read from the disk the first time
+	 * 
+	 * @param path Path of the document
+	 * @return Document or null
+	 */
+	private CachedDocument load(String path) {
+		if ((dir == null) || loaded.containsKey(path)) {
+			return documents.get(path);
+		}
+		loaded.put(path, Boolean.TRUE);
+
+		File file = getFile(path);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				if (!in.readUTF().equals(path)) {
+					// Another document with the same hash
+					return null;
+				}
+				String etag = in.readUTF();
+				byte[] content = new byte[in.readInt()];
+				in.readFully(content);
+				CachedDocument document = new CachedDocument(etag, content);
+				documents.put(path, document);
+				return document;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			file.delete();
+			if (logger.isActivated()) {
+				logger.error("Can't read the cached document " + path, e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the file of a document
+	 * 
+	 * @param path Path of the document
+	 * @return File
+	 */
+	private File getFile(String path) {
+		return new File(dir, Integer.toHexString(path.hashCode()) + EXTENSION);
+	}
+}
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.service.presence.xdm;
 
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.List;
 
 import javax.xml.parsers.SAXParser;
@@ -42,6 +43,10 @@ public class XcapResponseParser extends DefaultHandler {
 	private StringBuffer accumulator;
 	
 	private List<String> uriList = new ArrayList<String>();
+
+	private Hashtable<String, List<String>> lists = new Hashtable<String, List<String>>();
+
+	private List<String> currentList = null;
 	
 	/**
      * The logger
@@ -56,6 +61,7 @@ public class XcapResponseParser extends DefaultHandler {
      */
     public XcapResponseParser(InputSource inputSource) throws Exception {
     	SAXParserFactory factory = SAXParserFactory.newInstance();
+    	factory.setNamespaceAware(true);
         SAXParser parser = factory.newSAXParser();
         parser.parse(inputSource, this);
 	}
@@ -74,13 +80,26 @@ public class XcapResponseParser extends DefaultHandler {
 	public void startElement(String namespaceURL, String localName,	String qname, Attributes attr) {
 		accumulator.setLength(0);
 
+		if (localName.equals("list")) {
+			String name = attr.getValue("name");
+			if (name != null) {
+				currentList = new ArrayList<String>();
+				lists.put(name.trim(), currentList);
+			}
+		} else
 		if (localName.equals("entry")) {
 			String uri = attr.getValue("uri").trim();
 			uriList.add(uri);
+			if (currentList != null) {
+				currentList.add(uri);
+			}
 		}
 	}
 
 	public void endElement(String namespaceURL, String localName, String qname) {
+		if (localName.equals("list")) {
+			currentList = null;
+		}
 	}
 
 	public void endDocument() {
@@ -114,4 +133,8 @@ public class XcapResponseParser extends DefaultHandler {
 	public List<String> getUris() {
 		return uriList;
 	}
+
+	public Hashtable<String, List<String>> getLists() {
+		return lists;
+	}
 }
@@ -19,34 +19,33 @@
 package com.orangelabs.rcs.core.ims.service.presence.xdm;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Vector;
 
 import org.xml.sax.InputSource;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import com.orangelabs.rcs.core.CoreException;
-import com.orangelabs.rcs.core.TerminalInfo;
+import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.core.ims.ImsModule;
-import com.orangelabs.rcs.core.ims.protocol.http.HttpAuthenticationAgent;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpDeleteRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpGetRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpPutRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
 import com.orangelabs.rcs.core.ims.service.presence.PhotoIcon;
+import com.orangelabs.rcs.core.ims.service.presence.directory.Entry;
 import com.orangelabs.rcs.core.ims.service.presence.directory.Folder;
 import com.orangelabs.rcs.core.ims.service.presence.directory.XcapDirectoryParser;
-import com.orangelabs.rcs.platform.network.NetworkFactory;
-import com.orangelabs.rcs.platform.network.SocketConnection;
 import com.orangelabs.rcs.utils.Base64;
 import com.orangelabs.rcs.utils.HttpUtils;
+import com.orangelabs.rcs.utils.StringUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -55,6 +54,26 @@ import com.orangelabs.rcs.utils.logger.Logger;
  * @author Jean-Marc AUFFRET
  */
 public class XdmManager {
+	/**
+	 * Name of the list of granted contacts
+	 */
+	private static final String GRANTED_LIST = "rcs";
+
+	/**
+	 * Name of the list of blocked contacts
+	 */
+	private static final String BLOCKED_LIST = "rcs_blockedcontacts";
+
+	/**
+	 * Name of the list of revoked contacts
+	 */
+	private static final String REVOKED_LIST = "rcs_revokedcontacts";
+
+	/**
+	 * Directory of the cached documents in the application files
+	 */
+	private static final String CACHE_DIRECTORY = "xcap";
+
 	/**
 	 * XDM server address
 	 */
@@ -74,6 +93,26 @@ public class XdmManager {
 	 * Managed documents
 	 */
 	private Hashtable<String, Folder> documents = new Hashtable<String, Folder>();
+
+	/**
+	 * Connection to the XDM server
+	 */
+	private XcapConnection connection;
+
+	/**
+	 * Cache of the documents
+	 */
+	private XcapDocumentCache cache;
+
+	/**
+	 * Lists of the resource lists document, parsed from the cached version
+	 */
+	private Hashtable<String, List<String>> lists = null;
+
+	/**
+	 * Etag of the cached version parsed into the lists
+	 */
+	private String listsEtag = null;
 	
 	/**
 	 * The logger
@@ -86,72 +125,109 @@ public class XdmManager {
 	 * @param parent IMS module
 	 */
 	public XdmManager(ImsModule parent) {
+		this(parent, new XcapDocumentCache((AndroidFactory.getApplicationContext() != null) ?
+				new File(AndroidFactory.getApplicationContext().getFilesDir(), CACHE_DIRECTORY) : null));
+	}
+
+	/**
+	 * Remove the cached documents, which belong to the previous user profile
+	 * when the account is reset or has changed
+	 * 
+	 * @param context Application context
+	 */
+	public static void clearCache(Context context) {
+		new XcapDocumentCache(new File(context.getFilesDir(), CACHE_DIRECTORY)).clear();
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parent IMS module
+	 * @param cache Cache of the documents
+	 */
+	public XdmManager(ImsModule parent, XcapDocumentCache cache) {
+		this.cache = cache;
 		xdmServerAddr = ImsModule.IMS_USER_PROFILE.getXdmServerAddr();
 		xdmServerLogin = ImsModule.IMS_USER_PROFILE.getXdmServerLogin();
 		xdmServerPwd = ImsModule.IMS_USER_PROFILE.getXdmServerPassword();
+		connection = new XcapConnection(xdmServerAddr, xdmServerLogin, xdmServerPwd);
 	}
 	
 	/**
-	 * Send HTTP PUT request
+	 * Returns the connection to the XDM server
+	 * 
+	 * @return Connection
+	 */
+	public XcapConnection getXcapConnection() {
+		return connection;
+	}
+
+	/**
+	 * Close the connection to the XDM server
+	 */
+	public void close() {
+		connection.close();
+	}
+
+	/**
+	 * Send HTTP request
 	 * 
 	 * @param request HTTP request
 	 * @return HTTP response
 	 * @throws CoreException
 	 */
 	private HttpResponse sendRequestToXDMS(HttpRequest request) throws CoreException {
-		return sendRequestToXDMS(request, new HttpAuthenticationAgent(xdmServerLogin, xdmServerPwd));
+		return sendRequestsToXDMS(new HttpRequest[] { request })[0];
 	}
-	
+
 	/**
-	 * Send HTTP PUT request with authentication
+	 * Send HTTP requests pipelined over the connection to the XDM server
 	 * 
-	 * @param request HTTP request
-	 * @param authenticationAgent Authentication agent
-	 * @return HTTP response
+	 * @param requests HTTP requests
+	 * @return HTTP responses
 	 * @throws CoreException
 	 */
-	private HttpResponse sendRequestToXDMS(HttpRequest request, HttpAuthenticationAgent authenticationAgent) throws CoreException {
+	private HttpResponse[] sendRequestsToXDMS(HttpRequest[] requests) throws CoreException {
 		try {
-			// Send first request
-			HttpResponse response = sendHttpRequest(request, authenticationAgent);
-			
-			// Analyze the response
-			if (response.getResponseCode() == 401) {
-				// 401 response received
-				if (logger.isActivated()) {
-					logger.debug("401 Unauthorized response received");
+			// Modify only the known version of the documents
+			for (HttpRequest request : requests) {
+				if (!request.getMethod().equals("GET")) {
+					request.setIfMatch(getEtag(request.getAUID()));
 				}
-	
-				if (authenticationAgent != null) {
-					// Update the authentication agent
-					authenticationAgent.readWwwAuthenticateHeader(response.getHeader("www-authenticate"));
+			}
+
+			// Send the requests
+			HttpResponse[] responses = connection.sendRequests(requests);
+
+			// Analyze the responses
+			for (int i = 0; i < requests.length; i++) {
+				if (responses[i].getResponseCode() == 412) {
+					// 412 response received
+					if (logger.isActivated()) {
+						logger.debug("412 Precondition failed");
+					}
+
+					// Reset the etag and the cached version, and send the request again
+					documents.remove(requests[i].getAUID());
+					if (requests[i].getUrl().startsWith(getResourceListsUrl())) {
+						cache.remove(getResourceListsUrl());
+					}
+					requests[i].setIfMatch(null);
+					responses[i] = connection.sendRequest(requests[i]);
 				}
-	
-				// Set the cookie from the received response
-				String cookie = response.getHeader("set-cookie");
-				request.setCookie(cookie);
-				
-				// Send second request with authentification header
-				response = sendRequestToXDMS(request, authenticationAgent);
-			} else
-			if (response.getResponseCode() == 412) {
-				// 412 response received
+
 				if (logger.isActivated()) {
-					logger.debug("412 Precondition failed");
+					logger.debug(responses[i].getResponseCode() + " response received");
 				}
-	
-				// Reset the etag
-				documents.remove(request.getAUID());
-				
-				// Send second request with authentification header
-				response = sendRequestToXDMS(request);
-			} else {		
-				// Other response received
-				if (logger.isActivated()) {
-					logger.debug(response.getResponseCode() + " response received");
+
+				// Save the Etag from the received response
+				String etag = responses[i].getHeader("etag");
+				Folder folder = documents.get(requests[i].getAUID());
+				if ((etag != null) && (folder != null) && (folder.getEntry() != null)) {
+					folder.getEntry().setEtag(unquote(etag));
 				}
 			}
-			return response;
+			return responses;
 		} catch(CoreException e) {
 			throw e;
 		} catch(Exception e) {
@@ -160,179 +236,216 @@ public class XdmManager {
 	}
 
 	/**
-	 * Send HTTP PUT request
+	 * Returns the Etag of a document
 	 * 
-	 * @param request HTTP request
-	 * @param authenticationAgent Authentication agent
-	 * @return HTTP response
-	 * @throws IOException
-	 * @throws CoreException
+	 * @param auid AUID of the document
+	 * @return Etag or null
 	 */
-	private HttpResponse sendHttpRequest(HttpRequest request, HttpAuthenticationAgent authenticationAgent) throws IOException, CoreException {
-		// Extract host & port
-		String[] parts = xdmServerAddr.substring(7).split(":|/");
-		String host = parts[0];		
-		int port = Integer.parseInt(parts[1]);
-		String serviceRoot = "";
-		if (parts.length > 2) {
-			serviceRoot = "/" + parts[2];
+	private String getEtag(String auid) {
+		Folder folder = documents.get(auid);
+		if ((folder != null) && (folder.getEntry() != null)) {
+			return unquote(folder.getEntry().getEtag());
 		}
-		
-		// Open connection with the XCAP server
-		SocketConnection conn = NetworkFactory.getFactory().createSocketClientConnection();
-		conn.open(host, port);
-		InputStream is = conn.getInputStream();
-		OutputStream os = conn.getOutputStream();
-
-		// Create the HTTP request
-		String requestUri = serviceRoot + request.getUrl();
-		String httpRequest = request.getMethod() + " " + requestUri + " HTTP/1.1" + HttpUtils.CRLF +
-				"Host: " + host + ":" + port + HttpUtils.CRLF +
-				"User-Agent: " + TerminalInfo.getProductName() + " " + TerminalInfo.getProductVersion() + HttpUtils.CRLF;
-		
-		if (authenticationAgent != null) {
-			// Set the Authorization header
-			String authorizationHeader = authenticationAgent.generateAuthorizationHeader(
-					request.getMethod(), requestUri, request.getContent());
-			httpRequest += authorizationHeader + HttpUtils.CRLF;
-		}
-		
-		String cookie = request.getCookie();
-		if (cookie != null){
-			// Set the cookie header
-			httpRequest += "Cookie: " + cookie + HttpUtils.CRLF;
+		return null;
+	}
+
+	/**
+	 * Remove the quotes of an Etag
+	 * 
+	 * @param etag Etag
+	 * @return Etag without quotes or null
+	 */
+	private static String unquote(String etag) {
+		if ((etag != null) && (etag.length() >= 2) && etag.startsWith("\"") && etag.endsWith("\"")) {
+			return etag.substring(1, etag.length() - 1);
 		}
+		return etag;
+	}
 
-		httpRequest += "X-3GPP-Intended-Identity: \"" + ImsModule.IMS_USER_PROFILE.getXdmServerLogin() + "\"" + HttpUtils.CRLF;
+	/**
+	 * Returns the URL of the XCAP directory
+	 * 
+	 * @return URL
+	 */
+	private String getDirectoryUrl() {
+		return "/org.openmobilealliance.xcap-directory/users/" +
+			HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/directory.xml";
+	}
 
-		// Set the If-match header
-		Folder folder = (Folder)documents.get(request.getAUID());
-		if ((folder != null) && (folder.getEntry() != null) && (folder.getEntry().getEtag() != null)) {
-			httpRequest += "If-match: \"" + folder.getEntry().getEtag() + "\"" + HttpUtils.CRLF;
+	/**
+	 * Returns the URL of the resource lists document
+	 * 
+	 * @return URL
+	 */
+	private String getResourceListsUrl() {
+		return "/resource-lists/users/" +
+			HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/index";
+	}
+
+	/**
+	 * Read a document, the cached version being revalidated with the server
+	 * 
+	 * @param url URL of the document
+	 * @return Content or null if the document can't be read
+	 * @throws CoreException
+	 */
+	private byte[] readDocument(String url) throws CoreException {
+		HttpGetRequest request = new HttpGetRequest(url);
+		request.setIfNoneMatch(cache.getEtag(url));
+		HttpResponse response = sendRequestToXDMS(request);
+		if ((response.getResponseCode() == 304) && (cache.getContent(url) != null)) {
+			if (logger.isActivated()){
+				logger.debug("Document " + url + " not modified");
+			}
+			return cache.getContent(url);
 		}
-		
-		if (request.getContent() != null) {
-			// Set the content type
-			httpRequest += "Content-type: " + request.getContentType() + HttpUtils.CRLF;
-			httpRequest += "Content-Length:" + request.getContentLength() + HttpUtils.CRLF + HttpUtils.CRLF;
-		} else {
-			httpRequest += "Content-Length: 0" + HttpUtils.CRLF + HttpUtils.CRLF;
+		if (!response.isSuccessfullResponse()) {
+			if (logger.isActivated()){
+				logger.info("Can't read document " + url + ": " + response.getResponseCode() + " error");
+			}
+			if (response.isNotFoundResponse()) {
+				cache.remove(url);
+			}
+			return null;
 		}
-		
-		// Write HTTP request headers
-		os.write(httpRequest.getBytes());
-		os.flush();
-
-		// Write HTTP content
-		if (request.getContent() != null) {
-			os.write(request.getContent().getBytes("UTF-8"));
-			os.flush();
+
+		byte[] content = (response.getContent() != null) ? response.getContent() : new byte[0];
+		String etag = response.getHeader("etag");
+		if (etag != null) {
+			cache.put(url, unquote(etag), content);
+		} else {
+			cache.remove(url);
 		}
+		return content;
+	}
 
-		if (logger.isActivated()){
-			if (request.getContent() != null) {
-				logger.debug("Send HTTP request:\n" + httpRequest + request.getContent());
-			} else {
-				logger.debug("Send HTTP request:\n" + httpRequest);
-			}
+	/**
+	 * Returns the lists of the resource lists document. The cached version is
+	 * used without request when the XCAP directory shows it has not changed,
+	 * else it is revalidated with the server.
+	 * 
+	 * @return Lists indexed by name or null if the document can't be read
+	 * @throws Exception
+	 */
+	private synchronized Hashtable<String, List<String>> getResourceLists() throws Exception {
+		String url = getResourceListsUrl();
+		String etag = cache.getEtag(url);
+		byte[] content;
+		if ((etag != null) && etag.equals(getEtag("resource-lists"))) {
+			content = cache.getContent(url);
+		} else {
+			content = readDocument(url);
+			etag = cache.getEtag(url);
 		}
+		if (content == null) {
+			return null;
+		}
+		return parseResourceLists(etag, content);
+	}
 
-		// Read HTTP headers response
-		StringBuffer respTrace = new StringBuffer();
-		HttpResponse response = new HttpResponse();
-		int ch = -1;
-		String line = "";
-		while((ch = is.read()) != -1) {
-			line += (char)ch;
-			
-			if (line.endsWith(HttpUtils.CRLF)) {
-				if (line.equals(HttpUtils.CRLF)) {
-					// All headers has been read
-					break;
-				}
+	/**
+	 * Parse a version of the resource lists document, the lists being parsed
+	 * only once per version
+	 * 
+	 * @param etag Etag of the version
+	 * @param content Content
+	 * @return Lists indexed by name
+	 * @throws Exception
+	 */
+	private Hashtable<String, List<String>> parseResourceLists(String etag, byte[] content) throws Exception {
+		if ((lists == null) || (etag == null) || !etag.equals(listsEtag)) {
+			InputSource input = new InputSource(new ByteArrayInputStream(content));
+			XcapResponseParser parser = new XcapResponseParser(input);
+			lists = parser.getLists();
+			listsEtag = etag;
+		}
+		return lists;
+	}
 
-				if (logger.isActivated()) {
-					respTrace.append(line);
-				}
+	/**
+	 * Send a request adding or removing a contact of a list, and apply the
+	 * change to the cached resource lists document if it was up to date
+	 * 
+	 * @param request HTTP request
+	 * @param name Name of the list
+	 * @param contact Contact
+	 * @param added Contact added or removed
+	 * @return HTTP response
+	 * @throws CoreException
+	 */
+	private HttpResponse sendListChange(HttpRequest request, String name, String contact, boolean added) throws CoreException {
+		String url = getResourceListsUrl();
+		String etag = cache.getEtag(url);
+		boolean upToDate = (etag != null) && etag.equals(getEtag("resource-lists"));
+		HttpResponse response = sendRequestToXDMS(request);
+		if (!response.isSuccessfullResponse()) {
+			return response;
+		}
 
-				// Remove CRLF
-				line = line.substring(0, line.length()-2);
-				
-				if (line.startsWith("HTTP/")) {
-					// Status line
-					response.setStatusLine(line);
-				} else {
-					// Header
-					int index = line.indexOf(":");
-					String name = line.substring(0, index).trim().toLowerCase();
-					String value = line.substring(index+1).trim();
-					response.addHeader(name, value);
+		synchronized(this) {
+			String newEtag = response.getHeader("etag");
+			if (!upToDate || (newEtag == null) || !etag.equals(cache.getEtag(url))) {
+				// The change can't be applied to the cached version
+				cache.remove(url);
+				return response;
+			}
+			try {
+				Hashtable<String, List<String>> current = parseResourceLists(etag, cache.getContent(url));
+				List<String> list = current.get(name);
+				if (list == null) {
+					list = new ArrayList<String>();
+					current.put(name, list);
 				}
-				
-				line = "";
-			}
-		}
-		
-		// Extract content length
-		int length = -1;
-		try {
-			String value = response.getHeader("content-length");
-			length = Integer.parseInt(value);
-		} catch(Exception e) {
-			length = -1;
-		}
-		
-		// Read HTTP content response
-		if (length > 0) {
-			byte[] content = new byte[length];
-			int nb = -1;
-			int pos = 0;
-			byte[] buffer = new byte[1024];
-			while((nb = is.read(buffer)) != -1) {
-				System.arraycopy(buffer, 0, content, pos, nb);
-				pos += nb;
-				
-				if (pos >= length) {
-					// End of content
-					break;
+				list.remove(contact);
+				if (added) {
+					list.add(contact);
 				}
+				cache.put(url, unquote(newEtag), buildResourceLists(current).getBytes("UTF-8"));
+				listsEtag = unquote(newEtag);
+			} catch(Exception e) {
+				cache.remove(url);
 			}
-			if (logger.isActivated()) {
-				respTrace.append(HttpUtils.CRLF + new String(content));
-			}
-			response.setContent(content);
 		}
+		return response;
+	}
 
-		if (logger.isActivated()){
-			logger.debug("Receive HTTP response:\n" + respTrace.toString());
+	/**
+	 * Build the resource lists document of the lists, keeping only the
+	 * entries read by the lists of contacts
+	 * 
+	 * @param lists Lists indexed by name
+	 * @return Document
+	 */
+	private static String buildResourceLists(Hashtable<String, List<String>> lists) {
+		StringBuffer content = new StringBuffer("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
+				"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\">" + HttpUtils.CRLF);
+		for (String name : lists.keySet()) {
+			content.append("<list name=\"" + StringUtils.encodeXML(name) + "\">" + HttpUtils.CRLF);
+			for (String uri : lists.get(name)) {
+				content.append(" <entry uri=\"" + StringUtils.encodeXML(uri) + "\"/>" + HttpUtils.CRLF);
+			}
+			content.append("</list>" + HttpUtils.CRLF);
 		}
+		content.append("</resource-lists>");
+		return content.toString();
+	}
 
-		// Close the connection
-		is.close();
-		os.close();
-		conn.close();
-
-		// Save the Etag from the received response
-		String etag = response.getHeader("etag");
-		if ((etag != null) && (folder != null) && (folder.getEntry() != null)) {
-			folder.getEntry().setEtag(etag);
-		}
-		
-		return response;
-	}	
-	
 	/**
 	 * Initialize the XDM interface
 	 */
 	public void initialize() {
     	// Get the existing XCAP documents on the XDM server
 		try {
-			HttpResponse response = getXcapDocuments();
-			if ((response != null) && response.isSuccessfullResponse()) {
+			if (logger.isActivated()){
+				logger.info("Get XCAP documents");
+			}
+			byte[] directory = readDocument(getDirectoryUrl());
+			if (directory != null) {
 				// Analyze the XCAP directory
-				InputSource input = new InputSource(new ByteArrayInputStream(response.getContent()));
+				InputSource input = new InputSource(new ByteArrayInputStream(directory));
 				XcapDirectoryParser parser = new XcapDirectoryParser(input);
 				documents = parser.getDocuments();
+				Vector<HttpRequest> requests = new Vector<HttpRequest>();
 
 				// Check RCS list document
 				Folder folder = (Folder)documents.get("rls-services");
@@ -342,7 +455,7 @@ public class XdmManager {
 					}
 
 					// Set RCS list document
-			    	setRcsList();
+					requests.addElement(createRcsListRequest());
 				} else {
 					if (logger.isActivated()){
 						logger.debug("The rls-services document already exists");
@@ -357,7 +470,7 @@ public class XdmManager {
 					}
 
 					// Set resource list document
-			    	setResourcesList(); 
+					requests.addElement(createResourcesListRequest());
 				} else {
 					if (logger.isActivated()){
 						logger.debug("The resource-lists document already exists");
@@ -372,12 +485,42 @@ public class XdmManager {
 					}
 
 					// Set presence rules document
-			    	setPresenceRules();
+					requests.addElement(createPresenceRulesRequest());
 				} else {
 					if (logger.isActivated()){
 						logger.debug("The org.openmobilealliance.pres-rules document already exists");
 					}
 				}
+
+				// Set the missing documents in one round trip
+				if (requests.size() > 0) {
+					HttpResponse[] responses = sendRequestsToXDMS(requests.toArray(new HttpRequest[requests.size()]));
+					for (int i = 0; i < responses.length; i++) {
+						HttpRequest request = requests.get(i);
+						if (logger.isActivated()) {
+							logger.info("Document " + request.getAUID() + " set: "
+									+ responses[i].getResponseCode() + " response received");
+						}
+						if (!responses[i].isSuccessfullResponse()) {
+							continue;
+						}
+
+						// Keep the version of the document just set
+						String etag = unquote(responses[i].getHeader("etag"));
+						Entry entry = new Entry(request.getUrl());
+						entry.setEtag(etag);
+						folder = new Folder(request.getAUID());
+						folder.setEntry(entry);
+						documents.put(request.getAUID(), folder);
+						if (request.getUrl().equals(getResourceListsUrl())) {
+							if (etag != null) {
+								cache.put(request.getUrl(), etag, request.getContent().getBytes("UTF-8"));
+							} else {
+								cache.remove(request.getUrl());
+							}
+						}
+					}
+				}
 			}
 		} catch(Exception e) {
         	if (logger.isActivated()) {
@@ -397,12 +540,8 @@ public class XdmManager {
 				logger.info("Get XCAP documents");
 			}
 	
-			// URL
-			String url = "/org.openmobilealliance.xcap-directory/users/" +
-				HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/directory.xml";
-		
 			// Create the request
-			HttpGetRequest request = new HttpGetRequest(url);
+			HttpGetRequest request = new HttpGetRequest(getDirectoryUrl());
 
 			// Send the request
 			HttpResponse response = sendRequestToXDMS(request);
@@ -473,30 +612,8 @@ public class XdmManager {
 				logger.info("Set RCS list");
 			}
 	
-			// URL
-			String url = "/rls-services/users/" + 
-				HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/index";
-		
-			// Content
-			String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
-			String resList = xdmServerAddr + "/resource-lists/users/" + HttpUtils.encodeURL(user) + "/index/~~/resource-lists/list%5B@name=%22rcs%22%5D";
-			String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
-				"<rls-services xmlns=\"urn:ietf:params:xml:ns:rls-services\" xmlns:rl=\"urn:ietf:params:xml:ns:resource-lists\">" + HttpUtils.CRLF +
-				"<service uri=\"" + user + ";pres-list=rcs\">" + HttpUtils.CRLF +
-				
-				"<resource-list>" + resList + "</resource-list>" + HttpUtils.CRLF +
-				
-				"<packages>" + HttpUtils.CRLF +
-				" <package>presence</package>" + HttpUtils.CRLF +
-				"</packages>" + HttpUtils.CRLF +
-				
-				"</service></rls-services>";
-	
-			// Create the request
-			HttpPutRequest request = new HttpPutRequest(url, content, "application/rls-services+xml");
-
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendRequestToXDMS(createRcsListRequest());
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info("RCS list has been set with success");
@@ -514,6 +631,35 @@ public class XdmManager {
 			return null;
 		}
 	}
+
+	/**
+	 * Create the request setting the RCS list
+	 * 
+	 * @return Request
+	 */
+	private HttpPutRequest createRcsListRequest() {
+		// URL
+		String url = "/rls-services/users/" + 
+			HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/index";
+	
+		// Content
+		String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
+		String resList = xdmServerAddr + "/resource-lists/users/" + HttpUtils.encodeURL(user) + "/index/~~/resource-lists/list%5B@name=%22rcs%22%5D";
+		String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
+			"<rls-services xmlns=\"urn:ietf:params:xml:ns:rls-services\" xmlns:rl=\"urn:ietf:params:xml:ns:resource-lists\">" + HttpUtils.CRLF +
+			"<service uri=\"" + user + ";pres-list=rcs\">" + HttpUtils.CRLF +
+			
+			"<resource-list>" + resList + "</resource-list>" + HttpUtils.CRLF +
+			
+			"<packages>" + HttpUtils.CRLF +
+			" <package>presence</package>" + HttpUtils.CRLF +
+			"</packages>" + HttpUtils.CRLF +
+			
+			"</service></rls-services>";
+
+		// Create the request
+		return new HttpPutRequest(url, content, "application/rls-services+xml");
+	}
 	
 	/**
 	 * Get resources list
@@ -564,48 +710,8 @@ public class XdmManager {
 				logger.info("Set resources list");
 			}
 	
-			// URL
-			String url = "/resource-lists/users/" +
-				HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/index";
-		
-			// Content
-			String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
-			String resList = xdmServerAddr + "/resource-lists/users/" + HttpUtils.encodeURL(user) + "/index/~~/resource-lists/list%5B";
-			String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
-				"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\">" + HttpUtils.CRLF +
-				
-				"<list name=\"oma_buddylist\">" + HttpUtils.CRLF +
-				" <external anchor=\"" + resList + "@name=%22rcs%22%5D\"/>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"<list name=\"oma_grantedcontacts\">" + HttpUtils.CRLF +
-				" <external anchor=\"" + resList + "@name=%22rcs%22%5D\"/>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"<list name=\"oma_blockedcontacts\">" + HttpUtils.CRLF +
-				" <external anchor=\"" + resList + "@name=%22rcs_blockedcontacts%22%5D\"/>" + HttpUtils.CRLF +
-				" <external anchor=\"" + resList + "@name=%22rcs_revokedcontacts%22%5D\"/>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"<list name=\"rcs\">" + HttpUtils.CRLF +
-				" <display-name>My presence buddies</display-name>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"<list name=\"rcs_blockedcontacts\">" + HttpUtils.CRLF +
-				" <display-name>My blocked contacts</display-name>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"<list name=\"rcs_revokedcontacts\">" + HttpUtils.CRLF +
-				" <display-name>My revoked contacts</display-name>" + HttpUtils.CRLF +
-				"</list>" + HttpUtils.CRLF +
-				
-				"</resource-lists>";
-			
-			// Create the request
-			HttpPutRequest request = new HttpPutRequest(url, content, "application/resource-lists+xml");
-
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendRequestToXDMS(createResourcesListRequest());
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info("Resources list has been set with success");
@@ -623,6 +729,53 @@ public class XdmManager {
 			return null;
 		}
 	}
+
+	/**
+	 * Create the request setting the resources list
+	 * 
+	 * @return Request
+	 */
+	private HttpPutRequest createResourcesListRequest() {
+		// URL
+		String url = "/resource-lists/users/" +
+			HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/index";
+	
+		// Content
+		String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
+		String resList = xdmServerAddr + "/resource-lists/users/" + HttpUtils.encodeURL(user) + "/index/~~/resource-lists/list%5B";
+		String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
+			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\">" + HttpUtils.CRLF +
+			
+			"<list name=\"oma_buddylist\">" + HttpUtils.CRLF +
+			" <external anchor=\"" + resList + "@name=%22rcs%22%5D\"/>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"<list name=\"oma_grantedcontacts\">" + HttpUtils.CRLF +
+			" <external anchor=\"" + resList + "@name=%22rcs%22%5D\"/>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"<list name=\"oma_blockedcontacts\">" + HttpUtils.CRLF +
+			" <external anchor=\"" + resList + "@name=%22rcs_blockedcontacts%22%5D\"/>" + HttpUtils.CRLF +
+			" <external anchor=\"" + resList + "@name=%22rcs_revokedcontacts%22%5D\"/>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"<list name=\"rcs\">" + HttpUtils.CRLF +
+			" <display-name>My presence buddies</display-name>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"<list name=\"rcs_blockedcontacts\">" + HttpUtils.CRLF +
+			" <display-name>My blocked contacts</display-name>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"<list name=\"rcs_revokedcontacts\">" + HttpUtils.CRLF +
+			" <display-name>My revoked contacts</display-name>" + HttpUtils.CRLF +
+			"</list>" + HttpUtils.CRLF +
+			
+			"</resource-lists>";
+
+		// Create the request
+		return new HttpPutRequest(url, content, "application/resource-lists+xml");
+	}
 	
 	/**
 	 * Get presence rules
@@ -673,74 +826,8 @@ public class XdmManager {
 				logger.info("Set presence rules");
 			}
 	
-			// URL
-			String url = "/org.openmobilealliance.pres-rules/users/" +
-				HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/pres-rules";
-		
-			// Content
-			String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
-			String blockedList = xdmServerAddr + "/resource-lists/users/" + user + "/index/~~/resource-lists/list%5B@name=%22oma_blockedcontacts%22%5D";
-			String grantedList = xdmServerAddr + "/resource-lists/users/" + user + "/index/~~/resource-lists/list%5B@name=%22oma_grantedcontacts%22%5D";
-			String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
-				"<cr:ruleset xmlns:ocp=\"urn:oma:xml:xdm:common-policy\" xmlns:pr=\"urn:ietf:params:xml:ns:pres-rules\" xmlns:cr=\"urn:ietf:params:xml:ns:common-policy\">" + HttpUtils.CRLF +
-				
-				"<cr:rule id=\"wp_prs_allow_own\">" + HttpUtils.CRLF +
-				" <cr:conditions>" + HttpUtils.CRLF +
-				"  <cr:identity><cr:one id=\"" + ImsModule.IMS_USER_PROFILE.getPublicUri() + "\"/></cr:identity>" + HttpUtils.CRLF +
-				" </cr:conditions>" + HttpUtils.CRLF +
-				" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
-				" <cr:transformations>" + HttpUtils.CRLF +
-				"  <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
-				"  <pr:provide-persons><pr:all-persons/></pr:provide-persons>" + HttpUtils.CRLF +
-				"  <pr:provide-devices><pr:all-devices/></pr:provide-devices>" + HttpUtils.CRLF +
-				"  <pr:provide-all-attributes/>" + HttpUtils.CRLF +
-				" </cr:transformations>" + HttpUtils.CRLF +
-				"</cr:rule>" + HttpUtils.CRLF +
-				
-				"<cr:rule id=\"rcs_allow_services_anonymous\">" + HttpUtils.CRLF +
-				" <cr:conditions><ocp:anonymous-request/></cr:conditions>" + HttpUtils.CRLF +
-				" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
-				" <cr:transformations>" + HttpUtils.CRLF +
-				"  <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
-				"  <pr:provide-all-attributes/>" + HttpUtils.CRLF +
-				" </cr:transformations>" + HttpUtils.CRLF +
-				"</cr:rule>" + HttpUtils.CRLF +
-				
-				"<cr:rule id=\"wp_prs_unlisted\">" + HttpUtils.CRLF +
-				" <cr:conditions><ocp:other-identity/></cr:conditions>" + HttpUtils.CRLF +
-				" <cr:actions><pr:sub-handling>confirm</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
-				"</cr:rule>" + HttpUtils.CRLF +
-				
-				"<cr:rule id=\"wp_prs_grantedcontacts\">" + HttpUtils.CRLF +
-				" <cr:conditions>" + HttpUtils.CRLF +
-				" <ocp:external-list>" + HttpUtils.CRLF +
-				"  <ocp:entry anc=\"" + grantedList + "\"/>" + HttpUtils.CRLF +
-				" </ocp:external-list>" + HttpUtils.CRLF +
-				" </cr:conditions>" + HttpUtils.CRLF +
-				" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
-				" <cr:transformations>" + HttpUtils.CRLF +
-				"   <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
-				"   <pr:provide-persons><pr:all-persons/></pr:provide-persons>" + HttpUtils.CRLF +
-				"   <pr:provide-devices><pr:all-devices/></pr:provide-devices>" + HttpUtils.CRLF +
-				"   <pr:provide-all-attributes/>" + HttpUtils.CRLF +
-				" </cr:transformations>" + HttpUtils.CRLF +
-				"</cr:rule>" + HttpUtils.CRLF +
-				
-				"<cr:rule id=\"wp_prs_blockedcontacts\">" + HttpUtils.CRLF +
-				" <cr:conditions>" + HttpUtils.CRLF +
-				"  <ocp:external-list>" + HttpUtils.CRLF + 
-				"  <ocp:entry anc=\"" + blockedList + "\"/>" + HttpUtils.CRLF +
-				" </ocp:external-list>" + HttpUtils.CRLF +
-				" </cr:conditions>" + HttpUtils.CRLF +
-				" <cr:actions><pr:sub-handling>block</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
-				"</cr:rule>" + HttpUtils.CRLF +
-				"</cr:ruleset>";
-			
-			// Create the request
-			HttpPutRequest request = new HttpPutRequest(url, content, "application/auth-policy+xml");
-
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendRequestToXDMS(createPresenceRulesRequest());
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info("Presence rules has been set with success");
@@ -758,6 +845,79 @@ public class XdmManager {
 			return null;
 		}
 	}
+
+	/**
+	 * Create the request setting the presence rules
+	 * 
+	 * @return Request
+	 */
+	private HttpPutRequest createPresenceRulesRequest() {
+		// URL
+		String url = "/org.openmobilealliance.pres-rules/users/" +
+			HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + "/pres-rules";
+	
+		// Content
+		String user = ImsModule.IMS_USER_PROFILE.getPublicUri();
+		String blockedList = xdmServerAddr + "/resource-lists/users/" + user + "/index/~~/resource-lists/list%5B@name=%22oma_blockedcontacts%22%5D";
+		String grantedList = xdmServerAddr + "/resource-lists/users/" + user + "/index/~~/resource-lists/list%5B@name=%22oma_grantedcontacts%22%5D";
+		String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + HttpUtils.CRLF +
+			"<cr:ruleset xmlns:ocp=\"urn:oma:xml:xdm:common-policy\" xmlns:pr=\"urn:ietf:params:xml:ns:pres-rules\" xmlns:cr=\"urn:ietf:params:xml:ns:common-policy\">" + HttpUtils.CRLF +
+			
+			"<cr:rule id=\"wp_prs_allow_own\">" + HttpUtils.CRLF +
+			" <cr:conditions>" + HttpUtils.CRLF +
+			"  <cr:identity><cr:one id=\"" + ImsModule.IMS_USER_PROFILE.getPublicUri() + "\"/></cr:identity>" + HttpUtils.CRLF +
+			" </cr:conditions>" + HttpUtils.CRLF +
+			" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
+			" <cr:transformations>" + HttpUtils.CRLF +
+			"  <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
+			"  <pr:provide-persons><pr:all-persons/></pr:provide-persons>" + HttpUtils.CRLF +
+			"  <pr:provide-devices><pr:all-devices/></pr:provide-devices>" + HttpUtils.CRLF +
+			"  <pr:provide-all-attributes/>" + HttpUtils.CRLF +
+			" </cr:transformations>" + HttpUtils.CRLF +
+			"</cr:rule>" + HttpUtils.CRLF +
+			
+			"<cr:rule id=\"rcs_allow_services_anonymous\">" + HttpUtils.CRLF +
+			" <cr:conditions><ocp:anonymous-request/></cr:conditions>" + HttpUtils.CRLF +
+			" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
+			" <cr:transformations>" + HttpUtils.CRLF +
+			"  <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
+			"  <pr:provide-all-attributes/>" + HttpUtils.CRLF +
+			" </cr:transformations>" + HttpUtils.CRLF +
+			"</cr:rule>" + HttpUtils.CRLF +
+			
+			"<cr:rule id=\"wp_prs_unlisted\">" + HttpUtils.CRLF +
+			" <cr:conditions><ocp:other-identity/></cr:conditions>" + HttpUtils.CRLF +
+			" <cr:actions><pr:sub-handling>confirm</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
+			"</cr:rule>" + HttpUtils.CRLF +
+			
+			"<cr:rule id=\"wp_prs_grantedcontacts\">" + HttpUtils.CRLF +
+			" <cr:conditions>" + HttpUtils.CRLF +
+			" <ocp:external-list>" + HttpUtils.CRLF +
+			"  <ocp:entry anc=\"" + grantedList + "\"/>" + HttpUtils.CRLF +
+			" </ocp:external-list>" + HttpUtils.CRLF +
+			" </cr:conditions>" + HttpUtils.CRLF +
+			" <cr:actions><pr:sub-handling>allow</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
+			" <cr:transformations>" + HttpUtils.CRLF +
+			"   <pr:provide-services><pr:all-services/></pr:provide-services>" + HttpUtils.CRLF +
+			"   <pr:provide-persons><pr:all-persons/></pr:provide-persons>" + HttpUtils.CRLF +
+			"   <pr:provide-devices><pr:all-devices/></pr:provide-devices>" + HttpUtils.CRLF +
+			"   <pr:provide-all-attributes/>" + HttpUtils.CRLF +
+			" </cr:transformations>" + HttpUtils.CRLF +
+			"</cr:rule>" + HttpUtils.CRLF +
+			
+			"<cr:rule id=\"wp_prs_blockedcontacts\">" + HttpUtils.CRLF +
+			" <cr:conditions>" + HttpUtils.CRLF +
+			"  <ocp:external-list>" + HttpUtils.CRLF + 
+			"  <ocp:entry anc=\"" + blockedList + "\"/>" + HttpUtils.CRLF +
+			" </ocp:external-list>" + HttpUtils.CRLF +
+			" </cr:conditions>" + HttpUtils.CRLF +
+			" <cr:actions><pr:sub-handling>block</pr:sub-handling></cr:actions>" + HttpUtils.CRLF +
+			"</cr:rule>" + HttpUtils.CRLF +
+			"</cr:ruleset>";
+
+		// Create the request
+		return new HttpPutRequest(url, content, "application/auth-policy+xml");
+	}
 	
 	/**
 	 * Add a contact to the granted contacts list
@@ -784,7 +944,7 @@ public class XdmManager {
 			HttpPutRequest request = new HttpPutRequest(url, content, "application/xcap-el+xml");
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, GRANTED_LIST, contact, true);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been added with success to granted list");
@@ -825,7 +985,7 @@ public class XdmManager {
 			HttpDeleteRequest request = new HttpDeleteRequest(url);
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, GRANTED_LIST, contact, false);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been removed with success from granted list");
@@ -855,29 +1015,22 @@ public class XdmManager {
 			if (logger.isActivated()){
 				logger.info("Get granted contacts list");
 			}
-	
-			// URL
-			String url = "/resource-lists/users/" +
-					HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + 
-					"/index/~~/resource-lists/list%5B@name=%22rcs%22%5D";
-			
-			// Create the request
-			HttpGetRequest request = new HttpGetRequest(url);
-			
-			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
-			if (response.isSuccessfullResponse()) {
+
+			// Read the list from the resource lists document
+			Hashtable<String, List<String>> resourceLists = getResourceLists();
+			if (resourceLists != null) {
 				if (logger.isActivated()){
 					logger.info("Granted contacts list has been read with success");
 				}
-
-				// Parse response
-				InputSource input = new InputSource(new ByteArrayInputStream(response.getContent()));
-				XcapResponseParser parser = new XcapResponseParser(input);
-				result = parser.getUris();
+				synchronized(this) {
+					List<String> list = resourceLists.get(GRANTED_LIST);
+					if (list != null) {
+						result.addAll(list);
+					}
+				}
 			} else {
 				if (logger.isActivated()){
-					logger.info("Can't get granted contacts list: " + response.getResponseCode() + " error");
+					logger.info("Can't get granted contacts list");
 				}
 			}
 		} catch(Exception e) {
@@ -913,7 +1066,7 @@ public class XdmManager {
 			HttpPutRequest request = new HttpPutRequest(url, content, "application/xcap-el+xml");
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, BLOCKED_LIST, contact, true);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been added with success to blocked list");
@@ -954,7 +1107,7 @@ public class XdmManager {
 			HttpDeleteRequest request = new HttpDeleteRequest(url);
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, BLOCKED_LIST, contact, false);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been removed with success from blocked list");
@@ -984,29 +1137,22 @@ public class XdmManager {
 			if (logger.isActivated()){
 				logger.info("Get blocked contacts list");
 			}
-	
-			// URL
-			String url = "/resource-lists/users/" +
-					HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + 
-					"/index/~~/resource-lists/list%5B@name=%22rcs_blockedcontacts%22%5D";
-			
-			// Create the request
-			HttpGetRequest request = new HttpGetRequest(url);
 
-			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
-			if (response.isSuccessfullResponse()) {
+			// Read the list from the resource lists document
+			Hashtable<String, List<String>> resourceLists = getResourceLists();
+			if (resourceLists != null) {
 				if (logger.isActivated()){
 					logger.info("Blocked contacts list has been read with success");
 				}
-				
-				// Parse response
-				InputSource input = new InputSource(new ByteArrayInputStream(response.getContent()));
-				XcapResponseParser parser = new XcapResponseParser(input);
-				result = parser.getUris();
+				synchronized(this) {
+					List<String> list = resourceLists.get(BLOCKED_LIST);
+					if (list != null) {
+						result.addAll(list);
+					}
+				}
 			} else {
 				if (logger.isActivated()){
-					logger.info("Can't get blocked contacts list: " + response.getResponseCode() + " error");
+					logger.info("Can't get blocked contacts list");
 				}
 			}
 		} catch(Exception e) {
@@ -1042,7 +1188,7 @@ public class XdmManager {
 			HttpPutRequest request = new HttpPutRequest(url, content, "application/xcap-el+xml");
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, REVOKED_LIST, contact, true);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been added with success to revoked list");
@@ -1083,7 +1229,7 @@ public class XdmManager {
 			HttpDeleteRequest request = new HttpDeleteRequest(url);
 
 			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
+			HttpResponse response = sendListChange(request, REVOKED_LIST, contact, false);
 			if (response.isSuccessfullResponse()) {
 				if (logger.isActivated()){
 					logger.info(contact + " has been removed with success from revoked list");
@@ -1113,30 +1259,22 @@ public class XdmManager {
 			if (logger.isActivated()){
 				logger.info("Get revoked contacts list");
 			}
-	
-			// URL
-			String url = "/resource-lists/users/" +
-					HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) + 
-					"/index/~~/resource-lists/list%5B@name=%22rcs_revokedcontacts%22%5D";
-			
-			// Create the request
-			HttpGetRequest request = new HttpGetRequest(url);
 
-			// Send the request
-			HttpResponse response = sendRequestToXDMS(request);
-			if (response.isSuccessfullResponse()) {
+			// Read the list from the resource lists document
+			Hashtable<String, List<String>> resourceLists = getResourceLists();
+			if (resourceLists != null) {
 				if (logger.isActivated()){
 					logger.info("Revoked contacts list has been read with success");
 				}
-
-				// Parse response
-				InputSource input = new InputSource(
-						new ByteArrayInputStream(response.getContent()));
-				XcapResponseParser parser = new XcapResponseParser(input);
-				result = parser.getUris(); 
+				synchronized(this) {
+					List<String> list = resourceLists.get(REVOKED_LIST);
+					if (list != null) {
+						result.addAll(list);
+					}
+				}
 			} else {
 				if (logger.isActivated()){
-					logger.info("Can't get revoked contacts list: " + response.getResponseCode() + " error");
+					logger.info("Can't get revoked contacts list");
 				}
 			}
 		} catch(Exception e) {
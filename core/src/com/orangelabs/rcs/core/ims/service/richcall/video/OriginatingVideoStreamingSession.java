@@ -25,6 +25,7 @@ import com.gsma.services.rcs.vsh.IVideoPlayerListener;
 import com.gsma.services.rcs.vsh.VideoCodec;
 import com.orangelabs.rcs.core.content.MmContent;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
+import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
 import com.orangelabs.rcs.core.ims.protocol.sdp.MediaDescription;
 import com.orangelabs.rcs.core.ims.protocol.sdp.SdpParser;
 import com.orangelabs.rcs.core.ims.protocol.sdp.SdpUtils;
@@ -76,7 +77,8 @@ public class OriginatingVideoStreamingSession extends VideoStreamingSession {
 
             // Build SDP part
 	    	String ipAddress = getDialogPath().getSipStack().getLocalIpAddress();
-            String videoSdp = VideoSdpBuilder.buildSdpOfferWithOrientation(getVideoPlayer().getSupportedCodecs(), getVideoPlayer().getLocalRtpPort());
+            String videoSdp = VideoSdpBuilder.buildSdpOfferWithOrientation(getVideoPlayer().getSupportedCodecs(),
+                    getVideoPlayer().getLocalRtpPort(), RtpUtils.RTP_DEFAULT_FEC_PAYLOAD_TYPE, true);
             String sdp = SdpUtils.buildVideoSDP(ipAddress, videoSdp, SdpUtils.DIRECTION_SENDONLY);
 
             // Set the local SDP part in the dialog path
@@ -141,12 +143,31 @@ public class OriginatingVideoStreamingSession extends VideoStreamingSession {
         }
         getContent().setEncoding("video/" + selectedVideoCodec.getEncoding());
 
+        // Limit the initial encoding rate to the bandwidth accepted by the remote, the
+        // rate is then adapted by the player from the RTCP reports and TMMBR requests
+        selectedVideoCodec = VideoCodecManager.limitBitRate(selectedVideoCodec,
+                VideoCodecManager.extractBitRate(mediaVideo));
+        if (logger.isActivated()) {
+            logger.debug("Initial video bit rate: " + selectedVideoCodec.getBitRate()
+                    + ", TMMBR negotiated: " + VideoSdpBuilder.isTmmbrSupported(mediaVideo));
+        }
+
         // Set the OrientationHeaderID
         SdpOrientationExtension extensionHeader = SdpOrientationExtension.create(mediaVideo);
         if (extensionHeader != null) {
         	// TODO getVideoPlayer().setOrientationHeaderId(extensionHeader.getExtensionId());
         }
 
+        // Protect the stream if the remote has accepted the FEC. The lost packets requested
+        // by NACK are always retransmitted, and a key frame is sent on PLI.
+        int fecPayloadType = VideoSdpBuilder.getFecPayloadType(medias);
+        if (logger.isActivated()) {
+            logger.debug("FEC payload type: " + fecPayloadType
+                    + ", NACK negotiated: " + VideoSdpBuilder.isNackSupported(mediaVideo)
+                    + ", PLI negotiated: " + VideoSdpBuilder.isPliSupported(mediaVideo));
+        }
+        selectedVideoCodec = VideoCodecManager.addMediaParameters(selectedVideoCodec, fecPayloadType, false, false);
+
         // Set video player event listener
         getVideoPlayer().addEventListener(new MyPlayerEventListener(this));
 
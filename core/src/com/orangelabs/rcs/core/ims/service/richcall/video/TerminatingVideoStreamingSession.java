@@ -156,15 +156,26 @@ public class TerminatingVideoStreamingSession extends VideoStreamingSession {
             	// TODO getVideoRenderer().setOrientationHeaderId(extensionHeader.getExtensionId());
             }
 
+            // Accept the FEC stream and the loss feedback if offered
+            int fecPayloadType = VideoSdpBuilder.getFecPayloadType(medias);
+            boolean nack = VideoSdpBuilder.isNackSupported(mediaVideo);
+            boolean pli = VideoSdpBuilder.isPliSupported(mediaVideo);
+            if (logger.isActivated()) {
+                logger.debug("FEC payload type: " + fecPayloadType + ", NACK negotiated: " + nack
+                        + ", PLI negotiated: " + pli);
+            }
+
             // Set video renderer event listener
             getVideoRenderer().addEventListener(new MyRendererEventListener(this));
 
             // Open the video renderer
-            getVideoRenderer().open(selectedVideoCodec, remoteHost, remotePort);
+            getVideoRenderer().open(VideoCodecManager.addMediaParameters(selectedVideoCodec, fecPayloadType,
+                    nack, pli), remoteHost, remotePort);
 
             // Build SDP part
 	    	String ipAddress = getDialogPath().getSipStack().getLocalIpAddress();
-            String videoSdp = VideoSdpBuilder.buildSdpAnswer(selectedVideoCodec, getVideoRenderer().getLocalRtpPort(), mediaVideo); 
+            String videoSdp = VideoSdpBuilder.buildSdpAnswer(selectedVideoCodec, getVideoRenderer().getLocalRtpPort(),
+                    mediaVideo, fecPayloadType, true); 
             String sdp = SdpUtils.buildVideoSDP(ipAddress, videoSdp, SdpUtils.DIRECTION_RECVONLY);
 
             // Set the local SDP part in the dialog path
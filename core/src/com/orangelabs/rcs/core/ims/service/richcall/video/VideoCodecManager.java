@@ -21,6 +21,7 @@ package com.orangelabs.rcs.core.ims.service.richcall.video;
 import java.util.Vector;
 
 import com.gsma.services.rcs.vsh.VideoCodec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.H264Config;
 import com.orangelabs.rcs.core.ims.protocol.sdp.MediaAttribute;
 import com.orangelabs.rcs.core.ims.protocol.sdp.MediaDescription;
@@ -153,6 +154,69 @@ public class VideoCodecManager {
 		}
     }
 
+    /**
+     * Extract the bit rate accepted by the remote from the application
+     * specific bandwidth of a media (b=AS, in kbps)
+     *
+     * @param media Media SDP description
+     * @return Bit rate in bit per second or 0 if not present
+     */
+    public static int extractBitRate(MediaDescription media) {
+        if ((media == null) || (media.bandwidthInfo == null)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(media.bandwidthInfo.trim()) * 1000;
+        } catch(NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Limit the bit rate of a video codec
+     *
+     * @param codec Video codec
+     * @param maxBitRate Maximum bit rate in bit per second
+     * @return Video codec
+     */
+    public static VideoCodec limitBitRate(VideoCodec codec, int maxBitRate) {
+        if ((maxBitRate <= 0) || ((codec.getBitRate() != 0) && (codec.getBitRate() <= maxBitRate))) {
+            return codec;
+        }
+        return new VideoCodec(codec.getEncoding(), codec.getPayloadType(), codec.getClockRate(),
+                codec.getFrameRate(), maxBitRate, codec.getVideoWidth(), codec.getVideoHeight(),
+                codec.getParameters());
+    }
+
+    /**
+     * Add the negotiated FEC payload type and loss feedback to the parameters
+     * of a video codec given to the media. The returned codec must not be used
+     * to build SDP.
+     *
+     * @param codec Video codec
+     * @param fecPayloadType FEC payload type or -1 if FEC is not used
+     * @param nack Generic NACK negotiated
+     * @param pli Picture loss indication negotiated
+     * @return Video codec
+     */
+    public static VideoCodec addMediaParameters(VideoCodec codec, int fecPayloadType, boolean nack, boolean pli) {
+        String params = codec.getParameters();
+        if (params == null) {
+            // No fmtp in the SDP
+            params = "";
+        }
+        if (fecPayloadType != -1) {
+            params = RtpUtils.addFecPayloadType(params, fecPayloadType);
+        }
+        params = RtpUtils.addRtcpFeedback(params, nack, pli);
+        if (params.equals(codec.getParameters())) {
+            return codec;
+        }
+        return new VideoCodec(codec.getEncoding(), codec.getPayloadType(), codec.getClockRate(),
+                codec.getFrameRate(), codec.getBitRate(), codec.getVideoWidth(), codec.getVideoHeight(),
+                params);
+    }
+
     /**
      * Extract list of video codecs from SDP part
      *
@@ -26,6 +26,7 @@ import com.gsma.services.rcs.vsh.VideoCodec;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
 import com.orangelabs.rcs.core.ims.protocol.sdp.MediaDescription;
+import com.orangelabs.rcs.core.ims.protocol.sdp.SdpUtils;
 
 /**
  * Builds the Video SDP
@@ -39,6 +40,31 @@ public class VideoSdpBuilder {
      */
     public static final String ATTRIBUTE_EXTENSION = "extmap";
 
+    /**
+     * RTCP feedback for temporary maximum media stream bit rate, RFC5104
+     */
+    public static final String RTCP_FB_TMMBR = "ccm tmmbr";
+
+    /**
+     * RTCP feedback for generic NACK, RFC4585
+     */
+    public static final String RTCP_FB_NACK = "nack";
+
+    /**
+     * RTCP feedback for picture loss indication, RFC4585
+     */
+    public static final String RTCP_FB_PLI = "nack pli";
+
+    /**
+     * Encoding name of the FEC stream, RFC5109
+     */
+    public static final String FEC_ENCODING = "ulpfec";
+
+    /**
+     * Clock rate of the FEC stream, same as the protected video stream
+     */
+    public static final int FEC_CLOCK_RATE = 90000;
+
     /**
      * Build SDP offer without the orientation extension ordered by the
      * preferred codec
@@ -48,6 +74,21 @@ public class VideoSdpBuilder {
      * @return SDP offer
      */
     public static String buildSdpOfferWithoutOrientation(VideoCodec[] supportedCodecs, int localRtpPort) {
+        return buildSdpOfferWithoutOrientation(supportedCodecs, localRtpPort, -1, false);
+    }
+
+    /**
+     * Build SDP offer without the orientation extension ordered by the
+     * preferred codec and followed by the FEC stream
+     * 
+     * @param supportedCodecs Codecs to create SDP
+     * @param localRtpPort Local RTP port
+     * @param fecPayloadType FEC payload type or -1 to not offer FEC
+     * @param lossFeedback Offer the generic NACK and PLI feedback
+     * @return SDP offer
+     */
+    private static String buildSdpOfferWithoutOrientation(VideoCodec[] supportedCodecs, int localRtpPort,
+            int fecPayloadType, boolean lossFeedback) {
         StringBuilder result = new StringBuilder();
 
         // Create video codec list
@@ -60,6 +101,9 @@ public class VideoSdpBuilder {
         for (VideoCodec codec : codecs) {
             result.append(" ").append(codec.getPayloadType());
         }
+        if (fecPayloadType != -1) {
+            result.append(" ").append(fecPayloadType);
+        }
         result.append(SipUtils.CRLF);
         int framerate = 0;
         for (VideoCodec codec : codecs) {
@@ -76,6 +120,14 @@ public class VideoSdpBuilder {
                 result.append("a=framesize:" + codec.getPayloadType() + " " + codec.getVideoWidth() + "-" + codec.getVideoHeight() + SipUtils.CRLF);
             }
             result.append("a=fmtp:" + codec.getPayloadType() + " " + codec.getParameters() + SipUtils.CRLF);
+            result.append(buildRtcpFeedback(codec, RTCP_FB_TMMBR));
+            if (lossFeedback) {
+                result.append(buildRtcpFeedback(codec, RTCP_FB_NACK));
+                result.append(buildRtcpFeedback(codec, RTCP_FB_PLI));
+            }
+        }
+        if (fecPayloadType != -1) {
+            result.append(buildFecRtpmap(fecPayloadType));
         }
 
         return result.toString();
@@ -90,7 +142,23 @@ public class VideoSdpBuilder {
      * @return SDP offer
      */
     public static String buildSdpOfferWithOrientation(VideoCodec[] supportedCodecs, int localRtpPort) {
-        StringBuilder sdp = new StringBuilder(buildSdpOfferWithoutOrientation(supportedCodecs, localRtpPort))
+        return buildSdpOfferWithOrientation(supportedCodecs, localRtpPort, -1, false);
+    }
+
+    /**
+     * Build SDP offer with the orientation extension ordered by the preferred
+     * codec and followed by the FEC stream
+     * 
+     * @param supportedCodecs Codecs to create SDP
+     * @param localRtpPort Local RTP port
+     * @param fecPayloadType FEC payload type or -1 to not offer FEC
+     * @param lossFeedback Offer the generic NACK and PLI feedback
+     * @return SDP offer
+     */
+    public static String buildSdpOfferWithOrientation(VideoCodec[] supportedCodecs, int localRtpPort,
+            int fecPayloadType, boolean lossFeedback) {
+        StringBuilder sdp = new StringBuilder(buildSdpOfferWithoutOrientation(supportedCodecs, localRtpPort,
+                fecPayloadType, lossFeedback))
                 .append("a=").append(ATTRIBUTE_EXTENSION).append(':').append(RtpUtils.RTP_DEFAULT_EXTENSION_ID)
                 .append(" " + SdpOrientationExtension.VIDEO_ORIENTATION_URI).append(SipUtils.CRLF);
         return sdp.toString();
@@ -104,9 +172,25 @@ public class VideoSdpBuilder {
      * @return SDP
      */
     private static String buildSdpWithoutOrientation(VideoCodec videoCodec, int localRtpPort) {
+        return buildSdpWithoutOrientation(videoCodec, localRtpPort, -1);
+    }
+
+    /**
+     * Create the SDP part for a given codec followed by the FEC stream
+     *
+     * @param codec Media codec
+     * @param localRtpPort Local RTP port
+     * @param fecPayloadType FEC payload type or -1 if FEC is not used
+     * @return SDP
+     */
+    private static String buildSdpWithoutOrientation(VideoCodec videoCodec, int localRtpPort, int fecPayloadType) {
         StringBuilder sdp = new StringBuilder()
                 .append("m=video ").append(localRtpPort).append(" RTP/AVP ")
-                .append(videoCodec.getPayloadType()).append(SipUtils.CRLF)
+                .append(videoCodec.getPayloadType());
+        if (fecPayloadType != -1) {
+            sdp.append(" ").append(fecPayloadType);
+        }
+        sdp.append(SipUtils.CRLF)
                 .append("a=rtpmap:").append(videoCodec.getPayloadType()).append(" ")
                 .append(videoCodec.getEncoding()).append("/")
                 .append(videoCodec.getClockRate()).append(SipUtils.CRLF);
@@ -120,6 +204,9 @@ public class VideoSdpBuilder {
         }
         sdp.append("a=fmtp:").append(videoCodec.getPayloadType()).append(" ")
                 .append(videoCodec.getParameters()).append(SipUtils.CRLF);
+        if (fecPayloadType != -1) {
+            sdp.append(buildFecRtpmap(fecPayloadType));
+        }
         return sdp.toString();
     }
 
@@ -129,10 +216,12 @@ public class VideoSdpBuilder {
      * @param codec Media Codec
      * @param localRtpPort Local RTP Port
      * @param extensionId
+     * @param fecPayloadType FEC payload type or -1 if FEC is not used
      * @return SDP
      */
-    private static String buildSdpWithOrientationExtension(VideoCodec codec, int localRtpPort, int extensionId) {
-        StringBuilder sdp = new StringBuilder(buildSdpWithoutOrientation(codec, localRtpPort))
+    private static String buildSdpWithOrientationExtension(VideoCodec codec, int localRtpPort, int extensionId,
+            int fecPayloadType) {
+        StringBuilder sdp = new StringBuilder(buildSdpWithoutOrientation(codec, localRtpPort, fecPayloadType))
                 .append("a=").append(ATTRIBUTE_EXTENSION).append(':').append(extensionId)
                 .append(" " + SdpOrientationExtension.VIDEO_ORIENTATION_URI).append(SipUtils.CRLF);
         return sdp.toString();
@@ -150,14 +239,114 @@ public class VideoSdpBuilder {
      * @return SDP answer
      */
     public static String buildSdpAnswer(VideoCodec codec, int localRtpPort, MediaDescription inviteVideoMedia) {
+        return buildSdpAnswer(codec, localRtpPort, inviteVideoMedia, -1, false);
+    }
+
+    /**
+     * Builds the {@link MediaCodec} SDP for a SIP INVITE response with the FEC
+     * stream and the loss feedback accepted from the offer.
+     * 
+     * @param codec Media Codec
+     * @param localRtpPort Local RTP Port
+     * @param videoMedia Invite video media
+     * @param fecPayloadType FEC payload type of the offer or -1 if FEC is not used
+     * @param lossFeedback Accept the generic NACK and PLI feedback of the offer
+     * @return SDP answer
+     */
+    public static String buildSdpAnswer(VideoCodec codec, int localRtpPort, MediaDescription inviteVideoMedia,
+            int fecPayloadType, boolean lossFeedback) {
         if (inviteVideoMedia != null) {
+            StringBuilder sdp;
             SdpOrientationExtension extension = SdpOrientationExtension.create(inviteVideoMedia);
             if (extension != null) {
-                return buildSdpWithOrientationExtension(codec, localRtpPort,
-                        extension.getExtensionId());
+                sdp = new StringBuilder(buildSdpWithOrientationExtension(codec, localRtpPort,
+                        extension.getExtensionId(), fecPayloadType));
+            } else {
+                sdp = new StringBuilder(buildSdpWithoutOrientation(codec, localRtpPort, fecPayloadType));
+            }
+            if (isTmmbrSupported(inviteVideoMedia)) {
+                sdp.append(buildRtcpFeedback(codec, RTCP_FB_TMMBR));
+            }
+            if (lossFeedback && isNackSupported(inviteVideoMedia)) {
+                sdp.append(buildRtcpFeedback(codec, RTCP_FB_NACK));
+            }
+            if (lossFeedback && isPliSupported(inviteVideoMedia)) {
+                sdp.append(buildRtcpFeedback(codec, RTCP_FB_PLI));
+            }
+            return sdp.toString();
+        }
+
+        return buildSdpWithoutOrientation(codec, localRtpPort, fecPayloadType);
+    }
+
+    /**
+     * Create the rtpmap attribute of the FEC stream
+     *
+     * @param fecPayloadType FEC payload type
+     * @return SDP
+     */
+    private static String buildFecRtpmap(int fecPayloadType) {
+        return new StringBuilder("a=rtpmap:").append(fecPayloadType).append(' ')
+                .append(FEC_ENCODING).append('/').append(FEC_CLOCK_RATE)
+                .append(SipUtils.CRLF).toString();
+    }
+
+    /**
+     * Get the payload type of the FEC stream declared for a video media
+     *
+     * @param medias Video media descriptions, one per payload
+     * @return FEC payload type or -1 if FEC is not declared
+     */
+    public static int getFecPayloadType(Vector<MediaDescription> medias) {
+        for (int i = 0; i < medias.size(); i++) {
+            VideoCodec codec = VideoCodecManager.createVideoCodecFromSdp(medias.get(i));
+            if ((codec != null) && FEC_ENCODING.equalsIgnoreCase(codec.getEncoding())) {
+                return codec.getPayloadType();
             }
         }
+        return -1;
+    }
+
+    /**
+     * Create the RTCP feedback attribute for a given codec
+     *
+     * @param codec Media codec
+     * @param feedback Feedback type and parameter
+     * @return SDP
+     */
+    private static String buildRtcpFeedback(VideoCodec codec, String feedback) {
+        return new StringBuilder("a=").append(SdpUtils.ATTRIBUTE_RTCP_FB).append(':')
+                .append(codec.getPayloadType()).append(' ').append(feedback)
+                .append(SipUtils.CRLF).toString();
+    }
 
-        return buildSdpWithoutOrientation(codec, localRtpPort);
+    /**
+     * Check if the TMMBR feedback has been negotiated for a media
+     *
+     * @param videoMedia Video media
+     * @return true if TMMBR is supported
+     */
+    public static boolean isTmmbrSupported(MediaDescription videoMedia) {
+        return SdpUtils.isRtcpFeedbackSupported(videoMedia, RTCP_FB_TMMBR);
+    }
+
+    /**
+     * Check if the generic NACK feedback has been negotiated for a media
+     *
+     * @param videoMedia Video media
+     * @return true if NACK is supported
+     */
+    public static boolean isNackSupported(MediaDescription videoMedia) {
+        return SdpUtils.isRtcpFeedbackSupported(videoMedia, RTCP_FB_NACK);
+    }
+
+    /**
+     * Check if the picture loss indication feedback has been negotiated for a media
+     *
+     * @param videoMedia Video media
+     * @return true if PLI is supported
+     */
+    public static boolean isPliSupported(MediaDescription videoMedia) {
+        return SdpUtils.isRtcpFeedbackSupported(videoMedia, RTCP_FB_PLI);
     }
 }
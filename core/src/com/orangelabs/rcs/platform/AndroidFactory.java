@@ -21,6 +21,7 @@ package com.orangelabs.rcs.platform;
 import android.content.Context;
 
 import com.orangelabs.rcs.platform.file.FileFactory;
+import com.orangelabs.rcs.platform.image.ImageFactory;
 import com.orangelabs.rcs.platform.network.NetworkFactory;
 import com.orangelabs.rcs.platform.registry.RegistryFactory;
 
@@ -55,6 +56,7 @@ public class AndroidFactory {
 			NetworkFactory.loadFactory("com.orangelabs.rcs.platform.network.AndroidNetworkFactory");
 			RegistryFactory.loadFactory("com.orangelabs.rcs.platform.registry.AndroidRegistryFactory");
 			FileFactory.loadFactory("com.orangelabs.rcs.platform.file.AndroidFileFactory");
+			ImageFactory.loadFactory("com.orangelabs.rcs.platform.image.AndroidImageFactory");
 		} catch(FactoryException e) {
 			e.printStackTrace();
 		}
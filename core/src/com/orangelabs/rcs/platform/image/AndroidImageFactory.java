@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.platform.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Android image factory decoding the images with a subsampling, so that
+ * only the pixels needed by the thumbnail are held in memory
+ * 
+ * @author Orange
+ */
+public class AndroidImageFactory extends ImageFactory {
+	/**
+	 * Returns the dimensions of an image without decoding its pixels
+	 * 
+	 * @param filename Filename of the image
+	 * @return Width and height, or null if the file is not a supported image
+	 * @throws IOException
+	 */
+	public int[] getImageSize(String filename) throws IOException {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(filename, options);
+		if ((options.outWidth <= 0) || (options.outHeight <= 0)) {
+			return null;
+		}
+		return new int[] { options.outWidth, options.outHeight };
+	}
+
+	/**
+	 * Decode an image subsampled by a factor, scale it to the given
+	 * dimensions and encode it in JPEG
+	 * 
+	 * @param filename Filename of the image
+	 * @param sampleSize Subsampling factor applied while decoding
+	 * @param width Width of the thumbnail
+	 * @param height Height of the thumbnail
+	 * @param quality JPEG quality from 0 to 100
+	 * @return JPEG data or null if the image can't be decoded
+	 * @throws IOException
+	 */
+	public byte[] createThumbnail(String filename, int sampleSize, int width, int height, int quality)
+			throws IOException {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		Bitmap bitmap = BitmapFactory.decodeFile(filename, options);
+		if (bitmap == null) {
+			return null;
+		}
+		Bitmap thumbnail = bitmap;
+		try {
+			if ((bitmap.getWidth() != width) || (bitmap.getHeight() != height)) {
+				thumbnail = Bitmap.createScaledBitmap(bitmap, width, height, true);
+				bitmap.recycle();
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			thumbnail.compress(Bitmap.CompressFormat.JPEG, quality, out);
+			return out.toByteArray();
+		} finally {
+			thumbnail.recycle();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.platform.image;
+
+import java.io.IOException;
+
+import com.orangelabs.rcs.platform.FactoryException;
+
+/**
+ * Image factory
+ * 
+ * @author Orange
+ */
+public abstract class ImageFactory {
+	/**
+	 * Current platform factory
+	 */
+	private static ImageFactory factory = null;
+	
+	/**
+	 * Load the factory
+	 * 
+	 * @param classname Factory classname
+	 * @throws Exception
+	 */
+	public static void loadFactory(String classname) throws FactoryException {
+		if (factory != null) {
+			return;
+		}
+		
+		try {
+			factory = (ImageFactory)Class.forName(classname).newInstance();
+		} catch(Exception e) {
+			throw new FactoryException("Can't load the factory " + classname);
+		}
+	}
+	
+	/**
+	 * Returns the current factory
+	 * 
+	 * @return Factory
+	 */
+	public static ImageFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Returns the dimensions of an image without decoding its pixels
+	 * 
+	 * @param filename Filename of the image
+	 * @return Width and height, or null if the file is not a supported image
+	 * @throws IOException
+	 */
+	public abstract int[] getImageSize(String filename) throws IOException;
+
+	/**
+	 * Decode an image subsampled by a factor, scale it to the given
+	 * dimensions and encode it in JPEG
+	 * 
+	 * @param filename Filename of the image
+	 * @param sampleSize Subsampling factor applied while decoding
+	 * @param width Width of the thumbnail
+	 * @param height Height of the thumbnail
+	 * @param quality JPEG quality from 0 to 100
+	 * @return JPEG data or null if the image can't be decoded
+	 * @throws IOException
+	 */
+	public abstract byte[] createThumbnail(String filename, int sampleSize, int width, int height, int quality)
+			throws IOException;
+
+	/**
+	 * Returns the largest power of 2 by which an image may be subsampled
+	 * while decoding and still cover the given dimensions
+	 * 
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @param targetWidth Width to cover
+	 * @param targetHeight Height to cover
+	 * @return Subsampling factor
+	 */
+	public static int getSampleSize(int width, int height, int targetWidth, int targetHeight) {
+		int sampleSize = 1;
+		while ((width / (sampleSize * 2) >= targetWidth) && (height / (sampleSize * 2) >= targetHeight)) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+}
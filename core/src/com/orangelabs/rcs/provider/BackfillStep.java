@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+/**
+ * Migration step visiting the existing rows of a table by chunks, in the
+ * order of their row ID, to fill a new column or a new table. Only one chunk
+ * of rows is held in memory at a time.
+ *
+ * @author Orange
+ */
+public abstract class BackfillStep extends MigrationStep {
+	/**
+	 * Default number of rows read at a time
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	private String table;
+
+	private String[] projection;
+
+	private String selection;
+
+	private int chunkSize;
+
+	/**
+	 * Constructor
+	 *
+	 * @param version Version of the schema produced by the step
+	 * @param table Table to visit
+	 * @param projection Columns to read, the row ID is added
+	 * @param selection Rows to visit or null for all the rows
+	 */
+	public BackfillStep(int version, String table, String[] projection, String selection) {
+		this(version, table, projection, selection, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param version Version of the schema produced by the step
+	 * @param table Table to visit
+	 * @param projection Columns to read, the row ID is added
+	 * @param selection Rows to visit or null for all the rows
+	 * @param chunkSize Number of rows read at a time
+	 */
+	public BackfillStep(int version, String table, String[] projection, String selection, int chunkSize) {
+		super(version);
+
+		this.table = table;
+		this.projection = new String[projection.length + 1];
+		this.projection[0] = BaseColumns._ID;
+		System.arraycopy(projection, 0, this.projection, 1, projection.length);
+		this.selection = selection;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void execute(SQLiteDatabase db) {
+		String where = BaseColumns._ID + " > ?";
+		if (selection != null) {
+			where += " AND (" + selection + ")";
+		}
+		long lastId = Long.MIN_VALUE;
+		long rows = 0;
+		int count;
+		do {
+			count = 0;
+			Cursor cursor = db.query(table, projection, where, new String[] { Long.toString(lastId) },
+					null, null, BaseColumns._ID + " ASC", Integer.toString(chunkSize));
+			try {
+				while (cursor.moveToNext()) {
+					lastId = cursor.getLong(0);
+					backfill(db, lastId, cursor);
+					count++;
+				}
+			} finally {
+				cursor.close();
+			}
+			if (count > 0) {
+				rows += count;
+				notifyProgress(rows);
+			}
+		} while (count == chunkSize);
+	}
+
+	/**
+	 * Process a row
+	 *
+	 * @param db Database
+	 * @param id Row ID
+	 * @param cursor Cursor on the row, the columns are in the order of the projection after the row ID
+	 */
+	protected abstract void backfill(SQLiteDatabase db, long id, Cursor cursor);
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider;
+
+import java.util.Vector;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Versioned schema migration of a provider database. The schema is created
+ * at the first supported version then upgraded by ordered steps, so that
+ * a new and an upgraded database get the same schema. An upgrade from a
+ * supported version keeps the existing rows.
+ *
+ * @author Orange
+ */
+public class DatabaseMigration {
+	/**
+	 * Migration listener
+	 */
+	private static MigrationListener listener = null;
+
+	/**
+	 * Database name
+	 */
+	private String database;
+
+	/**
+	 * Creation of the schema at the first supported version
+	 */
+	private MigrationStep schema;
+
+	/**
+	 * Steps, ordered by version
+	 */
+	private Vector<MigrationStep> steps = new Vector<MigrationStep>();
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param database Database name
+	 * @param schema Creation of the schema at the first supported version
+	 */
+	public DatabaseMigration(String database, MigrationStep schema) {
+		this.database = database;
+		this.schema = schema;
+	}
+
+	/**
+	 * Set the listener notified of the progress of the migrations
+	 *
+	 * @param listener Listener or null
+	 */
+	public static void setMigrationListener(MigrationListener listener) {
+		DatabaseMigration.listener = listener;
+	}
+
+	/**
+	 * Returns the database name
+	 *
+	 * @return Name
+	 */
+	public String getDatabase() {
+		return database;
+	}
+
+	/**
+	 * Returns the first version which can be upgraded without losing the rows
+	 *
+	 * @return Version
+	 */
+	public int getFirstVersion() {
+		return schema.getVersion();
+	}
+
+	/**
+	 * Returns the version of the schema after all the steps
+	 *
+	 * @return Version
+	 */
+	public int getVersion() {
+		if (steps.isEmpty()) {
+			return schema.getVersion();
+		}
+		return steps.lastElement().getVersion();
+	}
+
+	/**
+	 * Add a step. Several steps may produce the same version, they are
+	 * applied in the order they are added.
+	 *
+	 * @param step Step
+	 * @return This migration
+	 * @throws IllegalArgumentException If the step version is lower than the previous one
+	 */
+	public DatabaseMigration addStep(MigrationStep step) {
+		if (step.getVersion() <= schema.getVersion() || step.getVersion() < getVersion()) {
+			throw new IllegalArgumentException("Step version " + step.getVersion() + " is out of order");
+		}
+		step.setMigration(this);
+		steps.addElement(step);
+		return this;
+	}
+
+	/**
+	 * Add a step adding a column to a table
+	 *
+	 * @param version Version of the schema produced by the step
+	 * @param table Table
+	 * @param column Column name
+	 * @param definition Column type and constraints, e.g. "integer DEFAULT 0"
+	 * @return This migration
+	 */
+	public DatabaseMigration addColumn(int version, final String table, final String column, final String definition) {
+		return addStep(new MigrationStep(version) {
+			public void execute(SQLiteDatabase db) {
+				db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+			}
+		});
+	}
+
+	/**
+	 * Add a step creating an index named after the table and its first column
+	 *
+	 * @param version Version of the schema produced by the step
+	 * @param table Table
+	 * @param columns Indexed columns
+	 * @return This migration
+	 */
+	public DatabaseMigration addIndex(int version, final String table, final String... columns) {
+		return addStep(new MigrationStep(version) {
+			public void execute(SQLiteDatabase db) {
+				StringBuilder sql = new StringBuilder("CREATE INDEX IF NOT EXISTS ");
+				sql.append(table).append('_').append(columns[0]).append("_idx ON ").append(table).append('(');
+				for (int i = 0; i < columns.length; i++) {
+					if (i > 0) {
+						sql.append(',');
+					}
+					sql.append(columns[i]);
+				}
+				sql.append(')');
+				db.execSQL(sql.toString());
+			}
+		});
+	}
+
+	/**
+	 * Create the schema at the last version
+	 *
+	 * @param db Database
+	 */
+	public void create(SQLiteDatabase db) {
+		create(db, getVersion());
+	}
+
+	/**
+	 * Create the schema at a given version
+	 *
+	 * @param db Database
+	 * @param version Version between the first version and the last one
+	 */
+	public void create(SQLiteDatabase db, int version) {
+		db.beginTransaction();
+		try {
+			schema.execute(db);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		upgrade(db, schema.getVersion(), version);
+	}
+
+	/**
+	 * Upgrade the schema by applying the steps between two versions. Each
+	 * step runs in its own transaction, nested in the transaction of the
+	 * database helper when called from onUpgrade: a failure rolls back the
+	 * whole upgrade and it is retried at the next opening.
+	 *
+	 * @param db Database
+	 * @param oldVersion Current version of the database
+	 * @param newVersion Target version
+	 * @return Returns false if the current version is older than the first
+	 *         supported one and the tables have to be recreated
+	 */
+	public boolean upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		if (oldVersion < schema.getVersion()) {
+			if (logger.isActivated()) {
+				logger.warn("Database " + database + " version " + oldVersion + " can't be upgraded");
+			}
+			return false;
+		}
+
+		Vector<MigrationStep> pending = new Vector<MigrationStep>();
+		for (MigrationStep step : steps) {
+			if (step.getVersion() > oldVersion && step.getVersion() <= newVersion) {
+				pending.addElement(step);
+			}
+		}
+		if (pending.isEmpty()) {
+			return true;
+		}
+
+		if (logger.isActivated()) {
+			logger.info("Upgrade database " + database + " from version " + oldVersion + " to " + newVersion);
+		}
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < pending.size(); i++) {
+			MigrationStep step = pending.elementAt(i);
+			if (logger.isActivated()) {
+				logger.debug("Apply step " + (i + 1) + "/" + pending.size() + " of database " + database
+						+ " version " + step.getVersion());
+			}
+			MigrationListener l = listener;
+			if (l != null) {
+				l.handleStepStarted(database, step.getVersion(), i + 1, pending.size());
+			}
+			db.beginTransaction();
+			try {
+				step.execute(db);
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+		}
+		if (logger.isActivated()) {
+			logger.info("Database " + database + " upgraded in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		MigrationListener l = listener;
+		if (l != null) {
+			l.handleMigrationTerminated(database, oldVersion, newVersion);
+		}
+		return true;
+	}
+
+	/**
+	 * Rows have been processed by a step
+	 *
+	 * @param version Version of the schema produced by the step
+	 * @param rows Number of rows processed since the start of the step
+	 */
+	void notifyRowsProcessed(int version, long rows) {
+		if (logger.isActivated()) {
+			logger.debug("Database " + database + " version " + version + ": " + rows + " rows processed");
+		}
+		MigrationListener l = listener;
+		if (l != null) {
+			l.handleRowsProcessed(database, version, rows);
+		}
+	}
+}
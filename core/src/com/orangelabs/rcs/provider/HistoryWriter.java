@@ -0,0 +1,987 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Single writer of the session history. The inserts and updates of the
+ * histories are queued by the protocol threads and committed by a background
+ * thread, by batches applied in one transaction per provider.
+ * <p>
+ * Each queued write is first appended to a journal file, which is compacted
+ * to the writes still in queue after each commit and replayed when the
+ * writer is created again, so that the writes queued before the process is
+ * killed are committed at the next start. A replayed insert of a row which
+ * is already in its provider, because the process was killed between the
+ * commit and the compaction, becomes an update of the row. Only the
+ * inserts of rows without key may then be committed twice.
+ * <p>
+ * An update of a row still in queue is merged with the pending write of the
+ * row, so that only the last progress of a transfer is written, unless a
+ * write queued in between may change the same row: the writes of a row are
+ * always committed in the order they were queued. A batch which fails is
+ * rolled back by its provider and kept in queue to be retried. A batch
+ * refused by its provider is committed again one write at a time, and the
+ * writes still refused are logged and moved to a rejected file instead of
+ * being retried.
+ *
+ * @author Orange
+ */
+public class HistoryWriter extends Thread {
+	/**
+	 * Maximum number of writes in a batch
+	 */
+	public static final int MAX_BATCH_SIZE = 50;
+
+	/**
+	 * Maximum time a write stays in the queue, in milliseconds
+	 */
+	public static final long FLUSH_DELAY = 100;
+
+	/**
+	 * Delay before a failed batch is committed again, in milliseconds
+	 */
+	public static final long RETRY_DELAY = 1000;
+
+	/**
+	 * Name of the journal file
+	 */
+	public static final String JOURNAL_FILE = "history.journal";
+
+	/**
+	 * Suffix of the file receiving the writes refused by their provider
+	 */
+	public static final String REJECTED_SUFFIX = ".rejected";
+
+	/**
+	 * Current instance
+	 */
+	private static HistoryWriter instance = null;
+
+	/**
+	 * Content resolver
+	 */
+	private ContentResolver cr;
+
+	/**
+	 * Journal file or null if the writes are not journaled
+	 */
+	private File journal;
+
+	/**
+	 * Output stream appending the writes to the journal
+	 */
+	private FileOutputStream journalOut = null;
+
+	/**
+	 * Pending writes in queue order
+	 */
+	private ArrayList<PendingWrite> pending = new ArrayList<PendingWrite>();
+
+	/**
+	 * Last pending write of each row
+	 */
+	private HashMap<String, PendingWrite> pendingByKey = new HashMap<String, PendingWrite>();
+
+	/**
+	 * Time of the oldest pending write
+	 */
+	private long firstPendingTime = 0;
+
+	/**
+	 * Time of the last failed commit
+	 */
+	private long lastFailureTime = 0;
+
+	/**
+	 * Lock held while a batch is committed
+	 */
+	private final Object commitLock = new Object();
+
+	/**
+	 * Termination flag
+	 */
+	private boolean terminated = false;
+
+	/**
+	 * Metrics
+	 */
+	private int maxQueueDepth = 0;
+	private long queuedWrites = 0;
+	private long mergedWrites = 0;
+	private long replayedWrites = 0;
+	private long committedBatches = 0;
+	private long failedBatches = 0;
+	private long rejectedWrites = 0;
+	private int lastBatchSize = 0;
+	private long totalCommitTime = 0;
+	private long maxCommitTime = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Pending write
+	 */
+	private static class PendingWrite {
+		private boolean insert;
+
+		private Uri uri;
+
+		private String keyColumn;
+
+		private String key;
+
+		private ContentValues values;
+
+		private Uri linkedUri;
+
+		private String linkedColumn;
+
+		private ContentValues linkedValues;
+
+		private boolean replayed = false;
+
+		private PendingWrite(boolean insert, Uri uri, String keyColumn, String key, ContentValues values) {
+			this.insert = insert;
+			this.uri = uri;
+			this.keyColumn = keyColumn;
+			this.key = key;
+			this.values = values;
+		}
+
+		/**
+		 * Returns the key of the row in the queue or null if the row has no key
+		 */
+		private String getQueueKey() {
+			return (key != null) ? uri + "#" + keyColumn + "=" + key : null;
+		}
+
+		/**
+		 * Returns true if this write may change the row of an update
+		 *
+		 * @param update Update
+		 */
+		private boolean mayChange(PendingWrite update) {
+			if (!uri.equals(update.uri)) {
+				return false;
+			}
+			if (insert) {
+				return update.key.equals(values.getAsString(update.keyColumn));
+			}
+			return !update.keyColumn.equals(keyColumn) || values.containsKey(update.keyColumn);
+		}
+	}
+
+	/**
+	 * Create instance
+	 *
+	 * @param ctx Application context
+	 */
+	public static synchronized void createInstance(Context ctx) {
+		if (instance == null) {
+			instance = new HistoryWriter(ctx.getContentResolver(), new File(ctx.getFilesDir(), JOURNAL_FILE));
+			instance.start();
+		}
+	}
+
+	/**
+	 * Returns instance
+	 *
+	 * @return Instance
+	 */
+	public static HistoryWriter getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Constructor. The writes of the journal left by a previous writer are
+	 * queued again.
+	 *
+	 * @param cr Content resolver
+	 * @param journal Journal file or null if the writes are not journaled
+	 */
+	public HistoryWriter(ContentResolver cr, File journal) {
+		super("HistoryWriter");
+		this.cr = cr;
+		this.journal = journal;
+		setDaemon(true);
+
+		if (journal != null) {
+			replayJournal();
+			try {
+				journalOut = new FileOutputStream(journal, true);
+			} catch(IOException e) {
+				if (logger.isActivated()) {
+					logger.error("Can't open the history journal, writes not journaled", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue a row insert
+	 *
+	 * @param uri Provider URI
+	 * @param keyColumn Column identifying the row for the next updates or null
+	 * @param key Value of the column or null if the row is not updated
+	 * @param values Values
+	 */
+	public void insert(Uri uri, String keyColumn, String key, ContentValues values) {
+		enqueue(new PendingWrite(true, uri, keyColumn, key, values), true);
+	}
+
+	/**
+	 * Queue a row insert followed by the insert of a linked row referring
+	 * to its row ID, in the same transaction
+	 *
+	 * @param uri Provider URI
+	 * @param keyColumn Column identifying the row for the next updates or null
+	 * @param key Value of the column or null if the row is not updated
+	 * @param values Values
+	 * @param linkedUri Provider URI of the linked row, in the same provider
+	 * @param linkedColumn Column of the linked row receiving the row ID
+	 * @param linkedValues Values of the linked row or null if there is no linked row
+	 */
+	public void insert(Uri uri, String keyColumn, String key, ContentValues values,
+			Uri linkedUri, String linkedColumn, ContentValues linkedValues) {
+		PendingWrite write = new PendingWrite(true, uri, keyColumn, key, values);
+		if (linkedValues != null) {
+			write.linkedUri = linkedUri;
+			write.linkedColumn = linkedColumn;
+			write.linkedValues = linkedValues;
+		}
+		enqueue(write, true);
+	}
+
+	/**
+	 * Queue an update of the rows having the given key
+	 *
+	 * @param uri Provider URI
+	 * @param keyColumn Column identifying the rows
+	 * @param key Value of the column
+	 * @param values Values
+	 */
+	public void update(Uri uri, String keyColumn, String key, ContentValues values) {
+		enqueue(new PendingWrite(false, uri, keyColumn, key, values), true);
+	}
+
+	/**
+	 * Add a write to the queue
+	 *
+	 * @param write Write
+	 * @param journaled True to append the write to the journal
+	 */
+	private synchronized void enqueue(PendingWrite write, boolean journaled) {
+		if (journaled && (journalOut != null)) {
+			try {
+				journalOut.write(encodeRecord(write));
+			} catch(IOException e) {
+				if (logger.isActivated()) {
+					logger.error("Can't append to the history journal", e);
+				}
+			}
+		}
+		queuedWrites++;
+		String queueKey = write.getQueueKey();
+		if (queueKey != null) {
+			PendingWrite previous = pendingByKey.get(queueKey);
+			if (previous != null && !write.insert && canMerge(previous, write)) {
+				// Merge with the pending insert or update of the same row
+				previous.values.putAll(write.values);
+				mergedWrites++;
+				return;
+			}
+			pendingByKey.put(queueKey, write);
+		}
+		if (pending.isEmpty()) {
+			firstPendingTime = System.currentTimeMillis();
+		}
+		pending.add(write);
+		maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+		notify();
+	}
+
+	/**
+	 * Returns true if an update may be merged with the pending write of its
+	 * row, i.e. no write queued after it may change the same row
+	 *
+	 * @param previous Pending write of the row
+	 * @param update Update
+	 * @return Boolean
+	 */
+	private boolean canMerge(PendingWrite previous, PendingWrite update) {
+		for (int i = pending.size() - 1; i >= 0; i--) {
+			PendingWrite write = pending.get(i);
+			if (write == previous) {
+				return true;
+			}
+			if (write.mayChange(update)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Commit the pending writes. When it returns true, all the writes queued
+	 * before the call are visible in the providers or have been rejected.
+	 *
+	 * @return False if a provider has failed, its writes staying in queue
+	 */
+	public boolean flush() {
+		synchronized(commitLock) {
+			ArrayList<PendingWrite> batch;
+			synchronized(this) {
+				if (pending.isEmpty()) {
+					return true;
+				}
+				batch = pending;
+				pending = new ArrayList<PendingWrite>();
+				pendingByKey.clear();
+			}
+			ArrayList<PendingWrite> failed = commit(batch);
+			synchronized(this) {
+				if (!failed.isEmpty()) {
+					requeue(failed);
+				}
+				compactJournal();
+			}
+			return failed.isEmpty();
+		}
+	}
+
+	/**
+	 * Commit a batch in a single transaction per provider
+	 *
+	 * @param batch Writes
+	 * @return Writes to retry, in queue order
+	 */
+	private ArrayList<PendingWrite> commit(ArrayList<PendingWrite> batch) {
+		// Group the writes by provider, keeping their order
+		LinkedHashMap<String, ArrayList<PendingWrite>> writesByAuthority =
+				new LinkedHashMap<String, ArrayList<PendingWrite>>();
+		for (PendingWrite write : batch) {
+			ArrayList<PendingWrite> writes = writesByAuthority.get(write.uri.getAuthority());
+			if (writes == null) {
+				writes = new ArrayList<PendingWrite>();
+				writesByAuthority.put(write.uri.getAuthority(), writes);
+			}
+			writes.add(write);
+		}
+
+		ArrayList<PendingWrite> failed = new ArrayList<PendingWrite>();
+		for (String authority : writesByAuthority.keySet()) {
+			ArrayList<PendingWrite> writes = writesByAuthority.get(authority);
+			try {
+				apply(authority, writes);
+			} catch(Exception e) {
+				// The provider has rolled back the whole batch
+				if (logger.isActivated()) {
+					logger.error("Can't commit writes to " + authority, e);
+				}
+				synchronized(this) {
+					failedBatches++;
+				}
+				if (isRefused(e)) {
+					failed.addAll(commitOneByOne(authority, writes));
+				} else {
+					failed.addAll(writes);
+				}
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Commit the writes of a refused batch one at a time, so that only the
+	 * writes refused by the provider are rejected
+	 *
+	 * @param authority Provider authority
+	 * @param writes Writes
+	 * @return Writes to retry, in queue order
+	 */
+	private ArrayList<PendingWrite> commitOneByOne(String authority, ArrayList<PendingWrite> writes) {
+		ArrayList<PendingWrite> failed = new ArrayList<PendingWrite>();
+		for (PendingWrite write : writes) {
+			if (!failed.isEmpty()) {
+				// Keep the order of the writes after a failure
+				failed.add(write);
+				continue;
+			}
+			ArrayList<PendingWrite> single = new ArrayList<PendingWrite>(1);
+			single.add(write);
+			try {
+				apply(authority, single);
+			} catch(Exception e) {
+				if (isRefused(e)) {
+					reject(write, e);
+				} else {
+					failed.add(write);
+				}
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Apply writes in a single batch
+	 *
+	 * @param authority Provider authority
+	 * @param writes Writes
+	 * @throws Exception
+	 */
+	private void apply(String authority, ArrayList<PendingWrite> writes) throws Exception {
+		ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>(writes.size());
+		for (PendingWrite write : writes) {
+			if (write.insert && !(write.replayed && exists(write))) {
+				operations.add(ContentProviderOperation.newInsert(write.uri).withValues(write.values).build());
+				if (write.linkedValues != null) {
+					operations.add(ContentProviderOperation.newInsert(write.linkedUri)
+							.withValues(write.linkedValues)
+							.withValueBackReference(write.linkedColumn, operations.size() - 1)
+							.build());
+				}
+			} else {
+				operations.add(ContentProviderOperation.newUpdate(write.uri)
+						.withValues(write.values)
+						.withSelection(write.keyColumn + " = ?", new String[] { write.key })
+						.build());
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		cr.applyBatch(authority, operations);
+		long duration = System.currentTimeMillis() - start;
+		synchronized(this) {
+			committedBatches++;
+			lastBatchSize = operations.size();
+			totalCommitTime += duration;
+			maxCommitTime = Math.max(maxCommitTime, duration);
+		}
+		if (logger.isActivated()) {
+			logger.debug("Batch of " + operations.size() + " writes committed to " + authority + " in "
+					+ duration + " ms, " + getQueueDepth() + " writes in queue");
+		}
+	}
+
+	/**
+	 * Returns true if the row of a replayed insert is already in its provider
+	 *
+	 * @param write Insert
+	 * @return Boolean
+	 */
+	private boolean exists(PendingWrite write) {
+		if (write.key == null) {
+			return false;
+		}
+		Cursor cursor = cr.query(write.uri, new String[] { write.keyColumn }, write.keyColumn + " = ?",
+				new String[] { write.key }, null);
+		if (cursor == null) {
+			return false;
+		}
+		try {
+			return cursor.getCount() > 0;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Returns true if a batch has been refused by its provider, as opposed
+	 * to a provider which has failed and may accept the batch later
+	 *
+	 * @param e Exception
+	 * @return Boolean
+	 */
+	private static boolean isRefused(Exception e) {
+		return (e instanceof OperationApplicationException) || (e instanceof SQLException)
+				|| (e instanceof IllegalArgumentException);
+	}
+
+	/**
+	 * Reject a write refused by its provider: it is logged and appended to
+	 * the rejected file instead of being retried
+	 *
+	 * @param write Write
+	 * @param e Exception of the provider
+	 */
+	private void reject(PendingWrite write, Exception e) {
+		if (logger.isActivated()) {
+			logger.error("Write " + write.values + " to " + write.uri + " rejected", e);
+		}
+		synchronized(this) {
+			rejectedWrites++;
+			if (journal != null) {
+				try {
+					FileOutputStream out = new FileOutputStream(journal.getPath() + REJECTED_SUFFIX, true);
+					try {
+						out.write(encodeRecord(write));
+					} finally {
+						out.close();
+					}
+				} catch(IOException e2) {
+					if (logger.isActivated()) {
+						logger.error("Can't write the rejected file", e2);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put failed writes back at the head of the queue, before the writes
+	 * queued during the commit
+	 *
+	 * @param failed Failed writes
+	 */
+	private synchronized void requeue(ArrayList<PendingWrite> failed) {
+		failed.addAll(pending);
+		pending = failed;
+		pendingByKey.clear();
+		for (PendingWrite write : pending) {
+			String queueKey = write.getQueueKey();
+			if (queueKey != null) {
+				pendingByKey.put(queueKey, write);
+			}
+		}
+		firstPendingTime = System.currentTimeMillis();
+		lastFailureTime = firstPendingTime;
+		maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+	}
+
+	/**
+	 * Reduce the journal to the writes still in queue. The journal is
+	 * truncated when the queue is empty, else rewritten in a temporary file
+	 * renamed over it.
+	 */
+	private synchronized void compactJournal() {
+		if (journalOut == null) {
+			return;
+		}
+		try {
+			if (pending.isEmpty()) {
+				journalOut.getChannel().truncate(0);
+				return;
+			}
+			File tmp = new File(journal.getPath() + ".tmp");
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				for (PendingWrite write : pending) {
+					out.write(encodeRecord(write));
+				}
+			} finally {
+				out.close();
+			}
+			journalOut.close();
+			if (!tmp.renameTo(journal)) {
+				throw new IOException("Can't rename " + tmp);
+			}
+			journalOut = new FileOutputStream(journal, true);
+		} catch(IOException e) {
+			if (logger.isActivated()) {
+				logger.error("Can't compact the history journal", e);
+			}
+		}
+	}
+
+	/**
+	 * Queue the writes of the journal left by a previous writer. A record
+	 * truncated by a crash while it was appended ends the replay.
+	 */
+	private void replayJournal() {
+		if (!journal.exists()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(journal));
+			try {
+				while (true) {
+					int length;
+					try {
+						length = in.readInt();
+					} catch(EOFException e) {
+						break;
+					}
+					long checksum = in.readLong();
+					byte[] record = new byte[length];
+					in.readFully(record);
+					CRC32 crc = new CRC32();
+					crc.update(record);
+					if (crc.getValue() != checksum) {
+						throw new IOException("Corrupted record");
+					}
+					PendingWrite write = decodeRecord(record);
+					write.replayed = true;
+					enqueue(write, false);
+					replayedWrites++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch(IOException e) {
+			if (logger.isActivated()) {
+				logger.error("End of the history journal unreadable", e);
+			}
+		}
+		if (logger.isActivated() && (replayedWrites > 0)) {
+			logger.info(replayedWrites + " writes replayed from the history journal");
+		}
+	}
+
+	/**
+	 * Encode a write in a journal record: length, CRC32 and content
+	 *
+	 * @param write Write
+	 * @return Record
+	 * @throws IOException
+	 */
+	private static byte[] encodeRecord(PendingWrite write) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(content);
+		out.writeBoolean(write.insert);
+		out.writeUTF(write.uri.toString());
+		writeString(out, write.keyColumn);
+		writeString(out, write.key);
+		writeValues(out, write.values);
+		out.writeBoolean(write.linkedValues != null);
+		if (write.linkedValues != null) {
+			out.writeUTF(write.linkedUri.toString());
+			out.writeUTF(write.linkedColumn);
+			writeValues(out, write.linkedValues);
+		}
+		out.flush();
+		byte[] data = content.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(data.length + 12);
+		out = new DataOutputStream(record);
+		out.writeInt(data.length);
+		out.writeLong(crc.getValue());
+		out.write(data);
+		out.flush();
+		return record.toByteArray();
+	}
+
+	/**
+	 * Decode the content of a journal record
+	 *
+	 * @param record Content
+	 * @return Write
+	 * @throws IOException
+	 */
+	private static PendingWrite decodeRecord(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		boolean insert = in.readBoolean();
+		Uri uri = Uri.parse(in.readUTF());
+		String keyColumn = readString(in);
+		String key = readString(in);
+		PendingWrite write = new PendingWrite(insert, uri, keyColumn, key, readValues(in));
+		if (in.readBoolean()) {
+			write.linkedUri = Uri.parse(in.readUTF());
+			write.linkedColumn = in.readUTF();
+			write.linkedValues = readValues(in);
+		}
+		return write;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeValues(DataOutputStream out, ContentValues values) throws IOException {
+		out.writeInt(values.size());
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			out.writeUTF(entry.getKey());
+			Object value = entry.getValue();
+			if (value == null) {
+				out.writeByte('N');
+			} else if (value instanceof String) {
+				out.writeByte('S');
+				out.writeUTF((String)value);
+			} else if (value instanceof Long) {
+				out.writeByte('J');
+				out.writeLong((Long)value);
+			} else if (value instanceof Integer) {
+				out.writeByte('I');
+				out.writeInt((Integer)value);
+			} else if (value instanceof Short) {
+				out.writeByte('T');
+				out.writeShort((Short)value);
+			} else if (value instanceof Byte) {
+				out.writeByte('B');
+				out.writeByte((Byte)value);
+			} else if (value instanceof Boolean) {
+				out.writeByte('Z');
+				out.writeBoolean((Boolean)value);
+			} else if (value instanceof Double) {
+				out.writeByte('D');
+				out.writeDouble((Double)value);
+			} else if (value instanceof Float) {
+				out.writeByte('F');
+				out.writeFloat((Float)value);
+			} else if (value instanceof byte[]) {
+				out.writeByte('A');
+				out.writeInt(((byte[])value).length);
+				out.write((byte[])value);
+			} else {
+				throw new IOException("Unsupported value " + entry.getKey());
+			}
+		}
+	}
+
+	private static ContentValues readValues(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		ContentValues values = new ContentValues(size);
+		for (int i = 0; i < size; i++) {
+			String key = in.readUTF();
+			switch(in.readByte()) {
+				case 'N':
+					values.putNull(key);
+					break;
+				case 'S':
+					values.put(key, in.readUTF());
+					break;
+				case 'J':
+					values.put(key, in.readLong());
+					break;
+				case 'I':
+					values.put(key, in.readInt());
+					break;
+				case 'T':
+					values.put(key, in.readShort());
+					break;
+				case 'B':
+					values.put(key, in.readByte());
+					break;
+				case 'Z':
+					values.put(key, in.readBoolean());
+					break;
+				case 'D':
+					values.put(key, in.readDouble());
+					break;
+				case 'F':
+					values.put(key, in.readFloat());
+					break;
+				case 'A':
+					byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+					values.put(key, data);
+					break;
+				default:
+					throw new IOException("Unknown value type");
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Commit the pending writes and stop the writer. A failed batch is
+	 * committed again until its provider accepts or refuses it.
+	 */
+	public void terminate() {
+		synchronized(this) {
+			terminated = true;
+			notify();
+		}
+		while (!flush()) {
+			try {
+				Thread.sleep(RETRY_DELAY);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+		synchronized(this) {
+			if (journalOut != null) {
+				try {
+					journalOut.close();
+				} catch(IOException e) {
+					// Nothing to do
+				}
+				journalOut = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of writes in queue
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized int getQueueDepth() {
+		return pending.size();
+	}
+
+	/**
+	 * Returns the maximum number of writes which have been in queue
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Returns the number of writes queued since the start
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized long getQueuedWrites() {
+		return queuedWrites;
+	}
+
+	/**
+	 * Returns the number of updates merged with a pending write
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized long getMergedWrites() {
+		return mergedWrites;
+	}
+
+	/**
+	 * Returns the number of writes replayed from the journal at the start
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized long getReplayedWrites() {
+		return replayedWrites;
+	}
+
+	/**
+	 * Returns the number of writes refused by their provider
+	 *
+	 * @return Number of writes
+	 */
+	public synchronized long getRejectedWrites() {
+		return rejectedWrites;
+	}
+
+	/**
+	 * Returns the number of committed batches
+	 *
+	 * @return Number of batches
+	 */
+	public synchronized long getCommittedBatches() {
+		return committedBatches;
+	}
+
+	/**
+	 * Returns the number of failed batches
+	 *
+	 * @return Number of batches
+	 */
+	public synchronized long getFailedBatches() {
+		return failedBatches;
+	}
+
+	/**
+	 * Returns the number of operations of the last committed batch
+	 *
+	 * @return Number of operations
+	 */
+	public synchronized int getLastBatchSize() {
+		return lastBatchSize;
+	}
+
+	/**
+	 * Returns the average commit time of a batch
+	 *
+	 * @return Time in milliseconds
+	 */
+	public synchronized long getAverageCommitTime() {
+		return (committedBatches > 0) ? totalCommitTime / committedBatches : 0;
+	}
+
+	/**
+	 * Returns the maximum commit time of a batch
+	 *
+	 * @return Time in milliseconds
+	 */
+	public synchronized long getMaxCommitTime() {
+		return maxCommitTime;
+	}
+
+	/**
+	 * Background processing
+	 */
+	public void run() {
+		while (true) {
+			synchronized(this) {
+				try {
+					while (pending.isEmpty() && !terminated) {
+						wait();
+					}
+					if (terminated) {
+						return;
+					}
+
+					// Wait for more writes until the batch is full or too old, or
+					// for the retry delay after a failure
+					long now = System.currentTimeMillis();
+					long deadline = Math.max(firstPendingTime + FLUSH_DELAY, lastFailureTime + RETRY_DELAY);
+					while (!terminated && !pending.isEmpty()
+							&& ((pending.size() < MAX_BATCH_SIZE) || (now < lastFailureTime + RETRY_DELAY))
+							&& (now < deadline)) {
+						wait(deadline - now);
+						now = System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			flush();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider;
+
+/**
+ * Database migration listener
+ *
+ * @author Orange
+ */
+public interface MigrationListener {
+	/**
+	 * A migration step is started
+	 *
+	 * @param database Database name
+	 * @param version Version of the schema produced by the step
+	 * @param step Index of the step, from 1
+	 * @param stepsNumber Number of steps of the migration
+	 */
+	public void handleStepStarted(String database, int version, int step, int stepsNumber);
+
+	/**
+	 * Rows have been processed by the current step
+	 *
+	 * @param database Database name
+	 * @param version Version of the schema produced by the step
+	 * @param rows Number of rows processed since the start of the step
+	 */
+	public void handleRowsProcessed(String database, int version, long rows);
+
+	/**
+	 * The migration is terminated
+	 *
+	 * @param database Database name
+	 * @param oldVersion Version before the migration
+	 * @param newVersion Version after the migration
+	 */
+	public void handleMigrationTerminated(String database, int oldVersion, int newVersion);
+}
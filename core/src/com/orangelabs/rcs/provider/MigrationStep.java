@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Schema migration step, applied when the database is upgraded to the
+ * version of the step
+ *
+ * @author Orange
+ */
+public abstract class MigrationStep {
+	/**
+	 * Version of the schema produced by the step
+	 */
+	private int version;
+
+	/**
+	 * Migration the step belongs to
+	 */
+	private DatabaseMigration migration = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param version Version of the schema produced by the step
+	 */
+	public MigrationStep(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns the version of the schema produced by the step
+	 *
+	 * @return Version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Set the migration the step belongs to
+	 *
+	 * @param migration Migration
+	 */
+	void setMigration(DatabaseMigration migration) {
+		this.migration = migration;
+	}
+
+	/**
+	 * Report the number of rows processed so far by the step
+	 *
+	 * @param rows Number of rows
+	 */
+	protected void notifyProgress(long rows) {
+		if (migration != null) {
+			migration.notifyRowsProcessed(version, rows);
+		}
+	}
+
+	/**
+	 * Apply the step. The step is run in a transaction: an exception rolls
+	 * back the step and aborts the migration.
+	 *
+	 * @param db Database
+	 */
+	public abstract void execute(SQLiteDatabase db);
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.eab;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.orangelabs.rcs.core.ims.service.ContactInfo;
+import com.orangelabs.rcs.core.ims.service.capability.Capabilities;
+import com.orangelabs.rcs.core.ims.service.presence.FavoriteLink;
+import com.orangelabs.rcs.core.ims.service.presence.Geoloc;
+import com.orangelabs.rcs.core.ims.service.presence.PresenceInfo;
+
+/**
+ * Bounded LRU cache of the contact infos read from the rich address book,
+ * keyed by contact number. The photo-icon is not cached, only whether the
+ * contact has one. Entries are never modified once cached: a copy is
+ * returned to the callers.
+ *
+ * @author Orange
+ */
+public class ContactInfoCache {
+	/**
+	 * Default maximum number of contacts in cache
+	 */
+	public static final int DEFAULT_MAX_SIZE = 5000;
+
+	/**
+	 * Cached entry
+	 */
+	static class Entry {
+		/**
+		 * Contact info without photo-icon
+		 */
+		final ContactInfo info;
+
+		/**
+		 * Row ID in the rich address book or -1 if unknown
+		 */
+		final long rowId;
+
+		/**
+		 * Photo-icon etag
+		 */
+		final String photoEtag;
+
+		/**
+		 * Is a photo-icon stored for the contact
+		 */
+		final boolean photo;
+
+		Entry(ContactInfo info, long rowId, boolean photo, String photoEtag) {
+			this.info = info;
+			this.rowId = rowId;
+			this.photo = photo;
+			this.photoEtag = photoEtag;
+		}
+	}
+
+	/**
+	 * Entries in access order
+	 */
+	private LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * Number of modifications, used to discard the entries read before a write
+	 */
+	private long version = 0;
+
+	/**
+	 * Number of hits
+	 */
+	private long hits = 0;
+
+	/**
+	 * Number of misses
+	 */
+	private long misses = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize Maximum number of contacts in cache
+	 */
+	public ContactInfoCache(final int maxSize) {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, ContactInfoCache.Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the entry of a contact
+	 *
+	 * @param contact Contact number
+	 * @return Entry or null if not in cache
+	 */
+	synchronized Entry get(String contact) {
+		Entry entry = entries.get(contact);
+		if (entry != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the current version, to be passed to {@link #add(String, Entry, long)}
+	 *
+	 * @return Version
+	 */
+	synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Add an entry read from the rich address book, unless the cache has been
+	 * modified since the read started
+	 *
+	 * @param contact Contact number
+	 * @param entry Entry
+	 * @param readVersion Version before the read
+	 */
+	synchronized void add(String contact, Entry entry, long readVersion) {
+		if (readVersion == version) {
+			entries.put(contact, entry);
+		}
+	}
+
+	/**
+	 * Put the entry just written in the rich address book
+	 *
+	 * @param contact Contact number
+	 * @param entry Entry
+	 */
+	synchronized void put(String contact, Entry entry) {
+		version++;
+		entries.put(contact, entry);
+	}
+
+	/**
+	 * Remove a contact
+	 *
+	 * @param contact Contact number
+	 */
+	public synchronized void remove(String contact) {
+		version++;
+		entries.remove(contact);
+	}
+
+	/**
+	 * Remove all the contacts
+	 */
+	public synchronized void clear() {
+		version++;
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of contacts in cache
+	 *
+	 * @return Size
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups served from the cache
+	 *
+	 * @return Number of hits
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups which needed a query
+	 *
+	 * @return Number of misses
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Reset the hit and miss counters
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Returns a copy of a contact info, so that the caller can modify it
+	 * without altering the cache
+	 *
+	 * @param info Contact info
+	 * @return Contact info
+	 */
+	static ContactInfo copy(ContactInfo info) {
+		ContactInfo result = new ContactInfo();
+		result.setContact(info.getContact());
+		result.setRcsStatus(info.getRcsStatus());
+		result.setRcsStatusTimestamp(info.getRcsStatusTimestamp());
+		result.setRegistrationState(info.getRegistrationState());
+
+		result.setCapabilities(copy(info.getCapabilities()));
+
+		PresenceInfo presenceInfo = info.getPresenceInfo();
+		PresenceInfo presenceInfoCopy = new PresenceInfo();
+		presenceInfoCopy.setPresenceStatus(presenceInfo.getPresenceStatus());
+		presenceInfoCopy.setFreetext(presenceInfo.getFreetext());
+		FavoriteLink favLink = presenceInfo.getFavoriteLink();
+		if (favLink != null) {
+			presenceInfoCopy.setFavoriteLink(new FavoriteLink(favLink.getName(), favLink.getLink()));
+		}
+		Geoloc geoloc = presenceInfo.getGeoloc();
+		if (geoloc != null) {
+			presenceInfoCopy.setGeoloc(new Geoloc(geoloc.getLatitude(), geoloc.getLongitude(), geoloc.getAltitude()));
+		}
+		presenceInfoCopy.setTimestamp(presenceInfo.getTimestamp());
+		result.setPresenceInfo(presenceInfoCopy);
+
+		return result;
+	}
+
+	/**
+	 * Returns a copy of capabilities
+	 *
+	 * @param capabilities Capabilities
+	 * @return Capabilities
+	 */
+	static Capabilities copy(Capabilities capabilities) {
+		Capabilities capabilitiesCopy = new Capabilities();
+		capabilitiesCopy.setCsVideoSupport(capabilities.isCsVideoSupported());
+		capabilitiesCopy.setFileTransferSupport(capabilities.isFileTransferSupported());
+		capabilitiesCopy.setImageSharingSupport(capabilities.isImageSharingSupported());
+		capabilitiesCopy.setImSessionSupport(capabilities.isImSessionSupported());
+		capabilitiesCopy.setPresenceDiscoverySupport(capabilities.isPresenceDiscoverySupported());
+		capabilitiesCopy.setSocialPresenceSupport(capabilities.isSocialPresenceSupported());
+		capabilitiesCopy.setGeolocationPushSupport(capabilities.isGeolocationPushSupported());
+		capabilitiesCopy.setVideoSharingSupport(capabilities.isVideoSharingSupported());
+		capabilitiesCopy.setFileTransferThumbnailSupport(capabilities.isFileTransferThumbnailSupported());
+		capabilitiesCopy.setFileTransferHttpSupport(capabilities.isFileTransferHttpSupported());
+		capabilitiesCopy.setIPVoiceCallSupport(capabilities.isIPVoiceCallSupported());
+		capabilitiesCopy.setIPVideoCallSupport(capabilities.isIPVideoCallSupported());
+		capabilitiesCopy.setFileTransferStoreForwardSupport(capabilities.isFileTransferStoreForwardSupported());
+		capabilitiesCopy.setGroupChatStoreForwardSupport(capabilities.isGroupChatStoreForwardSupported());
+		capabilitiesCopy.setSipAutomata(capabilities.isSipAutomata());
+		ArrayList<String> extensions = capabilities.getSupportedExtensions();
+		for (int i = 0; i < extensions.size(); i++) {
+			capabilitiesCopy.addSupportedExtension(extensions.get(i));
+		}
+		capabilitiesCopy.setTimestamp(capabilities.getTimestamp());
+		return capabilitiesCopy;
+	}
+}
@@ -27,7 +27,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 
 import android.accounts.AccountManager;
@@ -39,6 +42,7 @@ import android.content.Context;
 import android.content.OperationApplicationException;
 import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -287,6 +291,11 @@ public final class ContactsManager {
 	 * The logger
 	 */
 	private Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * Cache of the contact infos
+	 */
+	private ContactInfoCache contactInfoCache = new ContactInfoCache(ContactInfoCache.DEFAULT_MAX_SIZE);
     
 	/**
 	 * Create instance
@@ -603,6 +612,9 @@ public final class ContactsManager {
             ctx.getContentResolver().insert(RichAddressBookData.CONTENT_URI, values);
         }
 
+        // Write through the cache
+        contactInfoCache.put(contact, createContactInfoEntry(contact, values));
+
         // Save presence photo content
         if (photoIcon != null) {
             byte photoContent[] = photoIcon.getContent();
@@ -871,7 +883,85 @@ public final class ContactsManager {
 	public ContactInfo getContactInfo(String contact) {
 		// May be called from outside the core, so be sure the number format is international before doing the queries 
 		contact = PhoneUtils.extractNumberFromUri(contact);
-		
+
+		ContactInfoCache.Entry entry = getContactInfoEntry(contact);
+		ContactInfo infos = ContactInfoCache.copy(entry.info);
+		if (infos.getRcsStatus() == ContactInfo.NO_INFO) {
+			infos.setRcsStatusTimestamp(System.currentTimeMillis());
+			infos.getCapabilities().setTimestamp(System.currentTimeMillis());
+		}
+		if (entry.photo) {
+			infos.getPresenceInfo().setPhotoIcon(loadContactPhotoIcon(contact, entry));
+		}
+		return infos;
+	}
+
+	/**
+	 * Get the photo-icon of a contact in the EAB
+	 * 
+	 * @param contact Contact
+	 * @return Photo-icon or null if the contact has no photo-icon
+	 */
+	public PhotoIcon getContactPhotoIcon(String contact) {
+		// May be called from outside the core, so be sure the number format is international before doing the queries 
+		contact = PhoneUtils.extractNumberFromUri(contact);
+
+		ContactInfoCache.Entry entry = getContactInfoEntry(contact);
+		if (entry.photo) {
+			return loadContactPhotoIcon(contact, entry);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the cache of the contact infos
+	 * 
+	 * @return Cache
+	 */
+	public ContactInfoCache getContactInfoCache() {
+		return contactInfoCache;
+	}
+
+	/**
+	 * Get the cached infos of a contact, read from the EAB if not in cache
+	 * 
+	 * @param contact Contact number
+	 * @return Cache entry
+	 */
+	private ContactInfoCache.Entry getContactInfoEntry(String contact) {
+		ContactInfoCache.Entry entry = contactInfoCache.get(contact);
+		if (entry != null) {
+			return entry;
+		}
+
+		long version = contactInfoCache.getVersion();
+		ContentValues values = null;
+		Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI,
+				null,
+				RichAddressBookData.KEY_CONTACT_NUMBER + "= ?",
+				new String[]{contact},
+				null);
+		if (cur != null) {
+			if (cur.moveToFirst()) {
+				values = new ContentValues();
+				DatabaseUtils.cursorRowToContentValues(cur, values);
+			}
+			cur.close();
+		}
+		entry = createContactInfoEntry(contact, values);
+		contactInfoCache.add(contact, entry, version);
+		return entry;
+	}
+
+	/**
+	 * Create a cache entry from the values of an EAB row
+	 * 
+	 * @param contact Contact number
+	 * @param values Row values or null if the contact is not in the EAB
+	 * @return Cache entry
+	 */
+	private ContactInfoCache.Entry createContactInfoEntry(String contact, ContentValues values) {
 		ContactInfo infos = new ContactInfo();
 		infos.setRcsStatus(ContactInfo.NO_INFO);
 		infos.setRcsStatusTimestamp(System.currentTimeMillis());
@@ -881,102 +971,116 @@ public final class ContactsManager {
 		
 		infos.setRegistrationState(ContactInfo.REGISTRATION_STATUS_UNKNOWN);
 
-		Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI,
-				null,
-				RichAddressBookData.KEY_CONTACT_NUMBER + "= ?",
-				new String[]{contact},
-				null);
-		if (cur != null) {
-			if (cur.moveToFirst()) {
-                // Get RCS Status
-                infos.setRcsStatus(cur.getInt(cur.getColumnIndex(RichAddressBookData.KEY_RCS_STATUS)));
-                infos.setRcsStatusTimestamp(cur.getLong(cur.getColumnIndex(RichAddressBookData.KEY_RCS_STATUS_TIMESTAMP)));
-                infos.setRegistrationState(cur.getInt(cur.getColumnIndex(RichAddressBookData.KEY_REGISTRATION_STATE)));
-
-                // Get Presence info
-                presenceInfo.setPresenceStatus(cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_SHARING_STATUS)));
-
-                FavoriteLink favLink = new FavoriteLink(
-                        cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_WEBLINK_NAME)),
-                        cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_WEBLINK_URL)));
-                presenceInfo.setFavoriteLink(favLink);
-                presenceInfo.setFavoriteLinkUrl(favLink.getLink());
-
-                presenceInfo.setFreetext(cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_FREE_TEXT)));
-
-                Geoloc geoloc = null;
-                if (Boolean.parseBoolean(cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_GEOLOC_EXIST_FLAG)))) {
-                    geoloc = new Geoloc(
-                            cur.getDouble(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_GEOLOC_LATITUDE)),
-                            cur.getDouble(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_GEOLOC_LONGITUDE)),
-                            cur.getDouble(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_GEOLOC_ALTITUDE)));
-                }
-                presenceInfo.setGeoloc(geoloc);
-
-                presenceInfo.setTimestamp(cur.getLong(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_TIMESTAMP)));
-
-                PhotoIcon photoIcon = null;
-                if (Boolean.parseBoolean(cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_PHOTO_EXIST_FLAG)))) {
-                    try {
-                        int rowId = cur.getInt(cur.getColumnIndex(RichAddressBookData.KEY_ID));
-                        Uri photoUri = ContentUris.withAppendedId(RichAddressBookData.CONTENT_URI, rowId);
-                        String etag = cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_PRESENCE_PHOTO_ETAG));
-                        InputStream stream = ctx.getContentResolver().openInputStream(photoUri);
-                        byte[] content = new byte[stream.available()];
-                        stream.read(content, 0, content.length);
-                        Bitmap bmp = BitmapFactory.decodeByteArray(content, 0, content.length);
-                        if (bmp != null) {
-                            photoIcon = new PhotoIcon(content, bmp.getWidth(), bmp.getHeight(), etag);
-                        }
-                    } catch (FileNotFoundException e) {
-                        if (logger.isActivated()){
-                            logger.error("Can't get the photo",e);
-                        }
-                    } catch (IOException e) {
-                        if (logger.isActivated()){
-                            logger.error("Can't get the photo",e);
-                        }
-                    }
-                }
-                presenceInfo.setPhotoIcon(photoIcon);
-
-                // Get the capabilities infos
-                capabilities.setCsVideoSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_CS_VIDEO));
-                capabilities.setFileTransferSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER));
-                capabilities.setImageSharingSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_IMAGE_SHARING));
-                capabilities.setImSessionSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_IM_SESSION));
-                capabilities.setPresenceDiscoverySupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_PRESENCE_DISCOVERY));
-                capabilities.setSocialPresenceSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_SOCIAL_PRESENCE));
-                capabilities.setGeolocationPushSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_GEOLOCATION_PUSH));
-                capabilities.setVideoSharingSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_VIDEO_SHARING));
-                capabilities.setFileTransferThumbnailSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_THUMBNAIL));
-                capabilities.setFileTransferHttpSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_HTTP));
-                capabilities.setIPVoiceCallSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_IP_VOICE_CALL));
-                capabilities.setIPVideoCallSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_IP_VIDEO_CALL));
-                capabilities.setFileTransferStoreForwardSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_SF));
-                capabilities.setGroupChatStoreForwardSupport(getCapabilityFromColumn(cur, RichAddressBookData.KEY_CAPABILITY_GROUP_CHAT_SF));
-                
-                // Set RCS extensions capability
-				String extensions = cur.getString(cur.getColumnIndex(RichAddressBookData.KEY_CAPABILITY_EXTENSIONS));
-				if (extensions != null) {
-					String[] extensionList = extensions.split(";");
-					for (int i=0;i<extensionList.length;i++){
-						if (extensionList[i].trim().length()>0){
-							capabilities.addSupportedExtension(extensionList[i]);
-						}
+		long rowId = INVALID_ID;
+		boolean photo = false;
+		String photoEtag = null;
+		if (values != null) {
+			Long id = values.getAsLong(RichAddressBookData.KEY_ID);
+			if (id != null) {
+				rowId = id;
+			}
+
+            // Get RCS Status
+            infos.setRcsStatus(getIntValue(values, RichAddressBookData.KEY_RCS_STATUS));
+            infos.setRcsStatusTimestamp(getLongValue(values, RichAddressBookData.KEY_RCS_STATUS_TIMESTAMP));
+            infos.setRegistrationState(getIntValue(values, RichAddressBookData.KEY_REGISTRATION_STATE));
+
+            // Get Presence info
+            presenceInfo.setPresenceStatus(values.getAsString(RichAddressBookData.KEY_PRESENCE_SHARING_STATUS));
+
+            FavoriteLink favLink = new FavoriteLink(
+                    values.getAsString(RichAddressBookData.KEY_PRESENCE_WEBLINK_NAME),
+                    values.getAsString(RichAddressBookData.KEY_PRESENCE_WEBLINK_URL));
+            presenceInfo.setFavoriteLink(favLink);
+            presenceInfo.setFavoriteLinkUrl(favLink.getLink());
+
+            presenceInfo.setFreetext(values.getAsString(RichAddressBookData.KEY_PRESENCE_FREE_TEXT));
+
+            Geoloc geoloc = null;
+            if (Boolean.parseBoolean(values.getAsString(RichAddressBookData.KEY_PRESENCE_GEOLOC_EXIST_FLAG))) {
+                geoloc = new Geoloc(
+                        getDoubleValue(values, RichAddressBookData.KEY_PRESENCE_GEOLOC_LATITUDE),
+                        getDoubleValue(values, RichAddressBookData.KEY_PRESENCE_GEOLOC_LONGITUDE),
+                        getDoubleValue(values, RichAddressBookData.KEY_PRESENCE_GEOLOC_ALTITUDE));
+            }
+            presenceInfo.setGeoloc(geoloc);
+
+            presenceInfo.setTimestamp(getLongValue(values, RichAddressBookData.KEY_PRESENCE_TIMESTAMP));
+
+            // The photo-icon itself is loaded on demand
+            photo = Boolean.parseBoolean(values.getAsString(RichAddressBookData.KEY_PRESENCE_PHOTO_EXIST_FLAG));
+            photoEtag = values.getAsString(RichAddressBookData.KEY_PRESENCE_PHOTO_ETAG);
+
+            // Get the capabilities infos
+            capabilities.setCsVideoSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_CS_VIDEO));
+            capabilities.setFileTransferSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER));
+            capabilities.setImageSharingSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_IMAGE_SHARING));
+            capabilities.setImSessionSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_IM_SESSION));
+            capabilities.setPresenceDiscoverySupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_PRESENCE_DISCOVERY));
+            capabilities.setSocialPresenceSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_SOCIAL_PRESENCE));
+            capabilities.setGeolocationPushSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_GEOLOCATION_PUSH));
+            capabilities.setVideoSharingSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_VIDEO_SHARING));
+            capabilities.setFileTransferThumbnailSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_THUMBNAIL));
+            capabilities.setFileTransferHttpSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_HTTP));
+            capabilities.setIPVoiceCallSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_IP_VOICE_CALL));
+            capabilities.setIPVideoCallSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_IP_VIDEO_CALL));
+            capabilities.setFileTransferStoreForwardSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_FILE_TRANSFER_SF));
+            capabilities.setGroupChatStoreForwardSupport(getCapabilityFromValues(values, RichAddressBookData.KEY_CAPABILITY_GROUP_CHAT_SF));
+            
+            // Set RCS extensions capability
+			String extensions = values.getAsString(RichAddressBookData.KEY_CAPABILITY_EXTENSIONS);
+			if (extensions != null) {
+				String[] extensionList = extensions.split(";");
+				for (int i=0;i<extensionList.length;i++){
+					if (extensionList[i].trim().length()>0){
+						capabilities.addSupportedExtension(extensionList[i]);
 					}
 				}
-				
-				// Set timestamp
-				capabilities.setTimestamp(cur.getLong(cur.getColumnIndex(RichAddressBookData.KEY_CAPABILITY_TIMESTAMP)));
 			}
-			cur.close();
+			
+			// Set timestamp
+			capabilities.setTimestamp(getLongValue(values, RichAddressBookData.KEY_CAPABILITY_TIMESTAMP));
 		}
 		
 		infos.setPresenceInfo(presenceInfo);
 		infos.setCapabilities(capabilities);
 
-		return infos;
+		return new ContactInfoCache.Entry(infos, rowId, photo, photoEtag);
+	}
+
+	/**
+	 * Load the photo-icon of a contact from the EAB
+	 * 
+	 * @param contact Contact number
+	 * @param entry Cache entry of the contact
+	 * @return Photo-icon or null in case of error
+	 */
+	private PhotoIcon loadContactPhotoIcon(String contact, ContactInfoCache.Entry entry) {
+		long rowId = entry.rowId;
+		if (rowId == INVALID_ID) {
+			rowId = getProfileRowId(contact);
+		}
+		PhotoIcon photoIcon = null;
+		try {
+			Uri photoUri = ContentUris.withAppendedId(RichAddressBookData.CONTENT_URI, rowId);
+			InputStream stream = ctx.getContentResolver().openInputStream(photoUri);
+			byte[] content = new byte[stream.available()];
+			stream.read(content, 0, content.length);
+			stream.close();
+			Bitmap bmp = BitmapFactory.decodeByteArray(content, 0, content.length);
+			if (bmp != null) {
+				photoIcon = new PhotoIcon(content, bmp.getWidth(), bmp.getHeight(), entry.photoEtag);
+			}
+		} catch (FileNotFoundException e) {
+			if (logger.isActivated()){
+				logger.error("Can't get the photo",e);
+			}
+		} catch (IOException e) {
+			if (logger.isActivated()){
+				logger.error("Can't get the photo",e);
+			}
+		}
+		return photoIcon;
 	}
 
 	/**
@@ -1320,6 +1424,7 @@ public final class ContactsManager {
 	public void flushContactProvider(){
 		String where = RichAddressBookData.KEY_CONTACT_NUMBER +"<> NULL";
 		ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, where, null);
+		contactInfoCache.clear();
 	}
 	
 	/**
@@ -1356,6 +1461,7 @@ public final class ContactsManager {
 					RichAddressBookData.KEY_CONTACT_NUMBER +"=?",
 					new String[]{contact});
 		}
+		contactInfoCache.remove(contact);
 	}
 
 	/**
@@ -1424,7 +1530,7 @@ public final class ContactsManager {
 	 * @return list containing all contacts that have been at least queried once for capabilities
 	 */
 	public List<String> getAllContacts(){
-		List<String> numbers = new ArrayList<String>();
+		LinkedHashSet<String> numbers = new LinkedHashSet<String>();
 		String[] projection = {
                 RichAddressBookData.KEY_CONTACT_NUMBER
         };
@@ -1436,13 +1542,10 @@ public final class ContactsManager {
         		null);
 		
 		while (cur.moveToNext()) {
-			String number = cur.getString(0);
-			if (!numbers.contains(number)){
-				numbers.add(number);
-			}
+			numbers.add(cur.getString(0));
 		}
 		cur.close();
-		return numbers;
+		return new ArrayList<String>(numbers);
 	}
 
     /**
@@ -1531,6 +1634,7 @@ public final class ContactsManager {
 		ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, 
 				RichAddressBookData.KEY_CONTACT_NUMBER +"=?" + " AND " + RichAddressBookData.KEY_PRESENCE_SHARING_STATUS + "=?",
 				new String[]{contact, Integer.toString(ContactInfo.RCS_CANCELLED)});
+		contactInfoCache.remove(contact);
 	}
 	
 	/**
@@ -2520,11 +2624,12 @@ public final class ContactsManager {
 	 * @return capabilities
 	 */
 	public Capabilities getContactCapabilities(String contact){
-		ContactInfo contactInfo = getContactInfo(contact);
-		if (contactInfo.getRcsStatus()==ContactInfo.NO_INFO){
+		// The photo-icon is not needed, only the cached infos are read
+		ContactInfoCache.Entry entry = getContactInfoEntry(PhoneUtils.extractNumberFromUri(contact));
+		if (entry.info.getRcsStatus()==ContactInfo.NO_INFO){
 			return null;
 		} else {
-			return contactInfo.getCapabilities();
+			return ContactInfoCache.copy(entry.info.getCapabilities());
 		}
 	}
 	
@@ -3141,6 +3246,49 @@ public final class ContactsManager {
     	return result;
     }
     
+    /**
+     * Get all the associations between a raw contact and a RCS raw contact, in one query
+     *
+     * @return Set of association keys
+     * @see #getAssociationKey(long, String)
+     */
+    public Set<String> getAssociatedRcsRawContacts() {
+    	HashSet<String> result = new HashSet<String>();
+    	Cursor cursor = ctx.getContentResolver().query(AggregationData.CONTENT_URI, 
+				new String[]{AggregationData.KEY_RAW_CONTACT_ID, AggregationData.KEY_RCS_NUMBER}, 
+				null, 
+				null,
+				null);
+    	if (cursor != null) {
+    		while (cursor.moveToNext()) {
+    			result.add(getAssociationKey(cursor.getLong(0), cursor.getString(1)));
+    		}
+    		cursor.close();
+    	}
+    	return result;
+    }
+
+    /**
+     * Returns the key of an association between a raw contact and a RCS raw contact
+     *
+     * @param rawContactId the id of the rawContact
+     * @param rcsNumber The RCS number
+     * @return Key
+     */
+    public static String getAssociationKey(long rawContactId, String rcsNumber) {
+    	return rawContactId + ";" + rcsNumber;
+    }
+
+    /**
+     * Is an account type the one of the SIM contacts
+     *
+     * @param accountType Account type of a raw contact
+     * @return Boolean
+     */
+    public static boolean isSimAccountType(String accountType) {
+    	return SIM_ACCOUNT_NAME.equals(accountType);
+    }
+
     /**
      * Utility to check if a phone number is associated to an entry in the rich address book provider
      *
@@ -4161,6 +4309,7 @@ public final class ContactsManager {
 	                ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI,
 	                        where,
 	                        selectionArg);
+	                contactInfoCache.remove(phoneNumber);
 	            }
 	        }
 	    } catch (Exception e) {
@@ -4223,6 +4372,7 @@ public final class ContactsManager {
 
         // Delete presence data
         ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, null, null);
+        contactInfoCache.clear();
     }
     
     /**
@@ -4270,18 +4420,54 @@ public final class ContactsManager {
     /**
      * Get boolean capability from database column
      * 
-     * @param cursor Cursor
+     * @param values Row values
      * @param column Column name
      * @return Boolean capability
      */
-    private boolean getCapabilityFromColumn(Cursor cursor, String column) {
-    	if (cursor.getInt(cursor.getColumnIndex(column)) == CapabilitiesLog.SUPPORTED) {
+    private boolean getCapabilityFromValues(ContentValues values, String column) {
+    	if (getIntValue(values, column) == CapabilitiesLog.SUPPORTED) {
     		return true;
     	} else {
     		return false;
     	}
     }
 
+    /**
+     * Get integer from database column, 0 if null
+     * 
+     * @param values Row values
+     * @param column Column name
+     * @return Integer
+     */
+    private static int getIntValue(ContentValues values, String column) {
+    	Integer value = values.getAsInteger(column);
+    	return (value != null) ? value : 0;
+    }
+
+    /**
+     * Get long from database column, 0 if null
+     * 
+     * @param values Row values
+     * @param column Column name
+     * @return Long
+     */
+    private static long getLongValue(ContentValues values, String column) {
+    	Long value = values.getAsLong(column);
+    	return (value != null) ? value : 0L;
+    }
+
+    /**
+     * Get double from database column, 0 if null
+     * 
+     * @param values Row values
+     * @param column Column name
+     * @return Double
+     */
+    private static double getDoubleValue(ContentValues values, String column) {
+    	Double value = values.getAsDouble(column);
+    	return (value != null) ? value : 0.0;
+    }
+
     /**
      * Set boolean capability to database column
      * 
@@ -35,6 +35,8 @@ import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
 
 import com.orangelabs.rcs.core.ims.service.ContactInfo;
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -80,31 +82,17 @@ public class RichAddressBookProvider extends ContentProvider {
 	 */
 	private Logger logger = Logger.getLogger(this.getClass().getName());
     
-    /**
-     * Helper class for opening, creating and managing database version control
-     */
-	private static class DatabaseHelper extends SQLiteOpenHelper{
-		private static final String DATABASE_NAME = "eab.db";
-		private static final int DATABASE_VERSION = 21;
-		
-        public DatabaseHelper(Context context) {
-            super(context, DATABASE_NAME, null, DATABASE_VERSION);
-        }
-            
-		@Override
-		public void onCreate(SQLiteDatabase db) {
-			// Create the eab_contacts table
-			createDb(db);
-		}
-
-		@Override
-		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + EAB_TABLE);
-            db.execSQL("DROP TABLE IF EXISTS " + AGGREGATION_TABLE);
-            onCreate(db);
-		}
+	/**
+	 * Database name
+	 */
+	private static final String DATABASE_NAME = "eab.db";
 
-		private void createDb(SQLiteDatabase db) {
+	/**
+	 * Schema migration of the database, version 21 is the first one whose
+	 * rows are kept on upgrade
+	 */
+	private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(21) {
+		public void execute(SQLiteDatabase db) {
 			db.execSQL("CREATE TABLE IF NOT EXISTS " + EAB_TABLE + " ("
 					+ RichAddressBookData.KEY_ID + " integer primary key autoincrement, "
 					+ RichAddressBookData.KEY_CONTACT_NUMBER + " TEXT, "
@@ -148,6 +136,43 @@ public class RichAddressBookProvider extends ContentProvider {
 					+ AggregationData.KEY_RAW_CONTACT_ID + " long, "
 					+ AggregationData.KEY_RCS_RAW_CONTACT_ID + " long)");
 		}
+	}).addIndex(22, EAB_TABLE, RichAddressBookData.KEY_CONTACT_NUMBER)
+			.addIndex(22, AGGREGATION_TABLE, AggregationData.KEY_RCS_NUMBER, AggregationData.KEY_RAW_CONTACT_ID)
+			.addIndex(22, AGGREGATION_TABLE, AggregationData.KEY_RCS_RAW_CONTACT_ID);
+
+    /**
+     * Helper class for opening, creating and managing database version control
+     */
+	private static class DatabaseHelper extends SQLiteOpenHelper{
+		private static final int DATABASE_VERSION = 22;
+		
+        public DatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+            
+		@Override
+		public void onCreate(SQLiteDatabase db) {
+			// Create the eab_contacts table
+			MIGRATION.create(db, DATABASE_VERSION);
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+			if (!MIGRATION.upgrade(db, oldVersion, newVersion)) {
+				db.execSQL("DROP TABLE IF EXISTS " + EAB_TABLE);
+				db.execSQL("DROP TABLE IF EXISTS " + AGGREGATION_TABLE);
+				onCreate(db);
+			}
+		}
+	}
+
+	/**
+	 * Returns the schema migration of the database
+	 *
+	 * @return Migration
+	 */
+	public static DatabaseMigration getMigration() {
+		return MIGRATION;
 	}
 
 	@Override 
@@ -43,6 +43,9 @@ public interface FtHttpColumns extends BaseColumns {
     String MESSAGE_ID = "message_id";
 	String IS_GROUP = "is_group";
 	String CHAT_SESSION_ID = "chat_session_id";
+	String RANGES = "ranges";
+	String ATTEMPTS = "attempts";
+	String NEXT_ATTEMPT = "next_attempt";
 	
     String DEFAULT_ORDER = _ID;
 
@@ -63,7 +66,10 @@ public interface FtHttpColumns extends BaseColumns {
             THUMBNAIL,
             MESSAGE_ID,
             IS_GROUP,
-            CHAT_SESSION_ID
+            CHAT_SESSION_ID,
+            RANGES,
+            ATTEMPTS,
+            NEXT_ATTEMPT
     };
     // @formatter:on
 }
\ No newline at end of file
@@ -29,6 +29,8 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -67,18 +69,16 @@ public class FtHttpProvider extends ContentProvider {
 	private SQLiteOpenHelper openHelper;
 
 	/**
-     * Helper class for opening, creating and managing database version control
-     */
-    private static class DatabaseHelper extends SQLiteOpenHelper {
-    	private static final String DATABASE_NAME = "fthttp.db";
-    	private static final int DATABASE_VERSION = 1;
-    
-    	public DatabaseHelper(Context ctx) {
-            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
-        }
+	 * Database name
+	 */
+	private static final String DATABASE_NAME = "fthttp.db";
 
-    	@Override
-        public void onCreate(SQLiteDatabase db) {
+	/**
+	 * Schema migration of the database, version 1 is the first one whose
+	 * rows are kept on upgrade
+	 */
+	private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(1) {
+		public void execute(SQLiteDatabase db) {
     		 // @formatter:off
     		 db.execSQL("CREATE TABLE IF NOT EXISTS "
     		            	+ FtHttpColumns.TABLE + " ( "
@@ -101,14 +101,45 @@ public class FtHttpProvider extends ContentProvider {
     			            +");"
     			            );
     		 // @formatter:on
-         }
+		}
+	}).addIndex(2, FtHttpColumns.TABLE, FtHttpColumns.OU_TID)
+			.addIndex(2, FtHttpColumns.TABLE, FtHttpColumns.IN_URL)
+			.addColumn(3, FtHttpColumns.TABLE, FtHttpColumns.RANGES, "TEXT")
+			.addColumn(4, FtHttpColumns.TABLE, FtHttpColumns.ATTEMPTS, "INTEGER DEFAULT 0")
+			.addColumn(4, FtHttpColumns.TABLE, FtHttpColumns.NEXT_ATTEMPT, "INTEGER DEFAULT 0");
+
+	/**
+     * Helper class for opening, creating and managing database version control
+     */
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+    	private static final int DATABASE_VERSION = 4;
+    
+    	public DatabaseHelper(Context ctx) {
+            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+    	@Override
+        public void onCreate(SQLiteDatabase db) {
+    		MIGRATION.create(db, DATABASE_VERSION);
+        }
 
          @Override
          public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-        	 db.execSQL("DROP TABLE IF EXISTS " + FtHttpColumns.TABLE);
-             onCreate(db);
+        	 if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+        		 db.execSQL("DROP TABLE IF EXISTS " + FtHttpColumns.TABLE);
+        		 onCreate(db);
+        	 }
          }
     }
+
+	/**
+	 * Returns the schema migration of the database
+	 *
+	 * @return Migration
+	 */
+	public static DatabaseMigration getMigration() {
+		return MIGRATION;
+	}
     
 	@Override
 	public boolean onCreate() {
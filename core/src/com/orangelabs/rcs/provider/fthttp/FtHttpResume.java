@@ -86,6 +86,16 @@ public abstract class FtHttpResume {
 	 */
 	final private boolean isGroup;
 
+	/**
+	 * Number of failed attempts to resume
+	 */
+	private int attempts = 0;
+
+	/**
+	 * Time before which the transfer is not resumed
+	 */
+	private long nextAttempt = 0;
+
 	/**
 	 * Works just like FtHttpResume(Direction,String,byte[],String,String,String,String,String,boolean,Date) except the date
 	 * is always null
@@ -194,6 +204,27 @@ public abstract class FtHttpResume {
 		return isGroup;
 	}
 
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public long getNextAttempt() {
+		return nextAttempt;
+	}
+
+	/**
+	 * Set the retry schedule of the transfer
+	 * 
+	 * @param attempts
+	 *            the {@code attempts} value.
+	 * @param nextAttempt
+	 *            the {@code nextAttempt} value.
+	 */
+	public void setSchedule(int attempts, long nextAttempt) {
+		this.attempts = attempts;
+		this.nextAttempt = nextAttempt;
+	}
+
 	@Override
 	public String toString() {
 		return "FtHttpResume [date=" + date + ", dir=" + ftHttpDirection + ", file=" + filename + "]";
@@ -61,6 +61,30 @@ public interface FtHttpResumeDao {
 	 */
 	public Uri insert(FtHttpResume ftHttpResume);
 
+	/**
+	 * Update the progress of the byte ranges of a download
+	 * 
+	 * @param url
+	 *            the {@code url} value.
+	 * @param ranges
+	 *            the {@code ranges} value.
+	 * @return number of rows updated
+	 */
+	public int updateDownloadRanges(String url, String ranges);
+
+	/**
+	 * Update the retry schedule of an entry
+	 * 
+	 * @param ftHttpResume
+	 *            the {@code ftHttpResume} value.
+	 * @param attempts
+	 *            the {@code attempts} value.
+	 * @param nextAttempt
+	 *            the {@code nextAttempt} value.
+	 * @return number of rows updated
+	 */
+	public int updateSchedule(FtHttpResume ftHttpResume, int attempts, long nextAttempt);
+
 	/**
 	 * Delete entry in fthttp table
 	 * 
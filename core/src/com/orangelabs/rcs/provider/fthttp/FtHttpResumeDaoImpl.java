@@ -99,18 +99,21 @@ public class FtHttpResumeDaoImpl implements FtHttpResumeDao {
 					byte[] thumbnail = cursor.getBlob(12);
 					boolean isGroup = cursor.getInt(14) != 0;
 					String chatSessionId = cursor.getString(15);
+					FtHttpResume ftHttpResume;
 					if (FtHttpDirection.values()[direction] == FtHttpDirection.INCOMING) {
 						String url = cursor.getString(2);
 						MmContent content = ContentManager.createMmContentFromMime(url, mimeType, size);
 						String messageId = cursor.getString(13);
-						result.add(new FtHttpResumeDownload(file, thumbnail, content, messageId, contact, displayName, chatId,
-								sessionId, chatSessionId, isGroup));
+						ftHttpResume = new FtHttpResumeDownload(file, thumbnail, content, messageId, contact, displayName,
+								chatId, sessionId, chatSessionId, isGroup, cursor.getString(16));
 					} else {
 						String tid = cursor.getString(1);
 						MmContent content = ContentManager.createMmContentFromMime(file, mimeType, size);
-						result.add(new FtHttpResumeUpload(file, thumbnail, content, tid, contact, displayName, chatId, sessionId,
-								chatSessionId, isGroup));
+						ftHttpResume = new FtHttpResumeUpload(file, thumbnail, content, tid, contact, displayName, chatId,
+								sessionId, chatSessionId, isGroup);
 					}
+					ftHttpResume.setSchedule(cursor.getInt(17), cursor.getLong(18));
+					result.add(ftHttpResume);
 				}
 			}
 		} catch (Exception e) {
@@ -143,6 +146,7 @@ public class FtHttpResumeDaoImpl implements FtHttpResumeDao {
 			FtHttpResumeDownload download = (FtHttpResumeDownload) ftHttpResume;
 			values.put(FtHttpColumns.IN_URL, download.getUrl());
 			values.put(FtHttpColumns.MESSAGE_ID, download.getMessageId());
+			values.put(FtHttpColumns.RANGES, download.getRanges());
 			if (logger.isActivated()) {
 				logger.debug("insert " + download + ")");
 			}
@@ -158,6 +162,26 @@ public class FtHttpResumeDaoImpl implements FtHttpResumeDao {
 		return cr.insert(FtHttpColumns.CONTENT_URI, values);
 	}
 
+	@Override
+	public int updateDownloadRanges(String url, String ranges) {
+		ContentValues values = new ContentValues();
+		values.put(FtHttpColumns.RANGES, ranges);
+		String selection = FtHttpColumns.IN_URL + " = ? AND " + FtHttpColumns.DIRECTION + " = ?";
+		String[] selectionArgs = { url, "" + FtHttpDirection.INCOMING.ordinal() };
+		return cr.update(FtHttpProvider.notify(FtHttpColumns.CONTENT_URI, false), values, selection, selectionArgs);
+	}
+
+	@Override
+	public int updateSchedule(FtHttpResume ftHttpResume, int attempts, long nextAttempt) {
+		ftHttpResume.setSchedule(attempts, nextAttempt);
+		ContentValues values = new ContentValues();
+		values.put(FtHttpColumns.ATTEMPTS, attempts);
+		values.put(FtHttpColumns.NEXT_ATTEMPT, nextAttempt);
+		String selection = FtHttpColumns.SESSION_ID + " = ?";
+		String[] selectionArgs = { ftHttpResume.getSessionId() };
+		return cr.update(FtHttpProvider.notify(FtHttpColumns.CONTENT_URI, false), values, selection, selectionArgs);
+	}
+
 	@Override
 	public int deleteAll() {
 		return cr.delete(FtHttpColumns.CONTENT_URI, null, null);
@@ -229,7 +253,7 @@ public class FtHttpResumeDaoImpl implements FtHttpResumeDao {
 					String chatSessionId = cursor.getString(15);
 					MmContent content = ContentManager.createMmContentFromMime(url, mimeType, size);
 					return new FtHttpResumeDownload(file, thumbnail, content, messageId, contact, displayName, chatId, sessionId,
-							chatSessionId, isGroup);
+							chatSessionId, isGroup, cursor.getString(16));
 				}
 			}
 		} catch (Exception e) {
@@ -38,6 +38,11 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 	 */
 	final private String messageId;
 
+	/**
+	 * The progress of the byte ranges downloaded concurrently or null
+	 */
+	final private String ranges;
+
 	/**
 	 * Creates a FT HTTP resume download data object (immutable)
 	 * 
@@ -84,9 +89,41 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 	 */
 	public FtHttpResumeDownload(String file, byte[] thumbnail, MmContent content, String messageId, String contact,
 			String displayName, String chatId, String sessionId, String chatSessionId, boolean isGroup) {
+		this(file, thumbnail, content, messageId, contact, displayName, chatId, sessionId, chatSessionId, isGroup, null);
+	}
+
+	/**
+	 * Creates a FT HTTP resume download data object
+	 * 
+	 * @param file
+	 *            the {@code file} value.
+	 * @param thumbnail
+	 *            the {@code thumbnail} value.
+	 * @param content
+	 *            the {@code content} content.
+	 * @param messageId
+	 *            the {@code messageId} value.
+	 * @param contact
+	 *            the {@code contact} value.
+	 * @param displayName
+	 *            the {@code displayName} value.
+	 * @param chatId
+	 *            the {@code chatId} value.
+	 * @param sessionId
+	 *            the {@code sessionId} value.
+	 * @param chatSessionId
+	 *            the {@code chatSessionId} value.
+	 * @param isGroup
+	 *            the {@code isGroup} value.
+	 * @param ranges
+	 *            the {@code ranges} value.
+	 */
+	public FtHttpResumeDownload(String file, byte[] thumbnail, MmContent content, String messageId, String contact,
+			String displayName, String chatId, String sessionId, String chatSessionId, boolean isGroup, String ranges) {
 		super(FtHttpDirection.INCOMING, file, content.getEncoding(), content.getSize(), thumbnail, contact, displayName, chatId, sessionId, chatSessionId, isGroup);
 		this.url = content.getUrl();
 		this.messageId = messageId;
+		this.ranges = ranges;
 		if (url == null || messageId == null)
 			throw new IllegalArgumentException("Invalid argument");
 	}
@@ -99,6 +136,10 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 		return messageId;
 	}
 
+	public String getRanges() {
+		return ranges;
+	}
+
 	@Override
 	public String toString() {
 		return "FtHttpResumeDownload [file=" + getFilename() + ", mimeType=" + getMimetype() + ", size=" + getSize() + ", messageId=" + messageId
@@ -2,12 +2,12 @@ package com.orangelabs.rcs.provider.ipcall;
 
 import java.util.Calendar;
 
-import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
 
 import com.orangelabs.rcs.core.content.MmContent;
+import com.orangelabs.rcs.provider.HistoryWriter;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -23,9 +23,9 @@ public class IPCallHistory {
 	private static IPCallHistory instance = null;
 
 	/**
-	 * Content resolver
+	 * Background writer of the calls
 	 */
-	private ContentResolver cr;
+	private HistoryWriter writer;
 	
 	/**
 	 * Database URI
@@ -65,7 +65,8 @@ public class IPCallHistory {
 	private IPCallHistory(Context ctx) {
 		super();
 		
-        this.cr = ctx.getContentResolver();
+        HistoryWriter.createInstance(ctx);
+        this.writer = HistoryWriter.getInstance();
     }
 	
 	/**
@@ -78,7 +79,7 @@ public class IPCallHistory {
 	 * @param videocontent Video content
 	 * @param status Call status
 	 */
-	public Uri addCall(String contact, String sessionId, int direction, MmContent audiocontent, MmContent videocontent, int status) {
+	public void addCall(String contact, String sessionId, int direction, MmContent audiocontent, MmContent videocontent, int status) {
 		if(logger.isActivated()){
 			logger.debug("Add new call entry for contact " + contact + ": session=" + sessionId + ", status=" + status);
 		}
@@ -91,7 +92,7 @@ public class IPCallHistory {
 		values.put(IPCallData.KEY_TIMESTAMP, Calendar.getInstance().getTimeInMillis());
 		values.put(IPCallData.KEY_STATUS, status);
 		
-		return cr.insert(databaseUri, values);
+		writer.insert(databaseUri, IPCallData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -107,6 +108,6 @@ public class IPCallHistory {
 		
 		ContentValues values = new ContentValues();
 		values.put(IPCallData.KEY_STATUS, status);
-		cr.update(databaseUri, values, IPCallData.KEY_SESSION_ID + " = " + sessionId, null);
+		writer.update(databaseUri, IPCallData.KEY_SESSION_ID, sessionId, values);
 	}
 }
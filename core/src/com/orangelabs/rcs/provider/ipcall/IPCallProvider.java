@@ -1,9 +1,14 @@
 package com.orangelabs.rcs.provider.ipcall;
 
+import java.util.ArrayList;
+
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -14,6 +19,8 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import com.gsma.services.rcs.ipcall.IPCallLog;
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 
 /**
  * IP call history provider
@@ -53,11 +60,27 @@ public class IPCallProvider extends ContentProvider {
      */
     public static final String DATABASE_NAME = "ipcall.db";
 
+    /**
+     * Schema migration of the database, version 1 is the first one whose
+     * rows are kept on upgrade
+     */
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(1) {
+        public void execute(SQLiteDatabase db) {
+        	db.execSQL("CREATE TABLE " + TABLE + " ("
+        			+ IPCallData.KEY_ID + " integer primary key autoincrement,"
+        			+ IPCallData.KEY_SESSION_ID + " TEXT,"
+        			+ IPCallData.KEY_CONTACT + " TEXT,"
+        			+ IPCallData.KEY_STATUS + " integer,"
+        			+ IPCallData.KEY_DIRECTION + " integer,"
+        			+ IPCallData.KEY_TIMESTAMP + " long);");
+        }
+    }).addIndex(2, TABLE, IPCallData.KEY_SESSION_ID);
+
     /**
      * Helper class for opening, creating and managing database version control
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 1;
+        private static final int DATABASE_VERSION = 2;
 
         public DatabaseHelper(Context ctx) {
             super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
@@ -65,22 +88,27 @@ public class IPCallProvider extends ContentProvider {
 
         @Override
         public void onCreate(SQLiteDatabase db) {
-        	db.execSQL("CREATE TABLE " + TABLE + " ("
-        			+ IPCallData.KEY_ID + " integer primary key autoincrement,"
-        			+ IPCallData.KEY_SESSION_ID + " TEXT,"
-        			+ IPCallData.KEY_CONTACT + " TEXT,"
-        			+ IPCallData.KEY_STATUS + " integer,"
-        			+ IPCallData.KEY_DIRECTION + " integer,"
-        			+ IPCallData.KEY_TIMESTAMP + " long);");
+            MIGRATION.create(db, DATABASE_VERSION);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-            onCreate(db);
+            if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+                onCreate(db);
+            }
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -171,6 +199,23 @@ public class IPCallProvider extends ContentProvider {
 	}
 
 	
+	/**
+	 * Apply the operations in a single transaction
+	 */
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+			throws OperationApplicationException {
+		SQLiteDatabase db = openHelper.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			ContentProviderResult[] results = super.applyBatch(operations);
+			db.setTransactionSuccessful();
+			return results;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
 	@Override
 	public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
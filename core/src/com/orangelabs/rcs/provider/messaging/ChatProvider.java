@@ -18,12 +18,22 @@
 
 package com.orangelabs.rcs.provider.messaging;
 
+import java.util.ArrayList;
+
+import com.gsma.services.rcs.chat.ChatLog;
+import com.gsma.services.rcs.chat.GeolocMessage;
+import com.orangelabs.rcs.provider.BackfillStep;
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 import com.orangelabs.rcs.utils.PhoneUtils;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -44,6 +54,29 @@ public class ChatProvider extends ContentProvider {
 	 */
     private static final String TABLE_CHAT = "chat";
     private static final String TABLE_MESSAGE = "message";
+    private static final String TABLE_CONVERSATION = "conversation";
+    private static final String TABLE_SEARCH = "search_item";
+    private static final String TABLE_SEARCH_TEXT = "search_text";
+    private static final String TABLE_SEARCH_STATS = "search_stats";
+
+    /**
+     * Columns of the message table copied in the conversation table for the
+     * last message
+     */
+    private static final String[] LAST_MESSAGE_COLUMNS = {
+        MessageData.KEY_MSG_ID, MessageData.KEY_CONTACT, MessageData.KEY_TYPE, MessageData.KEY_CONTENT,
+        MessageData.KEY_CONTENT_TYPE, MessageData.KEY_DIRECTION, MessageData.KEY_STATUS, MessageData.KEY_TIMESTAMP
+    };
+
+    /**
+     * Default projection of a page of messages, without the body
+     */
+    private static final String[] PAGE_PROJECTION = {
+        MessageData.KEY_ID, MessageData.KEY_CHAT_ID, MessageData.KEY_CONTACT, MessageData.KEY_MSG_ID,
+        MessageData.KEY_TYPE, MessageData.KEY_CONTENT_TYPE, MessageData.KEY_DIRECTION, MessageData.KEY_STATUS,
+        MessageData.KEY_TIMESTAMP, MessageData.KEY_TIMESTAMP_SENT, MessageData.KEY_TIMESTAMP_DELIVERED,
+        MessageData.KEY_TIMESTAMP_DISPLAYED, MessageData.KEY_FT_ID
+    };
 
 	// Create the constants used to differentiate between the different URI requests
 	private static final int CHATS = 1;
@@ -56,6 +89,12 @@ public class ChatProvider extends ContentProvider {
     private static final int RCSAPI_MESSAGES = 7;
     private static final int RCSAPI_MESSAGE_ID = 8;
 
+    private static final int CONVERSATIONS = 9;
+    private static final int RCSAPI_CONVERSATIONS = 10;
+
+    private static final int SEARCH = 11;
+    private static final int RCSAPI_SEARCH = 12;
+
 	// Allocate the UriMatcher object
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
     static {
@@ -67,6 +106,10 @@ public class ChatProvider extends ContentProvider {
         uriMatcher.addURI("com.orangelabs.rcs.chat", "message/#", MESSAGE_ID);
 		uriMatcher.addURI("com.gsma.services.rcs.provider.chat", "message", RCSAPI_MESSAGES);
 		uriMatcher.addURI("com.gsma.services.rcs.provider.chat", "message/*", RCSAPI_MESSAGE_ID);
+        uriMatcher.addURI("com.orangelabs.rcs.chat", "conversation", CONVERSATIONS);
+		uriMatcher.addURI("com.gsma.services.rcs.provider.chat", "conversation", RCSAPI_CONVERSATIONS);
+        uriMatcher.addURI("com.orangelabs.rcs.chat", "search", SEARCH);
+		uriMatcher.addURI("com.gsma.services.rcs.provider.chat", "search", RCSAPI_SEARCH);
     }
 
     /**
@@ -80,18 +123,12 @@ public class ChatProvider extends ContentProvider {
     public static final String DATABASE_NAME = "chat.db";
 
     /**
-     * Helper class for opening, creating and managing database version control
+     * Schema migration of the database, version 9 is the first one whose
+     * rows are kept on upgrade
      */
-    private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 9;
-
-        public DatabaseHelper(Context ctx) {
-            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
-        }
-
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(9) {
         // @formatter:off
-        @Override
-        public void onCreate(SQLiteDatabase db) {
+        public void execute(SQLiteDatabase db) {
         	db.execSQL("CREATE TABLE " + TABLE_CHAT + " ("
         			+ ChatData.KEY_ID + " integer primary key autoincrement,"
         			+ ChatData.KEY_CHAT_ID + " TEXT,"
@@ -119,15 +156,298 @@ public class ChatProvider extends ContentProvider {
         			+ MessageData.KEY_FT_ID + " TEXT);");
         }
         // @formatter:on
-        
+    }).addStep(new MigrationStep(10) {
+        // Indexes on the message and chat lookups
+        public void execute(SQLiteDatabase db) {
+            createIndexes(db);
+        }
+    }).addStep(new MigrationStep(11) {
+        // Conversation summaries
+        public void execute(SQLiteDatabase db) {
+            createConversations(db);
+        }
+    }).addStep(new MigrationStep(12) {
+        // Full-text search index
+        public void execute(SQLiteDatabase db) {
+            createSearchIndex(db);
+        }
+    }).addStep(new BackfillStep(12, TABLE_MESSAGE, new String[] { MessageData.KEY_TYPE,
+            MessageData.KEY_CONTENT_TYPE, MessageData.KEY_CONTENT, MessageData.KEY_CHAT_ID,
+            MessageData.KEY_TIMESTAMP }, MessageData.KEY_TYPE + " IN (" + ChatLog.Message.Type.CONTENT + ","
+            + ChatLog.Message.Type.FILE_TRANSFER + ")") {
+        // Index the existing messages
+        protected void backfill(SQLiteDatabase db, long id, Cursor cursor) {
+            String text = RichMessagingHistory.getSearchText(cursor.getInt(1), cursor.getString(2),
+                    cursor.getBlob(3));
+            if (text != null) {
+                insertSearchEntry(db, RichMessagingHistory.getSearchValues(ChatLog.Search.Source.MESSAGE, id,
+                        cursor.getString(4), cursor.getLong(5), text));
+            }
+        }
+    }).addStep(new BackfillStep(12, TABLE_CHAT, new String[] { ChatData.KEY_SUBJECT, ChatData.KEY_CHAT_ID,
+            ChatData.KEY_TIMESTAMP }, ChatData.KEY_SUBJECT + " NOT NULL") {
+        // Index the subjects of the existing group chats
+        protected void backfill(SQLiteDatabase db, long id, Cursor cursor) {
+            insertSearchEntry(db, RichMessagingHistory.getSearchValues(ChatLog.Search.Source.GROUP_CHAT, id,
+                    cursor.getString(2), cursor.getLong(3), cursor.getString(1)));
+        }
+    }).addStep(new BackfillStep(13, TABLE_MESSAGE, new String[] { MessageData.KEY_CONTENT },
+            MessageData.KEY_CONTENT_TYPE + " = '" + GeolocMessage.MIME_TYPE + "' AND hex(substr("
+            + MessageData.KEY_CONTENT + ",1,2)) <> 'ACED'") {
+        // Serialize again the geolocs written with the compact encoding, which
+        // the readers of the previous versions of the API can't decode
+        protected void backfill(SQLiteDatabase db, long id, Cursor cursor) {
+            byte[] blob = ChatLog.getBlobFromGeoloc(ChatLog.getGeolocFromBlob(cursor.getBlob(1)));
+            if (blob != null) {
+                ContentValues values = new ContentValues();
+                values.put(MessageData.KEY_CONTENT, blob);
+                db.update(TABLE_MESSAGE, values, MessageData.KEY_ID + " = " + id, null);
+            }
+        }
+    });
+
+    /**
+     * Helper class for opening, creating and managing database version control
+     */
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        private static final int DATABASE_VERSION = 13;
+
+        public DatabaseHelper(Context ctx) {
+            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            MIGRATION.create(db, DATABASE_VERSION);
+        }
+
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_CHAT);
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGE);
-            onCreate(db);
+            if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_CHAT);
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGE);
+                onCreate(db);
+            }
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
+    /**
+     * Create the indexes used by the lookups by message ID, by chat
+     * ordered by time and by file transfer ID
+     *
+     * @param db Database
+     */
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + TABLE_MESSAGE + "_" + MessageData.KEY_MSG_ID + "_idx ON "
+                + TABLE_MESSAGE + "(" + MessageData.KEY_MSG_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + TABLE_MESSAGE + "_" + MessageData.KEY_CHAT_ID + "_idx ON "
+                + TABLE_MESSAGE + "(" + MessageData.KEY_CHAT_ID + "," + MessageData.KEY_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + TABLE_MESSAGE + "_" + MessageData.KEY_FT_ID + "_idx ON "
+                + TABLE_MESSAGE + "(" + MessageData.KEY_FT_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + TABLE_CHAT + "_" + ChatData.KEY_CHAT_ID + "_idx ON "
+                + TABLE_CHAT + "(" + ChatData.KEY_CHAT_ID + ")");
+    }
+
+    /**
+     * Create the conversation table, filled from the existing messages then
+     * maintained by triggers on each insert, update and delete of a message
+     *
+     * @param db Database
+     */
+    static void createConversations(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CONVERSATION + " ("
+                + ConversationData.KEY_ID + " integer primary key autoincrement,"
+                + ConversationData.KEY_CHAT_ID + " TEXT UNIQUE,"
+                + ConversationData.KEY_LAST_ROW_ID + " integer,"
+                + MessageData.KEY_MSG_ID + " TEXT,"
+                + MessageData.KEY_CONTACT + " TEXT,"
+                + MessageData.KEY_TYPE + " integer,"
+                + MessageData.KEY_CONTENT + " BLOB,"
+                + MessageData.KEY_CONTENT_TYPE + " TEXT,"
+                + MessageData.KEY_DIRECTION + " integer,"
+                + MessageData.KEY_STATUS + " integer,"
+                + MessageData.KEY_TIMESTAMP + " long,"
+                + ConversationData.KEY_UNREAD_COUNT + " integer DEFAULT 0,"
+                + ConversationData.KEY_MESSAGE_COUNT + " integer DEFAULT 0);");
+
+        db.execSQL("INSERT INTO " + TABLE_CONVERSATION + " (" + ConversationData.KEY_CHAT_ID + ","
+                + ConversationData.KEY_UNREAD_COUNT + "," + ConversationData.KEY_MESSAGE_COUNT + ") SELECT "
+                + MessageData.KEY_CHAT_ID + ",SUM(" + isUnread("") + "),COUNT(*) FROM " + TABLE_MESSAGE
+                + " WHERE " + MessageData.KEY_CHAT_ID + " NOT NULL GROUP BY " + MessageData.KEY_CHAT_ID);
+        db.execSQL(refreshLastMessage("1"));
+
+        // Insert: the counters are incremented and the message becomes the last one if it is the most recent
+        StringBuilder copy = new StringBuilder(ConversationData.KEY_LAST_ROW_ID + "=NEW." + MessageData.KEY_ID);
+        for (String column : LAST_MESSAGE_COLUMNS) {
+            copy.append(',').append(column).append("=NEW.").append(column);
+        }
+        db.execSQL("CREATE TRIGGER " + TABLE_MESSAGE + "_insert_trigger AFTER INSERT ON " + TABLE_MESSAGE
+                + " WHEN NEW." + MessageData.KEY_CHAT_ID + " NOT NULL BEGIN "
+                + "INSERT OR IGNORE INTO " + TABLE_CONVERSATION + " (" + ConversationData.KEY_CHAT_ID
+                + ") VALUES (NEW." + MessageData.KEY_CHAT_ID + ");"
+                + "UPDATE " + TABLE_CONVERSATION + " SET "
+                + ConversationData.KEY_MESSAGE_COUNT + "=" + ConversationData.KEY_MESSAGE_COUNT + "+1,"
+                + ConversationData.KEY_UNREAD_COUNT + "=" + ConversationData.KEY_UNREAD_COUNT + "+" + isUnread("NEW.")
+                + " WHERE " + ConversationData.KEY_CHAT_ID + "=NEW." + MessageData.KEY_CHAT_ID + ";"
+                + "UPDATE " + TABLE_CONVERSATION + " SET " + copy
+                + " WHERE " + ConversationData.KEY_CHAT_ID + "=NEW." + MessageData.KEY_CHAT_ID
+                + " AND (" + ConversationData.KEY_LAST_ROW_ID + " IS NULL"
+                + " OR " + MessageData.KEY_TIMESTAMP + "<NEW." + MessageData.KEY_TIMESTAMP
+                + " OR (" + MessageData.KEY_TIMESTAMP + "=NEW." + MessageData.KEY_TIMESTAMP
+                + " AND " + ConversationData.KEY_LAST_ROW_ID + "<NEW." + MessageData.KEY_ID + "));"
+                + "END");
+
+        // Update: the counters move from the old values to the new ones, the last message is read
+        // again if the message was the last one or if its chat or its timestamp have changed
+        db.execSQL("CREATE TRIGGER " + TABLE_MESSAGE + "_update_trigger AFTER UPDATE ON " + TABLE_MESSAGE
+                + " BEGIN "
+                + "INSERT OR IGNORE INTO " + TABLE_CONVERSATION + " (" + ConversationData.KEY_CHAT_ID
+                + ") SELECT NEW." + MessageData.KEY_CHAT_ID + " WHERE NEW." + MessageData.KEY_CHAT_ID + " NOT NULL;"
+                + "UPDATE " + TABLE_CONVERSATION + " SET "
+                + ConversationData.KEY_MESSAGE_COUNT + "=" + ConversationData.KEY_MESSAGE_COUNT + "-1,"
+                + ConversationData.KEY_UNREAD_COUNT + "=" + ConversationData.KEY_UNREAD_COUNT + "-" + isUnread("OLD.")
+                + " WHERE " + ConversationData.KEY_CHAT_ID + "=OLD." + MessageData.KEY_CHAT_ID + ";"
+                + "UPDATE " + TABLE_CONVERSATION + " SET "
+                + ConversationData.KEY_MESSAGE_COUNT + "=" + ConversationData.KEY_MESSAGE_COUNT + "+1,"
+                + ConversationData.KEY_UNREAD_COUNT + "=" + ConversationData.KEY_UNREAD_COUNT + "+" + isUnread("NEW.")
+                + " WHERE " + ConversationData.KEY_CHAT_ID + "=NEW." + MessageData.KEY_CHAT_ID + ";"
+                + refreshLastMessage(ConversationData.KEY_CHAT_ID + " IN (OLD." + MessageData.KEY_CHAT_ID
+                        + ",NEW." + MessageData.KEY_CHAT_ID + ") AND (" + ConversationData.KEY_LAST_ROW_ID
+                        + "=NEW." + MessageData.KEY_ID
+                        + " OR OLD." + MessageData.KEY_CHAT_ID + " IS NOT NEW." + MessageData.KEY_CHAT_ID
+                        + " OR OLD." + MessageData.KEY_TIMESTAMP + " IS NOT NEW." + MessageData.KEY_TIMESTAMP + ")") + ";"
+                + "DELETE FROM " + TABLE_CONVERSATION + " WHERE " + ConversationData.KEY_CHAT_ID + "=OLD."
+                + MessageData.KEY_CHAT_ID + " AND " + ConversationData.KEY_MESSAGE_COUNT + "<=0;"
+                + "END");
+
+        // Delete: the counters are decremented, the last message is read again if it was the deleted one
+        db.execSQL("CREATE TRIGGER " + TABLE_MESSAGE + "_delete_trigger AFTER DELETE ON " + TABLE_MESSAGE
+                + " BEGIN "
+                + "UPDATE " + TABLE_CONVERSATION + " SET "
+                + ConversationData.KEY_MESSAGE_COUNT + "=" + ConversationData.KEY_MESSAGE_COUNT + "-1,"
+                + ConversationData.KEY_UNREAD_COUNT + "=" + ConversationData.KEY_UNREAD_COUNT + "-" + isUnread("OLD.")
+                + " WHERE " + ConversationData.KEY_CHAT_ID + "=OLD." + MessageData.KEY_CHAT_ID + ";"
+                + "DELETE FROM " + TABLE_CONVERSATION + " WHERE " + ConversationData.KEY_CHAT_ID + "=OLD."
+                + MessageData.KEY_CHAT_ID + " AND " + ConversationData.KEY_MESSAGE_COUNT + "<=0;"
+                + refreshLastMessage(ConversationData.KEY_CHAT_ID + "=OLD." + MessageData.KEY_CHAT_ID
+                        + " AND " + ConversationData.KEY_LAST_ROW_ID + "=OLD." + MessageData.KEY_ID) + ";"
+                + "END");
+    }
+
+    /**
+     * Create the full-text search index: the entries are in a regular table
+     * and their text in a full-text table sharing the row IDs. The entries
+     * are removed by triggers when their message or group chat is deleted.
+     * <p>
+     * The index is an FTS3 table, FTS4 being missing from the SQLite of the
+     * oldest supported platforms. The length of each entry and the totals of
+     * the index needed by the ranking, which only FTS4 gives, are kept in the
+     * entries table and in a statistics table updated by triggers.
+     *
+     * @param db Database
+     */
+    static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SEARCH + " ("
+                + SearchData.KEY_ID + " integer primary key autoincrement,"
+                + SearchData.KEY_SOURCE + " integer,"
+                + SearchData.KEY_SOURCE_ID + " integer,"
+                + SearchData.KEY_CHAT_ID + " TEXT,"
+                + SearchData.KEY_TIMESTAMP + " long,"
+                + SearchData.KEY_LENGTH + " integer);");
+        db.execSQL("CREATE INDEX " + TABLE_SEARCH + "_" + SearchData.KEY_SOURCE_ID + "_idx ON " + TABLE_SEARCH
+                + "(" + SearchData.KEY_SOURCE_ID + "," + SearchData.KEY_SOURCE + ")");
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SEARCH_TEXT + " USING fts3(" + SearchData.KEY_TEXT + ")");
+        db.execSQL("CREATE TABLE " + TABLE_SEARCH_STATS + " ("
+                + SearchData.KEY_DOCUMENTS + " integer,"
+                + SearchData.KEY_LENGTH + " integer);");
+        db.execSQL("INSERT INTO " + TABLE_SEARCH_STATS + " VALUES (0,0)");
+
+        db.execSQL("CREATE TRIGGER " + TABLE_SEARCH + "_insert_trigger AFTER INSERT ON " + TABLE_SEARCH
+                + " BEGIN UPDATE " + TABLE_SEARCH_STATS + " SET " + SearchData.KEY_DOCUMENTS + "="
+                + SearchData.KEY_DOCUMENTS + "+1," + SearchData.KEY_LENGTH + "=" + SearchData.KEY_LENGTH
+                + "+NEW." + SearchData.KEY_LENGTH + "; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_SEARCH + "_delete_trigger AFTER DELETE ON " + TABLE_SEARCH
+                + " BEGIN DELETE FROM " + TABLE_SEARCH_TEXT + " WHERE docid=OLD." + SearchData.KEY_ID + ";"
+                + " UPDATE " + TABLE_SEARCH_STATS + " SET " + SearchData.KEY_DOCUMENTS + "="
+                + SearchData.KEY_DOCUMENTS + "-1," + SearchData.KEY_LENGTH + "=" + SearchData.KEY_LENGTH
+                + "-OLD." + SearchData.KEY_LENGTH + "; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_MESSAGE + "_search_trigger AFTER DELETE ON " + TABLE_MESSAGE
+                + " BEGIN DELETE FROM " + TABLE_SEARCH + " WHERE " + SearchData.KEY_SOURCE_ID + "=OLD."
+                + MessageData.KEY_ID + " AND " + SearchData.KEY_SOURCE + "=" + ChatLog.Search.Source.MESSAGE
+                + "; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_CHAT + "_search_trigger AFTER DELETE ON " + TABLE_CHAT
+                + " BEGIN DELETE FROM " + TABLE_SEARCH + " WHERE " + SearchData.KEY_SOURCE_ID + "=OLD."
+                + ChatData.KEY_ID + " AND " + SearchData.KEY_SOURCE + "=" + ChatLog.Search.Source.GROUP_CHAT
+                + "; END");
+    }
+
+    /**
+     * Add an entry to the full-text search index
+     *
+     * @param db Database
+     * @param values Values of the entry and indexed text
+     * @return Row ID of the entry
+     */
+    static long insertSearchEntry(SQLiteDatabase db, ContentValues values) {
+        ContentValues entry = new ContentValues(values);
+        entry.remove(SearchData.KEY_TEXT);
+        entry.put(SearchData.KEY_LENGTH, SearchQuery.getLength(values.getAsString(SearchData.KEY_TEXT)));
+        ContentValues text = new ContentValues(2);
+        text.put(SearchData.KEY_TEXT, values.getAsString(SearchData.KEY_TEXT));
+        db.beginTransaction();
+        try {
+            long rowId = db.insertOrThrow(TABLE_SEARCH, null, entry);
+            text.put("docid", rowId);
+            db.insertOrThrow(TABLE_SEARCH_TEXT, null, text);
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the SQL expression equal to 1 if a message is an unread incoming message, 0 otherwise
+     *
+     * @param prefix Prefix of the message columns
+     * @return Expression
+     */
+    private static String isUnread(String prefix) {
+        return "(" + prefix + MessageData.KEY_TYPE + "=" + ChatLog.Message.Type.CONTENT
+                + " AND " + prefix + MessageData.KEY_DIRECTION + "=" + ChatLog.Message.Direction.INCOMING
+                + " AND " + prefix + MessageData.KEY_STATUS + " IN (" + ChatLog.Message.Status.Content.UNREAD
+                + "," + ChatLog.Message.Status.Content.UNREAD_REPORT + "))";
+    }
+
+    /**
+     * Returns the statement reading again the last message of conversations,
+     * each column being read through the (chat ID, timestamp) index
+     *
+     * @param where Conversations to refresh
+     * @return Statement
+     */
+    private static String refreshLastMessage(String where) {
+        String last = " FROM " + TABLE_MESSAGE + " WHERE " + MessageData.KEY_CHAT_ID + "="
+                + TABLE_CONVERSATION + "." + ConversationData.KEY_CHAT_ID + " ORDER BY "
+                + MessageData.KEY_TIMESTAMP + " DESC," + MessageData.KEY_ID + " DESC LIMIT 1)";
+        StringBuilder sql = new StringBuilder("UPDATE " + TABLE_CONVERSATION + " SET ");
+        sql.append(ConversationData.KEY_LAST_ROW_ID).append("=(SELECT ").append(MessageData.KEY_ID).append(last);
+        for (String column : LAST_MESSAGE_COLUMNS) {
+            sql.append(',').append(column).append("=(SELECT ").append(column).append(last);
+        }
+        sql.append(" WHERE ").append(where);
+        return sql.toString();
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -150,6 +470,12 @@ public class ChatProvider extends ContentProvider {
             case MESSAGE_ID:
 			case RCSAPI_MESSAGE_ID:
                 return "vnd.android.cursor.item/message";
+            case CONVERSATIONS:
+			case RCSAPI_CONVERSATIONS:
+                return "vnd.android.cursor.dir/conversation";
+            case SEARCH:
+			case RCSAPI_SEARCH:
+                return "vnd.android.cursor.dir/search";
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -169,7 +495,24 @@ public class ChatProvider extends ContentProvider {
 			case MESSAGES:
 			case RCSAPI_MESSAGES:
 		        qb.setTables(TABLE_MESSAGE);
+		        if (PagedQuery.isPaged(uri)) {
+		        	Cursor c = PagedQuery.query(openHelper.getReadableDatabase(), TABLE_MESSAGE, uri,
+		        			projectionIn, PAGE_PROJECTION, selection, selectionArgs,
+		        			MessageData.KEY_CHAT_ID, MessageData.KEY_TIMESTAMP, MessageData.KEY_ID);
+		        	c.setNotificationUri(getContext().getContentResolver(), uri);
+		        	return c;
+		        }
                 break;
+			case CONVERSATIONS:
+			case RCSAPI_CONVERSATIONS:
+		        qb.setTables(TABLE_CONVERSATION);
+		        break;
+			case SEARCH:
+			case RCSAPI_SEARCH:
+	        	Cursor c = SearchQuery.query(openHelper.getReadableDatabase(), TABLE_SEARCH, TABLE_SEARCH_TEXT,
+	        			TABLE_SEARCH_STATS, uri, projectionIn);
+	        	c.setNotificationUri(getContext().getContentResolver(), uri);
+	        	return c;
 			case CHAT_ID:
 			case RCSAPI_CHAT_ID:
 		        qb.setTables(TABLE_CHAT);
@@ -209,6 +552,7 @@ public class ChatProvider extends ContentProvider {
 		        break;
 			case MESSAGES:
 	            count = db.update(TABLE_MESSAGE, values, where, whereArgs);
+	            notifyConversationChange();
 	            break;
 			case CHAT_ID:
                 count = db.update(TABLE_CHAT, values,
@@ -217,6 +561,7 @@ public class ChatProvider extends ContentProvider {
 			case MESSAGE_ID:
                 count = db.update(TABLE_MESSAGE, values,
                 		MessageData.KEY_ID + "=" + Integer.parseInt(uri.getPathSegments().get(1)), null);
+	            notifyConversationChange();
 	            break;
             default:
                 throw new UnsupportedOperationException("Cannot update URI " + uri);
@@ -238,6 +583,11 @@ public class ChatProvider extends ContentProvider {
 	        case MESSAGE_ID:
 	    		long msgRowId = db.insert(TABLE_MESSAGE, null, initialValues);
 	    		uri = ContentUris.withAppendedId(MessageData.CONTENT_URI, msgRowId);
+	    		notifyConversationChange();
+	        	break;
+	        case SEARCH:
+	    		long searchRowId = insertSearchEntry(db, initialValues);
+	    		uri = ContentUris.withAppendedId(SearchData.CONTENT_URI, searchRowId);
 	        	break;
 	        default:
 	    		throw new SQLException("Failed to insert row into " + uri);
@@ -246,6 +596,23 @@ public class ChatProvider extends ContentProvider {
         return uri;
     }
 
+    /**
+     * Apply the operations in a single transaction
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
@@ -265,6 +632,7 @@ public class ChatProvider extends ContentProvider {
 	        case MESSAGES:
 	        case RCSAPI_MESSAGES:
 	        	count = db.delete(TABLE_MESSAGE, where, whereArgs);
+	        	notifyConversationChange();
 	        	break;
 	        case MESSAGE_ID:
 	        case RCSAPI_MESSAGE_ID:
@@ -272,6 +640,7 @@ public class ChatProvider extends ContentProvider {
 						+ PhoneUtils.formatNumberToInternational(uri.getPathSegments().get(1))
 						+ (!TextUtils.isEmpty(where) ? " AND ("	+ where + ')' : ""),
 						whereArgs);
+				notifyConversationChange();
 				break;
 	        default:
 	    		throw new SQLException("Failed to delete row " + uri);
@@ -279,4 +648,13 @@ public class ChatProvider extends ContentProvider {
 		getContext().getContentResolver().notifyChange(uri, null);
         return count;    
     }
+
+    /**
+     * Notify the observers of the conversation summaries, updated by the
+     * triggers on the message table
+     */
+    private void notifyConversationChange() {
+        getContext().getContentResolver().notifyChange(ConversationData.CONTENT_URI, null);
+        getContext().getContentResolver().notifyChange(ChatLog.Conversation.CONTENT_URI, null);
+    }
 }
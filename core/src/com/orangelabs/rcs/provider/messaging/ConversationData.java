@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import com.gsma.services.rcs.chat.ChatLog;
+
+import android.net.Uri;
+
+/**
+ * Conversation summary data constants
+ * 
+ * @author Orange
+ */
+public class ConversationData {
+	/**
+	 * Database URI
+	 */
+	static final Uri CONTENT_URI = Uri.parse("content://com.orangelabs.rcs.chat/conversation");
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_ID = ChatLog.Conversation.ID;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_CHAT_ID = ChatLog.Conversation.CHAT_ID;
+
+	/**
+	 * Column name: row ID of the last message
+	 */
+	static final String KEY_LAST_ROW_ID = "last_row_id";
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_UNREAD_COUNT = ChatLog.Conversation.UNREAD_COUNT;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_MESSAGE_COUNT = ChatLog.Conversation.MESSAGE_COUNT;
+}
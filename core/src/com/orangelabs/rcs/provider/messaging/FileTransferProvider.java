@@ -1,9 +1,14 @@
 package com.orangelabs.rcs.provider.messaging;
 
+import java.util.ArrayList;
+
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -13,6 +18,9 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
+
 /**
  * File transfer content provider
  * 
@@ -50,18 +58,12 @@ public class FileTransferProvider extends ContentProvider {
     public static final String DATABASE_NAME = "ft.db";
 
     /**
-     * Helper class for opening, creating and managing database version control
+     * Schema migration of the database, version 6 is the first one whose
+     * rows are kept on upgrade
      */
-    private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 6;
-
-        public DatabaseHelper(Context ctx) {
-            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
-        }
-        
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(6) {
         // @formatter:off
-        @Override
-        public void onCreate(SQLiteDatabase db) {
+        public void execute(SQLiteDatabase db) {
         	db.execSQL("CREATE TABLE " + TABLE + " ("
         			+ FileTransferData.KEY_ID + " integer primary key autoincrement,"
         			+ FileTransferData.KEY_SESSION_ID + " TEXT,"
@@ -80,14 +82,43 @@ public class FileTransferProvider extends ContentProvider {
         			+ FileTransferData.KEY_MSG_ID + " TEXT);");
         }
         // @formatter:on
-        
+    }).addIndex(7, TABLE, FileTransferData.KEY_SESSION_ID)
+            .addIndex(7, TABLE, FileTransferData.KEY_CHAT_ID, FileTransferData.KEY_TIMESTAMP)
+            .addIndex(8, TABLE, FileTransferData.KEY_TIMESTAMP);
+
+    /**
+     * Helper class for opening, creating and managing database version control
+     */
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        private static final int DATABASE_VERSION = 8;
+
+        public DatabaseHelper(Context ctx) {
+            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            MIGRATION.create(db, DATABASE_VERSION);
+        }
+
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-            onCreate(db);
+            if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+                onCreate(db);
+            }
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -119,6 +150,13 @@ public class FileTransferProvider extends ContentProvider {
         switch(match) {
             case FILETRANSFERS:
         	case RCSAPI:
+        		if (PagedQuery.isPaged(uri)) {
+        			Cursor c = PagedQuery.query(openHelper.getReadableDatabase(), TABLE, uri,
+        					projectionIn, null, selection, selectionArgs,
+        					FileTransferData.KEY_CHAT_ID, FileTransferData.KEY_TIMESTAMP, FileTransferData.KEY_ID);
+        			c.setNotificationUri(getContext().getContentResolver(), uri);
+        			return c;
+        		}
                 break;
             case FILETRANSFER_ID:
         	case RCSAPI_ID:
@@ -178,6 +216,23 @@ public class FileTransferProvider extends ContentProvider {
         return uri;
     }
 
+    /**
+     * Apply the operations in a single transaction
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import java.util.ArrayList;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.text.TextUtils;
+
+/**
+ * Keyset pagination of the history: a page is read from the most recent row,
+ * strictly after the timestamp and row ID of the last row of the previous
+ * page, so that its cost does not depend on its position in the history.
+ * 
+ * @author Orange
+ */
+class PagedQuery {
+	/**
+	 * Query parameters, built by ChatLog.Message.getPageUri and
+	 * FileTransferLog.getPageUri
+	 */
+	private static final String PARAM_CHAT_ID = "chat_id";
+	private static final String PARAM_TIMESTAMP = "before_timestamp";
+	private static final String PARAM_ID = "before_id";
+	private static final String PARAM_LIMIT = "limit";
+
+	private PagedQuery() {
+	}
+
+	/**
+	 * Is the URI a page URI
+	 * 
+	 * @param uri URI
+	 * @return Boolean
+	 */
+	static boolean isPaged(Uri uri) {
+		return uri.getQueryParameter(PARAM_LIMIT) != null;
+	}
+
+	/**
+	 * Query a page
+	 * 
+	 * @param db Database
+	 * @param table Table
+	 * @param uri Page URI
+	 * @param projection Projection or null for the default one
+	 * @param defaultProjection Projection used when none is given
+	 * @param selection Additional selection or null
+	 * @param selectionArgs Arguments of the additional selection
+	 * @param chatIdColumn Chat ID column
+	 * @param timestampColumn Timestamp column
+	 * @param idColumn Row ID column
+	 * @return Cursor
+	 * @throws IllegalArgumentException If a query parameter is invalid
+	 */
+	static Cursor query(SQLiteDatabase db, String table, Uri uri, String[] projection, String[] defaultProjection,
+			String selection, String[] selectionArgs, String chatIdColumn, String timestampColumn, String idColumn) {
+		long timestamp;
+		long id;
+		int limit;
+		try {
+			String value = uri.getQueryParameter(PARAM_TIMESTAMP);
+			timestamp = (value != null) ? Long.parseLong(value) : Long.MAX_VALUE;
+			value = uri.getQueryParameter(PARAM_ID);
+			id = (value != null) ? Long.parseLong(value) : Long.MAX_VALUE;
+			limit = Integer.parseInt(uri.getQueryParameter(PARAM_LIMIT));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid page URI " + uri);
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Invalid page URI " + uri);
+		}
+
+		// The range on the timestamp is served by the (chat ID, timestamp) index
+		StringBuilder where = new StringBuilder();
+		ArrayList<String> args = new ArrayList<String>();
+		String chatId = uri.getQueryParameter(PARAM_CHAT_ID);
+		if (chatId != null) {
+			where.append(chatIdColumn).append("=? AND ");
+			args.add(chatId);
+		}
+		where.append(timestampColumn).append("<=? AND (").append(timestampColumn).append("<? OR ")
+				.append(idColumn).append("<?)");
+		args.add(Long.toString(timestamp));
+		args.add(Long.toString(timestamp));
+		args.add(Long.toString(id));
+		if (!TextUtils.isEmpty(selection)) {
+			where.append(" AND (").append(selection).append(')');
+			if (selectionArgs != null) {
+				for (String arg : selectionArgs) {
+					args.add(arg);
+				}
+			}
+		}
+
+		return db.query(table, (projection != null) ? projection : defaultProjection, where.toString(),
+				args.toArray(new String[args.size()]), null, null,
+				timestampColumn + " DESC," + idColumn + " DESC", Integer.toString(limit));
+	}
+}
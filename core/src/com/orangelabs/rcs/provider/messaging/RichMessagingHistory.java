@@ -18,13 +18,12 @@
 
 package com.orangelabs.rcs.provider.messaging;
 
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -36,6 +35,7 @@ import com.gsma.services.rcs.chat.GroupChat;
 import com.gsma.services.rcs.chat.ParticipantInfo;
 import com.gsma.services.rcs.ft.FileTransfer;
 import com.orangelabs.rcs.core.content.MmContent;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
 import com.orangelabs.rcs.core.ims.service.im.chat.FileTransferMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.GeolocPush;
@@ -43,6 +43,8 @@ import com.orangelabs.rcs.core.ims.service.im.chat.GroupChatInfo;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.event.User;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
+import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDocument;
+import com.orangelabs.rcs.provider.HistoryWriter;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -76,6 +78,11 @@ public class RichMessagingHistory {
 	 * File transfer database URI
 	 */
 	private Uri ftDatabaseUri = FileTransferData.CONTENT_URI;
+
+	/**
+	 * Background writer of the messages and file transfers
+	 */
+	private HistoryWriter writer;
 	
 	/**
 	 * The logger
@@ -111,6 +118,15 @@ public class RichMessagingHistory {
 		super();
 		
         this.cr = ctx.getContentResolver();
+        HistoryWriter.createInstance(ctx);
+        this.writer = HistoryWriter.getInstance();
+	}
+
+	/**
+	 * Commit the message and file transfer writes still in queue
+	 */
+	public void flushMessages() {
+		writer.flush();
 	}
 
 	/*--------------------- Group chat methods -----------------------*/
@@ -136,7 +152,13 @@ public class RichMessagingHistory {
 		values.put(ChatData.KEY_PARTICIPANTS, RichMessagingHistory.getParticipants(participants));
 		values.put(ChatData.KEY_DIRECTION, direction);
 		values.put(ChatData.KEY_TIMESTAMP, Calendar.getInstance().getTimeInMillis());
-		cr.insert(chatDatabaseUri, values);
+		Uri uri = cr.insert(chatDatabaseUri, values);
+
+		// Index the subject
+		if ((uri != null) && (subject != null) && (subject.trim().length() > 0)) {
+			cr.insert(SearchData.CONTENT_URI, getSearchValues(ChatLog.Search.Source.GROUP_CHAT,
+					ContentUris.parseId(uri), chatId, values.getAsLong(ChatData.KEY_TIMESTAMP), subject));
+		}
 	}
 
 	/**
@@ -258,6 +280,7 @@ public class RichMessagingHistory {
 			logger.debug("Get connected participants for " + chatId);
 		}
 		List<String> result = new ArrayList<String>();
+		writer.flush();
      	Cursor cursor = cr.query(msgDatabaseUri, 
     			new String[] {
     				MessageData.KEY_CONTACT
@@ -326,13 +349,13 @@ public class RichMessagingHistory {
 			Geoloc geolocApi = new Geoloc(geoloc.getLabel(),
 					geoloc.getLatitude(), geoloc.getLongitude(),
 					geoloc.getExpiration(), geoloc.getAccuracy());
-			blob = serializeGeoloc(geolocApi);
+			blob = ChatLog.getBlobFromGeoloc(geolocApi);
 		} else if (msg instanceof FileTransferMessage) {
 			values.put(MessageData.KEY_CONTENT_TYPE, FileTransferMessage.MIME_TYPE);
-			blob = serializePlainText(((FileTransferMessage)msg).getFileInfo()); 
+			blob = ChatLog.getBlobFromText(((FileTransferMessage)msg).getFileInfo()); 
 		} else {
 			values.put(MessageData.KEY_CONTENT_TYPE, com.gsma.services.rcs.chat.ChatMessage.MIME_TYPE);
-			blob = serializePlainText(msg.getTextMessage()); 
+			blob = ChatLog.getBlobFromText(msg.getTextMessage()); 
 		}
 		if (blob != null) {
 			values.put(MessageData.KEY_CONTENT, blob);
@@ -357,7 +380,8 @@ public class RichMessagingHistory {
 			values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, 0);		
 			values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
 		}
-		cr.insert(msgDatabaseUri, values);
+		writer.insert(msgDatabaseUri, MessageData.KEY_MSG_ID, msg.getMessageId(), values,
+				SearchData.CONTENT_URI, SearchData.KEY_SOURCE_ID, getSearchValues(values));
 	}
 	
 	/**
@@ -389,13 +413,13 @@ public class RichMessagingHistory {
 			Geoloc geolocApi = new Geoloc(geoloc.getLabel(),
 					geoloc.getLatitude(), geoloc.getLongitude(),
 					geoloc.getExpiration(), geoloc.getAccuracy());
-			blob = serializeGeoloc(geolocApi);
+			blob = ChatLog.getBlobFromGeoloc(geolocApi);
 		}  else if (msg instanceof FileTransferMessage) {
 			values.put(MessageData.KEY_CONTENT_TYPE, FileTransferMessage.MIME_TYPE);
-			blob = serializePlainText(((FileTransferMessage)msg).getFileInfo()); 
+			blob = ChatLog.getBlobFromText(((FileTransferMessage)msg).getFileInfo()); 
 		} else {
 			values.put(MessageData.KEY_CONTENT_TYPE, com.gsma.services.rcs.chat.ChatMessage.MIME_TYPE);
-			blob = serializePlainText(msg.getTextMessage()); 
+			blob = ChatLog.getBlobFromText(msg.getTextMessage()); 
 		}
 		if (blob != null) {
 			values.put(MessageData.KEY_CONTENT, blob);
@@ -420,7 +444,8 @@ public class RichMessagingHistory {
 			values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, 0);		
 			values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
 		}
-		cr.insert(msgDatabaseUri, values);
+		writer.insert(msgDatabaseUri, MessageData.KEY_MSG_ID, msg.getMessageId(), values,
+				SearchData.CONTENT_URI, SearchData.KEY_SOURCE_ID, getSearchValues(values));
 	}
 	
 	/**
@@ -446,7 +471,7 @@ public class RichMessagingHistory {
 		values.put(MessageData.KEY_TYPE, ChatLog.Message.Type.FILE_TRANSFER);
 
 		values.put(MessageData.KEY_CONTENT_TYPE, FileTransferMessage.MIME_TYPE);
-		byte[] blob = serializePlainText(((FileTransferMessage) msg).getFileInfo());
+		byte[] blob = ChatLog.getBlobFromText(((FileTransferMessage) msg).getFileInfo());
 
 		values.put(MessageData.KEY_CONTENT, blob);
 
@@ -456,9 +481,78 @@ public class RichMessagingHistory {
 		values.put(MessageData.KEY_TIMESTAMP_DELIVERED, 0);
 		values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, 0);
 		values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
-		cr.insert(msgDatabaseUri, values);
+		writer.insert(msgDatabaseUri, MessageData.KEY_MSG_ID, msg.getMessageId(), values,
+				SearchData.CONTENT_URI, SearchData.KEY_SOURCE_ID, getSearchValues(values));
 	}
 	
+	/**
+	 * Returns the text of a message indexed for the full-text search: the
+	 * body of a text message, the label of a geolocation or the name of a
+	 * transferred file
+	 * 
+	 * @param type Message type
+	 * @param mimeType MIME type of the body
+	 * @param content Body
+	 * @return Text or null if the message is not indexed
+	 */
+	static String getSearchText(int type, String mimeType, byte[] content) {
+		if ((content == null) || ((type != ChatLog.Message.Type.CONTENT)
+				&& (type != ChatLog.Message.Type.FILE_TRANSFER))) {
+			return null;
+		}
+		String text;
+		if (com.gsma.services.rcs.chat.GeolocMessage.MIME_TYPE.equals(mimeType)) {
+			Geoloc geoloc = ChatLog.getGeolocFromBlob(content);
+			text = (geoloc != null) ? geoloc.getLabel() : null;
+		} else if (FileTransferMessage.MIME_TYPE.equals(mimeType)) {
+			FileTransferHttpInfoDocument fileInfo = ChatUtils.parseFileTransferHttpDocument(content);
+			text = (fileInfo != null) ? fileInfo.getFilename() : null;
+		} else {
+			text = ChatLog.getTextFromBlob(content);
+		}
+		if ((text == null) || (text.trim().length() == 0)) {
+			return null;
+		}
+		return text;
+	}
+
+	/**
+	 * Returns the values of a search index entry
+	 * 
+	 * @param source Source of the entry
+	 * @param sourceId Row ID of the message or of the group chat
+	 * @param chatId Chat ID
+	 * @param timestamp Timestamp
+	 * @param text Indexed text
+	 * @return Values
+	 */
+	static ContentValues getSearchValues(int source, long sourceId, String chatId, long timestamp, String text) {
+		ContentValues values = new ContentValues();
+		values.put(SearchData.KEY_SOURCE, source);
+		values.put(SearchData.KEY_SOURCE_ID, sourceId);
+		values.put(SearchData.KEY_CHAT_ID, chatId);
+		values.put(SearchData.KEY_TIMESTAMP, timestamp);
+		values.put(SearchData.KEY_TEXT, text);
+		return values;
+	}
+
+	/**
+	 * Returns the search index entry of a message being inserted, its row
+	 * ID being set when the message is committed
+	 * 
+	 * @param message Values of the message
+	 * @return Values or null if the message is not indexed
+	 */
+	private ContentValues getSearchValues(ContentValues message) {
+		String text = getSearchText(message.getAsInteger(MessageData.KEY_TYPE),
+				message.getAsString(MessageData.KEY_CONTENT_TYPE), message.getAsByteArray(MessageData.KEY_CONTENT));
+		if (text == null) {
+			return null;
+		}
+		return getSearchValues(ChatLog.Search.Source.MESSAGE, 0, message.getAsString(MessageData.KEY_CHAT_ID),
+				message.getAsLong(MessageData.KEY_TIMESTAMP), text);
+	}
+
 	/**
 	 * Add group chat system message
 	 * 
@@ -477,7 +571,7 @@ public class RichMessagingHistory {
 		values.put(MessageData.KEY_STATUS, status);
 		values.put(MessageData.KEY_DIRECTION, ChatLog.Message.Direction.IRRELEVANT);
 		values.put(ChatData.KEY_TIMESTAMP, Calendar.getInstance().getTimeInMillis());
-		cr.insert(msgDatabaseUri, values);
+		writer.insert(msgDatabaseUri, null, null, values);
 	}
 
 	/**
@@ -490,6 +584,16 @@ public class RichMessagingHistory {
 		if (logger.isActivated()) {
 			logger.debug("Update chat message: msgID=" + msgId + ", status=" + status);
 		}
+		writer.update(msgDatabaseUri, MessageData.KEY_MSG_ID, msgId, getStatusValues(status));
+	}
+
+	/**
+	 * Returns the values of a chat message status update
+	 * 
+	 * @param status Message status
+	 * @return Values
+	 */
+	static ContentValues getStatusValues(int status) {
 		ContentValues values = new ContentValues();
 		values.put(MessageData.KEY_STATUS, status);
 		if (status == ChatLog.Message.Status.Content.UNREAD) {
@@ -500,10 +604,7 @@ public class RichMessagingHistory {
 			// Displayed
 			values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, Calendar.getInstance().getTimeInMillis());
 		}
-		cr.update(msgDatabaseUri, 
-				values, 
-				MessageData.KEY_MSG_ID + " = '" + msgId + "'", 
-				null);
+		return values;
 	}
 	
 	/**
@@ -537,6 +638,7 @@ public class RichMessagingHistory {
      * @return true if new message
      */
 	public boolean isNewMessage(String chatId, String msgId) {
+		writer.flush();
 		Cursor cursor = null;
 		try {
 			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_MSG_ID }, "(" + MessageData.KEY_CHAT_ID + " = '"
@@ -567,6 +669,7 @@ public class RichMessagingHistory {
 		values.put(MessageData.KEY_FT_ID, ftID);
 		String selection = MessageData.KEY_MSG_ID + " = ? AND " + MessageData.KEY_TYPE + " = ?";
 		String[] selectionArgs = { msgId, "" + ChatLog.Message.Type.FILE_TRANSFER };
+		writer.flush();
 		cr.update(msgDatabaseUri, values, selection, selectionArgs);
 	}
 	
@@ -614,7 +717,7 @@ public class RichMessagingHistory {
 			values.put(FileTransferData.KEY_TIMESTAMP_DISPLAYED, 0);		
 			values.put(FileTransferData.KEY_STATUS, FileTransfer.State.INITIATED);
 		}
-		cr.insert(ftDatabaseUri, values);
+		writer.insert(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -647,7 +750,7 @@ public class RichMessagingHistory {
 		values.put(FileTransferData.KEY_TIMESTAMP_DELIVERED, 0);
 		values.put(FileTransferData.KEY_TIMESTAMP_DISPLAYED, 0);
 		values.put(FileTransferData.KEY_STATUS, FileTransfer.State.INITIATED);
-		cr.insert(ftDatabaseUri, values);
+		writer.insert(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, ftId, values);
 	}
 	
 	/**
@@ -671,7 +774,7 @@ public class RichMessagingHistory {
 			// Displayed
 			values.put(FileTransferData.KEY_TIMESTAMP_DISPLAYED, Calendar.getInstance().getTimeInMillis());
 		}
-		cr.update(ftDatabaseUri, values, FileTransferData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, sessionId, values);
 	}
 	
 	/**
@@ -686,7 +789,7 @@ public class RichMessagingHistory {
 		values.put(FileTransferData.KEY_SIZE, size);
 		values.put(FileTransferData.KEY_TOTAL_SIZE, totalSize);
 		values.put(FileTransferData.KEY_STATUS, FileTransfer.State.STARTED);
-		cr.update(ftDatabaseUri, values, FileTransferData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -702,7 +805,7 @@ public class RichMessagingHistory {
 		ContentValues values = new ContentValues();
 		values.put(FileTransferData.KEY_NAME, url);
 		values.put(FileTransferData.KEY_STATUS, FileTransfer.State.TRANSFERRED);
-		cr.update(ftDatabaseUri, values, FileTransferData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, sessionId, values);
 	}
 	
     /**
@@ -715,6 +818,7 @@ public class RichMessagingHistory {
 		if (logger.isActivated()) {
 			logger.debug("getFileTransferId (msgId=" + msgId + ")");
 		}
+		writer.flush();
 		Cursor cursor = null;
 		try {
 			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_CHAT_ID }, "(" + MessageData.KEY_MSG_ID
@@ -745,44 +849,9 @@ public class RichMessagingHistory {
 		ContentValues values = new ContentValues();
 		values.put(FileTransferData.KEY_CHAT_ID, chatId);
 		values.put(FileTransferData.KEY_MSG_ID , msgId);
-		cr.update(ftDatabaseUri, values, FileTransferData.KEY_SESSION_ID + " = " + sessionId, null);
+		writer.update(ftDatabaseUri, FileTransferData.KEY_SESSION_ID, sessionId, values);
 	}
     
-    /**
-     * Serialize a geoloc to bytes array
-     * 
-     * @param geoloc Geoloc info
-     * @return Byte array
-     */
-    private byte[] serializeGeoloc(Geoloc geoloc) {
-		byte[] blob = null;
-		try {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			ObjectOutputStream os = new ObjectOutputStream(bos);
-			os.writeObject(geoloc);
-			blob = bos.toByteArray();
-			bos.close();
-			os.close();
-		} catch(Exception e) {
-			blob = null;
-		}
-		return blob;
-    }	    
-
-    /**
-     * Serialize a text message to bytes array
-     * 
-     * @param msg Message
-     * @return Byte array
-     */
-    private byte[] serializePlainText(String msg) {
-    	if (msg != null) {
-    		return msg.getBytes();
-    	} else {
-    		return null;
-    	}
-    }
-	
     /**
      * Is next group chat Invitation rejected
      * 
@@ -895,6 +964,7 @@ public class RichMessagingHistory {
 				+ MessageData.KEY_TYPE + " = ? AND "//
 				+ MessageData.KEY_CONTACT + " = ? ";
 		String[] selectionArgs = { chatId, "" + ChatLog.Message.Type.SYSTEM, participant };
+		writer.flush();
 		Cursor cursor = null;
 		try {
 			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_STATUS }, selection, selectionArgs,
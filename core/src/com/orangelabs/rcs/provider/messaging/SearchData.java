@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import com.gsma.services.rcs.chat.ChatLog;
+
+import android.net.Uri;
+
+/**
+ * Search index data constants
+ * 
+ * @author Orange
+ */
+public class SearchData {
+	/**
+	 * Database URI
+	 */
+	static final Uri CONTENT_URI = Uri.parse("content://com.orangelabs.rcs.chat/search");
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_ID = ChatLog.Search.ID;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_SOURCE = ChatLog.Search.SOURCE;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_SOURCE_ID = ChatLog.Search.SOURCE_ID;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_CHAT_ID = ChatLog.Search.CHAT_ID;
+
+	/**
+	 * Column name
+	 */
+	static final String KEY_TIMESTAMP = ChatLog.Search.TIMESTAMP;
+
+	/**
+	 * Column name: indexed text, only stored in the full-text table
+	 */
+	static final String KEY_TEXT = "text";
+
+	/**
+	 * Column name: number of tokens of the indexed text of an entry, or of
+	 * all the entries in the statistics table
+	 */
+	static final String KEY_LENGTH = "length";
+
+	/**
+	 * Column name: number of entries, in the statistics table
+	 */
+	static final String KEY_DOCUMENTS = "documents";
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import com.gsma.services.rcs.chat.ChatLog;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+/**
+ * Ranked query of the full-text search index, by pages of results
+ * 
+ * @author Orange
+ */
+class SearchQuery {
+	/**
+	 * Query parameters, built by ChatLog.Search.getSearchUri
+	 */
+	private static final String PARAM_QUERY = "q";
+	private static final String PARAM_OFFSET = "offset";
+	private static final String PARAM_LIMIT = "limit";
+
+	/**
+	 * Maximum number of matches ranked by a query, the most recent ones
+	 */
+	static final int MAX_CANDIDATES = 1000;
+
+	/**
+	 * BM25 parameters: term frequency saturation and length normalization
+	 */
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	/**
+	 * Columns of the results
+	 */
+	private static final String[] COLUMNS = {
+		ChatLog.Search.ID, ChatLog.Search.SOURCE, ChatLog.Search.SOURCE_ID, ChatLog.Search.CHAT_ID,
+		ChatLog.Search.TIMESTAMP, ChatLog.Search.SNIPPET, ChatLog.Search.RANK
+	};
+
+	/**
+	 * Matching entry of the index
+	 */
+	private static class Candidate {
+		private long id;
+
+		private double rank;
+
+		private Candidate(long id, double rank) {
+			this.id = id;
+			this.rank = rank;
+		}
+	}
+
+	/**
+	 * Order of the results: by descending rank then from the most recent entry
+	 */
+	private static final Comparator<Candidate> RANK_ORDER = new Comparator<Candidate>() {
+		public int compare(Candidate c1, Candidate c2) {
+			if (c1.rank != c2.rank) {
+				return (c1.rank > c2.rank) ? -1 : 1;
+			}
+			return (c1.id > c2.id) ? -1 : ((c1.id == c2.id) ? 0 : 1);
+		}
+	};
+
+	private SearchQuery() {
+	}
+
+	/**
+	 * Returns the full-text query of a searched text: each word is searched
+	 * as a whole, the last one also as a prefix since it may be incomplete
+	 * 
+	 * @param text Searched text
+	 * @return Query or null if the text has no word
+	 */
+	static String getMatchExpression(String text) {
+		StringBuilder match = new StringBuilder();
+		for (String word : text.split("\\s+")) {
+			word = word.replace("\"", "").replace("*", "");
+			if (word.length() > 0) {
+				if (match.length() > 0) {
+					match.append(' ');
+				}
+				match.append('"').append(word).append('"');
+			}
+		}
+		if (match.length() == 0) {
+			return null;
+		}
+		match.insert(match.length() - 1, '*');
+		return match.toString();
+	}
+
+	/**
+	 * Returns the number of tokens of a text, split like the simple
+	 * tokenizer of the full-text table: runs of ASCII letters and digits
+	 * and of non-ASCII characters
+	 * 
+	 * @param text Text
+	 * @return Number of tokens
+	 */
+	static int getLength(String text) {
+		if (text == null) {
+			return 0;
+		}
+		int length = 0;
+		boolean token = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			boolean tokenChar = (c >= 0x80) || ((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'z'))
+					|| ((c >= 'A') && (c <= 'Z'));
+			if (tokenChar && !token) {
+				length++;
+			}
+			token = tokenChar;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the BM25 relevance of an entry from the statistics of the
+	 * full-text table, as returned by matchinfo with its default format
+	 * "pcx" on a table with a single column, and from the lengths kept
+	 * beside the table
+	 * 
+	 * @param matchInfo Statistics
+	 * @param documents Number of entries of the index
+	 * @param averageLength Average number of tokens of an entry
+	 * @param length Number of tokens of the entry
+	 * @return Relevance
+	 */
+	static double getRank(byte[] matchInfo, double documents, double averageLength, double length) {
+		IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+		int phrases = info.get(0);
+		averageLength = Math.max(1, averageLength);
+
+		double rank = 0;
+		for (int i = 0; i < phrases; i++) {
+			double hits = info.get(2 + 3 * i) & 0xffffffffL;
+			double documentHits = info.get(2 + 3 * i + 2) & 0xffffffffL;
+			if (hits > 0) {
+				// Terms present in more than half of the entries still count a little
+				double idf = Math.max(0.01, Math.log((documents - documentHits + 0.5) / (documentHits + 0.5)));
+				rank += idf * hits * (K1 + 1) / (hits + K1 * (1 - B + B * length / averageLength));
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Query a page of results
+	 * 
+	 * @param db Database
+	 * @param itemTable Table of the index entries
+	 * @param textTable Full-text table, sharing the row IDs of the entries
+	 * @param statsTable Statistics of the entries
+	 * @param uri Search URI
+	 * @param projection Projection or null for all the columns
+	 * @return Cursor
+	 * @throws IllegalArgumentException If a query parameter is invalid
+	 */
+	static Cursor query(SQLiteDatabase db, String itemTable, String textTable, String statsTable, Uri uri,
+			String[] projection) {
+		String text = uri.getQueryParameter(PARAM_QUERY);
+		int offset;
+		int limit;
+		try {
+			String value = uri.getQueryParameter(PARAM_OFFSET);
+			offset = (value != null) ? Integer.parseInt(value) : 0;
+			limit = Integer.parseInt(uri.getQueryParameter(PARAM_LIMIT));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid search URI " + uri);
+		}
+		if ((text == null) || (offset < 0) || (limit <= 0)) {
+			throw new IllegalArgumentException("Invalid search URI " + uri);
+		}
+		if (projection == null) {
+			projection = COLUMNS;
+		}
+		int[] columns = new int[projection.length];
+		for (int i = 0; i < projection.length; i++) {
+			columns[i] = Arrays.asList(COLUMNS).indexOf(projection[i]);
+			if (columns[i] < 0) {
+				throw new IllegalArgumentException("Unknown column " + projection[i]);
+			}
+		}
+		MatrixCursor result = new MatrixCursor(projection);
+		String match = getMatchExpression(text);
+		if (match == null) {
+			return result;
+		}
+
+		// Totals of the index
+		double documents = 0;
+		double averageLength = 0;
+		Cursor cursor = db.rawQuery("SELECT " + SearchData.KEY_DOCUMENTS + "," + SearchData.KEY_LENGTH + " FROM "
+				+ statsTable, null);
+		try {
+			if (cursor.moveToFirst() && (cursor.getLong(0) > 0)) {
+				documents = cursor.getLong(0);
+				averageLength = (double)cursor.getLong(1) / documents;
+			}
+		} finally {
+			cursor.close();
+		}
+
+		// Rank the most recent matches
+		cursor = db.rawQuery("SELECT " + textTable + ".docid,matchinfo(" + textTable + "),e." + SearchData.KEY_LENGTH
+				+ " FROM " + textTable + " JOIN " + itemTable + " e ON e." + SearchData.KEY_ID + "=" + textTable
+				+ ".docid WHERE " + textTable + " MATCH ? ORDER BY " + textTable + ".docid DESC LIMIT "
+				+ MAX_CANDIDATES, new String[] { match });
+		Candidate[] candidates = new Candidate[cursor.getCount()];
+		try {
+			for (int i = 0; cursor.moveToNext(); i++) {
+				candidates[i] = new Candidate(cursor.getLong(0), getRank(cursor.getBlob(1), documents,
+						averageLength, cursor.getLong(2)));
+			}
+		} finally {
+			cursor.close();
+		}
+		if (offset >= candidates.length) {
+			return result;
+		}
+		Arrays.sort(candidates, RANK_ORDER);
+		int end = Math.min(candidates.length, offset + limit);
+
+		// Read the entries and the snippets of the page only
+		StringBuilder ids = new StringBuilder();
+		for (int i = offset; i < end; i++) {
+			if (i > offset) {
+				ids.append(',');
+			}
+			ids.append(candidates[i].id);
+		}
+		HashMap<Long, Object[]> entries = new HashMap<Long, Object[]>();
+		cursor = db.rawQuery("SELECT e." + SearchData.KEY_ID + ",e." + SearchData.KEY_SOURCE + ",e."
+				+ SearchData.KEY_SOURCE_ID + ",e." + SearchData.KEY_CHAT_ID + ",e." + SearchData.KEY_TIMESTAMP
+				+ ",snippet(" + textTable + ",'<b>','</b>','...') FROM " + textTable + " JOIN " + itemTable
+				+ " e ON e." + SearchData.KEY_ID + "=" + textTable + ".docid WHERE " + textTable + " MATCH ? AND "
+				+ textTable + ".docid IN (" + ids + ")", new String[] { match });
+		try {
+			while (cursor.moveToNext()) {
+				entries.put(cursor.getLong(0), new Object[] { cursor.getLong(0), cursor.getInt(1), cursor.getLong(2),
+						cursor.getString(3), cursor.getLong(4), cursor.getString(5), null });
+			}
+		} finally {
+			cursor.close();
+		}
+
+		for (int i = offset; i < end; i++) {
+			Object[] entry = entries.get(candidates[i].id);
+			if (entry != null) {
+				entry[COLUMNS.length - 1] = candidates[i].rank;
+				Object[] row = new Object[columns.length];
+				for (int j = 0; j < columns.length; j++) {
+					row[j] = entry[columns[j]];
+				}
+				result.addRow(row);
+			}
+		}
+		return result;
+	}
+}
@@ -23,10 +23,19 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
@@ -56,6 +65,22 @@ public class RcsSettings {
 	 */
 	private Uri databaseUri = RcsSettingsData.CONTENT_URI;
 
+	/**
+	 * Snapshot of the parameters. It is never modified once published, a
+	 * change replaces it by a new copy so that reads need no lock.
+	 */
+	private volatile Map<String, String> parameters = null;
+
+	/**
+	 * Number of changes made by this instance not yet notified by the provider
+	 */
+	private AtomicInteger pendingLocalChanges = new AtomicInteger(0);
+
+	/**
+	 * List of listeners
+	 */
+	private Vector<RcsSettingsListener> listeners = new Vector<RcsSettingsListener>();
+
     /**
      * Create instance
      *
@@ -85,6 +110,152 @@ public class RcsSettings {
 		super();
 
         this.cr = ctx.getContentResolver();
+
+        // Changes made by another process (e.g. the settings application)
+        // invalidate the snapshot
+        cr.registerContentObserver(databaseUri, true, new ContentObserver(null) {
+			@Override
+			public void onChange(boolean selfChange) {
+				if (pendingLocalChanges.getAndDecrement() > 0) {
+					// Already applied to the snapshot
+					return;
+				}
+				pendingLocalChanges.incrementAndGet();
+				reloadParameters();
+			}
+		});
+	}
+
+	/**
+	 * Returns the snapshot of the parameters, loading it from the provider
+	 * the first time
+	 *
+	 * @return Parameters
+	 */
+	private Map<String, String> getParameters() {
+		Map<String, String> result = parameters;
+		if (result == null) {
+			synchronized(this) {
+				result = parameters;
+				if (result == null) {
+					result = loadParameters();
+					parameters = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Load all the parameters from the provider
+	 *
+	 * @return Parameters
+	 */
+	private Map<String, String> loadParameters() {
+		Map<String, String> result = new HashMap<String, String>();
+		Cursor c = cr.query(databaseUri,
+				new String[] { RcsSettingsData.KEY_KEY, RcsSettingsData.KEY_VALUE },
+				null, null, null);
+		if (c != null) {
+			while (c.moveToNext()) {
+				result.put(c.getString(0), c.getString(1));
+			}
+			c.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Reload the parameters after an external change and notify the
+	 * listeners of the modified ones
+	 */
+	private void reloadParameters() {
+		Map<String, String> previous;
+		Map<String, String> current;
+		synchronized(this) {
+			previous = parameters;
+			if (previous == null) {
+				// Not loaded yet
+				return;
+			}
+			current = loadParameters();
+			parameters = current;
+		}
+
+		for (Iterator<Map.Entry<String, String>> it = current.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, String> entry = it.next();
+			String value = entry.getValue();
+			String old = previous.get(entry.getKey());
+			if ((value == null) ? (old != null) : !value.equals(old)) {
+				notifyListeners(entry.getKey(), value);
+			}
+		}
+		for (Iterator<String> it = previous.keySet().iterator(); it.hasNext();) {
+			String key = it.next();
+			if (!current.containsKey(key)) {
+				notifyListeners(key, null);
+			}
+		}
+	}
+
+	/**
+	 * Invalidate the parameters, they are read again from the provider on
+	 * the next access
+	 */
+	public synchronized void invalidate() {
+		parameters = null;
+	}
+
+	/**
+	 * Add a listener
+	 *
+	 * @param listener Listener
+	 */
+	public void addSettingsListener(RcsSettingsListener listener) {
+		listeners.addElement(listener);
+	}
+
+	/**
+	 * Remove a listener
+	 *
+	 * @param listener Listener
+	 */
+	public void removeSettingsListener(RcsSettingsListener listener) {
+		listeners.removeElement(listener);
+	}
+
+	/**
+	 * Notify the listeners of a change
+	 *
+	 * @param key Key
+	 * @param value Value
+	 */
+	private void notifyListeners(String key, String value) {
+		Object[] list = listeners.toArray();
+		for (int i = 0; i < list.length; i++) {
+			((RcsSettingsListener)list[i]).handleSettingChanged(key, value);
+		}
+	}
+
+	/**
+	 * Update the snapshot after a local change
+	 *
+	 * @param key Key
+	 * @param value Value
+	 * @return true if the value has changed
+	 */
+	private boolean updateParameter(String key, String value) {
+		Map<String, String> current = parameters;
+		if (current == null) {
+			return true;
+		}
+		if (value.equals(current.get(key))) {
+			return false;
+		}
+		Map<String, String> copy = new HashMap<String, String>(current);
+		copy.put(key, value);
+		parameters = copy;
+		return true;
 	}
 
 	/**
@@ -98,15 +269,7 @@ public class RcsSettings {
 			return null;
 		}
 
-		String result = null;
-        Cursor c = cr.query(databaseUri, null, RcsSettingsData.KEY_KEY + "='" + key + "'", null, null);
-        if (c != null) {
-        	if ((c.getCount() > 0) && c.moveToFirst()) {
-	        	result = c.getString(2);
-        	}
-	        c.close();
-        }
-        return result;
+		return getParameters().get(key);
 	}
 
 	/**
@@ -123,7 +286,67 @@ public class RcsSettings {
         ContentValues values = new ContentValues();
         values.put(RcsSettingsData.KEY_VALUE, value);
         String where = RcsSettingsData.KEY_KEY + "='" + key + "'";
-        cr.update(databaseUri, values, where, null);
+        boolean changed;
+        synchronized(this) {
+        	pendingLocalChanges.incrementAndGet();
+        	try {
+        		cr.update(databaseUri, values, where, null);
+        	} catch(RuntimeException e) {
+        		pendingLocalChanges.decrementAndGet();
+        		throw e;
+        	}
+        	changed = updateParameter(key, value);
+        }
+        if (changed) {
+        	notifyListeners(key, value);
+        }
+	}
+
+	/**
+	 * Write parameters in a single transaction. The parameters whose value
+	 * is unchanged are not written.
+	 *
+	 * @param values Values indexed by key
+	 * @return Number of parameters written
+	 */
+	public int writeParameters(Map<String, String> values) {
+		Map<String, String> changes = new LinkedHashMap<String, String>();
+		synchronized(this) {
+			Map<String, String> current = getParameters();
+			ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+			for (Map.Entry<String, String> entry : values.entrySet()) {
+				String key = entry.getKey();
+				String value = entry.getValue();
+				if ((key == null) || (value == null) || value.equals(current.get(key))) {
+					continue;
+				}
+				changes.put(key, value);
+				operations.add(ContentProviderOperation.newUpdate(databaseUri)
+						.withValue(RcsSettingsData.KEY_VALUE, value)
+						.withSelection(RcsSettingsData.KEY_KEY + "='" + key + "'", null)
+						.build());
+			}
+			if (operations.isEmpty()) {
+				return 0;
+			}
+
+			pendingLocalChanges.addAndGet(operations.size());
+			try {
+				cr.applyBatch(databaseUri.getAuthority(), operations);
+			} catch(Exception e) {
+				// The provider has rolled back the whole batch
+				pendingLocalChanges.addAndGet(-operations.size());
+				throw new IllegalStateException("Can't write the parameters", e);
+			}
+			Map<String, String> copy = new HashMap<String, String>(current);
+			copy.putAll(changes);
+			parameters = copy;
+		}
+
+		for (Map.Entry<String, String> entry : changes.entrySet()) {
+			notifyListeners(entry.getKey(), entry.getValue());
+		}
+		return changes.size();
 	}
 
 	/**
@@ -140,7 +363,20 @@ public class RcsSettings {
 		ContentValues values = new ContentValues();
         values.put(RcsSettingsData.KEY_KEY, key);
         values.put(RcsSettingsData.KEY_VALUE, value);
-        cr.insert(databaseUri, values);
+        boolean changed;
+        synchronized(this) {
+        	pendingLocalChanges.incrementAndGet();
+        	try {
+        		cr.insert(databaseUri, values);
+        	} catch(RuntimeException e) {
+        		pendingLocalChanges.decrementAndGet();
+        		throw e;
+        	}
+        	changed = updateParameter(key, value);
+        }
+        if (changed) {
+        	notifyListeners(key, value);
+        }
 	}
 
 	/**
@@ -965,6 +1201,21 @@ public class RcsSettings {
 		}
 	}
 
+	/**
+     * Get the maximum number of connections of a file transfer HTTP download
+     *
+     * @return Number of connections
+     */
+	public int getFtHttpDownloadConnections() {
+		int result = 1;
+		if (instance != null) {
+			try {
+				result = Integer.parseInt(readParameter(RcsSettingsData.FT_HTTP_DOWNLOAD_CONNECTIONS));
+			} catch(Exception e) {}
+		}
+		return result;
+	}
+
     /**
      * Get file transfer protocol
      *
@@ -2547,6 +2798,9 @@ public class RcsSettings {
 		    outStream.flush();
 		    outStream.close();
 		    inStream.close();		    	
+
+		    // The database has been replaced without notification
+		    invalidate();
     	} catch(Exception e) {
     		e.printStackTrace();
     	}
@@ -424,6 +424,12 @@ public class RcsSettingsData {
 	 */
 	public static final String FT_HTTP_PASSWORD = "FtHttpServerPassword";
 
+	/**
+	 * Maximum number of connections of a file transfer HTTP download, 1 to
+	 * download the file over a single connection
+	 */
+	public static final String FT_HTTP_DOWNLOAD_CONNECTIONS = "FtHttpDownloadConnections";
+
     /**
      * File transfer default protocol
      */
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.settings;
+
+/**
+ * RCS settings listener
+ *
+ * @author Orange
+ */
+public interface RcsSettingsListener {
+    /**
+     * A parameter has changed
+     *
+     * @param key Key
+     * @param value New value or null if the parameter has been removed
+     */
+    public void handleSettingChanged(String key, String value);
+}
@@ -23,8 +23,11 @@ import java.util.ArrayList;
 import javax2.sip.ListeningPoint;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -34,6 +37,8 @@ import android.net.Uri;
 import android.os.Environment;
 
 import com.orangelabs.rcs.R;
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -70,11 +75,24 @@ public class RcsSettingsProvider extends ContentProvider {
      */
     public static final String DATABASE_NAME = "rcs_settings.db";
 
+    /**
+     * Schema migration of the database, version 100 is the first one whose
+     * rows are kept on upgrade
+     */
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(100) {
+        public void execute(SQLiteDatabase db) {
+        	db.execSQL("CREATE TABLE " + TABLE + " ("
+        			+ RcsSettingsData.KEY_ID + " integer primary key autoincrement,"
+                    + RcsSettingsData.KEY_KEY + " TEXT,"
+                    + RcsSettingsData.KEY_VALUE + " TEXT);");
+        }
+    });
+
     /**
      * Helper class for opening, creating and managing database version control
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 100;
+        private static final int DATABASE_VERSION = 101;
 
         private Context ctx;
 
@@ -86,13 +104,17 @@ public class RcsSettingsProvider extends ContentProvider {
 
         @Override
         public void onCreate(SQLiteDatabase db) {
-        	db.execSQL("CREATE TABLE " + TABLE + " ("
-        			+ RcsSettingsData.KEY_ID + " integer primary key autoincrement,"
-                    + RcsSettingsData.KEY_KEY + " TEXT,"
-                    + RcsSettingsData.KEY_VALUE + " TEXT);");
-
-            // Insert default values for parameters
+            MIGRATION.create(db, DATABASE_VERSION);
+            addParameters(db);
+        }
 
+        /**
+         * Insert the default values of the parameters which are not in the
+         * database
+         *
+         * @param db Database
+         */
+        private void addParameters(SQLiteDatabase db) {
             addParameter(db, RcsSettingsData.SERVICE_ACTIVATED, 				RcsSettingsData.FALSE);
             addParameter(db, RcsSettingsData.PRESENCE_INVITATION_RINGTONE, 		"");
             addParameter(db, RcsSettingsData.PRESENCE_INVITATION_VIBRATE, 		RcsSettingsData.TRUE);
@@ -147,6 +169,7 @@ public class RcsSettingsProvider extends ContentProvider {
 		    addParameter(db, RcsSettingsData.FT_HTTP_SERVER, 					"");
 		    addParameter(db, RcsSettingsData.FT_HTTP_LOGIN,						"");
 		    addParameter(db, RcsSettingsData.FT_HTTP_PASSWORD, 					"");
+		    addParameter(db, RcsSettingsData.FT_HTTP_DOWNLOAD_CONNECTIONS,		"1");
             addParameter(db, RcsSettingsData.FT_PROTOCOL,                   	RcsSettingsData.FT_PROTOCOL_MSRP);
             addParameter(db, RcsSettingsData.IM_CONF_URI, 						RcsSettingsData.DEFAULT_GROUP_CHAT_URI);
             addParameter(db, RcsSettingsData.ENDUSER_CONFIRMATION_URI,			"");
@@ -240,7 +263,7 @@ public class RcsSettingsProvider extends ContentProvider {
         }
 
         /**
-         * Add a parameter in the database
+         * Add a parameter in the database if not already present
          *
          * @param db Database
          * @param key Key
@@ -249,13 +272,19 @@ public class RcsSettingsProvider extends ContentProvider {
         private void addParameter(SQLiteDatabase db, String key, String value) {
             String sql = "INSERT INTO " + TABLE + " (" +
             	RcsSettingsData.KEY_KEY + "," +
-            	RcsSettingsData.KEY_VALUE + ") VALUES ('" +
-            	key + "','" + value + "');";
-            db.execSQL(sql);
+            	RcsSettingsData.KEY_VALUE + ") SELECT ?,? WHERE NOT EXISTS (SELECT 1 FROM " +
+            	TABLE + " WHERE " + RcsSettingsData.KEY_KEY + "=?);";
+            db.execSQL(sql, new Object[] { key, value, key });
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
+        	if (MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+        		// Keep the current values, only the new parameters get their default value
+        		addParameters(db);
+        		return;
+        	}
+
         	// Get old data before deleting the table
         	Cursor oldDataCursor = db.query(TABLE, null, null, null, null, null, null);
 
@@ -299,6 +328,15 @@ public class RcsSettingsProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -348,6 +386,23 @@ public class RcsSettingsProvider extends ContentProvider {
         return c;
     }
 
+    /**
+     * Apply the operations in a single transaction
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int update(Uri uri, ContentValues values, String where, String[] whereArgs) {
         int count;
@@ -18,12 +18,19 @@
 
 package com.orangelabs.rcs.provider.sharing;
 
+import java.util.ArrayList;
+
 import com.gsma.services.rcs.ish.ImageSharingLog;
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -70,17 +77,11 @@ public class ImageSharingProvider extends ContentProvider {
     public static final String DATABASE_NAME = "ish.db";
 
     /**
-     * Helper class for opening, creating and managing database version control
+     * Schema migration of the database, version 2 is the first one whose
+     * rows are kept on upgrade
      */
-    private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 2;
-
-        public DatabaseHelper(Context ctx) {
-            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
-        }
-
-        @Override
-        public void onCreate(SQLiteDatabase db) {
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(2) {
+        public void execute(SQLiteDatabase db) {
         	db.execSQL("CREATE TABLE " + TABLE + " ("
         			+ ImageSharingLog.ID + " integer primary key autoincrement,"
         			+ ImageSharingLog.SHARING_ID + " TEXT,"
@@ -93,14 +94,41 @@ public class ImageSharingProvider extends ContentProvider {
         			+ ImageSharingLog.TRANSFERRED + " long,"
         			+ ImageSharingLog.FILESIZE + " long);");
         }
+    }).addIndex(3, TABLE, ImageSharingData.KEY_SESSION_ID);
+
+    /**
+     * Helper class for opening, creating and managing database version control
+     */
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        private static final int DATABASE_VERSION = 3;
+
+        public DatabaseHelper(Context ctx) {
+            super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            MIGRATION.create(db, DATABASE_VERSION);
+        }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-            onCreate(db);
+            if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+                onCreate(db);
+            }
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -188,6 +216,23 @@ public class ImageSharingProvider extends ContentProvider {
         return uri;
     }
     
+    /**
+     * Apply the operations in a single transaction
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
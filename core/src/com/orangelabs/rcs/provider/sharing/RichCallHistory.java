@@ -20,13 +20,13 @@ package com.orangelabs.rcs.provider.sharing;
 
 import java.util.Calendar;
 
-import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
 
 import com.gsma.services.rcs.ish.ImageSharing;
 import com.orangelabs.rcs.core.content.MmContent;
+import com.orangelabs.rcs.provider.HistoryWriter;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -42,9 +42,9 @@ public class RichCallHistory {
 	private static RichCallHistory instance = null;
 
 	/**
-	 * Content resolver
+	 * Background writer of the sharings
 	 */
-	private ContentResolver cr;
+	private HistoryWriter writer;
 	
 	/**
 	 * Database URI for image sharing
@@ -89,7 +89,8 @@ public class RichCallHistory {
 	private RichCallHistory(Context ctx) {
 		super();
 		
-        this.cr = ctx.getContentResolver();
+        HistoryWriter.createInstance(ctx);
+        this.writer = HistoryWriter.getInstance();
     }
 	
 	/*--------------------- Video sharing methods ----------------------*/
@@ -103,7 +104,7 @@ public class RichCallHistory {
 	 * @param content Shared content
 	 * @param status Call status
 	 */
-	public Uri addVideoSharing(String contact, String sessionId, int direction, MmContent content, int status) {
+	public void addVideoSharing(String contact, String sessionId, int direction, MmContent content, int status) {
 		if(logger.isActivated()){
 			logger.debug("Add new video sharing for contact " + contact + ": session=" + sessionId + ", status=" + status);
 		}
@@ -116,7 +117,7 @@ public class RichCallHistory {
 		values.put(VideoSharingData.KEY_STATUS, status);
 		values.put(VideoSharingData.KEY_TIMESTAMP, Calendar.getInstance().getTimeInMillis());
 		values.put(VideoSharingData.KEY_DURATION, 0);
-		return cr.insert(vshDatabaseUri, values);
+		writer.insert(vshDatabaseUri, VideoSharingData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -131,7 +132,7 @@ public class RichCallHistory {
 		}
 		ContentValues values = new ContentValues();
 		values.put(VideoSharingData.KEY_STATUS, status);
-		cr.update(vshDatabaseUri, values, VideoSharingData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(vshDatabaseUri, VideoSharingData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -146,7 +147,7 @@ public class RichCallHistory {
 		}
 		ContentValues values = new ContentValues();
 		values.put(VideoSharingData.KEY_DURATION, duration);
-		cr.update(vshDatabaseUri, values, VideoSharingData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(vshDatabaseUri, VideoSharingData.KEY_SESSION_ID, sessionId, values);
 	}
 	
 	/*--------------------- Image sharing methods ----------------------*/
@@ -160,7 +161,7 @@ public class RichCallHistory {
 	 * @param content Shared content
 	 * @param status Call status
 	 */
-	public Uri addImageSharing(String contact, String sessionId, int direction, MmContent content, int status) {
+	public void addImageSharing(String contact, String sessionId, int direction, MmContent content, int status) {
 		if(logger.isActivated()){
 			logger.debug("Add new image sharing for contact " + contact + ": session=" + sessionId + ", status=" + status);
 		}
@@ -177,7 +178,7 @@ public class RichCallHistory {
 		values.put(ImageSharingData.KEY_TOTAL_SIZE, content.getSize());
 		values.put(ImageSharingData.KEY_STATUS, status);
 		values.put(ImageSharingData.KEY_TIMESTAMP, Calendar.getInstance().getTimeInMillis());
-		return cr.insert(ishDatabaseUri, values);
+		writer.insert(ishDatabaseUri, ImageSharingData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -192,7 +193,7 @@ public class RichCallHistory {
 		}
 		ContentValues values = new ContentValues();
 		values.put(ImageSharingData.KEY_STATUS, status);
-		cr.update(ishDatabaseUri, values, ImageSharingData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(ishDatabaseUri, ImageSharingData.KEY_SESSION_ID, sessionId, values);
 	}
 
 	/**
@@ -210,6 +211,6 @@ public class RichCallHistory {
 		values.put(ImageSharingData.KEY_SIZE, current);
 		values.put(ImageSharingData.KEY_TOTAL_SIZE, total);
 		values.put(ImageSharingData.KEY_STATUS, ImageSharing.State.STARTED);
-		cr.update(ishDatabaseUri, values, ImageSharingData.KEY_SESSION_ID + " = '" + sessionId + "'", null);
+		writer.update(ishDatabaseUri, ImageSharingData.KEY_SESSION_ID, sessionId, values);
 	}	
 }
@@ -17,10 +17,15 @@
  ******************************************************************************/
 package com.orangelabs.rcs.provider.sharing;
 
+import java.util.ArrayList;
+
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -30,6 +35,9 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import com.orangelabs.rcs.provider.DatabaseMigration;
+import com.orangelabs.rcs.provider.MigrationStep;
+
 /**
  * Video sharing provider
  * 
@@ -66,11 +74,28 @@ public class VideoSharingProvider extends ContentProvider {
      */
     public static final String DATABASE_NAME = "vsh.db";
 
+    /**
+     * Schema migration of the database, version 2 is the first one whose
+     * rows are kept on upgrade
+     */
+    private static final DatabaseMigration MIGRATION = new DatabaseMigration(DATABASE_NAME, new MigrationStep(2) {
+        public void execute(SQLiteDatabase db) {
+        	db.execSQL("CREATE TABLE " + TABLE + " ("
+        			+ VideoSharingData.KEY_ID + " integer primary key autoincrement,"
+        			+ VideoSharingData.KEY_SESSION_ID + " TEXT,"
+        			+ VideoSharingData.KEY_CONTACT + " TEXT,"
+        			+ VideoSharingData.KEY_STATUS + " integer,"
+        			+ VideoSharingData.KEY_DIRECTION + " integer,"
+        			+ VideoSharingData.KEY_TIMESTAMP + " long,"
+        			+ VideoSharingData.KEY_DURATION + " long);");
+        }
+    }).addIndex(3, TABLE, VideoSharingData.KEY_SESSION_ID);
+
     /**
      * Helper class for opening, creating and managing database version control
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 2;
+        private static final int DATABASE_VERSION = 3;
 
         public DatabaseHelper(Context ctx) {
             super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
@@ -78,23 +103,27 @@ public class VideoSharingProvider extends ContentProvider {
 
         @Override
         public void onCreate(SQLiteDatabase db) {
-        	db.execSQL("CREATE TABLE " + TABLE + " ("
-        			+ VideoSharingData.KEY_ID + " integer primary key autoincrement,"
-        			+ VideoSharingData.KEY_SESSION_ID + " TEXT,"
-        			+ VideoSharingData.KEY_CONTACT + " TEXT,"
-        			+ VideoSharingData.KEY_STATUS + " integer,"
-        			+ VideoSharingData.KEY_DIRECTION + " integer,"
-        			+ VideoSharingData.KEY_TIMESTAMP + " long,"
-        			+ VideoSharingData.KEY_DURATION + " long);");
+            MIGRATION.create(db, DATABASE_VERSION);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int currentVersion) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-            onCreate(db);
+            if (!MIGRATION.upgrade(db, oldVersion, currentVersion)) {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+                onCreate(db);
+            }
         }
     }
 
+    /**
+     * Returns the schema migration of the database
+     *
+     * @return Migration
+     */
+    public static DatabaseMigration getMigration() {
+        return MIGRATION;
+    }
+
     @Override
     public boolean onCreate() {
         openHelper = new DatabaseHelper(getContext());
@@ -182,6 +211,23 @@ public class VideoSharingProvider extends ContentProvider {
         return uri;
     }
     
+    /**
+     * Apply the operations in a single transaction
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provisioning;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+
+/**
+ * Differences between the settings read from a provisioning document and
+ * the current settings. Each changed setting is classified by the impact of
+ * its change on the running stack: read again on use, sent in the REGISTER
+ * or read when the stack starts.
+ *
+ * @author Orange
+ */
+public class ProvisioningDelta {
+	/**
+	 * Setting read again on use, nothing to reinitialize
+	 */
+	public static final int HOT_RELOAD = 0;
+
+	/**
+	 * Setting sent in the REGISTER, the registration is restarted
+	 */
+	public static final int REGISTRATION = 1;
+
+	/**
+	 * Setting read when the stack starts, the stack is restarted
+	 */
+	public static final int RESTART = 2;
+
+	/**
+	 * Impacts indexed by key, the settings not listed are assumed to be read
+	 * when the stack starts
+	 */
+	private static final Hashtable<String, Integer> IMPACTS = new Hashtable<String, Integer>();
+
+	static {
+		// Services, limits and timers read by the sessions, the capability
+		// exchanges and the API calls
+		String[] hotReload = { RcsSettingsData.AUTO_ACCEPT_CHAT, RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
+				RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER, RcsSettingsData.CAPABILITY_FILE_TRANSFER,
+				RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF, RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL,
+				RcsSettingsData.CAPABILITY_GROUP_CHAT_SF, RcsSettingsData.CAPABILITY_IM_GROUP_SESSION,
+				RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY, RcsSettingsData.CHAT_IDLE_DURATION,
+				RcsSettingsData.CONVERGENT_MESSAGING_UX, RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
+				RcsSettingsData.FT_HTTP_SERVER, RcsSettingsData.FT_HTTP_LOGIN, RcsSettingsData.FT_HTTP_PASSWORD,
+				RcsSettingsData.FT_PROTOCOL, RcsSettingsData.GEOLOC_EXPIRATION_TIME,
+				RcsSettingsData.IM_CAPABILITY_ALWAYS_ON, RcsSettingsData.IM_SESSION_START,
+				RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS,
+				RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.IPVOICECALL_BREAKOUT_AA,
+				RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.MAX_CHAT_MSG_LENGTH,
+				RcsSettingsData.MAX_CHAT_PARTICIPANTS, RcsSettingsData.MAX_FILE_TRANSFER_SIZE,
+				RcsSettingsData.MAX_FREETXT_LENGTH, RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH,
+				RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH, RcsSettingsData.MAX_IMAGE_SHARE_SIZE,
+				RcsSettingsData.MAX_PHOTO_ICON_SIZE, RcsSettingsData.MAX_VIDEO_SHARE_DURATION,
+				RcsSettingsData.REVOKE_TIMEOUT, RcsSettingsData.SECURE_MSRP_OVER_WIFI,
+				RcsSettingsData.SECURE_RTP_OVER_WIFI, RcsSettingsData.SMS_FALLBACK_SERVICE,
+				RcsSettingsData.WARN_FILE_TRANSFER_SIZE, RcsSettingsData.WARN_SF_SERVICE };
+		for (String key : hotReload) {
+			IMPACTS.put(key, HOT_RELOAD);
+		}
+
+		// Feature tags of the REGISTER
+		String[] registration = { RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.CAPABILITY_VIDEO_SHARING,
+				RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH,
+				RcsSettingsData.CAPABILITY_FILE_TRANSFER_HTTP, RcsSettingsData.CAPABILITY_IP_VOICE_CALL,
+				RcsSettingsData.CAPABILITY_IP_VIDEO_CALL };
+		for (String key : registration) {
+			IMPACTS.put(key, REGISTRATION);
+		}
+
+		// User profile, network access, SIP stack, XDM server and services
+		// activated when the stack starts
+		String[] restart = { RcsSettingsData.USERPROFILE_IMS_USERNAME, RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID,
+				RcsSettingsData.USERPROFILE_IMS_PASSWORD, RcsSettingsData.USERPROFILE_IMS_REALM,
+				RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN, RcsSettingsData.IMS_PROXY_ADDR_MOBILE,
+				RcsSettingsData.IMS_PROXY_ADDR_WIFI, RcsSettingsData.IMS_PROXY_PORT_MOBILE,
+				RcsSettingsData.IMS_PROXY_PORT_WIFI, RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
+				RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI, RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE,
+				RcsSettingsData.RCS_APN, RcsSettingsData.SIP_TIMER_T1, RcsSettingsData.SIP_TIMER_T2,
+				RcsSettingsData.SIP_TIMER_T4, RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.USE_IMEI_AS_DEVICE_ID,
+				RcsSettingsData.XDM_SERVER, RcsSettingsData.XDM_LOGIN, RcsSettingsData.XDM_PASSWORD,
+				RcsSettingsData.IM_CONF_URI, RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
+				RcsSettingsData.KEY_GSMA_RELEASE,
+				// Cached by the services and the utilities created with the stack
+				RcsSettingsData.CAPABILITY_POLLING_PERIOD, RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT,
+				RcsSettingsData.TEL_URI_FORMAT, RcsSettingsData.MAX_CHAT_SESSIONS,
+				RcsSettingsData.PUBLISH_EXPIRE_PERIOD, RcsSettingsData.ENDUSER_CONFIRMATION_URI,
+				RcsSettingsData.REGISTER_RETRY_BASE_TIME, RcsSettingsData.REGISTER_RETRY_MAX_TIME };
+		for (String key : restart) {
+			IMPACTS.put(key, RESTART);
+		}
+	}
+
+	/**
+	 * Change of a setting
+	 */
+	public static class Change {
+		private String key;
+
+		private String oldValue;
+
+		private String newValue;
+
+		private int impact;
+
+		private Change(String key, String oldValue, String newValue) {
+			this.key = key;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+			this.impact = ProvisioningDelta.getImpact(key);
+		}
+
+		/**
+		 * Returns the key of the setting
+		 *
+		 * @return Key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the current value
+		 *
+		 * @return Value or null if the setting has no value
+		 */
+		public String getOldValue() {
+			return oldValue;
+		}
+
+		/**
+		 * Returns the value read from the document
+		 *
+		 * @return Value
+		 */
+		public String getNewValue() {
+			return newValue;
+		}
+
+		/**
+		 * Returns the impact of the change
+		 *
+		 * @return Impact
+		 */
+		public int getImpact() {
+			return impact;
+		}
+
+		public String toString() {
+			return key + ": " + oldValue + " -> " + newValue;
+		}
+	}
+
+	/**
+	 * Changes in the order of the document
+	 */
+	private Vector<Change> changes = new Vector<Change>();
+
+	/**
+	 * Highest impact of the changes
+	 */
+	private int impact = HOT_RELOAD;
+
+	/**
+	 * Constructor
+	 *
+	 * @param current Current settings indexed by key
+	 * @param received Settings read from the document indexed by key
+	 */
+	public ProvisioningDelta(Map<String, String> current, Map<String, String> received) {
+		for (Map.Entry<String, String> entry : received.entrySet()) {
+			String key = entry.getKey();
+			String value = entry.getValue();
+			if ((key == null) || (value == null) || value.equals(current.get(key))) {
+				continue;
+			}
+			Change change = new Change(key, current.get(key), value);
+			changes.addElement(change);
+			impact = Math.max(impact, change.impact);
+		}
+	}
+
+	/**
+	 * Returns the changes
+	 *
+	 * @return Changes
+	 */
+	public Vector<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Returns the new values of the changed settings
+	 *
+	 * @return Values indexed by key
+	 */
+	public Map<String, String> getValues() {
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		for (Change change : changes) {
+			values.put(change.key, change.newValue);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the highest impact of the changes
+	 *
+	 * @return Impact, {@link #HOT_RELOAD} if nothing has changed
+	 */
+	public int getImpact() {
+		return impact;
+	}
+
+	/**
+	 * Returns the impact of the change of a setting
+	 *
+	 * @param key Key
+	 * @return Impact
+	 */
+	public static int getImpact(String key) {
+		Integer impact = IMPACTS.get(key);
+		return (impact != null) ? impact : RESTART;
+	}
+
+	/**
+	 * Is the impact of the change of a setting known
+	 *
+	 * @param key Key
+	 * @return Boolean
+	 */
+	public static boolean isClassified(String key) {
+		return IMPACTS.containsKey(key);
+	}
+
+	/**
+	 * Returns the hash of a provisioning document
+	 *
+	 * @param content Content of the document
+	 * @return SHA-1 in hexadecimal
+	 */
+	public static String hash(String content) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not supported");
+		}
+		StringBuffer hash = new StringBuffer();
+		for (byte b : digest.digest(content.getBytes())) {
+			hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+		}
+		return hash.toString();
+	}
+}
@@ -19,1950 +19,842 @@
 package com.orangelabs.rcs.provisioning;
 
 import java.io.ByteArrayInputStream;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import javax2.sip.ListeningPoint;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.provider.settings.RcsSettingsData;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * Provisioning parser
+ * Provisioning parser. The document is parsed as a stream, each parameter
+ * being mapped to the settings through a table indexed by the path of its
+ * characteristic, and the settings are written in a single transaction at
+ * the end of the document.
  *
  * @author jexa7410
  */
-public class ProvisioningParser {
+public class ProvisioningParser extends DefaultHandler {
 	/**
 	 * Parameter type text
 	 */
 	private static final int TYPE_TXT = 0;
-	
+
 	/**
 	 * Parameter type integer
 	 */
 	private static final int TYPE_INT = 1;
-	
+
 	/**
-     * Provisioning info
-     */
-    private ProvisioningInfo provisioningInfo = new ProvisioningInfo();
+	 * Value written as it is
+	 */
+	private static final int VALUE = 0;
 
-    /**
-     * Content
-     */
-    private String content;
+	/**
+	 * Boolean false if the value is 0, else true
+	 */
+	private static final int BOOLEAN = 1;
 
-    /**
-     * The logger
-     */
-    private Logger logger = Logger.getLogger(this.getClass().getName());
+	/**
+	 * Boolean true if the value is 1, else false
+	 */
+	private static final int BOOLEAN_ONE = 2;
 
-    /**
-     * Constructor
-     *
-     * @param content Content
-     */
-    public ProvisioningParser(String content) {
-        this.content = content;
-    }
+	/**
+	 * Boolean true if the value is 0, else false
+	 */
+	private static final int BOOLEAN_INVERTED = 3;
 
-    /**
-     * Returns provisioning info
-     *
-     * @return Provisioning info
-     */
-    public ProvisioningInfo getProvisioningInfo() {
-        return provisioningInfo;
-    }
+	/**
+	 * Size in bytes written in kilobytes
+	 */
+	private static final int KILOBYTES = 4;
 
 	/**
-	 * Parse the provisioning document
-	 * 
-	 * @param gsmaRelease
-	 *            The GSMA release (Albatros, Blackbird, Crane...) before parsing
-	 * 
-	 * @return Boolean result
-	 * 
-	 *         <p>
-	 *         <b>Be Careful:</b><br />
-	 *         GSMA release is set to blackbird if SERVICES node is present, otherwise release is unchanged
-	 *         </p>
+	 * URI written as a SIP-URI
 	 */
-	public boolean parse(int gsmaRelease) {
-        try {
-            if (logger.isActivated()) {
-                logger.debug("Start the parsing of content");
-            }
-            ByteArrayInputStream mInputStream = new ByteArrayInputStream(content.getBytes());
-            DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dbuilder = dfactory.newDocumentBuilder();
-            Document doc = dbuilder.parse(mInputStream);
-            mInputStream.close();
-            mInputStream = null;
-            if (doc == null) {
-                if (logger.isActivated()) {
-                    logger.debug("The document is null");
-                }
-                return false;
-            }
+	private static final int SIP_URI = 5;
 
-            if (logger.isActivated()) {
-                logger.debug("Parsed Doc ="+doc);
-            }
-            
-            Node rootnode = doc.getDocumentElement();
-            Node childnode = rootnode.getFirstChild();
-            if (childnode == null) {
-                if (logger.isActivated()) {
-                    logger.debug("The first chid node is null");
-                }
-                return false;
-            }
+	/**
+	 * Username part of a SIP-URI
+	 */
+	private static final int USERNAME = 6;
 
-            int nodeNumber = 0;
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        Node typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (logger.isActivated()) {
-                                logger.debug("Node " + childnode.getNodeName() + " with type "
-                                        + typenode.getNodeValue());
-                            }
-                            nodeNumber++;
-                            if (typenode.getNodeValue().equalsIgnoreCase("VERS")) {
-                                parseVersion(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("TOKEN")) {
-                                parseToken(childnode);
-                            } else
-                        	if (typenode.getNodeValue().equalsIgnoreCase("MSG")) {
-                                parseTermsMessage(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("APPLICATION")) {
-                                parseApplication(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("IMS")) {
-                                parseIMS(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("PRESENCE")) {
-                                parsePresence(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("XDMS")) {
-                                parseXDMS(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("IM")) {
-                                parseIM(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("CAPDISCOVERY")) {
-                                parseCapabilityDiscovery(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("APN")) {
-                                parseAPN(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("OTHER")) {
-                                parseOther(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SERVICES")) {
-                                parseServices(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SUPL")) {
-                                parseSupl(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SERVICEPROVIDEREXT")) {
-                                parseServiceProviderExt(childnode);
-                            }
-                        }
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-            if (nodeNumber ==1) {
-				// We received a single node (the version one) !
-				// This is the case if the version number is negative or in order to extend the validity of the provisioning.
-				// In that case we restore the relevant GSMA release saved before parsing.
-				RcsSettings.getInstance().setGsmaRelease(gsmaRelease);
-            }
-            return true;
-        } catch (Exception e) {
-            if (logger.isActivated()) {
-                logger.error("Can't parse content", e);
-            }
-            return false;
-        }
-    }
+	/**
+	 * SIP transport protocol
+	 */
+	private static final int PROTOCOL = 7;
 
-    /**
-     * Parse the provisioning version
-     *
-     * @param node Node
-     */
-    private void parseVersion(Node node) {
-        String version = null;
-        String validity = null;
-        if (node == null) {
-            return;
-        }
-        Node versionchild = node.getFirstChild();
-
-        if (versionchild != null) {
-            do {
-                if (version == null) {
-                    if ((version = getValueByParamName("version", versionchild, TYPE_TXT)) != null) {
-                        provisioningInfo.setVersion(version);
-                        continue;
-                    }
-                }
-                if (validity == null) {
-                    if ((validity = getValueByParamName("validity", versionchild, TYPE_INT)) != null) {
-                        provisioningInfo.setValidity(Long.parseLong(validity));
-                        continue;
-                    }
-                }
-            } while((versionchild = versionchild.getNextSibling()) != null);
-        }
-    }
-    
-    /**
-     * Parse the provisioning Token
-     *
-     * @param node Node
-     */
-    private void parseToken(Node node) {
-        String token = null;
-        String tokenValidity = null;
-        if (node == null) {
-            return;
-        }
-        Node tokenChild = node.getFirstChild();
-
-        if (tokenChild != null) {
-            do {
-                if (token == null) {
-                    if ((token = getValueByParamName("token", tokenChild, TYPE_TXT)) != null) {
-                        provisioningInfo.setToken(token);
-                        continue;
-                    }
-                }
-                if (tokenValidity == null) {
-                    if ((tokenValidity = getValueByParamName("validity", tokenChild, TYPE_INT)) != null) {
-                        provisioningInfo.setTokenValidity(Long.parseLong(tokenValidity));
-                        continue;
-                    }
-                }
-            } while((tokenChild = tokenChild.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * MSRP or MSRP over TLS
+	 */
+	private static final int SECURE_MSRP = 8;
 
-    /**
-     * Parse terms message
-     *
-     * @param node Node
-     */
-    private void parseTermsMessage(Node node) {
-        String title = null;
-        String message = null;
-        String acceptBtn = null;
-        String rejectBtn = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (title == null) {
-                    if ((title = getValueByParamName("title", childnode, TYPE_TXT)) != null) {
-                        provisioningInfo.setTitle(title);
-                        continue;
-                    }
-                }
-                if (message == null) {
-                    if ((message = getValueByParamName("message", childnode, TYPE_TXT)) != null) {
-                        provisioningInfo.setMessage(message);
-                        continue;
-                    }
-                }
-                if (acceptBtn == null) {
-                    if ((acceptBtn = getValueByParamName("Accept_btn", childnode, TYPE_INT)) != null) {
-                        if (acceptBtn.equals("1")) {
-                            provisioningInfo.setAcceptBtn(true);
-                        } else {
-                            provisioningInfo.setAcceptBtn(false);
-                        }
-                        continue;
-                    }
-                }
-                if (rejectBtn == null) {
-                    if ((rejectBtn = getValueByParamName("Reject_btn", childnode, TYPE_INT)) != null) {
-                        if (rejectBtn.equals("1")) {
-                            provisioningInfo.setRejectBtn(true);
-                        } else {
-                            provisioningInfo.setRejectBtn(false);
-                        }
-                        continue;
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * RTP or SRTP
+	 */
+	private static final int SECURE_RTP = 9;
 
-    /**
-     * Parse the application infos
-     *
-     * @param node Node
-     */
-    private void parseApplication(Node node) {
-        String appId = null;
-        String name = null;
-        String appRef = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (appId == null) {
-                    if ((appId = getValueByParamName("AppID", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-                if (name == null) {
-                    if ((name = getValueByParamName("Name", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-                if (appRef == null) {
-                    if ((appRef = getValueByParamName("AppRef", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
+	/**
+	 * Authentication procedure
+	 */
+	private static final int AUTHENT = 10;
 
-        if (appRef != null && (appRef.equalsIgnoreCase("IMS-Settings") || appRef.equalsIgnoreCase("ims-rcse"))) {
-            parseIMS(node);
-        }
+	/**
+	 * Service authorized for one of the access networks
+	 */
+	private static final int SERVICE_FLAGS = 11;
 
-        if (appRef != null && appRef.equalsIgnoreCase("RCSe-Settings")) {
-            parseRCSe(node);
-        }
-    }
+	/**
+	 * Proxy address and port, written for the mobile and the Wi-Fi accesses
+	 */
+	private static final int PROXY_ADDRESS = 12;
 
-    /**
-     * Parse presence favorite link
-     *
-     * @param node Node
-     */
-    private void parseFavoriteLink(Node node) {
-        // Not supported
-    }
+	/**
+	 * Provisioning version
+	 */
+	private static final int VERSION = 13;
 
-    /**
-     * Parse presence watcher
-     *
-     * @param node Node
-     */
-    private void parsePresenceWatcher(Node node) {
-    	// TODO: "FetchAuth"
-    	// TODO: "ContactCapPresAut"
-    }
+	/**
+	 * Provisioning validity
+	 */
+	private static final int VALIDITY = 14;
 
-    /**
-     * Parse presentity watcher
-     * 
-     * @param node Node
-     */
-    private void parsePresentityWatcher(Node node) {
-    	// TODO: "WATCHERFETCHAUTH"
-    }
+	/**
+	 * Token
+	 */
+	private static final int TOKEN = 15;
 
-    /**
-     * Parse presence
-     *
-     * @param node Node
-     */
-    private void parsePresence(Node node) {
-        String usePresence = null;
-        String presencePrfl = null;
-        String iconMaxSize = null;
-        String noteMaxSize = null;
-        String publishTimer = null;
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("FAVLINK")) {
-                                parseFavoriteLink(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SERVCAPWATCH")) {
-                                parsePresenceWatcher(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("ServCapPresentity")) {
-                                parsePresentityWatcher(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (usePresence == null) {
-                    if ((usePresence = getValueByParamName("usePresence", childnode, TYPE_INT)) != null) {
-                        if (usePresence.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (presencePrfl == null) {
-                    if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
-                        if (presencePrfl.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (iconMaxSize == null) {
-                    if ((iconMaxSize = getValueByParamName("IconMaxSize", childnode, TYPE_INT)) != null) {
-        				int kb = Integer.parseInt(iconMaxSize) / 1024;
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_PHOTO_ICON_SIZE, ""+kb);
-                        continue;
-                    }
-                }
-
-                if (noteMaxSize == null) {
-                    if ((noteMaxSize = getValueByParamName("NoteMaxSize", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_FREETXT_LENGTH, noteMaxSize);
-                        continue;
-                    }
-                }
-
-                if (publishTimer == null) {
-                    if ((publishTimer = getValueByParamName("PublishTimer", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.PUBLISH_EXPIRE_PERIOD, publishTimer);
-                        continue;
-                    }
-                }
-
-                // Not supported: "AvailabilityAuth"
-                // Not supported: "client-obj-datalimit"
-                // Not used for RCS: "content-serveruri"
-                // Not supported: "source-throttlepublish"
-                // Not supported: "max-number-ofsubscriptions-inpresence-list"
-                // TODO: "service-uritemplate"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * Token validity
+	 */
+	private static final int TOKEN_VALIDITY = 16;
 
-    /**
-     * Parse services
-     *
-     * @param node Node
-     */
-    private void parseServices(Node node) {
-        String presencePrfl = null;
-        String chatAuth = null;        
-        String groupChatAuth = null;        
-        String ftAuth = null;
-        String geolocPushAuth = null;
-        String vsAuth = null;
-        String isAuth = null;
-        String rcsIPVoiceCallAuth = null;
-        String rcsIPVideoCallAuth = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
+	/**
+	 * Terms title
+	 */
+	private static final int TITLE = 17;
 
-        if (childnode != null) {
-			// Node "SERVICES" is mandatory in GSMA release Blackbird and not present in previous one Albatros.
-			// Only if the parsing result contains a SERVICE tree, Blackbird is assumed as release.
-			// This trick is used to detect the GSMA release as provisioned by the network.
-			RcsSettings.getInstance().setGsmaRelease(RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD);
-            do {
-
-                if (chatAuth == null) {
-                    if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
-                        if (chatAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-            	 if (groupChatAuth == null) {
-                     if ((groupChatAuth = getValueByParamName("groupChatAuth", childnode, TYPE_INT)) != null) {
-                         if (groupChatAuth.equals("1")) {
-                             RcsSettings.getInstance().writeParameter(
-                                     RcsSettingsData.CAPABILITY_IM_GROUP_SESSION, RcsSettingsData.TRUE);
-                         } else {
-                             RcsSettings.getInstance().writeParameter(
-                                     RcsSettingsData.CAPABILITY_IM_GROUP_SESSION, RcsSettingsData.FALSE);
-                         }
-                         continue;
-                     }
-                 }
-
-                if (ftAuth == null) {
-                    if ((ftAuth = getValueByParamName("ftAuth", childnode, TYPE_INT)) != null) {
-                        if (ftAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (vsAuth == null) {
-                    if ((vsAuth = getValueByParamName("vsAuth", childnode, TYPE_INT)) != null) {
-                        if (vsAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (isAuth == null) {
-                    if ((isAuth = getValueByParamName("isAuth", childnode, TYPE_INT)) != null) {
-                        if (isAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (geolocPushAuth == null) {
-                    if ((geolocPushAuth = getValueByParamName("geolocPushAuth", childnode, TYPE_INT)) != null) {
-                        if (geolocPushAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (presencePrfl == null) {
-                    if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
-                        if (presencePrfl.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (rcsIPVoiceCallAuth == null) {
-                    if ((rcsIPVoiceCallAuth = getValueByParamName("rcsIPVoiceCallAuth", childnode, TYPE_INT)) != null) {
-                    	int value =Integer.decode(rcsIPVoiceCallAuth);
-                        if ((value % 16) == 0){
-                        	RcsSettings.getInstance().writeParameter(
-                                  RcsSettingsData.CAPABILITY_IP_VOICE_CALL, RcsSettingsData.FALSE);
-                        } else {
-                        	RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IP_VOICE_CALL, RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (rcsIPVideoCallAuth == null) {
-                    if ((rcsIPVideoCallAuth = getValueByParamName("rcsIPVideoCallAuth", childnode, TYPE_INT)) != null) {
-                        int value =Integer.decode(rcsIPVoiceCallAuth);
-                        if ((value % 16) == 0){
-                        	RcsSettings.getInstance().writeParameter(
-                                  RcsSettingsData.CAPABILITY_IP_VIDEO_CALL, RcsSettingsData.FALSE);
-                        } else {
-                        	RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IP_VIDEO_CALL, RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-                
-                // Not used: "standaloneMsgAuth"
-                // Not used: "geolocPullAuth"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-    
-    /**
-     * Parse XDMS
-     *
-     * @param node Node
-     */
-    private void parseXDMS(Node node) {
-        String revokeTimer = null;
-        String xcapRootURI = null;
-        String xcapAuthenticationUsername = null;
-        String xcapAuthenticationSecret = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (revokeTimer == null) {
-                    if ((revokeTimer = getValueByParamName("RevokeTimer", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.REVOKE_TIMEOUT,
-                                revokeTimer);
-                        continue;
-                    }
-                }
-
-                if (xcapRootURI == null) {
-                    if ((xcapRootURI = getValueByParamName("XCAPRootURI", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.XDM_SERVER, xcapRootURI);
-                        continue;
-                    }
-                }
-
-                if (xcapAuthenticationUsername == null) {
-                    if ((xcapAuthenticationUsername = getValueByParamName(
-                            "XCAPAuthenticationUserName", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.XDM_LOGIN,
-                                xcapAuthenticationUsername);
-                        continue;
-                    }
-                }
-
-                if (xcapAuthenticationSecret == null) {
-                    if ((xcapAuthenticationSecret = getValueByParamName(
-                            "XCAPAuthenticationSecret", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.XDM_PASSWORD,
-                                xcapAuthenticationSecret);
-                        continue;
-                    }
-                }
-
-                // Not used (only Digest is used): "XCAPAuthenticationType"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * Terms message
+	 */
+	private static final int MESSAGE = 18;
 
-    /**
-     * Parse supl services
-     *
-     * @param node Node
-     */
-    private void parseSupl(Node node) {
-        String textMaxLength = null;
-        String locInfoMaxValidTime = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (textMaxLength == null) {
-                    if ((textMaxLength = getValueByParamName("TextMaxLength", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH,
-                        		textMaxLength);
-                        continue;
-                    }
-                }
-
-                if (locInfoMaxValidTime == null) {
-                    if ((locInfoMaxValidTime = getValueByParamName("LocInfoMaxValidTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.GEOLOC_EXPIRATION_TIME, locInfoMaxValidTime);
-                        continue;
-                    }
-                }
-
-                // Not used: "geolocPullOpenValue"
-                // Not used: "geolocPullApiGwAddress"
-                // Not used: "geolocPullBlockTimer"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-    
-    /**
-     * Parse service provider ext
-     * 
-     * @param node Node
-     */
-    private void parseServiceProviderExt(Node node) {
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("joyn")) {
-                                parseJoyn(childnode);
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-    
-    /**
-     * Parse joyn
-     * 
-     * @param node Node
-     */
-    private void parseJoyn(Node node) {
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("UX")) {
-                                parseUx(childnode);
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-    
-    /**
-     * Parse joyn
-     * 
-     * @param node Node
-     */
-    private void parseUx(Node node) {
-        String messagingUX = null;
-        
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-
-                if (messagingUX == null) {
-                    if ((messagingUX = getValueByParamName("messagingUX", childnode, TYPE_INT)) != null) {
-                        if (messagingUX.equals("1")) {
-                        	RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.CONVERGENT_MESSAGING_UX, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                        		RcsSettingsData.CONVERGENT_MESSAGING_UX, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
+	/**
+	 * Terms accept button
+	 */
+	private static final int ACCEPT_BUTTON = 19;
 
-        // Not used: oneButtonVoiceCall
-        // Not used: oneButtonVideoCall
-    }
-    
-    /**
-     * Parse IM
-     *
-     * @param node Node
-     */
-    private void parseIM(Node node) {
-        String imCapAlwaysOn = null;
-        String ftCapAlwaysOn = null;
-        String imWarnSF = null;
-        String imSessionStart = null;
-        String ftWarnSize = null;
-        String autoAcceptFt = null;
-        String ftHttpCsUri = null;
-        String ftHttpCsUser = null;
-        String ftHttpCsPwd = null;
-        String ftDefaultMech = null;
-        String ftSF = null;
-        String chatAuth = null;
-        String smsFallBackAuth = null;
-        String autoAcceptChat = null;
-        String autoAcceptGroupChat = null;
-        String maxSize1to1 = null;
-        String maxSize1toM = null;
-        String timerIdle = null;
-        String maxSizeFileTransfer = null;
-        String ftThumb = null;
-        String maxAdhocGroupSize = null;
-        String confFctyUri = null;
-        String groupChatSF = null;
-        String maxConcurrentSession = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-            	if (imCapAlwaysOn == null) {
-                    if ((imCapAlwaysOn = getValueByParamName("imCapAlwaysON", childnode, TYPE_INT)) != null) {
-                        if (imCapAlwaysOn.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-            	
-            	if (ftCapAlwaysOn == null) {
-                    if ((ftCapAlwaysOn = getValueByParamName("ftCapAlwaysON", childnode, TYPE_INT)) != null) {
-                        if (ftCapAlwaysOn.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (maxConcurrentSession == null) {
-                    if ((maxConcurrentSession = getValueByParamName("MaxConcurrentSession", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_CHAT_SESSIONS,
-                                maxConcurrentSession);
-                        continue;
-                    }
-                }
-
-                if (groupChatSF == null) {
-                    if ((groupChatSF = getValueByParamName("GroupChatFullStandFwd", childnode, TYPE_INT)) != null) {
-                        if (groupChatSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_GROUP_CHAT_SF,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_GROUP_CHAT_SF,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (imWarnSF == null) {
-                    if ((imWarnSF = getValueByParamName("imWarnSF", childnode, TYPE_INT)) != null) {
-                        if (imWarnSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.WARN_SF_SERVICE,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.WARN_SF_SERVICE,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (autoAcceptFt == null) {
-                    if ((autoAcceptFt = getValueByParamName("ftAutAccept", childnode, TYPE_INT)) != null) {
-                        if (autoAcceptFt.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (ftSF == null) {
-                    if ((ftSF = getValueByParamName("ftStAndFwEnabled", childnode, TYPE_INT)) != null) {
-                        if (ftSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsUri == null) {
-                    if ((ftHttpCsUri = getValueByParamName("ftHTTPCSURI", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_SERVER, ftHttpCsUri);
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsUser == null) {
-                    if ((ftHttpCsUser = getValueByParamName("ftHTTPCSUser", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_LOGIN, ftHttpCsUser);
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsPwd == null) {
-                    if ((ftHttpCsPwd = getValueByParamName("ftHTTPCSPwd", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_PASSWORD, ftHttpCsPwd);
-                        continue;
-                    }
-                }
-
-                if (ftDefaultMech == null) {
-                    if ((ftDefaultMech = getValueByParamName("ftDefaultMech", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_PROTOCOL, ftDefaultMech);
-                        continue;
-                    }
-                }
-
-                if (imSessionStart == null) {
-                    if ((imSessionStart = getValueByParamName("imSessionStart", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.IM_SESSION_START,
-                                imSessionStart);
-                        continue;
-                    }
-                }
-
-                if (ftWarnSize == null) {
-                    if ((ftWarnSize = getValueByParamName("ftWarnSize", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.WARN_FILE_TRANSFER_SIZE, ftWarnSize);
-                        continue;
-                    }
-                }
-
-                if (chatAuth == null) {
-                    if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
-                        if (chatAuth.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (smsFallBackAuth == null) {
-                    if ((smsFallBackAuth = getValueByParamName("SmsFallBackAuth", childnode, TYPE_INT)) != null) {
-                        if (smsFallBackAuth.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.SMS_FALLBACK_SERVICE, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.SMS_FALLBACK_SERVICE, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (autoAcceptChat == null) {
-                    if ((autoAcceptChat = getValueByParamName("AutAccept", childnode, TYPE_INT)) != null) {
-                        if (autoAcceptChat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_CHAT,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_CHAT,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (autoAcceptGroupChat == null) {
-                    if ((autoAcceptGroupChat = getValueByParamName("AutAcceptGroupChat", childnode, TYPE_INT)) != null) {
-                        if (autoAcceptGroupChat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (maxSize1to1 == null) {
-                    if ((maxSize1to1 = getValueByParamName("MaxSize1to1", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_CHAT_MSG_LENGTH, maxSize1to1);
-                        continue;
-                    }
-                }
-
-                if (maxSize1toM == null) {
-                    if ((maxSize1toM = getValueByParamName("MaxSize1toM", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH, maxSize1toM);
-                        continue;
-                    }
-                }
-
-                if (timerIdle == null) {
-                    if ((timerIdle = getValueByParamName("TimerIdle", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.CHAT_IDLE_DURATION, timerIdle);
-                        continue;
-                    }
-                }
-
-                if (maxSizeFileTransfer == null) {
-                    if ((maxSizeFileTransfer = getValueByParamName("MaxSizeFileTr", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_FILE_TRANSFER_SIZE, maxSizeFileTransfer);
-                        continue;
-                    }
-                }
-
-                if (ftThumb == null) {
-                    if ((ftThumb = getValueByParamName("ftThumb", childnode, TYPE_INT)) != null) {
-                        if (ftThumb.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL, RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL, RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (maxAdhocGroupSize == null) {
-                    if ((maxAdhocGroupSize = getValueByParamName("max_adhoc_group_size", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_CHAT_PARTICIPANTS, maxAdhocGroupSize);
-                        continue;
-                    }
-                }
-
-                if (confFctyUri == null) {
-                    if ((confFctyUri = getValueByParamName("conf-fcty-uri", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.IM_CONF_URI, formatSipUri(confFctyUri));
-                        continue;
-                    }
-                }
-
-                // Not used for RCS: "pres-srv-cap"
-                // Not used for RCS: "deferred-msg-func-uri"
-                // Not used for RCS: "exploder-uri"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * Terms reject button
+	 */
+	private static final int REJECT_BUTTON = 20;
 
-    /**
-     * Parse capability discovery
-     * 
-     * @param node Node
-     */
-    private void parseCapabilityDiscovery(Node node) {
-        String pollingPeriod = null;
-        String capInfoExpiry = null;
-        String presenceDiscovery = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (pollingPeriod == null) {
-                    if ((pollingPeriod = getValueByParamName("pollingPeriod", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.CAPABILITY_POLLING_PERIOD, pollingPeriod);
-                        continue;
-                    }
-                }
-
-                if (capInfoExpiry == null) {
-                    if ((capInfoExpiry = getValueByParamName("capInfoExpiry", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT, capInfoExpiry);
-                        continue;
-                    }
-                }
-
-                if (presenceDiscovery == null) {
-                    if ((presenceDiscovery = getValueByParamName("presenceDisc", childnode, TYPE_INT)) != null) {
-                        if (presenceDiscovery.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                    RcsSettingsData.FALSE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                    RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+	/**
+	 * Section of an application whose reference is not yet known
+	 */
+	private static final String APPLICATION = "APPLICATION";
 
-    /**
-     * Parse APN
-     *
-     * @param node Node
+	/**
+	 * Section of the services, present from the Blackbird release
+	 */
+	private static final String SERVICES = "SERVICES";
+
+	/**
+	 * Mapping of a parameter
+	 */
+	private static class Mapping {
+		private int type;
+
+		private int conversion;
+
+		private String[] keys;
+
+		private Mapping(int type, int conversion, String[] keys) {
+			this.type = type;
+			this.conversion = conversion;
+			this.keys = keys;
+		}
+	}
+
+	/**
+	 * Characteristic being parsed
+	 */
+	private static class Frame {
+		/**
+		 * Section of the characteristic, or null if its parameters are not used
+		 */
+		private String section;
+
+		/**
+		 * Names of the parameters already read, only the first value of a
+		 * parameter being used
+		 */
+		private Hashtable<String, Boolean> names = new Hashtable<String, Boolean>();
+
+		/**
+		 * Events received before the section is known, or null
+		 */
+		private Vector<String[]> deferred = null;
+
+		/**
+		 * Depth of the deferred characteristics
+		 */
+		private int deferredDepth = 0;
+
+		private Frame(String section) {
+			this.section = section;
+		}
+	}
+
+	/**
+	 * Sections indexed by parent section and characteristic type
+	 */
+	private static final Hashtable<String, String> SECTIONS = new Hashtable<String, String>();
+
+	/**
+	 * Mappings indexed by section and parameter name
+	 */
+	private static final Hashtable<String, Mapping> MAPPINGS = new Hashtable<String, Mapping>();
+
+	static {
+		String[] root = { "VERS", "TOKEN", "MSG", APPLICATION, "IMS", "PRESENCE", "XDMS", "IM", "CAPDISCOVERY",
+				"APN", "OTHER", SERVICES, "SUPL", "SERVICEPROVIDEREXT" };
+		for (String type : root) {
+			section("", type, type);
+		}
+		String[] rcse = { "IMS", "PRESENCE", "XDMS", "IM", "CAPDISCOVERY", "APN", "OTHER", SERVICES, "SUPL" };
+		for (String type : rcse) {
+			section("RCSE", type, type);
+		}
+		section("IMS", "ConRefs", "IMS/CONREFS");
+		section("IMS", "Public_user_identity_List", "IMS/PUBLIC_USER_IDENTITY_LIST");
+		section("IMS", "Ext", "IMS/EXT");
+		section("IMS", "LBO_P-CSCF_Address", "IMS/LBO_P-CSCF_ADDRESS");
+		section("IMS", "APPAUTH", "IMS/APPAUTH");
+		section("OTHER", "transportProto", "OTHER/TRANSPORTPROTO");
+		section("SERVICEPROVIDEREXT", "joyn", "SERVICEPROVIDEREXT/JOYN");
+		section("SERVICEPROVIDEREXT/JOYN", "UX", "SERVICEPROVIDEREXT/JOYN/UX");
+		// Not used for RCS: "ICSI_List", "PhoneContext_List"
+		// Not supported: "FAVLINK", "SERVCAPWATCH", "ServCapPresentity", "SecondaryDevicePar"
+
+		map("VERS", "version", TYPE_TXT, VERSION);
+		map("VERS", "validity", TYPE_INT, VALIDITY);
+
+		map("TOKEN", "token", TYPE_TXT, TOKEN);
+		map("TOKEN", "validity", TYPE_INT, TOKEN_VALIDITY);
+
+		map("MSG", "title", TYPE_TXT, TITLE);
+		map("MSG", "message", TYPE_TXT, MESSAGE);
+		map("MSG", "Accept_btn", TYPE_INT, ACCEPT_BUTTON);
+		map("MSG", "Reject_btn", TYPE_INT, REJECT_BUTTON);
+
+		map("IMS", "Timer_T1", TYPE_INT, VALUE, RcsSettingsData.SIP_TIMER_T1);
+		map("IMS", "Timer_T2", TYPE_INT, VALUE, RcsSettingsData.SIP_TIMER_T2);
+		map("IMS", "Timer_T4", TYPE_INT, VALUE, RcsSettingsData.SIP_TIMER_T4);
+		map("IMS", "Private_User_Identity", TYPE_TXT, VALUE, RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID);
+		map("IMS", "Home_network_domain_name", TYPE_TXT, VALUE, RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN);
+		map("IMS", "Keep_Alive_Enabled", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.SIP_KEEP_ALIVE);
+		map("IMS", "RegRetryBaseTime", TYPE_INT, VALUE, RcsSettingsData.REGISTER_RETRY_BASE_TIME);
+		map("IMS", "RegRetryMaxTime", TYPE_INT, VALUE, RcsSettingsData.REGISTER_RETRY_MAX_TIME);
+		// Not supported under Android: "PDP_ContextOperPref"
+		// Not used for RCS: "Voice_Domain_Preference_E_UTRAN", "SMS_Over_IP_Networks_Indication",
+		// "Voice_Domain_Preference_UTRAN", "Mobility_Management_IMS_Voice_Termination"
+		map("IMS/CONREFS", "ConRef", TYPE_TXT, VALUE, RcsSettingsData.RCS_APN);
+		map("IMS/PUBLIC_USER_IDENTITY_LIST", "Public_User_Identity", TYPE_TXT, USERNAME,
+				RcsSettingsData.USERPROFILE_IMS_USERNAME);
+		map("IMS/EXT", "IntUrlFmt", TYPE_INT, BOOLEAN_INVERTED, RcsSettingsData.TEL_URI_FORMAT);
+		map("IMS/EXT", "MaxSizeImageShare", TYPE_INT, KILOBYTES, RcsSettingsData.MAX_IMAGE_SHARE_SIZE);
+		map("IMS/EXT", "MaxTimeVideoShare", TYPE_INT, VALUE, RcsSettingsData.MAX_VIDEO_SHARE_DURATION);
+		// Not used (all number are formatted in international format): "NatUrlFmt"
+		// Not supported: "Q-Value"
+		map("IMS/LBO_P-CSCF_ADDRESS", "Address", TYPE_TXT, PROXY_ADDRESS, RcsSettingsData.IMS_PROXY_ADDR_MOBILE,
+				RcsSettingsData.IMS_PROXY_ADDR_WIFI, RcsSettingsData.IMS_PROXY_PORT_MOBILE,
+				RcsSettingsData.IMS_PROXY_PORT_WIFI);
+		// Not used: "AddressType"
+		map("IMS/APPAUTH", "AuthType", TYPE_TXT, AUTHENT, RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE);
+		map("IMS/APPAUTH", "Realm", TYPE_TXT, VALUE, RcsSettingsData.USERPROFILE_IMS_REALM);
+		map("IMS/APPAUTH", "UserName", TYPE_TXT, VALUE, RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID);
+		map("IMS/APPAUTH", "UserPwd", TYPE_TXT, VALUE, RcsSettingsData.USERPROFILE_IMS_PASSWORD);
+
+		map("PRESENCE", "usePresence", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE);
+		map("PRESENCE", "presencePrfl", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY);
+		map("PRESENCE", "IconMaxSize", TYPE_INT, KILOBYTES, RcsSettingsData.MAX_PHOTO_ICON_SIZE);
+		map("PRESENCE", "NoteMaxSize", TYPE_INT, VALUE, RcsSettingsData.MAX_FREETXT_LENGTH);
+		map("PRESENCE", "PublishTimer", TYPE_INT, VALUE, RcsSettingsData.PUBLISH_EXPIRE_PERIOD);
+		// Not supported: "AvailabilityAuth", "client-obj-datalimit", "source-throttlepublish",
+		// "max-number-ofsubscriptions-inpresence-list"
+		// Not used for RCS: "content-serveruri"
+
+		map(SERVICES, "ChatAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_IM_SESSION);
+		map(SERVICES, "groupChatAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_IM_GROUP_SESSION);
+		map(SERVICES, "ftAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_FILE_TRANSFER);
+		map(SERVICES, "vsAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_VIDEO_SHARING);
+		map(SERVICES, "isAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_IMAGE_SHARING);
+		map(SERVICES, "geolocPushAuth", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH);
+		map(SERVICES, "presencePrfl", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE);
+		map(SERVICES, "rcsIPVoiceCallAuth", TYPE_INT, SERVICE_FLAGS, RcsSettingsData.CAPABILITY_IP_VOICE_CALL);
+		map(SERVICES, "rcsIPVideoCallAuth", TYPE_INT, SERVICE_FLAGS, RcsSettingsData.CAPABILITY_IP_VIDEO_CALL);
+		// Not used: "standaloneMsgAuth", "geolocPullAuth"
+
+		map("XDMS", "RevokeTimer", TYPE_INT, VALUE, RcsSettingsData.REVOKE_TIMEOUT);
+		map("XDMS", "XCAPRootURI", TYPE_TXT, VALUE, RcsSettingsData.XDM_SERVER);
+		map("XDMS", "XCAPAuthenticationUserName", TYPE_TXT, VALUE, RcsSettingsData.XDM_LOGIN);
+		map("XDMS", "XCAPAuthenticationSecret", TYPE_TXT, VALUE, RcsSettingsData.XDM_PASSWORD);
+		// Not used (only Digest is used): "XCAPAuthenticationType"
+
+		map("SUPL", "TextMaxLength", TYPE_INT, VALUE, RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH);
+		map("SUPL", "LocInfoMaxValidTime", TYPE_INT, VALUE, RcsSettingsData.GEOLOC_EXPIRATION_TIME);
+		// Not used: "geolocPullOpenValue", "geolocPullApiGwAddress", "geolocPullBlockTimer"
+
+		map("SERVICEPROVIDEREXT/JOYN/UX", "messagingUX", TYPE_INT, BOOLEAN_ONE,
+				RcsSettingsData.CONVERGENT_MESSAGING_UX);
+		// Not used: "oneButtonVoiceCall", "oneButtonVideoCall"
+
+		map("IM", "imCapAlwaysON", TYPE_INT, BOOLEAN, RcsSettingsData.IM_CAPABILITY_ALWAYS_ON);
+		map("IM", "ftCapAlwaysON", TYPE_INT, BOOLEAN, RcsSettingsData.FT_CAPABILITY_ALWAYS_ON);
+		map("IM", "MaxConcurrentSession", TYPE_INT, VALUE, RcsSettingsData.MAX_CHAT_SESSIONS);
+		map("IM", "GroupChatFullStandFwd", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_GROUP_CHAT_SF);
+		map("IM", "imWarnSF", TYPE_INT, BOOLEAN, RcsSettingsData.WARN_SF_SERVICE);
+		map("IM", "ftAutAccept", TYPE_INT, BOOLEAN, RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER);
+		map("IM", "ftStAndFwEnabled", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF);
+		map("IM", "ftHTTPCSURI", TYPE_TXT, VALUE, RcsSettingsData.FT_HTTP_SERVER);
+		map("IM", "ftHTTPCSUser", TYPE_TXT, VALUE, RcsSettingsData.FT_HTTP_LOGIN);
+		map("IM", "ftHTTPCSPwd", TYPE_TXT, VALUE, RcsSettingsData.FT_HTTP_PASSWORD);
+		map("IM", "ftDefaultMech", TYPE_TXT, VALUE, RcsSettingsData.FT_PROTOCOL);
+		map("IM", "imSessionStart", TYPE_INT, VALUE, RcsSettingsData.IM_SESSION_START);
+		map("IM", "ftWarnSize", TYPE_INT, VALUE, RcsSettingsData.WARN_FILE_TRANSFER_SIZE);
+		map("IM", "ChatAuth", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_IM_SESSION);
+		map("IM", "SmsFallBackAuth", TYPE_INT, BOOLEAN_INVERTED, RcsSettingsData.SMS_FALLBACK_SERVICE);
+		map("IM", "AutAccept", TYPE_INT, BOOLEAN, RcsSettingsData.AUTO_ACCEPT_CHAT);
+		map("IM", "AutAcceptGroupChat", TYPE_INT, BOOLEAN, RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT);
+		map("IM", "MaxSize1to1", TYPE_INT, VALUE, RcsSettingsData.MAX_CHAT_MSG_LENGTH);
+		map("IM", "MaxSize1toM", TYPE_INT, VALUE, RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH);
+		map("IM", "TimerIdle", TYPE_INT, VALUE, RcsSettingsData.CHAT_IDLE_DURATION);
+		map("IM", "MaxSizeFileTr", TYPE_INT, VALUE, RcsSettingsData.MAX_FILE_TRANSFER_SIZE);
+		map("IM", "ftThumb", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL);
+		map("IM", "max_adhoc_group_size", TYPE_INT, VALUE, RcsSettingsData.MAX_CHAT_PARTICIPANTS);
+		map("IM", "conf-fcty-uri", TYPE_TXT, SIP_URI, RcsSettingsData.IM_CONF_URI);
+		// Not used for RCS: "pres-srv-cap", "deferred-msg-func-uri", "exploder-uri"
+
+		map("CAPDISCOVERY", "pollingPeriod", TYPE_INT, VALUE, RcsSettingsData.CAPABILITY_POLLING_PERIOD);
+		map("CAPDISCOVERY", "capInfoExpiry", TYPE_INT, VALUE, RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT);
+		map("CAPDISCOVERY", "presenceDisc", TYPE_INT, BOOLEAN, RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY);
+
+		// Not supported: "APN/rcseOnlyAPN", "APN/enableRcseSwitch"
+
+		map("OTHER", "endUserConfReqId", TYPE_TXT, SIP_URI, RcsSettingsData.ENDUSER_CONFIRMATION_URI);
+		map("OTHER", "deviceID", TYPE_INT, BOOLEAN_INVERTED, RcsSettingsData.USE_IMEI_AS_DEVICE_ID);
+		map("OTHER", "IPCallBreakOut", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.IPVOICECALL_BREAKOUT_AA);
+		map("OTHER", "IPCallBreakOutCS", TYPE_INT, BOOLEAN_ONE, RcsSettingsData.IPVOICECALL_BREAKOUT_CS);
+		map("OTHER", "rcsIPVideoCallUpgradeFromCS", TYPE_INT, BOOLEAN_ONE,
+				RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS);
+		map("OTHER", "rcsIPVideoCallUpgradeOnCapError", TYPE_INT, BOOLEAN_ONE,
+				RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR);
+		map("OTHER", "rcsIPVideoCallUpgradeAttemptEarly", TYPE_INT, BOOLEAN_ONE,
+				RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY);
+		// Not supported: "WarnSizeImageShare"
+		map("OTHER/TRANSPORTPROTO", "psSignalling", TYPE_TXT, PROTOCOL,
+				RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE);
+		map("OTHER/TRANSPORTPROTO", "wifiSignalling", TYPE_TXT, PROTOCOL,
+				RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI);
+		map("OTHER/TRANSPORTPROTO", "wifiMedia", TYPE_TXT, SECURE_MSRP, RcsSettingsData.SECURE_MSRP_OVER_WIFI);
+		map("OTHER/TRANSPORTPROTO", "wifiRTMedia", TYPE_TXT, SECURE_RTP, RcsSettingsData.SECURE_RTP_OVER_WIFI);
+		// Not supported: "psMedia", "psRTMedia"
+	}
+
+	/**
+     * Provisioning info
      */
-    private void parseAPN(Node node) {
-        // Not supported: "rcseOnlyAPN"
-        // Not supported: "enableRcseSwitch"
-    }
+    private ProvisioningInfo provisioningInfo = new ProvisioningInfo();
 
     /**
-     * Parse transport protocol
-     *
-     * @param node Node
+     * Content
      */
-    private void parseTransportProtocol(Node node) {
-        String psSignalling = null;
-        String wifiSignalling = null;
-        String wifiMedia = null;
-        String wifiRtMedia = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (psSignalling == null) {
-                    if ((psSignalling = getValueByParamName("psSignalling", childnode, TYPE_TXT)) != null) {
-                        if (psSignalling.equals("SIPoUDP")) {
-	                        RcsSettings.getInstance().writeParameter(
-	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-	                                ListeningPoint.UDP);
-                        } else
-                        if (psSignalling.equals("SIPoTCP")) {
-	                        RcsSettings.getInstance().writeParameter(
-	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-	                                ListeningPoint.TCP);
-                        } else
-                        if (psSignalling.equals("SIPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(
-	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-	                                ListeningPoint.TLS);
-                        }
-                        continue;
-                    }
-                }
-
-                if (wifiSignalling == null) {
-                    if ((wifiSignalling = getValueByParamName("wifiSignalling", childnode, TYPE_TXT)) != null) {
-                        if (wifiSignalling.equals("SIPoUDP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-	                                ListeningPoint.UDP);
-                        } else
-                        if (wifiSignalling.equals("SIPoTCP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-	                                ListeningPoint.TCP);
-                        } else
-                        if (wifiSignalling.equals("SIPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-	                                ListeningPoint.TLS);
-                        }
-                        continue;
-                    }
-                }
-
-                if (wifiMedia == null) {
-                    if ((wifiMedia = getValueByParamName("wifiMedia", childnode, TYPE_TXT)) != null) {
-                        if (wifiMedia.equals("MSRP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
-	                        		RcsSettingsData.FALSE);
-                        } else
-                        if (wifiMedia.equals("MSRPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
-	                        		RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (wifiRtMedia == null) {
-                    if ((wifiRtMedia = getValueByParamName("wifiRTMedia", childnode, TYPE_TXT)) != null) {
-                        if (wifiMedia.equals("RTP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
-	                        		RcsSettingsData.FALSE);
-                        } else
-                        if (wifiMedia.equals("SRTP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
-	                        		RcsSettingsData.TRUE);
-                        }
-                        continue;
-                    }
-                }
-                
-                // Not supported: "psMedia"
-                // Not supported: "psRTMedia"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private String content;
 
     /**
-     * Parse other
-     *
-     * @param node Node
+     * Settings read from the document, indexed by key
      */
-    private void parseOther(Node node) {
-        String endUserConfReqId = null;
-        String deviceID = null;
-        String aaIPCallBreakOut = null;
-        String csIPCallBreakOut = null;
-        String rcsIPVideoCallUpgradeFromCS = null;
-        String rcsIPVideoCallUpgradeOnCapError = null;
-        String beIPVideoCallUpgradeAttemptEarly = null;
-        
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {	
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("transportProto")) {
-                                parseTransportProtocol(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (endUserConfReqId == null) {
-                    if ((endUserConfReqId = getValueByParamName("endUserConfReqId", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.ENDUSER_CONFIRMATION_URI, formatSipUri(endUserConfReqId));
-                        continue;
-                    }
-                }
-
-                if (deviceID == null) {
-                    if ((deviceID = getValueByParamName("deviceID", childnode, TYPE_INT)) != null) {
-                    	if (deviceID.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                if (aaIPCallBreakOut == null) {
-                    if ((aaIPCallBreakOut = getValueByParamName("IPCallBreakOut", childnode, TYPE_INT)) != null) {
-                    	if (aaIPCallBreakOut.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_AA, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_AA, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                if (csIPCallBreakOut == null) {
-                    if ((csIPCallBreakOut = getValueByParamName("IPCallBreakOutCS", childnode, TYPE_INT)) != null) {
-                    	if (csIPCallBreakOut.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                if (rcsIPVideoCallUpgradeFromCS == null) {
-                	if ((rcsIPVideoCallUpgradeFromCS = getValueByParamName("rcsIPVideoCallUpgradeFromCS", childnode, TYPE_INT)) != null) {
-                    	if (rcsIPVideoCallUpgradeFromCS.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                if (rcsIPVideoCallUpgradeOnCapError == null) {
-                	if ((rcsIPVideoCallUpgradeOnCapError = getValueByParamName("rcsIPVideoCallUpgradeOnCapError", childnode, TYPE_INT)) != null) {
-                    	if (rcsIPVideoCallUpgradeOnCapError.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                if (beIPVideoCallUpgradeAttemptEarly == null) {
-                	if ((beIPVideoCallUpgradeAttemptEarly = getValueByParamName("rcsIPVideoCallUpgradeAttemptEarly", childnode, TYPE_INT)) != null) {
-                    	if (beIPVideoCallUpgradeAttemptEarly.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.TRUE);
-                    	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.FALSE);
-                    	}
-                        continue;
-                    }
-                }
-                
-                // Not supported: "WarnSizeImageShare"
-                
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private Map<String, String> parameters = new LinkedHashMap<String, String>();
 
     /**
-     * Parse connection reference
-     *
-     * @param node Node
+     * Number of settings written
      */
-    private void parseConRefs(Node node) {
-        String conRef = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (conRef == null) {
-                    if ((conRef = getValueByParamName("ConRef", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.RCS_APN, conRef);
-                        continue;
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private int writtenParameters = 0;
 
     /**
-     * Parse public user identity
-     *
-     * @param node Node
+     * Characteristics being parsed
      */
-    private void parsePublicUserIdentity(Node node) {
-        String publicUserIdentity = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (publicUserIdentity == null) {
-                    if ((publicUserIdentity = getValueByParamName("Public_User_Identity", childnode, TYPE_TXT)) != null) {
-                    	String username = extractUserNamePart(publicUserIdentity);
-                    	RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_USERNAME, username);
-                        continue;
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private Vector<Frame> frames = new Vector<Frame>();
 
     /**
-     * Parse the secondary device parameter
-     *
-     * @param node Node
+     * Depth of the current element
      */
-    private void parseSecondaryDevicePar(Node node) {
-    	// TODO: to be managed thks to a flag main/secondary device
-        /*
-        String voiceCall = null;
-        String chat = null;
-        String sendSms = null;
-        String fileTranfer = null;
-        String videoShare = null;
-        String imageShare = null;
-        String geolocPush = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (chat == null) {
-                    if ((chat = getValueByParamName("Chat", childnode, TYPE_INT)) != null) {
-                        if (chat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (fileTranfer == null) {
-                    if ((fileTranfer = getValueByParamName("FileTranfer", childnode, TYPE_INT)) != null) {
-                        if (fileTranfer.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (videoShare == null) {
-                    if ((videoShare = getValueByParamName("VideoShare", childnode, TYPE_INT)) != null) {
-                        if (videoShare.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (imageShare == null) {
-                    if ((imageShare = getValueByParamName("ImageShare", childnode, TYPE_INT)) != null) {
-                        if (imageShare.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (geolocPush == null) {
-                    if ((geolocPush = getValueByParamName("GeoLocPush", childnode, TYPE_INT)) != null) {
-                        if (geolocPush.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                            		RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-                
-	        	// Not used for RCS: "SendSms"
-	        	// Not used for RCS: "VoiceCall"
-                
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }*/
-    }
+    private int depth = 0;
 
     /**
-     * Parse ext
-     *
-     * @param node Node
+     * Document root has a child
      */
-    private void parseExt(Node node) {
-        String intUrlFmt = null;
-        String maxSizeImageShare = null;
-        String maxTimeVideoShare = null;
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("SecondaryDevicePar")) {
-                                parseSecondaryDevicePar(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (intUrlFmt == null) {
-                    if ((intUrlFmt = getValueByParamName("IntUrlFmt", childnode, TYPE_INT)) != null) {
-                        if (intUrlFmt.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.TEL_URI_FORMAT, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.TEL_URI_FORMAT, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (maxSizeImageShare == null) {
-                    if ((maxSizeImageShare = getValueByParamName("MaxSizeImageShare", childnode, TYPE_INT)) != null) {
-                    	int kb = Integer.parseInt(maxSizeImageShare) / 1024;
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_IMAGE_SHARE_SIZE, ""+kb);
-                        continue;
-                    }
-                }
-
-                if (maxTimeVideoShare == null) {
-                    if ((maxTimeVideoShare = getValueByParamName("MaxTimeVideoShare", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.MAX_VIDEO_SHARE_DURATION, maxTimeVideoShare);
-                        continue;
-                    }
-                }
-                
-                // Not used (all number are formatted in international format): "NatUrlFmt"
-                // Not supported: "Q-Value"
-                
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private boolean rootChild = false;
 
     /**
-     * Parse ICSI
-     *
-     * @param node Node
+     * Number of characteristics with a type at the document root
      */
-    private void parseICSI(Node node) {
-        // Not used for RCS: "ICSI"
-        // Not used for RCS: "ICSI_Resource_Allocation_Mode"
-    }
+    private int nodeNumber = 0;
 
     /**
-     * Parse PCSCF address
-     *
-     * @param node Node
+     * The logger
      */
-    private void parsePcscfAddress(Node node) {
-        String addr = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (addr == null) {
-                    if ((addr = getValueByParamName("Address", childnode, TYPE_TXT)) != null) {
-                        String[] address = addr.split(":");
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.IMS_PROXY_ADDR_MOBILE, address[0]);
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.IMS_PROXY_ADDR_WIFI, address[0]);
-                        if (address.length > 1) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IMS_PROXY_PORT_MOBILE, address[1]);
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IMS_PROXY_PORT_WIFI, address[1]);
-                        }
-                        continue;
-                    }
-                }
-
-                // Not used: "AddressType"
-                
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private Logger logger = Logger.getLogger(this.getClass().getName());
 
     /**
-     * Parse phone context
+     * Constructor
      *
-     * @param node Node
+     * @param content Content
      */
-    private void parsePhoneContextList(Node node) {
-        // Not used: "PhoneContext"
-        // Not used: "Public_user_identity"
+    public ProvisioningParser(String content) {
+        this.content = content;
     }
 
     /**
-     * Parse application authentication
+     * Returns provisioning info
      *
-     * @param node Node
+     * @return Provisioning info
      */
-    private void parseAppAuthent(Node node) {
-        String authType = null;
-        String realm = null;
-        String userName = null;
-        String userPwd = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (authType == null) {
-                    if ((authType = getValueByParamName("AuthType", childnode, TYPE_TXT)) != null) {
-                        if (authType.equals("EarlyIMS")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE,
-                                    RcsSettingsData.GIBA_AUTHENT);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE,
-                                    RcsSettingsData.DIGEST_AUTHENT);
-                        }
-                        continue;
-                    }
-                }
-
-                if (realm == null) {
-                    if ((realm = getValueByParamName("Realm", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_REALM, realm);
-                        continue;
-                    }
-                }
-
-                if (userName == null) {
-                    if ((userName = getValueByParamName("UserName", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID,
-                                userName);
-                        continue;
-                    }
-                }
-
-                if (userPwd == null) {
-                    if ((userPwd = getValueByParamName("UserPwd", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_PASSWORD, userPwd);
-                        continue;
-                    }
-                }
-            } while((childnode = childnode.getNextSibling()) != null);
-        }
+    public ProvisioningInfo getProvisioningInfo() {
+        return provisioningInfo;
     }
 
     /**
-     * Parse RCSe settings
+     * Returns the settings read from the document
      *
-     * @param node Node
+     * @return Values indexed by key
      */
-    private void parseRCSe(Node node) {
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("IMS")) {
-                                parseIMS(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("PRESENCE")) {
-                                parsePresence(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("XDMS")) {
-                                parseXDMS(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("IM")) {
-                                parseIM(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("CAPDISCOVERY")) {
-                                parseCapabilityDiscovery(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("APN")) {
-                                parseAPN(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("OTHER")) {
-                                parseOther(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SERVICES")) {
-                                parseServices(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("SUPL")) {
-                                parseSupl(childnode);
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
+    public Map<String, String> getParameters() {
+        return parameters;
     }
 
     /**
-     * Parse IMS settings
+     * Returns the keys of all the settings a document may set
      *
-     * @param node IMS settings node
-     */
-    private void parseIMS(Node node) {
-        String timert1 = null;
-        String timert2 = null;
-        String timert4 = null;
-        String privateUserIdentity = null;
-        String homeDomain = null;
-        String keepAliveEnabled = null;
-        String regRetryBasetime = null;
-        String regRetryMaxtime = null;
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("ConRefs")) {
-                                parseConRefs(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("Public_user_identity_List")) {
-                                parsePublicUserIdentity(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("Ext")) {
-                                parseExt(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("ICSI_List")) {
-                                parseICSI(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("LBO_P-CSCF_Address")) {
-                                parsePcscfAddress(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("PhoneContext_List")) {
-                                parsePhoneContextList(childnode);
-                            } else
-                            if (typenode.getNodeValue().equalsIgnoreCase("APPAUTH")) {
-                                parseAppAuthent(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (timert1 == null) {
-                    if ((timert1 = getValueByParamName("Timer_T1", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T1,
-                                timert1);
-                        continue;
-                    }
-                }
-
-                if (timert2 == null) {
-                    if ((timert2 = getValueByParamName("Timer_T2", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T2,
-                                timert2);
-                        continue;
-                    }
-                }
-
-                if (timert4 == null) {
-                    if ((timert4 = getValueByParamName("Timer_T4", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T4,
-                                timert4);
-                        continue;
-                    }
-                }
-
-                if (privateUserIdentity == null) {
-                    if ((privateUserIdentity = getValueByParamName("Private_User_Identity", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID,
-                                privateUserIdentity);
-                        continue;
-                    }
-                }
-
-                if (homeDomain == null) {
-                    if ((homeDomain = getValueByParamName("Home_network_domain_name", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN,
-                                homeDomain);
-                        continue;
-                    }
-                }
-
-                if (keepAliveEnabled == null) {
-                    if ((keepAliveEnabled = getValueByParamName("Keep_Alive_Enabled", childnode, TYPE_INT)) != null) {
-                        if (keepAliveEnabled.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.TRUE);
-                        } else {
-                            RcsSettings.getInstance().writeParameter(
-                                    RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.FALSE);
-                        }
-                        continue;
-                    }
-                }
-
-                if (regRetryBasetime == null) {
-                    if ((regRetryBasetime = getValueByParamName("RegRetryBaseTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.REGISTER_RETRY_BASE_TIME, regRetryBasetime);
-                        continue;
-                    }
-                }
-
-                if (regRetryMaxtime == null) {
-                    if ((regRetryMaxtime = getValueByParamName("RegRetryMaxTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
-                                RcsSettingsData.REGISTER_RETRY_MAX_TIME, regRetryMaxtime);
-                        continue;
-                    }
-                }
-                
-                // Not supported under Android: "PDP_ContextOperPref"
-                // Not used for RCS: "Voice_Domain_Preference_E_UTRAN"
-                // Not used for RCS: "SMS_Over_IP_Networks_Indication"
-                // Not used for RCS: "Voice_Domain_Preference_UTRAN"
-                // Not used for RCS: "Mobility_Management_IMS_Voice_Termination"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
+     * @return Keys
+     */
+    public static Set<String> getKeys() {
+        Set<String> keys = new TreeSet<String>();
+        keys.add(RcsSettingsData.KEY_GSMA_RELEASE);
+        for (Mapping mapping : MAPPINGS.values()) {
+            for (String key : mapping.keys) {
+                keys.add(key);
+            }
         }
+        return keys;
     }
 
     /**
-     * Get value of a parameter
+     * Returns the number of settings written, the unchanged ones being not
+     * written
      *
-     * @param paramName Parameter name
-     * @param node Node
-     * @param type Parameter type
-     * @return Value or null
+     * @return Number of settings
      */
-    private String getValueByParamName(String paramName, Node node, int type) {
-        Node nameNode = null;
-        Node valueNode = null;
-        
-        if (logger.isActivated()) {
-            logger.debug("Get parameter " + paramName + ", node " + node);
-        }
+    public int getWrittenParameters() {
+        return writtenParameters;
+    }
 
-        if ((node == null) ||
-        		!(node.getNodeName().equals("parm") ||
-        				node.getNodeName().equals("param"))) {
-            return null;
+	/**
+	 * Parse the provisioning document
+	 *
+	 * @param gsmaRelease
+	 *            The GSMA release (Albatros, Blackbird, Crane...) before parsing
+	 *
+	 * @return Boolean result
+	 *
+	 *         <p>
+	 *         <b>Be Careful:</b><br />
+	 *         GSMA release is set to blackbird if SERVICES node is present, is unchanged if only the version is
+	 *         present, otherwise it is set to albatros
+	 *         </p>
+	 */
+	public boolean parse(int gsmaRelease) {
+        if (!read(gsmaRelease)) {
+            return false;
         }
-
-        if ((node != null) && (node.getAttributes().getLength() > 0)) {
-            nameNode = node.getAttributes().getNamedItem("name");
-            if (nameNode == null) {
-                return null;
-            }
-            valueNode = node.getAttributes().getNamedItem("value");
-            if (valueNode == null) {
-                return null;
+        try {
+            writtenParameters = RcsSettings.getInstance().writeParameters(parameters);
+            if (logger.isActivated()) {
+                logger.debug(parameters.size() + " parameters read, " + writtenParameters + " written");
             }
-            if (nameNode.getNodeValue().equalsIgnoreCase(paramName)) {
-            	String value = valueNode.getNodeValue();
-                if (logger.isActivated()) {
-                    // logger.debug("Read parameter " + paramName + ": " + value);
-                    logger.debug("Read parameter " + paramName);
-                }
-            	
-            	// Check type
-            	if (type == TYPE_INT) {
-            		try {
-            			Integer.parseInt(value);
-            		} catch(NumberFormatException e) {
-            			if (logger.isActivated()) {
-            				logger.warn("Bad value for integer parameter " + paramName);
-            			}
-            			return null;
-            		}
-            	} 
-            	
-				return value;
-            } else {
-                return null;
+            return true;
+        } catch (Exception e) {
+            if (logger.isActivated()) {
+                logger.error("Can't write the parameters", e);
             }
+            return false;
         }
-        return null;
     }
-    
+
+	/**
+	 * Read the provisioning document without writing the settings. The GSMA
+	 * release read is Albatros unless the SERVICES node is present.
+	 *
+	 * @param gsmaRelease The GSMA release before parsing
+	 * @return Boolean result
+	 */
+	public boolean read(int gsmaRelease) {
+		try {
+			if (logger.isActivated()) {
+				logger.debug("Start the parsing of content");
+			}
+			parameters.put(RcsSettingsData.KEY_GSMA_RELEASE, "" + RcsSettingsData.VALUE_GSMA_REL_ALBATROS);
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			SAXParser parser = factory.newSAXParser();
+			parser.parse(new InputSource(new ByteArrayInputStream(content.getBytes())), this);
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't parse content", e);
+			}
+			return false;
+		}
+		if (!rootChild) {
+			if (logger.isActivated()) {
+				logger.debug("The first chid node is null");
+			}
+			return false;
+		}
+
+		if (nodeNumber == 1) {
+			// We received a single node (the version one) !
+			// This is the case if the version number is negative or in order to extend the validity of the provisioning.
+			// In that case we restore the relevant GSMA release saved before parsing.
+			parameters.put(RcsSettingsData.KEY_GSMA_RELEASE, "" + gsmaRelease);
+		}
+		return true;
+	}
+
+	public void characters(char buffer[], int start, int length) {
+		if (depth == 1) {
+			rootChild = true;
+		}
+	}
+
+	public void startElement(String namespaceURL, String localName, String qname, Attributes attr) {
+		if (depth++ == 1) {
+			rootChild = true;
+		}
+
+		if (localName.equals("characteristic")) {
+			startCharacteristic(attr.getValue("type"));
+		} else
+		if (localName.equals("parm") || localName.equals("param")) {
+			String name = attr.getValue("name");
+			String value = attr.getValue("value");
+			if ((name != null) && (value != null)) {
+				parameter(name, value);
+			}
+		}
+	}
+
+	public void endElement(String namespaceURL, String localName, String qname) {
+		depth--;
+
+		if (localName.equals("characteristic")) {
+			endCharacteristic();
+		}
+	}
+
+	public void warning(SAXParseException exception) {
+		if (logger.isActivated()) {
+			logger.error("Warning: line " + exception.getLineNumber() + ": "
+				+ exception.getMessage());
+		}
+	}
+
+	public void error(SAXParseException exception) {
+		if (logger.isActivated()) {
+			logger.error("Error: line " + exception.getLineNumber() + ": "
+				+ exception.getMessage());
+		}
+	}
+
+	public void fatalError(SAXParseException exception) throws SAXException {
+		if (logger.isActivated()) {
+			logger.error("Fatal: line " + exception.getLineNumber() + ": "
+				+ exception.getMessage());
+		}
+		throw exception;
+	}
+
+	/**
+	 * Start of a characteristic
+	 *
+	 * @param type Type or null
+	 */
+	private void startCharacteristic(String type) {
+		Frame parent = frames.isEmpty() ? null : frames.lastElement();
+		if ((parent != null) && (parent.deferred != null)) {
+			// Parsed when the section of the parent is known
+			parent.deferred.addElement(new String[] { type });
+			parent.deferredDepth++;
+			return;
+		}
+
+		String section = null;
+		if (type != null) {
+			if (parent == null) {
+				nodeNumber++;
+				if (logger.isActivated()) {
+					logger.debug("Node characteristic with type " + type);
+				}
+			}
+			if ((parent == null) || (parent.section != null)) {
+				section = SECTIONS.get(((parent == null) ? "" : parent.section) + "/" + type.toUpperCase());
+			}
+		}
+
+		Frame frame = new Frame(section);
+		if (APPLICATION.equals(section)) {
+			frame.deferred = new Vector<String[]>();
+		} else
+		if (SERVICES.equals(section)) {
+			// Node "SERVICES" is mandatory in GSMA release Blackbird and not present in previous one Albatros.
+			// Only if the parsing result contains a SERVICE tree, Blackbird is assumed as release.
+			// This trick is used to detect the GSMA release as provisioned by the network.
+			parameters.put(RcsSettingsData.KEY_GSMA_RELEASE, "" + RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD);
+		}
+		frames.addElement(frame);
+	}
+
+	/**
+	 * End of a characteristic
+	 */
+	private void endCharacteristic() {
+		Frame frame = frames.lastElement();
+		if ((frame.deferred != null) && (frame.deferredDepth > 0)) {
+			frame.deferred.addElement(new String[0]);
+			frame.deferredDepth--;
+			return;
+		}
+		frames.removeElementAt(frames.size() - 1);
+	}
+
+	/**
+	 * Parameter of the current characteristic
+	 *
+	 * @param name Name
+	 * @param value Value
+	 */
+	private void parameter(String name, String value) {
+		Frame frame = frames.isEmpty() ? null : frames.lastElement();
+		if ((frame == null) || (frame.section == null)) {
+			return;
+		}
+		if (frame.deferred != null) {
+			if ((frame.deferredDepth == 0) && name.equalsIgnoreCase("AppRef")) {
+				startApplication(frame, value);
+			} else {
+				frame.deferred.addElement(new String[] { name, value });
+			}
+			return;
+		}
+
+		String lowerName = name.toLowerCase();
+		Mapping mapping = MAPPINGS.get(frame.section + "/" + lowerName);
+		if ((mapping == null) || frame.names.containsKey(lowerName)) {
+			return;
+		}
+		if (logger.isActivated()) {
+			logger.debug("Read parameter " + name);
+		}
+
+		// Check type
+		if (mapping.type == TYPE_INT) {
+			try {
+				Integer.parseInt(value);
+			} catch(NumberFormatException e) {
+				if (logger.isActivated()) {
+					logger.warn("Bad value for integer parameter " + name);
+				}
+				return;
+			}
+		}
+		frame.names.put(lowerName, Boolean.TRUE);
+		apply(mapping, value);
+	}
+
+	/**
+	 * Set the section of an application from its reference, and parse the
+	 * characteristics and parameters read before the reference
+	 *
+	 * @param frame Application
+	 * @param appRef Application reference
+	 */
+	private void startApplication(Frame frame, String appRef) {
+		if (appRef.equalsIgnoreCase("IMS-Settings") || appRef.equalsIgnoreCase("ims-rcse")) {
+			frame.section = "IMS";
+		} else
+		if (appRef.equalsIgnoreCase("RCSe-Settings")) {
+			frame.section = "RCSE";
+		} else {
+			frame.section = null;
+		}
+
+		Vector<String[]> deferred = frame.deferred;
+		frame.deferred = null;
+		for (String[] event : deferred) {
+			if (event.length == 0) {
+				endCharacteristic();
+			} else
+			if (event.length == 1) {
+				startCharacteristic(event[0]);
+			} else {
+				parameter(event[0], event[1]);
+			}
+		}
+	}
+
+	/**
+	 * Apply the value of a parameter
+	 *
+	 * @param mapping Mapping of the parameter
+	 * @param value Value
+	 */
+	private void apply(Mapping mapping, String value) {
+		String key = (mapping.keys.length > 0) ? mapping.keys[0] : null;
+		switch(mapping.conversion) {
+			case VALUE:
+				parameters.put(key, value);
+				break;
+			case BOOLEAN:
+				parameters.put(key, value.equals("0") ? RcsSettingsData.FALSE : RcsSettingsData.TRUE);
+				break;
+			case BOOLEAN_ONE:
+				parameters.put(key, value.equals("1") ? RcsSettingsData.TRUE : RcsSettingsData.FALSE);
+				break;
+			case BOOLEAN_INVERTED:
+				parameters.put(key, value.equals("0") ? RcsSettingsData.TRUE : RcsSettingsData.FALSE);
+				break;
+			case KILOBYTES:
+				parameters.put(key, "" + (Integer.parseInt(value) / 1024));
+				break;
+			case SIP_URI:
+				parameters.put(key, formatSipUri(value));
+				break;
+			case USERNAME:
+				parameters.put(key, extractUserNamePart(value));
+				break;
+			case PROTOCOL:
+				if (value.equals("SIPoUDP")) {
+					parameters.put(key, ListeningPoint.UDP);
+				} else
+				if (value.equals("SIPoTCP")) {
+					parameters.put(key, ListeningPoint.TCP);
+				} else
+				if (value.equals("SIPoTLS")) {
+					parameters.put(key, ListeningPoint.TLS);
+				}
+				break;
+			case SECURE_MSRP:
+				if (value.equals("MSRP")) {
+					parameters.put(key, RcsSettingsData.FALSE);
+				} else
+				if (value.equals("MSRPoTLS")) {
+					parameters.put(key, RcsSettingsData.TRUE);
+				}
+				break;
+			case SECURE_RTP:
+				if (value.equals("RTP")) {
+					parameters.put(key, RcsSettingsData.FALSE);
+				} else
+				if (value.equals("SRTP")) {
+					parameters.put(key, RcsSettingsData.TRUE);
+				}
+				break;
+			case AUTHENT:
+				parameters.put(key, value.equals("EarlyIMS") ? RcsSettingsData.GIBA_AUTHENT
+						: RcsSettingsData.DIGEST_AUTHENT);
+				break;
+			case SERVICE_FLAGS:
+				parameters.put(key, ((Integer.decode(value) % 16) == 0) ? RcsSettingsData.FALSE
+						: RcsSettingsData.TRUE);
+				break;
+			case PROXY_ADDRESS:
+				String[] address = value.split(":");
+				parameters.put(mapping.keys[0], address[0]);
+				parameters.put(mapping.keys[1], address[0]);
+				if (address.length > 1) {
+					parameters.put(mapping.keys[2], address[1]);
+					parameters.put(mapping.keys[3], address[1]);
+				}
+				break;
+			case VERSION:
+				provisioningInfo.setVersion(value);
+				break;
+			case VALIDITY:
+				provisioningInfo.setValidity(Long.parseLong(value));
+				break;
+			case TOKEN:
+				provisioningInfo.setToken(value);
+				break;
+			case TOKEN_VALIDITY:
+				provisioningInfo.setTokenValidity(Long.parseLong(value));
+				break;
+			case TITLE:
+				provisioningInfo.setTitle(value);
+				break;
+			case MESSAGE:
+				provisioningInfo.setMessage(value);
+				break;
+			case ACCEPT_BUTTON:
+				provisioningInfo.setAcceptBtn(value.equals("1"));
+				break;
+			case REJECT_BUTTON:
+				provisioningInfo.setRejectBtn(value.equals("1"));
+				break;
+		}
+	}
+
+	/**
+	 * Add a section
+	 *
+	 * @param parent Parent section
+	 * @param type Characteristic type
+	 * @param section Section
+	 */
+	private static void section(String parent, String type, String section) {
+		SECTIONS.put(parent + "/" + type.toUpperCase(), section);
+	}
+
+	/**
+	 * Add the mapping of a parameter
+	 *
+	 * @param section Section
+	 * @param name Parameter name
+	 * @param type Parameter type
+	 * @param conversion Conversion of the value
+	 * @param keys Settings keys
+	 */
+	private static void map(String section, String name, int type, int conversion, String... keys) {
+		MAPPINGS.put(section + "/" + name.toLowerCase(), new Mapping(type, conversion, keys));
+	}
+
     /**
      * Extract the username part of the SIP-URI
-     * 
+     *
      * @param uri SIP-URI
      * @return Username
      */
@@ -1985,10 +877,10 @@ public class ProvisioningParser {
 			return "";
 		}
     }
-    
+
     /**
      * Format to SIP-URI
-     * 
+     *
      * @param uri URI
      * @return SIP-URI
      */
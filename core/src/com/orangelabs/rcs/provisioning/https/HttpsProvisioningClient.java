@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provisioning.https;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * HTTP client of the provisioning: the connections to the provisioning
+ * server are kept alive in a pool, so that the requests of a provisioning
+ * flow and of the next attempts reuse them, and the cookies are shared by
+ * the requests of a flow.
+ *
+ * @author Orange
+ */
+public class HttpsProvisioningClient {
+	/**
+	 * Maximum number of connections per host
+	 */
+	public static final int MAX_CONNECTIONS_PER_HOST = 2;
+
+	/**
+	 * Idle time after which a connection is closed in milliseconds
+	 */
+	public static final long IDLE_TIMEOUT = 60000;
+
+	/**
+	 * Connection manager
+	 */
+	private ThreadSafeClientConnManager connManager;
+
+	/**
+	 * HTTP client
+	 */
+	private DefaultHttpClient httpClient;
+
+	/**
+	 * Cookies of the current flow
+	 */
+	private CookieStore cookieStore = new BasicCookieStore();
+
+	/**
+	 * HTTP context of the requests
+	 */
+	private HttpContext localContext = new BasicHttpContext();
+
+	/**
+	 * Constructor
+	 */
+	public HttpsProvisioningClient() {
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", new EasySSLSocketFactory(), 443));
+
+		HttpParams params = new BasicHttpParams();
+		ConnManagerParams.setMaxTotalConnections(params, 2 * MAX_CONNECTIONS_PER_HOST);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+		HttpProtocolParams.setUseExpectContinue(params, false);
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+
+		// Support broad variety of different cookie types (not just Netscape but RFC 2109 and RFC2965 compliant ones, too)
+		HttpClientParams.setCookiePolicy(params, CookiePolicy.BROWSER_COMPATIBILITY);
+
+		connManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		httpClient = new DefaultHttpClient(connManager, params);
+		localContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
+	}
+
+	/**
+	 * Start a new provisioning flow: the cookies of the previous one are
+	 * cleared and the connections left idle are closed
+	 *
+	 * @param proxy Proxy or null
+	 */
+	public void startFlow(HttpHost proxy) {
+		cookieStore.clear();
+		closeIdleConnections(IDLE_TIMEOUT);
+		if (proxy != null) {
+			httpClient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+		} else {
+			httpClient.getParams().removeParameter(ConnRoutePNames.DEFAULT_PROXY);
+		}
+	}
+
+	/**
+	 * Execute a request, the entity of the response has to be consumed to
+	 * give its connection back to the pool
+	 *
+	 * @param get Request
+	 * @return Response
+	 * @throws IOException
+	 */
+	public HttpResponse execute(HttpGet get) throws IOException {
+		return httpClient.execute(get, localContext);
+	}
+
+	/**
+	 * Make a request conditional: the server answers with a 304 if the
+	 * document has not changed since it was received
+	 *
+	 * @param get Request
+	 * @param etag Entity tag of the document received or null
+	 * @param lastModified Last modification date of the document received or null
+	 */
+	public static void setValidators(HttpGet get, String etag, String lastModified) {
+		if (etag != null) {
+			get.setHeader("If-None-Match", etag);
+		}
+		if (lastModified != null) {
+			get.setHeader("If-Modified-Since", lastModified);
+		}
+	}
+
+	/**
+	 * Close the connections left idle
+	 *
+	 * @param idleTime Idle time in milliseconds
+	 */
+	public void closeIdleConnections(long idleTime) {
+		connManager.closeExpiredConnections();
+		connManager.closeIdleConnections(idleTime, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the number of connections in the pool, idle or used
+	 *
+	 * @return Number of connections
+	 */
+	public int getPooledConnections() {
+		return connManager.getConnectionsInPool();
+	}
+
+	/**
+	 * Close the connections
+	 */
+	public void shutdown() {
+		connManager.shutdown();
+	}
+}
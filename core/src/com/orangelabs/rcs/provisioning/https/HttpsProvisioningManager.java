@@ -27,32 +27,16 @@ import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.params.CookiePolicy;
-import org.apache.http.client.params.HttpClientParams;
-import org.apache.http.client.protocol.ClientContext;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnManagerPNames;
-import org.apache.http.conn.params.ConnPerRouteBean;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
-import org.apache.http.protocol.BasicHttpContext;
-import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 import android.app.PendingIntent;
@@ -65,8 +49,10 @@ import android.os.Environment;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 
+import com.orangelabs.rcs.core.Core;
+import com.orangelabs.rcs.core.ims.network.ImsNetworkInterface;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
-import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+import com.orangelabs.rcs.provisioning.ProvisioningDelta;
 import com.orangelabs.rcs.provisioning.ProvisioningFailureReasons;
 import com.orangelabs.rcs.provisioning.ProvisioningInfo;
 import com.orangelabs.rcs.provisioning.ProvisioningInfo.Version;
@@ -126,6 +112,21 @@ public class HttpsProvisioningManager {
      */
     private int retryAfter511ErrorCount = 0;
 
+    /**
+     * Retry after 503 "Service unavailable" counter
+     */
+    private int retryUnavailableCount = 0;
+
+    /**
+     * Random generator of the jitter added to the retry after 503
+     */
+    private Random random = new Random();
+
+    /**
+     * HTTP client kept between the provisioning requests
+     */
+    private HttpsProvisioningClient client = null;
+
     /**
      * Retry intent
      */
@@ -206,21 +207,27 @@ public class HttpsProvisioningManager {
      *
      * @param protocol HTTP protocol
      * @param request HTTP request
+     * @param client Instance of {@link HttpsProvisioningClient}
+     * @param conditional Request the document only if it differs from the one applied
      * @return HTTP response
      * @throws URISyntaxException 
      * @throws IOException 
      * @throws ClientProtocolException 
      */
-    protected HttpResponse executeRequest(String protocol, String request, DefaultHttpClient client, HttpContext localContext) throws URISyntaxException, ClientProtocolException, IOException {
+    protected HttpResponse executeRequest(String protocol, String request, HttpsProvisioningClient client, boolean conditional) throws URISyntaxException, ClientProtocolException, IOException {
         try {
             HttpGet get = new HttpGet();
             get.setURI(new URI(protocol + "://" + request));
             get.addHeader("Accept-Language", HttpsProvisioningUtils.getUserLanguage());
+            if (conditional && isProvisioningApplied()) {
+                HttpsProvisioningClient.setValidators(get, LauncherUtils.getProvisioningETag(context),
+                        LauncherUtils.getProvisioningLastModified(context));
+            }
             if (logger.isActivated()) {
                 logger.debug("HTTP request: " + get.getURI().toString());
             }
             
-            HttpResponse response = client.execute(get, localContext);
+            HttpResponse response = client.execute(get);
             if (logger.isActivated()) {
                 logger.debug("HTTP response: " + response.getStatusLine().toString());
             }
@@ -233,6 +240,24 @@ public class HttpsProvisioningManager {
         }
     }
 
+    /**
+     * Read the status, the content and the validators of a response, the
+     * connection being given back to the pool
+     *
+     * @param response HTTP response
+     * @param result Instance of {@link HttpsProvisioningResult}
+     * @throws IOException
+     */
+    private void readResponse(HttpResponse response, HttpsProvisioningResult result) throws IOException {
+        result.code = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        result.content = (entity != null) ? new String(EntityUtils.toByteArray(entity), "UTF-8") : "";
+        Header etag = response.getFirstHeader("ETag");
+        result.etag = (etag != null) ? etag.getValue() : null;
+        Header lastModified = response.getFirstHeader("Last-Modified");
+        result.lastModified = (lastModified != null) ? lastModified.getValue() : null;
+    }
+
     /**
      * Get the HTTPS request arguments
      * 
@@ -298,11 +323,10 @@ public class HttpsProvisioningManager {
 	 * @param imsi IMSI
 	 * @param imei IMEI
 	 * @param requestUri Request URI
-	 * @param client Instance of {@link DefaultHttpClient} 
-	 * @param localContext Instance of {@link HttpContext}
+	 * @param client Instance of {@link HttpsProvisioningClient}
 	 * @return Instance of {@link HttpsProvisioningResult} or null in case of internal exception
 	 */
-    protected HttpsProvisioningResult sendFirstRequestsToRequireOTP(String imsi, String imei, String msisdn, String primaryUri, String secondaryUri, DefaultHttpClient client, HttpContext localContext) {
+    protected HttpsProvisioningResult sendFirstRequestsToRequireOTP(String imsi, String imei, String msisdn, String primaryUri, String secondaryUri, HttpsProvisioningClient client) {
         HttpsProvisioningResult result = new HttpsProvisioningResult();
         try {
             if (logger.isActivated()) {
@@ -318,18 +342,17 @@ public class HttpsProvisioningManager {
 
             // Execute first HTTPS request with extra parameters
             String request = primaryUri + args;
-            HttpResponse response = executeRequest("https", request, client, localContext);
+            HttpResponse response = executeRequest("https", request, client, true);
             if (response == null && !StringUtils.isEmpty(secondaryUri)) {
                 // First server not available, try the secondaryUri
                 request = secondaryUri + args;
-                response = executeRequest("https", request, client, localContext);
+                response = executeRequest("https", request, client, true);
             }
             if (response == null) {
                 return null;
             }
 
-            result.code = response.getStatusLine().getStatusCode();
-            result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
+            readResponse(response, result);
             if (result.code != 200) {
                 if (result.code == 403) {
                     if (logger.isActivated()) {
@@ -342,7 +365,7 @@ public class HttpsProvisioningManager {
                     if (msisdn == null) {
                         return null;
                     } else {
-                        return sendFirstRequestsToRequireOTP(imsi, imei, msisdn, primaryUri, secondaryUri, client, localContext);
+                        return sendFirstRequestsToRequireOTP(imsi, imei, msisdn, primaryUri, secondaryUri, client);
                     }
 
                 } else if (result.code == 503) {
@@ -362,7 +385,7 @@ public class HttpsProvisioningManager {
                 }
                 
                 // Register SMS provisioning receiver
-                smsManager.registerSmsProvisioningReceiver(smsPortForOTP, primaryUri, client, localContext);
+                smsManager.registerSmsProvisioningReceiver(smsPortForOTP, primaryUri, client);
                 
                 // Save the MSISDN
                 RcsSettings.getInstance().setMsisdn(msisdn);
@@ -401,15 +424,14 @@ public class HttpsProvisioningManager {
      * 
      * @param otp One time password
      * @param requestUri Request URI
-     * @param client Instance of {@link DefaultHttpClient}
-     * @param localContext Instance of {@link HttpContext}
+     * @param client Instance of {@link HttpsProvisioningClient}
      */
-    protected void updateConfigWithOTP(String otp, String requestUri, DefaultHttpClient client, HttpContext localContext) {
+    protected void updateConfigWithOTP(String otp, String requestUri, HttpsProvisioningClient client) {
 		// Cancel previous retry alarm
 		HttpsProvisioningService.cancelRetryAlarm(context, retryIntent);
 
         // Get config via HTTPS with OTP
-        HttpsProvisioningResult result = sendSecondHttpsRequestWithOTP(otp, requestUri, client, localContext);
+        HttpsProvisioningResult result = sendSecondHttpsRequestWithOTP(otp, requestUri, client);
         
         // Process HTTPS provisioning result
         processProvisioningResult(result);
@@ -488,40 +510,23 @@ public class HttpsProvisioningManager {
 			String imei = tm.getDeviceId();
 	    	tm = null;
 
-	    	// Format HTTP request
-			SchemeRegistry schemeRegistry = new SchemeRegistry();
-			schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-			schemeRegistry.register(new Scheme("https", new EasySSLSocketFactory(), 443));
-
-			HttpParams params = new BasicHttpParams();
-			params.setParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, 30);
-			params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, 
-					new ConnPerRouteBean(30));
-			params.setParameter(HttpProtocolParams.USE_EXPECT_CONTINUE, false);
+	    	// Format HTTP request, the connections kept alive by the previous attempts being reused
             NetworkInfo networkInfo = networkConnection.getConnectionMngr().getActiveNetworkInfo();
-
+            HttpHost proxy = null;
             if (networkInfo != null) {
                 String proxyHost = Proxy.getDefaultHost();
                 if (proxyHost != null && proxyHost.length() > 1) {
                     int proxyPort = Proxy.getDefaultPort();
-                    params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort));
+                    proxy = new HttpHost(proxyHost, proxyPort);
                 }
             }
-			HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-
-			// Support broad variety of different cookie types (not just Netscape but RFC 2109 and RFC2965 compliant ones, too)  
-			HttpClientParams.setCookiePolicy(params, CookiePolicy.BROWSER_COMPATIBILITY);
-
-			ClientConnectionManager cm = new SingleClientConnManager(params, schemeRegistry);
-			DefaultHttpClient client = new DefaultHttpClient(cm, params);
-			CookieStore cookieStore = (CookieStore) new BasicCookieStore();
-			HttpContext localContext = new BasicHttpContext();
-			localContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
+            HttpsProvisioningClient client = getClient();
+            client.startFlow(proxy);
 
             // If network is not mobile network, use request with OTP
             if (networkInfo != null && networkInfo.getType() != ConnectivityManager.TYPE_MOBILE) {
                 // Proceed with non mobile network registration
-                return sendFirstRequestsToRequireOTP(imsi, imei, null, primaryUri, secondaryUri, client, localContext);
+                return sendFirstRequestsToRequireOTP(imsi, imei, null, primaryUri, secondaryUri, client);
             }
 
             if (logger.isActivated()) {
@@ -530,22 +535,21 @@ public class HttpsProvisioningManager {
 
 			// Execute first HTTP request
             String requestUri = primaryUri;
-            HttpResponse response = executeRequest("http", requestUri, client, localContext);
+            HttpResponse response = executeRequest("http", requestUri, client, false);
             if (response == null && !StringUtils.isEmpty(secondaryUri)) {
                 // First server not available, try the secondaryUri
                 requestUri = secondaryUri;
-                response = executeRequest("http", requestUri, client, localContext);
+                response = executeRequest("http", requestUri, client, false);
             }
             if (response == null) {
                 return null;
             }
 
-            result.code = response.getStatusLine().getStatusCode(); 
-			result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
+            readResponse(response, result);
             if (result.code == 511) {
                 // Blackbird guidelines ID_2_6 Configuration mechanism over PS without Header Enrichment
                 // Use SMS provisionning on PS data network if server reply 511 NETWORK AUTHENTICATION REQUIRED 
-                return sendFirstRequestsToRequireOTP(imsi, imei, null, primaryUri, secondaryUri, client, localContext);
+                return sendFirstRequestsToRequireOTP(imsi, imei, null, primaryUri, secondaryUri, client);
             } else if (result.code != 200) {
                 if (result.code == 503) {
                     result.retryAfter = getRetryAfter(response);
@@ -560,19 +564,15 @@ public class HttpsProvisioningManager {
                 logger.info("Request provisioning: "+ request);
             }
 
-            // Execute second HTTPS request
-            response = executeRequest("https", request, client, localContext);
+            // Execute second HTTPS request, the server answers with a 304 if the document applied has not changed
+            response = executeRequest("https", request, client, true);
             if (response == null) {
                 return null;
             }
-			result.code = response.getStatusLine().getStatusCode();
-			if (result.code != 200) {
-                if (result.code == 503) {
-                    result.retryAfter = getRetryAfter(response);
-                }
-				return result;
+			readResponse(response, result);
+			if (result.code == 503) {
+				result.retryAfter = getRetryAfter(response);
 			}
-			result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
 			return result;
 		} catch(UnknownHostException e) {
 			if (logger.isActivated()) {
@@ -606,11 +606,10 @@ public class HttpsProvisioningManager {
      * 
      * @param otp One time password
      * @param requestUri Request URI
-     * @param client Instance of {@link DefaultHttpClient} 
-     * @param localContext Instance of {@link HttpContext}
+     * @param client Instance of {@link HttpsProvisioningClient}
      * @return Instance of {@link HttpsProvisioningResult} or null in case of internal exception
      */
-	protected HttpsProvisioningResult sendSecondHttpsRequestWithOTP(String otp, String requestUri, DefaultHttpClient client, HttpContext localContext) {
+	protected HttpsProvisioningResult sendSecondHttpsRequestWithOTP(String otp, String requestUri, HttpsProvisioningClient client) {
         HttpsProvisioningResult result = new HttpsProvisioningResult();
         try {
             if (logger.isActivated()) {
@@ -626,11 +625,11 @@ public class HttpsProvisioningManager {
             }
 
             // Execute second HTTPS request
-            HttpResponse response = executeRequest("https", request, client, localContext);
+            HttpResponse response = executeRequest("https", request, client, false);
             if (response == null) {
                 return null;
             }
-            result.code = response.getStatusLine().getStatusCode();
+            readResponse(response, result);
             if (result.code != 200) {
                 if (result.code == 503) {
                     result.retryAfter = getRetryAfter(response);
@@ -641,7 +640,6 @@ public class HttpsProvisioningManager {
                 }
                 return result;
             }
-            result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
 
             return result;
         } catch (Exception e) {
@@ -676,9 +674,10 @@ public class HttpsProvisioningManager {
      */
 	private void processProvisioningResult(HttpsProvisioningResult result) {
 		if (result != null) {
-			if (result.code == 200) {
-				// Reset after 511 counter
+			if ((result.code == 200) || (result.code == 304)) {
+				// Reset after 511 and 503 counters
 				retryAfter511ErrorCount = 0;
+				retryUnavailableCount = 0;
 
 				if (result.waitingForSMSOTP) {
 					if (logger.isActivated()) {
@@ -691,15 +690,33 @@ public class HttpsProvisioningManager {
 					logger.debug("Provisioning request successful");
 				}
 
-				// Parse the received content
+				// Same document as the one applied, only its validity is renewed
+				String hash = (result.code == 200) ? ProvisioningDelta.hash(result.content) : null;
+				if (isProvisioningUnchanged(hash)) {
+					if (logger.isActivated()) {
+						logger.debug("Provisioning document unchanged");
+					}
+					if (result.code == 200) {
+						LauncherUtils.saveProvisioningValidators(context, result.etag, result.lastModified);
+					}
+					first = false;
+					retryCount = 0;
+					Long validity = LauncherUtils.getProvisioningValidity(context);
+					if (validity != null) {
+						LauncherUtils.saveProvisioningValidity(context, validity);
+						HttpsProvisioningService.startRetryAlarm(context, retryIntent, validity * 1000);
+					}
+					LauncherUtils.launchRcsCoreService(context);
+					return;
+				}
+
+				// Parse the received content, the GSMA release is set to Albatros unless the SERVICES node is present
 				ProvisioningParser parser = new ProvisioningParser(result.content);
-				
-				// Save GSMA release set into the provider
-				int gsmaRelease = RcsSettings.getInstance().getGsmaRelease();
-				
-				// Before parsing the provisioning, the GSMA release is set to Albatros
-				RcsSettings.getInstance().setGsmaRelease(RcsSettingsData.VALUE_GSMA_REL_ALBATROS);
-				if (parser.parse(gsmaRelease)) {
+				ProvisioningDelta delta = null;
+				if (parser.read(RcsSettings.getInstance().getGsmaRelease())) {
+					delta = writeProvisioning(parser.getParameters());
+				}
+				if (delta != null) {
 					// Successfully provisioned, 1st time reg finalized
 					first = false;
 					ProvisioningInfo info = parser.getProvisioningInfo();
@@ -735,6 +752,8 @@ public class HttpsProvisioningManager {
 							HttpsProvisioningService.startRetryAlarm(context, retryIntent, validity * 1000);
 						}
 						// Stop the RCS core service. Provisioning is still running.
+						LauncherUtils.saveProvisioningHash(context, null);
+						LauncherUtils.saveProvisioningValidators(context, null, null);
 						LauncherUtils.stopRcsCoreService(context);
 					} else if (ProvisioningInfo.Version.DISABLED_NOQUERY.equals(version)) {
 						// -2 : Disable RCS client and stop configuration query
@@ -742,6 +761,8 @@ public class HttpsProvisioningManager {
 							logger.debug("Provisioning: disable RCS client");
 						}
 						// Disable and stop RCS service
+						LauncherUtils.saveProvisioningHash(context, null);
+						LauncherUtils.saveProvisioningValidators(context, null, null);
 						RcsSettings.getInstance().setServiceActivationState(false);
 						LauncherUtils.stopRcsService(context);
 					} else if (ProvisioningInfo.Version.RESETED_NOQUERY.equals(version)) {
@@ -770,15 +791,16 @@ public class HttpsProvisioningManager {
 						if (info.getMessage() != null && !RcsSettings.getInstance().isProvisioningTermsAccepted()) {
 							showTermsAndConditions(info);
 						}
-						// Start the RCS core service
-						LauncherUtils.launchRcsCoreService(context);
+						// Save the hash and the validators of the document applied
+						LauncherUtils.saveProvisioningHash(context, hash);
+						LauncherUtils.saveProvisioningValidators(context, result.etag, result.lastModified);
+						// Start the RCS core service or reinitialize what the changes impact
+						reloadRcsCoreService(delta);
 					}
 				} else {
 					if (logger.isActivated()) {
 						logger.debug("Can't parse provisioning document");
 					}
-					// Restore GSMA release saved before parsing of the provisioning
-					RcsSettings.getInstance().setGsmaRelease(gsmaRelease);
 					if (first) {
 						if (logger.isActivated()) {
 							logger.debug("As this is first launch and we do not have a valid configuration yet, retry later");
@@ -794,18 +816,19 @@ public class HttpsProvisioningManager {
 					}
 				}
 			} else if (result.code == 503) {
-				// Server Unavailable
+				// Server Unavailable, the retries of the clients are spread to not overload it when it is back
+				retryUnavailableCount++;
+				long delay = HttpsProvisioningUtils.getUnavailableRetryTimeout(retryUnavailableCount,
+						result.retryAfter, random.nextDouble());
 				if (logger.isActivated()) {
-					logger.debug("Server Unavailable. Retry after: " + result.retryAfter);
+					logger.debug("Server Unavailable. Retry after: " + result.retryAfter + ", retry in " + delay + "ms");
 				}
 				if (first) {
 					// Reason: Unable to get configuration
 					provisioningFails(ProvisioningFailureReasons.UNABLE_TO_GET_CONFIGURATION);
-					if (result.retryAfter > 0) {
-						HttpsProvisioningService.startRetryAlarm(context, retryIntent, result.retryAfter * 1000);
-					}
+					HttpsProvisioningService.startRetryAlarm(context, retryIntent, delay);
 				} else {
-					tryLaunchRcsCoreService(context, result.retryAfter * 1000);
+					tryLaunchRcsCoreService(context, delay);
 				}
 			} else if (result.code == 403) {
 				// Forbidden: reset account + version = 0
@@ -859,6 +882,95 @@ public class HttpsProvisioningManager {
 		}
 	}
     
+	/**
+	 * Is the provisioning document the one already applied
+	 * 
+	 * @param hash Hash of the document or null if the server answered it is unchanged
+	 * @return Boolean
+	 */
+	private boolean isProvisioningUnchanged(String hash) {
+		if (!isProvisioningApplied()) {
+			return false;
+		}
+		return (hash == null) || hash.equals(LauncherUtils.getProvisioningHash(context));
+	}
+
+	/**
+	 * Is a provisioning document with a positive version applied
+	 * 
+	 * @return Boolean
+	 */
+	private boolean isProvisioningApplied() {
+		String version = RcsSettings.getInstance().getProvisioningVersion();
+		try {
+			if (Integer.parseInt(version) <= 0) {
+				return false;
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return version.equals(LauncherUtils.getProvisioningVersion(context));
+	}
+
+	/**
+	 * Write the settings read from the provisioning document which differ
+	 * from the current ones
+	 * 
+	 * @param parameters Settings read indexed by key
+	 * @return Changes written or null if they can't be written
+	 */
+	private ProvisioningDelta writeProvisioning(Map<String, String> parameters) {
+		RcsSettings settings = RcsSettings.getInstance();
+		Map<String, String> current = new HashMap<String, String>();
+		for (String key : parameters.keySet()) {
+			current.put(key, settings.readParameter(key));
+		}
+		ProvisioningDelta delta = new ProvisioningDelta(current, parameters);
+		try {
+			settings.writeParameters(delta.getValues());
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't write provisioning parameters", e);
+			}
+			return null;
+		}
+		if (logger.isActivated()) {
+			logger.debug(delta.getChanges().size() + " provisioning parameters changed, impact " + delta.getImpact());
+		}
+		return delta;
+	}
+
+	/**
+	 * Launch the RCS core service or, if it is started, reinitialize the
+	 * parts of the stack impacted by the changes of the provisioning
+	 * 
+	 * @param delta Changes of the provisioning
+	 */
+	private void reloadRcsCoreService(ProvisioningDelta delta) {
+		Core core = Core.getInstance();
+		if ((core == null) || !core.isCoreStarted()) {
+			LauncherUtils.launchRcsCoreService(context);
+			return;
+		}
+
+		switch(delta.getImpact()) {
+			case ProvisioningDelta.RESTART:
+				// Settings read when the stack starts
+				LauncherUtils.restartRcsCoreService(context);
+				break;
+			case ProvisioningDelta.REGISTRATION:
+				// Settings sent in the REGISTER
+				ImsNetworkInterface networkInterface = core.getImsModule().getCurrentNetworkInterface();
+				if ((networkInterface != null) && networkInterface.isRegistered()) {
+					networkInterface.getRegistrationManager().restart();
+				}
+				break;
+			default:
+				// Settings read again on use
+				break;
+		}
+	}
+
 	/**
 	 * Try to launch RCS Core Service. RCS Service is only launched if version is positive.
 	 * 
@@ -866,7 +978,7 @@ public class HttpsProvisioningManager {
 	 * @param timerRetry
 	 *            timer to trigger next provisioning request. Only applicable if greater than 0.
 	 */
-	private void tryLaunchRcsCoreService(Context context, int timerRetry) {
+	private void tryLaunchRcsCoreService(Context context, long timerRetry) {
 		try {
 			int version = Integer.parseInt(RcsSettings.getInstance().getProvisioningVersion());
 			// Only launch service if version is positive
@@ -975,6 +1087,28 @@ public class HttpsProvisioningManager {
 		smsManager.unregisterSmsProvisioningReceiver();
 	}
 
+    /**
+     * Get the HTTP client, created on first use
+     *
+     * @return Instance of {@link HttpsProvisioningClient}
+     */
+	private synchronized HttpsProvisioningClient getClient() {
+		if (client == null) {
+			client = new HttpsProvisioningClient();
+		}
+		return client;
+	}
+
+    /**
+     * Close the connections kept alive for the provisioning requests
+     */
+	public synchronized void closeConnections() {
+		if (client != null) {
+			client.shutdown();
+			client = null;
+		}
+	}
+
     /**
      * Transmit to Network unregister method
      */
@@ -1005,5 +1139,8 @@ public class HttpsProvisioningManager {
 
         // Reset after 511 counter
         retryAfter511ErrorCount = 0;
+
+        // Reset after 503 counter
+        retryUnavailableCount = 0;
 	}
 }
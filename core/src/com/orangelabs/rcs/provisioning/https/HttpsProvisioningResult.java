@@ -40,6 +40,16 @@ public class HttpsProvisioningResult {
      */
     public String content = null;
 
+    /**
+     * Value of header ETag
+     */
+    public String etag = null;
+
+    /**
+     * Value of header Last-Modified
+     */
+    public String lastModified = null;
+
     /**
      * Controls if is waiting for the SMS with the one time password (OTP)
      */
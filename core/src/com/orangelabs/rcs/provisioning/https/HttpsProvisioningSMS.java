@@ -21,9 +21,6 @@ package com.orangelabs.rcs.provisioning.https;
 import java.io.UnsupportedEncodingException;
 import java.util.Random;
 
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.protocol.HttpContext;
-
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.service.LauncherUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
@@ -98,11 +95,10 @@ public class HttpsProvisioningSMS {
      * 
      * @param smsPort SMS port
      * @param requestUri Request URI
-     * @param client Instance of {@link DefaultHttpClient}
-     * @param localContext Instance of {@link HttpContext}
+     * @param client Instance of {@link HttpsProvisioningClient}
      */
     public void registerSmsProvisioningReceiver(final String smsPort, final String requestUri,
-            final DefaultHttpClient client, final HttpContext localContext) {
+            final HttpsProvisioningClient client) {
         // Unregister previous one
         unregisterSmsProvisioningReceiver();
 
@@ -184,8 +180,7 @@ public class HttpsProvisioningSMS {
                             	if(manager != null){
 	                                Thread t = new Thread() {
 	                                    public void run() {
-	                                    	manager.updateConfigWithOTP(smsData, requestUri, client,
-		                                                localContext);
+	                                    	manager.updateConfigWithOTP(smsData, requestUri, client);
 	                                    }
 	                                };
 	                                t.start();
@@ -210,6 +210,9 @@ public class HttpsProvisioningService extends Service {
 
 			// Unregister SMS provisioning receiver
 			httpsProvisioningMng.unregisterSmsProvisioningReceiver();
+
+			// Close the connections kept alive
+			httpsProvisioningMng.closeConnections();
 		}
 
 		cancelRetryAlarm(this, retryIntent);
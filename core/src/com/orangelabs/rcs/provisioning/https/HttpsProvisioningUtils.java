@@ -51,6 +51,23 @@ public class HttpsProvisioningUtils {
      */
     protected static final int RETRY_BASE_TIMEOUT = 300000;
 
+    /**
+     * Retry base timeout after a 503 "Service unavailable" without
+     * Retry-After - 30s
+     */
+    protected static final int RETRY_UNAVAILABLE_BASE_TIMEOUT = 30000;
+
+    /**
+     * Retry max timeout after a 503 "Service unavailable" - 1h
+     */
+    protected static final int RETRY_UNAVAILABLE_MAX_TIMEOUT = 3600000;
+
+    /**
+     * Part of the retry timeout added at random after a 503 "Service
+     * unavailable", so that the clients do not retry at the same time
+     */
+    protected static final double RETRY_UNAVAILABLE_JITTER = 0.5;
+
     /**
      * Retry after an 511 "Network authentication required" timeout (in
      * milliseconds)
@@ -82,6 +99,29 @@ public class HttpsProvisioningUtils {
      */
 	public static final int DEFAULT_SMS_PORT = 37273;
 
+    /**
+     * Get the retry timeout after a 503 "Service unavailable": the delay
+     * requested by the server or else a delay doubled at each attempt, plus
+     * a random part
+     *
+     * @param count Number of 503 received in a row
+     * @param retryAfter Retry-After in seconds or 0
+     * @param random Random number between 0 and 1
+     * @return Timeout in milliseconds
+     */
+    protected static long getUnavailableRetryTimeout(int count, int retryAfter, double random) {
+        long timeout;
+        if (retryAfter > 0) {
+            timeout = retryAfter * 1000L;
+        } else {
+            timeout = RETRY_UNAVAILABLE_MAX_TIMEOUT;
+            if (count <= 20) {
+                timeout = Math.min(timeout, (long)RETRY_UNAVAILABLE_BASE_TIMEOUT << Math.max(count - 1, 0));
+            }
+        }
+        return timeout + (long)(timeout * RETRY_UNAVAILABLE_JITTER * random);
+    }
+
     /**
      * Get the current device language
      * 
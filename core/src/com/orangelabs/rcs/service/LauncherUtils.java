@@ -28,6 +28,7 @@ import android.telephony.TelephonyManager;
 
 import com.orangelabs.rcs.addressbook.AccountChangedReceiver;
 import com.orangelabs.rcs.addressbook.AuthenticationService;
+import com.orangelabs.rcs.core.ims.service.presence.xdm.XdmManager;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.platform.registry.AndroidRegistryFactory;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
@@ -61,6 +62,21 @@ public class LauncherUtils {
      */
     private static final String REGISTRY_PROVISIONING_EXPIRATION = "ProvisioningExpiration";
 
+    /**
+     * Key for storing the hash of the latest provisioning document applied
+     */
+    private static final String REGISTRY_PROVISIONING_HASH = "ProvisioningHash";
+
+    /**
+     * Key for storing the entity tag of the latest provisioning document applied
+     */
+    private static final String REGISTRY_PROVISIONING_ETAG = "ProvisioningETag";
+
+    /**
+     * Key for storing the last modification date of the latest provisioning document applied
+     */
+    private static final String REGISTRY_PROVISIONING_LAST_MODIFIED = "ProvisioningLastModified";
+
 
     /**
      * Logger
@@ -114,6 +130,19 @@ public class LauncherUtils {
         }
     }
 
+    /**
+     * Restart the RCS core service so that it reads the settings again
+     *
+     * @param context Application context
+     */
+    public static void restartRcsCoreService(Context context) {
+        if (logger.isActivated()) {
+            logger.debug("Restart core service");
+        }
+        context.stopService(new Intent(context, RcsCoreService.class));
+        launchRcsCoreService(context);
+    }
+
     /**
      * Force launch the RCS core service
      *
@@ -177,11 +206,16 @@ public class LauncherUtils {
         // Reset user profile
         RcsSettings.createInstance(context);
         RcsSettings.getInstance().resetUserProfile();
+        saveProvisioningHash(context, null);
+        saveProvisioningValidators(context, null, null);
 
         // Clean the RCS database
         ContactsManager.createInstance(context);
         ContactsManager.getInstance().deleteRCSEntries();
 
+        // Clean the cached XCAP documents
+        XdmManager.clearCache(context);
+
         // Remove the RCS account 
         AuthenticationService.removeRcsAccount(context, null);
         // Ensure that factory is set up properly to avoid NullPointerException in AccountChangedReceiver.setAccountResetByEndUser
@@ -262,6 +296,87 @@ public class LauncherUtils {
 		}
 	}
 	
+	/**
+	 * Get the hash of the latest provisioning document applied
+	 * 
+	 * @param context
+	 *            Application context
+	 * @return the hash or null
+	 */
+	public static String getProvisioningHash(Context context) {
+		SharedPreferences preferences = context.getSharedPreferences(AndroidRegistryFactory.RCS_PREFS_NAME, Activity.MODE_PRIVATE);
+		return preferences.getString(REGISTRY_PROVISIONING_HASH, null);
+	}
+
+	/**
+	 * Save the hash of the latest provisioning document applied in shared preferences
+	 * 
+	 * @param context
+	 *            Application context
+	 * @param hash
+	 *            the hash or null to forget it
+	 */
+	public static void saveProvisioningHash(Context context, String hash) {
+		SharedPreferences preferences = context.getSharedPreferences(AndroidRegistryFactory.RCS_PREFS_NAME, Activity.MODE_PRIVATE);
+		SharedPreferences.Editor editor = preferences.edit();
+		if (hash != null) {
+			editor.putString(REGISTRY_PROVISIONING_HASH, hash);
+		} else {
+			editor.remove(REGISTRY_PROVISIONING_HASH);
+		}
+		editor.commit();
+	}
+
+	/**
+	 * Get the entity tag of the latest provisioning document applied
+	 * 
+	 * @param context
+	 *            Application context
+	 * @return the entity tag or null
+	 */
+	public static String getProvisioningETag(Context context) {
+		SharedPreferences preferences = context.getSharedPreferences(AndroidRegistryFactory.RCS_PREFS_NAME, Activity.MODE_PRIVATE);
+		return preferences.getString(REGISTRY_PROVISIONING_ETAG, null);
+	}
+
+	/**
+	 * Get the last modification date of the latest provisioning document applied
+	 * 
+	 * @param context
+	 *            Application context
+	 * @return the date as sent by the server or null
+	 */
+	public static String getProvisioningLastModified(Context context) {
+		SharedPreferences preferences = context.getSharedPreferences(AndroidRegistryFactory.RCS_PREFS_NAME, Activity.MODE_PRIVATE);
+		return preferences.getString(REGISTRY_PROVISIONING_LAST_MODIFIED, null);
+	}
+
+	/**
+	 * Save the validators of the latest provisioning document applied in shared preferences
+	 * 
+	 * @param context
+	 *            Application context
+	 * @param etag
+	 *            the entity tag or null
+	 * @param lastModified
+	 *            the last modification date or null
+	 */
+	public static void saveProvisioningValidators(Context context, String etag, String lastModified) {
+		SharedPreferences preferences = context.getSharedPreferences(AndroidRegistryFactory.RCS_PREFS_NAME, Activity.MODE_PRIVATE);
+		SharedPreferences.Editor editor = preferences.edit();
+		if (etag != null) {
+			editor.putString(REGISTRY_PROVISIONING_ETAG, etag);
+		} else {
+			editor.remove(REGISTRY_PROVISIONING_ETAG);
+		}
+		if (lastModified != null) {
+			editor.putString(REGISTRY_PROVISIONING_LAST_MODIFIED, lastModified);
+		} else {
+			editor.remove(REGISTRY_PROVISIONING_LAST_MODIFIED);
+		}
+		editor.commit();
+	}
+
 	/**
 	 * Get the expiration date of the provisioning
 	 * 
@@ -60,6 +60,7 @@ import com.orangelabs.rcs.core.ims.service.richcall.video.VideoStreamingSession;
 import com.orangelabs.rcs.core.ims.service.sip.GenericSipSession;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.platform.file.FileFactory;
+import com.orangelabs.rcs.provider.HistoryWriter;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
 import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDaoImpl;
 import com.orangelabs.rcs.provider.ipcall.IPCallHistory;
@@ -317,6 +318,11 @@ public class RcsCoreService extends Service implements CoreListener {
     	// Terminate the core in background
 		Core.terminateCore();
 
+		// Commit the history writes still in queue
+		if (HistoryWriter.getInstance() != null) {
+			HistoryWriter.getInstance().flush();
+		}
+
 		// Close CPU manager
 		cpuManager.close();
 
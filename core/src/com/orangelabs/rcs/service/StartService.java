@@ -40,6 +40,7 @@ import android.telephony.TelephonyManager;
 import com.orangelabs.rcs.R;
 import com.orangelabs.rcs.addressbook.AccountChangedReceiver;
 import com.orangelabs.rcs.addressbook.AuthenticationService;
+import com.orangelabs.rcs.core.ims.service.presence.xdm.XdmManager;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.platform.registry.AndroidRegistryFactory;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
@@ -391,6 +392,7 @@ public class StartService extends Service {
                 }
                 ContactsManager.createInstance(getApplicationContext());
                 ContactsManager.getInstance().deleteRCSEntries();
+                XdmManager.clearCache(getApplicationContext());
                 AuthenticationService.removeRcsAccount(getApplicationContext(), null);
     
                 if (logger.isActivated()) {
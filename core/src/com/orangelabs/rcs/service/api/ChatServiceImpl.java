@@ -29,6 +29,7 @@ import com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.GroupChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.OneOneChatSession;
+import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.FtHttpResumeManager;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
@@ -744,4 +745,26 @@ public class ChatServiceImpl extends IChatService.Stub {
 	public int getServiceVersion() throws ServerApiException {
 		return JoynService.Build.API_VERSION;
 	}
+
+	/**
+	 * Sets the chat displayed to the user, whose file transfers are resumed
+	 * before the others
+	 * 
+	 * @param chatId Chat ID of a group chat, contact of a single chat or null
+	 * @throws ServerApiException
+	 */
+	public void setVisibleChat(String chatId) throws ServerApiException {
+		if (logger.isActivated()) {
+			logger.info("Set visible chat " + chatId);
+		}
+
+		Core core = Core.getInstance();
+		if ((core == null) || (core.getImService() == null)) {
+			return;
+		}
+		FtHttpResumeManager resumeManager = core.getImService().getResumeManager();
+		if (resumeManager != null) {
+			resumeManager.setVisibleChat(chatId);
+		}
+	}
 }
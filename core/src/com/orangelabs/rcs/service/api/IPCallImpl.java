@@ -2,6 +2,7 @@ package com.orangelabs.rcs.service.api;
 
 import android.os.RemoteCallbackList;
 
+import com.gsma.services.rcs.MediaStatistics;
 import com.gsma.services.rcs.ipcall.IIPCall;
 import com.gsma.services.rcs.ipcall.IIPCallListener;
 import com.gsma.services.rcs.ipcall.IIPCallPlayer;
@@ -180,6 +181,35 @@ public class IPCallImpl extends IIPCall.Stub implements IPCallStreamingSessionLi
     	t.start();			
 	}
 
+	/**
+	 * Returns the statistics of the media pipelines of the call, the player
+	 * and renderer statistics are merged
+	 * 
+	 * @return Statistics or null if not supported by the player and renderer
+	 */
+	public MediaStatistics getMediaStatistics() {
+		MediaStatistics statistics = null;
+		try {
+			if (session.getPlayer() != null) {
+				statistics = session.getPlayer().getMediaStatistics();
+			}
+			if (session.getRenderer() != null) {
+				MediaStatistics rendererStatistics = session.getRenderer().getMediaStatistics();
+				if (statistics == null) {
+					statistics = rendererStatistics;
+				} else
+				if (rendererStatistics != null) {
+					statistics.add(rendererStatistics);
+				}
+			}
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't get media statistics", e);
+			}
+		}
+		return statistics;
+	}
+
 	/**
 	 * Is video activated
 	 * 
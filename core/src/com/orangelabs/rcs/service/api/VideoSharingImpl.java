@@ -18,6 +18,7 @@
 
 package com.orangelabs.rcs.service.api;
 
+import com.gsma.services.rcs.MediaStatistics;
 import com.gsma.services.rcs.vsh.IVideoRenderer;
 import com.gsma.services.rcs.vsh.IVideoSharing;
 import com.gsma.services.rcs.vsh.IVideoSharingListener;
@@ -163,6 +164,28 @@ public class VideoSharingImpl extends IVideoSharing.Stub implements VideoStreami
 		}
 	}	
 	
+	/**
+	 * Returns the statistics of the media pipeline
+	 * 
+	 * @return Statistics or null if not supported by the player or renderer
+	 */
+	public MediaStatistics getMediaStatistics() {
+		MediaStatistics statistics = null;
+		try {
+			if (session.getVideoPlayer() != null) {
+				statistics = session.getVideoPlayer().getMediaStatistics();
+			} else
+			if (session.getVideoRenderer() != null) {
+				statistics = session.getVideoRenderer().getMediaStatistics();
+			}
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't get media statistics", e);
+			}
+		}
+		return statistics;
+	}
+
 	/**
 	 * Accepts video sharing invitation
 	 * 
@@ -0,0 +1,213 @@
+package com.orangelabs.rcs.core.content;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.orangelabs.rcs.platform.image.AndroidImageFactory;
+import com.orangelabs.rcs.platform.image.ImageFactory;
+
+/**
+ * Thumbnails of large JPEG and PNG images: heap used while generating them,
+ * size and dimensions of the thumbnails and disk cache
+ */
+public class ThumbnailManagerTest extends AndroidTestCase {
+	private static final String TAG = "ThumbnailManagerTest";
+
+	private static final int MAX_SIZE = 20 * 1024;
+
+	private static final int MAX_CACHE_SIZE = 64 * 1024;
+
+	private File dir;
+
+	private File cacheDir;
+
+	private ThumbnailManager manager;
+
+	/**
+	 * Heap sampled while a thumbnail is generated, the pixels of a bitmap
+	 * being in the native heap before Honeycomb and in the VM heap after
+	 */
+	private static class HeapSampler extends Thread {
+		private Runtime runtime = Runtime.getRuntime();
+
+		private long baseHeap;
+
+		private volatile long maxHeap = 0;
+
+		private volatile boolean running = true;
+
+		HeapSampler() {
+			System.gc();
+			baseHeap = getHeap();
+			start();
+		}
+
+		private long getHeap() {
+			return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+		}
+
+		public void run() {
+			while (running) {
+				maxHeap = Math.max(maxHeap, getHeap() - baseHeap);
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		long finish() throws InterruptedException {
+			running = false;
+			join();
+			return maxHeap;
+		}
+	}
+
+	/**
+	 * Write an image with gradients and noise, so that it doesn't compress
+	 * much
+	 */
+	private File createImage(String name, int width, int height, Bitmap.Config config,
+			Bitmap.CompressFormat format, int quality) throws IOException {
+		Bitmap image = Bitmap.createBitmap(width, height, config);
+		Random random = new Random(1);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int noise = random.nextInt(64);
+				row[x] = 0xff000000 | ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | (noise * 4);
+			}
+			image.setPixels(row, 0, width, 0, y, width, 1);
+		}
+		File file = new File(dir, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			image.compress(format, quality, out);
+		} finally {
+			out.close();
+			image.recycle();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		ImageFactory.loadFactory(AndroidImageFactory.class.getName());
+		dir = new File(getContext().getCacheDir(), "thumbnails-test");
+		delete(dir);
+		dir.mkdirs();
+		cacheDir = new File(dir, "cache");
+		manager = new ThumbnailManager(cacheDir, ThumbnailManager.MAX_DIMENSION, ThumbnailManager.MAX_DIMENSION,
+				MAX_SIZE, MAX_CACHE_SIZE);
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+
+		super.tearDown();
+	}
+
+	private void checkThumbnail(File image, int width, int height) throws Exception {
+		HeapSampler sampler = new HeapSampler();
+		long start = System.currentTimeMillis();
+		byte[] thumbnail = manager.getThumbnail(image.getPath());
+		long duration = System.currentTimeMillis() - start;
+		long heap = sampler.finish();
+
+		assertNotNull(thumbnail);
+		assertTrue(thumbnail.length <= MAX_SIZE);
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length, options);
+		assertTrue(options.outWidth <= ThumbnailManager.MAX_DIMENSION);
+		assertTrue(options.outHeight <= ThumbnailManager.MAX_DIMENSION);
+		assertEquals((double)width / height, (double)options.outWidth / options.outHeight, 0.02);
+
+		// Far less than the heap needed to decode the whole image
+		long decodedSize = (long)width * height * 4;
+		Log.i(TAG, image.getName() + " " + width + "x" + height + " (" + image.length() / 1024 + " KB): thumbnail "
+				+ options.outWidth + "x" + options.outHeight + " of " + thumbnail.length + " bytes in "
+				+ duration + " ms, heap growth " + heap / 1024 + " KB for " + decodedSize / 1024
+				+ " KB decoded");
+		assertTrue(heap < decodedSize / 4);
+	}
+
+	public void testLargeJpeg() throws Exception {
+		File image = createImage("large.jpg", 2592, 1944, Bitmap.Config.RGB_565, Bitmap.CompressFormat.JPEG, 95);
+		checkThumbnail(image, 2592, 1944);
+	}
+
+	public void testLargePng() throws Exception {
+		File image = createImage("large.png", 1200, 1800, Bitmap.Config.ARGB_8888, Bitmap.CompressFormat.PNG, 100);
+		checkThumbnail(image, 1200, 1800);
+	}
+
+	public void testSmallImage() throws Exception {
+		File image = createImage("small.jpg", 100, 80, Bitmap.Config.RGB_565, Bitmap.CompressFormat.JPEG, 80);
+		byte[] data = manager.getThumbnail(image.getPath());
+		assertEquals(image.length(), data.length);
+	}
+
+	public void testNotAnImage() throws Exception {
+		File file = new File(dir, "file.txt");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("Not an image".getBytes());
+		out.close();
+		assertNull(manager.getThumbnail(file.getPath()));
+		assertNull(manager.getThumbnail(new File(dir, "missing.jpg").getPath()));
+	}
+
+	public void testCache() throws Exception {
+		File image = createImage("image.jpg", 2000, 1500, Bitmap.Config.RGB_565, Bitmap.CompressFormat.JPEG, 90);
+		long start = System.currentTimeMillis();
+		byte[] generated = manager.getThumbnail(image.getPath());
+		long generation = System.currentTimeMillis() - start;
+		start = System.currentTimeMillis();
+		byte[] cached = manager.getThumbnail(image.getPath());
+		long hit = System.currentTimeMillis() - start;
+		Log.i(TAG, "Thumbnail generated in " + generation + " ms, read from the cache in " + hit + " ms");
+		assertTrue(Arrays.equals(generated, cached));
+		assertEquals(1, manager.getMisses());
+		assertEquals(1, manager.getHits());
+
+		// Same content under another name
+		File copy = new File(dir, "copy.jpg");
+		assertTrue(image.renameTo(copy));
+		manager.getThumbnail(copy.getPath());
+		assertEquals(2, manager.getHits());
+
+		// Cache kept under its maximum size
+		for (int i = 0; i < 10; i++) {
+			File other = createImage("other" + i + ".jpg", 1000 + i, 800, Bitmap.Config.RGB_565,
+					Bitmap.CompressFormat.JPEG, 90);
+			manager.getThumbnail(other.getPath());
+		}
+		long cacheSize = 0;
+		for (File file : cacheDir.listFiles()) {
+			cacheSize += file.length();
+		}
+		assertTrue(cacheSize <= MAX_CACHE_SIZE);
+		assertEquals(11, manager.getMisses());
+	}
+}
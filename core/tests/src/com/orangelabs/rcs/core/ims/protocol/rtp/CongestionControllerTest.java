@@ -0,0 +1,144 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.congestion.CongestionListener;
+
+/**
+ * Deterministic simulation of the congestion controller over loss and delay
+ * profiles
+ */
+public class CongestionControllerTest extends TestCase {
+	private static final int CLOCK_RATE = 90000;
+	private static final int MAX_BITRATE = 384000;
+	private static final int MIN_BITRATE = 32000;
+	private static final int REPORT_INTERVAL = 1000;
+	private static final long BASE_RTT = 100;
+
+	/**
+	 * Simulated link: a bottleneck with a drop tail queue and a random loss
+	 */
+	private static class Link {
+		int capacity;
+		double randomLoss;
+		long queue = 0;
+		long maxQueue;
+		Random random = new Random(1234);
+
+		Link(int capacity, double randomLoss) {
+			this.capacity = capacity;
+			this.randomLoss = randomLoss;
+			this.maxQueue = capacity / 2; // 500 ms of buffer
+		}
+
+		/**
+		 * Send during one report interval and return the report values
+		 * (fraction lost 0-255, jitter in RTP units, RTT in ms)
+		 */
+		long[] send(int rate) {
+			long overflow = 0;
+			queue += rate - capacity;
+			if (queue < 0) {
+				queue = 0;
+			} else if (queue > maxQueue) {
+				overflow = queue - maxQueue;
+				queue = maxQueue;
+			}
+			double loss = (double)overflow / rate;
+			loss += randomLoss * (0.5 + random.nextDouble());
+			if (loss > 1) {
+				loss = 1;
+			}
+			long queuingDelay = (queue * 1000) / capacity;
+			long jitter = (queuingDelay / 4) * CLOCK_RATE / 1000;
+			return new long[] {(long)(loss * 256), jitter, BASE_RTT + queuingDelay};
+		}
+	}
+
+	private CongestionController createController() {
+		return new CongestionController(MAX_BITRATE, MIN_BITRATE, MAX_BITRATE, 5, 15, CLOCK_RATE);
+	}
+
+	private int run(CongestionController controller, Link link, int intervals, long start) {
+		long now = start;
+		for (int i = 0; i < intervals; i++) {
+			long[] report = link.send(controller.getTargetBitRate());
+			now += REPORT_INTERVAL;
+			controller.processReport((int)report[0], report[1], report[2], now);
+		}
+		return controller.getTargetBitRate();
+	}
+
+	public void testNoCongestion() {
+		CongestionController controller = createController();
+		Link link = new Link(1000000, 0);
+		assertEquals(MAX_BITRATE, run(controller, link, 60, 0));
+		assertEquals(15, controller.getTargetFrameRate());
+	}
+
+	public void testBottleneck() {
+		CongestionController controller = createController();
+		Link link = new Link(200000, 0);
+		run(controller, link, 120, 0);
+
+		// Average rate over the steady state must stay around the capacity
+		long sum = 0;
+		long now = 120 * REPORT_INTERVAL;
+		for (int i = 0; i < 60; i++) {
+			long[] report = link.send(controller.getTargetBitRate());
+			now += REPORT_INTERVAL;
+			controller.processReport((int)report[0], report[1], report[2], now);
+			sum += controller.getTargetBitRate();
+		}
+		long average = sum / 60;
+		assertTrue("Average " + average, average <= 220000);
+		assertTrue("Average " + average, average >= 120000);
+	}
+
+	public void testHighRandomLoss() {
+		CongestionController controller = createController();
+		Link link = new Link(1000000, 0.20);
+		int rate = run(controller, link, 30, 0);
+		assertTrue("Rate " + rate, rate < MAX_BITRATE / 2);
+		assertTrue(controller.getTargetFrameRate() < 15);
+	}
+
+	public void testLowRandomLossIsTolerated() {
+		CongestionController controller = createController();
+		Link link = new Link(1000000, 0.01);
+		assertEquals(MAX_BITRATE, run(controller, link, 30, 0));
+	}
+
+	public void testRecoveryAfterCongestion() {
+		CongestionController controller = createController();
+		int congested = run(controller, new Link(64000, 0), 30, 0);
+		assertTrue("Rate " + congested, congested < 100000);
+		int recovered = run(controller, new Link(1000000, 0), 60, 30 * REPORT_INTERVAL);
+		assertEquals(MAX_BITRATE, recovered);
+	}
+
+	public void testTmmbr() {
+		CongestionController controller = createController();
+		final int[] notified = new int[2];
+		controller.setListener(new CongestionListener() {
+			public void targetRateChanged(int bitRate, int frameRate) {
+				notified[0] = bitRate;
+				notified[1] = frameRate;
+			}
+		});
+		controller.processTmmbr(128000);
+		assertEquals(128000, controller.getTargetBitRate());
+		assertEquals(128000, notified[0]);
+		assertEquals(10, notified[1]);
+		assertEquals(128000, run(controller, new Link(1000000, 0), 30, 0));
+	}
+
+	public void testDeterminism() {
+		int first = run(createController(), new Link(150000, 0.05), 100, 0);
+		int second = run(createController(), new Link(150000, 0.05), 100, 0);
+		assertEquals(first, second);
+	}
+}
@@ -0,0 +1,133 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpFeedbackPacket;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.NackGenerator;
+
+/**
+ * Generic NACK and PLI feedback, and packet delivery over a lossy link
+ */
+public class RtcpFeedbackTest extends TestCase {
+
+	public void testNackSeqnums() {
+		int[] lost = { 65530, 65533, 65535, 2, 9, 30, 31 }; // Check the wrap around
+		RtcpFeedbackPacket nack = RtcpFeedbackPacket.createNack(1, 2, lost);
+		assertTrue(nack.isNack());
+		assertFalse(nack.isPli());
+		assertEquals(8, nack.fci.length);
+		assertTrue(Arrays.equals(lost, nack.getNackSeqnums()));
+	}
+
+	public void testPli() {
+		RtcpFeedbackPacket pli = RtcpFeedbackPacket.createPli(1, 2);
+		assertTrue(pli.isPli());
+		assertFalse(pli.isNack());
+	}
+
+	public void testCodecParameters() {
+		String params = RtpUtils.addRtcpFeedback("profile-level-id=42900b", true, true);
+		assertTrue(RtpUtils.isRtcpFeedbackEnabled(params, RtpUtils.RTCP_FB_NACK));
+		assertTrue(RtpUtils.isRtcpFeedbackEnabled(params, RtpUtils.RTCP_FB_PLI));
+		params = RtpUtils.addRtcpFeedback("profile-level-id=42900b", true, false);
+		assertFalse(RtpUtils.isRtcpFeedbackEnabled(params, RtpUtils.RTCP_FB_PLI));
+	}
+
+	public void testNackGenerator() {
+		NackGenerator generator = new NackGenerator();
+		assertTrue(generator.packetReceived(65534, 0));
+		assertTrue(generator.packetReceived(1, 0));
+		assertFalse(generator.packetReceived(1, 0));
+		assertEquals(1, generator.getDuplicatedNumber());
+
+		// Reorder window
+		assertNull(generator.getNackList(0));
+		assertTrue(Arrays.equals(new int[] { 65535, 0 }, generator.getNackList(NackGenerator.REORDER_DELAY)));
+
+		// Wait before retrying
+		assertNull(generator.getNackList(50));
+
+		// Retransmitted packet
+		assertTrue(generator.packetReceived(0, 60));
+		assertFalse(generator.packetReceived(0, 60));
+		assertTrue(Arrays.equals(new int[] { 65535 }, generator.getNackList(120)));
+
+		// Given up after the last retry
+		assertNotNull(generator.getNackList(220));
+		assertNull(generator.getNackList(320));
+		assertEquals(1, generator.pollUnrecoveredNumber());
+		assertEquals(0, generator.getMissingNumber());
+	}
+
+	public void testNackReorderWindow() {
+		NackGenerator generator = new NackGenerator();
+		generator.packetReceived(0, 0);
+
+		// Packets received out of order within the window aren't requested
+		generator.packetReceived(2, 0);
+		generator.packetReceived(1, NackGenerator.REORDER_DELAY - 1);
+		generator.packetReceived(4, NackGenerator.REORDER_DELAY);
+		assertNull(generator.getNackList(NackGenerator.REORDER_DELAY));
+		generator.packetReceived(3, NackGenerator.REORDER_DELAY);
+		assertNull(generator.getNackList(10 * NackGenerator.REORDER_DELAY));
+		assertEquals(0, generator.getMissingNumber());
+
+		// Packet requested once the window has elapsed
+		generator.packetReceived(6, 1000);
+		assertNull(generator.getNackList(1000 + NackGenerator.REORDER_DELAY - 1));
+		assertTrue(Arrays.equals(new int[] { 5 }, generator.getNackList(1000 + NackGenerator.REORDER_DELAY)));
+		generator.packetReceived(5, 1000 + 2 * NackGenerator.REORDER_DELAY);
+
+		// Or once enough newer packets have been received
+		generator.packetReceived(8, 2000);
+		for (int seqnum = 9; seqnum <= 7 + NackGenerator.REORDER_PACKETS; seqnum++) {
+			generator.packetReceived(seqnum, 2000);
+			assertNull(generator.getNackList(2000));
+		}
+		generator.packetReceived(8 + NackGenerator.REORDER_PACKETS, 2000);
+		assertTrue(Arrays.equals(new int[] { 7 }, generator.getNackList(2000)));
+	}
+
+	/**
+	 * Ratio of packets received over a link with random losses, the lost
+	 * packets being requested every 20 ms
+	 */
+	private double deliver(boolean nack, double loss) {
+		NackGenerator generator = new NackGenerator();
+		Random link = new Random(1234);
+		int packets = 10000;
+		int received = 0;
+		for (int seq = 0; seq < packets; seq++) {
+			if (link.nextDouble() >= loss && generator.packetReceived(seq, seq * 2L)) {
+				received++;
+			}
+			if (!nack || (seq % 10) != 0) {
+				continue;
+			}
+
+			// One packet every 2 ms, the feedback goes through the same link
+			int[] list = generator.getNackList(seq * 2L);
+			if (list == null || link.nextDouble() < loss) {
+				continue;
+			}
+			RtcpFeedbackPacket packet = RtcpFeedbackPacket.createNack(1, 2, list);
+			int[] requested = packet.getNackSeqnums();
+			for (int i = 0; i < requested.length; i++) {
+				if (link.nextDouble() >= loss && generator.packetReceived(requested[i], seq * 2L)) {
+					received++;
+				}
+			}
+		}
+		return (double)received / packets;
+	}
+
+	public void testDeliveryOverLossyLink() {
+		double withoutNack = deliver(false, 0.05);
+		double withNack = deliver(true, 0.05);
+		assertTrue("Without NACK " + withoutNack + ", with NACK " + withNack, withNack > withoutNack);
+		assertTrue("With NACK " + withNack, withNack > 0.999);
+	}
+}
@@ -0,0 +1,143 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.fec.UlpfecDecoder;
+import com.orangelabs.rcs.core.ims.protocol.rtp.fec.UlpfecEncoder;
+
+/**
+ * ULPFEC encoding and recovery, and frame delivery over a lossy link
+ */
+public class UlpfecTest extends TestCase {
+	private static final int MEDIA_PT = 96;
+	private static final int FEC_PT = RtpUtils.RTP_DEFAULT_FEC_PAYLOAD_TYPE;
+	private static final int SSRC = 0x12345678;
+
+	private Random random = new Random(4321);
+
+	private int seqnum = 65530; // Check the wrap around
+
+	private static byte[] rtp(int pt, int seq, long ts, boolean marker, byte[] payload) {
+		byte[] data = new byte[12 + payload.length];
+		data[0] = (byte)0x80;
+		data[1] = (byte)((marker ? 0x80 : 0) | pt);
+		data[2] = (byte)(seq >> 8);
+		data[3] = (byte)seq;
+		data[4] = (byte)(ts >> 24);
+		data[5] = (byte)(ts >> 16);
+		data[6] = (byte)(ts >> 8);
+		data[7] = (byte)ts;
+		data[8] = (byte)(SSRC >> 24);
+		data[9] = (byte)(SSRC >> 16);
+		data[10] = (byte)(SSRC >> 8);
+		data[11] = (byte)SSRC;
+		System.arraycopy(payload, 0, data, 12, payload.length);
+		return data;
+	}
+
+	/**
+	 * Build a frame and its FEC packets, as sent by the transmitter
+	 */
+	private byte[][] sendFrame(UlpfecEncoder encoder, int packets, long ts) {
+		byte[][] media = new byte[packets][];
+		for (int i = 0; i < packets; i++) {
+			byte[] payload = new byte[200 + random.nextInt(1000)];
+			random.nextBytes(payload);
+			media[i] = rtp(MEDIA_PT, (seqnum++) & 0xffff, ts, i == packets - 1, payload);
+			if (encoder != null) {
+				encoder.addPacket(media[i], media[i].length);
+			}
+		}
+		if (encoder == null) {
+			return media;
+		}
+		byte[][] fec = encoder.generateFecPackets();
+		byte[][] all = Arrays.copyOf(media, packets + fec.length);
+		for (int i = 0; i < fec.length; i++) {
+			all[packets + i] = rtp(FEC_PT, (seqnum++) & 0xffff, ts, false, fec[i]);
+		}
+		return all;
+	}
+
+	private void checkRecovery(int packets, int level, int lost) {
+		UlpfecEncoder encoder = new UlpfecEncoder(level);
+		UlpfecDecoder decoder = new UlpfecDecoder(FEC_PT);
+		byte[][] sent = sendFrame(encoder, packets, 3000);
+		for (int i = 0; i < sent.length; i++) {
+			if (i != lost) {
+				decoder.addPacket(sent[i]);
+			}
+		}
+		byte[] recovered = decoder.pollRecoveredPacket();
+		assertNotNull(recovered);
+		assertTrue(Arrays.equals(sent[lost], recovered));
+		assertNull(decoder.pollRecoveredPacket());
+		assertEquals(1, decoder.getRecoveredNumber());
+	}
+
+	public void testFecPacketsNumber() {
+		UlpfecEncoder encoder = new UlpfecEncoder(25);
+		assertEquals(1, encoder.getFecPacketsNumber(1));
+		assertEquals(2, encoder.getFecPacketsNumber(5));
+		assertEquals(12, encoder.getFecPacketsNumber(48));
+	}
+
+	public void testRecoverPacket() {
+		checkRecovery(5, 25, 2);
+	}
+
+	public void testRecoverMarkerPacket() {
+		checkRecovery(5, 25, 4);
+	}
+
+	public void testRecoverWithLongMask() {
+		checkRecovery(20, 5, 17);
+	}
+
+	public void testCodecParameters() {
+		String params = RtpUtils.addFecPayloadType("profile-level-id=42900b", FEC_PT);
+		assertEquals(FEC_PT, RtpUtils.getFecPayloadType(params));
+		assertEquals(-1, RtpUtils.getFecPayloadType("profile-level-id=42900b"));
+	}
+
+	/**
+	 * Ratio of complete frames received over a link with random losses
+	 */
+	private double deliver(int level, double loss) {
+		UlpfecEncoder encoder = (level > 0) ? new UlpfecEncoder(level) : null;
+		UlpfecDecoder decoder = new UlpfecDecoder(FEC_PT);
+		Random link = new Random(1234);
+		int complete = 0;
+		int frames = 1000;
+		for (int f = 0; f < frames; f++) {
+			byte[][] sent = sendFrame(encoder, 6, f * 6000L);
+			int received = 0;
+			for (int i = 0; i < sent.length; i++) {
+				if (link.nextDouble() < loss) {
+					continue;
+				}
+				decoder.addPacket(sent[i]);
+				if (!decoder.isFecPacket(sent[i])) {
+					received++;
+				}
+			}
+			while (decoder.pollRecoveredPacket() != null) {
+				received++;
+			}
+			if (received == 6) {
+				complete++;
+			}
+		}
+		return (double)complete / frames;
+	}
+
+	public void testFrameDeliveryOverLossyLink() {
+		double withoutFec = deliver(0, 0.03);
+		double withFec = deliver(34, 0.03);
+		assertTrue("Without FEC " + withoutFec + ", with FEC " + withFec, withFec > withoutFec);
+		assertTrue("With FEC " + withFec, withFec > 0.97);
+	}
+}
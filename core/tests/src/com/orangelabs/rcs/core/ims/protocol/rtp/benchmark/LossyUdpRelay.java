@@ -0,0 +1,116 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp.benchmark;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+/**
+ * UDP relay on the loopback dropping and swapping datagrams at random
+ */
+public class LossyUdpRelay extends Thread {
+	private DatagramSocket socket;
+
+	private InetAddress address;
+
+	private int targetPort;
+
+	private double loss;
+
+	private double reordering;
+
+	private Random random;
+
+	private DatagramPacket held = null;
+
+	private volatile boolean closed = false;
+
+	private int relayedNumber = 0;
+
+	private int droppedNumber = 0;
+
+	private int reorderedNumber = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param port Local port
+	 * @param targetPort Port of the receiver on the loopback
+	 * @param loss Probability to drop a datagram
+	 * @param reordering Probability to delay a datagram after the next one
+	 * @param seed Random seed
+	 * @throws IOException
+	 */
+	public LossyUdpRelay(int port, int targetPort, double loss, double reordering, long seed) throws IOException {
+		super("LossyUdpRelay-" + port);
+		this.address = InetAddress.getByName("127.0.0.1");
+		this.targetPort = targetPort;
+		this.loss = loss;
+		this.reordering = reordering;
+		this.random = new Random(seed);
+		socket = new DatagramSocket(port);
+		socket.setSoTimeout(200);
+		setDaemon(true);
+	}
+
+	public void close() {
+		closed = true;
+		socket.close();
+	}
+
+	public void run() {
+		byte[] buffer = new byte[2048];
+		while (!closed) {
+			try {
+				DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+				socket.receive(packet);
+				if (random.nextDouble() < loss) {
+					droppedNumber++;
+					continue;
+				}
+				byte[] data = new byte[packet.getLength()];
+				System.arraycopy(buffer, 0, data, 0, data.length);
+				DatagramPacket relayed = new DatagramPacket(data, data.length, address, targetPort);
+				if (held == null && random.nextDouble() < reordering) {
+					held = relayed;
+					reorderedNumber++;
+					continue;
+				}
+				socket.send(relayed);
+				relayedNumber++;
+				if (held != null) {
+					socket.send(held);
+					relayedNumber++;
+					held = null;
+				}
+			} catch (SocketTimeoutException e) {
+				// Release the held datagram when the stream pauses
+				if (held != null) {
+					try {
+						socket.send(held);
+						relayedNumber++;
+					} catch (IOException e2) {
+						// Dropped
+					}
+					held = null;
+				}
+			} catch (IOException e) {
+				// Relay closed
+			}
+		}
+	}
+
+	public int getRelayedNumber() {
+		return relayedNumber;
+	}
+
+	public int getDroppedNumber() {
+		return droppedNumber;
+	}
+
+	public int getReorderedNumber() {
+		return reorderedNumber;
+	}
+}
@@ -0,0 +1,360 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp.benchmark;
+
+import java.net.DatagramSocket;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import android.os.Debug;
+import android.os.Process;
+import android.util.Log;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.MediaRtpReceiver;
+import com.orangelabs.rcs.core.ims.protocol.rtp.MediaRtpSender;
+import com.orangelabs.rcs.core.ims.protocol.rtp.RtpUtils;
+import com.orangelabs.rcs.core.ims.protocol.rtp.VideoRtpReceiver;
+import com.orangelabs.rcs.core.ims.protocol.rtp.VideoRtpSender;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpStatisticsReceiver;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpStatisticsReceiver;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpStatisticsTransmitter;
+import com.orangelabs.rcs.core.ims.protocol.rtp.feedback.NackGenerator;
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.audio.AmrWbAudioFormat;
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.H264VideoFormat;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpOutputStream;
+import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpStreamListener;
+import com.orangelabs.rcs.platform.network.NetworkFactory;
+
+/**
+ * Loopback benchmark of the RTP/RTCP media path. A sender and a receiver are
+ * wired through a UDP relay injecting losses and reordering, with synthetic
+ * media frames at both ends.
+ *
+ * The tests are a regression gate on short runs, testLongRuns() runs longer
+ * scenarios when the duration is set.
+ */
+public class MediaLoopbackBenchmark extends TestCase {
+	private static final String TAG = "MediaLoopbackBenchmark";
+
+	private static final String LOOPBACK = "127.0.0.1";
+
+	/**
+	 * Duration of the long runs in seconds, 0 to skip them
+	 */
+	private static final int LONG_RUN_DURATION = 0;
+
+	/**
+	 * Time given to the receiver to drain the last packets
+	 */
+	private static final long DRAIN_DELAY = 500;
+
+	/**
+	 * Frames sent after the measured ones to flush the reordering queue of
+	 * the receiver
+	 */
+	private static final int FLUSH_FRAMES = 6;
+
+	/**
+	 * Benchmark scenario
+	 */
+	public static class Scenario {
+		public String name;
+		public boolean video;
+		public int bitRate = 500000;
+		public int frameRate = 15;
+		public int durationSeconds = 2;
+		public double loss = 0;
+		public double reordering = 0;
+		public boolean nack = false;
+
+		public Scenario(String name, boolean video) {
+			this.name = name;
+			this.video = video;
+		}
+
+		public int getFramesNumber() {
+			return durationSeconds * (video ? frameRate : 50);
+		}
+	}
+
+	/**
+	 * Benchmark result
+	 */
+	public static class Result {
+		public Scenario scenario;
+		public int framesSent;
+		public int framesReceived;
+		public int duplicatedFrames;
+		public int packetsSent;
+		public int packetsRetransmitted;
+		public int packetsReceived;
+		public int packetsDropped;
+		public double packetsPerSecond;
+		public long cpuPerPacket = -1;
+		public long allocationRate = -1;
+		public long latencyP50;
+		public long latencyP90;
+		public long latencyP99;
+		public long latencyMax;
+		public int senderReportsSent;
+		public int senderReportsReceived;
+		public int receiverRtcpReceived;
+		public int receiverRtcpSent;
+		public int senderRtcpReceived;
+		public String senderPipeline;
+		public String receiverPipeline;
+
+		public double getDeliveryRatio() {
+			return (framesSent == 0) ? 0 : (double)framesReceived / framesSent;
+		}
+
+		public String toString() {
+			StringBuffer result = new StringBuffer();
+			result.append(scenario.name).append('\n');
+			result.append("  frames: sent=").append(framesSent)
+					.append(" received=").append(framesReceived)
+					.append(" duplicated=").append(duplicatedFrames)
+					.append(" delivery=").append(Math.round(getDeliveryRatio() * 1000) / 10.0).append("%\n");
+			result.append("  packets: sent=").append(packetsSent)
+					.append(" retransmitted=").append(packetsRetransmitted)
+					.append(" dropped=").append(packetsDropped)
+					.append(" received=").append(packetsReceived)
+					.append(" rate=").append(Math.round(packetsPerSecond)).append("/s\n");
+			result.append("  cpu=").append(cpuPerPacket).append("us/packet")
+					.append(" allocation=").append(allocationRate / 1024).append("KB/s\n");
+			result.append("  latency: p50=").append(latencyP50)
+					.append("us p90=").append(latencyP90)
+					.append("us p99=").append(latencyP99)
+					.append("us max=").append(latencyMax).append("us\n");
+			result.append("  rtcp: sender sent=").append(senderReportsSent)
+					.append(" received=").append(senderRtcpReceived)
+					.append(", receiver sent=").append(receiverRtcpSent)
+					.append(" received=").append(receiverRtcpReceived)
+					.append(" (SR ").append(senderReportsReceived).append(")\n");
+			result.append("  sender pipeline: ").append(senderPipeline).append('\n');
+			result.append("  receiver pipeline: ").append(receiverPipeline);
+			return result.toString();
+		}
+	}
+
+	/**
+	 * CPU time and allocated bytes of the process, the relay threads being
+	 * included
+	 */
+	private static class ProcessUsage {
+		private long cpuStart;
+
+		public void start() {
+			Debug.resetGlobalAllocSize();
+			Debug.startAllocCounting();
+			cpuStart = Process.getElapsedCpuTime();
+		}
+
+		/**
+		 * Returns the CPU time in microseconds and the allocated bytes since
+		 * the start
+		 */
+		public long[] stop() {
+			long cpu = (Process.getElapsedCpuTime() - cpuStart) * 1000;
+			Debug.stopAllocCounting();
+			return new long[] { cpu, Debug.getGlobalAllocSize() };
+		}
+	}
+
+	/**
+	 * Returns an even local port, the next one being free for RTCP
+	 */
+	private static int getFreePort(Random random) {
+		while (true) {
+			int port = 20000 + 2 * random.nextInt(20000);
+			try {
+				new DatagramSocket(port).close();
+				new DatagramSocket(port + 1).close();
+				return port;
+			} catch (Exception e) {
+				// Port in use
+			}
+		}
+	}
+
+	/**
+	 * Run a scenario
+	 *
+	 * @param scenario Scenario
+	 * @return Result
+	 * @throws Exception
+	 */
+	public static Result run(Scenario scenario) throws Exception {
+		NetworkFactory.loadFactory("com.orangelabs.rcs.platform.network.AndroidNetworkFactory");
+
+		Random random = new Random();
+		int senderPort = getFreePort(random);
+		int relayPort = getFreePort(random);
+		int receiverPort = getFreePort(random);
+		while (relayPort == senderPort) {
+			relayPort = getFreePort(random);
+		}
+		while (receiverPort == senderPort || receiverPort == relayPort) {
+			receiverPort = getFreePort(random);
+		}
+
+		// The RTP flow goes through the lossy relay, the SR as well. The
+		// receiver sends its RTCP reports directly to the sender.
+		LossyUdpRelay rtpRelay = new LossyUdpRelay(relayPort, receiverPort,
+				scenario.loss, scenario.reordering, 1234);
+		LossyUdpRelay rtcpRelay = new LossyUdpRelay(relayPort + 1, receiverPort + 1, 0, 0, 0);
+		rtpRelay.start();
+		rtcpRelay.start();
+
+		int framesNumber = scenario.getFramesNumber();
+		SyntheticMediaInput input;
+		MediaRtpSender sender;
+		MediaRtpReceiver receiver;
+		SyntheticMediaOutput output = new SyntheticMediaOutput(framesNumber);
+		RtpStreamListener listener = new RtpStreamListener() {
+			public void rtpStreamAborted() {
+			}
+		};
+		if (scenario.video) {
+			input = SyntheticMediaInput.createVideo(scenario.bitRate, scenario.frameRate,
+					framesNumber + FLUSH_FRAMES);
+			VideoRtpSender videoSender = new VideoRtpSender(new H264VideoFormat(), senderPort);
+			VideoRtpReceiver videoReceiver = new VideoRtpReceiver(receiverPort);
+			videoReceiver.setRtcpFeedback(scenario.nack, scenario.nack);
+			videoReceiver.prepareSession(LOOPBACK, senderPort, RtpUtils.RTP_DEFAULT_EXTENSION_ID,
+					output, new H264VideoFormat(), listener);
+			sender = videoSender;
+			receiver = videoReceiver;
+		} else {
+			input = SyntheticMediaInput.createAudio(framesNumber + FLUSH_FRAMES);
+			sender = new MediaRtpSender(new AmrWbAudioFormat(), senderPort);
+			receiver = new MediaRtpReceiver(receiverPort);
+			receiver.prepareSession(LOOPBACK, senderPort, output, new AmrWbAudioFormat(), listener);
+		}
+		sender.prepareSession(input, LOOPBACK, relayPort, listener);
+
+		ProcessUsage usage = new ProcessUsage();
+		usage.start();
+		long startTime = System.nanoTime();
+		receiver.startSession();
+		sender.startSession();
+
+		while (!input.isFinished()) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(DRAIN_DELAY);
+		long elapsed = System.nanoTime() - startTime;
+		long[] used = usage.stop();
+
+		// Collect the statistics before closing the streams
+		RtpOutputStream outputStream = sender.getOutputStream();
+		RtpInputStream inputStream = receiver.getInputStream();
+		RtpStatisticsTransmitter sent = outputStream.getRtpTransmitter().getStatistics();
+		RtpStatisticsReceiver received = inputStream.getRtpReceiver().getRtpReceptionStats();
+		RtcpStatisticsReceiver senderRtcp = outputStream.getRtcpReceiver().getRtcpReceptionStats();
+		RtcpStatisticsReceiver receiverRtcp = inputStream.getRtcpReceiver().getRtcpReceptionStats();
+
+		Result result = new Result();
+		result.scenario = scenario;
+		result.framesSent = framesNumber;
+		result.framesReceived = output.getReceivedNumber();
+		result.duplicatedFrames = output.getDuplicatedNumber();
+		result.packetsSent = sent.numPackets;
+		result.packetsRetransmitted = sent.numRetransmittedPackets;
+		result.packetsReceived = received.numPackets;
+		result.packetsDropped = rtpRelay.getDroppedNumber();
+		result.packetsPerSecond = sent.numPackets * 1e9 / elapsed;
+		if (used[0] >= 0 && sent.numPackets > 0) {
+			result.cpuPerPacket = used[0] / sent.numPackets;
+		}
+		if (used[1] >= 0) {
+			result.allocationRate = (long)(used[1] * 1e9 / elapsed);
+		}
+		result.latencyP50 = output.getLatencyPercentile(50);
+		result.latencyP90 = output.getLatencyPercentile(90);
+		result.latencyP99 = output.getLatencyPercentile(99);
+		result.latencyMax = output.getLatencyPercentile(100);
+		result.senderReportsSent = outputStream.getRtcpTransmitter().getStatistics().numPackets;
+		result.senderRtcpReceived = senderRtcp.numRtcpPkts;
+		result.receiverRtcpSent = inputStream.getRtcpTransmitter().getStatistics().numPackets;
+		result.receiverRtcpReceived = receiverRtcp.numRtcpPkts;
+		result.senderReportsReceived = receiverRtcp.numSrPkts;
+		result.senderPipeline = sender.getStatistics().toString();
+		result.receiverPipeline = receiver.getStatistics().toString();
+
+		sender.stopSession();
+		receiver.stopSession();
+		rtpRelay.close();
+		rtcpRelay.close();
+		return result;
+	}
+
+	public void testAudio() throws Exception {
+		Result result = run(new Scenario("AMR-WB", false));
+		Log.i(TAG, result.toString());
+		assertTrue(result.toString(), result.getDeliveryRatio() > 0.98);
+		assertTrue(result.toString(), result.latencyP50 < 200000);
+	}
+
+	public void testVideo() throws Exception {
+		Result result = run(new Scenario("H.264 500 kbps", true));
+		Log.i(TAG, result.toString());
+		assertTrue(result.toString(), result.getDeliveryRatio() > 0.98);
+		assertTrue(result.toString(), result.latencyP50 < 200000);
+	}
+
+	public void testVideoWithLossAndNack() throws Exception {
+		Scenario scenario = new Scenario("H.264 500 kbps, 3% loss, 1% reordering, NACK", true);
+		scenario.loss = 0.03;
+		scenario.reordering = 0.01;
+		scenario.nack = true;
+		Result result = run(scenario);
+		Log.i(TAG, result.toString());
+		assertTrue(result.toString(), result.packetsRetransmitted > 0);
+		assertTrue(result.toString(),
+				result.packetsRetransmitted <= result.packetsDropped * NackGenerator.MAX_NACK_RETRIES);
+		assertTrue(result.toString(), result.getDeliveryRatio() > 0.9);
+	}
+
+	public void testVideoWithReorderingAndNack() throws Exception {
+		Scenario scenario = new Scenario("H.264 500 kbps, 5% reordering, NACK", true);
+		scenario.reordering = 0.05;
+		scenario.nack = true;
+		Result result = run(scenario);
+		Log.i(TAG, result.toString());
+
+		// Packets received out of order within the reorder window aren't requested
+		assertEquals(result.toString(), 0, result.packetsRetransmitted);
+		assertTrue(result.toString(), result.getDeliveryRatio() > 0.98);
+	}
+
+	/**
+	 * Run the scenarios for a longer time
+	 *
+	 * @throws Exception
+	 */
+	public void testLongRuns() throws Exception {
+		int duration = LONG_RUN_DURATION;
+		if (duration <= 0) {
+			return;
+		}
+		double[] losses = { 0, 0.01, 0.05 };
+		for (int i = 0; i < losses.length; i++) {
+			Scenario audio = new Scenario("AMR-WB, loss " + losses[i], false);
+			audio.durationSeconds = duration;
+			audio.loss = losses[i];
+			Log.i(TAG, run(audio).toString());
+
+			for (int nack = 0; nack < 2; nack++) {
+				Scenario video = new Scenario("H.264 1 Mbps 30 fps, loss " + losses[i]
+						+ ((nack == 1) ? ", NACK" : ""), true);
+				video.durationSeconds = duration;
+				video.bitRate = 1000000;
+				video.frameRate = 30;
+				video.loss = losses[i];
+				video.reordering = losses[i] / 2;
+				video.nack = (nack == 1);
+				Log.i(TAG, run(video).toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp.benchmark;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.CameraOptions;
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.Orientation;
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
+import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaInput;
+import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaSample;
+import com.orangelabs.rcs.core.ims.protocol.rtp.media.VideoSample;
+
+/**
+ * Media player generating frames at a constant rate. Each frame carries its
+ * capture time and number, read back by {@link SyntheticMediaOutput}.
+ */
+public class SyntheticMediaInput implements MediaInput {
+	/**
+	 * Frame header: NAL header, capture time and frame number
+	 */
+	public static final int HEADER_SIZE = 13;
+
+	/**
+	 * AMR-WB frame at 23.85 kbps
+	 */
+	public static final int AMR_WB_FRAME_SIZE = 61;
+
+	private static final byte NAL_IDR = 0x65;
+
+	private static final byte NAL_NON_IDR = 0x41;
+
+	private boolean video;
+
+	private int frameSize;
+
+	private int frameRate;
+
+	private int clockRate;
+
+	private int framesNumber;
+
+	private int frameNumber = 0;
+
+	private long startTime = 0;
+
+	private boolean closed = false;
+
+	private VideoOrientation orientation = new VideoOrientation(CameraOptions.BACK, Orientation.NONE);
+
+	private SyntheticMediaInput(boolean video, int frameSize, int frameRate, int clockRate, int framesNumber) {
+		this.video = video;
+		this.frameSize = Math.max(frameSize, HEADER_SIZE);
+		this.frameRate = frameRate;
+		this.clockRate = clockRate;
+		this.framesNumber = framesNumber;
+	}
+
+	/**
+	 * Create an AMR-WB player, one frame every 20 ms
+	 *
+	 * @param framesNumber Number of frames
+	 * @return Player
+	 */
+	public static SyntheticMediaInput createAudio(int framesNumber) {
+		return new SyntheticMediaInput(false, AMR_WB_FRAME_SIZE, 50, 16000, framesNumber);
+	}
+
+	/**
+	 * Create an H.264 player, with a key frame twice bigger every second. The
+	 * depacketizer drops the frames bigger than 8 KB.
+	 *
+	 * @param bitRate Bit rate in bits per second
+	 * @param frameRate Frame rate
+	 * @param framesNumber Number of frames
+	 * @return Player
+	 */
+	public static SyntheticMediaInput createVideo(int bitRate, int frameRate, int framesNumber) {
+		int frameSize = bitRate / 8 / (frameRate + 1);
+		return new SyntheticMediaInput(true, frameSize, frameRate, 90000, framesNumber);
+	}
+
+	public void open() {
+		startTime = System.currentTimeMillis();
+	}
+
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Is the last frame generated
+	 *
+	 * @return Boolean
+	 */
+	public synchronized boolean isFinished() {
+		return frameNumber >= framesNumber;
+	}
+
+	/**
+	 * Returns the number of frames generated
+	 *
+	 * @return Number of frames
+	 */
+	public synchronized int getFramesNumber() {
+		return frameNumber;
+	}
+
+	public MediaSample readSample() {
+		synchronized(this) {
+			// Keep the processor alive until the session is stopped
+			while (frameNumber >= framesNumber && !closed) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					return null;
+				}
+			}
+			if (closed) {
+				return null;
+			}
+		}
+
+		long delay = startTime + (frameNumber * 1000L / frameRate) - System.currentTimeMillis();
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+
+		boolean keyFrame = video && (frameNumber % frameRate == 0);
+		byte[] data = new byte[keyFrame ? frameSize * 2 : frameSize];
+		data[0] = keyFrame ? NAL_IDR : NAL_NON_IDR;
+		long now = System.nanoTime();
+		for (int i = 0; i < 8; i++) {
+			data[1 + i] = (byte)(now >> (56 - 8 * i));
+		}
+		int number = frameNumber;
+		for (int i = 0; i < 4; i++) {
+			data[9 + i] = (byte)(number >> (24 - 8 * i));
+		}
+		long timestamp = (long)frameNumber * clockRate / frameRate;
+		synchronized(this) {
+			frameNumber++;
+		}
+
+		if (video) {
+			return new VideoSample(data, timestamp, orientation);
+		} else {
+			return new MediaSample(data, timestamp);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.orangelabs.rcs.core.ims.protocol.rtp.benchmark;
+
+import java.util.Arrays;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaOutput;
+import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaSample;
+
+/**
+ * Media renderer measuring the end-to-end latency of the frames generated
+ * by {@link SyntheticMediaInput}
+ */
+public class SyntheticMediaOutput implements MediaOutput {
+	private boolean[] received;
+
+	private long[] latencies;
+
+	private int receivedNumber = 0;
+
+	private int duplicatedNumber = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param framesNumber Number of frames sent
+	 */
+	public SyntheticMediaOutput(int framesNumber) {
+		received = new boolean[framesNumber];
+		latencies = new long[framesNumber];
+	}
+
+	public void open() {
+	}
+
+	public void close() {
+	}
+
+	public synchronized void writeSample(MediaSample sample) {
+		long now = System.nanoTime();
+		byte[] data = sample.getData();
+		if (data == null || data.length < SyntheticMediaInput.HEADER_SIZE) {
+			return;
+		}
+		long captureTime = 0;
+		for (int i = 0; i < 8; i++) {
+			captureTime = (captureTime << 8) | (data[1 + i] & 0xff);
+		}
+		int number = 0;
+		for (int i = 0; i < 4; i++) {
+			number = (number << 8) | (data[9 + i] & 0xff);
+		}
+		if (number < 0 || number >= received.length) {
+			return;
+		}
+		if (received[number]) {
+			duplicatedNumber++;
+			return;
+		}
+		received[number] = true;
+		latencies[receivedNumber++] = now - captureTime;
+	}
+
+	/**
+	 * Returns the number of distinct frames received
+	 *
+	 * @return Number of frames
+	 */
+	public synchronized int getReceivedNumber() {
+		return receivedNumber;
+	}
+
+	/**
+	 * Returns the number of frames received more than once
+	 *
+	 * @return Number of frames
+	 */
+	public synchronized int getDuplicatedNumber() {
+		return duplicatedNumber;
+	}
+
+	/**
+	 * Returns a latency percentile
+	 *
+	 * @param percentile Percentile, from 0 to 100
+	 * @return Latency in microseconds or -1 if no frame received
+	 */
+	public synchronized long getLatencyPercentile(double percentile) {
+		if (receivedNumber == 0) {
+			return -1;
+		}
+		long[] sorted = Arrays.copyOf(latencies, receivedNumber);
+		Arrays.sort(sorted);
+		int index = (int)Math.ceil(percentile / 100 * receivedNumber) - 1;
+		return sorted[Math.max(0, Math.min(index, receivedNumber - 1))] / 1000;
+	}
+}
@@ -0,0 +1,135 @@
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Processing of an address book change with synthetic address books: list
+ * based de-duplication of all the numbers as done before, compared to the
+ * hash based de-duplication of the rows modified since the last scan
+ */
+public class AddressBookTrackerBenchmark extends TestCase {
+	private static final String TAG = "AddressBookTrackerBenchmark";
+
+	/**
+	 * Percentage of the rows modified between two scans
+	 */
+	private static final int MODIFIED_PERCENT = 1;
+
+	private long[] versions;
+
+	private String[] numbers;
+
+	private void createAddressBook(int size) {
+		versions = new long[size];
+		numbers = new String[size];
+		for (int i = 0; i < size; i++) {
+			versions[i] = 1;
+			// One number out of twenty is shared by two raw contacts
+			int n = (i % 20 == 19) ? i - 1 : i;
+			numbers[i] = "+336" + String.format("%08d", n);
+		}
+	}
+
+	private List<AddressBookTracker.PhoneRow> scan(AddressBookTracker tracker) {
+		tracker.beginScan();
+		for (int i = 0; i < numbers.length; i++) {
+			tracker.addPhone(i, versions[i], i, numbers[i], false);
+		}
+		return tracker.endScan();
+	}
+
+	/**
+	 * De-duplication of all the numbers with lists, as done before
+	 */
+	private int processWithLists() {
+		ArrayList<String> toBeTreated = new ArrayList<String>();
+		ArrayList<String> alreadyTreated = new ArrayList<String>();
+		for (int i = 0; i < numbers.length; i++) {
+			if (!alreadyTreated.contains(numbers[i])) {
+				alreadyTreated.add(numbers[i]);
+				toBeTreated.add(numbers[i]);
+			} else {
+				toBeTreated.remove(numbers[i]);
+			}
+		}
+		return toBeTreated.size();
+	}
+
+	/**
+	 * De-duplication of the rows modified since the last scan with a hash set
+	 */
+	private int processWithTracker(AddressBookTracker tracker) {
+		List<AddressBookTracker.PhoneRow> rows = scan(tracker);
+		HashSet<String> toBeTreated = new HashSet<String>();
+		for (int i = 0; i < rows.size(); i++) {
+			toBeTreated.add(rows.get(i).number);
+		}
+		return rows.size();
+	}
+
+	private void run(int size) {
+		createAddressBook(size);
+		AddressBookTracker tracker = new AddressBookTracker();
+
+		long start = System.nanoTime();
+		processWithLists();
+		long lists = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		assertEquals(size, processWithTracker(tracker));
+		long full = (System.nanoTime() - start) / 1000000;
+
+		// No change
+		assertEquals(0, scan(tracker).size());
+
+		// Modify some rows
+		int modified = size * MODIFIED_PERCENT / 100;
+		for (int i = 0; i < modified; i++) {
+			versions[i * (size / modified)]++;
+		}
+		start = System.nanoTime();
+		assertEquals(modified, processWithTracker(tracker));
+		long incremental = (System.nanoTime() - start) / 1000000;
+
+		Log.i(TAG, size + " numbers: " + lists + " ms with lists, " + full + " ms for the first scan, "
+				+ incremental + " ms after " + MODIFIED_PERCENT + "% of changes");
+	}
+
+	public void testSimOnlyNumbers() {
+		AddressBookTracker tracker = new AddressBookTracker();
+		tracker.beginScan();
+		tracker.addPhone(1, 1, 1, "+33600000001", true);
+		tracker.addPhone(2, 1, 2, "+33600000002", true);
+		tracker.addPhone(3, 1, 3, "+33600000002", false);
+		assertEquals(3, tracker.endScan().size());
+		assertFalse(tracker.hasNonSimContact("+33600000001"));
+		assertTrue(tracker.hasNonSimContact("+33600000002"));
+
+		// A removed row is no more tracked
+		tracker.beginScan();
+		tracker.addPhone(1, 1, 1, "+33600000001", true);
+		assertEquals(0, tracker.endScan().size());
+		tracker.beginScan();
+		tracker.addPhone(1, 1, 1, "+33600000001", true);
+		tracker.addPhone(2, 1, 2, "+33600000002", true);
+		assertEquals(1, tracker.endScan().size());
+	}
+
+	public void test1k() {
+		run(1000);
+	}
+
+	public void test10k() {
+		run(10000);
+	}
+
+	public void test50k() {
+		run(50000);
+	}
+}
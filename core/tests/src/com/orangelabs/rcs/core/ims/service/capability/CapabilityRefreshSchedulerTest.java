@@ -0,0 +1,83 @@
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Capability refresh scheduler, with a simulated clock
+ */
+public class CapabilityRefreshSchedulerTest extends TestCase {
+	private static final long EXPIRY = 3600000L;
+
+	private static final double RATE = 2.0;
+
+	private static final int BURST = 10;
+
+	private CapabilityRefreshScheduler scheduler;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		scheduler = new CapabilityRefreshScheduler(EXPIRY, RATE, BURST);
+	}
+
+	public void testOnlyExpiredContacts() {
+		long now = 10 * EXPIRY;
+		scheduler.schedule("+33600000001", now - EXPIRY - 1000, false, now);
+		scheduler.schedule("+33600000002", now - 1000, true, now);
+		scheduler.schedule("+33600000003", 0L, false, now);
+
+		List<CapabilityRefreshScheduler.Request> requests = scheduler.getDueRequests(now);
+		assertEquals(2, requests.size());
+		assertEquals(0, scheduler.getDueRequests(now + 1000).size());
+
+		// The second contact expires one period after its capabilities
+		assertEquals(now - 1000 + EXPIRY, scheduler.getNextRequestTime(now + 1000));
+		requests = scheduler.getDueRequests(now - 1000 + EXPIRY);
+		assertEquals(1, requests.size());
+		assertEquals("+33600000002", requests.get(0).contact);
+		assertTrue(requests.get(0).presence);
+	}
+
+	public void testRateLimit() {
+		long now = 10 * EXPIRY;
+		for (int i = 0; i < 5000; i++) {
+			scheduler.schedule("+336" + String.format("%08d", i), now - EXPIRY, false, now);
+		}
+
+		// A burst, then the sustained rate
+		assertEquals(BURST, scheduler.getDueRequests(now).size());
+		int sent = BURST;
+		for (long t = now + 100; t <= now + 60000; t += 100) {
+			sent += scheduler.getDueRequests(t).size();
+		}
+		assertEquals(BURST + (int)(RATE * 60), sent);
+		assertEquals(sent, scheduler.getRequestsNumber());
+		assertEquals(60000, scheduler.getMaxStaleness());
+
+		// Refreshed contacts are not requested again before their expiry
+		assertEquals(5000, scheduler.size());
+		assertTrue(scheduler.getNextRequestTime(now + 60000) <= now + 60000 + 1000);
+	}
+
+	public void testRecentActivityFirst() {
+		long now = 10 * EXPIRY;
+		for (int i = 0; i < 100; i++) {
+			scheduler.schedule("+336" + String.format("%08d", i), now - EXPIRY - i, false, now);
+		}
+		scheduler.notifyActivity("+33600000050", now);
+		List<CapabilityRefreshScheduler.Request> requests = scheduler.getDueRequests(now);
+		assertEquals("+33600000050", requests.get(0).contact);
+
+		// Removed contacts are no more requested
+		scheduler.remove("+33600000000");
+		for (long t = now; t <= now + 60000; t += 1000) {
+			requests = scheduler.getDueRequests(t);
+			for (int i = 0; i < requests.size(); i++) {
+				assertFalse("+33600000000".equals(requests.get(i).contact));
+			}
+		}
+		assertEquals(99, scheduler.getRequestsNumber());
+	}
+}
@@ -0,0 +1,232 @@
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpProtocolParams;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Uploads to a local keep-alive server through the shared transport:
+ * connections opened for consecutive and concurrent uploads compared to a
+ * client created per upload, and eviction of the idle connections
+ */
+public class HttpTransportBenchmark extends TestCase {
+	private static final String TAG = "HttpTransportBenchmark";
+
+	private static final int UPLOADS = 100;
+
+	private static final int BODY_SIZE = 16 * 1024;
+
+	private UploadServer server;
+
+	/**
+	 * Server keeping its connections alive, answering to an empty POST with
+	 * an authentication challenge and to a POST with a body with a 200 OK
+	 */
+	private static class UploadServer extends Thread {
+		private ServerSocket socket;
+
+		private AtomicInteger connections = new AtomicInteger();
+
+		UploadServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			start();
+		}
+
+		String getUrl() {
+			return "http://127.0.0.1:" + socket.getLocalPort() + "/upload";
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket client = socket.accept();
+					connections.incrementAndGet();
+					new Thread() {
+						public void run() {
+							serve(client);
+						}
+					}.start();
+				}
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+
+		private void serve(Socket client) {
+			try {
+				InputStream in = new BufferedInputStream(client.getInputStream());
+				OutputStream out = client.getOutputStream();
+				String line;
+				while ((line = readLine(in)) != null) {
+					long length = 0;
+					while ((line = readLine(in)) != null && (line.length() > 0)) {
+						if (line.toLowerCase().startsWith("content-length:")) {
+							length = Long.parseLong(line.substring(15).trim());
+						}
+					}
+					byte[] buffer = new byte[8192];
+					for (long received = 0; received < length;) {
+						int read = in.read(buffer, 0, (int)Math.min(buffer.length, length - received));
+						if (read == -1) {
+							return;
+						}
+						received += read;
+					}
+					if (length == 0) {
+						out.write(("HTTP/1.1 401 Unauthorized\r\nWWW-Authenticate: Digest realm=\"test\","
+								+ " nonce=\"1\"\r\nContent-Length: 0\r\n\r\n").getBytes());
+					} else {
+						out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes());
+					}
+					out.flush();
+				}
+			} catch (IOException e) {
+				// Connection closed by the client
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		private static String readLine(InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int c;
+			while ((c = in.read()) != '\n') {
+				if (c == -1) {
+					return null;
+				}
+				if (c != '\r') {
+					line.write(c);
+				}
+			}
+			return line.toString();
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		server = new UploadServer();
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Send the empty POST of the authentication then the POST of the file,
+	 * like an upload of a file transfer
+	 */
+	private void upload(HttpClient client) throws Exception {
+		HttpPost post = new HttpPost(server.getUrl());
+		post.setEntity(new ByteArrayEntity(new byte[0]));
+		HttpResponse response = client.execute(post);
+		assertEquals(401, response.getStatusLine().getStatusCode());
+		response.getEntity().consumeContent();
+
+		post = new HttpPost(server.getUrl());
+		post.setEntity(new ByteArrayEntity(new byte[BODY_SIZE]));
+		response = client.execute(post);
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		response.getEntity().consumeContent();
+	}
+
+	public void testConsecutiveUploads() throws Exception {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < UPLOADS; i++) {
+			DefaultHttpClient client = new DefaultHttpClient();
+			HttpProtocolParams.setUseExpectContinue(client.getParams(), false);
+			upload(client);
+			client.getConnectionManager().shutdown();
+		}
+		long single = System.currentTimeMillis() - start;
+		int singleConnections = server.connections.getAndSet(0);
+
+		HttpTransport transport = new HttpTransport();
+		start = System.currentTimeMillis();
+		for (int i = 0; i < UPLOADS; i++) {
+			upload(transport.getHttpClient());
+		}
+		long pooled = System.currentTimeMillis() - start;
+
+		Log.i(TAG, UPLOADS + " uploads: " + single + " ms and " + singleConnections
+				+ " connections with a client per upload, " + pooled + " ms and " + server.connections.get()
+				+ " connections with the pool");
+		assertEquals(UPLOADS, singleConnections);
+		assertEquals(1, server.connections.get());
+		assertEquals(1, transport.getConnections());
+		assertEquals(2 * UPLOADS, transport.getRequests());
+		assertEquals(1, transport.getPooledConnections());
+	}
+
+	public void testConcurrentUploads() throws Exception {
+		final HttpTransport transport = new HttpTransport();
+		final Vector<Exception> errors = new Vector<Exception>();
+		Vector<Thread> threads = new Vector<Thread>();
+		for (int i = 0; i < 2 * HttpTransport.MAX_CONNECTIONS_PER_HOST; i++) {
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < UPLOADS / 10; i++) {
+							upload(transport.getHttpClient());
+						}
+					} catch (Exception e) {
+						errors.addElement(e);
+					}
+				}
+			};
+			threads.addElement(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(errors.isEmpty());
+
+		// The uploads wait for a connection of the pool
+		Log.i(TAG, transport.getRequests() + " requests from " + threads.size() + " threads over "
+				+ transport.getConnections() + " connections");
+		assertTrue(transport.getConnections() <= HttpTransport.MAX_CONNECTIONS_PER_HOST);
+		assertTrue(transport.getPooledConnections() <= HttpTransport.MAX_CONNECTIONS_PER_HOST);
+	}
+
+	public void testIdleConnections() throws Exception {
+		HttpTransport transport = new HttpTransport();
+		upload(transport.getHttpClient());
+		transport.closeIdleConnections(HttpTransport.IDLE_TIMEOUT);
+		assertEquals(1, transport.getPooledConnections());
+
+		Thread.sleep(10);
+		transport.closeIdleConnections(0);
+		assertEquals(0, transport.getPooledConnections());
+		upload(transport.getHttpClient());
+		assertEquals(2, transport.getConnections());
+	}
+}
@@ -0,0 +1,292 @@
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Download of byte ranges over several connections from a local server
+ * whose connections are limited by a round trip time: throughput compared
+ * to a single connection, resume of the saved ranges and server ignoring
+ * the ranges
+ */
+public class RangedDownloadBenchmark extends AndroidTestCase {
+	private static final String TAG = "RangedDownloadBenchmark";
+
+	private static final int SIZE = 4 * 1024 * 1024 + 123;
+
+	/**
+	 * Round trip time of the simulated link
+	 */
+	private static final int RTT = 50;
+
+	/**
+	 * Bytes sent per round trip by a connection, like a TCP window
+	 */
+	private static final int WINDOW = 64 * 1024;
+
+	private byte[] content;
+
+	private File file;
+
+	/**
+	 * Server of the content, answering to the byte ranges after a round
+	 * trip and sending a window per round trip
+	 */
+	private class RangeServer extends Thread {
+		private ServerSocket socket;
+
+		private boolean rangesSupported = true;
+
+		private AtomicLong sent = new AtomicLong();
+
+		RangeServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			start();
+		}
+
+		String getUrl() {
+			return "http://127.0.0.1:" + socket.getLocalPort() + "/file";
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket client = socket.accept();
+					new Thread() {
+						public void run() {
+							serve(client);
+						}
+					}.start();
+				}
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+
+		private void serve(Socket client) {
+			try {
+				InputStream in = client.getInputStream();
+				long start = 0;
+				long end = content.length - 1;
+				boolean ranged = false;
+				String line;
+				while ((line = readLine(in)).length() > 0) {
+					if (rangesSupported && line.toLowerCase().startsWith("range: bytes=")) {
+						String[] range = line.substring(13).split("-");
+						start = Long.parseLong(range[0]);
+						end = Math.min(end, Long.parseLong(range[1]));
+						ranged = true;
+					}
+				}
+				Thread.sleep(RTT);
+
+				OutputStream out = client.getOutputStream();
+				String headers = (ranged ? "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes " + start + "-"
+						+ end + "/" + content.length : "HTTP/1.1 200 OK") + "\r\nContent-Length: "
+						+ (end - start + 1) + "\r\nConnection: close\r\n\r\n";
+				out.write(headers.getBytes());
+				for (long position = start; position <= end; position += WINDOW) {
+					int length = (int)Math.min(WINDOW, end - position + 1);
+					out.write(content, (int)position, length);
+					out.flush();
+					sent.addAndGet(length);
+					Thread.sleep(RTT);
+				}
+			} catch (Exception e) {
+				// Connection closed by the client
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		private String readLine(InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int c;
+			while ((c = in.read()) != -1 && c != '\n') {
+				if (c != '\r') {
+					line.write(c);
+				}
+			}
+			return line.toString();
+		}
+	}
+
+	/**
+	 * Listener cancelling a download after a number of bytes
+	 */
+	private static class ProgressRecorder implements HttpTransferEventListener {
+		private long last = 0;
+
+		private RangedDownload cancelledDownload;
+
+		private long cancelSize = Long.MAX_VALUE;
+
+		public void httpTransferStarted() {
+		}
+
+		public void httpTransferPaused() {
+		}
+
+		public void httpTransferResumed() {
+		}
+
+		public void httpTransferProgress(long currentSize, long totalSize) {
+			assertTrue(currentSize > last);
+			assertEquals(SIZE, totalSize);
+			last = currentSize;
+			if ((cancelledDownload != null) && (currentSize >= cancelSize)) {
+				cancelledDownload.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Download keeping the last saved ranges
+	 */
+	private class SavingDownload extends RangedDownload {
+		private String saved;
+
+		SavingDownload(String url, Vector<Range> ranges) {
+			super(url, file, SIZE, ranges);
+		}
+
+		protected void saveRanges(String ranges) {
+			saved = ranges;
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		content = new byte[SIZE];
+		new Random(1).nextBytes(content);
+		file = new File(mContext.getCacheDir(), "download.bin");
+		file.delete();
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+
+		super.tearDown();
+	}
+
+	private void checkFile() throws IOException {
+		assertEquals(SIZE, file.length());
+		byte[] data = new byte[SIZE];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < SIZE) {
+				read += in.read(data, read, SIZE - read);
+			}
+		} finally {
+			in.close();
+		}
+		assertTrue(Arrays.equals(content, data));
+	}
+
+	private long download(RangeServer server, int connections) throws IOException {
+		file.delete();
+		ProgressRecorder recorder = new ProgressRecorder();
+		SavingDownload download = new SavingDownload(server.getUrl(), RangedDownload.split(SIZE, connections));
+		long start = System.currentTimeMillis();
+		assertEquals(RangedDownload.COMPLETED, download.download(new TransferProgress(recorder, 0, SIZE)));
+		long duration = System.currentTimeMillis() - start;
+		assertEquals(SIZE, recorder.last);
+		checkFile();
+		return duration;
+	}
+
+	public void testRanges() {
+		Vector<RangedDownload.Range> ranges = RangedDownload.split(SIZE, 3);
+		assertEquals(3, ranges.size());
+		assertEquals(0, ranges.get(0).start);
+		assertEquals(SIZE - 1, ranges.get(2).end);
+		assertEquals(ranges.get(0).end + 1, ranges.get(1).start);
+
+		// Small files are not split
+		assertEquals(1, RangedDownload.split(RangedDownload.MIN_RANGE_SIZE, 4).size());
+
+		String value = RangedDownload.format(ranges);
+		assertEquals(value, RangedDownload.format(RangedDownload.parse(value, SIZE)));
+		assertNull(RangedDownload.parse(value, SIZE + 1));
+		assertNull(RangedDownload.parse("0-10/12", 11));
+		assertNull(RangedDownload.parse("garbage", SIZE));
+	}
+
+	public void testParallelDownload() throws Exception {
+		RangeServer server = new RangeServer();
+		try {
+			long single = download(server, 1);
+			long parallel = download(server, 4);
+			Log.i(TAG, SIZE + " bytes with a " + RTT + " ms round trip: " + single + " ms over 1 connection, "
+					+ parallel + " ms over 4 connections");
+			assertTrue(parallel < single);
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testResume() throws Exception {
+		RangeServer server = new RangeServer();
+		try {
+			ProgressRecorder recorder = new ProgressRecorder();
+			SavingDownload download = new SavingDownload(server.getUrl(), RangedDownload.split(SIZE, 4));
+			recorder.cancelledDownload = download;
+			recorder.cancelSize = SIZE / 2;
+			assertEquals(RangedDownload.CANCELLED, download.download(new TransferProgress(recorder, 0, SIZE)));
+			long received = download.getReceived();
+			assertTrue(received < SIZE);
+
+			// Ranges saved when the download stops
+			Vector<RangedDownload.Range> ranges = RangedDownload.parse(download.saved, SIZE);
+			assertEquals(4, ranges.size());
+			download = new SavingDownload(server.getUrl(), ranges);
+			assertEquals(received, download.getReceived());
+			recorder = new ProgressRecorder();
+			assertEquals(RangedDownload.COMPLETED, download.download(new TransferProgress(recorder, received, SIZE)));
+			assertEquals(SIZE, recorder.last);
+			checkFile();
+
+			// Only the missing bytes are downloaded again, give or take the bytes in flight
+			Log.i(TAG, server.sent.get() + " bytes sent for a content of " + SIZE + " bytes");
+			assertTrue(server.sent.get() < SIZE + 4 * 2 * WINDOW);
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testRangesNotSupported() throws Exception {
+		RangeServer server = new RangeServer();
+		server.rangesSupported = false;
+		try {
+			SavingDownload download = new SavingDownload(server.getUrl(), RangedDownload.split(SIZE, 4));
+			assertEquals(RangedDownload.NOT_SUPPORTED, download.download(new TransferProgress(
+					new ProgressRecorder(), 0, SIZE)));
+		} finally {
+			server.close();
+		}
+	}
+}
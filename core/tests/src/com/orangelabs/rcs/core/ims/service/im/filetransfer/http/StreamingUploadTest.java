@@ -0,0 +1,400 @@
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.orangelabs.rcs.core.content.FileContent;
+import com.orangelabs.rcs.platform.AndroidFactory;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+
+/**
+ * Upload of a file by the upload manager over the shared transport to a
+ * local stand-in of the content server: announced length, received bytes,
+ * heap used by the upload and number of progress notifications
+ */
+public class StreamingUploadTest extends AndroidTestCase {
+	private static final String TAG = "StreamingUploadTest";
+
+	private static final int FILE_SIZE = 32 * 1024 * 1024;
+
+	private static final String DOWNLOAD_INFO = "<file-info type=\"file\"/>";
+
+	private File file;
+
+	private UploadServer server;
+
+	/**
+	 * Request body received by the server
+	 */
+	private static class Body {
+		private String method;
+
+		private long contentLength;
+
+		private boolean chunked = false;
+
+		private long received = 0;
+
+		private long fileLength;
+
+		private CRC32 crc = new CRC32();
+	}
+
+	/**
+	 * Server keeping its connections alive, answering to an empty POST with
+	 * an authentication challenge, to the info requests with the uploaded
+	 * range or the file info and to a request with a body with a 200 OK
+	 */
+	private static class UploadServer extends Thread {
+		private ServerSocket socket;
+
+		private long uploaded = 0;
+
+		private Body body;
+
+		UploadServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			start();
+		}
+
+		String getUrl() {
+			return "http://127.0.0.1:" + socket.getLocalPort() + "/upload";
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		/**
+		 * Returns the last body received, complete or not
+		 */
+		synchronized Body waitBody() throws InterruptedException {
+			long end = System.currentTimeMillis() + 10000;
+			while ((body == null) && (System.currentTimeMillis() < end)) {
+				wait(end - System.currentTimeMillis());
+			}
+			Body result = body;
+			body = null;
+			return result;
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket client = socket.accept();
+					new Thread() {
+						public void run() {
+							serve(client);
+						}
+					}.start();
+				}
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+
+		private void serve(Socket client) {
+			try {
+				InputStream in = new BufferedInputStream(client.getInputStream());
+				OutputStream out = client.getOutputStream();
+				String request;
+				while ((request = readLine(in, null)) != null) {
+					Body received = new Body();
+					received.method = request.substring(0, request.indexOf(' '));
+					String line;
+					while ((line = readLine(in, null)) != null && (line.length() > 0)) {
+						if (line.toLowerCase().startsWith("content-length:")) {
+							received.contentLength = Long.parseLong(line.substring(15).trim());
+						} else if (line.toLowerCase().startsWith("transfer-encoding:")) {
+							received.chunked = true;
+						}
+					}
+					if (received.contentLength == 0) {
+						if (request.contains("get_upload_info")) {
+							respond(out, "<file-resume-info><file-range start=\"0\" end=\"" + (uploaded - 1)
+									+ "\"/><data url=\"" + getUrl() + "/file\"/></file-resume-info>");
+						} else if (request.contains("get_download_info")) {
+							respond(out, DOWNLOAD_INFO);
+						} else {
+							out.write(("HTTP/1.1 401 Unauthorized\r\nWWW-Authenticate: Digest realm=\"test\","
+									+ " nonce=\"1\"\r\nContent-Length: 0\r\n\r\n").getBytes());
+						}
+						out.flush();
+						continue;
+					}
+
+					boolean complete = receive(in, received);
+					synchronized (this) {
+						body = received;
+						notifyAll();
+					}
+					if (!complete) {
+						return;
+					}
+					respond(out, "OK");
+				}
+			} catch (IOException e) {
+				// Connection closed by the client
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		/**
+		 * Read a body, computing the CRC of the file part of a multipart POST
+		 * or of the whole body of a PUT
+		 */
+		private static boolean receive(InputStream in, Body body) throws IOException {
+			body.fileLength = body.contentLength;
+			if (body.method.equals("POST")) {
+				// Skip the parts up to the file one
+				boolean filePart = false;
+				String line;
+				while ((line = readLine(in, body)) != null) {
+					if (line.startsWith("Content-Disposition:")) {
+						filePart = line.contains("name=\"File\"");
+					} else if (filePart && line.startsWith("Content-Length:")) {
+						body.fileLength = Long.parseLong(line.substring(15).trim());
+					} else if (filePart && (line.length() == 0)) {
+						break;
+					}
+				}
+				if (line == null) {
+					return false;
+				}
+			}
+			byte[] buffer = new byte[8192];
+			for (long file = 0; body.received < body.contentLength;) {
+				int read = in.read(buffer, 0, (int)Math.min(buffer.length, body.contentLength - body.received));
+				if (read == -1) {
+					return false;
+				}
+				int fileBytes = (int)Math.max(0, Math.min(read, body.fileLength - file));
+				body.crc.update(buffer, 0, fileBytes);
+				file += fileBytes;
+				body.received += read;
+			}
+			return true;
+		}
+
+		private static void respond(OutputStream out, String content) throws IOException {
+			out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + content.length() + "\r\n\r\n" + content).getBytes());
+			out.flush();
+		}
+
+		private static String readLine(InputStream in, Body body) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int c;
+			while ((c = in.read()) != '\n') {
+				if (c == -1) {
+					return null;
+				}
+				if (body != null) {
+					body.received++;
+				}
+				if (c != '\r') {
+					line.write(c);
+				}
+			}
+			if (body != null) {
+				body.received++;
+			}
+			return line.toString();
+		}
+	}
+
+	/**
+	 * Listener sampling the heap at each notification
+	 */
+	private static class ProgressRecorder implements HttpUploadTransferEventListener {
+		private Runtime runtime = Runtime.getRuntime();
+
+		private long baseHeap;
+
+		private long maxHeap = 0;
+
+		private int notifications = 0;
+
+		private long first = -1;
+
+		private long last = -1;
+
+		private boolean started = false;
+
+		private HttpUploadManager cancelledManager;
+
+		private long cancelSize;
+
+		ProgressRecorder() {
+			System.gc();
+			baseHeap = runtime.totalMemory() - runtime.freeMemory();
+		}
+
+		public void httpTransferStarted() {
+		}
+
+		public void httpTransferPaused() {
+		}
+
+		public void httpTransferResumed() {
+		}
+
+		public void uploadStarted() {
+			started = true;
+		}
+
+		public void httpTransferProgress(long currentSize, long totalSize) {
+			assertTrue(currentSize > last);
+			if (first == -1) {
+				first = currentSize;
+			}
+			last = currentSize;
+			notifications++;
+			maxHeap = Math.max(maxHeap, runtime.totalMemory() - runtime.freeMemory() - baseHeap);
+			if ((cancelledManager != null) && (currentSize >= cancelSize)) {
+				cancelledManager.interrupt();
+			}
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		AndroidFactory.setApplicationContext(mContext);
+		RcsSettings.createInstance(mContext);
+
+		// The transport is shared by the transfers, it is not part of the
+		// heap used by an upload
+		HttpTransport.getInstance();
+
+		file = new File(mContext.getCacheDir(), "upload.bin");
+		Random random = new Random(1);
+		byte[] data = new byte[64 * 1024];
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			for (int i = 0; i < FILE_SIZE / data.length; i++) {
+				random.nextBytes(data);
+				out.write(data);
+			}
+		} finally {
+			out.close();
+		}
+
+		server = new UploadServer();
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		file.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Create an upload manager sending the file to the local server
+	 */
+	private HttpUploadManager createUploadManager(ProgressRecorder recorder) {
+		return new HttpUploadManager(new FileContent(file.getPath(), FILE_SIZE), null, recorder) {
+			public String getHttpServerAddr() {
+				return server.getUrl();
+			}
+
+			public String getHttpServerLogin() {
+				return "user";
+			}
+
+			public String getHttpServerPwd() {
+				return "password";
+			}
+		};
+	}
+
+	private long getCrc(long offset) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			assertEquals(offset, in.skip(offset));
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	public void testStreamingUpload() throws Exception {
+		ProgressRecorder recorder = new ProgressRecorder();
+		HttpUploadManager manager = createUploadManager(recorder);
+		long start = System.currentTimeMillis();
+		assertEquals("OK", new String(manager.uploadFile()));
+		long duration = System.currentTimeMillis() - start;
+		Body body = server.waitBody();
+
+		assertEquals("POST", body.method);
+		assertFalse(body.chunked);
+		assertEquals(body.contentLength, body.received);
+		assertEquals(FILE_SIZE, body.fileLength);
+		assertEquals(getCrc(0), body.crc.getValue());
+		assertTrue(recorder.started);
+
+		// Progress throttled to a step of the size or a period
+		assertEquals(FILE_SIZE, recorder.last);
+		assertTrue(recorder.notifications <= TransferProgress.PROGRESS_STEPS + 1 + duration
+				/ TransferProgress.PROGRESS_PERIOD);
+
+		Log.i(TAG, FILE_SIZE + " bytes sent in " + duration + " ms, " + recorder.notifications
+				+ " progress notifications, heap growth " + recorder.maxHeap / 1024 + " KB");
+		assertTrue(recorder.maxHeap < FILE_SIZE / 4);
+	}
+
+	public void testResumedUpload() throws Exception {
+		long offset = FILE_SIZE / 3;
+		server.uploaded = offset;
+		ProgressRecorder recorder = new ProgressRecorder();
+		HttpUploadManager manager = createUploadManager(recorder);
+		assertEquals(DOWNLOAD_INFO, new String(manager.resumeUpload()));
+		Body body = server.waitBody();
+
+		assertEquals("PUT", body.method);
+		assertEquals(FILE_SIZE - offset, body.contentLength);
+		assertEquals(body.contentLength, body.received);
+		assertEquals(getCrc(offset), body.crc.getValue());
+		assertTrue(recorder.first > offset);
+		assertEquals(FILE_SIZE, recorder.last);
+	}
+
+	public void testCancelledUpload() throws Exception {
+		ProgressRecorder recorder = new ProgressRecorder();
+		HttpUploadManager manager = createUploadManager(recorder);
+		recorder.cancelledManager = manager;
+		recorder.cancelSize = FILE_SIZE / 2;
+		assertNull(manager.uploadFile());
+		Body body = server.waitBody();
+
+		assertTrue(manager.isCancelled());
+		assertFalse(manager.isPaused());
+		assertTrue(body.received < body.contentLength);
+		assertTrue(recorder.last < FILE_SIZE);
+	}
+}
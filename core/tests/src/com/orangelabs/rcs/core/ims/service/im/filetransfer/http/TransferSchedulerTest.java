@@ -0,0 +1,231 @@
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.provider.fthttp.FtHttpDirection;
+
+/**
+ * Scheduling of the transfers to resume: limits of the transfers running,
+ * order of priority, retry after a backoff or the delay requested by the
+ * server and retry schedule restored from the storage
+ */
+public class TransferSchedulerTest extends TestCase {
+	private static final String TAG = "TransferSchedulerTest";
+
+	/**
+	 * Duration of a transfer
+	 */
+	private static final int DURATION = 50;
+
+	private TransferScheduler scheduler;
+
+	private Vector<TestTransfer> started = new Vector<TestTransfer>();
+
+	private Vector<TestTransfer> saved = new Vector<TestTransfer>();
+
+	private AtomicInteger running = new AtomicInteger();
+
+	private AtomicInteger maxRunning = new AtomicInteger();
+
+	private AtomicInteger[] runningPerDirection = { new AtomicInteger(), new AtomicInteger() };
+
+	private AtomicInteger[] maxRunningPerDirection = { new AtomicInteger(), new AtomicInteger() };
+
+	/**
+	 * Transfer ending after a while with a result, or waiting to be ended
+	 * by the test
+	 */
+	private class TestTransfer extends TransferScheduler.Transfer {
+		private String name;
+
+		private boolean ending = true;
+
+		private int interruptions = 0;
+
+		private int retryAfter = 0;
+
+		private Vector<Long> startTimes = new Vector<Long>();
+
+		TestTransfer(String name, FtHttpDirection direction, long size, String chatId) {
+			super(direction, size, chatId);
+			this.name = name;
+		}
+
+		protected void start() {
+			startTimes.addElement(System.currentTimeMillis());
+			started.addElement(this);
+			update(running, maxRunning, 1);
+			int direction = getDirection().ordinal();
+			update(runningPerDirection[direction], maxRunningPerDirection[direction], 1);
+			if (!ending) {
+				return;
+			}
+			new Thread() {
+				public void run() {
+					try {
+						Thread.sleep(DURATION);
+					} catch (InterruptedException e) {
+						// Nothing to do
+					}
+					end();
+				}
+			}.start();
+		}
+
+		void end() {
+			update(running, maxRunning, -1);
+			int direction = getDirection().ordinal();
+			update(runningPerDirection[direction], maxRunningPerDirection[direction], -1);
+			if (interruptions > 0) {
+				interruptions--;
+				scheduler.finished(this, TransferScheduler.INTERRUPTED, retryAfter);
+			} else {
+				scheduler.finished(this, TransferScheduler.COMPLETED, 0);
+			}
+		}
+	}
+
+	private static void update(AtomicInteger count, AtomicInteger max, int delta) {
+		int value = count.addAndGet(delta);
+		int current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// Retry
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		scheduler = new TransferScheduler() {
+			protected void saveSchedule(TransferScheduler.Transfer transfer) {
+				saved.addElement((TestTransfer)transfer);
+			}
+		};
+	}
+
+	protected void tearDown() throws Exception {
+		scheduler.terminate();
+
+		super.tearDown();
+	}
+
+	private void waitIdle(long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		while ((scheduler.getRunning() + scheduler.getQueued() + scheduler.getWaiting() > 0)
+				&& (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, scheduler.getRunning() + scheduler.getQueued() + scheduler.getWaiting());
+	}
+
+	public void testLimits() throws Exception {
+		int transfers = 40;
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < transfers; i++) {
+			FtHttpDirection direction = (i % 4 == 0) ? FtHttpDirection.OUTGOING : FtHttpDirection.INCOMING;
+			scheduler.schedule(new TestTransfer("transfer" + i, direction, 1000 + i, null));
+		}
+		waitIdle(transfers * DURATION);
+		long duration = System.currentTimeMillis() - start;
+
+		Log.i(TAG, transfers + " transfers of " + DURATION + " ms in " + duration + " ms, "
+				+ maxRunning.get() + " at most at the same time");
+		assertEquals(transfers, started.size());
+		assertEquals(TransferScheduler.MAX_TRANSFERS, maxRunning.get());
+		assertEquals(TransferScheduler.MAX_DOWNLOADS, maxRunningPerDirection[FtHttpDirection.INCOMING.ordinal()].get());
+		assertTrue(maxRunningPerDirection[FtHttpDirection.OUTGOING.ordinal()].get() <= TransferScheduler.MAX_UPLOADS);
+		assertTrue(duration < transfers * DURATION / 2);
+	}
+
+	public void testPriority() throws Exception {
+		Vector<TestTransfer> blocking = new Vector<TestTransfer>();
+		for (int i = 0; i < TransferScheduler.MAX_DOWNLOADS; i++) {
+			TestTransfer transfer = new TestTransfer("blocking" + i, FtHttpDirection.INCOMING, 1, null);
+			transfer.ending = false;
+			blocking.addElement(transfer);
+			scheduler.schedule(transfer);
+		}
+		assertEquals(TransferScheduler.MAX_DOWNLOADS, scheduler.getRunning());
+
+		TestTransfer large = new TestTransfer("large", FtHttpDirection.INCOMING, 5000000, null);
+		TestTransfer small = new TestTransfer("small", FtHttpDirection.INCOMING, 1000, null);
+		TestTransfer medium = new TestTransfer("medium", FtHttpDirection.INCOMING, 100000, null);
+		TestTransfer visible = new TestTransfer("visible", FtHttpDirection.INCOMING, 10000000, "chat");
+		TestTransfer[] waiting = { large, small, medium, visible };
+		for (TestTransfer transfer : waiting) {
+			transfer.ending = false;
+			scheduler.schedule(transfer);
+		}
+		assertEquals(waiting.length, scheduler.getQueued());
+
+		// An upload is not blocked by the downloads
+		TestTransfer upload = new TestTransfer("upload", FtHttpDirection.OUTGOING, 20000000, null);
+		upload.ending = false;
+		scheduler.schedule(upload);
+		assertTrue(started.contains(upload));
+
+		scheduler.setVisibleChat("chat");
+		TestTransfer[] expected = { visible, small, medium, large };
+		for (int i = 0; i < expected.length; i++) {
+			TestTransfer transfer = (i < blocking.size()) ? blocking.get(i) : expected[i - blocking.size()];
+			transfer.end();
+			assertSame(expected[i], started.lastElement());
+		}
+	}
+
+	public void testRetry() throws Exception {
+		assertEquals(0, TransferScheduler.getRetryDelay(0));
+		assertEquals(TransferScheduler.RETRY_DELAY, TransferScheduler.getRetryDelay(1));
+		assertEquals(4 * TransferScheduler.RETRY_DELAY, TransferScheduler.getRetryDelay(3));
+		assertEquals(TransferScheduler.RETRY_MAX_DELAY, TransferScheduler.getRetryDelay(100));
+
+		TestTransfer transfer = new TestTransfer("interrupted", FtHttpDirection.INCOMING, 1000, null);
+		transfer.interruptions = 1;
+		scheduler.schedule(transfer);
+		waitIdle(TransferScheduler.RETRY_DELAY * 2);
+
+		// Retried after the backoff, with the attempt saved
+		assertEquals(2, transfer.startTimes.size());
+		long delay = transfer.startTimes.get(1) - transfer.startTimes.get(0) - DURATION;
+		Log.i(TAG, "Retry after " + delay + " ms");
+		assertTrue(delay >= TransferScheduler.RETRY_DELAY - 10);
+		assertTrue(delay <= TransferScheduler.RETRY_DELAY * (1 + TransferScheduler.RETRY_JITTER) + 100);
+		assertEquals(1, saved.size());
+		assertEquals(1, transfer.getAttempts());
+	}
+
+	public void testRetryAfter() throws Exception {
+		TestTransfer transfer = new TestTransfer("busy", FtHttpDirection.OUTGOING, 1000, null);
+		transfer.ending = false;
+		transfer.interruptions = 1;
+		transfer.retryAfter = 60;
+		scheduler.schedule(transfer);
+
+		// The thread of the transfer is not blocked by the delay
+		long start = System.currentTimeMillis();
+		transfer.end();
+		assertTrue(System.currentTimeMillis() - start < TransferScheduler.RETRY_DELAY);
+		assertEquals(1, scheduler.getWaiting());
+		assertEquals(0, scheduler.getRunning());
+		assertTrue(transfer.getNextAttempt() - start >= 60000 - 10);
+	}
+
+	public void testRestoredSchedule() throws Exception {
+		TestTransfer transfer = new TestTransfer("restored", FtHttpDirection.INCOMING, 1000, null);
+		long start = System.currentTimeMillis();
+		transfer.setSchedule(3, start + 300);
+		scheduler.schedule(transfer);
+		assertEquals(1, scheduler.getWaiting());
+		assertTrue(started.isEmpty());
+
+		waitIdle(1000);
+		assertEquals(1, started.size());
+		assertTrue(transfer.startTimes.get(0) - start >= 300 - 10);
+		assertEquals(3, transfer.getAttempts());
+	}
+}
@@ -0,0 +1,464 @@
+package com.orangelabs.rcs.core.ims.service.presence.xdm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.ImsModule;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpGetRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpPutRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
+import com.orangelabs.rcs.core.ims.userprofile.UserProfile;
+import com.orangelabs.rcs.platform.network.NetworkFactory;
+
+/**
+ * XCAP requests sent to a local stand-in of the XDM server: connections,
+ * round trips and digest challenges of the presence startup, new challenge
+ * of the server, connection closed by the server, conditional requests and
+ * startup with the documents cached by a previous session
+ */
+public class XdmManagerTest extends TestCase {
+	private static final String TAG = "XdmManagerTest";
+
+	private static final String LOGIN = "sip:+33600000001@domain.com";
+
+	private static final String PASSWORD = "password";
+
+	private static final String REALM = "xcap";
+
+	private XcapServer server;
+
+	private File cacheDir;
+
+	/**
+	 * XDM server keeping its connections alive, storing the documents,
+	 * adding and removing the entries of the lists and checking the digest
+	 * authentication of the requests
+	 */
+	private static class XcapServer extends Thread {
+		private ServerSocket socket;
+
+		private Vector<Socket> clients = new Vector<Socket>();
+
+		private volatile String nonce = "nonce1";
+
+		private int lastNonceCount = 0;
+
+		private Hashtable<String, String> documents = new Hashtable<String, String>();
+
+		private Hashtable<String, String> etags = new Hashtable<String, String>();
+
+		private int etagCounter = 0;
+
+		private Pattern entryNode = Pattern.compile("resource-lists/list\\[@name=\"([^\"]+)\"\\]/entry\\[@uri=\"([^\"]+)\"\\]");
+
+		private AtomicInteger connections = new AtomicInteger();
+
+		private AtomicInteger requests = new AtomicInteger();
+
+		private AtomicInteger challenges = new AtomicInteger();
+
+		private AtomicInteger unchallengedCredentials = new AtomicInteger();
+
+		XcapServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			start();
+		}
+
+		String getAddress() {
+			return "http://127.0.0.1:" + socket.getLocalPort() + "/services";
+		}
+
+		void close() throws IOException {
+			socket.close();
+			closeConnections();
+		}
+
+		void closeConnections() throws IOException {
+			for (Socket client : clients) {
+				client.close();
+			}
+			clients.clear();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket client = socket.accept();
+					clients.addElement(client);
+					connections.incrementAndGet();
+					new Thread() {
+						public void run() {
+							serve(client);
+						}
+					}.start();
+				}
+			} catch (IOException e) {
+				// Server closed
+			}
+		}
+
+		private void serve(Socket client) {
+			try {
+				InputStream in = new BufferedInputStream(client.getInputStream());
+				OutputStream out = client.getOutputStream();
+				String requestLine;
+				while ((requestLine = readLine(in)) != null) {
+					String[] parts = requestLine.split(" ");
+					Hashtable<String, String> headers = new Hashtable<String, String>();
+					String line;
+					while ((line = readLine(in)) != null && (line.length() > 0)) {
+						int index = line.indexOf(':');
+						headers.put(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+					}
+					int length = Integer.parseInt(headers.get("content-length"));
+					byte[] content = new byte[length];
+					for (int read = 0; read < length;) {
+						read += in.read(content, read, length - read);
+					}
+					requests.incrementAndGet();
+					out.write(handle(parts[0], parts[1], headers, new String(content, "UTF-8")).getBytes("UTF-8"));
+					out.flush();
+				}
+			} catch (Exception e) {
+				// Connection closed
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		private synchronized String handle(String method, String uri, Hashtable<String, String> headers,
+				String content) throws Exception {
+			if (!isAuthenticated(method, uri, headers.get("authorization"))) {
+				// New nonce for each new client
+				String authorization = headers.get("authorization");
+				if ((authorization != null) && (challenges.get() == 0)) {
+					unchallengedCredentials.incrementAndGet();
+				}
+				if ((authorization == null) || !authorization.startsWith("Digest ")) {
+					setNonce("nonce" + challenges.get());
+				}
+				challenges.incrementAndGet();
+				return "HTTP/1.1 401 Unauthorized\r\nWWW-Authenticate: Digest realm=\"" + REALM + "\",nonce=\""
+						+ nonce + "\",qop=\"auth\"\r\nContent-Length: 0\r\n\r\n";
+			}
+
+			// Document and node selector
+			String document = uri;
+			String node = null;
+			int separator = uri.indexOf("/~~/");
+			if (separator != -1) {
+				document = uri.substring(0, separator);
+				node = URLDecoder.decode(uri.substring(separator + 4), "UTF-8");
+			}
+
+			String etag = etags.get(document);
+			String ifMatch = headers.get("if-match");
+			String ifNoneMatch = headers.get("if-none-match");
+			if ((ifMatch != null) && !ifMatch.equals(etag)) {
+				return "HTTP/1.1 412 Precondition Failed\r\nContent-Length: 0\r\n\r\n";
+			}
+			if (method.equals("GET")) {
+				if (uri.contains("xcap-directory")) {
+					// Version of the directory changed with any document
+					String directoryEtag = "\"directory" + etagCounter + "\"";
+					if (directoryEtag.equals(ifNoneMatch)) {
+						return "HTTP/1.1 304 Not Modified\r\nETag: " + directoryEtag + "\r\n\r\n";
+					}
+					StringBuffer directory = new StringBuffer("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+							+ "<xcap-directory xmlns=\"urn:oma:xml:xdm:xcap-directory\">");
+					for (String path : etags.keySet()) {
+						directory.append("<folder auid=\"" + path.split("/")[2] + "\"><entry uri=\"" + path
+								+ "\" etag=\"" + etags.get(path).replace("\"", "") + "\"/></folder>");
+					}
+					directory.append("</xcap-directory>");
+					return "HTTP/1.1 200 OK\r\nETag: " + directoryEtag + "\r\nContent-Type: application/xml\r\n"
+							+ "Content-Length: " + directory.length() + "\r\n\r\n" + directory;
+				}
+				if ((etag == null) || (node != null)) {
+					return "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n";
+				}
+				if (etag.equals(ifNoneMatch)) {
+					return "HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\n\r\n";
+				}
+
+				// Sent in chunks
+				String body = documents.get(document);
+				int half = body.length() / 2;
+				return "HTTP/1.1 200 OK\r\nETag: " + etag + "\r\nTransfer-Encoding: chunked\r\n\r\n"
+						+ Integer.toHexString(half) + "\r\n" + body.substring(0, half) + "\r\n"
+						+ Integer.toHexString(body.length() - half) + "\r\n" + body.substring(half)
+						+ "\r\n0\r\n\r\n";
+			}
+
+			if (node == null) {
+				if (method.equals("DELETE")) {
+					documents.remove(document);
+					etags.remove(document);
+					return "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+				}
+				documents.put(document, content);
+			} else {
+				// Entry of a list
+				Matcher matcher = entryNode.matcher(node);
+				String body = documents.get(document);
+				if ((body == null) || !matcher.matches()) {
+					return "HTTP/1.1 409 Conflict\r\nContent-Length: 0\r\n\r\n";
+				}
+				String list = "<list name=\"" + matcher.group(1) + "\">";
+				int start = body.indexOf(list);
+				if (start == -1) {
+					return "HTTP/1.1 409 Conflict\r\nContent-Length: 0\r\n\r\n";
+				}
+				start += list.length();
+				int end = body.indexOf("</list>", start);
+				String entries = body.substring(start, end).replaceAll("<entry uri=['\"]"
+						+ Pattern.quote(matcher.group(2)) + "['\"]\\s*(/>|></entry>)", "");
+				if (method.equals("PUT")) {
+					entries = content + entries;
+				}
+				documents.put(document, body.substring(0, start) + entries + body.substring(end));
+			}
+			etag = "\"etag" + (++etagCounter) + "\"";
+			etags.put(document, etag);
+			return "HTTP/1.1 " + ((node == null) ? "201 Created" : "200 OK") + "\r\nETag: " + etag
+					+ "\r\nContent-Length: 0\r\n\r\n";
+		}
+
+		/**
+		 * Check the digest of a request with the current nonce and a nonce
+		 * count greater than the previous one
+		 */
+		private boolean isAuthenticated(String method, String uri, String authorization) throws Exception {
+			if ((authorization == null) || !authorization.startsWith("Digest ")) {
+				return false;
+			}
+			Hashtable<String, String> params = new Hashtable<String, String>();
+			Matcher matcher = Pattern.compile("(\\w+)=\"?([^\",]*)\"?").matcher(authorization.substring(7));
+			while (matcher.find()) {
+				params.put(matcher.group(1), matcher.group(2));
+			}
+			if (!nonce.equals(params.get("nonce")) || !uri.equals(params.get("uri"))) {
+				return false;
+			}
+			int nonceCount = Integer.parseInt(params.get("nc"), 16);
+			if (nonceCount <= lastNonceCount) {
+				return false;
+			}
+			lastNonceCount = nonceCount;
+			String ha1 = md5(LOGIN + ":" + REALM + ":" + PASSWORD);
+			String ha2 = md5(method + ":" + uri);
+			String response = md5(ha1 + ":" + nonce + ":" + params.get("nc") + ":" + params.get("cnonce") + ":"
+					+ params.get("qop") + ":" + ha2);
+			return response.equals(params.get("response"));
+		}
+
+		synchronized void setNonce(String nonce) {
+			this.nonce = nonce;
+			lastNonceCount = 0;
+		}
+
+		private static String md5(String value) throws Exception {
+			StringBuffer result = new StringBuffer();
+			for (byte b : MessageDigest.getInstance("MD5").digest(value.getBytes())) {
+				result.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return result.toString();
+		}
+
+		private static String readLine(InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int c;
+			while ((c = in.read()) != '\n') {
+				if (c == -1) {
+					return null;
+				}
+				if (c != '\r') {
+					line.write(c);
+				}
+			}
+			return line.toString();
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		NetworkFactory.loadFactory("com.orangelabs.rcs.platform.network.AndroidNetworkFactory");
+		server = new XcapServer();
+		ImsModule.IMS_USER_PROFILE = new UserProfile("+33600000001", "domain.com", "+33600000001@domain.com",
+				"password", "domain.com", server.getAddress(), LOGIN, PASSWORD, null);
+		cacheDir = new File(System.getProperty("java.io.tmpdir"), "xcap");
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		new XcapDocumentCache(cacheDir).clear();
+
+		super.tearDown();
+	}
+
+	public void testPresenceStartup() throws Exception {
+		XdmManager xdm = new XdmManager(null, new XcapDocumentCache(null));
+		long start = System.currentTimeMillis();
+		xdm.initialize();
+		assertTrue(xdm.getGrantedContacts().isEmpty());
+		assertTrue(xdm.addContactToGrantedList(LOGIN).isSuccessfullResponse());
+		assertTrue(xdm.getBlockedContacts().isEmpty());
+		assertTrue(xdm.getGrantedContacts().contains(LOGIN));
+		long duration = System.currentTimeMillis() - start;
+
+		// Only the first request is challenged and sent without credentials, the missing documents are set in one round trip
+		// and the lists are read from the document just set and then changed
+		XcapConnection connection = xdm.getXcapConnection();
+		Log.i(TAG, "Presence startup: " + server.requests.get() + " requests in " + connection.getRoundTrips()
+				+ " round trips over " + server.connections.get() + " connection, " + server.challenges.get()
+				+ " challenge, " + duration + " ms");
+		assertEquals(1, server.connections.get());
+		assertEquals(1, server.challenges.get());
+		assertEquals(0, server.unchallengedCredentials.get());
+		assertEquals(6, server.requests.get());
+		assertEquals(4, connection.getRoundTrips());
+		assertEquals(3, server.documents.size());
+		xdm.close();
+	}
+
+	public void testNewChallenge() throws Exception {
+		XdmManager xdm = new XdmManager(null, new XcapDocumentCache(null));
+		assertTrue(xdm.getXcapDocuments().isSuccessfullResponse());
+		assertEquals(1, server.challenges.get());
+
+		// Stale nonce: the request is sent again with the new nonce
+		server.setNonce("nonce2");
+		assertTrue(xdm.setRcsList().isSuccessfullResponse());
+		assertTrue(xdm.setPresenceRules().isSuccessfullResponse());
+		assertEquals(2, server.challenges.get());
+		assertEquals(1, server.connections.get());
+		xdm.close();
+	}
+
+	public void testConnectionClosedByServer() throws Exception {
+		XdmManager xdm = new XdmManager(null, new XcapDocumentCache(null));
+		assertTrue(xdm.getXcapDocuments().isSuccessfullResponse());
+		server.closeConnections();
+		Thread.sleep(50);
+
+		// The request is sent again over a new connection, still authenticated
+		assertTrue(xdm.setRcsList().isSuccessfullResponse());
+		assertEquals(2, server.connections.get());
+		assertEquals(1, server.challenges.get());
+		xdm.close();
+	}
+
+	public void testConditionalRequests() throws Exception {
+		XcapConnection connection = new XcapConnection(server.getAddress(), LOGIN, PASSWORD);
+		String url = "/resource-lists/users/" + LOGIN + "/index";
+		HttpResponse response = connection.sendRequest(new HttpPutRequest(url, "<resource-lists/>",
+				"application/resource-lists+xml"));
+		assertEquals(201, response.getResponseCode());
+		String etag = response.getHeader("etag");
+
+		// Document unchanged
+		HttpGetRequest get = new HttpGetRequest(url);
+		get.setIfNoneMatch(etag);
+		response = connection.sendRequest(get);
+		assertEquals(304, response.getResponseCode());
+		assertNull(response.getContent());
+
+		// Document changed meanwhile
+		HttpPutRequest put = new HttpPutRequest(url, "<resource-lists><list/></resource-lists>",
+				"application/resource-lists+xml");
+		put.setIfMatch(etag);
+		assertEquals(201, connection.sendRequest(put).getResponseCode());
+		put.setIfMatch(etag);
+		assertEquals(412, connection.sendRequest(put).getResponseCode());
+
+		// Chunked content
+		response = connection.sendRequest(new HttpGetRequest(url));
+		assertEquals(200, response.getResponseCode());
+		assertEquals("<resource-lists><list/></resource-lists>", new String(response.getContent(), "UTF-8"));
+		assertEquals(1, connection.getConnections());
+		assertEquals(1, connection.getChallenges());
+		connection.close();
+	}
+
+	public void testCachedStartup() throws Exception {
+		XdmManager xdm = new XdmManager(null, new XcapDocumentCache(cacheDir));
+		xdm.initialize();
+		assertTrue(xdm.addContactToGrantedList(LOGIN).isSuccessfullResponse());
+		assertTrue(xdm.addContactToBlockedList("sip:+33600000002@domain.com").isSuccessfullResponse());
+		assertTrue(xdm.removeContactFromBlockedList("sip:+33600000002@domain.com").isSuccessfullResponse());
+		xdm.close();
+
+		// The lists are read from the cache, only the directory is read again
+		for (int i = 0; i < 2; i++) {
+			int requests = server.requests.get();
+			long start = System.currentTimeMillis();
+			xdm = new XdmManager(null, new XcapDocumentCache(cacheDir));
+			xdm.initialize();
+			List<String> granted = xdm.getGrantedContacts();
+			List<String> blocked = xdm.getBlockedContacts();
+			long duration = System.currentTimeMillis() - start;
+			Log.i(TAG, "Cached startup: " + (server.requests.get() - requests) + " requests, " + duration + " ms");
+			assertEquals(1, granted.size());
+			assertTrue(granted.contains(LOGIN));
+			assertTrue(blocked.isEmpty());
+			assertEquals(2, server.requests.get() - requests);
+			xdm.close();
+		}
+	}
+
+	public void testChangedOnServer() throws Exception {
+		XdmManager xdm = new XdmManager(null, new XcapDocumentCache(cacheDir));
+		xdm.initialize();
+		assertTrue(xdm.addContactToGrantedList(LOGIN).isSuccessfullResponse());
+		xdm.close();
+
+		// Changed by another device
+		String contact = "sip:+33600000003@domain.com";
+		XdmManager other = new XdmManager(null, new XcapDocumentCache(null));
+		other.initialize();
+		assertTrue(other.addContactToGrantedList(contact).isSuccessfullResponse());
+		other.close();
+
+		// The cached document is revalidated and read again
+		int requests = server.requests.get();
+		xdm = new XdmManager(null, new XcapDocumentCache(cacheDir));
+		xdm.initialize();
+		List<String> granted = xdm.getGrantedContacts();
+		assertEquals(2, granted.size());
+		assertTrue(granted.contains(LOGIN));
+		assertTrue(granted.contains(contact));
+		assertEquals(3, server.requests.get() - requests);
+
+		// Then used until it changes
+		assertTrue(xdm.removeContactFromGrantedList(LOGIN).isSuccessfullResponse());
+		granted = xdm.getGrantedContacts();
+		assertEquals(1, granted.size());
+		assertTrue(granted.contains(contact));
+		assertEquals(4, server.requests.get() - requests);
+		xdm.close();
+	}
+}
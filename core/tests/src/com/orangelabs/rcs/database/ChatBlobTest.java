@@ -35,6 +35,7 @@ public class ChatBlobTest extends AndroidTestCase {
 		
 		// Add entry
 		RichMessagingHistory.getInstance().addChatMessage(msg, ChatLog.Message.Direction.OUTGOING);
+		RichMessagingHistory.getInstance().flushMessages();
 		
 		// Read entry
 		Uri uri = Uri.withAppendedPath(ChatLog.Message.CONTENT_CHAT_URI, remote);		
@@ -78,6 +79,7 @@ public class ChatBlobTest extends AndroidTestCase {
 		
 		// Add entry
 		RichMessagingHistory.getInstance().addChatMessage(geolocMsg, ChatLog.Message.Direction.OUTGOING);
+		RichMessagingHistory.getInstance().flushMessages();
 		
 		// Read entry
 		Uri uri = Uri.withAppendedPath(ChatLog.Message.CONTENT_CHAT_URI, remote);		
@@ -0,0 +1,279 @@
+package com.orangelabs.rcs.provider;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.provider.eab.RichAddressBookProvider;
+import com.orangelabs.rcs.provider.fthttp.FtHttpProvider;
+import com.orangelabs.rcs.provider.ipcall.IPCallProvider;
+import com.orangelabs.rcs.provider.messaging.ChatProvider;
+import com.orangelabs.rcs.provider.messaging.FileTransferProvider;
+import com.orangelabs.rcs.provider.settings.RcsSettingsProvider;
+import com.orangelabs.rcs.provider.sharing.ImageSharingProvider;
+import com.orangelabs.rcs.provider.sharing.VideoSharingProvider;
+
+/**
+ * Schema migration of the provider databases: populated databases are
+ * upgraded from every supported version without losing rows
+ */
+public class DatabaseMigrationTest extends TestCase {
+	private static final String TAG = "DatabaseMigrationTest";
+
+	private static final int ROWS = 1000;
+
+	protected void tearDown() throws Exception {
+		DatabaseMigration.setMigrationListener(null);
+
+		super.tearDown();
+	}
+
+	/**
+	 * Returns the tables of a database, without the tables storing the
+	 * full-text indexes
+	 */
+	private Vector<String> getTables(SQLiteDatabase db) {
+		Vector<String> tables = new Vector<String>();
+		Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master t WHERE type='table'"
+				+ " AND name NOT IN ('sqlite_sequence','android_metadata') AND NOT EXISTS (SELECT 1 FROM"
+				+ " sqlite_master v WHERE v.sql LIKE 'CREATE VIRTUAL TABLE%' AND t.name LIKE v.name || '_%')"
+				+ " ORDER BY name", null);
+		while (cursor.moveToNext()) {
+			tables.addElement(cursor.getString(0));
+		}
+		cursor.close();
+		return tables;
+	}
+
+	/**
+	 * Returns the tables and indexes of a database with their definition
+	 */
+	private TreeSet<String> getSchema(SQLiteDatabase db) {
+		TreeSet<String> schema = new TreeSet<String>();
+		Cursor cursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master"
+				+ " WHERE name NOT IN ('sqlite_sequence','android_metadata')", null);
+		while (cursor.moveToNext()) {
+			schema.add(cursor.getString(0) + " " + cursor.getString(1) + " " + cursor.getString(2));
+		}
+		cursor.close();
+		return schema;
+	}
+
+	/**
+	 * Fill each table with rows having a value in every column
+	 */
+	private void populate(SQLiteDatabase db) {
+		db.beginTransaction();
+		try {
+			for (String table : getTables(db)) {
+				Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+				Vector<String[]> columns = new Vector<String[]>();
+				while (cursor.moveToNext()) {
+					if (cursor.getInt(cursor.getColumnIndex("pk")) == 0) {
+						columns.addElement(new String[] { cursor.getString(cursor.getColumnIndex("name")),
+								cursor.getString(cursor.getColumnIndex("type")).toLowerCase() });
+					}
+				}
+				cursor.close();
+
+				for (int i = 0; i < ROWS; i++) {
+					ContentValues values = new ContentValues();
+					for (String[] column : columns) {
+						if (column[1].contains("int") || column[1].equals("long")) {
+							values.put(column[0], i);
+						} else if (column[1].equals("double")) {
+							values.put(column[0], i + 0.5);
+						} else if (column[1].equals("blob")) {
+							values.put(column[0], new byte[] { (byte)i, (byte)(i >> 8) });
+						} else {
+							values.put(column[0], column[0] + "-" + i);
+						}
+					}
+					assertTrue(db.insert(table, null, values) != -1);
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Returns the rows of each table, by table and column
+	 */
+	private HashMap<String, String> dump(SQLiteDatabase db) {
+		HashMap<String, String> rows = new HashMap<String, String>();
+		for (String table : getTables(db)) {
+			Cursor cursor = db.rawQuery("SELECT rowid, * FROM " + table, null);
+			while (cursor.moveToNext()) {
+				for (int i = 1; i < cursor.getColumnCount(); i++) {
+					String value;
+					if (cursor.getType(i) == Cursor.FIELD_TYPE_BLOB) {
+						value = Arrays.toString(cursor.getBlob(i));
+					} else {
+						value = cursor.getString(i);
+					}
+					rows.put(table + "/" + cursor.getLong(0) + "/" + cursor.getColumnName(i), value);
+				}
+			}
+			cursor.close();
+		}
+		return rows;
+	}
+
+	private void checkMigration(DatabaseMigration migration) {
+		SQLiteDatabase fresh = SQLiteDatabase.create(null);
+		migration.create(fresh);
+		TreeSet<String> expected = getSchema(fresh);
+		fresh.close();
+
+		for (int version = migration.getFirstVersion(); version <= migration.getVersion(); version++) {
+			SQLiteDatabase db = SQLiteDatabase.create(null);
+			try {
+				migration.create(db, version);
+				populate(db);
+				HashMap<String, String> before = dump(db);
+
+				long start = System.currentTimeMillis();
+				assertTrue(migration.upgrade(db, version, migration.getVersion()));
+				Log.i(TAG, migration.getDatabase() + " upgraded from version " + version + " to "
+						+ migration.getVersion() + " in " + (System.currentTimeMillis() - start) + " ms");
+
+				assertEquals(migration.getDatabase(), expected, getSchema(db));
+				HashMap<String, String> after = dump(db);
+				for (String key : before.keySet()) {
+					assertEquals(migration.getDatabase() + " " + key, before.get(key), after.get(key));
+				}
+			} finally {
+				db.close();
+			}
+		}
+	}
+
+	public void testProviders() {
+		checkMigration(ChatProvider.getMigration());
+		checkMigration(FileTransferProvider.getMigration());
+		checkMigration(RichAddressBookProvider.getMigration());
+		checkMigration(RcsSettingsProvider.getMigration());
+		checkMigration(IPCallProvider.getMigration());
+		checkMigration(ImageSharingProvider.getMigration());
+		checkMigration(VideoSharingProvider.getMigration());
+		checkMigration(FtHttpProvider.getMigration());
+	}
+
+	public void testUnsupportedVersion() {
+		DatabaseMigration migration = ChatProvider.getMigration();
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		try {
+			assertFalse(migration.upgrade(db, migration.getFirstVersion() - 1, migration.getVersion()));
+		} finally {
+			db.close();
+		}
+	}
+
+	/**
+	 * Returns a migration adding a column filled from another one by chunks
+	 */
+	private DatabaseMigration createBackfillMigration() {
+		return new DatabaseMigration("test.db", new MigrationStep(1) {
+			public void execute(SQLiteDatabase db) {
+				db.execSQL("CREATE TABLE t (_id integer primary key autoincrement, value integer)");
+			}
+		}).addColumn(2, "t", "doubled", "integer DEFAULT 0").addStep(
+				new BackfillStep(2, "t", new String[] { "value" }, null, 100) {
+					protected void backfill(SQLiteDatabase db, long id, Cursor cursor) {
+						ContentValues values = new ContentValues();
+						values.put("doubled", cursor.getLong(1) * 2);
+						db.update("t", values, "_id=" + id, null);
+					}
+				}).addIndex(3, "t", "doubled");
+	}
+
+	public void testBackfill() {
+		final Vector<String> events = new Vector<String>();
+		DatabaseMigration.setMigrationListener(new MigrationListener() {
+			public void handleStepStarted(String database, int version, int step, int stepsNumber) {
+				events.addElement("step " + version + " " + step + "/" + stepsNumber);
+			}
+
+			public void handleRowsProcessed(String database, int version, long rows) {
+				events.addElement("rows " + rows);
+			}
+
+			public void handleMigrationTerminated(String database, int oldVersion, int newVersion) {
+				events.addElement("terminated " + oldVersion + " " + newVersion);
+			}
+		});
+
+		DatabaseMigration migration = createBackfillMigration();
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		try {
+			migration.create(db, 1);
+			for (int i = 0; i < 1050; i++) {
+				db.execSQL("INSERT INTO t (value) VALUES (" + i + ")");
+			}
+			events.clear();
+
+			assertTrue(migration.upgrade(db, 1, 3));
+			Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM t WHERE doubled = value * 2", null);
+			assertTrue(cursor.moveToFirst());
+			assertEquals(1050, cursor.getInt(0));
+			cursor.close();
+
+			assertEquals(Arrays.asList("step 2 1/3", "step 2 2/3", "rows 100", "rows 200", "rows 300",
+					"rows 400", "rows 500", "rows 600", "rows 700", "rows 800", "rows 900", "rows 1000",
+					"rows 1050", "step 3 3/3", "terminated 1 3"), events);
+		} finally {
+			db.close();
+		}
+	}
+
+	public void testFailedStepRollsBack() {
+		DatabaseMigration migration = createBackfillMigration().addStep(new MigrationStep(4) {
+			public void execute(SQLiteDatabase db) {
+				throw new IllegalStateException("Step failure");
+			}
+		});
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		try {
+			migration.create(db, 1);
+			db.execSQL("INSERT INTO t (value) VALUES (1)");
+
+			// Transaction of the database helper around onUpgrade
+			db.beginTransaction();
+			try {
+				migration.upgrade(db, 1, 4);
+				db.setTransactionSuccessful();
+				fail("The step failure is not reported");
+			} catch (IllegalStateException e) {
+				// Expected
+			} finally {
+				db.endTransaction();
+			}
+
+			Cursor cursor = db.rawQuery("SELECT * FROM t", null);
+			assertEquals(2, cursor.getColumnCount());
+			assertEquals(1, cursor.getCount());
+			cursor.close();
+		} finally {
+			db.close();
+		}
+	}
+
+	public void testStepOutOfOrder() {
+		try {
+			createBackfillMigration().addColumn(2, "t", "late", "TEXT");
+			fail("A step older than the last one is accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+}
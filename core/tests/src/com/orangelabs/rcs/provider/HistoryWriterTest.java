@@ -0,0 +1,359 @@
+package com.orangelabs.rcs.provider;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+/**
+ * Single writer of the history: merge of the progress updates, visibility
+ * of the writes after a flush, order of the writes of a row, no lost update
+ * when the provider crashes in the middle of a batch, when the writer is
+ * restarted and when it is abandoned without being terminated, and
+ * rejection of the writes refused by the provider
+ */
+public class HistoryWriterTest extends AndroidTestCase {
+	private static final String TAG = "HistoryWriterTest";
+
+	private static final String AUTHORITY = "com.orangelabs.rcs.test.history";
+
+	private static final Uri URI = Uri.parse("content://" + AUTHORITY + "/session");
+
+	private static final String DATABASE_NAME = "history_writer_test.db";
+
+	private static final String JOURNAL_NAME = "history_writer_test.journal";
+
+	private static final int MAX_RETRIES = 5;
+
+	private static final int SESSIONS = 20;
+
+	private HistoryProvider provider;
+
+	private MockContentResolver resolver;
+
+	private File journal;
+
+	/**
+	 * Provider storing sessions, which can crash while a batch is applied:
+	 * the transaction is rolled back and the database is opened again
+	 */
+	private class HistoryProvider extends ContentProvider {
+		private SQLiteDatabase db;
+
+		private int batches = 0;
+
+		private ArrayList<Integer> crashingBatches = new ArrayList<Integer>();
+
+		public boolean onCreate() {
+			open();
+			return true;
+		}
+
+		private void open() {
+			db = SQLiteDatabase.openOrCreateDatabase(getContext().getDatabasePath(DATABASE_NAME), null);
+			db.execSQL("CREATE TABLE IF NOT EXISTS session (_id integer primary key autoincrement,"
+					+ " session_id TEXT, size long, status integer)");
+		}
+
+		public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+				throws OperationApplicationException {
+			boolean crash = crashingBatches.contains(++batches);
+			db.beginTransaction();
+			try {
+				ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+				for (int i = 0; i < operations.size(); i++) {
+					if (crash && (i == operations.size() / 2)) {
+						throw new IllegalStateException("Provider crash");
+					}
+					results[i] = operations.get(i).apply(this, results, i);
+				}
+				db.setTransactionSuccessful();
+				return results;
+			} finally {
+				db.endTransaction();
+				if (crash) {
+					db.close();
+					open();
+				}
+			}
+		}
+
+		public Uri insert(Uri uri, ContentValues values) {
+			return Uri.withAppendedPath(uri, Long.toString(db.insert("session", null, values)));
+		}
+
+		public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+			return db.update("session", values, selection, selectionArgs);
+		}
+
+		public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+			return db.query("session", projection, selection, selectionArgs, null, null, sortOrder);
+		}
+
+		public int delete(Uri uri, String selection, String[] selectionArgs) {
+			return db.delete("session", selection, selectionArgs);
+		}
+
+		public String getType(Uri uri) {
+			return null;
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		mContext.deleteDatabase(DATABASE_NAME);
+		provider = new HistoryProvider();
+		provider.attachInfo(mContext, null);
+		resolver = new MockContentResolver();
+		resolver.addProvider(AUTHORITY, provider);
+		journal = new File(mContext.getFilesDir(), JOURNAL_NAME);
+		deleteJournal();
+	}
+
+	private void deleteJournal() {
+		journal.delete();
+		new File(journal.getPath() + HistoryWriter.REJECTED_SUFFIX).delete();
+	}
+
+	protected void tearDown() throws Exception {
+		provider.db.close();
+		mContext.deleteDatabase(DATABASE_NAME);
+		deleteJournal();
+
+		super.tearDown();
+	}
+
+	private ContentValues getValues(long size, int status) {
+		ContentValues values = new ContentValues();
+		values.put("size", size);
+		values.put("status", status);
+		return values;
+	}
+
+	private void insert(HistoryWriter writer, String sessionId) {
+		ContentValues values = getValues(0, 0);
+		values.put("session_id", sessionId);
+		writer.insert(URI, "session_id", sessionId, values);
+	}
+
+	/**
+	 * Returns the size and the status of each session
+	 */
+	private HashMap<String, String> readSessions() {
+		HashMap<String, String> sessions = new HashMap<String, String>();
+		Cursor cursor = resolver.query(URI, new String[] { "session_id", "size", "status" }, null, null, null);
+		while (cursor.moveToNext()) {
+			assertNull("Session inserted twice", sessions.put(cursor.getString(0),
+					cursor.getLong(1) + "/" + cursor.getInt(2)));
+		}
+		cursor.close();
+		return sessions;
+	}
+
+	public void testProgressMerge() {
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		for (int i = 0; i < SESSIONS; i++) {
+			insert(writer, "session" + i);
+			for (int size = 1; size <= 100; size++) {
+				writer.update(URI, "session_id", "session" + i, getValues(size * 1000, 1));
+			}
+		}
+		assertEquals(SESSIONS, writer.getQueueDepth());
+		assertEquals(SESSIONS * 100, writer.getMergedWrites());
+
+		// Read your writes
+		assertTrue(writer.flush());
+		HashMap<String, String> sessions = readSessions();
+		assertEquals(SESSIONS, sessions.size());
+		for (int i = 0; i < SESSIONS; i++) {
+			assertEquals("100000/1", sessions.get("session" + i));
+		}
+		assertEquals(1, writer.getCommittedBatches());
+		assertEquals(SESSIONS, writer.getLastBatchSize());
+	}
+
+	public void testCrashAndRestart() throws Exception {
+		provider.crashingBatches.add(2);
+		provider.crashingBatches.add(5);
+		provider.crashingBatches.add(6);
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		writer.start();
+
+		Random random = new Random(1);
+		HashMap<String, String> expected = new HashMap<String, String>();
+		long failedBatches = 0;
+		for (int i = 0; i < 5000; i++) {
+			String sessionId = "session" + random.nextInt(SESSIONS);
+			if (!expected.containsKey(sessionId)) {
+				insert(writer, sessionId);
+				expected.put(sessionId, "0/0");
+			} else {
+				long size = random.nextInt(1000000);
+				int status = random.nextInt(5);
+				writer.update(URI, "session_id", sessionId, getValues(size, status));
+				expected.put(sessionId, size + "/" + status);
+			}
+			if (i % 25 == 0) {
+				Thread.sleep(20);
+			}
+			if (i == 2500) {
+				// Restart of the stack
+				writer.terminate();
+				failedBatches += writer.getFailedBatches();
+				assertEquals(0, writer.getQueueDepth());
+				writer = new HistoryWriter(resolver, journal);
+				assertEquals(0, writer.getReplayedWrites());
+				writer.start();
+			}
+		}
+		for (int i = 0; (i < MAX_RETRIES) && !writer.flush(); i++) {
+			Thread.sleep(HistoryWriter.RETRY_DELAY);
+		}
+		failedBatches += writer.getFailedBatches();
+		Log.i(TAG, writer.getQueuedWrites() + " writes queued, " + writer.getMergedWrites() + " merged, "
+				+ writer.getCommittedBatches() + " batches, max queue depth " + writer.getMaxQueueDepth()
+				+ ", commit time " + writer.getAverageCommitTime() + " ms average, "
+				+ writer.getMaxCommitTime() + " ms max");
+		writer.terminate();
+
+		assertEquals(provider.crashingBatches.size(), failedBatches);
+		assertEquals(0, writer.getRejectedWrites());
+		assertEquals(expected, readSessions());
+	}
+
+	public void testRowOrder() {
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		insert(writer, "session0");
+		insert(writer, "session1");
+		writer.update(URI, "session_id", "session1", getValues(1000, 1));
+
+		// Update of the sessions having a status, which must not be passed
+		// by the next update of the first session
+		ContentValues values = new ContentValues();
+		values.put("size", 7000);
+		writer.update(URI, "status", "0", values);
+		writer.update(URI, "session_id", "session0", getValues(9000, 2));
+		assertEquals(1, writer.getMergedWrites());
+
+		assertTrue(writer.flush());
+		HashMap<String, String> sessions = readSessions();
+		assertEquals("9000/2", sessions.get("session0"));
+		assertEquals("1000/1", sessions.get("session1"));
+	}
+
+	public void testAbandonAndRecover() throws Exception {
+		HashMap<String, String> expected = new HashMap<String, String>();
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		for (int i = 0; i < SESSIONS; i++) {
+			insert(writer, "session" + i);
+			expected.put("session" + i, "0/0");
+		}
+		assertTrue(writer.flush());
+		assertEquals(0, journal.length());
+
+		// Batch failing, kept in queue
+		provider.crashingBatches.add(provider.batches + 1);
+		for (int i = 0; i < SESSIONS / 2; i++) {
+			writer.update(URI, "session_id", "session" + i, getValues(i * 1000, 1));
+			expected.put("session" + i, (i * 1000) + "/1");
+		}
+		assertFalse(writer.flush());
+
+		// Writes still in queue when the process is killed
+		insert(writer, "session" + SESSIONS);
+		expected.put("session" + SESSIONS, "0/0");
+		for (int i = 0; i < SESSIONS; i++) {
+			writer.update(URI, "session_id", "session" + i, getValues(i * 2000, 2));
+			expected.put("session" + i, (i * 2000) + "/2");
+		}
+		int queueDepth = writer.getQueueDepth();
+		writer = null;
+
+		HistoryWriter recovered = new HistoryWriter(resolver, journal);
+		Log.i(TAG, recovered.getReplayedWrites() + " writes replayed from a journal of " + journal.length()
+				+ " bytes, " + queueDepth + " writes in queue");
+		assertEquals(queueDepth, recovered.getQueueDepth());
+		assertTrue(recovered.flush());
+		assertEquals(expected, readSessions());
+		assertEquals(0, journal.length());
+	}
+
+	public void testReplayAfterCommit() throws Exception {
+		HashMap<String, String> expected = new HashMap<String, String>();
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		for (int i = 0; i < SESSIONS; i++) {
+			insert(writer, "session" + i);
+			writer.update(URI, "session_id", "session" + i, getValues(i, 3));
+			expected.put("session" + i, i + "/3");
+		}
+
+		// Process killed after the commit, before the journal is compacted
+		byte[] data = readFile(journal);
+		assertTrue(writer.flush());
+		writeFile(journal, data);
+
+		HistoryWriter recovered = new HistoryWriter(resolver, journal);
+		assertEquals(SESSIONS * 2, recovered.getReplayedWrites());
+		assertTrue(recovered.flush());
+		assertEquals(expected, readSessions());
+	}
+
+	public void testRejectedWrite() {
+		HistoryWriter writer = new HistoryWriter(resolver, journal);
+		insert(writer, "session0");
+		insert(writer, "session1");
+		assertTrue(writer.flush());
+
+		ContentValues values = getValues(1000, 1);
+		values.put("unknown", 1);
+		writer.update(URI, "session_id", "session0", values);
+		writer.update(URI, "session_id", "session1", getValues(5000, 1));
+		assertTrue(writer.flush());
+
+		HashMap<String, String> sessions = readSessions();
+		assertEquals("0/0", sessions.get("session0"));
+		assertEquals("5000/1", sessions.get("session1"));
+		assertEquals(1, writer.getRejectedWrites());
+		assertTrue(new File(journal.getPath() + HistoryWriter.REJECTED_SUFFIX).length() > 0);
+		assertEquals(0, journal.length());
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		byte[] data = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < data.length) {
+				offset += in.read(data, offset, data.length - offset);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+
+	private static void writeFile(File file, byte[] data) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.orangelabs.rcs.provider.eab;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.gsma.services.rcs.capability.CapabilitiesLog;
+import com.orangelabs.rcs.core.ims.service.ContactInfo;
+import com.orangelabs.rcs.core.ims.service.capability.Capabilities;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+
+/**
+ * Contact info cache, and polling of a 5,000 contacts address book
+ */
+public class ContactInfoCacheTest extends AndroidTestCase {
+	private static final String TAG = "ContactInfoCacheTest";
+
+	private static final int CONTACTS = 5000;
+
+	private static final String PREFIX = "+3361234";
+
+	private ContactsManager contactsManager;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		RcsSettings.createInstance(mContext);
+		ContactsManager.createInstance(mContext);
+		contactsManager = ContactsManager.getInstance();
+		deleteContacts();
+
+		ContentValues[] rows = new ContentValues[CONTACTS];
+		for (int i = 0; i < CONTACTS; i++) {
+			ContentValues values = new ContentValues();
+			values.put(RichAddressBookData.KEY_CONTACT_NUMBER, getContact(i));
+			values.put(RichAddressBookData.KEY_RCS_STATUS, ContactInfo.RCS_CAPABLE);
+			values.put(RichAddressBookData.KEY_REGISTRATION_STATE, ContactInfo.REGISTRATION_STATUS_ONLINE);
+			values.put(RichAddressBookData.KEY_CAPABILITY_IM_SESSION, CapabilitiesLog.SUPPORTED);
+			values.put(RichAddressBookData.KEY_CAPABILITY_TIMESTAMP, i);
+			values.put(RichAddressBookData.KEY_PRESENCE_PHOTO_EXIST_FLAG, RichAddressBookData.FALSE_VALUE);
+			rows[i] = values;
+		}
+		mContext.getContentResolver().bulkInsert(RichAddressBookData.CONTENT_URI, rows);
+		contactsManager.getContactInfoCache().clear();
+		contactsManager.getContactInfoCache().resetStatistics();
+	}
+
+	protected void tearDown() throws Exception {
+		deleteContacts();
+
+		super.tearDown();
+	}
+
+	private void deleteContacts() {
+		mContext.getContentResolver().delete(RichAddressBookData.CONTENT_URI,
+				RichAddressBookData.KEY_CONTACT_NUMBER + " LIKE ?", new String[] { PREFIX + "%" });
+		contactsManager.getContactInfoCache().clear();
+	}
+
+	private static String getContact(int i) {
+		return PREFIX + String.format("%04d", i);
+	}
+
+	/**
+	 * Read the capabilities of all the contacts, as done by the polling
+	 *
+	 * @return Duration in milliseconds
+	 */
+	private long poll() {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < CONTACTS; i++) {
+			Capabilities capabilities = contactsManager.getContactCapabilities(getContact(i));
+			assertNotNull(capabilities);
+			assertTrue(capabilities.isImSessionSupported());
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	public void testPolling() {
+		ContactInfoCache cache = contactsManager.getContactInfoCache();
+
+		long first = poll();
+		assertEquals(CONTACTS, cache.getMissCount());
+
+		long second = poll();
+		assertEquals(CONTACTS, cache.getMissCount());
+		assertEquals(CONTACTS, cache.getHitCount());
+
+		Log.i(TAG, "Polling " + CONTACTS + " contacts: " + first + " ms from the EAB, " + second + " ms from the cache");
+	}
+
+	public void testWriteThrough() {
+		String contact = getContact(0);
+		Capabilities capabilities = contactsManager.getContactCapabilities(contact);
+
+		// The returned capabilities are a copy
+		capabilities.setImSessionSupport(false);
+		assertTrue(contactsManager.getContactCapabilities(contact).isImSessionSupported());
+
+		capabilities.setVideoSharingSupport(true);
+		contactsManager.setContactCapabilities(contact, capabilities);
+		long misses = contactsManager.getContactInfoCache().getMissCount();
+		assertTrue(contactsManager.getContactCapabilities(contact).isVideoSharingSupported());
+		assertEquals(misses, contactsManager.getContactInfoCache().getMissCount());
+
+		// Same result once reloaded from the EAB
+		contactsManager.getContactInfoCache().remove(contact);
+		assertTrue(contactsManager.getContactCapabilities(contact).isVideoSharingSupported());
+	}
+
+	public void testEviction() {
+		ContactInfoCache cache = new ContactInfoCache(2);
+		ContactInfo info = new ContactInfo();
+		cache.put("1", new ContactInfoCache.Entry(info, -1, false, null));
+		cache.put("2", new ContactInfoCache.Entry(info, -1, false, null));
+		assertNotNull(cache.get("1"));
+		cache.put("3", new ContactInfoCache.Entry(info, -1, false, null));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("2"));
+		assertNotNull(cache.get("1"));
+
+		// An entry read before a write is discarded
+		long version = cache.getVersion();
+		cache.remove("1");
+		cache.add("1", new ContactInfoCache.Entry(info, -1, false, null), version);
+		assertNull(cache.get("1"));
+	}
+}
@@ -0,0 +1,165 @@
+package com.orangelabs.rcs.provider.messaging;
+
+import java.io.File;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.gsma.services.rcs.chat.ChatLog;
+import com.orangelabs.rcs.provider.HistoryWriter;
+
+/**
+ * Latency of the IMDN status updates on the chat provider depending on the
+ * number of stored messages, written one by one or batched by the history
+ * writer
+ */
+public class ImdnUpdateBenchmark extends AndroidTestCase {
+	private static final String TAG = "ImdnUpdateBenchmark";
+
+	private static final String PREFIX = "imdn_benchmark.";
+
+	private static final String AUTHORITY = "com.orangelabs.rcs.chat";
+
+	private static final int UPDATES = 200;
+
+	private static final int CHATS = 100;
+
+	private Context context;
+
+	private MockContentResolver resolver;
+
+	private ChatProvider provider;
+
+	private HistoryWriter writer;
+
+	private File journal;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		// Provider on its own database, observers are not notified
+		resolver = new MockContentResolver();
+		context = new IsolatedContext(resolver, new RenamingDelegatingContext(mContext, PREFIX));
+		context.deleteDatabase(ChatProvider.DATABASE_NAME);
+		journal = new File(context.getFilesDir(), PREFIX + HistoryWriter.JOURNAL_FILE);
+		journal.delete();
+	}
+
+	protected void tearDown() throws Exception {
+		if (writer != null) {
+			writer.terminate();
+		}
+		context.deleteDatabase(ChatProvider.DATABASE_NAME);
+		journal.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Create the chat database with the given number of messages
+	 */
+	private void createDatabase(int messages) {
+		SQLiteDatabase db = context.openOrCreateDatabase(ChatProvider.DATABASE_NAME, 0, null);
+		try {
+			ChatProvider.getMigration().create(db);
+			db.setVersion(ChatProvider.getMigration().getVersion());
+
+			SQLiteStatement insert = db.compileStatement("INSERT INTO message ("
+					+ MessageData.KEY_CHAT_ID + "," + MessageData.KEY_CONTACT + "," + MessageData.KEY_MSG_ID + ","
+					+ MessageData.KEY_TYPE + "," + MessageData.KEY_CONTENT + "," + MessageData.KEY_CONTENT_TYPE + ","
+					+ MessageData.KEY_DIRECTION + "," + MessageData.KEY_STATUS + "," + MessageData.KEY_TIMESTAMP
+					+ ") VALUES (?,?,?,?,?,?,?,?,?)");
+			byte[] body = new byte[100];
+			db.beginTransaction();
+			try {
+				for (int i = 0; i < messages; i++) {
+					String contact = "+3360000" + (i % CHATS);
+					insert.bindString(1, contact);
+					insert.bindString(2, contact);
+					insert.bindString(3, "msg" + i);
+					insert.bindLong(4, ChatLog.Message.Type.CONTENT);
+					insert.bindBlob(5, body);
+					insert.bindString(6, "text/plain");
+					insert.bindLong(7, ChatLog.Message.Direction.OUTGOING);
+					insert.bindLong(8, ChatLog.Message.Status.Content.SENT);
+					insert.bindLong(9, i);
+					insert.executeInsert();
+				}
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+			insert.close();
+		} finally {
+			db.close();
+		}
+
+		provider = new ChatProvider();
+		provider.attachInfo(context, null);
+		resolver.addProvider(AUTHORITY, provider);
+	}
+
+	/**
+	 * Returns the ID of the message updated by the given IMDN
+	 */
+	private static String getMessageId(int update, int messages) {
+		return "msg" + ((update * 7919L) % messages);
+	}
+
+	/**
+	 * Returns the average time of a delivery status update written directly
+	 * in the provider, in microseconds
+	 */
+	private long measureDirectUpdates(int messages) {
+		long start = System.nanoTime();
+		for (int i = 0; i < UPDATES; i++) {
+			ContentValues values = RichMessagingHistory.getStatusValues(ChatLog.Message.Status.Content.UNREAD);
+			assertEquals(1, resolver.update(MessageData.CONTENT_URI, values, MessageData.KEY_MSG_ID + " = ?",
+					new String[] { getMessageId(i, messages) }));
+		}
+		return (System.nanoTime() - start) / UPDATES / 1000;
+	}
+
+	/**
+	 * Returns the average time of a display status update queued in the
+	 * history writer until all the updates are committed, in microseconds
+	 */
+	private long measureBatchedUpdates(int messages) {
+		writer = new HistoryWriter(resolver, journal);
+		writer.start();
+		long start = System.nanoTime();
+		for (int i = 0; i < UPDATES; i++) {
+			writer.update(MessageData.CONTENT_URI, MessageData.KEY_MSG_ID, getMessageId(i, messages),
+					RichMessagingHistory.getStatusValues(ChatLog.Message.Status.Content.READ));
+		}
+		assertTrue(writer.flush());
+		return (System.nanoTime() - start) / UPDATES / 1000;
+	}
+
+	private void run(int messages) {
+		createDatabase(messages);
+		// The batched updates run first, the direct ones get the warm cache
+		long batched = measureBatchedUpdates(messages);
+		long direct = measureDirectUpdates(messages);
+		Log.i(TAG, messages + " messages: " + direct + " us per update, " + batched + " us per batched update");
+		assertTrue(batched < direct);
+	}
+
+	public void test10k() {
+		run(10000);
+	}
+
+	public void test100k() {
+		run(100000);
+	}
+
+	public void test1M() {
+		run(1000000);
+	}
+}
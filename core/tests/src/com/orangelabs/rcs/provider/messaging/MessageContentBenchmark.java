@@ -0,0 +1,147 @@
+package com.orangelabs.rcs.provider.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.gsma.services.rcs.chat.ChatLog;
+import com.gsma.services.rcs.chat.Geoloc;
+
+/**
+ * Throughput of the message content encoding, compared to an
+ * ObjectOutputStream writing the same Java serialization, and compatibility
+ * with the readers of the previous versions
+ */
+public class MessageContentBenchmark extends TestCase {
+	private static final String TAG = "MessageContentBenchmark";
+
+	private static final int MESSAGES = 100000;
+
+	private Geoloc[] createCorpus() {
+		Random random = new Random(0);
+		Geoloc[] corpus = new Geoloc[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++) {
+			String label = (i % 4 == 0) ? null : "Place " + i;
+			corpus[i] = new Geoloc(label, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+					random.nextLong(), random.nextFloat() * 100);
+		}
+		return corpus;
+	}
+
+	private static byte[] serialize(Geoloc geoloc) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream os = new ObjectOutputStream(bos);
+		os.writeObject(geoloc);
+		os.close();
+		return bos.toByteArray();
+	}
+
+	private static Geoloc deserialize(byte[] blob) throws Exception {
+		ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(blob));
+		Geoloc geoloc = (Geoloc)is.readObject();
+		is.close();
+		return geoloc;
+	}
+
+	private static void assertGeolocEquals(Geoloc expected, Geoloc actual) {
+		assertNotNull(actual);
+		assertEquals(expected.getLabel(), actual.getLabel());
+		assertEquals(expected.getLatitude(), actual.getLatitude());
+		assertEquals(expected.getLongitude(), actual.getLongitude());
+		assertEquals(expected.getExpiration(), actual.getExpiration());
+		assertEquals(expected.getAccuracy(), actual.getAccuracy());
+	}
+
+	private static void assertSerialized(Geoloc geoloc) throws Exception {
+		byte[] blob = ChatLog.getBlobFromGeoloc(geoloc);
+		assertTrue(ChatLog.isSerializedGeolocBlob(blob));
+		assertTrue(Arrays.equals(serialize(geoloc), blob));
+		assertGeolocEquals(geoloc, deserialize(blob));
+		assertGeolocEquals(geoloc, ChatLog.getGeolocFromBlob(blob));
+	}
+
+	public void testRoundTrip() throws Exception {
+		assertSerialized(new Geoloc("Caf\u00e9 \u6771\u4eac", 48.85, 2.35, 1000L, 12.5f));
+		assertSerialized(new Geoloc(null, -1, -2, 0L, 0f));
+		assertSerialized(new Geoloc("", Double.NaN, Double.MAX_VALUE, Long.MIN_VALUE, Float.MIN_VALUE));
+
+		// Label longer than the short string format
+		char[] label = new char[30000];
+		Arrays.fill(label, '\u6771');
+		assertSerialized(new Geoloc(new String(label), 1, 2, 3L, 4f));
+
+		String text = "Hello \u00e9\u00e8 \u6771\u4eac";
+		assertEquals(text, ChatLog.getTextFromBlob(ChatLog.getBlobFromText(text)));
+	}
+
+	public void testLegacyFormat() throws Exception {
+		Geoloc geoloc = new Geoloc("Home", 48.85, 2.35, 1000L, 12.5f);
+		byte[] legacy = serialize(geoloc);
+		assertTrue(ChatLog.isSerializedGeolocBlob(legacy));
+		assertGeolocEquals(geoloc, ChatLog.getGeolocFromBlob(legacy));
+	}
+
+	public void testCompactFormat() throws Exception {
+		// Compact encoding written by the version 12 of the chat provider
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream os = new DataOutputStream(bos);
+		os.writeByte(1);
+		os.writeDouble(48.85);
+		os.writeDouble(2.35);
+		os.writeLong(1000L);
+		os.writeFloat(12.5f);
+		os.writeBoolean(true);
+		os.writeUTF("Home");
+		os.close();
+		byte[] compact = bos.toByteArray();
+		assertFalse(ChatLog.isSerializedGeolocBlob(compact));
+		assertGeolocEquals(new Geoloc("Home", 48.85, 2.35, 1000L, 12.5f), ChatLog.getGeolocFromBlob(compact));
+	}
+
+	public void testCorpus() throws Exception {
+		Geoloc[] corpus = createCorpus();
+		byte[][] legacy = new byte[MESSAGES][];
+		byte[][] blobs = new byte[MESSAGES][];
+
+		long start = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			legacy[i] = serialize(corpus[i]);
+		}
+		long legacyWrite = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			blobs[i] = ChatLog.getBlobFromGeoloc(corpus[i]);
+		}
+		long blobWrite = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			deserialize(legacy[i]);
+		}
+		long legacyRead = (System.nanoTime() - start) / 1000000;
+
+		start = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			assertNotNull(ChatLog.getGeolocFromBlob(blobs[i]));
+		}
+		long blobRead = (System.nanoTime() - start) / 1000000;
+
+		for (int i = 0; i < MESSAGES; i += 997) {
+			assertTrue(Arrays.equals(legacy[i], blobs[i]));
+			assertGeolocEquals(corpus[i], ChatLog.getGeolocFromBlob(blobs[i]));
+		}
+
+		Log.i(TAG, MESSAGES + " geolocs");
+		Log.i(TAG, "Write: " + legacyWrite + " ms with ObjectOutputStream, " + blobWrite + " ms with ChatLog");
+		Log.i(TAG, "Read: " + legacyRead + " ms with ObjectInputStream, " + blobRead + " ms with ChatLog");
+	}
+}
@@ -0,0 +1,159 @@
+package com.orangelabs.rcs.provider.messaging;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.gsma.services.rcs.chat.ChatLog;
+
+/**
+ * Keyset pages of messages and conversation summaries, and cost of a page
+ * compared to a full conversation read
+ */
+public class MessagePageTest extends TestCase {
+	private static final String TAG = "MessagePageTest";
+
+	private static final String CHAT_ID = "+33600000000";
+
+	private static final String[] PROJECTION = { MessageData.KEY_ID, MessageData.KEY_TIMESTAMP };
+
+	private SQLiteDatabase db;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		db = SQLiteDatabase.create(null);
+		ChatProvider.getMigration().create(db);
+	}
+
+	protected void tearDown() throws Exception {
+		db.close();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Insert messages with a body of 1 KB, several messages sharing the same timestamp
+	 */
+	private void insertMessages(String chatId, int messages, int status) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO message ("
+				+ MessageData.KEY_CHAT_ID + "," + MessageData.KEY_MSG_ID + "," + MessageData.KEY_TYPE + ","
+				+ MessageData.KEY_DIRECTION + "," + MessageData.KEY_STATUS + "," + MessageData.KEY_CONTENT + ","
+				+ MessageData.KEY_TIMESTAMP + ") VALUES (?,?,?,?,?,?,?)");
+		byte[] body = new byte[1024];
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < messages; i++) {
+				insert.bindString(1, chatId);
+				insert.bindString(2, chatId + "-" + i);
+				insert.bindLong(3, ChatLog.Message.Type.CONTENT);
+				insert.bindLong(4, ChatLog.Message.Direction.INCOMING);
+				insert.bindLong(5, status);
+				insert.bindBlob(6, body);
+				insert.bindLong(7, i / 3);
+				insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		insert.close();
+	}
+
+	private Cursor queryConversation(String chatId) {
+		Cursor cursor = db.query("conversation", null, ConversationData.KEY_CHAT_ID + "=?",
+				new String[] { chatId }, null, null, null);
+		assertTrue(cursor.moveToFirst());
+		return cursor;
+	}
+
+	public void testPages() {
+		insertMessages(CHAT_ID, 1000, ChatLog.Message.Status.Content.READ);
+		insertMessages("+33600000001", 100, ChatLog.Message.Status.Content.READ);
+
+		int read = 0;
+		long lastTimestamp = Long.MAX_VALUE;
+		long lastId = Long.MAX_VALUE;
+		Cursor page = PagedQuery.query(db, "message", ChatLog.Message.getPageUri(CHAT_ID, 64), PROJECTION,
+				null, null, null, MessageData.KEY_CHAT_ID, MessageData.KEY_TIMESTAMP, MessageData.KEY_ID);
+		while (page.getCount() > 0) {
+			while (page.moveToNext()) {
+				long id = page.getLong(0);
+				long timestamp = page.getLong(1);
+				assertTrue(timestamp < lastTimestamp || (timestamp == lastTimestamp && id < lastId));
+				lastId = id;
+				lastTimestamp = timestamp;
+				read++;
+			}
+			page.close();
+			page = PagedQuery.query(db, "message", ChatLog.Message.getPageUri(CHAT_ID, lastTimestamp, lastId, 64),
+					PROJECTION, null, null, null, MessageData.KEY_CHAT_ID, MessageData.KEY_TIMESTAMP,
+					MessageData.KEY_ID);
+		}
+		page.close();
+		assertEquals(1000, read);
+	}
+
+	public void testConversationSummary() {
+		insertMessages(CHAT_ID, 10, ChatLog.Message.Status.Content.UNREAD);
+		Cursor cursor = queryConversation(CHAT_ID);
+		assertEquals(10, cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.MESSAGE_COUNT)));
+		assertEquals(10, cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.UNREAD_COUNT)));
+		assertEquals(CHAT_ID + "-9", cursor.getString(cursor.getColumnIndex(ChatLog.Conversation.MESSAGE_ID)));
+		cursor.close();
+
+		// Read messages
+		ContentValues values = new ContentValues();
+		values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.READ);
+		db.update("message", values, MessageData.KEY_MSG_ID + " IN (?,?)", new String[] { CHAT_ID + "-0", CHAT_ID + "-9" });
+		cursor = queryConversation(CHAT_ID);
+		assertEquals(8, cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.UNREAD_COUNT)));
+		assertEquals(ChatLog.Message.Status.Content.READ,
+				cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.MESSAGE_STATUS)));
+		cursor.close();
+
+		// Delete the last message
+		db.delete("message", MessageData.KEY_MSG_ID + "=?", new String[] { CHAT_ID + "-9" });
+		cursor = queryConversation(CHAT_ID);
+		assertEquals(9, cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.MESSAGE_COUNT)));
+		assertEquals(8, cursor.getInt(cursor.getColumnIndex(ChatLog.Conversation.UNREAD_COUNT)));
+		assertEquals(CHAT_ID + "-8", cursor.getString(cursor.getColumnIndex(ChatLog.Conversation.MESSAGE_ID)));
+		cursor.close();
+
+		// Delete the conversation
+		db.delete("message", MessageData.KEY_CHAT_ID + "=?", new String[] { CHAT_ID });
+		cursor = db.query("conversation", null, null, null, null, null, null);
+		assertEquals(0, cursor.getCount());
+		cursor.close();
+	}
+
+	public void testPageCost() {
+		insertMessages(CHAT_ID, 20000, ChatLog.Message.Status.Content.READ);
+
+		long start = System.nanoTime();
+		Cursor cursor = db.query("message", null, MessageData.KEY_CHAT_ID + "=?", new String[] { CHAT_ID },
+				null, null, MessageData.KEY_TIMESTAMP + " DESC");
+		while (cursor.moveToNext()) {
+			cursor.getBlob(cursor.getColumnIndex(MessageData.KEY_CONTENT));
+		}
+		cursor.close();
+		long full = (System.nanoTime() - start) / 1000;
+
+		start = System.nanoTime();
+		cursor = PagedQuery.query(db, "message", ChatLog.Message.getPageUri(CHAT_ID, 50), null,
+				new String[] { MessageData.KEY_ID, MessageData.KEY_TIMESTAMP, MessageData.KEY_STATUS }, null, null,
+				MessageData.KEY_CHAT_ID, MessageData.KEY_TIMESTAMP, MessageData.KEY_ID);
+		while (cursor.moveToNext()) {
+			cursor.getLong(0);
+		}
+		cursor.close();
+		long paged = (System.nanoTime() - start) / 1000;
+
+		Log.i(TAG, "20000 messages: " + full + " us for the conversation, " + paged + " us for a page of 50");
+		assertTrue(paged < full);
+	}
+}
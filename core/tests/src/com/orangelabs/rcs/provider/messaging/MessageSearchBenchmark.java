@@ -0,0 +1,176 @@
+package com.orangelabs.rcs.provider.messaging;
+
+import java.util.Random;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.gsma.services.rcs.chat.ChatLog;
+
+/**
+ * Full-text search in the chat history: ranking, removal of the entries of
+ * deleted messages, indexing throughput and query latency
+ */
+public class MessageSearchBenchmark extends TestCase {
+	private static final String TAG = "MessageSearchBenchmark";
+
+	private static final String[] WORDS = { "hello", "meeting", "tomorrow", "photo", "lunch", "holiday",
+			"paris", "train", "call", "birthday", "office", "weekend", "dinner", "movie", "station", "airport" };
+
+	private static final int CHATS = 100;
+
+	private static final int QUERIES = 50;
+
+	private SQLiteDatabase db;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		db = SQLiteDatabase.create(null);
+		ChatProvider.getMigration().create(db);
+	}
+
+	protected void tearDown() throws Exception {
+		db.close();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Insert text messages and their index entries, returns the indexing
+	 * time in milliseconds
+	 */
+	private long insertMessages(int messages, Random random) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO message ("
+				+ MessageData.KEY_CHAT_ID + "," + MessageData.KEY_TYPE + "," + MessageData.KEY_CONTENT_TYPE + ","
+				+ MessageData.KEY_CONTENT + "," + MessageData.KEY_TIMESTAMP + ") VALUES (?,?,?,?,?)");
+		long indexing = 0;
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < messages; i++) {
+				StringBuilder text = new StringBuilder();
+				for (int j = random.nextInt(12); j >= 0; j--) {
+					text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+				}
+				String chatId = "+3360000" + (i % CHATS);
+				insert.bindString(1, chatId);
+				insert.bindLong(2, ChatLog.Message.Type.CONTENT);
+				insert.bindString(3, com.gsma.services.rcs.chat.ChatMessage.MIME_TYPE);
+				insert.bindBlob(4, ChatLog.getBlobFromText(text.toString()));
+				insert.bindLong(5, i);
+				long id = insert.executeInsert();
+
+				long start = System.nanoTime();
+				ChatProvider.insertSearchEntry(db, RichMessagingHistory.getSearchValues(
+						ChatLog.Search.Source.MESSAGE, id, chatId, i, text.toString()));
+				indexing += System.nanoTime() - start;
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		insert.close();
+		return indexing / 1000000;
+	}
+
+	private Cursor search(String text, int offset, int limit) {
+		return SearchQuery.query(db, "search_item", "search_text", "search_stats",
+				ChatLog.Search.getSearchUri(text, offset, limit), null);
+	}
+
+	public void testRanking() {
+		insertMessages(1000, new Random(1));
+		long id = ChatProvider.insertSearchEntry(db, RichMessagingHistory.getSearchValues(
+				ChatLog.Search.Source.GROUP_CHAT, 1, "group", 0, "Kayak kayak trip"));
+
+		Cursor cursor = search("kayak", 0, 10);
+		assertEquals(1, cursor.getCount());
+		assertTrue(cursor.moveToFirst());
+		assertEquals(id, cursor.getLong(cursor.getColumnIndex(ChatLog.Search.ID)));
+		assertEquals(ChatLog.Search.Source.GROUP_CHAT, cursor.getInt(cursor.getColumnIndex(ChatLog.Search.SOURCE)));
+		assertEquals("<b>Kayak</b> <b>kayak</b> trip", cursor.getString(cursor.getColumnIndex(ChatLog.Search.SNIPPET)));
+		cursor.close();
+
+		// Last word searched as a prefix, pages in descending rank
+		double lastRank = Double.MAX_VALUE;
+		int results = 0;
+		for (int offset = 0; ; offset += 20) {
+			cursor = search("paris holi", offset, 20);
+			if (cursor.getCount() == 0) {
+				cursor.close();
+				break;
+			}
+			while (cursor.moveToNext()) {
+				double rank = cursor.getDouble(cursor.getColumnIndex(ChatLog.Search.RANK));
+				assertTrue(rank <= lastRank);
+				assertTrue(cursor.getString(cursor.getColumnIndex(ChatLog.Search.SNIPPET)).contains("<b>"));
+				lastRank = rank;
+				results++;
+			}
+			cursor.close();
+		}
+		assertTrue(results > 0);
+	}
+
+	public void testDeletedMessage() {
+		insertMessages(100, new Random(2));
+		Cursor cursor = search("paris", 0, 1);
+		assertTrue(cursor.moveToFirst());
+		long messageId = cursor.getLong(cursor.getColumnIndex(ChatLog.Search.SOURCE_ID));
+		cursor.close();
+
+		assertEquals(1, db.delete("message", MessageData.KEY_ID + "=" + messageId, null));
+		cursor = db.rawQuery("SELECT COUNT(*) FROM search_item e, search_text t WHERE t.docid=e."
+				+ SearchData.KEY_ID + " AND e." + SearchData.KEY_SOURCE_ID + "=" + messageId, null);
+		assertTrue(cursor.moveToFirst());
+		assertEquals(0, cursor.getInt(0));
+		cursor.close();
+	}
+
+	public void testStatistics() {
+		assertEquals(3, SearchQuery.getLength("Kayak kayak trip"));
+		assertEquals(4, SearchQuery.getLength("l'\u00e9t\u00e9 \u00e0 Paris..."));
+		assertEquals(0, SearchQuery.getLength(" ,;"));
+
+		// Totals of the index kept up to date by the triggers
+		insertMessages(100, new Random(4));
+		db.delete("message", MessageData.KEY_ID + "<=10", null);
+		Cursor cursor = db.rawQuery("SELECT s." + SearchData.KEY_DOCUMENTS + ",s." + SearchData.KEY_LENGTH
+				+ ",(SELECT COUNT(*) FROM search_item),(SELECT SUM(" + SearchData.KEY_LENGTH
+				+ ") FROM search_item) FROM search_stats s", null);
+		assertTrue(cursor.moveToFirst());
+		assertEquals(90, cursor.getLong(0));
+		assertEquals(cursor.getLong(2), cursor.getLong(0));
+		assertEquals(cursor.getLong(3), cursor.getLong(1));
+		cursor.close();
+	}
+
+	public void testSearchText() {
+		assertEquals("hello", RichMessagingHistory.getSearchText(ChatLog.Message.Type.CONTENT,
+				com.gsma.services.rcs.chat.ChatMessage.MIME_TYPE, ChatLog.getBlobFromText("hello")));
+		assertNull(RichMessagingHistory.getSearchText(ChatLog.Message.Type.SPAM,
+				com.gsma.services.rcs.chat.ChatMessage.MIME_TYPE, ChatLog.getBlobFromText("hello")));
+		assertEquals("Home", RichMessagingHistory.getSearchText(ChatLog.Message.Type.CONTENT,
+				com.gsma.services.rcs.chat.GeolocMessage.MIME_TYPE, ChatLog.getBlobFromGeoloc(
+						new com.gsma.services.rcs.chat.Geoloc("Home", 48.8, 2.3, 0, 10))));
+	}
+
+	public void test1M() {
+		Random random = new Random(3);
+		long indexing = insertMessages(1000000, random);
+		Log.i(TAG, "1000000 messages indexed in " + indexing + " ms");
+
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			Cursor cursor = search(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+					.substring(0, 3), 0, 20);
+			assertTrue(cursor.getCount() > 0);
+			cursor.close();
+		}
+		Log.i(TAG, "Query of 1000000 messages: " + (System.nanoTime() - start) / QUERIES / 1000 + " us");
+	}
+}
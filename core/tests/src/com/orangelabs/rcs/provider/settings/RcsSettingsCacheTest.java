@@ -0,0 +1,111 @@
+package com.orangelabs.rcs.provider.settings;
+
+import java.util.Vector;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Settings cache, and micro-benchmark of the getters with and without it
+ */
+public class RcsSettingsCacheTest extends AndroidTestCase {
+	private static final String TAG = "RcsSettingsCacheTest";
+
+	private static final int ITERATIONS = 1000;
+
+	private RcsSettings settings;
+
+	private boolean serviceActivated;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		RcsSettings.createInstance(mContext);
+		settings = RcsSettings.getInstance();
+		serviceActivated = settings.isServiceActivated();
+	}
+
+	protected void tearDown() throws Exception {
+		settings.setServiceActivationState(serviceActivated);
+
+		super.tearDown();
+	}
+
+	/**
+	 * Read a parameter from the provider, as done before the cache
+	 */
+	private String query(ContentResolver cr, String key) {
+		String result = null;
+		Cursor c = cr.query(RcsSettingsData.CONTENT_URI, null,
+				RcsSettingsData.KEY_KEY + "='" + key + "'", null, null);
+		if (c != null) {
+			if (c.moveToFirst()) {
+				result = c.getString(2);
+			}
+			c.close();
+		}
+		return result;
+	}
+
+	public void testWriteThrough() {
+		final Vector<String> changes = new Vector<String>();
+		RcsSettingsListener listener = new RcsSettingsListener() {
+			public void handleSettingChanged(String key, String value) {
+				changes.addElement(key + "=" + value);
+			}
+		};
+		settings.addSettingsListener(listener);
+		try {
+			settings.setServiceActivationState(!serviceActivated);
+			assertEquals(!serviceActivated, settings.isServiceActivated());
+			assertEquals(Boolean.toString(!serviceActivated),
+					query(mContext.getContentResolver(), RcsSettingsData.SERVICE_ACTIVATED));
+			assertEquals(1, changes.size());
+			assertEquals(RcsSettingsData.SERVICE_ACTIVATED + "=" + !serviceActivated, changes.elementAt(0));
+
+			// Same value, no notification
+			settings.setServiceActivationState(!serviceActivated);
+			assertEquals(1, changes.size());
+		} finally {
+			settings.removeSettingsListener(listener);
+		}
+	}
+
+	public void testExternalChange() throws Exception {
+		settings.isServiceActivated();
+
+		// Change the provider as another process would
+		ContentValues values = new ContentValues();
+		values.put(RcsSettingsData.KEY_VALUE, Boolean.toString(!serviceActivated));
+		mContext.getContentResolver().update(RcsSettingsData.CONTENT_URI, values,
+				RcsSettingsData.KEY_KEY + "='" + RcsSettingsData.SERVICE_ACTIVATED + "'", null);
+
+		// The observer is notified asynchronously
+		for (int i = 0; i < 50 && settings.isServiceActivated() == serviceActivated; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(!serviceActivated, settings.isServiceActivated());
+	}
+
+	public void testGetterCost() {
+		ContentResolver cr = mContext.getContentResolver();
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			Boolean.parseBoolean(query(cr, RcsSettingsData.CHAT_DISPLAYED_NOTIFICATION));
+		}
+		long uncached = (System.nanoTime() - start) / ITERATIONS;
+
+		settings.isImDisplayedNotificationActivated();
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			settings.isImDisplayedNotificationActivated();
+		}
+		long cached = (System.nanoTime() - start) / ITERATIONS;
+
+		Log.i(TAG, "Getter cost: " + uncached + " ns without cache, " + cached + " ns with cache");
+		assertTrue(cached < uncached);
+	}
+}
@@ -0,0 +1,122 @@
+package com.orangelabs.rcs.provisioning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+
+/**
+ * Changes between provisioning documents: hash of the documents, changes
+ * of the settings and impact of the changes
+ */
+public class ProvisioningDeltaTest extends InstrumentationTestCase {
+	private static final String TAG = "ProvisioningDeltaTest";
+
+	private static final String BLACKBIRD = "template-ota_config-Blackbird.xml";
+
+	private String content;
+
+	private Map<String, String> current;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		InputStream in = getInstrumentation().getContext().getAssets().open(BLACKBIRD);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			content = out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+		current = read(content);
+	}
+
+	private Map<String, String> read(String document) {
+		ProvisioningParser parser = new ProvisioningParser(document);
+		assertTrue(parser.read(RcsSettingsData.VALUE_GSMA_REL_ALBATROS));
+		return parser.getParameters();
+	}
+
+	/**
+	 * Document of the template with a parameter changed
+	 */
+	private String change(String name, String value) {
+		String parm = "<parm name=\"" + name + "\" value=\"";
+		int start = content.indexOf(parm);
+		assertTrue(start != -1);
+		start += parm.length();
+		return content.substring(0, start) + value + content.substring(content.indexOf('"', start));
+	}
+
+	public void testHash() {
+		String hash = ProvisioningDelta.hash(content);
+		assertEquals(40, hash.length());
+		assertEquals(hash, ProvisioningDelta.hash(new String(content)));
+		assertFalse(hash.equals(ProvisioningDelta.hash(change("TimerIdle", "181"))));
+	}
+
+	public void testUnchanged() {
+		ProvisioningDelta delta = new ProvisioningDelta(current, read(content));
+		assertTrue(delta.getChanges().isEmpty());
+		assertTrue(delta.getValues().isEmpty());
+		assertEquals(ProvisioningDelta.HOT_RELOAD, delta.getImpact());
+	}
+
+	public void testImpacts() {
+		// Read again on use
+		ProvisioningDelta delta = new ProvisioningDelta(current, read(change("TimerIdle", "181")));
+		assertEquals(1, delta.getChanges().size());
+		ProvisioningDelta.Change change = delta.getChanges().firstElement();
+		assertEquals(RcsSettingsData.CHAT_IDLE_DURATION, change.getKey());
+		assertEquals(current.get(RcsSettingsData.CHAT_IDLE_DURATION), change.getOldValue());
+		assertEquals("181", change.getNewValue());
+		assertEquals(ProvisioningDelta.HOT_RELOAD, delta.getImpact());
+
+		// Feature tag of the REGISTER
+		delta = new ProvisioningDelta(current, read(change("vsAuth", "0")));
+		assertEquals(1, delta.getChanges().size());
+		assertEquals(RcsSettingsData.FALSE, delta.getValues().get(RcsSettingsData.CAPABILITY_VIDEO_SHARING));
+		assertEquals(ProvisioningDelta.REGISTRATION, delta.getImpact());
+
+		// Proxy of the IMS
+		delta = new ProvisioningDelta(current, read(change("Address", "10.0.0.1:5061")));
+		assertEquals(4, delta.getChanges().size());
+		assertEquals(ProvisioningDelta.RESTART, delta.getImpact());
+	}
+
+	public void testClassification() {
+		for (String key : ProvisioningParser.getKeys()) {
+			assertTrue("Impact of " + key + " not classified", ProvisioningDelta.isClassified(key));
+		}
+
+		// Cached by the services created with the stack
+		assertEquals(ProvisioningDelta.RESTART, ProvisioningDelta.getImpact(RcsSettingsData.CAPABILITY_POLLING_PERIOD));
+		assertEquals(ProvisioningDelta.RESTART, ProvisioningDelta.getImpact(RcsSettingsData.TEL_URI_FORMAT));
+		Log.i(TAG, ProvisioningParser.getKeys().size() + " settings classified");
+	}
+
+	public void testFirstProvisioning() {
+		ProvisioningDelta delta = new ProvisioningDelta(new HashMap<String, String>(), current);
+		assertEquals(current.size(), delta.getChanges().size());
+		assertNull(delta.getChanges().firstElement().getOldValue());
+		assertEquals(ProvisioningDelta.RESTART, delta.getImpact());
+
+		int[] impacts = new int[3];
+		for (ProvisioningDelta.Change change : delta.getChanges()) {
+			impacts[change.getImpact()]++;
+		}
+		Log.i(TAG, current.size() + " settings: " + impacts[ProvisioningDelta.HOT_RELOAD] + " read again on use, "
+				+ impacts[ProvisioningDelta.REGISTRATION] + " sent in the REGISTER, "
+				+ impacts[ProvisioningDelta.RESTART] + " read when the stack starts");
+	}
+}
@@ -0,0 +1,161 @@
+package com.orangelabs.rcs.provisioning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Hashtable;
+import java.util.Map;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+
+/**
+ * Parsing of the provisioning templates: settings read, parse time of a
+ * large document and settings written when a document is applied again
+ */
+public class ProvisioningParserBenchmark extends InstrumentationTestCase {
+	private static final String TAG = "ProvisioningParserBenchmark";
+
+	private static final String ALBATROS = "template-ota_config-Albatros.xml";
+
+	private static final String BLACKBIRD = "template-ota_config-Blackbird.xml";
+
+	private static final int ITERATIONS = 20;
+
+	private RcsSettings settings;
+
+	/**
+	 * Values of the settings before the test
+	 */
+	private Hashtable<String, String> saved = new Hashtable<String, String>();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		RcsSettings.createInstance(getInstrumentation().getTargetContext());
+		settings = RcsSettings.getInstance();
+	}
+
+	protected void tearDown() throws Exception {
+		settings.writeParameters(saved);
+
+		super.tearDown();
+	}
+
+	private String load(String name) throws Exception {
+		InputStream in = getInstrumentation().getContext().getAssets().open(name);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read a document without writing the settings
+	 */
+	private ProvisioningParser read(String content) throws Exception {
+		ProvisioningParser parser = new ProvisioningParser(content);
+		assertTrue(parser.read(RcsSettingsData.VALUE_GSMA_REL_ALBATROS));
+		return parser;
+	}
+
+	/**
+	 * Parse a document, the settings being restored at the end of the test
+	 */
+	private ProvisioningParser parse(String content) throws Exception {
+		for (String key : read(content).getParameters().keySet()) {
+			String value = settings.readParameter(key);
+			if ((value != null) && !saved.containsKey(key)) {
+				saved.put(key, value);
+			}
+		}
+		ProvisioningParser parser = new ProvisioningParser(content);
+		assertTrue(parser.parse(RcsSettingsData.VALUE_GSMA_REL_ALBATROS));
+		return parser;
+	}
+
+	public void testTemplates() throws Exception {
+		ProvisioningParser parser = read(load(ALBATROS));
+		Map<String, String> parameters = parser.getParameters();
+		assertEquals("13", parser.getProvisioningInfo().getVersion());
+		assertEquals(604800, parser.getProvisioningInfo().getValidity());
+		assertTrue(parser.getProvisioningInfo().getAcceptBtn());
+		assertFalse(parser.getProvisioningInfo().getRejectBtn());
+		assertEquals("my_ims_apn", parameters.get(RcsSettingsData.RCS_APN));
+		assertEquals("2000", parameters.get(RcsSettingsData.SIP_TIMER_T1));
+		assertEquals("+__s__MSISDN__e__", parameters.get(RcsSettingsData.USERPROFILE_IMS_USERNAME));
+		assertEquals("15000", parameters.get(RcsSettingsData.MAX_IMAGE_SHARE_SIZE));
+		assertEquals("" + RcsSettingsData.VALUE_GSMA_REL_ALBATROS, parameters.get(RcsSettingsData.KEY_GSMA_RELEASE));
+		Log.i(TAG, ALBATROS + ": " + parameters.size() + " settings");
+
+		parser = read(load(BLACKBIRD));
+		parameters = parser.getParameters();
+		assertEquals("" + RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD, parameters.get(RcsSettingsData.KEY_GSMA_RELEASE));
+		assertEquals(RcsSettingsData.TRUE, parameters.get(RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH));
+		Log.i(TAG, BLACKBIRD + ": " + parameters.size() + " settings");
+
+		// Version only, the GSMA release is unchanged
+		parser = new ProvisioningParser("<wap-provisioningdoc version=\"1.1\"><characteristic type=\"VERS\">"
+				+ "<parm name=\"version\" value=\"-1\"/><parm name=\"validity\" value=\"0\"/>"
+				+ "</characteristic></wap-provisioningdoc>");
+		assertTrue(parser.read(RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD));
+		assertEquals("-1", parser.getProvisioningInfo().getVersion());
+		assertEquals("" + RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD,
+				parser.getParameters().get(RcsSettingsData.KEY_GSMA_RELEASE));
+
+		assertFalse(new ProvisioningParser("<wap-provisioningdoc/>").read(RcsSettingsData.VALUE_GSMA_REL_ALBATROS));
+	}
+
+	public void testParseTime() throws Exception {
+		String content = load(BLACKBIRD);
+
+		// Large document made of the applications of the template repeated
+		int start = content.indexOf("<characteristic type=\"APPLICATION\"");
+		int end = content.lastIndexOf("</wap-provisioningdoc>");
+		StringBuffer large = new StringBuffer(content.substring(0, end));
+		for (int i = 0; i < 50; i++) {
+			large.append(content.substring(start, end));
+		}
+		large.append("</wap-provisioningdoc>");
+
+		String[] documents = { content, large.toString() };
+		for (String document : documents) {
+			read(document);
+			long time = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				read(document);
+			}
+			time = (System.nanoTime() - time) / ITERATIONS;
+			Log.i(TAG, document.length() + " bytes parsed in " + (time / 1000) + " us");
+		}
+	}
+
+	public void testWrites() throws Exception {
+		ProvisioningParser albatros = parse(load(ALBATROS));
+		ProvisioningParser blackbird = parse(load(BLACKBIRD));
+		int settingsCount = blackbird.getParameters().size();
+		assertTrue(blackbird.getWrittenParameters() > 0);
+		assertTrue(blackbird.getWrittenParameters() <= settingsCount);
+
+		// Same document again, nothing to write
+		long time = System.nanoTime();
+		ProvisioningParser again = parse(load(BLACKBIRD));
+		time = System.nanoTime() - time;
+		assertEquals(0, again.getWrittenParameters());
+		assertEquals(blackbird.getParameters().get(RcsSettingsData.SIP_TIMER_T1),
+				settings.readParameter(RcsSettingsData.SIP_TIMER_T1));
+
+		Log.i(TAG, albatros.getWrittenParameters() + " then " + blackbird.getWrittenParameters() + " of "
+				+ settingsCount + " settings written, 0 written in " + (time / 1000)
+				+ " us when the document is applied again");
+	}
+}
@@ -0,0 +1,196 @@
+package com.orangelabs.rcs.provisioning.https;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.orangelabs.rcs.provisioning.ProvisioningDelta;
+
+/**
+ * Requests of the provisioning client to a local server replaying a
+ * template: connections reused, conditional requests and retry timeouts
+ * after a 503
+ */
+public class HttpsProvisioningClientTest extends InstrumentationTestCase {
+	private static final String TAG = "HttpsProvisioningClientTest";
+
+	private static final String ALBATROS = "template-ota_config-Albatros.xml";
+
+	private static final int FLOWS = 10;
+
+	private byte[] document;
+
+	private String etag;
+
+	private ServerSocket serverSocket;
+
+	private Thread server;
+
+	/**
+	 * Connections accepted by the server
+	 */
+	private volatile int connections = 0;
+
+	private HttpsProvisioningClient client;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		InputStream in = getInstrumentation().getContext().getAssets().open(ALBATROS);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			document = out.toByteArray();
+		} finally {
+			in.close();
+		}
+		etag = "\"" + ProvisioningDelta.hash(new String(document, "UTF-8")) + "\"";
+
+		serverSocket = new ServerSocket(0);
+		server = new Thread() {
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = serverSocket.accept();
+						connections++;
+						new Thread() {
+							public void run() {
+								serve(socket);
+							}
+						}.start();
+					}
+				} catch (Exception e) {
+					// Server closed
+				}
+			}
+		};
+		server.start();
+
+		client = new HttpsProvisioningClient();
+	}
+
+	protected void tearDown() throws Exception {
+		client.shutdown();
+		serverSocket.close();
+		server.join();
+
+		super.tearDown();
+	}
+
+	/**
+	 * Answer the requests of a connection kept alive with the document, or
+	 * with a 304 if the request carries its entity tag
+	 */
+	private void serve(Socket socket) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			OutputStream out = socket.getOutputStream();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				boolean unchanged = false;
+				while ((line = reader.readLine()) != null && line.length() > 0) {
+					if (line.equalsIgnoreCase("If-None-Match: " + etag)) {
+						unchanged = true;
+					}
+				}
+				if (unchanged) {
+					out.write(("HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\n\r\n").getBytes("UTF-8"));
+				} else {
+					ByteArrayOutputStream response = new ByteArrayOutputStream();
+					response.write(("HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\nETag: " + etag
+							+ "\r\nContent-Length: " + document.length + "\r\n\r\n").getBytes("UTF-8"));
+					response.write(document);
+					out.write(response.toByteArray());
+				}
+				out.flush();
+			}
+			socket.close();
+		} catch (Exception e) {
+			// Connection closed
+		}
+	}
+
+	private HttpGet request() {
+		return new HttpGet("http://127.0.0.1:" + serverSocket.getLocalPort() + "/?vers=0");
+	}
+
+	public void testConnectionReused() throws Exception {
+		long time = System.nanoTime();
+		for (int i = 0; i < FLOWS; i++) {
+			client.startFlow(null);
+			// First HTTP request then second request with the arguments
+			for (int j = 0; j < 2; j++) {
+				HttpResponse response = client.execute(request());
+				assertEquals(200, response.getStatusLine().getStatusCode());
+				assertEquals(document.length, EntityUtils.toByteArray(response.getEntity()).length);
+			}
+		}
+		time = (System.nanoTime() - time) / FLOWS;
+		assertEquals(1, connections);
+		assertEquals(1, client.getPooledConnections());
+		Log.i(TAG, FLOWS + " flows of 2 requests over " + connections + " connection, " + (time / 1000) + " us per flow");
+	}
+
+	public void testConditionalRequest() throws Exception {
+		HttpResponse response = client.execute(request());
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		assertEquals(etag, response.getFirstHeader("ETag").getValue());
+		int length = EntityUtils.toByteArray(response.getEntity()).length;
+
+		// Document unchanged, no body
+		HttpGet get = request();
+		HttpsProvisioningClient.setValidators(get, etag, null);
+		response = client.execute(get);
+		assertEquals(304, response.getStatusLine().getStatusCode());
+		assertNull(response.getEntity());
+
+		// Other document applied
+		get = request();
+		HttpsProvisioningClient.setValidators(get, "\"0\"", null);
+		response = client.execute(get);
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		EntityUtils.toByteArray(response.getEntity());
+		assertEquals(1, connections);
+		Log.i(TAG, length + " bytes then 0 byte received when the document is unchanged");
+	}
+
+	public void testUnavailableRetryTimeout() {
+		// Retry-After of the server
+		assertEquals(120000, HttpsProvisioningUtils.getUnavailableRetryTimeout(1, 120, 0));
+		assertEquals(180000, HttpsProvisioningUtils.getUnavailableRetryTimeout(5, 120, 1));
+
+		// Exponential backoff bounded by the max timeout
+		long previous = 0;
+		for (int count = 1; count <= 40; count++) {
+			long timeout = HttpsProvisioningUtils.getUnavailableRetryTimeout(count, 0, 0);
+			assertTrue(timeout >= previous);
+			assertTrue(timeout <= HttpsProvisioningUtils.RETRY_UNAVAILABLE_MAX_TIMEOUT);
+			previous = timeout;
+		}
+		assertEquals(HttpsProvisioningUtils.RETRY_UNAVAILABLE_BASE_TIMEOUT,
+				HttpsProvisioningUtils.getUnavailableRetryTimeout(1, 0, 0));
+		assertEquals(HttpsProvisioningUtils.RETRY_UNAVAILABLE_MAX_TIMEOUT, previous);
+
+		// Jitter spreading the retries of the clients
+		long timeout = HttpsProvisioningUtils.getUnavailableRetryTimeout(2, 0, 0);
+		long spread = HttpsProvisioningUtils.getUnavailableRetryTimeout(2, 0, 0.99);
+		assertTrue(spread > timeout);
+		assertTrue(spread < timeout + timeout * HttpsProvisioningUtils.RETRY_UNAVAILABLE_JITTER);
+		Log.i(TAG, "Retry after 503 in " + timeout + " to " + spread + " ms");
+	}
+}